@@ -0,0 +1,85 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE26BUFFERUTIL_H
+#define	_FUSE26BUFFERUTIL_H
+
+#include <stddef.h>
+#include <stdint.h>
+
+struct stat;
+struct fuse_file_info;
+
+/**
+ * Conversion between the C structures and the fixed little-endian layouts
+ * used by the Java classes StatBuffer and FileInfoBuffer. The layouts are
+ * documented in the respective Java classes and must be kept in sync with the
+ * offsets in FUSE26BufferUtil.cpp.
+ *
+ * Only forward declarations of the C structures are used here, so that this
+ * header can be included without pulling in a particular FUSE API version.
+ */
+class FUSE26BufferUtil {
+public:
+    static const int STAT_BUFFER_SIZE = 144;
+    static const int FILE_INFO_BUFFER_SIZE = 40;
+
+    /**
+     * Writes the fields of <code>st</code> to <code>buf</code>, which must
+     * hold at least STAT_BUFFER_SIZE bytes.
+     */
+    static void statToBuffer(const struct stat *st, char *buf);
+
+    /**
+     * Reads the fields of a StatBuffer from <code>buf</code> into
+     * <code>st</code>.
+     */
+    static void bufferToStat(const char *buf, struct stat *st);
+
+    /**
+     * Writes the fields of <code>fi</code> to <code>buf</code>, which must
+     * hold at least FILE_INFO_BUFFER_SIZE bytes.
+     */
+    static void fileInfoToBuffer(const struct fuse_file_info *fi, char *buf);
+
+    /**
+     * Reads the fields of a FileInfoBuffer from <code>buf</code> into
+     * <code>fi</code>.
+     */
+    static void bufferToFileInfo(const char *buf, struct fuse_file_info *fi);
+
+    /**
+     * Returns the backing file descriptor field of the FileInfoBuffer at
+     * <code>buf</code>, which has no counterpart in struct fuse_file_info.
+     */
+    static int bufferToBackingFd(const char *buf);
+
+    /**
+     * Decodes the FUSEFillDirBatch record at <code>buf</code>, of which
+     * <code>remaining</code> bytes are readable. On success,
+     * <code>*name</code> points to the NUL terminated name inside the record
+     * and <code>*hasStat</code> tells whether <code>st</code> was filled in.
+     *
+     * @return the length of the record, or -1 if the record is malformed.
+     */
+    static int parseFillDirRecord(const char *buf, size_t remaining,
+            const char **name, struct stat *st, bool *hasStat, int64_t *off);
+};
+
+#endif	/* _FUSE26BUFFERUTIL_H */
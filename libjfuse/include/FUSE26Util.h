@@ -24,40 +24,39 @@
 #define FUSE_USE_VERSION 26
 #endif
 
-#include "JNIUtil.h"
+#include "SystemUtil.h"
 
 #include <fuse.h>
 
-class FUSE26Util : JNIUtil {
+class FUSEFillDirContext;
+class FUSEDirFilContext;
+
+class FUSE26Util : public SystemUtil {
 public:
     /**
-     * Creates a new FUSEFillDir object using <code>filler</code> and
-     * <code>buf</code> internally.
+     * Creates a new FUSEFillDir object referring to <code>ctx</code>. The
+     * context stays owned by the caller, which must call
+     * invalidateFUSEFillDir before the context goes away.
      */
-    static jobject newFUSEFillDir(JNIEnv *env, fuse_fill_dir_t filler, void *buf);
+    static jobject newFUSEFillDir(JNIEnv *env, FUSEFillDirContext *ctx);
 
     /**
-     * Creates a new FUSEDirFil object using <code>dirfil</code> and
-     * <code>dirh</code> internally.
+     * Detaches a FUSEFillDir object from its native context, so that any
+     * later use of it from Java fails instead of touching freed memory.
      */
-    static jobject newFUSEDirFil(JNIEnv *env, fuse_dirfil_t dirfil, fuse_dirh_t dirh);
+    static void invalidateFUSEFillDir(JNIEnv *env, jobject fillDirObject);
 
     /**
-     * Merges the contents of statObject into the struct stat target.
+     * Creates a new FUSEDirFil object referring to <code>ctx</code>. The
+     * context stays owned by the caller, which must call invalidateFUSEDirFil
+     * before the context goes away.
      */
-    static bool mergeStat(JNIEnv *env, jobject statObject, struct stat *target);
+    static jobject newFUSEDirFil(JNIEnv *env, FUSEDirFilContext *ctx);
 
     /**
-     * Fills in the fields of statObject (Java class Stat) from the fields of st
-     * (struct stat).
-     */
-    static bool fillStat(JNIEnv *env, const struct stat *st, jobject statObject);
-    
-    /**
-     * Creates a new Stat object and fills it using the fields in
-     * <code>st</code>.
+     * Detaches a FUSEDirFil object from its native context.
      */
-    static jobject newStat(JNIEnv *env, const struct stat *st);
+    static void invalidateFUSEDirFil(JNIEnv *env, jobject dirFilObject);
 
     /**
      * Merges the contents of ffiObject (Java class FUSEFileInfo) with the supplied
@@ -77,60 +76,6 @@ public:
      */
     static jobject newFUSEFileInfo(JNIEnv *env, const struct fuse_file_info *fi);
 
-    /**
-     * Merges the contents of source (Java class Flock) with the supplied
-     * struct flock.
-     */
-    static bool mergeFlock(JNIEnv *env, jobject source, struct flock *target);
-
-    /**
-     * Fills in the fields of target (Java class Flock) from the fields of source
-     * (struct flock).
-     */
-    static bool fillFlock(JNIEnv *env, const struct flock *source, jobject target);
-
-    /**
-     * Creates a new Flock object and fills it using the fields in
-     * <code>source</code>.
-     */
-    static jobject newFlock(JNIEnv *env, const struct flock *source);
-
-    /**
-     * Merges the contents of source (Java class Timespec) into the supplied
-     * struct timespec.
-     */
-    static bool mergeTimespec(JNIEnv *env, jobject source, struct timespec *target);
-
-    /**
-     * Fills in the fields of target (Java class Timespec) from the fields of source
-     * (struct timespec).
-     */
-    static bool fillTimespec(JNIEnv *env, const struct timespec *source, jobject target);
-
-    /**
-     * Creates a new Timespec object and fills it using the fields in
-     * <code>source</code>.
-     */
-    static jobject newTimespec(JNIEnv *env, const struct timespec *source);
-
-    /**
-     * Merges the contents of source (Java class LongRef) with the supplied
-     * uint64_t.
-     */
-    static bool mergeLongRef(JNIEnv *env, jobject source, uint64_t *target);
-
-    /**
-     * Fills in the fields of target (Java class LongRef) from the fields of source
-     * (uint64_t).
-     */
-    static bool fillLongRef(JNIEnv *env, const uint64_t *source, jobject target);
-
-    /**
-     * Creates a new LongRef object and fills it using the fields in
-     * <code>source</code>.
-     */
-    static jobject newLongRef(JNIEnv *env, const uint64_t *source);
-
     /**
      * Merges the contents of source (Java class FUSEConnInfo) with the supplied
      * fuse_conn_info.
@@ -148,42 +93,6 @@ public:
      * <code>source</code>.
      */
     static jobject newFUSEConnInfo(JNIEnv *env, const struct fuse_conn_info *source);
-
-    /**
-     * Merges the contents of source (Java class Utimbuf) with the supplied
-     * struct utimbuf.
-     */
-    static bool mergeUtimbuf(JNIEnv *env, jobject source, struct utimbuf *target);
-
-    /**
-     * Fills in the fields of target (Java class Utimbuf) from the fields
-     * of source (struct utimbuf).
-     */
-    static bool fillUtimbuf(JNIEnv *env, const struct utimbuf *source, jobject target);
-
-    /**
-     * Creates a new Utimbuf object and fills it using the fields in
-     * <code>source</code>.
-     */
-    static jobject newUtimbuf(JNIEnv *env, const struct utimbuf *source);
-
-    /**
-     * Merges the contents of source (Java class StatVFS) with the supplied
-     * struct statvfs.
-     */
-    static bool mergeStatVFS(JNIEnv *env, jobject source, struct statvfs *target);
-
-    /**
-     * Fills in the fields of target (Java class StatVFS) from the fields
-     * of source (struct statvfs).
-     */
-    static bool fillStatVFS(JNIEnv *env, const struct statvfs *source, jobject target);
-
-    /**
-     * Creates a new StatVFS object and fills it using the fields in
-     * <code>source</code>.
-     */
-    static jobject newStatVFS(JNIEnv *env, const struct statvfs *source);
 };
 
 
@@ -0,0 +1,69 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE29UTIL_H
+#define	_FUSE29UTIL_H
+
+#if FUSE_USE_VERSION != 26
+#define FUSE_USE_VERSION 26
+#endif
+
+#include "JNIUtil.h"
+
+#include <fuse.h>
+
+#if FUSE_VERSION >= 29
+
+class FUSE29Util : JNIUtil {
+public:
+    /**
+     * Creates a new, empty FUSEBufVec object.
+     */
+    static jobject newFUSEBufVec(JNIEnv *env);
+
+    /**
+     * Builds a struct fuse_bufvec from the buffers that the file system added
+     * to bufVecObject (Java class FUSEBufVec), keeping at most maxSize bytes.
+     * File regions become file descriptor buffers, data is copied into memory
+     * allocated with malloc. On success *target is set to the new vector,
+     * which is allocated with malloc and freed by libfuse along with its
+     * memory buffers.
+     *
+     * @return 0 if successful, or a negated errno value otherwise.
+     */
+    static int mergeFUSEBufVec(JNIEnv *env, jobject bufVecObject,
+            size_t maxSize, struct fuse_bufvec **target);
+
+    /**
+     * Creates a new FUSEWriteBuf object referring to <code>bufv</code>. The
+     * vector stays owned by the caller, which must call invalidateFUSEWriteBuf
+     * before the vector goes away.
+     */
+    static jobject newFUSEWriteBuf(JNIEnv *env, struct fuse_bufvec *bufv);
+
+    /**
+     * Detaches a FUSEWriteBuf object from its native vector, so that any later
+     * use of it from Java fails instead of touching freed memory.
+     */
+    static void invalidateFUSEWriteBuf(JNIEnv *env, jobject writeBufObject);
+};
+
+#endif /* FUSE_VERSION >= 29 */
+
+#endif	/* _FUSE29UTIL_H */
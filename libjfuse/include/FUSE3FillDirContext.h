@@ -0,0 +1,40 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE3FILLDIRCONTEXT_H
+#define	_FUSE3FILLDIRCONTEXT_H
+
+#define FUSE_USE_VERSION 31
+#include <fuse.h>
+
+class FUSE3FillDirContext {
+public:
+    FUSE3FillDirContext(fuse_fill_dir_t filler, void *buf);
+    FUSE3FillDirContext(const FUSE3FillDirContext& orig);
+    virtual ~FUSE3FillDirContext();
+
+    fuse_fill_dir_t getFiller();
+    void* getBuf();
+private:
+    fuse_fill_dir_t filler;
+    void *buf;
+};
+
+#endif	/* _FUSE3FILLDIRCONTEXT_H */
+
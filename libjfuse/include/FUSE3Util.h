@@ -0,0 +1,107 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE3UTIL_H
+#define	_FUSE3UTIL_H
+
+#if FUSE_USE_VERSION != 31
+#define FUSE_USE_VERSION 31
+#endif
+
+#include "SystemUtil.h"
+
+#include <fuse.h>
+
+class FUSE3FillDirContext;
+
+class FUSE3Util : public SystemUtil {
+public:
+    /**
+     * Creates a new FUSE3FillDir object referring to <code>ctx</code>. The
+     * context stays owned by the caller, which must call
+     * invalidateFUSE3FillDir before the context goes away.
+     */
+    static jobject newFUSE3FillDir(JNIEnv *env, FUSE3FillDirContext *ctx);
+
+    /**
+     * Detaches a FUSE3FillDir object from its native context, so that any
+     * later use of it from Java fails instead of touching freed memory.
+     */
+    static void invalidateFUSE3FillDir(JNIEnv *env, jobject fillDirObject);
+
+    /**
+     * Merges the contents of ffiObject (Java class FUSEFileInfo) with the
+     * supplied struct fuse_file_info. The fh_old field has no counterpart in
+     * FUSE 3 and is ignored.
+     */
+    static bool mergeFUSEFileInfo(JNIEnv *env, jobject ffiObject, struct fuse_file_info *target);
+
+    /**
+     * Fills in the fields of ffiObject (Java class FUSEFileInfo) from the fields of fi
+     * (struct fuse_file_info).
+     */
+    static bool fillFUSEFileInfo(JNIEnv *env, const struct fuse_file_info *fi, jobject ffiObject);
+
+    /**
+     * Creates a new FUSEFileInfo object and fills it using the fields in
+     * <code>fi</code>.
+     */
+    static jobject newFUSEFileInfo(JNIEnv *env, const struct fuse_file_info *fi);
+
+    /**
+     * Merges the contents of source (Java class FUSE3ConnInfo) with the
+     * supplied fuse_conn_info. Only the fields that the file system may change
+     * in init are written back.
+     */
+    static bool mergeFUSE3ConnInfo(JNIEnv *env, jobject source, struct fuse_conn_info *target);
+
+    /**
+     * Fills in the fields of target (Java class FUSE3ConnInfo) from the fields
+     * of source (fuse_conn_info).
+     */
+    static bool fillFUSE3ConnInfo(JNIEnv *env, const struct fuse_conn_info *source, jobject target);
+
+    /**
+     * Creates a new FUSE3ConnInfo object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newFUSE3ConnInfo(JNIEnv *env, const struct fuse_conn_info *source);
+
+    /**
+     * Merges the contents of source (Java class FUSEConfig) with the supplied
+     * fuse_config.
+     */
+    static bool mergeFUSEConfig(JNIEnv *env, jobject source, struct fuse_config *target);
+
+    /**
+     * Fills in the fields of target (Java class FUSEConfig) from the fields
+     * of source (fuse_config).
+     */
+    static bool fillFUSEConfig(JNIEnv *env, const struct fuse_config *source, jobject target);
+
+    /**
+     * Creates a new FUSEConfig object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newFUSEConfig(JNIEnv *env, const struct fuse_config *source);
+};
+
+
+#endif	/* _FUSE3UTIL_H */
+
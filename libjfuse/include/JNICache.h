@@ -0,0 +1,291 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _JNICACHE_H
+#define	_JNICACHE_H
+
+#include <jni.h>
+
+/**
+ * Cache of global class references, method IDs and field IDs for the Java
+ * classes that are passed between jFUSE and the Java file system. The IDs are
+ * resolved once by init(...) before the first file system is mounted, so the
+ * FUSE callbacks never have to look anything up by name.
+ */
+class JNICache {
+public:
+    struct StatIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID st_dev;
+        jfieldID st_ino;
+        jfieldID st_mode;
+        jfieldID st_nlink;
+        jfieldID st_uid;
+        jfieldID st_gid;
+        jfieldID st_rdev;
+        jfieldID st_atimespec;
+        jfieldID st_mtimespec;
+        jfieldID st_ctimespec;
+        jfieldID st_size;
+        jfieldID st_blocks;
+        jfieldID st_blocksize;
+        jfieldID st_flags;
+        jfieldID st_gen;
+    };
+
+    struct TimespecIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID sec;
+        jfieldID nsec;
+    };
+
+    struct FUSEFileInfoIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID flags;
+        jfieldID fh_old;
+        jfieldID writepage;
+        jfieldID direct_io;
+        jfieldID keep_cache;
+        jfieldID flush;
+        jfieldID fh;
+        jfieldID lock_owner;
+        jfieldID backing_fd;
+    };
+
+    struct StatVFSIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID f_bsize;
+        jfieldID f_frsize;
+        jfieldID f_blocks;
+        jfieldID f_bfree;
+        jfieldID f_bavail;
+        jfieldID f_files;
+        jfieldID f_ffree;
+        jfieldID f_favail;
+        jfieldID f_fsid;
+        jfieldID f_flag;
+        jfieldID f_namemax;
+    };
+
+    struct FlockIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID l_start;
+        jfieldID l_len;
+        jfieldID l_pid;
+        jfieldID l_type;
+        jfieldID l_whence;
+    };
+
+    struct LongRefIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID ref;
+    };
+
+    struct UtimbufIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID actime;
+        jfieldID modtime;
+    };
+
+    struct FUSEConnInfoIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID proto_major;
+        jfieldID proto_minor;
+        jfieldID async_read;
+        jfieldID max_write;
+        jfieldID max_readahead;
+    };
+
+    struct FUSE3ConnInfoIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID proto_major;
+        jfieldID proto_minor;
+        jfieldID max_write;
+        jfieldID max_read;
+        jfieldID max_readahead;
+        jfieldID capable;
+        jfieldID want;
+        jfieldID max_background;
+        jfieldID congestion_threshold;
+        jfieldID time_gran;
+    };
+
+    struct FUSEConfigIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID set_gid;
+        jfieldID gid;
+        jfieldID set_uid;
+        jfieldID uid;
+        jfieldID set_mode;
+        jfieldID umask;
+        jfieldID entry_timeout;
+        jfieldID negative_timeout;
+        jfieldID attr_timeout;
+        jfieldID intr;
+        jfieldID intr_signal;
+        jfieldID remember;
+        jfieldID hard_remove;
+        jfieldID use_ino;
+        jfieldID readdir_ino;
+        jfieldID direct_io;
+        jfieldID kernel_cache;
+        jfieldID auto_cache;
+        jfieldID ac_attr_timeout_set;
+        jfieldID ac_attr_timeout;
+        jfieldID nullpath_ok;
+    };
+
+    struct FUSEEntryReplyIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID ino;
+        jfieldID generation;
+        jfieldID attr;
+        jfieldID attr_timeout;
+        jfieldID entry_timeout;
+    };
+
+    struct FUSEAttrReplyIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID attr;
+        jfieldID attr_timeout;
+    };
+
+    struct FUSEDirReplyIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID length;
+    };
+
+    struct MountHandleIDs {
+        jclass clazz;
+        jmethodID mountReady;
+        jmethodID workerStarted;
+        jmethodID connInitialized;
+        jmethodID kernelPassthroughChanged;
+    };
+
+    struct ByteBufferIDs {
+        jclass clazz;
+        jmethodID asReadOnlyBuffer;
+    };
+
+    /* Used to re-point reused path buffers. The private state fields of
+     * java.nio.Buffer are written directly when the JVM has them, which saves
+     * two Java calls per path, and the public clear() and limit(int) methods
+     * are called otherwise. The field IDs are all NULL if any is missing. */
+    struct BufferIDs {
+        jclass clazz;
+        jmethodID clear;
+        jmethodID limit;
+        jfieldID positionField;
+        jfieldID limitField;
+        jfieldID markField;
+    };
+
+    /* FUSEFillDir, FUSEDirFil, FUSE3FillDir and FUSEWriteBuf, which refer to a native
+     * context that is only valid during the callback that created them. */
+    struct FillerIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID nativeContext;
+    };
+
+    struct FUSEBufVecIDs {
+        jclass clazz;
+        jmethodID init;
+        jfieldID count;
+        jfieldID sources;
+        jfieldID positions;
+        jfieldID sizes;
+    };
+
+    /* java.io.FileDescriptor, and the file implementation of FileChannel that
+     * holds one. The channel IDs are NULL if the JVM's FileChannel
+     * implementation isn't the expected one. */
+    struct FileDescriptorIDs {
+        jclass clazz;
+        jfieldID fd;
+        jclass channelClazz;
+        jfieldID channelFd;
+    };
+
+    struct ClassIDs {
+        jclass clazz;
+        jmethodID init;
+    };
+
+    struct FUSERequestIDs {
+        jclass clazz;
+        jmethodID init;
+        jmethodID failIfPending;
+    };
+
+    static StatIDs stat;
+    static TimespecIDs timespec;
+    static FUSEFileInfoIDs fuseFileInfo;
+    static StatVFSIDs statVFS;
+    static FlockIDs flock;
+    static LongRefIDs longRef;
+    static UtimbufIDs utimbuf;
+    static FUSEConnInfoIDs fuseConnInfo;
+    static FUSE3ConnInfoIDs fuse3ConnInfo;
+    static FUSEConfigIDs fuseConfig;
+    static FUSEEntryReplyIDs fuseEntryReply;
+    static FUSEAttrReplyIDs fuseAttrReply;
+    static FUSEDirReplyIDs fuseDirReply;
+    static ByteBufferIDs byteBuffer;
+    static BufferIDs buffer;
+    static MountHandleIDs mountHandle;
+    static ClassIDs fuseContext;
+    static FUSERequestIDs fuseRequest;
+    static FillerIDs fuseFillDir;
+    static FillerIDs fuseDirFil;
+    static FillerIDs fuse3FillDir;
+    static ClassIDs statBuffer;
+    static ClassIDs fileInfoBuffer;
+    static FUSEBufVecIDs fuseBufVec;
+    static FillerIDs fuseWriteBuf;
+    static FileDescriptorIDs fileDescriptor;
+
+    /**
+     * Resolves all cached IDs. Safe to call more than once and from several
+     * threads; only the first successful call does any work.
+     *
+     * @return true if the cache is initialized, false (with a pending Java
+     * exception) otherwise.
+     */
+    static bool init(JNIEnv *env);
+
+private:
+    static bool initialized;
+};
+
+#endif	/* _JNICACHE_H */
@@ -30,7 +30,16 @@ public:
     static jobject newByteBuffer(JNIEnv *env, jsize length);
     static jobject cstringToReadonlyByteBuffer(JNIEnv *env, const char *cstr);
     static jobject bytesToByteBuffer(JNIEnv *env, void *data, jsize dataLength);
+    /* Requires JNICache::init to have been called. */
     static jobject bytesToReadonlyByteBuffer(JNIEnv *env, const void *data, jsize dataLength);
+
+    /**
+     * Returns the file descriptor number behind <code>obj</code>, which may be
+     * a java.io.FileDescriptor or a FileChannel for a file, or -1 if the object
+     * is of neither kind or is closed. Requires JNICache::init to have been
+     * called.
+     */
+    static int getFileDescriptor(JNIEnv *env, jobject obj);
     
     static bool setBooleanField(JNIEnv *env, jclass fieldClass, jobject fieldObject,
             const char *fieldName, jboolean value);
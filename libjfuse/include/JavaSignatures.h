@@ -29,11 +29,33 @@
 
 #define OBJECT_CLASS                "java/lang/Object"
 #define BYTEBUFFER_CLASS            "java/nio/ByteBuffer"
+#define BUFFER_CLASS                "java/nio/Buffer"
+#define FILEDESCRIPTOR_CLASS        "java/io/FileDescriptor"
+/* Implementation class of FileChannel for files, whose private field "fd" holds
+ * the FileDescriptor of the channel. */
+#define FILECHANNELIMPL_CLASS       "sun/nio/ch/FileChannelImpl"
+
+#define BYTEBUFFER_ASREADONLYBUFFER_NAME      "asReadOnlyBuffer"
+#define BYTEBUFFER_ASREADONLYBUFFER_SIGNATURE "()" JAVA_CLASS(BYTEBUFFER_CLASS)
+#define BUFFER_CLEAR_NAME                     "clear"
+#define BUFFER_CLEAR_SIGNATURE                "()" JAVA_CLASS(BUFFER_CLASS)
+#define BUFFER_LIMIT_NAME                     "limit"
+#define BUFFER_LIMIT_SIGNATURE                "(I)" JAVA_CLASS(BUFFER_CLASS)
 
 // Class / method signatures for certain classes
 
 #define NOSUCHCONSTANTEXCEPTION_CLASS   JFUSE_PACKAGE "/types/system/NoSuchConstantException"
 
+#define MOUNTHANDLE_CLASS           JFUSE_PACKAGE "/MountHandle"
+#define MOUNTHANDLE_MOUNTREADY_NAME "mountReady"
+#define MOUNTHANDLE_MOUNTREADY_SIGNATURE "()V"
+#define MOUNTHANDLE_WORKERSTARTED_NAME "workerStarted"
+#define MOUNTHANDLE_WORKERSTARTED_SIGNATURE "()V"
+#define MOUNTHANDLE_CONNINITIALIZED_NAME "connInitialized"
+#define MOUNTHANDLE_CONNINITIALIZED_SIGNATURE "(" JAVA_CLASS(OBJECT_CLASS) ")V"
+#define MOUNTHANDLE_KERNELPASSTHROUGHCHANGED_NAME "kernelPassthroughChanged"
+#define MOUNTHANDLE_KERNELPASSTHROUGHCHANGED_SIGNATURE "(Z)V"
+
 #define FUSECONTEXT_CLASS           JFUSE_PACKAGE "/types/fuse26/FUSEContext"
 #define FUSECONTEXT_INIT_NAME       "<init>"
 #define FUSECONTEXT_INIT_SIGNATURE  "(JJJ" JAVA_CLASS(OBJECT_CLASS) ")V"
@@ -42,9 +64,27 @@
 #define FUSECONNINFO_INIT_NAME      "<init>"
 #define FUSECONNINFO_INIT_SIGNATURE "()V"
 
+#define FUSEATTRREPLY_CLASS         JFUSE_PACKAGE "/types/fuse26/FUSEAttrReply"
+#define FUSEATTRREPLY_INIT_NAME     "<init>"
+#define FUSEATTRREPLY_INIT_SIGNATURE "()V"
+
+#define FUSEDIRREPLY_CLASS          JFUSE_PACKAGE "/types/fuse26/FUSEDirReply"
+#define FUSEDIRREPLY_INIT_NAME      "<init>"
+#define FUSEDIRREPLY_INIT_SIGNATURE "(" JAVA_CLASS(BYTEBUFFER_CLASS) ")V"
+
+#define FUSEENTRYREPLY_CLASS        JFUSE_PACKAGE "/types/fuse26/FUSEEntryReply"
+#define FUSEENTRYREPLY_INIT_NAME    "<init>"
+#define FUSEENTRYREPLY_INIT_SIGNATURE "()V"
+
+#define FUSEREQUEST_CLASS           JFUSE_PACKAGE "/types/fuse26/FUSERequest"
+#define FUSEREQUEST_INIT_NAME       "<init>"
+#define FUSEREQUEST_INIT_SIGNATURE  "(J)V"
+#define FUSEREQUEST_FAILIFPENDING_NAME "failIfPending"
+#define FUSEREQUEST_FAILIFPENDING_SIGNATURE "(I)V"
+
 #define FUSEDIRFIL_CLASS            JFUSE_PACKAGE "/types/fuse26/FUSEDirFil"
 #define FUSEDIRFIL_INIT_NAME        "<init>"
-#define FUSEDIRFIL_INIT_SIGNATURE   "([B)V"
+#define FUSEDIRFIL_INIT_SIGNATURE   "(J)V"
 
 #define FUSEFILEINFO_CLASS          JFUSE_PACKAGE "/types/fuse26/FUSEFileInfo"
 #define FUSEFILEINFO_INIT_NAME      "<init>"
@@ -52,7 +92,31 @@
 
 #define FUSEFILLDIR_CLASS           JFUSE_PACKAGE "/types/fuse26/FUSEFillDir"
 #define FUSEFILLDIR_INIT_NAME       "<init>"
-#define FUSEFILLDIR_INIT_SIGNATURE  "([B)V"
+#define FUSEFILLDIR_INIT_SIGNATURE  "(J)V"
+
+#define FILEINFOBUFFER_CLASS        JFUSE_PACKAGE "/types/fuse26/FileInfoBuffer"
+#define FILEINFOBUFFER_INIT_NAME    "<init>"
+#define FILEINFOBUFFER_INIT_SIGNATURE "(" JAVA_CLASS(BYTEBUFFER_CLASS) ")V"
+
+#define FUSEBUFVEC_CLASS            JFUSE_PACKAGE "/types/fuse29/FUSEBufVec"
+#define FUSEBUFVEC_INIT_NAME        "<init>"
+#define FUSEBUFVEC_INIT_SIGNATURE   "()V"
+
+#define FUSEWRITEBUF_CLASS          JFUSE_PACKAGE "/types/fuse29/FUSEWriteBuf"
+#define FUSEWRITEBUF_INIT_NAME      "<init>"
+#define FUSEWRITEBUF_INIT_SIGNATURE "(J)V"
+
+#define FUSE3CONNINFO_CLASS         JFUSE_PACKAGE "/types/fuse3/FUSE3ConnInfo"
+#define FUSE3CONNINFO_INIT_NAME     "<init>"
+#define FUSE3CONNINFO_INIT_SIGNATURE "()V"
+
+#define FUSE3FILLDIR_CLASS          JFUSE_PACKAGE "/types/fuse3/FUSE3FillDir"
+#define FUSE3FILLDIR_INIT_NAME      "<init>"
+#define FUSE3FILLDIR_INIT_SIGNATURE "(J)V"
+
+#define FUSECONFIG_CLASS            JFUSE_PACKAGE "/types/fuse3/FUSEConfig"
+#define FUSECONFIG_INIT_NAME        "<init>"
+#define FUSECONFIG_INIT_SIGNATURE   "()V"
 
 #define FLOCK_CLASS                 JFUSE_PACKAGE "/types/system/Flock"
 #define FLOCK_INIT_NAME              "<init>"
@@ -66,6 +130,10 @@
 #define STAT_INIT_NAME              "<init>"
 #define STAT_INIT_SIGNATURE         "()V"
 
+#define STATBUFFER_CLASS            JFUSE_PACKAGE "/types/system/StatBuffer"
+#define STATBUFFER_INIT_NAME        "<init>"
+#define STATBUFFER_INIT_SIGNATURE   "(" JAVA_CLASS(BYTEBUFFER_CLASS) ")V"
+
 #define STATVFS_CLASS               JFUSE_PACKAGE "/types/system/StatVFS"
 #define STATVFS_INIT_NAME           "<init>"
 #define STATVFS_INIT_SIGNATURE      "()V"
@@ -157,6 +225,154 @@
 #define OPS_BMAP_NAME               "bmap"
 #define OPS_BMAP_SIGNATURE          "(" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(LONGREF_CLASS) ")I"
 
+// FUSE26BufferOperations signatures
+
+#define OPS_GETATTR_BUFFER_NAME         "getattr"
+#define OPS_GETATTR_BUFFER_SIGNATURE    "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(STATBUFFER_CLASS) ")I"
+#define OPS_FGETATTR_BUFFER_NAME        "fgetattr"
+#define OPS_FGETATTR_BUFFER_SIGNATURE   "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(STATBUFFER_CLASS) JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_OPEN_BUFFER_NAME            "open"
+#define OPS_OPEN_BUFFER_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_CREATE_BUFFER_NAME          "create"
+#define OPS_CREATE_BUFFER_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) "S" JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_READ_BUFFER_NAME            "read"
+#define OPS_READ_BUFFER_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_WRITE_BUFFER_NAME           "write"
+#define OPS_WRITE_BUFFER_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_FLUSH_BUFFER_NAME           "flush"
+#define OPS_FLUSH_BUFFER_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_RELEASE_BUFFER_NAME         "release"
+#define OPS_RELEASE_BUFFER_SIGNATURE    "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_FSYNC_BUFFER_NAME           "fsync"
+#define OPS_FSYNC_BUFFER_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) "Z" JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+#define OPS_FTRUNCATE_BUFFER_NAME       "ftruncate"
+#define OPS_FTRUNCATE_BUFFER_SIGNATURE  "(" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FILEINFOBUFFER_CLASS) ")I"
+
+// FUSE29Operations signatures
+
+#define OPS_READ_BUF_NAME           "read_buf"
+#define OPS_READ_BUF_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEBUFVEC_CLASS) "JJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_WRITE_BUF_NAME          "write_buf"
+#define OPS_WRITE_BUF_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEWRITEBUF_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_FALLOCATE_NAME          "fallocate"
+#define OPS_FALLOCATE_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) "IJJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+
+// FUSE3Operations signatures
+
+#define OPS3_GETATTR_NAME           "getattr"
+#define OPS3_GETATTR_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(STAT_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_READLINK_NAME          "readlink"
+#define OPS3_READLINK_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_MKNOD_NAME             "mknod"
+#define OPS3_MKNOD_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "SJ)I"
+#define OPS3_MKDIR_NAME             "mkdir"
+#define OPS3_MKDIR_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "S)I"
+#define OPS3_UNLINK_NAME            "unlink"
+#define OPS3_UNLINK_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_RMDIR_NAME             "rmdir"
+#define OPS3_RMDIR_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_SYMLINK_NAME           "symlink"
+#define OPS3_SYMLINK_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_RENAME_NAME            "rename"
+#define OPS3_RENAME_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "I)I"
+#define OPS3_LINK_NAME              "link"
+#define OPS3_LINK_SIGNATURE         "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_CHMOD_NAME             "chmod"
+#define OPS3_CHMOD_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "S" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_CHOWN_NAME             "chown"
+#define OPS3_CHOWN_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "JJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_TRUNCATE_NAME          "truncate"
+#define OPS3_TRUNCATE_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_OPEN_NAME              "open"
+#define OPS3_OPEN_SIGNATURE         "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_READ_NAME              "read"
+#define OPS3_READ_SIGNATURE         "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_WRITE_NAME             "write"
+#define OPS3_WRITE_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_STATFS_NAME            "statfs"
+#define OPS3_STATFS_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(STATVFS_CLASS) ")I"
+#define OPS3_FLUSH_NAME             "flush"
+#define OPS3_FLUSH_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_RELEASE_NAME           "release"
+#define OPS3_RELEASE_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_FSYNC_NAME             "fsync"
+#define OPS3_FSYNC_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "Z" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_SETXATTR_NAME          "setxattr"
+#define OPS3_SETXATTR_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) "I)I"
+#define OPS3_GETXATTR_NAME          "getxattr"
+#define OPS3_GETXATTR_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_LISTXATTR_NAME         "listxattr"
+#define OPS3_LISTXATTR_SIGNATURE    "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_REMOVEXATTR_NAME       "removexattr"
+#define OPS3_REMOVEXATTR_SIGNATURE  "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(BYTEBUFFER_CLASS) ")I"
+#define OPS3_OPENDIR_NAME           "opendir"
+#define OPS3_OPENDIR_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_READDIR_NAME           "readdir"
+#define OPS3_READDIR_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSE3FILLDIR_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) "I)I"
+#define OPS3_RELEASEDIR_NAME        "releasedir"
+#define OPS3_RELEASEDIR_SIGNATURE   "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_FSYNCDIR_NAME          "fsyncdir"
+#define OPS3_FSYNCDIR_SIGNATURE     "(" JAVA_CLASS(BYTEBUFFER_CLASS) "Z" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_INIT_NAME              "init"
+#define OPS3_INIT_SIGNATURE         "(" JAVA_CLASS(FUSE3CONNINFO_CLASS) JAVA_CLASS(FUSECONFIG_CLASS) ")" JAVA_CLASS(OBJECT_CLASS)
+#define OPS3_DESTROY_NAME           "destroy"
+#define OPS3_DESTROY_SIGNATURE      "(" JAVA_CLASS(OBJECT_CLASS) ")V"
+#define OPS3_ACCESS_NAME            "access"
+#define OPS3_ACCESS_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) "I)I"
+#define OPS3_CREATE_NAME            "create"
+#define OPS3_CREATE_SIGNATURE       "(" JAVA_CLASS(BYTEBUFFER_CLASS) "S" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_LOCK_NAME              "lock"
+#define OPS3_LOCK_SIGNATURE         "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) "I" JAVA_CLASS(FLOCK_CLASS) ")I"
+#define OPS3_UTIMENS_NAME           "utimens"
+#define OPS3_UTIMENS_SIGNATURE      "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(TIMESPEC_CLASS) JAVA_CLASS(TIMESPEC_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_BMAP_NAME              "bmap"
+#define OPS3_BMAP_SIGNATURE         "(" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(LONGREF_CLASS) ")I"
+#define OPS3_COPY_FILE_RANGE_NAME   "copy_file_range"
+#define OPS3_COPY_FILE_RANGE_SIGNATURE "(" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) "J" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEFILEINFO_CLASS) "JJI)J"
+#define OPS3_FALLOCATE_NAME         "fallocate"
+#define OPS3_FALLOCATE_SIGNATURE    "(" JAVA_CLASS(BYTEBUFFER_CLASS) "IJJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS3_LSEEK_NAME             "lseek"
+#define OPS3_LSEEK_SIGNATURE        "(" JAVA_CLASS(BYTEBUFFER_CLASS) "JI" JAVA_CLASS(FUSEFILEINFO_CLASS) ")J"
+
+// FUSE26LowLevelOperations signatures
+
+#define OPS_LL_LOOKUP_NAME          "lookup"
+#define OPS_LL_LOOKUP_SIGNATURE     "(J" JAVA_CLASS(BYTEBUFFER_CLASS) JAVA_CLASS(FUSEENTRYREPLY_CLASS) ")I"
+#define OPS_LL_FORGET_NAME          "forget"
+#define OPS_LL_FORGET_SIGNATURE     "(JJ)V"
+#define OPS_LL_GETATTR_NAME         "getattr"
+#define OPS_LL_GETATTR_SIGNATURE    "(J" JAVA_CLASS(FUSEATTRREPLY_CLASS) ")I"
+#define OPS_LL_SETATTR_NAME         "setattr"
+#define OPS_LL_SETATTR_SIGNATURE    "(J" JAVA_CLASS(STAT_CLASS) "I" JAVA_CLASS(FUSEFILEINFO_CLASS) JAVA_CLASS(FUSEATTRREPLY_CLASS) ")I"
+#define OPS_LL_OPEN_NAME            "open"
+#define OPS_LL_OPEN_SIGNATURE       "(J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_READ_NAME            "read"
+#define OPS_LL_READ_SIGNATURE       "(J" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_WRITE_NAME           "write"
+#define OPS_LL_WRITE_SIGNATURE      "(J" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_RELEASE_NAME         "release"
+#define OPS_LL_RELEASE_SIGNATURE    "(J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_OPENDIR_NAME         "opendir"
+#define OPS_LL_OPENDIR_SIGNATURE    "(J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_READDIR_NAME         "readdir"
+#define OPS_LL_READDIR_SIGNATURE    "(J" JAVA_CLASS(FUSEDIRREPLY_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+#define OPS_LL_RELEASEDIR_NAME      "releasedir"
+#define OPS_LL_RELEASEDIR_SIGNATURE "(J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")I"
+
+// FUSE26AsyncReplyOperations signatures
+
+#define OPS_LL_ASYNC_LOOKUP_SIGNATURE     "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(BYTEBUFFER_CLASS) ")V"
+#define OPS_LL_ASYNC_FORGET_SIGNATURE     "(" JAVA_CLASS(FUSEREQUEST_CLASS) "JJ)V"
+#define OPS_LL_ASYNC_GETATTR_SIGNATURE    "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J)V"
+#define OPS_LL_ASYNC_SETATTR_SIGNATURE    "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(STAT_CLASS) "I" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_OPEN_SIGNATURE       "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_READ_SIGNATURE       "(" JAVA_CLASS(FUSEREQUEST_CLASS) "JIJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_WRITE_SIGNATURE      "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(BYTEBUFFER_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_RELEASE_SIGNATURE    "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_OPENDIR_SIGNATURE    "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_READDIR_SIGNATURE    "(" JAVA_CLASS(FUSEREQUEST_CLASS) "JIJ" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+#define OPS_LL_ASYNC_RELEASEDIR_SIGNATURE "(" JAVA_CLASS(FUSEREQUEST_CLASS) "J" JAVA_CLASS(FUSEFILEINFO_CLASS) ")V"
+
 // MacFUSE20Operations signatures
 
 #if defined(__APPLE__) || defined(__DARWIN__)
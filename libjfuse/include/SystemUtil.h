@@ -0,0 +1,156 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _SYSTEMUTIL_H
+#define	_SYSTEMUTIL_H
+
+#include "JNIUtil.h"
+
+#include <fcntl.h>
+#include <stdint.h>
+#include <time.h>
+#include <utime.h>
+#include <sys/stat.h>
+#include <sys/statvfs.h>
+
+/**
+ * Conversion between the system structures and their Java counterparts in
+ * org.catacombae.jfuse.types.system. None of these depend on a particular FUSE
+ * API version, so they are shared by all FUSE modules.
+ */
+class SystemUtil : public JNIUtil {
+public:
+    /**
+     * Merges the contents of statObject into the struct stat target.
+     */
+    static bool mergeStat(JNIEnv *env, jobject statObject, struct stat *target);
+
+    /**
+     * Fills in the fields of statObject (Java class Stat) from the fields of st
+     * (struct stat).
+     */
+    static bool fillStat(JNIEnv *env, const struct stat *st, jobject statObject);
+    
+    /**
+     * Creates a new Stat object and fills it using the fields in
+     * <code>st</code>.
+     */
+    static jobject newStat(JNIEnv *env, const struct stat *st);
+
+    /**
+     * Merges the contents of source (Java class Flock) with the supplied
+     * struct flock.
+     */
+    static bool mergeFlock(JNIEnv *env, jobject source, struct flock *target);
+
+    /**
+     * Fills in the fields of target (Java class Flock) from the fields of source
+     * (struct flock).
+     */
+    static bool fillFlock(JNIEnv *env, const struct flock *source, jobject target);
+
+    /**
+     * Creates a new Flock object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newFlock(JNIEnv *env, const struct flock *source);
+
+    /**
+     * Merges the contents of source (Java class Timespec) into the supplied
+     * struct timespec.
+     */
+    static bool mergeTimespec(JNIEnv *env, jobject source, struct timespec *target);
+
+    /**
+     * Fills in the fields of target (Java class Timespec) from the fields of source
+     * (struct timespec).
+     */
+    static bool fillTimespec(JNIEnv *env, const struct timespec *source, jobject target);
+
+    /**
+     * Creates a new Timespec object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newTimespec(JNIEnv *env, const struct timespec *source);
+
+    /**
+     * Merges the contents of source (Java class LongRef) with the supplied
+     * uint64_t.
+     */
+    static bool mergeLongRef(JNIEnv *env, jobject source, uint64_t *target);
+
+    /**
+     * Fills in the fields of target (Java class LongRef) from the fields of source
+     * (uint64_t).
+     */
+    static bool fillLongRef(JNIEnv *env, const uint64_t *source, jobject target);
+
+    /**
+     * Creates a new LongRef object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newLongRef(JNIEnv *env, const uint64_t *source);
+
+    /**
+     * Merges the contents of source (Java class Utimbuf) with the supplied
+     * struct utimbuf.
+     */
+    static bool mergeUtimbuf(JNIEnv *env, jobject source, struct utimbuf *target);
+
+    /**
+     * Fills in the fields of target (Java class Utimbuf) from the fields
+     * of source (struct utimbuf).
+     */
+    static bool fillUtimbuf(JNIEnv *env, const struct utimbuf *source, jobject target);
+
+    /**
+     * Creates a new Utimbuf object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newUtimbuf(JNIEnv *env, const struct utimbuf *source);
+
+    /**
+     * Merges the contents of source (Java class StatVFS) with the supplied
+     * struct statvfs.
+     */
+    static bool mergeStatVFS(JNIEnv *env, jobject source, struct statvfs *target);
+
+    /**
+     * Fills in the fields of target (Java class StatVFS) from the fields
+     * of source (struct statvfs).
+     */
+    static bool fillStatVFS(JNIEnv *env, const struct statvfs *source, jobject target);
+
+    /**
+     * Creates a new StatVFS object and fills it using the fields in
+     * <code>source</code>.
+     */
+    static jobject newStatVFS(JNIEnv *env, const struct statvfs *source);
+
+protected:
+    /**
+     * Creates a new instance of a class in the JNICache using its no-argument
+     * constructor.
+     */
+    static jobject newCachedObject(JNIEnv *env, jclass clazz, jmethodID init,
+            const char *className);
+};
+
+
+#endif	/* _SYSTEMUTIL_H */
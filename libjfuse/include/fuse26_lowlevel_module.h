@@ -0,0 +1,219 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE26_LOWLEVEL_MODULE_H
+#define	_FUSE26_LOWLEVEL_MODULE_H
+
+#include "fuse26_module.h"
+
+#if defined(__NetBSD__)
+extern "C" {
+#endif
+#include <fuse_lowlevel.h>
+#if defined(__NetBSD__)
+}
+#endif
+
+/*
+ * Indices of the file system methods in jfuse26_lowlevel_methods, looked up
+ * through jFUSEContext::getFSProviderMethodID like the JFUSE_OP_* indices of
+ * the high level API.
+ */
+enum {
+    JFUSE_LL_OP_LOOKUP,
+    JFUSE_LL_OP_FORGET,
+    JFUSE_LL_OP_GETATTR,
+    JFUSE_LL_OP_SETATTR,
+    JFUSE_LL_OP_OPEN,
+    JFUSE_LL_OP_READ,
+    JFUSE_LL_OP_WRITE,
+    JFUSE_LL_OP_RELEASE,
+    JFUSE_LL_OP_OPENDIR,
+    JFUSE_LL_OP_READDIR,
+    JFUSE_LL_OP_RELEASEDIR,
+    JFUSE_LL_OP_COUNT
+};
+
+extern const jFUSEMethodSpec jfuse26_lowlevel_methods[JFUSE_LL_OP_COUNT];
+
+/*
+ * The methods of FUSE26AsyncReplyOperations, using the same JFUSE_LL_OP_*
+ * indices.
+ */
+extern const jFUSEMethodSpec jfuse26_async_reply_methods[JFUSE_LL_OP_COUNT];
+
+/*
+ * Native state of a FUSERequest. It is allocated when a request is passed to
+ * an asynchronous reply file system and freed when the file system replies,
+ * which may happen on any thread after the callback has returned.
+ */
+struct jFUSERequest {
+    fuse_req_t req;
+    /* Copy of the file information passed to the callback, sent back by
+     * fuse_reply_open. */
+    struct fuse_file_info fi;
+    /* The size argument of read and readdir, which caps the reply. */
+    size_t size;
+    /* true for forget, which must be answered with fuse_reply_none. */
+    bool noReply;
+};
+
+/**
+ * Merges the contents of a FUSEEntryReply object into <code>target</code>.
+ */
+bool mergeEntryReply(JNIEnv *env, jobject source,
+        struct fuse_entry_param *target);
+
+/**
+ * Merges the contents of a FUSEAttrReply object into <code>target</code> and
+ * <code>attrTimeout</code>.
+ */
+bool mergeAttrReply(JNIEnv *env, jobject source, struct stat *target,
+        double *attrTimeout);
+
+/*
+ * Function definitions for our jFUSE low level callbacks. Each of them replies
+ * to req exactly once before returning.
+ */
+
+void jfuse_ll_init(void *userdata, struct fuse_conn_info *conn);
+
+void jfuse_ll_lookup(fuse_req_t req, fuse_ino_t parent, const char *name);
+
+void jfuse_ll_forget(fuse_req_t req, fuse_ino_t ino, unsigned long nlookup);
+
+void jfuse_ll_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_setattr(fuse_req_t req, fuse_ino_t ino, struct stat *attr,
+        int to_set, struct fuse_file_info *fi);
+
+void jfuse_ll_open(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *fi);
+
+void jfuse_ll_read(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi);
+
+void jfuse_ll_release(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_opendir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_readdir(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_releasedir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+/*
+ * Callbacks for FUSE26AsyncReplyOperations. These pass a FUSERequest to Java
+ * and return without replying, unless the Java method failed before replying.
+ */
+
+void jfuse_ll_async_lookup(fuse_req_t req, fuse_ino_t parent,
+        const char *name);
+
+void jfuse_ll_async_forget(fuse_req_t req, fuse_ino_t ino,
+        unsigned long nlookup);
+
+void jfuse_ll_async_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_async_setattr(fuse_req_t req, fuse_ino_t ino, struct stat *attr,
+        int to_set, struct fuse_file_info *fi);
+
+void jfuse_ll_async_open(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_async_read(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi);
+
+void jfuse_ll_async_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi);
+
+void jfuse_ll_async_release(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_async_opendir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_async_readdir(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi);
+
+void jfuse_ll_async_releasedir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+/*
+ * Callbacks for mounts with a jFUSERequestRing. These publish the request to
+ * the ring if possible, and otherwise fall back to the jfuse_ll_* callbacks.
+ */
+
+void jfuse_ll_ring_lookup(fuse_req_t req, fuse_ino_t parent,
+        const char *name);
+
+void jfuse_ll_ring_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi);
+
+void jfuse_ll_ring_read(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi);
+
+void jfuse_ll_ring_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi);
+
+/*
+ * The low level API has no fuse_get_context(), so the jFUSEContext is the
+ * userdata of the session, which every request carries.
+ */
+#define JFUSE_LL_OPERATION_INIT(req) \
+        jFUSEContext *context = (jFUSEContext*) fuse_req_userdata(req); \
+        jFUSEThreadState *threadState = context->getThreadState(); \
+        JNIEnv *env = threadState->getJNIEnv(); \
+        jobject obj = context->getFSProvider();
+
+#define JFUSE_LL_FS_PROVIDER_METHOD_OK(const_name) \
+    jmethodID fsProviderMid = \
+            context->getFSProviderMethodID(JFUSE_LL_OP_##const_name); \
+    if(fsProviderMid == NULL) { \
+        CSLogError("File system does not implement \"%s\" with signature %s", \
+                OPS_LL_##const_name##_NAME, OPS_LL_##const_name##_SIGNATURE); \
+    } \
+    else
+
+#define JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(const_name) \
+    jmethodID fsProviderMid = \
+            context->getFSProviderMethodID(JFUSE_LL_OP_##const_name); \
+    if(fsProviderMid == NULL) { \
+        CSLogError("File system does not implement \"%s\" with signature %s", \
+                OPS_LL_##const_name##_NAME, \
+                OPS_LL_ASYNC_##const_name##_SIGNATURE); \
+    } \
+    else
+
+/*
+ * Converts the return value of a Java low level operation into an error reply.
+ * Java returns 0 or a positive value on success and a negated errno value on
+ * failure, just like in the high level API.
+ */
+#define JFUSE_LL_REPLY_ERR(req, retval) \
+        fuse_reply_err(req, (retval) < 0 ? -(retval) : 0)
+
+#endif	/* _FUSE26_LOWLEVEL_MODULE_H */
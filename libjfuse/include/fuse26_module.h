@@ -27,9 +27,91 @@
 #include "jFUSEContext.h"
 #include "JNIUtil.h"
 #include "FUSE26Util.h"
+#include "FUSE26BufferUtil.h"
+#include "FUSE29Util.h"
+#include "FUSEFillDirContext.h"
+#include "FUSEDirFilContext.h"
 
 void jfuse_set_context(jFUSEContext *ctx);
 
+/*
+ * Indices of the file system methods in jfuse26_methods. The method IDs are
+ * resolved when the file system is mounted and looked up through
+ * jFUSEContext::getFSProviderMethodID.
+ */
+enum {
+    JFUSE_OP_GETATTR,
+    JFUSE_OP_READLINK,
+    JFUSE_OP_GETDIR,
+    JFUSE_OP_MKNOD,
+    JFUSE_OP_MKDIR,
+    JFUSE_OP_UNLINK,
+    JFUSE_OP_RMDIR,
+    JFUSE_OP_SYMLINK,
+    JFUSE_OP_RENAME,
+    JFUSE_OP_LINK,
+    JFUSE_OP_CHMOD,
+    JFUSE_OP_CHOWN,
+    JFUSE_OP_TRUNCATE,
+    JFUSE_OP_UTIME,
+    JFUSE_OP_OPEN,
+    JFUSE_OP_READ,
+    JFUSE_OP_WRITE,
+    JFUSE_OP_STATFS,
+    JFUSE_OP_FLUSH,
+    JFUSE_OP_RELEASE,
+    JFUSE_OP_FSYNC,
+    JFUSE_OP_SETXATTR,
+    JFUSE_OP_GETXATTR,
+    JFUSE_OP_LISTXATTR,
+    JFUSE_OP_REMOVEXATTR,
+    JFUSE_OP_OPENDIR,
+    JFUSE_OP_READDIR,
+    JFUSE_OP_RELEASEDIR,
+    JFUSE_OP_FSYNCDIR,
+    JFUSE_OP_INIT,
+    JFUSE_OP_DESTROY,
+    JFUSE_OP_ACCESS,
+    JFUSE_OP_CREATE,
+    JFUSE_OP_FTRUNCATE,
+    JFUSE_OP_FGETATTR,
+    JFUSE_OP_LOCK,
+    JFUSE_OP_UTIMENS,
+    JFUSE_OP_BMAP,
+    /* FUSE26BufferOperations variants, preferred over the regular methods
+     * when the file system implements them. */
+    JFUSE_OP_GETATTR_BUFFER,
+    JFUSE_OP_FGETATTR_BUFFER,
+    JFUSE_OP_OPEN_BUFFER,
+    JFUSE_OP_CREATE_BUFFER,
+    JFUSE_OP_READ_BUFFER,
+    JFUSE_OP_WRITE_BUFFER,
+    JFUSE_OP_FLUSH_BUFFER,
+    JFUSE_OP_RELEASE_BUFFER,
+    JFUSE_OP_FSYNC_BUFFER,
+    JFUSE_OP_FTRUNCATE_BUFFER,
+#if FUSE_VERSION >= 29
+    JFUSE_OP_READ_BUF,
+    JFUSE_OP_WRITE_BUF,
+    JFUSE_OP_FALLOCATE,
+#endif /* FUSE_VERSION >= 29 */
+#if defined(__APPLE__) || defined(__DARWIN__)
+#if (__FreeBSD__ >= 10)
+    JFUSE_OP_EXCHANGE,
+    JFUSE_OP_GETXTIMES,
+    JFUSE_OP_SETBKUPTIME,
+    JFUSE_OP_SETCHGTIME,
+    JFUSE_OP_SETCRTIME,
+    JFUSE_OP_CHFLAGS,
+    JFUSE_OP_SETATTR_X,
+    JFUSE_OP_FSETATTR_X,
+#endif /* __FreeBSD__ >= 10 */
+#endif /* defined(__APPLE__) || defined(__DARWIN__) */
+    JFUSE_OP_COUNT
+};
+
+extern const jFUSEMethodSpec jfuse26_methods[JFUSE_OP_COUNT];
+
 /*
  * Function definitions for our jFUSE callbacks.
  */
@@ -122,6 +204,16 @@ int jfuse_utimens(const char *, const struct timespec tv[2]);
 
 int jfuse_bmap(const char *, size_t blocksize, uint64_t *idx);
 
+#if FUSE_VERSION >= 29
+int jfuse_read_buf(const char *, struct fuse_bufvec **, size_t, off_t,
+        struct fuse_file_info *);
+
+int jfuse_write_buf(const char *, struct fuse_bufvec *, off_t,
+        struct fuse_file_info *);
+
+int jfuse_fallocate(const char *, int, off_t, off_t, struct fuse_file_info *);
+#endif /* FUSE_VERSION >= 29 */
+
 #define handleError(...) CSPanicWithMessage("%s(%d): Unspecified panic condition.", __FILE__, __LINE__)
 
 static inline jFUSEContext* getjFUSEContext() {
@@ -139,13 +231,22 @@ static inline jFUSEContext* getjFUSEContext() {
         CSPanicWithMessage("Could not create new Java byte array from C string \"%s\".", str); \
     }
 */
+/*
+ * When path buffers are reused, the path is copied into the calling
+ * thread's read-only path buffer for the argument, which avoids creating two
+ * Java objects and calling asReadOnlyBuffer for every path.
+ */
 #define JAVA_ARG_CSTRING_BYTEBUFFER(num, str) \
     CSLogDebug("Processing argument %d (%s) of type read-only ByteBuffer (from C string)...", num, #str); \
     jobject java_arg##num; \
     if(str == NULL) \
         java_arg##num = NULL; \
     else { \
-        java_arg##num = JNIUtil::cstringToReadonlyByteBuffer(env, str); \
+        java_arg##num = NULL; \
+        if(context->getReusePathBuffers()) \
+            java_arg##num = threadState->getPathBuffer(num - 1, str); \
+        if(java_arg##num == NULL) \
+            java_arg##num = JNIUtil::cstringToReadonlyByteBuffer(env, str); \
         if(java_arg##num == NULL) { \
             if(env->ExceptionCheck() == JNI_TRUE) \
                 env->ExceptionDescribe(); \
@@ -212,9 +313,28 @@ static inline jFUSEContext* getjFUSEContext() {
         } \
     }
 
+/*
+ * Creates an argument object of one of the reusable types. If argument object
+ * reuse is enabled for the mount, the object owned by the current thread is
+ * refilled from src, otherwise a new object is created.
+ */
+#define JAVA_ARG_REUSABLE_OBJECT(num, src, threadStateGetter, newFunction, \
+        fillFunction) \
+    jobject java_arg##num; \
+    if(context->getReuseArgumentObjects()) { \
+        java_arg##num = threadState->threadStateGetter; \
+        if(java_arg##num != NULL && \
+                !FUSE26Util::fillFunction(env, src, java_arg##num)) { \
+            env->DeleteLocalRef(java_arg##num); \
+            java_arg##num = NULL; \
+        } \
+    } \
+    else \
+        java_arg##num = FUSE26Util::newFunction(env, src);
+
 #define JAVA_ARG_STAT(num, stbuf) \
     CSLogDebug("Processing argument %d (%s) of type struct stat...", num, #stbuf); \
-    jobject java_arg##num = FUSE26Util::newStat(env, stbuf); \
+    JAVA_ARG_REUSABLE_OBJECT(num, stbuf, getStat(), newStat, fillStat); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
@@ -223,7 +343,8 @@ static inline jFUSEContext* getjFUSEContext() {
 
 #define JAVA_ARG_FUSE_FILE_INFO(num, fi) \
     CSLogDebug("Processing argument %d (%s) of type struct fuse_file_info...", num, #fi); \
-    jobject java_arg##num = FUSE26Util::newFUSEFileInfo(env, fi); \
+    JAVA_ARG_REUSABLE_OBJECT(num, fi, getFUSEFileInfo(), newFUSEFileInfo, \
+            fillFUSEFileInfo); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
@@ -232,34 +353,81 @@ static inline jFUSEContext* getjFUSEContext() {
 
 #define JAVA_ARG_FLOCK(num, flk) \
     CSLogDebug("Processing argument %d (%s) of type struct flock...", num, #flk); \
-    jobject java_arg##num = FUSE26Util::newFlock(env, flk); \
+    JAVA_ARG_REUSABLE_OBJECT(num, flk, getFlock(), newFlock, fillFlock); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
         CSPanicWithMessage("Could not create new Flock."); \
     }
 
+/*
+ * The native context of a FUSEFillDir / FUSEDirFil lives in the stack frame
+ * of the callback, and the Java object is detached from it by the matching
+ * JAVA_ARG_*_CLEANUP macro before the callback returns. No native memory is
+ * left for the Java object to free.
+ */
 #define JAVA_ARG_FUSE_FILL_DIR(num, filler, buf) \
     CSLogDebug("Processing argument %d (%s) of type fuse_fill_dir_t...", num, #filler); \
-    jobject java_arg##num = FUSE26Util::newFUSEFillDir(env, filler, buf); \
+    FUSEFillDirContext java_arg##num##_context(filler, buf); \
+    jobject java_arg##num = \
+            FUSE26Util::newFUSEFillDir(env, &java_arg##num##_context); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
         CSPanicWithMessage("Could not create new FUSEFillDir."); \
     }
 
+#define JAVA_ARG_FUSE_FILL_DIR_CLEANUP(num) \
+    FUSE26Util::invalidateFUSEFillDir(env, java_arg##num); \
+    env->DeleteLocalRef(java_arg##num)
+
 #define JAVA_ARG_FUSE_DIRFIL(num, dirfil, dirh) \
     CSLogDebug("Processing argument %d (%s) of type fuse_dirfil_t...", num, #dirfil); \
-    jobject java_arg##num = FUSE26Util::newFUSEDirFil(env, dirfil, dirh); \
+    FUSEDirFilContext java_arg##num##_context(dirfil, dirh); \
+    jobject java_arg##num = \
+            FUSE26Util::newFUSEDirFil(env, &java_arg##num##_context); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
         CSPanicWithMessage("Could not create new FUSEDirFil."); \
     }
 
+#define JAVA_ARG_FUSE_DIRFIL_CLEANUP(num) \
+    FUSE26Util::invalidateFUSEDirFil(env, java_arg##num); \
+    env->DeleteLocalRef(java_arg##num)
+
+#if FUSE_VERSION >= 29
+#define JAVA_ARG_FUSE_BUFVEC(num) \
+    CSLogDebug("Processing argument %d of type struct fuse_bufvec**...", num); \
+    jobject java_arg##num = FUSE29Util::newFUSEBufVec(env); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEBufVec."); \
+    }
+
+/*
+ * Like JAVA_ARG_FUSE_FILL_DIR, the FUSEWriteBuf refers to a vector owned by
+ * the caller and is detached from it by JAVA_ARG_FUSE_WRITE_BUF_CLEANUP.
+ */
+#define JAVA_ARG_FUSE_WRITE_BUF(num, bufv) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_bufvec*...", num, #bufv); \
+    jobject java_arg##num = FUSE29Util::newFUSEWriteBuf(env, bufv); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEWriteBuf."); \
+    }
+
+#define JAVA_ARG_FUSE_WRITE_BUF_CLEANUP(num) \
+    FUSE29Util::invalidateFUSEWriteBuf(env, java_arg##num); \
+    env->DeleteLocalRef(java_arg##num)
+#endif /* FUSE_VERSION >= 29 */
+
 #define JAVA_ARG_TIMESPEC(num, ts) \
     CSLogDebug("Processing argument %d (%s) of type struct timespec...", num, #ts); \
-    jobject java_arg##num = FUSE26Util::newTimespec(env, ts); \
+    JAVA_ARG_REUSABLE_OBJECT(num, ts, getTimespec(num), newTimespec, \
+            fillTimespec); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
@@ -300,13 +468,38 @@ static inline jFUSEContext* getjFUSEContext() {
 
 #define JAVA_ARG_STATVFS(num, stvfsbuf) \
     CSLogDebug("Processing argument %d (%s) of type struct statvfs...", num, #stvfsbuf); \
-    jobject java_arg##num = FUSE26Util::newStatVFS(env, stvfsbuf); \
+    JAVA_ARG_REUSABLE_OBJECT(num, stvfsbuf, getStatVFS(), newStatVFS, \
+            fillStatVFS); \
     if(java_arg##num == NULL) { \
         if(env->ExceptionCheck() == JNI_TRUE) \
             env->ExceptionDescribe(); \
         CSPanicWithMessage("Could not create new StatVFS."); \
     }
 
+/*
+ * Off-heap argument views. The StatBuffer / FileInfoBuffer object of the
+ * current thread is filled from the C structure and passed to Java.
+ */
+#define JAVA_ARG_STAT_BUFFER(num, stbuf) \
+    CSLogDebug("Processing argument %d (%s) of type struct stat (buffer)...", num, #stbuf); \
+    jobject java_arg##num = threadState->getStatBuffer(); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new StatBuffer."); \
+    } \
+    FUSE26BufferUtil::statToBuffer(stbuf, threadState->getStatBufferData());
+
+#define JAVA_ARG_FILE_INFO_BUFFER(num, fi) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_file_info (buffer)...", num, #fi); \
+    jobject java_arg##num = threadState->getFileInfoBuffer(); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FileInfoBuffer."); \
+    } \
+    FUSE26BufferUtil::fileInfoToBuffer(fi, threadState->getFileInfoBufferData());
+
 #define JAVA_ARG_CLEANUP(num) \
     env->DeleteLocalRef(java_arg##num)
 
@@ -319,16 +512,24 @@ static inline jFUSEContext* getjFUSEContext() {
         env->ExceptionClear(); \
     }
 
-#define JFUSE_FS_PROVIDER_MID_OK(name, signature) \
-    jmethodID fsProviderMid = context->getFSProviderMethod(name, signature); \
-    if(fsProviderMid == NULL || env->ExceptionCheck() == JNI_TRUE) { \
-        CSLogError("Could not getFSProviderMethod for \"%s\" with signature %s", \
-                name, signature); \
+#define JFUSE_FS_PROVIDER_METHOD_OK(const_name) \
+    jmethodID fsProviderMid = \
+            context->getFSProviderMethodID(JFUSE_OP_##const_name); \
+    if(fsProviderMid == NULL) { \
+        CSLogError("File system does not implement \"%s\" with signature %s", \
+                OPS_##const_name##_NAME, OPS_##const_name##_SIGNATURE); \
     } \
     else
 
-#define JFUSE_FS_PROVIDER_METHOD_OK(const_name) \
-    JFUSE_FS_PROVIDER_MID_OK(OPS_##const_name##_NAME, OPS_##const_name##_SIGNATURE)
+/*
+ * Like JFUSE_FS_PROVIDER_METHOD_OK, but for the FUSE26BufferOperations variant
+ * of the operation. Not having a buffer variant is not an error, so this is
+ * typically followed by an else branch calling the regular method.
+ */
+#define JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(const_name) \
+    jmethodID fsProviderMid = \
+            context->getFSProviderMethodID(JFUSE_OP_##const_name##_BUFFER); \
+    if(fsProviderMid != NULL)
 
 #define JFUSE_FS_PROVIDER_MID fsProviderMid
 
@@ -344,6 +545,16 @@ static inline jFUSEContext* getjFUSEContext() {
                 CSPanicWithMessage("Could not merge FUSEFileInfo -> struct fuse_file_info"); \
         }
 
+#define JFUSE_MERGE_STAT_BUFFER(stbuf) \
+        if(env->ExceptionCheck() == JNI_FALSE) \
+            FUSE26BufferUtil::bufferToStat(threadState->getStatBufferData(), \
+                    stbuf);
+
+#define JFUSE_MERGE_FILE_INFO_BUFFER(fi) \
+        if(env->ExceptionCheck() == JNI_FALSE) \
+            FUSE26BufferUtil::bufferToFileInfo( \
+                    threadState->getFileInfoBufferData(), fi);
+
 #define JFUSE_MERGE_FLOCK(flock_object, flk) \
         if(env->ExceptionCheck() == JNI_FALSE) { \
             if (!FUSE26Util::mergeFlock(env, flock_object, flk)) \
@@ -385,7 +596,8 @@ static inline jFUSEContext* getjFUSEContext() {
 
 #define JFUSE_OPERATION_INIT() \
         jFUSEContext *context = getjFUSEContext(); \
-        JNIEnv *env = context->getJNIEnv(); \
+        jFUSEThreadState *threadState = context->getThreadState(); \
+        JNIEnv *env = threadState->getJNIEnv(); \
         jobject obj = context->getFSProvider();
 
 #define JFUSE_FS_PROVIDER_CALL(...) \
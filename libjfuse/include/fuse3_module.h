@@ -0,0 +1,457 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _FUSE3_MODULE_H
+#define	_FUSE3_MODULE_H
+
+#define FUSE_USE_VERSION 31
+
+#include <jni.h>
+#include <fuse.h>
+#include "jFUSEContext.h"
+#include "JNIUtil.h"
+#include "FUSE3Util.h"
+#include "FUSE3FillDirContext.h"
+
+/*
+ * Indices of the file system methods in jfuse3_methods. The method IDs are
+ * resolved when the file system is mounted and looked up through
+ * jFUSEContext::getFSProviderMethodID.
+ */
+enum {
+    JFUSE3_OP_GETATTR,
+    JFUSE3_OP_READLINK,
+    JFUSE3_OP_MKNOD,
+    JFUSE3_OP_MKDIR,
+    JFUSE3_OP_UNLINK,
+    JFUSE3_OP_RMDIR,
+    JFUSE3_OP_SYMLINK,
+    JFUSE3_OP_RENAME,
+    JFUSE3_OP_LINK,
+    JFUSE3_OP_CHMOD,
+    JFUSE3_OP_CHOWN,
+    JFUSE3_OP_TRUNCATE,
+    JFUSE3_OP_OPEN,
+    JFUSE3_OP_READ,
+    JFUSE3_OP_WRITE,
+    JFUSE3_OP_STATFS,
+    JFUSE3_OP_FLUSH,
+    JFUSE3_OP_RELEASE,
+    JFUSE3_OP_FSYNC,
+    JFUSE3_OP_SETXATTR,
+    JFUSE3_OP_GETXATTR,
+    JFUSE3_OP_LISTXATTR,
+    JFUSE3_OP_REMOVEXATTR,
+    JFUSE3_OP_OPENDIR,
+    JFUSE3_OP_READDIR,
+    JFUSE3_OP_RELEASEDIR,
+    JFUSE3_OP_FSYNCDIR,
+    JFUSE3_OP_INIT,
+    JFUSE3_OP_DESTROY,
+    JFUSE3_OP_ACCESS,
+    JFUSE3_OP_CREATE,
+    JFUSE3_OP_LOCK,
+    JFUSE3_OP_UTIMENS,
+    JFUSE3_OP_BMAP,
+    JFUSE3_OP_COPY_FILE_RANGE,
+    JFUSE3_OP_FALLOCATE,
+#if FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8)
+    JFUSE3_OP_LSEEK,
+#endif /* FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8) */
+    JFUSE3_OP_COUNT
+};
+
+extern const jFUSEMethodSpec jfuse3_methods[JFUSE3_OP_COUNT];
+
+/*
+ * Function definitions for our jFUSE callbacks.
+ */
+
+int jfuse3_getattr(const char *, struct stat *, struct fuse_file_info *);
+
+int jfuse3_readlink(const char *, char *, size_t);
+
+int jfuse3_mknod(const char *, mode_t, dev_t);
+
+int jfuse3_mkdir(const char *, mode_t);
+
+int jfuse3_unlink(const char *);
+
+int jfuse3_rmdir(const char *);
+
+int jfuse3_symlink(const char *, const char *);
+
+int jfuse3_rename(const char *, const char *, unsigned int);
+
+int jfuse3_link(const char *, const char *);
+
+int jfuse3_chmod(const char *, mode_t, struct fuse_file_info *);
+
+int jfuse3_chown(const char *, uid_t, gid_t, struct fuse_file_info *);
+
+int jfuse3_truncate(const char *, off_t, struct fuse_file_info *);
+
+int jfuse3_open(const char *, struct fuse_file_info *);
+
+int jfuse3_read(const char *, char *, size_t, off_t,
+        struct fuse_file_info *);
+
+int jfuse3_write(const char *, const char *, size_t, off_t,
+        struct fuse_file_info *);
+
+int jfuse3_statfs(const char *, struct statvfs *);
+
+int jfuse3_flush(const char *, struct fuse_file_info *);
+
+int jfuse3_release(const char *, struct fuse_file_info *);
+
+int jfuse3_fsync(const char *, int, struct fuse_file_info *);
+
+int jfuse3_setxattr(const char *, const char *, const char *, size_t, int);
+
+int jfuse3_getxattr(const char *, const char *, char *, size_t);
+
+int jfuse3_listxattr(const char *, char *, size_t);
+
+int jfuse3_removexattr(const char *, const char *);
+
+int jfuse3_opendir(const char *, struct fuse_file_info *);
+
+int jfuse3_readdir(const char *, void *, fuse_fill_dir_t, off_t,
+        struct fuse_file_info *, enum fuse_readdir_flags);
+
+int jfuse3_releasedir(const char *, struct fuse_file_info *);
+
+int jfuse3_fsyncdir(const char *, int, struct fuse_file_info *);
+
+void *jfuse3_init(struct fuse_conn_info *conn, struct fuse_config *cfg);
+
+void jfuse3_destroy(void *);
+
+int jfuse3_access(const char *, int);
+
+int jfuse3_create(const char *, mode_t, struct fuse_file_info *);
+
+int jfuse3_lock(const char *, struct fuse_file_info *, int cmd,
+        struct flock *);
+
+int jfuse3_utimens(const char *, const struct timespec tv[2],
+        struct fuse_file_info *);
+
+int jfuse3_bmap(const char *, size_t blocksize, uint64_t *idx);
+
+ssize_t jfuse3_copy_file_range(const char *, struct fuse_file_info *, off_t,
+        const char *, struct fuse_file_info *, off_t, size_t, int);
+
+int jfuse3_fallocate(const char *, int, off_t, off_t, struct fuse_file_info *);
+
+#if FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8)
+off_t jfuse3_lseek(const char *, off_t, int, struct fuse_file_info *);
+#endif /* FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8) */
+
+static inline jFUSEContext* getjFUSEContext() {
+    struct fuse_context *fuse_ctx = fuse_get_context();
+    return (jFUSEContext*)fuse_ctx->private_data;
+}
+
+/*
+ * The argument and call macros below mirror those of fuse26_module.h, with
+ * the FUSE 3 conversions. Most FUSE 3 operations get a NULL fuse_file_info
+ * when the kernel request isn't tied to an open file, which is passed on to
+ * Java as a null FUSEFileInfo.
+ */
+
+#define JAVA_ARG_CSTRING_BYTEBUFFER(num, str) \
+    CSLogDebug("Processing argument %d (%s) of type read-only ByteBuffer (from C string)...", num, #str); \
+    jobject java_arg##num; \
+    if(str == NULL) \
+        java_arg##num = NULL; \
+    else { \
+        java_arg##num = NULL; \
+        if(context->getReusePathBuffers()) \
+            java_arg##num = threadState->getPathBuffer(num - 1, str); \
+        if(java_arg##num == NULL) \
+            java_arg##num = JNIUtil::cstringToReadonlyByteBuffer(env, str); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new Java read-only ByteBuffer from C string \"%s\".", str); \
+        } \
+    }
+
+#define JAVA_ARG_BYTEBUFFER(num, buf, len) \
+    CSLogDebug("Processing argument %d (%s) of type ByteByffer...", num, #buf); \
+    jobject java_arg##num; \
+    if(buf == NULL) \
+        java_arg##num = NULL; \
+    else { \
+        java_arg##num = JNIUtil::bytesToByteBuffer(env, buf, len); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new Java ByteBuffer from char* buffer."); \
+        } \
+    }
+
+#define JAVA_ARG_READONLY_BYTEBUFFER(num, buf, len) \
+    CSLogDebug("Processing argument %d (%s) of type ByteByffer (read-only)...", num, #buf); \
+    jobject java_arg##num; \
+    if(buf == NULL) \
+        java_arg##num = NULL; \
+    else { \
+        java_arg##num = JNIUtil::bytesToReadonlyByteBuffer(env, buf, len); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new Java read-only ByteBuffer from const char* buffer."); \
+        } \
+    }
+
+#define JAVA_ARG_REUSABLE_OBJECT(num, src, threadStateGetter, newFunction, \
+        fillFunction) \
+    jobject java_arg##num; \
+    if(context->getReuseArgumentObjects()) { \
+        java_arg##num = threadState->threadStateGetter; \
+        if(java_arg##num != NULL && \
+                !FUSE3Util::fillFunction(env, src, java_arg##num)) { \
+            env->DeleteLocalRef(java_arg##num); \
+            java_arg##num = NULL; \
+        } \
+    } \
+    else \
+        java_arg##num = FUSE3Util::newFunction(env, src);
+
+#define JAVA_ARG_STAT(num, stbuf) \
+    CSLogDebug("Processing argument %d (%s) of type struct stat...", num, #stbuf); \
+    JAVA_ARG_REUSABLE_OBJECT(num, stbuf, getStat(), newStat, fillStat); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new Java Stat object from stat buffer."); \
+    }
+
+#define JAVA_ARG_FUSE_FILE_INFO(num, fi) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_file_info...", num, #fi); \
+    jobject java_arg##num = NULL; \
+    if(fi != NULL) { \
+        if(context->getReuseArgumentObjects()) { \
+            java_arg##num = threadState->getFUSEFileInfo(); \
+            if(java_arg##num != NULL && \
+                    !FUSE3Util::fillFUSEFileInfo(env, fi, java_arg##num)) { \
+                env->DeleteLocalRef(java_arg##num); \
+                java_arg##num = NULL; \
+            } \
+        } \
+        else \
+            java_arg##num = FUSE3Util::newFUSEFileInfo(env, fi); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new FUSEFileInfo."); \
+        } \
+    }
+
+/*
+ * For the second fuse_file_info of an operation, which can't share the
+ * reusable FUSEFileInfo of the thread with the first.
+ */
+#define JAVA_ARG_NEW_FUSE_FILE_INFO(num, fi) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_file_info...", num, #fi); \
+    jobject java_arg##num = NULL; \
+    if(fi != NULL) { \
+        java_arg##num = FUSE3Util::newFUSEFileInfo(env, fi); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new FUSEFileInfo."); \
+        } \
+    }
+
+#define JAVA_ARG_FLOCK(num, flk) \
+    CSLogDebug("Processing argument %d (%s) of type struct flock...", num, #flk); \
+    JAVA_ARG_REUSABLE_OBJECT(num, flk, getFlock(), newFlock, fillFlock); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new Flock."); \
+    }
+
+/*
+ * The native context of a FUSE3FillDir lives in the stack frame of the
+ * callback, and the Java object is detached from it by
+ * JAVA_ARG_FUSE3_FILL_DIR_CLEANUP before the callback returns.
+ */
+#define JAVA_ARG_FUSE3_FILL_DIR(num, filler, buf) \
+    CSLogDebug("Processing argument %d (%s) of type fuse_fill_dir_t...", num, #filler); \
+    FUSE3FillDirContext java_arg##num##_context(filler, buf); \
+    jobject java_arg##num = \
+            FUSE3Util::newFUSE3FillDir(env, &java_arg##num##_context); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSE3FillDir."); \
+    }
+
+#define JAVA_ARG_FUSE3_FILL_DIR_CLEANUP(num) \
+    FUSE3Util::invalidateFUSE3FillDir(env, java_arg##num); \
+    env->DeleteLocalRef(java_arg##num)
+
+#define JAVA_ARG_TIMESPEC(num, ts) \
+    CSLogDebug("Processing argument %d (%s) of type struct timespec...", num, #ts); \
+    JAVA_ARG_REUSABLE_OBJECT(num, ts, getTimespec(num), newTimespec, \
+            fillTimespec); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new Timespec."); \
+    }
+
+#define JAVA_ARG_LONGREF(num, lr) \
+    CSLogDebug("Processing argument %d (%s) of type uint64_t*...", num, #lr); \
+    jobject java_arg##num = FUSE3Util::newLongRef(env, lr); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new LongRef."); \
+    }
+
+#define JAVA_ARG_FUSE3_CONN_INFO(num, conn) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_conn_info...", num, #conn); \
+    jobject java_arg##num = FUSE3Util::newFUSE3ConnInfo(env, conn); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSE3ConnInfo."); \
+    }
+
+#define JAVA_ARG_FUSE_CONFIG(num, cfg) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_config...", num, #cfg); \
+    jobject java_arg##num = FUSE3Util::newFUSEConfig(env, cfg); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEConfig."); \
+    }
+
+#define JAVA_ARG_STATVFS(num, stvfsbuf) \
+    CSLogDebug("Processing argument %d (%s) of type struct statvfs...", num, #stvfsbuf); \
+    JAVA_ARG_REUSABLE_OBJECT(num, stvfsbuf, getStatVFS(), newStatVFS, \
+            fillStatVFS); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new StatVFS."); \
+    }
+
+#define JAVA_ARG_CLEANUP(num) \
+    env->DeleteLocalRef(java_arg##num)
+
+#define JAVA_ARG(num) java_arg##num
+
+#define JAVA_EXCEPTION_CHECK(operation_name) \
+    if(env->ExceptionCheck() == JNI_TRUE) { \
+        CSLogError("Exception occurred when executing " #operation_name "."); \
+        env->ExceptionDescribe(); \
+        env->ExceptionClear(); \
+    }
+
+#define JFUSE_FS_PROVIDER_METHOD_OK(const_name) \
+    jmethodID fsProviderMid = \
+            context->getFSProviderMethodID(JFUSE3_OP_##const_name); \
+    if(fsProviderMid == NULL) { \
+        CSLogError("File system does not implement \"%s\" with signature %s", \
+                OPS3_##const_name##_NAME, OPS3_##const_name##_SIGNATURE); \
+    } \
+    else
+
+#define JFUSE_FS_PROVIDER_MID fsProviderMid
+
+#define JFUSE_MERGE_STAT(stat_object, stbuf) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if(!FUSE3Util::mergeStat(env, stat_object, stbuf)) \
+                CSPanicWithMessage("Could not merge Stat -> struct stat"); \
+        }
+
+#define JFUSE_MERGE_FUSE_FILE_INFO(ffi_object, fi) \
+        if(fi != NULL && env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeFUSEFileInfo(env, ffi_object, fi)) \
+                CSPanicWithMessage("Could not merge FUSEFileInfo -> struct fuse_file_info"); \
+        }
+
+#define JFUSE_MERGE_FLOCK(flock_object, flk) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeFlock(env, flock_object, flk)) \
+                CSPanicWithMessage("Could not merge Flock -> struct flock"); \
+        }
+
+#define JFUSE_MERGE_LONGREF(lr_object, lr) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeLongRef(env, lr_object, lr)) \
+                CSPanicWithMessage("Could not merge LongRef -> uint64_t*"); \
+        }
+
+#define JFUSE_MERGE_STATVFS(statvfs_object, statvfsbuf) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeStatVFS(env, statvfs_object, statvfsbuf)) \
+                CSPanicWithMessage("Could not merge StatVFS -> struct statvfs"); \
+        }
+
+#define JFUSE_MERGE_FUSE3_CONN_INFO(conn_object, conn) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeFUSE3ConnInfo(env, conn_object, conn)) \
+                CSPanicWithMessage("Could not merge FUSE3ConnInfo -> struct fuse_conn_info"); \
+        }
+
+#define JFUSE_MERGE_FUSE_CONFIG(cfg_object, cfg) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if (!FUSE3Util::mergeFUSEConfig(env, cfg_object, cfg)) \
+                CSPanicWithMessage("Could not merge FUSEConfig -> struct fuse_config"); \
+        }
+
+#define JFUSE_SET_RETVAL() \
+        if(env->ExceptionCheck() == JNI_FALSE) \
+            retval = jretval;
+
+#define JFUSE_OPERATION_INIT() \
+        jFUSEContext *context = getjFUSEContext(); \
+        jFUSEThreadState *threadState = context->getThreadState(); \
+        JNIEnv *env = threadState->getJNIEnv(); \
+        jobject obj = context->getFSProvider();
+
+#define JFUSE_FS_PROVIDER_CALL(...) \
+        jint jretval = env->CallIntMethod(obj, JFUSE_FS_PROVIDER_MID, __VA_ARGS__);
+
+#define JFUSE_FS_PROVIDER_CALL_LONG(...) \
+        jlong jretval = env->CallLongMethod(obj, JFUSE_FS_PROVIDER_MID, __VA_ARGS__);
+
+#define JFUSE_FS_INIT_CALL(...) \
+        jobject jretval = env->CallObjectMethod(obj, JFUSE_FS_PROVIDER_MID, __VA_ARGS__);
+
+#define JFUSE_FS_DESTROY_CALL(...) \
+        env->CallVoidMethod(obj, JFUSE_FS_PROVIDER_MID, __VA_ARGS__);
+
+#define JFUSE_HANDLE_INIT_RETVAL() \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            context->setPrivateData(jretval); \
+            if(jretval != NULL) \
+                env->DeleteLocalRef(jretval); \
+        }
+
+#endif	/* _FUSE3_MODULE_H */
+
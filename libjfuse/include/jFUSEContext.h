@@ -22,18 +22,108 @@
 
 #include <jni.h>
 
+#include "jFUSEThreadState.h"
+#include "jFUSEPassthroughTable.h"
+
+class jFUSERequestRing;
+
+/**
+ * Description of a method in a file system interface. The method IDs of a file
+ * system object are resolved from a table of these when it is mounted.
+ */
+struct jFUSEMethodSpec {
+    const char *name;
+    const char *signature;
+};
+
+/**
+ * Per-mount context for a jFUSE file system. The context may be accessed
+ * concurrently from any number of FUSE worker threads, so it only holds
+ * references that are valid across threads (global refs and the JavaVM). The
+ * JNIEnv of the current thread is looked up on demand by getJNIEnv(), which
+ * attaches the calling thread to the JVM the first time it is seen.
+ */
 class jFUSEContext {
 public:
-    jFUSEContext(JNIEnv *env, jobject fsProvider);
+    jFUSEContext(JNIEnv *env, jobject fsProvider,
+            const jFUSEMethodSpec *methods, int methodCount);
     virtual ~jFUSEContext();
 
     JNIEnv* getJNIEnv();
+    jFUSEThreadState* getThreadState();
     jobject getFSProvider();
-    jmethodID getFSProviderMethod(const char *name, const char *descriptor);
+    /**
+     * Returns the method ID of the file system method at <code>index</code> in
+     * the method table passed to the constructor, or NULL if the file system
+     * class does not implement it.
+     */
+    jmethodID getFSProviderMethodID(int index);
+    /**
+     * Forgets the method ID at <code>index</code>, so that the method is
+     * treated as not implemented. Used for methods that exist in the class
+     * but are disabled by its capabilities.
+     */
+    void clearFSProviderMethodID(int index);
     jobject getPrivateData();
     void setPrivateData(jobject obj);
     bool getInitEnabled();
     void setInitEnabled(bool b);
+    /**
+     * Whether the argument objects passed to the file system (Stat,
+     * FUSEFileInfo, ...) should be reused between calls on the same thread
+     * instead of being allocated for each call.
+     */
+    bool getReuseArgumentObjects();
+    void setReuseArgumentObjects(bool b);
+    /**
+     * Whether path arguments should be copied into read-only path buffers
+     * owned by the calling thread instead of being wrapped in new buffers
+     * for each call.
+     */
+    bool getReusePathBuffers();
+    void setReusePathBuffers(bool b);
+    /**
+     * Sets the MountHandle that is told about the mount becoming ready and
+     * about each thread that starts serving requests for it. May be NULL.
+     */
+    void setMountHandle(JNIEnv *env, jobject handle);
+    /**
+     * Tells the MountHandle, if any, that the file system is mounted and
+     * about to start serving requests.
+     */
+    void notifyMountReady(JNIEnv *env);
+    /**
+     * Tells the MountHandle, if any, the connection parameters negotiated
+     * with the kernel. <code>connInfo</code> is a FUSEConnInfo or
+     * FUSE3ConnInfo that the handle keeps.
+     */
+    void notifyConnInitialized(JNIEnv *env, jobject connInfo);
+    /**
+     * The request ring that low level requests are published to instead of
+     * being passed to Java by upcalls, or NULL. Not owned by the context.
+     */
+    jFUSERequestRing* getRequestRing();
+    void setRequestRing(jFUSERequestRing *ring);
+    /**
+     * The backing file descriptors registered by open and create, through
+     * which read and write are passed to local files natively.
+     */
+    jFUSEPassthroughTable* getPassthroughTable();
+
+    /**
+     * The descriptor of the FUSE device that the file system is served from,
+     * or -1 if it isn't known. Needed to register backing files with the
+     * kernel.
+     */
+    int getDeviceFd();
+    void setDeviceFd(int fd);
+
+    /**
+     * Whether backing files are registered with the kernel for FUSE
+     * passthrough. Setting it tells the MountHandle, if any.
+     */
+    bool getKernelPassthrough();
+    void setKernelPassthrough(JNIEnv *env, bool b);
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if __FreeBSD__ >= 10
     bool getXtimesEnabled();
@@ -41,10 +131,20 @@ public:
 #endif /* __FreeBSD__ >= 10 */
 #endif /* defined(__APPLE__) || defined(__DARWIN__) */
 protected:
-    JNIEnv *env;
+    JavaVM *jvm;
     jobject fsProvider;
+    jmethodID *fsProviderMethods;
+    int fsProviderMethodCount;
     jobject privateData;
     bool initEnabled;
+    bool reuseArgumentObjects;
+    bool reusePathBuffers;
+    jobject mountHandle;
+    jFUSERequestRing *requestRing;
+    jFUSEPassthroughTable passthroughTable;
+    int deviceFd;
+    /* Turned off by any worker thread whose registration fails. */
+    volatile bool kernelPassthrough;
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if __FreeBSD__ >= 10
     bool xtimesEnabled;
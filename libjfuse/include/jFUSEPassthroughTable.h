@@ -0,0 +1,164 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _JFUSEPASSTHROUGHTABLE_H
+#define	_JFUSEPASSTHROUGHTABLE_H
+
+#include <pthread.h>
+#include <stdint.h>
+#include <sys/types.h>
+
+/**
+ * The backing file descriptors that the file system registered for its open
+ * file handles, keyed by the fh of the handle. The table owns the descriptors
+ * and closes any that are still registered when it is destroyed.<br>
+ * Lookups and updates may come from any FUSE worker thread. A descriptor
+ * returned by get() stays valid while the handle is open, since FUSE doesn't
+ * release a handle with operations in flight.
+ */
+class jFUSEPassthroughTable {
+public:
+    jFUSEPassthroughTable();
+    virtual ~jFUSEPassthroughTable();
+
+    /**
+     * Registers <code>fd</code> as the backing descriptor of <code>fh</code>
+     * and takes ownership of it.
+     *
+     * @return true if successful, false if <code>fh</code> already has a
+     * backing descriptor (in which case the table does not take
+     * <code>fd</code>).
+     */
+    bool add(uint64_t fh, int fd);
+
+    /**
+     * Returns the backing descriptor of <code>fh</code>, or -1 if it has none.
+     */
+    int get(uint64_t fh);
+
+    /**
+     * Unregisters the backing descriptor of <code>fh</code> and returns it,
+     * handing ownership back to the caller, or returns -1 if it has none.
+     */
+    int remove(uint64_t fh);
+
+    /**
+     * Registers a duplicate of <code>backingFd</code> as the backing
+     * descriptor of <code>fh</code>. The caller keeps <code>backingFd</code>.
+     * Failures are logged and leave <code>fh</code> without passthrough.
+     */
+    void addDuplicate(uint64_t fh, int backingFd);
+
+    /**
+     * Records the kernel backing ID that was registered for the backing
+     * descriptor of <code>fh</code> (see openBacking()).
+     *
+     * @return true if successful, false if <code>fh</code> has no backing
+     * descriptor.
+     */
+    bool setBackingId(uint64_t fh, int32_t backingId);
+
+    /**
+     * Unregisters and closes the backing descriptor of <code>fh</code>, if
+     * it has one.
+     *
+     * @return the kernel backing ID recorded for <code>fh</code>, which the
+     * caller must close, or 0 if there is none.
+     */
+    int32_t release(uint64_t fh);
+
+    /**
+     * Registers <code>fd</code> as a backing file for FUSE passthrough on the
+     * FUSE device open as <code>deviceFd</code> (Linux 6.9 and later).
+     *
+     * @return a positive backing ID, or a negated errno value.
+     */
+    static int openBacking(int deviceFd, int fd);
+
+    /**
+     * Releases a backing ID obtained from openBacking().
+     *
+     * @return 0 if successful, or a negated errno value.
+     */
+    static int closeBacking(int deviceFd, int32_t backingId);
+
+    /**
+     * Reads up to <code>len</code> bytes at <code>off</code> from
+     * <code>fd</code>, retrying short reads until end of file.
+     *
+     * @return the number of bytes read, or a negated errno value if nothing
+     * could be read.
+     */
+    static int readAt(int fd, char *buf, size_t len, off_t off);
+
+    /**
+     * Writes <code>len</code> bytes at <code>off</code> to <code>fd</code>,
+     * retrying short writes.
+     *
+     * @return the number of bytes written, or a negated errno value if
+     * nothing could be written.
+     */
+    static int writeAt(int fd, const char *buf, size_t len, off_t off);
+
+    /**
+     * Copies up to <code>len</code> bytes at <code>offIn</code> in
+     * <code>fdIn</code> to <code>offOut</code> in <code>fdOut</code> inside
+     * the kernel with copy_file_range(2), retrying short copies until end of
+     * file.
+     *
+     * @return the number of bytes copied, or a negated errno value if
+     * nothing could be copied (-EOPNOTSUPP where copy_file_range(2) isn't
+     * available).
+     */
+    static ssize_t copyRange(int fdIn, off_t offIn, int fdOut, off_t offOut,
+            size_t len, int flags);
+
+    /**
+     * Allocates or deallocates <code>len</code> bytes at <code>off</code> in
+     * <code>fd</code> as fallocate(2) does for <code>mode</code>.
+     *
+     * @return 0 if successful, or a negated errno value (-EOPNOTSUPP where
+     * <code>mode</code> isn't supported).
+     */
+    static int allocate(int fd, int mode, off_t off, off_t len);
+
+private:
+    static const int BUCKET_COUNT = 256;
+
+    struct Entry {
+        uint64_t fh;
+        int fd;
+        int32_t backingId;
+        Entry *next;
+    };
+
+    Entry* removeEntry(uint64_t fh);
+
+    static inline int bucketIndex(uint64_t fh) {
+        return (int) ((fh ^ (fh >> 8) ^ (fh >> 32)) & (BUCKET_COUNT - 1));
+    }
+
+    pthread_rwlock_t lock;
+    /* Number of entries, read without the lock so that file systems without
+     * backing files don't pay for the lookup. */
+    volatile int count;
+    Entry *buckets[BUCKET_COUNT];
+};
+
+#endif	/* _JFUSEPASSTHROUGHTABLE_H */
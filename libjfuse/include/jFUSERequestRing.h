@@ -0,0 +1,146 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _JFUSEREQUESTRING_H
+#define	_JFUSEREQUESTRING_H
+
+#if !defined(__NetBSD__)
+
+#include <pthread.h>
+#include <stdint.h>
+
+#include "fuse26_lowlevel_module.h"
+
+/*
+ * Layout of a ring slot, shared with org.catacombae.jfuse.RequestRing. All
+ * fields are in native byte order. The request part is written by the FUSE
+ * worker thread, the result and the reply part by the Java consumer.
+ */
+#define JFUSE_RING_OP_LOOKUP                 1
+#define JFUSE_RING_OP_GETATTR                2
+#define JFUSE_RING_OP_READ                   3
+#define JFUSE_RING_OP_WRITE                  4
+
+#define JFUSE_RING_OFF_OPCODE                0  /* int */
+#define JFUSE_RING_OFF_DATA_LENGTH           4  /* int, name or write data */
+#define JFUSE_RING_OFF_INO                   8  /* long, parent for lookup */
+#define JFUSE_RING_OFF_OFFSET               16  /* long */
+#define JFUSE_RING_OFF_FH                   24  /* long */
+#define JFUSE_RING_OFF_SIZE                 32  /* int, read size */
+#define JFUSE_RING_OFF_FLAGS                36  /* int, open flags */
+#define JFUSE_RING_OFF_RESULT               40  /* int */
+#define JFUSE_RING_OFF_ENTRY_INO            64  /* long */
+#define JFUSE_RING_OFF_ENTRY_GENERATION     72  /* long */
+#define JFUSE_RING_OFF_ATTR_TIMEOUT         80  /* double */
+#define JFUSE_RING_OFF_ENTRY_TIMEOUT        88  /* double */
+/* 18 longs: dev, ino, mode, nlink, uid, gid, rdev, size, blocks, blksize,
+ * flags, gen, atime sec/nsec, mtime sec/nsec, ctime sec/nsec. */
+#define JFUSE_RING_OFF_STAT                 96
+#define JFUSE_RING_HEADER_SIZE             256
+
+/**
+ * A ring of request slots in native memory that is shared with Java through a
+ * direct buffer. The single FUSE worker thread of a mount publishes decoded
+ * requests into it, and Java consumer threads claim published requests in
+ * batches, run them and hand the results back in batches. Requests that don't
+ * fit (the ring is full, or the data is larger than a slot) are passed to
+ * Java by the normal upcall path instead.
+ *
+ * Slot i may only be republished when the request in it has been completed,
+ * so at most <code>capacity</code> requests are in flight. The sequence
+ * numbers are 32 bit and compared with unsigned arithmetic, so they may wrap.
+ */
+class jFUSERequestRing {
+public:
+    jFUSERequestRing(uint32_t capacity, uint32_t dataCapacity);
+    ~jFUSERequestRing();
+
+    /** Returns false if the ring memory could not be allocated. */
+    bool isValid() { return slots != NULL; }
+
+    char* getSlots() { return slots; }
+    size_t getSlotsSize() { return (size_t) capacity * slotSize; }
+    uint32_t getDataCapacity() { return dataCapacity; }
+
+    /**
+     * Starts serving a mount. Called from the mounting thread before the
+     * session loop starts.
+     */
+    void attach();
+
+    /**
+     * Stops serving a mount. Consumers get -1 from poll once the published
+     * requests have been claimed, and this method waits (for a limited time)
+     * for the claimed requests to be completed, since they can't be replied
+     * to after the session has been destroyed.
+     */
+    void close();
+
+    /**
+     * Producer side. Returns the memory of the next slot, storing its index in
+     * <code>index</code>, or NULL if the slot is still in use. The slot is
+     * only handed to consumers by publish().
+     */
+    char* beginPublish(uint32_t *index);
+    void publish(uint32_t index, fuse_req_t req);
+
+    /**
+     * Consumer side. Claims up to <code>max</code> published requests, storing
+     * their slot indices in <code>indices</code>. If there are none and
+     * <code>block</code> is true, waits for requests to be published. Returns
+     * the number of claimed requests, or -1 if the ring has been closed and
+     * all requests have been claimed.
+     */
+    int poll(jint *indices, int max, bool block);
+
+    /**
+     * Consumer side. Sends the replies that the consumer has written into the
+     * slots at <code>indices</code> and frees the slots.
+     */
+    void complete(const jint *indices, int count);
+
+private:
+    void reply(uint32_t index);
+
+    char *slots;
+    uint32_t capacity;
+    uint32_t mask;
+    uint32_t slotSize;
+    uint32_t dataCapacity;
+    fuse_req_t *reqs;
+    volatile uint32_t *busy;
+
+    volatile uint32_t published;
+    volatile uint32_t claimed;
+    volatile uint32_t outstanding;
+    volatile int waiters;
+    volatile bool attached;
+    volatile bool closed;
+
+    pthread_mutex_t mutex;
+    pthread_cond_t publishedCond;
+    pthread_cond_t completedCond;
+    /* Held for reading while replying, and for writing when detaching, so
+     * that no reply is sent to a session that is being torn down. */
+    pthread_rwlock_t replyLock;
+};
+
+#endif /* !defined(__NetBSD__) */
+
+#endif	/* _JFUSEREQUESTRING_H */
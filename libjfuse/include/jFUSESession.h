@@ -0,0 +1,44 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _JFUSESESSION_H
+#define	_JFUSESESSION_H
+
+#if !defined(__NetBSD__)
+
+#include "fuse26_lowlevel_module.h"
+#include "jFUSEContext.h"
+
+/**
+ * Native state of an org.catacombae.jfuse.FUSESession: a mounted low level
+ * session whose requests are received and processed by Java threads instead
+ * of a FUSE session loop. Created by FUSE.openSessionNative26 and destroyed by
+ * FUSESession.closeNative.
+ */
+struct jFUSESession {
+    struct fuse_session *se;
+    struct fuse_chan *chan;
+    jFUSEContext *context;
+    /* Copy of the mount point, needed for fuse_unmount. */
+    char *mountPoint;
+};
+
+#endif /* !defined(__NetBSD__) */
+
+#endif	/* _JFUSESESSION_H */
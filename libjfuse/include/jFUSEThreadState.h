@@ -0,0 +1,133 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#ifndef _JFUSETHREADSTATE_H
+#define	_JFUSETHREADSTATE_H
+
+#include <jni.h>
+
+#include "FUSE26BufferUtil.h"
+
+/**
+ * Thread local state for threads calling into Java from FUSE callbacks. FUSE
+ * worker threads are created by the FUSE library, so they are attached to the
+ * JVM the first time they call into Java and detached when they exit.
+ *
+ * The state also holds the argument objects that are reused between calls on
+ * the same thread when a file system is mounted with argument object reuse
+ * enabled.
+ */
+class jFUSEThreadState {
+public:
+    /**
+     * Returns the state of the calling thread, attaching the thread to
+     * <code>jvm</code> if it isn't already attached.
+     */
+    static jFUSEThreadState* get(JavaVM *jvm);
+
+    /**
+     * Releases the state of the calling thread, if any. This must be called by
+     * Java threads (which are not detached by us) before they return to Java
+     * for good, so that the global refs held by the state are freed while the
+     * thread is still attached.
+     */
+    static void release();
+
+    JNIEnv* getJNIEnv() { return env; }
+
+    /**
+     * The context (mount) that this thread last served a request for, used by
+     * jFUSEContext to notice threads that are new to a mount.
+     */
+    const void* getOwner() { return owner; }
+    void setOwner(const void *owner) { this->owner = owner; }
+
+    /* Reusable argument objects. All of these return a new local ref to an
+     * object owned by the thread state. The caller is responsible for filling
+     * in all fields before passing it to Java. */
+    jobject getStat();
+    jobject getFUSEFileInfo();
+    jobject getStatVFS();
+    jobject getFlock();
+    jobject getTimespec(int slot);
+
+    static const int TIMESPEC_SLOTS = 2;
+
+    /* Off-heap views (StatBuffer, FileInfoBuffer) over native memory owned by
+     * the thread state. They are always reused, regardless of the argument
+     * object reuse setting, since they are just views of the memory returned
+     * by the corresponding get*Data() method. */
+    jobject getStatBuffer();
+    jobject getFileInfoBuffer();
+    char* getStatBufferData() { return (char*) statBufferData; }
+    char* getFileInfoBufferData() { return (char*) fileInfoBufferData; }
+
+    /**
+     * Returns a new local ref to the read-only path buffer in
+     * <code>slot</code>, with <code>path</code> copied into it and its
+     * position and limit set to cover the path. The buffer is reused between
+     * calls, so no Java objects are created. Its state is reset through the
+     * private java.nio.Buffer fields if the JVM has them, and through
+     * Buffer.clear() and Buffer.limit(int) otherwise. Returns NULL if the
+     * path doesn't fit in the buffer or the buffer could not be re-pointed,
+     * in which case the caller should fall back to creating a new buffer.
+     */
+    jobject getPathBuffer(int slot, const char *path);
+
+    static const int PATH_BUFFER_SLOTS = 2;
+    static const int PATH_BUFFER_SIZE = 4096;
+
+private:
+    jFUSEThreadState(JavaVM *jvm, JNIEnv *env, bool attached);
+    ~jFUSEThreadState();
+
+    jobject getObject(jobject *slot, jclass clazz, jmethodID init);
+    jobject getBufferObject(jobject *slot, jclass clazz, jmethodID init,
+            void *data, jlong size);
+    /* Forgets all argument objects, deleting the global refs if deleteRefs is
+     * true. Returns true if there were any objects. */
+    bool clearObjects(bool deleteRefs);
+
+    static void destructor(void *data);
+    static void keyInit();
+
+    JavaVM *jvm;
+    JNIEnv *env;
+    /* true if we attached the thread, and thus are responsible for detaching
+     * it. Threads that were already attached (such as the mounting thread) are
+     * left alone. */
+    bool attached;
+    const void *owner;
+
+    jobject stat;
+    jobject fuseFileInfo;
+    jobject statVFS;
+    jobject flock;
+    jobject timespec[TIMESPEC_SLOTS];
+    jobject statBuffer;
+    jobject fileInfoBuffer;
+    jobject pathBuffer[PATH_BUFFER_SLOTS];
+    char *pathBufferData[PATH_BUFFER_SLOTS];
+
+    /* Backing memory for the buffer views (jlong for alignment). */
+    jlong statBufferData[FUSE26BufferUtil::STAT_BUFFER_SIZE / 8];
+    jlong fileInfoBufferData[FUSE26BufferUtil::FILE_INFO_BUFFER_SIZE / 8];
+};
+
+#endif	/* _JFUSETHREADSTATE_H */
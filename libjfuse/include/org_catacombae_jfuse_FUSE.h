@@ -10,10 +10,34 @@ extern "C" {
 /*
  * Class:     org_catacombae_jfuse_FUSE
  * Method:    mountNative26
- * Signature: (Lorg/catacombae/jfuse/FUSE26FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26Capabilities;Lorg/catacombae/jfuse/MacFUSE20Capabilities;)Z
+ * Signature: (Lorg/catacombae/jfuse/FUSE26FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26Capabilities;Lorg/catacombae/jfuse/MacFUSE20Capabilities;Lorg/catacombae/jfuse/FUSE26BufferCapabilities;Lorg/catacombae/jfuse/FUSE29Capabilities;Lorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
  */
 JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26
-  (JNIEnv *, jclass, jobject, jstring, jobjectArray, jobject, jobject);
+  (JNIEnv *, jclass, jobject, jstring, jobjectArray, jobject, jobject, jobject, jobject, jobject, jobject);
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    mountNativeLowLevel26
+ * Signature: (Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26LowLevelCapabilities;ZLorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNativeLowLevel26
+  (JNIEnv *, jclass, jobject, jstring, jobjectArray, jobject, jboolean, jobject, jobject);
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    openSessionNative26
+ * Signature: (Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26LowLevelCapabilities;ZLorg/catacombae/jfuse/FUSEOptions;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_FUSE_openSessionNative26
+  (JNIEnv *, jclass, jobject, jstring, jobjectArray, jobject, jboolean, jobject);
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    mountNative3
+ * Signature: (Lorg/catacombae/jfuse/FUSE3FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE3Capabilities;Lorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative3
+  (JNIEnv *, jclass, jobject, jstring, jobjectArray, jobject, jobject, jobject);
 
 /*
  * Class:     org_catacombae_jfuse_FUSE
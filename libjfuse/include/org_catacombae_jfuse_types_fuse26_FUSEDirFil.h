@@ -10,18 +10,10 @@ extern "C" {
 /*
  * Class:     org_catacombae_jfuse_types_fuse26_FUSEDirFil
  * Method:    fillNative
- * Signature: ([B[BIJ)I
+ * Signature: (J[BIJ)I
  */
 JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_fillNative
-  (JNIEnv *, jclass, jbyteArray, jbyteArray, jint, jlong);
-
-/*
- * Class:     org_catacombae_jfuse_types_fuse26_FUSEDirFil
- * Method:    freeNative
- * Signature: ([B)V
- */
-JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_freeNative
-  (JNIEnv *, jclass, jbyteArray);
+  (JNIEnv *, jclass, jlong, jbyteArray, jint, jlong);
 
 #ifdef __cplusplus
 }
@@ -10,10 +10,18 @@ extern "C" {
 /*
  * Class:     org_catacombae_jfuse_types_fuse26_FUSEFillDir
  * Method:    fillNative
- * Signature: ([B[BLorg/catacombae/jfuse/types/system/Stat;J)Z
+ * Signature: (J[BLorg/catacombae/jfuse/types/system/Stat;J)Z
  */
 JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillNative
-  (JNIEnv *, jclass, jbyteArray, jbyteArray, jobject, jlong);
+  (JNIEnv *, jclass, jlong, jbyteArray, jobject, jlong);
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSEFillDir
+ * Method:    fillBatchNative
+ * Signature: (JLjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillBatchNative
+  (JNIEnv *, jclass, jlong, jobject, jint);
 
 #ifdef __cplusplus
 }
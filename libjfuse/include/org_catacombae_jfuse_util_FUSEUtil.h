@@ -31,6 +31,14 @@ JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_util_FUSEUtil_getProcessGidNat
 JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_util_FUSEUtil_getProcessPidNative
   (JNIEnv *, jclass);
 
+/*
+ * Class:     org_catacombae_jfuse_util_FUSEUtil
+ * Method:    getFileDescriptorNative
+ * Signature: (Ljava/lang/Object;)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_util_FUSEUtil_getFileDescriptorNative
+  (JNIEnv *, jclass, jobject);
+
 #ifdef __cplusplus
 }
 #endif
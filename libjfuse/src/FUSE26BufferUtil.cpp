@@ -0,0 +1,247 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define FUSE_USE_VERSION 26
+
+#include "FUSE26BufferUtil.h"
+
+#include <fuse.h>
+#include <stdint.h>
+#include <string.h>
+#include <sys/stat.h>
+
+/* StatBuffer offsets. */
+#define STAT_OFFSET_DEV         0
+#define STAT_OFFSET_INO         8
+#define STAT_OFFSET_MODE        16
+#define STAT_OFFSET_NLINK       24
+#define STAT_OFFSET_UID         32
+#define STAT_OFFSET_GID         40
+#define STAT_OFFSET_RDEV        48
+#define STAT_OFFSET_SIZE        56
+#define STAT_OFFSET_BLOCKS      64
+#define STAT_OFFSET_BLOCKSIZE   72
+#define STAT_OFFSET_ATIME_SEC   80
+#define STAT_OFFSET_ATIME_NSEC  88
+#define STAT_OFFSET_MTIME_SEC   96
+#define STAT_OFFSET_MTIME_NSEC  104
+#define STAT_OFFSET_CTIME_SEC   112
+#define STAT_OFFSET_CTIME_NSEC  120
+#define STAT_OFFSET_FLAGS       128
+#define STAT_OFFSET_GEN         136
+
+/* FUSEFillDirBatch record offsets. */
+#define FILL_DIR_OFFSET_RECORD_LENGTH   0
+#define FILL_DIR_OFFSET_NAME_LENGTH     4
+#define FILL_DIR_OFFSET_OFF             8
+#define FILL_DIR_OFFSET_FLAGS           16
+#define FILL_DIR_HEADER_SIZE            24
+#define FILL_DIR_FLAG_HAS_STAT          1
+
+/* FileInfoBuffer offsets. */
+#define FI_OFFSET_FLAGS         0
+#define FI_OFFSET_WRITEPAGE     4
+#define FI_OFFSET_FH            8
+#define FI_OFFSET_FH_OLD        16
+#define FI_OFFSET_LOCK_OWNER    24
+#define FI_OFFSET_DIRECT_IO     32
+#define FI_OFFSET_KEEP_CACHE    33
+#define FI_OFFSET_FLUSH         34
+#define FI_OFFSET_NONSEEKABLE   35
+#define FI_OFFSET_BACKING_FD    36
+
+#if defined(__BYTE_ORDER__) && __BYTE_ORDER__ == __ORDER_LITTLE_ENDIAN__
+#define HOST_IS_LITTLE_ENDIAN 1
+#else
+#define HOST_IS_LITTLE_ENDIAN 0
+#endif
+
+static inline void putInt64(char *buf, int offset, int64_t value) {
+#if HOST_IS_LITTLE_ENDIAN
+    memcpy(buf + offset, &value, sizeof(value));
+#else
+    uint64_t v = (uint64_t) value;
+    for(int i = 0; i < 8; ++i)
+        buf[offset + i] = (char) ((v >> (8 * i)) & 0xFF);
+#endif
+}
+
+static inline int64_t getInt64(const char *buf, int offset) {
+#if HOST_IS_LITTLE_ENDIAN
+    int64_t value;
+    memcpy(&value, buf + offset, sizeof(value));
+    return value;
+#else
+    uint64_t v = 0;
+    for(int i = 0; i < 8; ++i)
+        v |= ((uint64_t) (unsigned char) buf[offset + i]) << (8 * i);
+    return (int64_t) v;
+#endif
+}
+
+static inline void putInt32(char *buf, int offset, int32_t value) {
+#if HOST_IS_LITTLE_ENDIAN
+    memcpy(buf + offset, &value, sizeof(value));
+#else
+    uint32_t v = (uint32_t) value;
+    for(int i = 0; i < 4; ++i)
+        buf[offset + i] = (char) ((v >> (8 * i)) & 0xFF);
+#endif
+}
+
+static inline int32_t getInt32(const char *buf, int offset) {
+#if HOST_IS_LITTLE_ENDIAN
+    int32_t value;
+    memcpy(&value, buf + offset, sizeof(value));
+    return value;
+#else
+    uint32_t v = 0;
+    for(int i = 0; i < 4; ++i)
+        v |= ((uint32_t) (unsigned char) buf[offset + i]) << (8 * i);
+    return (int32_t) v;
+#endif
+}
+
+void FUSE26BufferUtil::statToBuffer(const struct stat *st, char *buf) {
+    putInt64(buf, STAT_OFFSET_DEV, st->st_dev);
+    putInt64(buf, STAT_OFFSET_INO, st->st_ino);
+    putInt64(buf, STAT_OFFSET_MODE, st->st_mode);
+    putInt64(buf, STAT_OFFSET_NLINK, st->st_nlink);
+    putInt64(buf, STAT_OFFSET_UID, st->st_uid);
+    putInt64(buf, STAT_OFFSET_GID, st->st_gid);
+    putInt64(buf, STAT_OFFSET_RDEV, st->st_rdev);
+    putInt64(buf, STAT_OFFSET_SIZE, st->st_size);
+    putInt64(buf, STAT_OFFSET_BLOCKS, st->st_blocks);
+    putInt64(buf, STAT_OFFSET_BLOCKSIZE, st->st_blksize);
+#if defined(__linux__) || defined(__sun__)
+    putInt64(buf, STAT_OFFSET_ATIME_SEC, st->st_atim.tv_sec);
+    putInt64(buf, STAT_OFFSET_ATIME_NSEC, st->st_atim.tv_nsec);
+    putInt64(buf, STAT_OFFSET_MTIME_SEC, st->st_mtim.tv_sec);
+    putInt64(buf, STAT_OFFSET_MTIME_NSEC, st->st_mtim.tv_nsec);
+    putInt64(buf, STAT_OFFSET_CTIME_SEC, st->st_ctim.tv_sec);
+    putInt64(buf, STAT_OFFSET_CTIME_NSEC, st->st_ctim.tv_nsec);
+    putInt64(buf, STAT_OFFSET_FLAGS, 0);
+    putInt64(buf, STAT_OFFSET_GEN, 0);
+#else
+    putInt64(buf, STAT_OFFSET_ATIME_SEC, st->st_atimespec.tv_sec);
+    putInt64(buf, STAT_OFFSET_ATIME_NSEC, st->st_atimespec.tv_nsec);
+    putInt64(buf, STAT_OFFSET_MTIME_SEC, st->st_mtimespec.tv_sec);
+    putInt64(buf, STAT_OFFSET_MTIME_NSEC, st->st_mtimespec.tv_nsec);
+    putInt64(buf, STAT_OFFSET_CTIME_SEC, st->st_ctimespec.tv_sec);
+    putInt64(buf, STAT_OFFSET_CTIME_NSEC, st->st_ctimespec.tv_nsec);
+    putInt64(buf, STAT_OFFSET_FLAGS, st->st_flags);
+    putInt64(buf, STAT_OFFSET_GEN, st->st_gen);
+#endif
+}
+
+void FUSE26BufferUtil::bufferToStat(const char *buf, struct stat *st) {
+    st->st_dev = getInt64(buf, STAT_OFFSET_DEV);
+    st->st_ino = getInt64(buf, STAT_OFFSET_INO);
+    st->st_mode = getInt64(buf, STAT_OFFSET_MODE);
+    st->st_nlink = getInt64(buf, STAT_OFFSET_NLINK);
+    st->st_uid = getInt64(buf, STAT_OFFSET_UID);
+    st->st_gid = getInt64(buf, STAT_OFFSET_GID);
+    st->st_rdev = getInt64(buf, STAT_OFFSET_RDEV);
+    st->st_size = getInt64(buf, STAT_OFFSET_SIZE);
+    st->st_blocks = getInt64(buf, STAT_OFFSET_BLOCKS);
+    st->st_blksize = getInt64(buf, STAT_OFFSET_BLOCKSIZE);
+#if defined(__linux__) || defined(__sun__)
+    st->st_atim.tv_sec = getInt64(buf, STAT_OFFSET_ATIME_SEC);
+    st->st_atim.tv_nsec = getInt64(buf, STAT_OFFSET_ATIME_NSEC);
+    st->st_mtim.tv_sec = getInt64(buf, STAT_OFFSET_MTIME_SEC);
+    st->st_mtim.tv_nsec = getInt64(buf, STAT_OFFSET_MTIME_NSEC);
+    st->st_ctim.tv_sec = getInt64(buf, STAT_OFFSET_CTIME_SEC);
+    st->st_ctim.tv_nsec = getInt64(buf, STAT_OFFSET_CTIME_NSEC);
+#else
+    st->st_atimespec.tv_sec = getInt64(buf, STAT_OFFSET_ATIME_SEC);
+    st->st_atimespec.tv_nsec = getInt64(buf, STAT_OFFSET_ATIME_NSEC);
+    st->st_mtimespec.tv_sec = getInt64(buf, STAT_OFFSET_MTIME_SEC);
+    st->st_mtimespec.tv_nsec = getInt64(buf, STAT_OFFSET_MTIME_NSEC);
+    st->st_ctimespec.tv_sec = getInt64(buf, STAT_OFFSET_CTIME_SEC);
+    st->st_ctimespec.tv_nsec = getInt64(buf, STAT_OFFSET_CTIME_NSEC);
+    st->st_flags = getInt64(buf, STAT_OFFSET_FLAGS);
+    st->st_gen = getInt64(buf, STAT_OFFSET_GEN);
+#endif
+}
+
+void FUSE26BufferUtil::fileInfoToBuffer(const struct fuse_file_info *fi,
+        char *buf) {
+    putInt32(buf, FI_OFFSET_FLAGS, fi->flags);
+    putInt32(buf, FI_OFFSET_WRITEPAGE, fi->writepage);
+    putInt64(buf, FI_OFFSET_FH, fi->fh);
+    putInt64(buf, FI_OFFSET_FH_OLD, fi->fh_old);
+    putInt64(buf, FI_OFFSET_LOCK_OWNER, fi->lock_owner);
+    buf[FI_OFFSET_DIRECT_IO] = fi->direct_io ? 1 : 0;
+    buf[FI_OFFSET_KEEP_CACHE] = fi->keep_cache ? 1 : 0;
+    buf[FI_OFFSET_FLUSH] = fi->flush ? 1 : 0;
+#if defined(FUSE_VERSION) && FUSE_VERSION >= 28
+    buf[FI_OFFSET_NONSEEKABLE] = fi->nonseekable ? 1 : 0;
+#else
+    buf[FI_OFFSET_NONSEEKABLE] = 0;
+#endif
+    putInt32(buf, FI_OFFSET_BACKING_FD, -1);
+}
+
+void FUSE26BufferUtil::bufferToFileInfo(const char *buf,
+        struct fuse_file_info *fi) {
+    fi->flags = getInt32(buf, FI_OFFSET_FLAGS);
+    fi->writepage = getInt32(buf, FI_OFFSET_WRITEPAGE);
+    fi->fh = getInt64(buf, FI_OFFSET_FH);
+    fi->fh_old = getInt64(buf, FI_OFFSET_FH_OLD);
+    fi->lock_owner = getInt64(buf, FI_OFFSET_LOCK_OWNER);
+    fi->direct_io = buf[FI_OFFSET_DIRECT_IO] ? 1 : 0;
+    fi->keep_cache = buf[FI_OFFSET_KEEP_CACHE] ? 1 : 0;
+    fi->flush = buf[FI_OFFSET_FLUSH] ? 1 : 0;
+#if defined(FUSE_VERSION) && FUSE_VERSION >= 28
+    fi->nonseekable = buf[FI_OFFSET_NONSEEKABLE] ? 1 : 0;
+#endif
+}
+
+int FUSE26BufferUtil::bufferToBackingFd(const char *buf) {
+    return getInt32(buf, FI_OFFSET_BACKING_FD);
+}
+
+int FUSE26BufferUtil::parseFillDirRecord(const char *buf, size_t remaining,
+        const char **name, struct stat *st, bool *hasStat, int64_t *off) {
+    if(remaining < FILL_DIR_HEADER_SIZE)
+        return -1;
+
+    const int32_t recordLength = getInt32(buf, FILL_DIR_OFFSET_RECORD_LENGTH);
+    const int32_t nameLength = getInt32(buf, FILL_DIR_OFFSET_NAME_LENGTH);
+    const int32_t flags = getInt32(buf, FILL_DIR_OFFSET_FLAGS);
+    const int statSize =
+            (flags & FILL_DIR_FLAG_HAS_STAT) ? STAT_BUFFER_SIZE : 0;
+
+    if(recordLength < FILL_DIR_HEADER_SIZE || (size_t) recordLength > remaining ||
+            nameLength < 0 ||
+            nameLength >= recordLength - FILL_DIR_HEADER_SIZE - statSize)
+        return -1;
+
+    const char *nameStart = buf + FILL_DIR_HEADER_SIZE + statSize;
+    if(nameStart[nameLength] != '\0')
+        return -1;
+
+    *name = nameStart;
+    *off = getInt64(buf, FILL_DIR_OFFSET_OFF);
+    *hasStat = (statSize != 0);
+    if(*hasStat)
+        bufferToStat(buf + FILL_DIR_HEADER_SIZE, st);
+
+    return recordLength;
+}
@@ -0,0 +1,236 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "FUSE29Util.h"
+
+#include "CSLog.h"
+#include "JNICache.h"
+
+#include <errno.h>
+#include <inttypes.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+#if FUSE_VERSION >= 29
+
+jobject FUSE29Util::newFUSEBufVec(JNIEnv *env) {
+    CSLogTraceEnter("jobject FUSE29Util::newFUSEBufVec(%p)", env);
+
+    const JNICache::FUSEBufVecIDs &ids = JNICache::fuseBufVec;
+    jobject result = env->NewObject(ids.clazz, ids.init);
+    if(result == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new FUSEBufVec instance.");
+        if(result != NULL)
+            env->DeleteLocalRef(result);
+        result = NULL;
+    }
+
+    CSLogTraceLeave("jobject FUSE29Util::newFUSEBufVec(%p): %p", env, result);
+    return result;
+}
+
+static void freeMemoryBuffers(struct fuse_bufvec *bufv, size_t count) {
+    for(size_t i = 0; i < count; ++i) {
+        if(!(bufv->buf[i].flags & FUSE_BUF_IS_FD))
+            free(bufv->buf[i].mem);
+    }
+}
+
+int FUSE29Util::mergeFUSEBufVec(JNIEnv *env, jobject bufVecObject,
+        size_t maxSize, struct fuse_bufvec **target) {
+    CSLogTraceEnter("int FUSE29Util::mergeFUSEBufVec(%p, %p, %zu, %p)", env,
+            bufVecObject, maxSize, target);
+
+    const JNICache::FUSEBufVecIDs &ids = JNICache::fuseBufVec;
+    int res = -EIO;
+    jobjectArray sources = NULL;
+    jlongArray positions = NULL;
+    jlongArray sizes = NULL;
+    jlong *positionElements = NULL;
+    jlong *sizeElements = NULL;
+    struct fuse_bufvec *bufv = NULL;
+    size_t used = 0;
+
+    do {
+        jint count = env->GetIntField(bufVecObject, ids.count);
+        if(count < 0 || env->ExceptionCheck() == JNI_TRUE)
+            break;
+
+        /* An empty vector still needs one (empty) buffer. */
+        size_t capacity = count > 0 ? (size_t) count : 1;
+        bufv = (struct fuse_bufvec*) calloc(1, sizeof(struct fuse_bufvec) +
+                (capacity - 1) * sizeof(struct fuse_buf));
+        if(bufv == NULL) {
+            res = -ENOMEM;
+            break;
+        }
+
+        if(count > 0) {
+            sources = (jobjectArray) env->GetObjectField(bufVecObject,
+                    ids.sources);
+            positions = (jlongArray) env->GetObjectField(bufVecObject,
+                    ids.positions);
+            sizes = (jlongArray) env->GetObjectField(bufVecObject, ids.sizes);
+            if(sources == NULL || positions == NULL || sizes == NULL)
+                break;
+
+            positionElements = env->GetLongArrayElements(positions, NULL);
+            sizeElements = env->GetLongArrayElements(sizes, NULL);
+            if(positionElements == NULL || sizeElements == NULL)
+                break;
+        }
+
+        size_t remaining = maxSize;
+        res = 0;
+        for(jint i = 0; i < count && remaining > 0 && res == 0; ++i) {
+            size_t size = (size_t) sizeElements[i];
+            if(size > remaining)
+                size = remaining;
+            if(size == 0)
+                continue;
+
+            jlong pos = positionElements[i];
+            struct fuse_buf *buf = &bufv->buf[used];
+            jobject source = env->GetObjectArrayElement(sources, i);
+            if(source == NULL) {
+                res = -EIO;
+                break;
+            }
+
+            /* FUSEBufVec only stores direct ByteBuffers, byte arrays,
+             * FileDescriptors and FileChannels. */
+            char *address = (char*) env->GetDirectBufferAddress(source);
+            if(address != NULL) {
+                buf->mem = malloc(size);
+                if(buf->mem == NULL)
+                    res = -ENOMEM;
+                else
+                    memcpy(buf->mem, address + pos, size);
+            }
+            else if(env->IsInstanceOf(source,
+                    JNICache::fileDescriptor.clazz) == JNI_TRUE ||
+                    (JNICache::fileDescriptor.channelClazz != NULL &&
+                    env->IsInstanceOf(source,
+                    JNICache::fileDescriptor.channelClazz) == JNI_TRUE)) {
+                int fd = JNIUtil::getFileDescriptor(env, source);
+                if(fd < 0)
+                    res = -EBADF;
+                else {
+                    buf->flags = (enum fuse_buf_flags)
+                            (FUSE_BUF_IS_FD | FUSE_BUF_FD_SEEK);
+                    buf->fd = fd;
+                    buf->pos = (off_t) pos;
+                }
+            }
+            else {
+                buf->mem = malloc(size);
+                if(buf->mem == NULL)
+                    res = -ENOMEM;
+                else
+                    env->GetByteArrayRegion((jbyteArray) source, (jsize) pos,
+                            (jsize) size, (jbyte*) buf->mem);
+            }
+
+            env->DeleteLocalRef(source);
+
+            if(res == 0 && env->ExceptionCheck() == JNI_TRUE)
+                res = -EIO;
+            if(res != 0) {
+                /* Nothing was allocated for the failed buffer if it was
+                 * a file descriptor. */
+                if(!(buf->flags & FUSE_BUF_IS_FD))
+                    free(buf->mem);
+                break;
+            }
+
+            buf->size = size;
+            remaining -= size;
+            ++used;
+        }
+    } while(0);
+
+    if(sizeElements != NULL)
+        env->ReleaseLongArrayElements(sizes, sizeElements, JNI_ABORT);
+    if(positionElements != NULL)
+        env->ReleaseLongArrayElements(positions, positionElements, JNI_ABORT);
+    if(sizes != NULL)
+        env->DeleteLocalRef(sizes);
+    if(positions != NULL)
+        env->DeleteLocalRef(positions);
+    if(sources != NULL)
+        env->DeleteLocalRef(sources);
+
+    if(res == 0) {
+        bufv->count = used > 0 ? used : 1;
+        bufv->idx = 0;
+        bufv->off = 0;
+        *target = bufv;
+    }
+    else if(bufv != NULL) {
+        CSLogError("Could not convert FUSEBufVec to struct fuse_bufvec: %d",
+                res);
+        freeMemoryBuffers(bufv, used);
+        free(bufv);
+    }
+
+    CSLogTraceLeave("int FUSE29Util::mergeFUSEBufVec(%p, %p, %zu, %p): %d",
+            env, bufVecObject, maxSize, target, res);
+    return res;
+}
+
+jobject FUSE29Util::newFUSEWriteBuf(JNIEnv *env, struct fuse_bufvec *bufv) {
+    CSLogTraceEnter("jobject FUSE29Util::newFUSEWriteBuf(%p, %p)", env, bufv);
+
+    const JNICache::FillerIDs &ids = JNICache::fuseWriteBuf;
+    jobject result = env->NewObject(ids.clazz, ids.init,
+            (jlong) (intptr_t) bufv);
+    if(result == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new FUSEWriteBuf instance.");
+        if(result != NULL)
+            env->DeleteLocalRef(result);
+        result = NULL;
+    }
+
+    CSLogTraceLeave("jobject FUSE29Util::newFUSEWriteBuf(%p, %p): %p", env,
+            bufv, result);
+    return result;
+}
+
+void FUSE29Util::invalidateFUSEWriteBuf(JNIEnv *env, jobject writeBufObject) {
+    if(writeBufObject == NULL)
+        return;
+
+    /* Set aside any exception thrown by the file system while clearing the
+     * field. */
+    jthrowable pending = env->ExceptionOccurred();
+    if(pending != NULL)
+        env->ExceptionClear();
+
+    env->SetLongField(writeBufObject, JNICache::fuseWriteBuf.nativeContext, 0);
+
+    if(pending != NULL) {
+        env->Throw(pending);
+        env->DeleteLocalRef(pending);
+    }
+}
+
+#endif /* FUSE_VERSION >= 29 */
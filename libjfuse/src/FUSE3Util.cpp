@@ -0,0 +1,303 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "FUSE3Util.h"
+
+#include "CSLog.h"
+#include "FUSE3FillDirContext.h"
+#include "JavaSignatures.h"
+#include "JNICache.h"
+
+#include <inttypes.h>
+#include <stdint.h>
+
+#define JBOOLEAN(a) ((a) ? JNI_TRUE : JNI_FALSE)
+#define CBOOLEAN(a) ((a) == JNI_TRUE ? 1 : 0)
+
+jobject FUSE3Util::newFUSE3FillDir(JNIEnv *env, FUSE3FillDirContext *ctx) {
+    CSLogTraceEnter("jobject FUSE3Util::newFUSE3FillDir(%p, %p)", env, ctx);
+
+    const JNICache::FillerIDs &ids = JNICache::fuse3FillDir;
+
+    jobject result = env->NewObject(ids.clazz, ids.init,
+            (jlong) (intptr_t) ctx);
+    if(result == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new FUSE3FillDir instance.");
+        if(result != NULL)
+            env->DeleteLocalRef(result);
+        result = NULL;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject FUSE3Util::newFUSE3FillDir(%p, %p): %p", env, ctx,
+            result);
+    return result;
+}
+
+/**
+ * Clears the native context pointer of a FUSE3FillDir object. Like
+ * FUSE26Util::invalidateFUSEFillDir, this may run with an exception thrown by
+ * the file system pending, so that exception is set aside meanwhile.
+ */
+void FUSE3Util::invalidateFUSE3FillDir(JNIEnv *env, jobject fillDirObject) {
+    if(fillDirObject == NULL)
+        return;
+
+    jthrowable pending = env->ExceptionOccurred();
+    if(pending != NULL)
+        env->ExceptionClear();
+
+    env->SetLongField(fillDirObject, JNICache::fuse3FillDir.nativeContext, 0);
+
+    if(pending != NULL) {
+        env->Throw(pending);
+        env->DeleteLocalRef(pending);
+    }
+}
+
+bool FUSE3Util::mergeFUSEFileInfo(JNIEnv *env, jobject ffiObject, struct fuse_file_info *target) {
+    CSLogTraceEnter("bool FUSE3Util::mergeFUSEFileInfo(%p, %p, %p)", env, ffiObject, target);
+
+    const JNICache::FUSEFileInfoIDs &ids = JNICache::fuseFileInfo;
+
+    target->flags = env->GetIntField(ffiObject, ids.flags);
+    target->writepage = env->GetIntField(ffiObject, ids.writepage);
+    target->direct_io = CBOOLEAN(env->GetBooleanField(ffiObject, ids.direct_io));
+    target->keep_cache =
+            CBOOLEAN(env->GetBooleanField(ffiObject, ids.keep_cache));
+    target->flush = CBOOLEAN(env->GetBooleanField(ffiObject, ids.flush));
+    target->fh = env->GetLongField(ffiObject, ids.fh);
+    target->lock_owner = env->GetLongField(ffiObject, ids.lock_owner);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::mergeFUSEFileInfo(%p, %p, %p): %d", env, ffiObject, target, res);
+    return res;
+}
+
+bool FUSE3Util::fillFUSEFileInfo(JNIEnv *env, const struct fuse_file_info *fi, jobject ffiObject) {
+    CSLogTraceEnter("bool FUSE3Util::fillFUSEFileInfo(%p, %p, %p)", env, fi, ffiObject);
+
+    const JNICache::FUSEFileInfoIDs &ids = JNICache::fuseFileInfo;
+
+    env->SetIntField(ffiObject, ids.flags, fi->flags);
+    env->SetLongField(ffiObject, ids.fh_old, 0);
+    env->SetIntField(ffiObject, ids.writepage, fi->writepage);
+    env->SetBooleanField(ffiObject, ids.direct_io, JBOOLEAN(fi->direct_io));
+    env->SetBooleanField(ffiObject, ids.keep_cache, JBOOLEAN(fi->keep_cache));
+    env->SetBooleanField(ffiObject, ids.flush, JBOOLEAN(fi->flush));
+    env->SetLongField(ffiObject, ids.fh, fi->fh);
+    env->SetLongField(ffiObject, ids.lock_owner, fi->lock_owner);
+    env->SetIntField(ffiObject, ids.backing_fd, -1);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::fillFUSEFileInfo(%p, %p, %p): %d", env, fi, ffiObject, ret);
+    return ret;
+}
+
+jobject FUSE3Util::newFUSEFileInfo(JNIEnv *env, const struct fuse_file_info *fi) {
+    CSLogTraceEnter("jobject FUSE3Util::newFUSEFileInfo(%p, %p)", env, fi);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::fuseFileInfo.clazz,
+            JNICache::fuseFileInfo.init, "FUSEFileInfo");
+    if(obj != NULL) {
+        if (!fillFUSEFileInfo(env, fi, obj)) {
+            CSLogError("fillFUSEFileInfo failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject FUSE3Util::newFUSEFileInfo(%p, %p): %p", env, fi, res);
+    return res;
+}
+
+bool FUSE3Util::mergeFUSE3ConnInfo(JNIEnv *env, jobject source, struct fuse_conn_info *target) {
+    CSLogTraceEnter("bool FUSE3Util::mergeFUSE3ConnInfo(%p, %p, %p)", env, source, target);
+
+    const JNICache::FUSE3ConnInfoIDs &ids = JNICache::fuse3ConnInfo;
+
+    target->max_write = env->GetLongField(source, ids.max_write);
+    target->max_read = env->GetLongField(source, ids.max_read);
+    target->max_readahead = env->GetLongField(source, ids.max_readahead);
+    /* Capabilities that the kernel doesn't offer can't be wanted. */
+    target->want = env->GetIntField(source, ids.want) & target->capable;
+    target->max_background = env->GetLongField(source, ids.max_background);
+    target->congestion_threshold =
+            env->GetLongField(source, ids.congestion_threshold);
+    target->time_gran = env->GetLongField(source, ids.time_gran);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::mergeFUSE3ConnInfo(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+bool FUSE3Util::fillFUSE3ConnInfo(JNIEnv *env, const struct fuse_conn_info *source, jobject target) {
+    CSLogTraceEnter("bool FUSE3Util::fillFUSE3ConnInfo(%p, %p, %p)", env, source, target);
+
+    const JNICache::FUSE3ConnInfoIDs &ids = JNICache::fuse3ConnInfo;
+
+    env->SetLongField(target, ids.proto_major, source->proto_major);
+    env->SetLongField(target, ids.proto_minor, source->proto_minor);
+    env->SetLongField(target, ids.max_write, source->max_write);
+    env->SetLongField(target, ids.max_read, source->max_read);
+    env->SetLongField(target, ids.max_readahead, source->max_readahead);
+    env->SetIntField(target, ids.capable, source->capable);
+    env->SetIntField(target, ids.want, source->want);
+    env->SetLongField(target, ids.max_background, source->max_background);
+    env->SetLongField(target, ids.congestion_threshold,
+            source->congestion_threshold);
+    env->SetLongField(target, ids.time_gran, source->time_gran);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::fillFUSE3ConnInfo(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+jobject FUSE3Util::newFUSE3ConnInfo(JNIEnv *env, const struct fuse_conn_info *source) {
+    CSLogTraceEnter("jobject FUSE3Util::newFUSE3ConnInfo(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::fuse3ConnInfo.clazz,
+            JNICache::fuse3ConnInfo.init, "FUSE3ConnInfo");
+    if(obj != NULL) {
+        if (!fillFUSE3ConnInfo(env, source, obj)) {
+            CSLogError("fillFUSE3ConnInfo failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject FUSE3Util::newFUSE3ConnInfo(%p, %p): %p", env, source, res);
+    return res;
+}
+
+bool FUSE3Util::mergeFUSEConfig(JNIEnv *env, jobject source, struct fuse_config *target) {
+    CSLogTraceEnter("bool FUSE3Util::mergeFUSEConfig(%p, %p, %p)", env, source, target);
+
+    const JNICache::FUSEConfigIDs &ids = JNICache::fuseConfig;
+
+    target->set_gid = CBOOLEAN(env->GetBooleanField(source, ids.set_gid));
+    target->gid = env->GetLongField(source, ids.gid);
+    target->set_uid = CBOOLEAN(env->GetBooleanField(source, ids.set_uid));
+    target->uid = env->GetLongField(source, ids.uid);
+    target->set_mode = CBOOLEAN(env->GetBooleanField(source, ids.set_mode));
+    target->umask = env->GetIntField(source, ids.umask);
+    target->entry_timeout = env->GetDoubleField(source, ids.entry_timeout);
+    target->negative_timeout = env->GetDoubleField(source, ids.negative_timeout);
+    target->attr_timeout = env->GetDoubleField(source, ids.attr_timeout);
+    target->intr = CBOOLEAN(env->GetBooleanField(source, ids.intr));
+    target->intr_signal = env->GetIntField(source, ids.intr_signal);
+    target->remember = env->GetIntField(source, ids.remember);
+    target->hard_remove = CBOOLEAN(env->GetBooleanField(source, ids.hard_remove));
+    target->use_ino = CBOOLEAN(env->GetBooleanField(source, ids.use_ino));
+    target->readdir_ino = CBOOLEAN(env->GetBooleanField(source, ids.readdir_ino));
+    target->direct_io = CBOOLEAN(env->GetBooleanField(source, ids.direct_io));
+    target->kernel_cache =
+            CBOOLEAN(env->GetBooleanField(source, ids.kernel_cache));
+    target->auto_cache = CBOOLEAN(env->GetBooleanField(source, ids.auto_cache));
+    target->ac_attr_timeout_set =
+            CBOOLEAN(env->GetBooleanField(source, ids.ac_attr_timeout_set));
+    target->ac_attr_timeout = env->GetDoubleField(source, ids.ac_attr_timeout);
+    target->nullpath_ok = CBOOLEAN(env->GetBooleanField(source, ids.nullpath_ok));
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::mergeFUSEConfig(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+bool FUSE3Util::fillFUSEConfig(JNIEnv *env, const struct fuse_config *source, jobject target) {
+    CSLogTraceEnter("bool FUSE3Util::fillFUSEConfig(%p, %p, %p)", env, source, target);
+
+    const JNICache::FUSEConfigIDs &ids = JNICache::fuseConfig;
+
+    env->SetBooleanField(target, ids.set_gid, JBOOLEAN(source->set_gid));
+    env->SetLongField(target, ids.gid, source->gid);
+    env->SetBooleanField(target, ids.set_uid, JBOOLEAN(source->set_uid));
+    env->SetLongField(target, ids.uid, source->uid);
+    env->SetBooleanField(target, ids.set_mode, JBOOLEAN(source->set_mode));
+    env->SetIntField(target, ids.umask, source->umask);
+    env->SetDoubleField(target, ids.entry_timeout, source->entry_timeout);
+    env->SetDoubleField(target, ids.negative_timeout, source->negative_timeout);
+    env->SetDoubleField(target, ids.attr_timeout, source->attr_timeout);
+    env->SetBooleanField(target, ids.intr, JBOOLEAN(source->intr));
+    env->SetIntField(target, ids.intr_signal, source->intr_signal);
+    env->SetIntField(target, ids.remember, source->remember);
+    env->SetBooleanField(target, ids.hard_remove, JBOOLEAN(source->hard_remove));
+    env->SetBooleanField(target, ids.use_ino, JBOOLEAN(source->use_ino));
+    env->SetBooleanField(target, ids.readdir_ino, JBOOLEAN(source->readdir_ino));
+    env->SetBooleanField(target, ids.direct_io, JBOOLEAN(source->direct_io));
+    env->SetBooleanField(target, ids.kernel_cache,
+            JBOOLEAN(source->kernel_cache));
+    env->SetBooleanField(target, ids.auto_cache, JBOOLEAN(source->auto_cache));
+    env->SetBooleanField(target, ids.ac_attr_timeout_set,
+            JBOOLEAN(source->ac_attr_timeout_set));
+    env->SetDoubleField(target, ids.ac_attr_timeout, source->ac_attr_timeout);
+    env->SetBooleanField(target, ids.nullpath_ok, JBOOLEAN(source->nullpath_ok));
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool FUSE3Util::fillFUSEConfig(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+jobject FUSE3Util::newFUSEConfig(JNIEnv *env, const struct fuse_config *source) {
+    CSLogTraceEnter("jobject FUSE3Util::newFUSEConfig(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::fuseConfig.clazz,
+            JNICache::fuseConfig.init, "FUSEConfig");
+    if(obj != NULL) {
+        if (!fillFUSEConfig(env, source, obj)) {
+            CSLogError("fillFUSEConfig failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject FUSE3Util::newFUSEConfig(%p, %p): %p", env, source, res);
+    return res;
+}
+
+#undef CBOOLEAN
+#undef JBOOLEAN
@@ -0,0 +1,356 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "JNICache.h"
+
+#include "CSLog.h"
+#include "JavaSignatures.h"
+
+#include <pthread.h>
+
+JNICache::StatIDs JNICache::stat;
+JNICache::TimespecIDs JNICache::timespec;
+JNICache::FUSEFileInfoIDs JNICache::fuseFileInfo;
+JNICache::StatVFSIDs JNICache::statVFS;
+JNICache::FlockIDs JNICache::flock;
+JNICache::LongRefIDs JNICache::longRef;
+JNICache::UtimbufIDs JNICache::utimbuf;
+JNICache::FUSEConnInfoIDs JNICache::fuseConnInfo;
+JNICache::FUSE3ConnInfoIDs JNICache::fuse3ConnInfo;
+JNICache::FUSEConfigIDs JNICache::fuseConfig;
+JNICache::FUSEEntryReplyIDs JNICache::fuseEntryReply;
+JNICache::FUSEAttrReplyIDs JNICache::fuseAttrReply;
+JNICache::FUSEDirReplyIDs JNICache::fuseDirReply;
+JNICache::ByteBufferIDs JNICache::byteBuffer;
+JNICache::BufferIDs JNICache::buffer;
+JNICache::MountHandleIDs JNICache::mountHandle;
+JNICache::ClassIDs JNICache::fuseContext;
+JNICache::FUSERequestIDs JNICache::fuseRequest;
+JNICache::FillerIDs JNICache::fuseFillDir;
+JNICache::FillerIDs JNICache::fuseDirFil;
+JNICache::FillerIDs JNICache::fuse3FillDir;
+JNICache::ClassIDs JNICache::statBuffer;
+JNICache::ClassIDs JNICache::fileInfoBuffer;
+JNICache::FUSEBufVecIDs JNICache::fuseBufVec;
+JNICache::FillerIDs JNICache::fuseWriteBuf;
+JNICache::FileDescriptorIDs JNICache::fileDescriptor;
+
+bool JNICache::initialized = false;
+
+static pthread_mutex_t initMutex = PTHREAD_MUTEX_INITIALIZER;
+
+static bool getClass(JNIEnv *env, const char *className, jclass *target) {
+    jclass cls = env->FindClass(className);
+    if(cls == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not find class \"%s\".", className);
+        return false;
+    }
+
+    *target = (jclass) env->NewGlobalRef(cls);
+    env->DeleteLocalRef(cls);
+
+    return *target != NULL;
+}
+
+static bool getMethod(JNIEnv *env, jclass cls, const char *name,
+        const char *signature, jmethodID *target) {
+    *target = env->GetMethodID(cls, name, signature);
+    if(*target == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not get method ID for \"%s\" with signature %s.",
+                name, signature);
+        return false;
+    }
+
+    return true;
+}
+
+static bool getField(JNIEnv *env, jclass cls, const char *name,
+        const char *signature, jfieldID *target) {
+    *target = env->GetFieldID(cls, name, signature);
+    if(*target == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not get field ID for \"%s\" with signature %s.",
+                name, signature);
+        return false;
+    }
+
+    return true;
+}
+
+/**
+ * Like getField, but a missing field is not an error. The target is set to NULL
+ * and the pending exception is cleared.
+ */
+static void getOptionalField(JNIEnv *env, jclass cls, const char *name,
+        const char *signature, jfieldID *target) {
+    *target = env->GetFieldID(cls, name, signature);
+    if(*target == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogDebug("Optional field \"%s\" with signature %s not found.",
+                name, signature);
+        env->ExceptionClear();
+        *target = NULL;
+    }
+}
+
+#define CACHE_CLASS(ids, className, initSignature) \
+    if(!getClass(env, className, &ids.clazz)) \
+        break; \
+    if(!getMethod(env, ids.clazz, "<init>", initSignature, &ids.init)) \
+        break
+
+#define CACHE_FIELD(ids, name, signature) \
+    if(!getField(env, ids.clazz, #name, signature, &ids.name)) \
+        break
+
+bool JNICache::init(JNIEnv *env) {
+#define _FNAME_ "JNICache::init"
+    CSLogTraceEnter("bool " _FNAME_ "(%p)", env);
+
+    pthread_mutex_lock(&initMutex);
+
+    bool res = initialized;
+    if(!res) do {
+        CACHE_CLASS(stat, STAT_CLASS, STAT_INIT_SIGNATURE);
+        CACHE_FIELD(stat, st_dev, "J");
+        CACHE_FIELD(stat, st_ino, "J");
+        CACHE_FIELD(stat, st_mode, "J");
+        CACHE_FIELD(stat, st_nlink, "J");
+        CACHE_FIELD(stat, st_uid, "J");
+        CACHE_FIELD(stat, st_gid, "J");
+        CACHE_FIELD(stat, st_rdev, "J");
+        CACHE_FIELD(stat, st_atimespec, JAVA_CLASS(TIMESPEC_CLASS));
+        CACHE_FIELD(stat, st_mtimespec, JAVA_CLASS(TIMESPEC_CLASS));
+        CACHE_FIELD(stat, st_ctimespec, JAVA_CLASS(TIMESPEC_CLASS));
+        CACHE_FIELD(stat, st_size, "J");
+        CACHE_FIELD(stat, st_blocks, "J");
+        CACHE_FIELD(stat, st_blocksize, "J");
+        CACHE_FIELD(stat, st_flags, "J");
+        CACHE_FIELD(stat, st_gen, "J");
+
+        CACHE_CLASS(timespec, TIMESPEC_CLASS, TIMESPEC_INIT_SIGNATURE);
+        CACHE_FIELD(timespec, sec, "I");
+        CACHE_FIELD(timespec, nsec, "I");
+
+        CACHE_CLASS(fuseFileInfo, FUSEFILEINFO_CLASS,
+                FUSEFILEINFO_INIT_SIGNATURE);
+        CACHE_FIELD(fuseFileInfo, flags, "I");
+        CACHE_FIELD(fuseFileInfo, fh_old, "J");
+        CACHE_FIELD(fuseFileInfo, writepage, "I");
+        CACHE_FIELD(fuseFileInfo, direct_io, "Z");
+        CACHE_FIELD(fuseFileInfo, keep_cache, "Z");
+        CACHE_FIELD(fuseFileInfo, flush, "Z");
+        CACHE_FIELD(fuseFileInfo, fh, "J");
+        CACHE_FIELD(fuseFileInfo, lock_owner, "J");
+        CACHE_FIELD(fuseFileInfo, backing_fd, "I");
+
+        CACHE_CLASS(statVFS, STATVFS_CLASS, STATVFS_INIT_SIGNATURE);
+        CACHE_FIELD(statVFS, f_bsize, "J");
+        CACHE_FIELD(statVFS, f_frsize, "J");
+        CACHE_FIELD(statVFS, f_blocks, "J");
+        CACHE_FIELD(statVFS, f_bfree, "J");
+        CACHE_FIELD(statVFS, f_bavail, "J");
+        CACHE_FIELD(statVFS, f_files, "J");
+        CACHE_FIELD(statVFS, f_ffree, "J");
+        CACHE_FIELD(statVFS, f_favail, "J");
+        CACHE_FIELD(statVFS, f_fsid, "J");
+        CACHE_FIELD(statVFS, f_flag, "J");
+        CACHE_FIELD(statVFS, f_namemax, "J");
+
+        CACHE_CLASS(flock, FLOCK_CLASS, FLOCK_INIT_SIGNATURE);
+        CACHE_FIELD(flock, l_start, "J");
+        CACHE_FIELD(flock, l_len, "J");
+        CACHE_FIELD(flock, l_pid, "J");
+        CACHE_FIELD(flock, l_type, "S");
+        CACHE_FIELD(flock, l_whence, "S");
+
+        CACHE_CLASS(longRef, LONGREF_CLASS, LONGREF_INIT_SIGNATURE);
+        CACHE_FIELD(longRef, ref, "J");
+
+        CACHE_CLASS(utimbuf, UTIMBUF_CLASS, UTIMBUF_INIT_SIGNATURE);
+        CACHE_FIELD(utimbuf, actime, "J");
+        CACHE_FIELD(utimbuf, modtime, "J");
+
+        CACHE_CLASS(fuseConnInfo, FUSECONNINFO_CLASS,
+                FUSECONNINFO_INIT_SIGNATURE);
+        CACHE_FIELD(fuseConnInfo, proto_major, "J");
+        CACHE_FIELD(fuseConnInfo, proto_minor, "J");
+        CACHE_FIELD(fuseConnInfo, async_read, "Z");
+        CACHE_FIELD(fuseConnInfo, max_write, "J");
+        CACHE_FIELD(fuseConnInfo, max_readahead, "J");
+
+        CACHE_CLASS(fuse3ConnInfo, FUSE3CONNINFO_CLASS,
+                FUSE3CONNINFO_INIT_SIGNATURE);
+        CACHE_FIELD(fuse3ConnInfo, proto_major, "J");
+        CACHE_FIELD(fuse3ConnInfo, proto_minor, "J");
+        CACHE_FIELD(fuse3ConnInfo, max_write, "J");
+        CACHE_FIELD(fuse3ConnInfo, max_read, "J");
+        CACHE_FIELD(fuse3ConnInfo, max_readahead, "J");
+        CACHE_FIELD(fuse3ConnInfo, capable, "I");
+        CACHE_FIELD(fuse3ConnInfo, want, "I");
+        CACHE_FIELD(fuse3ConnInfo, max_background, "J");
+        CACHE_FIELD(fuse3ConnInfo, congestion_threshold, "J");
+        CACHE_FIELD(fuse3ConnInfo, time_gran, "J");
+
+        CACHE_CLASS(fuseConfig, FUSECONFIG_CLASS, FUSECONFIG_INIT_SIGNATURE);
+        CACHE_FIELD(fuseConfig, set_gid, "Z");
+        CACHE_FIELD(fuseConfig, gid, "J");
+        CACHE_FIELD(fuseConfig, set_uid, "Z");
+        CACHE_FIELD(fuseConfig, uid, "J");
+        CACHE_FIELD(fuseConfig, set_mode, "Z");
+        CACHE_FIELD(fuseConfig, umask, "I");
+        CACHE_FIELD(fuseConfig, entry_timeout, "D");
+        CACHE_FIELD(fuseConfig, negative_timeout, "D");
+        CACHE_FIELD(fuseConfig, attr_timeout, "D");
+        CACHE_FIELD(fuseConfig, intr, "Z");
+        CACHE_FIELD(fuseConfig, intr_signal, "I");
+        CACHE_FIELD(fuseConfig, remember, "I");
+        CACHE_FIELD(fuseConfig, hard_remove, "Z");
+        CACHE_FIELD(fuseConfig, use_ino, "Z");
+        CACHE_FIELD(fuseConfig, readdir_ino, "Z");
+        CACHE_FIELD(fuseConfig, direct_io, "Z");
+        CACHE_FIELD(fuseConfig, kernel_cache, "Z");
+        CACHE_FIELD(fuseConfig, auto_cache, "Z");
+        CACHE_FIELD(fuseConfig, ac_attr_timeout_set, "Z");
+        CACHE_FIELD(fuseConfig, ac_attr_timeout, "D");
+        CACHE_FIELD(fuseConfig, nullpath_ok, "Z");
+
+        CACHE_CLASS(fuseEntryReply, FUSEENTRYREPLY_CLASS,
+                FUSEENTRYREPLY_INIT_SIGNATURE);
+        CACHE_FIELD(fuseEntryReply, ino, "J");
+        CACHE_FIELD(fuseEntryReply, generation, "J");
+        CACHE_FIELD(fuseEntryReply, attr, JAVA_CLASS(STAT_CLASS));
+        CACHE_FIELD(fuseEntryReply, attr_timeout, "D");
+        CACHE_FIELD(fuseEntryReply, entry_timeout, "D");
+
+        CACHE_CLASS(fuseAttrReply, FUSEATTRREPLY_CLASS,
+                FUSEATTRREPLY_INIT_SIGNATURE);
+        CACHE_FIELD(fuseAttrReply, attr, JAVA_CLASS(STAT_CLASS));
+        CACHE_FIELD(fuseAttrReply, attr_timeout, "D");
+
+        CACHE_CLASS(fuseDirReply, FUSEDIRREPLY_CLASS,
+                FUSEDIRREPLY_INIT_SIGNATURE);
+        CACHE_FIELD(fuseDirReply, length, "I");
+
+        CACHE_CLASS(fuseRequest, FUSEREQUEST_CLASS,
+                FUSEREQUEST_INIT_SIGNATURE);
+        if(!getMethod(env, fuseRequest.clazz, FUSEREQUEST_FAILIFPENDING_NAME,
+                FUSEREQUEST_FAILIFPENDING_SIGNATURE,
+                &fuseRequest.failIfPending))
+            break;
+
+        if(!getClass(env, BYTEBUFFER_CLASS, &byteBuffer.clazz))
+            break;
+        if(!getMethod(env, byteBuffer.clazz, BYTEBUFFER_ASREADONLYBUFFER_NAME,
+                BYTEBUFFER_ASREADONLYBUFFER_SIGNATURE,
+                &byteBuffer.asReadOnlyBuffer))
+            break;
+
+        if(!getClass(env, BUFFER_CLASS, &buffer.clazz))
+            break;
+        if(!getMethod(env, buffer.clazz, BUFFER_CLEAR_NAME,
+                BUFFER_CLEAR_SIGNATURE, &buffer.clear))
+            break;
+        if(!getMethod(env, buffer.clazz, BUFFER_LIMIT_NAME,
+                BUFFER_LIMIT_SIGNATURE, &buffer.limit))
+            break;
+        getOptionalField(env, buffer.clazz, "position", "I",
+                &buffer.positionField);
+        getOptionalField(env, buffer.clazz, "limit", "I", &buffer.limitField);
+        getOptionalField(env, buffer.clazz, "mark", "I", &buffer.markField);
+        if(buffer.positionField == NULL || buffer.limitField == NULL ||
+                buffer.markField == NULL) {
+            buffer.positionField = NULL;
+            buffer.limitField = NULL;
+            buffer.markField = NULL;
+        }
+
+        if(!getClass(env, MOUNTHANDLE_CLASS, &mountHandle.clazz))
+            break;
+        if(!getMethod(env, mountHandle.clazz, MOUNTHANDLE_MOUNTREADY_NAME,
+                MOUNTHANDLE_MOUNTREADY_SIGNATURE, &mountHandle.mountReady))
+            break;
+        if(!getMethod(env, mountHandle.clazz, MOUNTHANDLE_WORKERSTARTED_NAME,
+                MOUNTHANDLE_WORKERSTARTED_SIGNATURE,
+                &mountHandle.workerStarted))
+            break;
+        if(!getMethod(env, mountHandle.clazz,
+                MOUNTHANDLE_CONNINITIALIZED_NAME,
+                MOUNTHANDLE_CONNINITIALIZED_SIGNATURE,
+                &mountHandle.connInitialized))
+            break;
+        if(!getMethod(env, mountHandle.clazz,
+                MOUNTHANDLE_KERNELPASSTHROUGHCHANGED_NAME,
+                MOUNTHANDLE_KERNELPASSTHROUGHCHANGED_SIGNATURE,
+                &mountHandle.kernelPassthroughChanged))
+            break;
+
+        CACHE_CLASS(fuseContext, FUSECONTEXT_CLASS, FUSECONTEXT_INIT_SIGNATURE);
+        CACHE_CLASS(fuseFillDir, FUSEFILLDIR_CLASS, FUSEFILLDIR_INIT_SIGNATURE);
+        CACHE_FIELD(fuseFillDir, nativeContext, "J");
+        CACHE_CLASS(fuseDirFil, FUSEDIRFIL_CLASS, FUSEDIRFIL_INIT_SIGNATURE);
+        CACHE_FIELD(fuseDirFil, nativeContext, "J");
+        CACHE_CLASS(fuse3FillDir, FUSE3FILLDIR_CLASS,
+                FUSE3FILLDIR_INIT_SIGNATURE);
+        CACHE_FIELD(fuse3FillDir, nativeContext, "J");
+        CACHE_CLASS(statBuffer, STATBUFFER_CLASS, STATBUFFER_INIT_SIGNATURE);
+        CACHE_CLASS(fileInfoBuffer, FILEINFOBUFFER_CLASS,
+                FILEINFOBUFFER_INIT_SIGNATURE);
+
+        CACHE_CLASS(fuseBufVec, FUSEBUFVEC_CLASS, FUSEBUFVEC_INIT_SIGNATURE);
+        CACHE_FIELD(fuseBufVec, count, "I");
+        CACHE_FIELD(fuseBufVec, sources, "[" JAVA_CLASS(OBJECT_CLASS));
+        CACHE_FIELD(fuseBufVec, positions, "[J");
+        CACHE_FIELD(fuseBufVec, sizes, "[J");
+        CACHE_CLASS(fuseWriteBuf, FUSEWRITEBUF_CLASS,
+                FUSEWRITEBUF_INIT_SIGNATURE);
+        CACHE_FIELD(fuseWriteBuf, nativeContext, "J");
+
+        if(!getClass(env, FILEDESCRIPTOR_CLASS, &fileDescriptor.clazz))
+            break;
+        CACHE_FIELD(fileDescriptor, fd, "I");
+        {
+            jclass cls = env->FindClass(FILECHANNELIMPL_CLASS);
+            if(cls == NULL || env->ExceptionCheck() == JNI_TRUE) {
+                CSLogDebug("Class \"%s\" not found.", FILECHANNELIMPL_CLASS);
+                env->ExceptionClear();
+                fileDescriptor.channelClazz = NULL;
+                fileDescriptor.channelFd = NULL;
+            }
+            else {
+                getOptionalField(env, cls, "fd",
+                        JAVA_CLASS(FILEDESCRIPTOR_CLASS),
+                        &fileDescriptor.channelFd);
+                fileDescriptor.channelClazz = (fileDescriptor.channelFd != NULL) ?
+                        (jclass) env->NewGlobalRef(cls) : NULL;
+                env->DeleteLocalRef(cls);
+            }
+        }
+
+        initialized = true;
+        res = true;
+    } while(0);
+
+    pthread_mutex_unlock(&initMutex);
+
+    CSLogTraceLeave("bool " _FNAME_ "(%p): %d", env, res);
+    return res;
+#undef _FNAME_
+}
+
+#undef CACHE_FIELD
+#undef CACHE_CLASS
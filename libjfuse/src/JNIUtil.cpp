@@ -20,6 +20,7 @@
 #include "JNIUtil.h"
 #include "CSLog.h"
 #include "JavaSignatures.h"
+#include "JNICache.h"
 
 #include <stdlib.h>
 #include <string.h>
@@ -130,27 +131,14 @@ jobject JNIUtil::bytesToReadonlyByteBuffer(JNIEnv *env, const void *data,
     jobject res = NULL;
     jobject buf = bytesToByteBuffer(env, (void*)data, dataLength);
     if(buf != NULL && env->ExceptionCheck() == JNI_FALSE) {
-        jclass clazz = env->GetObjectClass(buf);
-        if(clazz != NULL && env->ExceptionCheck() == JNI_FALSE) {
-            const char *name = "asReadOnlyBuffer";
-            const char *sig = "()Ljava/nio/ByteBuffer;";
-            jmethodID mid = env->GetMethodID(clazz, name, sig);
-            if(mid != NULL) {
-                jobject callres = env->CallObjectMethod(buf, mid);
-                if(callres != NULL && env->ExceptionCheck() == JNI_FALSE) {
-                    env->DeleteLocalRef(buf);
-                    res = callres;
-                }
-                else
-                    CSLogError("Calling ByteBuffer.asReadOnlyBuffer failed. "
-                            "callRes=%p", callres);
-            }
-            else
-                CSLogError("Could not get method id for "
-                        "ByteBuffer.asReadOnlyBuffer. mid=%p", mid);
-        }
+        jobject callres = env->CallObjectMethod(buf,
+                JNICache::byteBuffer.asReadOnlyBuffer);
+        if(callres != NULL && env->ExceptionCheck() == JNI_FALSE)
+            res = callres;
         else
-            CSLogError("Could not get class for object %p.", buf);
+            CSLogError("Calling ByteBuffer.asReadOnlyBuffer failed. "
+                    "callRes=%p", callres);
+        env->DeleteLocalRef(buf);
     }
     else
         CSLogError("bytesToByteBuffer returned with an error.");
@@ -160,6 +148,32 @@ jobject JNIUtil::bytesToReadonlyByteBuffer(JNIEnv *env, const void *data,
     return res;
 }
 
+int JNIUtil::getFileDescriptor(JNIEnv *env, jobject obj) {
+    CSLogTraceEnter("int JNIUtil::getFileDescriptor(%p, %p)", env, obj);
+
+    int res = -1;
+    const JNICache::FileDescriptorIDs &ids = JNICache::fileDescriptor;
+    if(obj == NULL)
+        CSLogError("No object to get a file descriptor from.");
+    else if(env->IsInstanceOf(obj, ids.clazz) == JNI_TRUE)
+        res = env->GetIntField(obj, ids.fd);
+    else if(ids.channelClazz != NULL &&
+            env->IsInstanceOf(obj, ids.channelClazz) == JNI_TRUE) {
+        jobject fdObject = env->GetObjectField(obj, ids.channelFd);
+        if(fdObject != NULL) {
+            res = env->GetIntField(fdObject, ids.fd);
+            env->DeleteLocalRef(fdObject);
+        }
+    }
+    else
+        CSLogError("Object is neither a FileDescriptor nor a file "
+                "FileChannel.");
+
+    CSLogTraceLeave("int JNIUtil::getFileDescriptor(%p, %p): %d", env, obj,
+            res);
+    return res;
+}
+
 #define setField(a, b, c) \
     CSLogTraceEnter("bool JNIUtil::set" #a "Field(%p, %p, %p, \"%s\", %" b ")", env, fieldClass, \
             fieldObject, fieldName, value); \
@@ -0,0 +1,517 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "SystemUtil.h"
+
+#include "CSLog.h"
+#include "JNICache.h"
+
+#include <inttypes.h>
+#include <stdint.h>
+
+/**
+ * Creates a new instance of a class in the JNICache using its no-argument
+ * constructor.
+ */
+jobject SystemUtil::newCachedObject(JNIEnv *env, jclass clazz, jmethodID init,
+        const char *className) {
+    jobject obj = env->NewObject(clazz, init);
+    if(obj == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new %s instance.", className);
+        if(obj != NULL)
+            env->DeleteLocalRef(obj);
+        return NULL;
+    }
+
+    return obj;
+}
+
+/**
+ * Merges the contents of statObject into the struct stat target.
+ */
+bool SystemUtil::mergeStat(JNIEnv *env, jobject statObject, struct stat *target) {
+    CSLogTraceEnter("bool SystemUtil::mergeStat(%p, %p, %p)", env, statObject, target);
+
+    const JNICache::StatIDs &ids = JNICache::stat;
+    bool res = false;
+    do {
+        jobject jl_atimespec = env->GetObjectField(statObject, ids.st_atimespec);
+        jobject jl_mtimespec = env->GetObjectField(statObject, ids.st_mtimespec);
+        jobject jl_ctimespec = env->GetObjectField(statObject, ids.st_ctimespec);
+
+        struct timespec tmp_st_atimespec, tmp_st_mtimespec, tmp_st_ctimespec;
+        bool timespecsMerged =
+                SystemUtil::mergeTimespec(env, jl_atimespec, &tmp_st_atimespec) &&
+                SystemUtil::mergeTimespec(env, jl_mtimespec, &tmp_st_mtimespec) &&
+                SystemUtil::mergeTimespec(env, jl_ctimespec, &tmp_st_ctimespec);
+
+        env->DeleteLocalRef(jl_atimespec);
+        env->DeleteLocalRef(jl_mtimespec);
+        env->DeleteLocalRef(jl_ctimespec);
+
+        if(!timespecsMerged)
+            break;
+
+        target->st_dev = env->GetLongField(statObject, ids.st_dev);
+        target->st_ino = env->GetLongField(statObject, ids.st_ino);
+        target->st_mode = env->GetLongField(statObject, ids.st_mode);
+        target->st_nlink = env->GetLongField(statObject, ids.st_nlink);
+        target->st_uid = env->GetLongField(statObject, ids.st_uid);
+        target->st_gid = env->GetLongField(statObject, ids.st_gid);
+        target->st_rdev = env->GetLongField(statObject, ids.st_rdev);
+#if defined(__linux__) || defined(__sun__)
+        target->st_atim = tmp_st_atimespec;
+        target->st_mtim = tmp_st_mtimespec;
+        target->st_ctim = tmp_st_ctimespec;
+#else
+        target->st_atimespec = tmp_st_atimespec;
+        target->st_mtimespec = tmp_st_mtimespec;
+        target->st_ctimespec = tmp_st_ctimespec;
+#endif
+        target->st_size = env->GetLongField(statObject, ids.st_size);
+        target->st_blocks = env->GetLongField(statObject, ids.st_blocks);
+        target->st_blksize = env->GetLongField(statObject, ids.st_blocksize);
+#if !defined(__linux__) && !defined(__sun__)
+        target->st_flags = env->GetLongField(statObject, ids.st_flags);
+        target->st_gen = env->GetLongField(statObject, ids.st_gen);
+#endif
+
+        res = true;
+    }
+    while(0);
+
+    CSLogTraceLeave("bool SystemUtil::mergeStat(%p, %p, %p): %d", env, statObject, target, res);
+    return res;
+}
+
+bool SystemUtil::fillStat(JNIEnv *env, const struct stat *st, jobject statObject) {
+    CSLogTraceEnter("bool SystemUtil::fillStat(%p, %p, %p)", env, st, statObject);
+
+    const JNICache::StatIDs &ids = JNICache::stat;
+    bool ret = false;
+    do {
+        jobject st_atimespec = env->GetObjectField(statObject, ids.st_atimespec);
+        jobject st_mtimespec = env->GetObjectField(statObject, ids.st_mtimespec);
+        jobject st_ctimespec = env->GetObjectField(statObject, ids.st_ctimespec);
+
+        env->SetLongField(statObject, ids.st_dev, st->st_dev);
+        env->SetLongField(statObject, ids.st_ino, st->st_ino);
+        env->SetLongField(statObject, ids.st_mode, st->st_mode);
+        env->SetLongField(statObject, ids.st_nlink, st->st_nlink);
+        env->SetLongField(statObject, ids.st_uid, st->st_uid);
+        env->SetLongField(statObject, ids.st_gid, st->st_gid);
+        env->SetLongField(statObject, ids.st_rdev, st->st_rdev);
+#if defined(__linux__) || defined(__sun__)
+        bool timespecsFilled =
+                SystemUtil::fillTimespec(env, &(st->st_atim), st_atimespec) &&
+                SystemUtil::fillTimespec(env, &(st->st_mtim), st_mtimespec) &&
+                SystemUtil::fillTimespec(env, &(st->st_ctim), st_ctimespec);
+#else
+        bool timespecsFilled =
+                SystemUtil::fillTimespec(env, &(st->st_atimespec), st_atimespec) &&
+                SystemUtil::fillTimespec(env, &(st->st_mtimespec), st_mtimespec) &&
+                SystemUtil::fillTimespec(env, &(st->st_ctimespec), st_ctimespec);
+#endif
+        env->SetLongField(statObject, ids.st_size, st->st_size);
+        env->SetLongField(statObject, ids.st_blocks, st->st_blocks);
+        env->SetLongField(statObject, ids.st_blocksize, st->st_blksize);
+#if !defined(__linux__) && !defined(__sun__)
+        env->SetLongField(statObject, ids.st_flags, st->st_flags);
+        env->SetLongField(statObject, ids.st_gen, st->st_gen);
+#else
+        /* Not present in struct stat, but the object may be reused. */
+        env->SetLongField(statObject, ids.st_flags, 0);
+        env->SetLongField(statObject, ids.st_gen, 0);
+#endif
+
+        env->DeleteLocalRef(st_atimespec);
+        env->DeleteLocalRef(st_mtimespec);
+        env->DeleteLocalRef(st_ctimespec);
+
+        if(!timespecsFilled)
+            break;
+
+        ret = true;
+    } while(0);
+
+    CSLogTraceLeave("bool SystemUtil::fillStat(%p, %p, %p): %d", env, st, statObject, ret);
+    return ret;
+}
+
+jobject SystemUtil::newStat(JNIEnv *env, const struct stat *st) {
+    CSLogTraceEnter("jobject SystemUtil::newStat(%p, %p)", env, st);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::stat.clazz,
+            JNICache::stat.init, "Stat");
+    if(obj != NULL) {
+        if(!fillStat(env, st, obj)) {
+            CSLogError("fillStat failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newStat(%p, %p): %p", env, st, res);
+    return res;
+}
+
+/**
+ * Merges the contents of source (Java class Flock) with the supplied
+ * struct flock.
+ */
+bool SystemUtil::mergeFlock(JNIEnv *env, jobject source, struct flock *target) {
+    CSLogTraceEnter("bool SystemUtil::mergeFlock(%p, %p, %p)", env, source, target);
+
+    const JNICache::FlockIDs &ids = JNICache::flock;
+
+    target->l_start = env->GetLongField(source, ids.l_start);
+    target->l_len = env->GetLongField(source, ids.l_len);
+    target->l_pid = env->GetLongField(source, ids.l_pid);
+    target->l_type = env->GetShortField(source, ids.l_type);
+    target->l_whence = env->GetShortField(source, ids.l_whence);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::mergeFlock(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+/**
+ * Fills in the fields of target (Java class Flock) from the fields of source
+ * (struct flock).
+ */
+bool SystemUtil::fillFlock(JNIEnv *env, const struct flock *source, jobject target) {
+    CSLogTraceEnter("bool SystemUtil::fillFlock(%p, %p, %p)", env, source, target);
+
+    const JNICache::FlockIDs &ids = JNICache::flock;
+
+    env->SetLongField(target, ids.l_start, source->l_start);
+    env->SetLongField(target, ids.l_len, source->l_len);
+    env->SetLongField(target, ids.l_pid, source->l_pid);
+    env->SetShortField(target, ids.l_type, source->l_type);
+    env->SetShortField(target, ids.l_whence, source->l_whence);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::fillFlock(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+/**
+ * Creates a new Flock object and fills it using the fields in
+ * <code>source</code>.
+ */
+jobject SystemUtil::newFlock(JNIEnv *env, const struct flock *source) {
+    CSLogTraceEnter("jobject SystemUtil::newFlock(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::flock.clazz,
+            JNICache::flock.init, "Flock");
+    if(obj != NULL) {
+        if (!fillFlock(env, source, obj)) {
+            CSLogError("fillFlock failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newFlock(%p, %p): %p", env, source, res);
+    return res;
+}
+
+/**
+ * Merges the contents of source (Java class Timespec) into the supplied
+ * struct timespec.
+ */
+bool SystemUtil::mergeTimespec(JNIEnv *env, jobject source,
+        struct timespec *target) {
+#define _FNAME_ "SystemUtil::mergeTimespec"
+    CSLogTraceEnter("bool " _FNAME_ "(%p, %p, %p)", env, source, target);
+    bool res = false;
+    if(source == NULL)
+        CSLogError("source == NULL");
+    else {
+        target->tv_sec = env->GetIntField(source, JNICache::timespec.sec);
+        target->tv_nsec = env->GetIntField(source, JNICache::timespec.nsec);
+
+        res = (env->ExceptionCheck() == JNI_FALSE);
+    }
+
+    CSLogTraceLeave("bool " _FNAME_ "(%p, %p, %p): %d", env, source, target, res);
+    return res;
+#undef _FNAME_
+}
+
+/**
+ * Fills in the fields of target (Java class Timespec) from the fields of source
+ * (struct timespec).
+ */
+bool SystemUtil::fillTimespec(JNIEnv *env, const struct timespec *source, jobject target) {
+    CSLogTraceEnter("bool SystemUtil::fillTimespec(%p, %p, %p)", env, source, target);
+
+    bool ret = false;
+    if(target == NULL)
+        CSLogError("target == NULL");
+    else {
+        env->SetIntField(target, JNICache::timespec.sec, source->tv_sec);
+        env->SetIntField(target, JNICache::timespec.nsec, source->tv_nsec);
+
+        ret = (env->ExceptionCheck() == JNI_FALSE);
+    }
+
+    CSLogTraceLeave("bool SystemUtil::fillTimespec(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+/**
+ * Creates a new Timespec object and fills it using the fields in
+ * <code>source</code>.
+ */
+jobject SystemUtil::newTimespec(JNIEnv *env, const struct timespec *source) {
+    CSLogTraceEnter("jobject SystemUtil::newTimespec(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::timespec.clazz,
+            JNICache::timespec.init, "Timespec");
+    if(obj != NULL) {
+        if (!fillTimespec(env, source, obj)) {
+            CSLogError("fillTimespec failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newTimespec(%p, %p): %p", env, source, res);
+    return res;
+}
+
+/**
+ * Merges the contents of source (Java class LongRef) with the supplied
+ * uint64_t.
+ */
+bool SystemUtil::mergeLongRef(JNIEnv *env, jobject source, uint64_t *target) {
+    CSLogTraceEnter("bool SystemUtil::mergeLongRef(%p, %p, %p)", env, source, target);
+
+    *target = env->GetLongField(source, JNICache::longRef.ref);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::mergeLongRef(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+/**
+ * Fills in the fields of target (Java class LongRef) from the fields of source
+ * (uint64_t).
+ */
+bool SystemUtil::fillLongRef(JNIEnv *env, const uint64_t *source, jobject target) {
+    CSLogTraceEnter("bool SystemUtil::fillLongRef(%p, %p, %p)", env, source, target);
+
+    env->SetLongField(target, JNICache::longRef.ref, *source);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::fillLongRef(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+/**
+ * Creates a new LongRef object and fills it using the fields in
+ * <code>source</code>.
+ */
+jobject SystemUtil::newLongRef(JNIEnv *env, const uint64_t *source) {
+    CSLogTraceEnter("jobject SystemUtil::newLongRef(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::longRef.clazz,
+            JNICache::longRef.init, "LongRef");
+    if(obj != NULL) {
+        if (!fillLongRef(env, source, obj)) {
+            CSLogError("fillLongRef failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newLongRef(%p, %p): %p", env, source, res);
+    return res;
+}
+
+/**
+ * Merges the contents of source (Java class Utimbuf) with the supplied
+ * struct utimbuf.
+ */
+bool SystemUtil::mergeUtimbuf(JNIEnv *env, jobject source, struct utimbuf *target) {
+    CSLogTraceEnter("bool SystemUtil::mergeUtimbuf(%p, %p, %p)", env, source, target);
+
+    target->actime = env->GetLongField(source, JNICache::utimbuf.actime);
+    target->modtime = env->GetLongField(source, JNICache::utimbuf.modtime);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::mergeUtimbuf(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+/**
+ * Fills in the fields of target (Java class Utimbuf) from the fields of source
+ * (struct utimbuf).
+ */
+bool SystemUtil::fillUtimbuf(JNIEnv *env, const struct utimbuf *source, jobject target) {
+    CSLogTraceEnter("bool SystemUtil::fillUtimbuf(%p, %p, %p)", env, source, target);
+
+    env->SetLongField(target, JNICache::utimbuf.actime, source->actime);
+    env->SetLongField(target, JNICache::utimbuf.modtime, source->modtime);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::fillUtimbuf(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+/**
+ * Creates a new Utimbuf object and fills it using the fields in
+ * <code>source</code>.
+ */
+jobject SystemUtil::newUtimbuf(JNIEnv *env, const struct utimbuf *source) {
+    CSLogTraceEnter("jobject SystemUtil::newUtimbuf(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::utimbuf.clazz,
+            JNICache::utimbuf.init, "Utimbuf");
+    if(obj != NULL) {
+        if (!fillUtimbuf(env, source, obj)) {
+            CSLogError("fillUtimbuf failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newUtimbuf(%p, %p): %p", env, source, res);
+    return res;
+}
+
+/**
+ * Merges the contents of source (Java class StatVFS) with the supplied
+ * struct statvfs.
+ */
+bool SystemUtil::mergeStatVFS(JNIEnv *env, jobject source, struct statvfs *target) {
+    CSLogTraceEnter("bool SystemUtil::mergeStatVFS(%p, %p, %p)", env, source, target);
+
+    const JNICache::StatVFSIDs &ids = JNICache::statVFS;
+
+    target->f_bsize = env->GetLongField(source, ids.f_bsize);
+    target->f_frsize = env->GetLongField(source, ids.f_frsize);
+    target->f_blocks = env->GetLongField(source, ids.f_blocks);
+    target->f_bfree = env->GetLongField(source, ids.f_bfree);
+    target->f_bavail = env->GetLongField(source, ids.f_bavail);
+    target->f_files = env->GetLongField(source, ids.f_files);
+    target->f_ffree = env->GetLongField(source, ids.f_ffree);
+    target->f_favail = env->GetLongField(source, ids.f_favail);
+    target->f_fsid = env->GetLongField(source, ids.f_fsid);
+    target->f_flag = env->GetLongField(source, ids.f_flag);
+    target->f_namemax = env->GetLongField(source, ids.f_namemax);
+
+    bool res = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::mergeStatVFS(%p, %p, %p): %d", env, source, target, res);
+    return res;
+}
+
+/**
+ * Fills in the fields of target (Java class StatVFS) from the fields of source
+ * (struct statvfs).
+ */
+bool SystemUtil::fillStatVFS(JNIEnv *env, const struct statvfs *source, jobject target) {
+    CSLogTraceEnter("bool SystemUtil::fillStatVFS(%p, %p, %p)", env, source, target);
+
+    const JNICache::StatVFSIDs &ids = JNICache::statVFS;
+
+    env->SetLongField(target, ids.f_bsize, source->f_bsize);
+    env->SetLongField(target, ids.f_frsize, source->f_frsize);
+    env->SetLongField(target, ids.f_blocks, source->f_blocks);
+    env->SetLongField(target, ids.f_bfree, source->f_bfree);
+    env->SetLongField(target, ids.f_bavail, source->f_bavail);
+    env->SetLongField(target, ids.f_files, source->f_files);
+    env->SetLongField(target, ids.f_ffree, source->f_ffree);
+    env->SetLongField(target, ids.f_favail, source->f_favail);
+    env->SetLongField(target, ids.f_fsid, source->f_fsid);
+    env->SetLongField(target, ids.f_flag, source->f_flag);
+    env->SetLongField(target, ids.f_namemax, source->f_namemax);
+
+    bool ret = (env->ExceptionCheck() == JNI_FALSE);
+
+    CSLogTraceLeave("bool SystemUtil::fillStatVFS(%p, %p, %p): %d", env, source, target, ret);
+    return ret;
+}
+
+/**
+ * Creates a new StatVFS object and fills it using the fields in
+ * <code>source</code>.
+ */
+jobject SystemUtil::newStatVFS(JNIEnv *env, const struct statvfs *source) {
+    CSLogTraceEnter("jobject SystemUtil::newStatVFS(%p, %p)", env, source);
+
+    jobject res = NULL;
+
+    jobject obj = newCachedObject(env, JNICache::statVFS.clazz,
+            JNICache::statVFS.init, "StatVFS");
+    if(obj != NULL) {
+        if (!fillStatVFS(env, source, obj)) {
+            CSLogError("fillStatVFS failed!");
+            env->DeleteLocalRef(obj);
+        }
+        else
+            res = obj;
+    }
+
+    if(env->ExceptionCheck() == JNI_TRUE)
+        env->ExceptionDescribe();
+
+    CSLogTraceLeave("jobject SystemUtil::newStatVFS(%p, %p): %p", env, source, res);
+    return res;
+}
@@ -0,0 +1,1049 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define LOG_ENABLE_DEBUG 0
+
+#define __STDC_FORMAT_MACROS
+
+#include "fuse26_lowlevel_module.h"
+#include "jFUSERequestRing.h"
+
+#include "common.h"
+#include "CSLog.h"
+#include "JNICache.h"
+#include "JavaSignatures.h"
+
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <inttypes.h>
+#include <stdint.h>
+
+#define METHOD_SPEC(const_name) \
+    { OPS_LL_##const_name##_NAME, OPS_LL_##const_name##_SIGNATURE }
+
+const jFUSEMethodSpec jfuse26_lowlevel_methods[JFUSE_LL_OP_COUNT] = {
+    METHOD_SPEC(LOOKUP),
+    METHOD_SPEC(FORGET),
+    METHOD_SPEC(GETATTR),
+    METHOD_SPEC(SETATTR),
+    METHOD_SPEC(OPEN),
+    METHOD_SPEC(READ),
+    METHOD_SPEC(WRITE),
+    METHOD_SPEC(RELEASE),
+    METHOD_SPEC(OPENDIR),
+    METHOD_SPEC(READDIR),
+    METHOD_SPEC(RELEASEDIR),
+};
+
+#undef METHOD_SPEC
+
+#define ASYNC_METHOD_SPEC(const_name) \
+    { OPS_LL_##const_name##_NAME, OPS_LL_ASYNC_##const_name##_SIGNATURE }
+
+const jFUSEMethodSpec jfuse26_async_reply_methods[JFUSE_LL_OP_COUNT] = {
+    ASYNC_METHOD_SPEC(LOOKUP),
+    ASYNC_METHOD_SPEC(FORGET),
+    ASYNC_METHOD_SPEC(GETATTR),
+    ASYNC_METHOD_SPEC(SETATTR),
+    ASYNC_METHOD_SPEC(OPEN),
+    ASYNC_METHOD_SPEC(READ),
+    ASYNC_METHOD_SPEC(WRITE),
+    ASYNC_METHOD_SPEC(RELEASE),
+    ASYNC_METHOD_SPEC(OPENDIR),
+    ASYNC_METHOD_SPEC(READDIR),
+    ASYNC_METHOD_SPEC(RELEASEDIR),
+};
+
+#undef ASYNC_METHOD_SPEC
+
+/**
+ * Creates a new instance of a reply class in the JNICache.
+ */
+static jobject newReply(JNIEnv *env, jclass clazz, jmethodID init,
+        const char *className) {
+    jobject obj = env->NewObject(clazz, init);
+    if(obj == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new %s instance.", className);
+        if(obj != NULL)
+            env->DeleteLocalRef(obj);
+        return NULL;
+    }
+
+    return obj;
+}
+
+/**
+ * Merges the 'attr' Stat field of a reply object into <code>target</code>.
+ */
+static bool mergeReplyAttr(JNIEnv *env, jobject replyObject, jfieldID attrFid,
+        struct stat *target) {
+    jobject statObject = env->GetObjectField(replyObject, attrFid);
+    if(statObject == NULL) {
+        CSLogError("Reply object has a null attr field.");
+        return false;
+    }
+
+    bool res = FUSE26Util::mergeStat(env, statObject, target);
+    env->DeleteLocalRef(statObject);
+    return res;
+}
+
+bool mergeEntryReply(JNIEnv *env, jobject source,
+        struct fuse_entry_param *target) {
+    const JNICache::FUSEEntryReplyIDs &ids = JNICache::fuseEntryReply;
+
+    target->ino = env->GetLongField(source, ids.ino);
+    target->generation = env->GetLongField(source, ids.generation);
+    target->attr_timeout = env->GetDoubleField(source, ids.attr_timeout);
+    target->entry_timeout = env->GetDoubleField(source, ids.entry_timeout);
+
+    return mergeReplyAttr(env, source, ids.attr, &target->attr) &&
+            env->ExceptionCheck() == JNI_FALSE;
+}
+
+bool mergeAttrReply(JNIEnv *env, jobject source, struct stat *target,
+        double *attrTimeout) {
+    const JNICache::FUSEAttrReplyIDs &ids = JNICache::fuseAttrReply;
+
+    *attrTimeout = env->GetDoubleField(source, ids.attr_timeout);
+
+    return mergeReplyAttr(env, source, ids.attr, target) &&
+            env->ExceptionCheck() == JNI_FALSE;
+}
+
+/**
+ * Creates a new FUSEDirReply writing to the <code>size</code> bytes at
+ * <code>buf</code>.
+ */
+static jobject newDirReply(JNIEnv *env, char *buf, size_t size) {
+    jobject res = NULL;
+
+    jobject byteBuffer = JNIUtil::bytesToByteBuffer(env, buf, size);
+    if(byteBuffer != NULL) {
+        res = env->NewObject(JNICache::fuseDirReply.clazz,
+                JNICache::fuseDirReply.init, byteBuffer);
+        if(res == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            CSLogError("Could not create new FUSEDirReply instance.");
+            if(res != NULL)
+                env->DeleteLocalRef(res);
+            res = NULL;
+        }
+        env->DeleteLocalRef(byteBuffer);
+    }
+
+    return res;
+}
+
+#define JAVA_ARG_ENTRY_REPLY(num) \
+    CSLogDebug("Processing argument %d of type FUSEEntryReply...", num); \
+    jobject java_arg##num = newReply(env, JNICache::fuseEntryReply.clazz, \
+            JNICache::fuseEntryReply.init, "FUSEEntryReply"); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEEntryReply."); \
+    }
+
+#define JAVA_ARG_ATTR_REPLY(num) \
+    CSLogDebug("Processing argument %d of type FUSEAttrReply...", num); \
+    jobject java_arg##num = newReply(env, JNICache::fuseAttrReply.clazz, \
+            JNICache::fuseAttrReply.init, "FUSEAttrReply"); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEAttrReply."); \
+    }
+
+#define JAVA_ARG_DIR_REPLY(num, buf, size) \
+    CSLogDebug("Processing argument %d (%s) of type FUSEDirReply...", num, #buf); \
+    jobject java_arg##num = newDirReply(env, buf, size); \
+    if(java_arg##num == NULL) { \
+        if(env->ExceptionCheck() == JNI_TRUE) \
+            env->ExceptionDescribe(); \
+        CSPanicWithMessage("Could not create new FUSEDirReply."); \
+    }
+
+/* The low level API passes a NULL fuse_file_info to setattr when the
+ * attributes aren't changed through an open file. */
+#define JAVA_ARG_OPTIONAL_FUSE_FILE_INFO(num, fi) \
+    CSLogDebug("Processing argument %d (%s) of type struct fuse_file_info (optional)...", num, #fi); \
+    jobject java_arg##num = NULL; \
+    if(fi != NULL) { \
+        java_arg##num = FUSE26Util::newFUSEFileInfo(env, fi); \
+        if(java_arg##num == NULL) { \
+            if(env->ExceptionCheck() == JNI_TRUE) \
+                env->ExceptionDescribe(); \
+            CSPanicWithMessage("Could not create new FUSEFileInfo."); \
+        } \
+    }
+
+#define JFUSE_MERGE_ENTRY_REPLY(reply_object, e) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if(!mergeEntryReply(env, reply_object, e)) \
+                CSPanicWithMessage("Could not merge FUSEEntryReply -> struct fuse_entry_param"); \
+        }
+
+#define JFUSE_MERGE_ATTR_REPLY(reply_object, stbuf, timeout) \
+        if(env->ExceptionCheck() == JNI_FALSE) { \
+            if(!mergeAttrReply(env, reply_object, stbuf, timeout)) \
+                CSPanicWithMessage("Could not merge FUSEAttrReply -> struct stat"); \
+        }
+
+/* Only installed to tell the mount handle the negotiated connection
+ * parameters. The low level API has no init operation in Java. */
+void jfuse_ll_init(void *userdata, struct fuse_conn_info *conn) {
+    CSLogTraceEnter("void jfuse_ll_init(%p, %p)", userdata, conn);
+
+    jFUSEContext *context = (jFUSEContext*) userdata;
+    JNIEnv *env = context->getThreadState()->getJNIEnv();
+
+    jobject connInfo = FUSE26Util::newFUSEConnInfo(env, conn);
+    if(connInfo != NULL) {
+        context->notifyConnInitialized(env, connInfo);
+        env->DeleteLocalRef(connInfo);
+    }
+
+    CSLogTraceLeave("void jfuse_ll_init(%p, %p)", userdata, conn);
+}
+
+void jfuse_ll_lookup(fuse_req_t req, fuse_ino_t parent, const char *name) {
+    CSLogTraceEnter("void jfuse_ll_lookup(%p, %lu, %p)", req,
+            (unsigned long) parent, name);
+    CSLogTrace("  name=\"%s\"", name);
+
+    int retval = -EIO;
+    struct fuse_entry_param e;
+    memset(&e, 0, sizeof(e));
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
+    JAVA_ARG_ENTRY_REPLY(3);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(LOOKUP) {
+        JFUSE_FS_PROVIDER_CALL((jlong) parent, JAVA_ARG(2), JAVA_ARG(3));
+
+        JFUSE_MERGE_ENTRY_REPLY(JAVA_ARG(3), &e);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_lookup");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_entry(req, &e);
+
+    CSLogTraceLeave("void jfuse_ll_lookup(%p, %lu, %p): %d", req,
+            (unsigned long) parent, name, retval);
+}
+
+void jfuse_ll_forget(fuse_req_t req, fuse_ino_t ino, unsigned long nlookup) {
+    CSLogTraceEnter("void jfuse_ll_forget(%p, %lu, %lu)", req,
+            (unsigned long) ino, nlookup);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(FORGET) {
+        env->CallVoidMethod(obj, JFUSE_FS_PROVIDER_MID, (jlong) ino,
+                (jlong) nlookup);
+    }
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_forget");
+
+    fuse_reply_none(req);
+
+    CSLogTraceLeave("void jfuse_ll_forget(%p, %lu, %lu)", req,
+            (unsigned long) ino, nlookup);
+}
+
+void jfuse_ll_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_getattr(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    int retval = -EIO;
+    struct stat stbuf;
+    double attrTimeout = 0.0;
+    memset(&stbuf, 0, sizeof(stbuf));
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_ATTR_REPLY(2);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(GETATTR) {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2));
+
+        JFUSE_MERGE_ATTR_REPLY(JAVA_ARG(2), &stbuf, &attrTimeout);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_getattr");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_attr(req, &stbuf, attrTimeout);
+
+    CSLogTraceLeave("void jfuse_ll_getattr(%p, %lu, %p): %d", req,
+            (unsigned long) ino, fi, retval);
+}
+
+void jfuse_ll_setattr(fuse_req_t req, fuse_ino_t ino, struct stat *attr,
+        int to_set, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_setattr(%p, %lu, %p, %d, %p)", req,
+            (unsigned long) ino, attr, to_set, fi);
+
+    int retval = -EIO;
+    struct stat stbuf;
+    double attrTimeout = 0.0;
+    memset(&stbuf, 0, sizeof(stbuf));
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_STAT(2, attr);
+    JAVA_ARG_OPTIONAL_FUSE_FILE_INFO(4, fi);
+    JAVA_ARG_ATTR_REPLY(5);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(SETATTR) {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2), (jint) to_set,
+                JAVA_ARG(4), JAVA_ARG(5));
+
+        if(fi != NULL) {
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+        }
+        JFUSE_MERGE_ATTR_REPLY(JAVA_ARG(5), &stbuf, &attrTimeout);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_setattr");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_attr(req, &stbuf, attrTimeout);
+
+    CSLogTraceLeave("void jfuse_ll_setattr(%p, %lu, %p, %d, %p): %d", req,
+            (unsigned long) ino, attr, to_set, fi, retval);
+}
+
+/**
+ * Common implementation of open and opendir, which only differ in the Java
+ * method that is called.
+ */
+static void jfuse_ll_open_common(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi, int methodIndex, const char *opName) {
+    int retval = -EIO;
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    jmethodID fsProviderMid = context->getFSProviderMethodID(methodIndex);
+    if(fsProviderMid == NULL)
+        CSLogError("File system does not implement \"%s\".", opName);
+    else {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception occurred when executing %s.", opName);
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_open(req, fi);
+}
+
+/**
+ * Common implementation of release and releasedir, which only differ in the
+ * Java method that is called.
+ */
+static void jfuse_ll_release_common(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi, int methodIndex, const char *opName) {
+    int retval = -EIO;
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    jmethodID fsProviderMid = context->getFSProviderMethodID(methodIndex);
+    if(fsProviderMid == NULL)
+        CSLogError("File system does not implement \"%s\".", opName);
+    else {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception occurred when executing %s.", opName);
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+
+    JFUSE_LL_REPLY_ERR(req, retval);
+}
+
+void jfuse_ll_open(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_open(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_open_common(req, ino, fi, JFUSE_LL_OP_OPEN, "jfuse_ll_open");
+
+    CSLogTraceLeave("void jfuse_ll_open(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_read(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_read(%p, %lu, %zu, %" PRId64 ", %p)", req,
+            (unsigned long) ino, size, (int64_t) off, fi);
+
+    int retval = -EIO;
+
+    char *buf = (char*) malloc(size);
+    if(buf == NULL) {
+        CSLogError("Could not allocate %zu bytes for read buffer.", size);
+        fuse_reply_err(req, ENOMEM);
+        return;
+    }
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_BYTEBUFFER(2, buf, size);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(READ) {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2), (jlong) off,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_read");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_buf(req, buf, ((size_t) retval < size) ? retval : size);
+
+    free(buf);
+
+    CSLogTraceLeave("void jfuse_ll_read(%p, %lu, %zu, %" PRId64 ", %p): %d",
+            req, (unsigned long) ino, size, (int64_t) off, fi, retval);
+}
+
+void jfuse_ll_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_write(%p, %lu, %p, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, buf, size, (int64_t) off, fi);
+
+    int retval = -EIO;
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_READONLY_BYTEBUFFER(2, buf, size);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(WRITE) {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2), (jlong) off,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_write");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_write(req, retval);
+
+    CSLogTraceLeave("void jfuse_ll_write(%p, %lu, %p, %zu, %" PRId64 ", %p): "
+            "%d", req, (unsigned long) ino, buf, size, (int64_t) off, fi,
+            retval);
+}
+
+void jfuse_ll_release(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_release(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_release_common(req, ino, fi, JFUSE_LL_OP_RELEASE,
+            "jfuse_ll_release");
+
+    CSLogTraceLeave("void jfuse_ll_release(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_opendir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_opendir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_open_common(req, ino, fi, JFUSE_LL_OP_OPENDIR,
+            "jfuse_ll_opendir");
+
+    CSLogTraceLeave("void jfuse_ll_opendir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_readdir(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_readdir(%p, %lu, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, size, (int64_t) off, fi);
+
+    int retval = -EIO;
+    size_t length = 0;
+
+    char *buf = (char*) malloc(size);
+    if(buf == NULL) {
+        CSLogError("Could not allocate %zu bytes for readdir buffer.", size);
+        fuse_reply_err(req, ENOMEM);
+        return;
+    }
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_DIR_REPLY(2, buf, size);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_LL_FS_PROVIDER_METHOD_OK(READDIR) {
+        JFUSE_FS_PROVIDER_CALL((jlong) ino, JAVA_ARG(2), (jlong) off,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        if(env->ExceptionCheck() == JNI_FALSE) {
+            jint jlength = env->GetIntField(JAVA_ARG(2),
+                    JNICache::fuseDirReply.length);
+            if(jlength < 0 || (size_t) jlength > size)
+                CSLogError("Invalid FUSEDirReply length: %d", (int) jlength);
+            else {
+                length = jlength;
+                JFUSE_SET_RETVAL();
+            }
+        }
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+
+    JAVA_EXCEPTION_CHECK("jfuse_ll_readdir");
+
+    if(retval < 0)
+        JFUSE_LL_REPLY_ERR(req, retval);
+    else
+        fuse_reply_buf(req, buf, length);
+
+    free(buf);
+
+    CSLogTraceLeave("void jfuse_ll_readdir(%p, %lu, %zu, %" PRId64 ", %p): "
+            "%d", req, (unsigned long) ino, size, (int64_t) off, fi, retval);
+}
+
+void jfuse_ll_releasedir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_releasedir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_release_common(req, ino, fi, JFUSE_LL_OP_RELEASEDIR,
+            "jfuse_ll_releasedir");
+
+    CSLogTraceLeave("void jfuse_ll_releasedir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+/*
+ * Asynchronous reply callbacks.
+ */
+
+/**
+ * Creates the FUSERequest for <code>req</code>. If that fails, the request is
+ * replied to with an error and NULL is returned.
+ */
+static jobject beginAsyncRequest(JNIEnv *env, fuse_req_t req,
+        const struct fuse_file_info *fi, size_t size, bool noReply) {
+    jFUSERequest *state = (jFUSERequest*) malloc(sizeof(jFUSERequest));
+    if(state == NULL) {
+        CSLogError("Could not allocate request state.");
+        if(noReply)
+            fuse_reply_none(req);
+        else
+            fuse_reply_err(req, ENOMEM);
+        return NULL;
+    }
+
+    memset(state, 0, sizeof(jFUSERequest));
+    state->req = req;
+    if(fi != NULL)
+        state->fi = *fi;
+    state->size = size;
+    state->noReply = noReply;
+
+    jobject obj = env->NewObject(JNICache::fuseRequest.clazz,
+            JNICache::fuseRequest.init, (jlong) (intptr_t) state);
+    if(obj == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not create new FUSERequest instance.");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+        if(obj != NULL)
+            env->DeleteLocalRef(obj);
+
+        free(state);
+        if(noReply)
+            fuse_reply_none(req);
+        else
+            fuse_reply_err(req, EIO);
+        return NULL;
+    }
+
+    return obj;
+}
+
+/**
+ * Finishes the callback part of an asynchronous request. If the Java method
+ * threw an exception or wasn't called, the request is replied to with EIO
+ * unless the file system already replied.
+ */
+static void endAsyncRequest(JNIEnv *env, jobject request, bool called,
+        const char *opName) {
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception occurred when executing %s.", opName);
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+        called = false;
+    }
+
+    if(!called) {
+        env->CallVoidMethod(request, JNICache::fuseRequest.failIfPending,
+                (jint) -EIO);
+        if(env->ExceptionCheck() == JNI_TRUE) {
+            CSLogError("Could not fail request of %s.", opName);
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+        }
+    }
+
+    env->DeleteLocalRef(request);
+}
+
+#define JAVA_ARG_FUSE_REQUEST(num, fi, size, noReply) \
+    CSLogDebug("Processing argument %d of type FUSERequest...", num); \
+    jobject java_arg##num = beginAsyncRequest(env, req, fi, size, noReply); \
+    if(java_arg##num == NULL) \
+        return; \
+    bool java_arg##num##_called = false
+
+#define JFUSE_LL_ASYNC_CALL(...) \
+    env->CallVoidMethod(obj, JFUSE_FS_PROVIDER_MID, ##__VA_ARGS__); \
+    java_arg1_called = true
+
+#define JFUSE_LL_ASYNC_END(opName) \
+    endAsyncRequest(env, JAVA_ARG(1), java_arg1_called, opName)
+
+void jfuse_ll_async_lookup(fuse_req_t req, fuse_ino_t parent,
+        const char *name) {
+    CSLogTraceEnter("void jfuse_ll_async_lookup(%p, %lu, %p)", req,
+            (unsigned long) parent, name);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, NULL, 0, false);
+    JAVA_ARG_CSTRING_BYTEBUFFER(3, name);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(LOOKUP) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) parent, JAVA_ARG(3));
+    }
+
+    JAVA_ARG_CLEANUP(3);
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_lookup");
+
+    CSLogTraceLeave("void jfuse_ll_async_lookup(%p, %lu, %p)", req,
+            (unsigned long) parent, name);
+}
+
+void jfuse_ll_async_forget(fuse_req_t req, fuse_ino_t ino,
+        unsigned long nlookup) {
+    CSLogTraceEnter("void jfuse_ll_async_forget(%p, %lu, %lu)", req,
+            (unsigned long) ino, nlookup);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, NULL, 0, true);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(FORGET) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, (jlong) nlookup);
+    }
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_forget");
+
+    CSLogTraceLeave("void jfuse_ll_async_forget(%p, %lu, %lu)", req,
+            (unsigned long) ino, nlookup);
+}
+
+void jfuse_ll_async_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_getattr(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, NULL, 0, false);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(GETATTR) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino);
+    }
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_getattr");
+
+    CSLogTraceLeave("void jfuse_ll_async_getattr(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_async_setattr(fuse_req_t req, fuse_ino_t ino, struct stat *attr,
+        int to_set, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_setattr(%p, %lu, %p, %d, %p)", req,
+            (unsigned long) ino, attr, to_set, fi);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, NULL, 0, false);
+    JAVA_ARG_STAT(3, attr);
+    JAVA_ARG_OPTIONAL_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(SETATTR) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, JAVA_ARG(3),
+                (jint) to_set, JAVA_ARG(5));
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(3);
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_setattr");
+
+    CSLogTraceLeave("void jfuse_ll_async_setattr(%p, %lu, %p, %d, %p)", req,
+            (unsigned long) ino, attr, to_set, fi);
+}
+
+/**
+ * Common implementation of the asynchronous open, release, opendir and
+ * releasedir, which only differ in the Java method that is called.
+ */
+static void jfuse_ll_async_fi_common(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi, int methodIndex, const char *opName) {
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, fi, 0, false);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    jmethodID fsProviderMid = context->getFSProviderMethodID(methodIndex);
+    if(fsProviderMid == NULL)
+        CSLogError("File system does not implement \"%s\".", opName);
+    else {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, JAVA_ARG(3));
+    }
+
+    JAVA_ARG_CLEANUP(3);
+
+    JFUSE_LL_ASYNC_END(opName);
+}
+
+void jfuse_ll_async_open(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_open(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_async_fi_common(req, ino, fi, JFUSE_LL_OP_OPEN,
+            "jfuse_ll_async_open");
+
+    CSLogTraceLeave("void jfuse_ll_async_open(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_async_read(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_read(%p, %lu, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, size, (int64_t) off, fi);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, fi, size, false);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(READ) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, (jint) size,
+                (jlong) off, JAVA_ARG(5));
+    }
+
+    JAVA_ARG_CLEANUP(5);
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_read");
+
+    CSLogTraceLeave("void jfuse_ll_async_read(%p, %lu, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, size, (int64_t) off, fi);
+}
+
+void jfuse_ll_async_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_write(%p, %lu, %p, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, buf, size, (int64_t) off, fi);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, fi, size, false);
+    JAVA_ARG_READONLY_BYTEBUFFER(3, buf, size);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(WRITE) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, JAVA_ARG(3),
+                (jlong) off, JAVA_ARG(5));
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(3);
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_write");
+
+    CSLogTraceLeave("void jfuse_ll_async_write(%p, %lu, %p, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, buf, size, (int64_t) off, fi);
+}
+
+void jfuse_ll_async_release(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_release(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_async_fi_common(req, ino, fi, JFUSE_LL_OP_RELEASE,
+            "jfuse_ll_async_release");
+
+    CSLogTraceLeave("void jfuse_ll_async_release(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_async_opendir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_opendir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_async_fi_common(req, ino, fi, JFUSE_LL_OP_OPENDIR,
+            "jfuse_ll_async_opendir");
+
+    CSLogTraceLeave("void jfuse_ll_async_opendir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_async_readdir(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_readdir(%p, %lu, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, size, (int64_t) off, fi);
+
+    JFUSE_LL_OPERATION_INIT(req);
+
+    JAVA_ARG_FUSE_REQUEST(1, fi, size, false);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_LL_ASYNC_FS_PROVIDER_METHOD_OK(READDIR) {
+        JFUSE_LL_ASYNC_CALL(JAVA_ARG(1), (jlong) ino, (jint) size,
+                (jlong) off, JAVA_ARG(5));
+    }
+
+    JAVA_ARG_CLEANUP(5);
+
+    JFUSE_LL_ASYNC_END("jfuse_ll_async_readdir");
+
+    CSLogTraceLeave("void jfuse_ll_async_readdir(%p, %lu, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, size, (int64_t) off, fi);
+}
+
+void jfuse_ll_async_releasedir(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_async_releasedir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jfuse_ll_async_fi_common(req, ino, fi, JFUSE_LL_OP_RELEASEDIR,
+            "jfuse_ll_async_releasedir");
+
+    CSLogTraceLeave("void jfuse_ll_async_releasedir(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+#undef JFUSE_LL_ASYNC_END
+#undef JFUSE_LL_ASYNC_CALL
+#undef JAVA_ARG_FUSE_REQUEST
+
+/*
+ * Callbacks for mounts with a request ring. They publish the request to the
+ * ring and return without replying, leaving the reply to the Java consumer
+ * that completes it. If the ring has no free slot, or the data doesn't fit in
+ * a slot, the request is passed on to the upcall version of the callback.
+ */
+
+static void putRingInt(char *slot, int offset, int32_t value) {
+    memcpy(slot + offset, &value, sizeof(value));
+}
+
+static void putRingLong(char *slot, int offset, int64_t value) {
+    memcpy(slot + offset, &value, sizeof(value));
+}
+
+/**
+ * Returns the next free slot of the ring of the mount that <code>req</code>
+ * belongs to, with the common request fields filled in, or NULL if the
+ * request can't be published.
+ */
+static char* beginRingRequest(fuse_req_t req, jFUSERequestRing **ring,
+        uint32_t *index, int32_t opcode, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    jFUSEContext *context = (jFUSEContext*) fuse_req_userdata(req);
+    *ring = context->getRequestRing();
+
+    char *slot = (*ring)->beginPublish(index);
+    if(slot != NULL) {
+        putRingInt(slot, JFUSE_RING_OFF_OPCODE, opcode);
+        putRingInt(slot, JFUSE_RING_OFF_DATA_LENGTH, 0);
+        putRingLong(slot, JFUSE_RING_OFF_INO, ino);
+        putRingLong(slot, JFUSE_RING_OFF_OFFSET, 0);
+        putRingLong(slot, JFUSE_RING_OFF_FH, fi != NULL ? fi->fh : 0);
+        putRingInt(slot, JFUSE_RING_OFF_SIZE, 0);
+        putRingInt(slot, JFUSE_RING_OFF_FLAGS, fi != NULL ? fi->flags : 0);
+        putRingInt(slot, JFUSE_RING_OFF_RESULT, -EIO);
+    }
+
+    return slot;
+}
+
+void jfuse_ll_ring_lookup(fuse_req_t req, fuse_ino_t parent,
+        const char *name) {
+    CSLogTraceEnter("void jfuse_ll_ring_lookup(%p, %lu, %p)", req,
+            (unsigned long) parent, name);
+
+    jFUSERequestRing *ring;
+    uint32_t index;
+    const size_t nameLength = strlen(name);
+    char *slot = beginRingRequest(req, &ring, &index, JFUSE_RING_OP_LOOKUP,
+            parent, NULL);
+    if(slot == NULL || nameLength > ring->getDataCapacity())
+        jfuse_ll_lookup(req, parent, name);
+    else {
+        putRingInt(slot, JFUSE_RING_OFF_DATA_LENGTH, (int32_t) nameLength);
+        memcpy(slot + JFUSE_RING_HEADER_SIZE, name, nameLength);
+        ring->publish(index, req);
+    }
+
+    CSLogTraceLeave("void jfuse_ll_ring_lookup(%p, %lu, %p)", req,
+            (unsigned long) parent, name);
+}
+
+void jfuse_ll_ring_getattr(fuse_req_t req, fuse_ino_t ino,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_ring_getattr(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+
+    jFUSERequestRing *ring;
+    uint32_t index;
+    char *slot = beginRingRequest(req, &ring, &index, JFUSE_RING_OP_GETATTR,
+            ino, fi);
+    if(slot == NULL)
+        jfuse_ll_getattr(req, ino, fi);
+    else
+        ring->publish(index, req);
+
+    CSLogTraceLeave("void jfuse_ll_ring_getattr(%p, %lu, %p)", req,
+            (unsigned long) ino, fi);
+}
+
+void jfuse_ll_ring_read(fuse_req_t req, fuse_ino_t ino, size_t size,
+        off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_ring_read(%p, %lu, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, size, (int64_t) off, fi);
+
+    jFUSERequestRing *ring;
+    uint32_t index;
+    char *slot = beginRingRequest(req, &ring, &index, JFUSE_RING_OP_READ,
+            ino, fi);
+    if(slot == NULL || size > ring->getDataCapacity())
+        jfuse_ll_read(req, ino, size, off, fi);
+    else {
+        putRingLong(slot, JFUSE_RING_OFF_OFFSET, off);
+        putRingInt(slot, JFUSE_RING_OFF_SIZE, (int32_t) size);
+        ring->publish(index, req);
+    }
+
+    CSLogTraceLeave("void jfuse_ll_ring_read(%p, %lu, %zu, %" PRId64 ", %p)",
+            req, (unsigned long) ino, size, (int64_t) off, fi);
+}
+
+void jfuse_ll_ring_write(fuse_req_t req, fuse_ino_t ino, const char *buf,
+        size_t size, off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("void jfuse_ll_ring_write(%p, %lu, %p, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, buf, size, (int64_t) off, fi);
+
+    jFUSERequestRing *ring;
+    uint32_t index;
+    char *slot = beginRingRequest(req, &ring, &index, JFUSE_RING_OP_WRITE,
+            ino, fi);
+    if(slot == NULL || size > ring->getDataCapacity())
+        jfuse_ll_write(req, ino, buf, size, off, fi);
+    else {
+        putRingInt(slot, JFUSE_RING_OFF_DATA_LENGTH, (int32_t) size);
+        putRingLong(slot, JFUSE_RING_OFF_OFFSET, off);
+        memcpy(slot + JFUSE_RING_HEADER_SIZE, buf, size);
+        ring->publish(index, req);
+    }
+
+    CSLogTraceLeave("void jfuse_ll_ring_write(%p, %lu, %p, %zu, %" PRId64
+            ", %p)", req, (unsigned long) ino, buf, size, (int64_t) off, fi);
+}
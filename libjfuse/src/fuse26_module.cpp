@@ -28,7 +28,10 @@
 
 #include <string.h>
 #include <errno.h>
+#include <fcntl.h>
 #include <inttypes.h>
+#include <stdlib.h>
+#include <unistd.h>
 
 #if !defined(__NetBSD__)
 #include <fuse_common.h>
@@ -36,6 +39,108 @@
 #include <fuse.h>
 
 #include "JavaSignatures.h"
+#include "JNICache.h"
+
+#define METHOD_SPEC(const_name) \
+    { OPS_##const_name##_NAME, OPS_##const_name##_SIGNATURE }
+
+const jFUSEMethodSpec jfuse26_methods[JFUSE_OP_COUNT] = {
+    METHOD_SPEC(GETATTR),
+    METHOD_SPEC(READLINK),
+    METHOD_SPEC(GETDIR),
+    METHOD_SPEC(MKNOD),
+    METHOD_SPEC(MKDIR),
+    METHOD_SPEC(UNLINK),
+    METHOD_SPEC(RMDIR),
+    METHOD_SPEC(SYMLINK),
+    METHOD_SPEC(RENAME),
+    METHOD_SPEC(LINK),
+    METHOD_SPEC(CHMOD),
+    METHOD_SPEC(CHOWN),
+    METHOD_SPEC(TRUNCATE),
+    METHOD_SPEC(UTIME),
+    METHOD_SPEC(OPEN),
+    METHOD_SPEC(READ),
+    METHOD_SPEC(WRITE),
+    METHOD_SPEC(STATFS),
+    METHOD_SPEC(FLUSH),
+    METHOD_SPEC(RELEASE),
+    METHOD_SPEC(FSYNC),
+    METHOD_SPEC(SETXATTR),
+    METHOD_SPEC(GETXATTR),
+    METHOD_SPEC(LISTXATTR),
+    METHOD_SPEC(REMOVEXATTR),
+    METHOD_SPEC(OPENDIR),
+    METHOD_SPEC(READDIR),
+    METHOD_SPEC(RELEASEDIR),
+    METHOD_SPEC(FSYNCDIR),
+    METHOD_SPEC(INIT),
+    METHOD_SPEC(DESTROY),
+    METHOD_SPEC(ACCESS),
+    METHOD_SPEC(CREATE),
+    METHOD_SPEC(FTRUNCATE),
+    METHOD_SPEC(FGETATTR),
+    METHOD_SPEC(LOCK),
+    METHOD_SPEC(UTIMENS),
+    METHOD_SPEC(BMAP),
+    METHOD_SPEC(GETATTR_BUFFER),
+    METHOD_SPEC(FGETATTR_BUFFER),
+    METHOD_SPEC(OPEN_BUFFER),
+    METHOD_SPEC(CREATE_BUFFER),
+    METHOD_SPEC(READ_BUFFER),
+    METHOD_SPEC(WRITE_BUFFER),
+    METHOD_SPEC(FLUSH_BUFFER),
+    METHOD_SPEC(RELEASE_BUFFER),
+    METHOD_SPEC(FSYNC_BUFFER),
+    METHOD_SPEC(FTRUNCATE_BUFFER),
+#if FUSE_VERSION >= 29
+    METHOD_SPEC(READ_BUF),
+    METHOD_SPEC(WRITE_BUF),
+    METHOD_SPEC(FALLOCATE),
+#endif /* FUSE_VERSION >= 29 */
+#if defined(__APPLE__) || defined(__DARWIN__)
+#if (__FreeBSD__ >= 10)
+    METHOD_SPEC(EXCHANGE),
+    METHOD_SPEC(GETXTIMES),
+    METHOD_SPEC(SETBKUPTIME),
+    METHOD_SPEC(SETCHGTIME),
+    METHOD_SPEC(SETCRTIME),
+    METHOD_SPEC(CHFLAGS),
+    METHOD_SPEC(SETATTR_X),
+    METHOD_SPEC(FSETATTR_X),
+#endif /* __FreeBSD__ >= 10 */
+#endif /* defined(__APPLE__) || defined(__DARWIN__) */
+};
+
+#undef METHOD_SPEC
+
+/*
+ * Native passthrough of read and write to the backing file that open or
+ * create registered for a handle. See FUSEFileInfo.backing_fd.
+ */
+
+static inline void registerBackingFd(jFUSEContext *context, int backingFd,
+        struct fuse_file_info *fi) {
+    if(backingFd >= 0)
+        context->getPassthroughTable()->addDuplicate(fi->fh, backingFd);
+}
+
+static inline int getBackingFd(struct fuse_file_info *fi) {
+    if(fi == NULL)
+        return -1;
+
+    return getjFUSEContext()->getPassthroughTable()->get(fi->fh);
+}
+
+#define JFUSE_REGISTER_BACKING_FD(ffi_object, fi) \
+        if(env->ExceptionCheck() == JNI_FALSE && retval == 0) \
+            registerBackingFd(context, env->GetIntField(ffi_object, \
+                    JNICache::fuseFileInfo.backing_fd), fi);
+
+#define JFUSE_REGISTER_BACKING_FD_BUFFER(fi) \
+        if(env->ExceptionCheck() == JNI_FALSE && retval == 0) \
+            registerBackingFd(context, FUSE26BufferUtil::bufferToBackingFd( \
+                    threadState->getFileInfoBufferData()), fi);
 
 int jfuse_getattr(const char *path, struct stat *stbuf) {
     CSLogTraceEnter("int jfuse_getattr(%p, %p)",
@@ -44,18 +149,34 @@ int jfuse_getattr(const char *path, struct stat *stbuf) {
 
     int retval = -EIO;
     JFUSE_OPERATION_INIT();
+
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_STAT(2, stbuf);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_GETATTR_NAME, OPS_GETATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(GETATTR) {
+        JAVA_ARG_STAT_BUFFER(2, stbuf);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
-        JFUSE_MERGE_STAT(JAVA_ARG(2), stbuf);
+        JFUSE_MERGE_STAT_BUFFER(stbuf);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(2);
+    }
+    else {
+        JAVA_ARG_STAT(2, stbuf);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(GETATTR) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+            JFUSE_MERGE_STAT(JAVA_ARG(2), stbuf);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(2);
     }
 
-    JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_getattr");
@@ -110,7 +231,7 @@ int jfuse_getdir(const char *path, fuse_dirh_t dirh, fuse_dirfil_t dirfil) {
         JFUSE_SET_RETVAL();
     }
 
-    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_FUSE_DIRFIL_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_getdir");
@@ -282,7 +403,7 @@ int jfuse_link(const char *from_path, const char *to_path) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, from_path);
     JAVA_ARG_CSTRING_BYTEBUFFER(2, to_path);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_LINK_NAME, OPS_LINK_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(LINK) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
         JFUSE_SET_RETVAL();
@@ -307,7 +428,7 @@ int jfuse_chmod(const char *path, mode_t mode) {
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_CHMOD_NAME, OPS_CHMOD_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(CHMOD) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jshort)mode);
 
         JFUSE_SET_RETVAL();
@@ -331,7 +452,7 @@ int jfuse_chown(const char *path, uid_t uid, gid_t gid) {
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_CHOWN_NAME, OPS_CHOWN_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(CHOWN) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jlong)((signed)uid),
                 (jlong)((signed)gid));
 
@@ -356,7 +477,7 @@ int jfuse_truncate(const char *path, off_t size) {
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_TRUNCATE_NAME, OPS_TRUNCATE_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(TRUNCATE) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), size);
 
         JFUSE_SET_RETVAL();
@@ -381,7 +502,7 @@ int jfuse_utime(const char *path, struct utimbuf *time) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_UTIMBUF(2, time);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_UTIME_NAME, OPS_UTIME_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(UTIME) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
         JFUSE_MERGE_UTIMBUF(JAVA_ARG(2), time);
@@ -408,17 +529,36 @@ int jfuse_open(const char *path, struct fuse_file_info *fi) {
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(2, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_OPEN_NAME, OPS_OPEN_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(OPEN) {
+        JAVA_ARG_FILE_INFO_BUFFER(2, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JFUSE_REGISTER_BACKING_FD_BUFFER(fi);
+
+        JAVA_ARG_CLEANUP(2);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(OPEN) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+            JFUSE_SET_RETVAL();
+
+            JFUSE_REGISTER_BACKING_FD(JAVA_ARG(2), fi);
+        }
+
+        JAVA_ARG_CLEANUP(2);
     }
 
-    JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_open");
@@ -435,22 +575,47 @@ int jfuse_read(const char *path, char *targetbuf, size_t targetbuf_len,
             path, targetbuf, targetbuf_len, file_off, fi);
     CSLogTrace("  path=\"%s\"", path);
 
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::readAt(backingFd, targetbuf,
+                targetbuf_len, file_off);
+        CSLogTraceLeave("int jfuse_read(%p, %p, %zu, %" PRId64 ", %p): %d "
+                "(passthrough)", path, targetbuf, targetbuf_len, file_off, fi,
+                res);
+        return res;
+    }
+
     int retval = -EIO;
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_BYTEBUFFER(2, targetbuf, targetbuf_len);
-    JAVA_ARG_FUSE_FILE_INFO(4, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_READ_NAME, OPS_READ_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(READ) {
+        JAVA_ARG_FILE_INFO_BUFFER(4, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), file_off, JAVA_ARG(4));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(4);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(READ) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), file_off, JAVA_ARG(4));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(4);
     }
 
-    JAVA_ARG_CLEANUP(4);
     JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
@@ -467,22 +632,45 @@ int jfuse_write(const char *path, const char *buf, size_t len, off_t off,
             len, off, fi);
     CSLogTrace("  path=\"%s\"", path);
 
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::writeAt(backingFd, buf, len, off);
+        CSLogTraceLeave("int jfuse_write(%p, %p, %zu, %" PRId64 ", %p): %d "
+                "(passthrough)", path, buf, len, off, fi, res);
+        return res;
+    }
+
     int retval = -EIO;
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_READONLY_BYTEBUFFER(2, buf, len);
-    JAVA_ARG_FUSE_FILE_INFO(4, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_WRITE_NAME, OPS_WRITE_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(WRITE) {
+        JAVA_ARG_FILE_INFO_BUFFER(4, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), off, JAVA_ARG(4));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(4);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(WRITE) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), off, JAVA_ARG(4));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(4);
     }
 
-    JAVA_ARG_CLEANUP(4);
     JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
@@ -503,7 +691,7 @@ int jfuse_statfs(const char *path, struct statvfs *stvfsbuf) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_STATVFS(2, stvfsbuf);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_STATFS_NAME, OPS_STATFS_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(STATFS) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
         JFUSE_MERGE_STATVFS(JAVA_ARG(2), stvfsbuf);
@@ -529,17 +717,32 @@ int jfuse_flush(const char *path, struct fuse_file_info *fi) {
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(2, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_FLUSH_NAME, OPS_FLUSH_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(FLUSH) {
+        JAVA_ARG_FILE_INFO_BUFFER(2, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(2);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(FLUSH) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(2);
     }
 
-    JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_flush");
@@ -555,23 +758,43 @@ int jfuse_release(const char *path, struct fuse_file_info *fi) {
 
     int retval = -EIO;
     JFUSE_OPERATION_INIT();
+    const uint64_t fh = fi->fh;
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(2, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_RELEASE_NAME, OPS_RELEASE_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(RELEASE) {
+        JAVA_ARG_FILE_INFO_BUFFER(2, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(2);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(RELEASE) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(2);
     }
 
-    JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_fsync");
 
+    /* The file system has seen the release, so the backing file can go
+     * whatever it returned. */
+    context->getPassthroughTable()->release(fh);
+
     CSLogTraceLeave("int jfuse_release(%p, %p): %d",
                 path, fi, retval);
     return retval;
@@ -585,19 +808,34 @@ int jfuse_fsync(const char *path, int datasync, struct fuse_file_info *fi) {
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(3, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_FSYNC_NAME, OPS_FSYNC_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(FSYNC) {
+        JAVA_ARG_FILE_INFO_BUFFER(3, fi);
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1),
                 (datasync != 0 ? JNI_TRUE : JNI_FALSE), JAVA_ARG(3));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(3);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(FSYNC) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1),
+                    (datasync != 0 ? JNI_TRUE : JNI_FALSE), JAVA_ARG(3));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(3);
     }
 
-    JAVA_ARG_CLEANUP(3);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_fsync");
@@ -623,7 +861,7 @@ int jfuse_setxattr(const char *path, const char *name, const char *value,
     JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
     JAVA_ARG_READONLY_BYTEBUFFER(3, value, value_len);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_SETXATTR_NAME, OPS_SETXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(SETXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3),
                 (jint)flags, (jlong)position);
@@ -657,7 +895,7 @@ int jfuse_setxattr(const char *path, const char *name, const char *value,
     JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
     JAVA_ARG_READONLY_BYTEBUFFER(3, value, value_len);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_SETXATTR_NAME, OPS_SETXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(SETXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3),
                 (jint)flags, (jlong)0);
@@ -693,7 +931,7 @@ int jfuse_getxattr(const char *path, const char *name, char *value,
     JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
     JAVA_ARG_BYTEBUFFER(3, value, value_len);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_GETXATTR_NAME, OPS_GETXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(GETXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3),
                 (jlong)position);
@@ -727,7 +965,7 @@ int jfuse_getxattr(const char *path, const char *name, char *value,
     JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
     JAVA_ARG_BYTEBUFFER(3, value, value_len);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_GETXATTR_NAME, OPS_GETXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(GETXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3), (jlong)0);
 
@@ -757,7 +995,7 @@ int jfuse_listxattr(const char *path, char *namebuf, size_t namebuf_len) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_BYTEBUFFER(2, namebuf, namebuf_len);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_LISTXATTR_NAME, OPS_LISTXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(LISTXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
@@ -785,7 +1023,7 @@ int jfuse_removexattr(const char *path, const char *name) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_REMOVEXATTR_NAME, OPS_REMOVEXATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(REMOVEXATTR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
@@ -812,7 +1050,7 @@ int jfuse_opendir(const char *path, struct fuse_file_info *fi) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_FUSE_FILE_INFO(2, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_OPENDIR_NAME, OPS_OPENDIR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(OPENDIR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
@@ -845,7 +1083,7 @@ int jfuse_readdir(const char *path, void *buf, fuse_fill_dir_t filler,
     JAVA_ARG_FUSE_FILL_DIR(2, filler, buf);
     JAVA_ARG_FUSE_FILE_INFO(4, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_READDIR_NAME, OPS_READDIR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(READDIR) {
 
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), offset, JAVA_ARG(4));
 
@@ -855,7 +1093,7 @@ int jfuse_readdir(const char *path, void *buf, fuse_fill_dir_t filler,
     }
 
     JAVA_ARG_CLEANUP(4);
-    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_FUSE_FILL_DIR_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_readdir");
@@ -875,7 +1113,7 @@ int jfuse_releasedir(const char *path, struct fuse_file_info *fi) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_FUSE_FILE_INFO(2, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_RELEASEDIR_NAME, OPS_RELEASEDIR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(RELEASEDIR) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
 
         JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
@@ -903,7 +1141,7 @@ int jfuse_fsyncdir(const char *path, int datasync, struct fuse_file_info *fi) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_FUSE_FILE_INFO(3, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_FSYNCDIR_NAME, OPS_FSYNCDIR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(FSYNCDIR) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1),
                 (datasync != 0 ? JNI_TRUE : JNI_FALSE), JAVA_ARG(3));
 
@@ -937,12 +1175,25 @@ void* jfuse_init(struct fuse_conn_info *conn) {
 #endif /* __FreeBSD__ >= 10 */
 #endif /* defined(__APPLE__) || defined(__DARWIN__) */
 
-    // We might have got here just to enable xtimes, with no underlying 'init'.
+#if FUSE_VERSION >= 29
+    /* Data returned by read_buf can only be spliced to the device, and write
+     * data can only arrive in a pipe for write_buf, if the kernel is asked
+     * to. The mount options no_splice_* still apply after this. */
+    if(context->getFSProviderMethodID(JFUSE_OP_READ_BUF) != NULL)
+        conn->want |= conn->capable & FUSE_CAP_SPLICE_WRITE;
+    if(context->getFSProviderMethodID(JFUSE_OP_WRITE_BUF) != NULL)
+        conn->want |= conn->capable & FUSE_CAP_SPLICE_READ;
+    CSLogDebug("Splice flags wanted: 0x%x", conn->want &
+            (FUSE_CAP_SPLICE_WRITE | FUSE_CAP_SPLICE_READ));
+#endif /* FUSE_VERSION >= 29 */
+
+    // We might have got here just to enable xtimes or splicing, with no
+    // underlying 'init'.
     if(context->getInitEnabled()) {
 
         JAVA_ARG_FUSE_CONN_INFO(1, conn);
 
-        JFUSE_FS_PROVIDER_MID_OK(OPS_INIT_NAME, OPS_INIT_SIGNATURE) {
+        JFUSE_FS_PROVIDER_METHOD_OK(INIT) {
             JFUSE_FS_INIT_CALL(JAVA_ARG(1));
 
             JFUSE_HANDLE_INIT_RETVAL();
@@ -953,6 +1204,14 @@ void* jfuse_init(struct fuse_conn_info *conn) {
         JAVA_EXCEPTION_CHECK("jfuse_init");
     }
 
+    /* Record what the file system ended up with for
+     * MountHandle.getConnInfo(). */
+    jobject connInfo = FUSE26Util::newFUSEConnInfo(env, conn);
+    if(connInfo != NULL) {
+        context->notifyConnInitialized(env, connInfo);
+        env->DeleteLocalRef(connInfo);
+    }
+
     CSLogTraceLeave("int jfuse_init(%p): %p",
                 conn, retval);
     return retval;
@@ -967,7 +1226,7 @@ void jfuse_destroy(void *private_data) {
         CSLogPrint("jfuse_destroy: private_data assertion failed. %p != %p",
                 private_data, fuse_get_context()->private_data);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_DESTROY_NAME, OPS_DESTROY_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(DESTROY) {
         JFUSE_FS_DESTROY_CALL(context->getPrivateData());
     }
 
@@ -985,7 +1244,7 @@ int jfuse_access(const char *path, int amode) {
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_ACCESS_NAME, OPS_ACCESS_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(ACCESS) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), amode);
 
         JFUSE_SET_RETVAL();
@@ -1008,17 +1267,36 @@ int jfuse_create(const char *path, mode_t crmode, struct fuse_file_info *fi) {
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(3, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_CREATE_NAME, OPS_CREATE_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(CREATE) {
+        JAVA_ARG_FILE_INFO_BUFFER(3, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), crmode, JAVA_ARG(3));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JFUSE_REGISTER_BACKING_FD_BUFFER(fi);
+
+        JAVA_ARG_CLEANUP(3);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(CREATE) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), crmode, JAVA_ARG(3));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+            JFUSE_SET_RETVAL();
+
+            JFUSE_REGISTER_BACKING_FD(JAVA_ARG(3), fi);
+        }
+
+        JAVA_ARG_CLEANUP(3);
     }
 
-    JAVA_ARG_CLEANUP(3);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_create");
@@ -1036,17 +1314,32 @@ int jfuse_ftruncate(const char *path, off_t size, struct fuse_file_info *fi) {
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_FUSE_FILE_INFO(3, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_FTRUNCATE_NAME, OPS_FTRUNCATE_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(FTRUNCATE) {
+        JAVA_ARG_FILE_INFO_BUFFER(3, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), size, JAVA_ARG(3));
 
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(3);
+    }
+    else {
+        JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(FTRUNCATE) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), size, JAVA_ARG(3));
+
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(3);
     }
 
-    JAVA_ARG_CLEANUP(3);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_ftruncate");
@@ -1065,20 +1358,38 @@ int jfuse_fgetattr(const char *path, struct stat *stbuf,
     JFUSE_OPERATION_INIT();
 
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
-    JAVA_ARG_STAT(2, stbuf);
-    JAVA_ARG_FUSE_FILE_INFO(3, fi);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_FGETATTR_NAME, OPS_FGETATTR_SIGNATURE) {
+    JFUSE_FS_PROVIDER_BUFFER_METHOD_OK(FGETATTR) {
+        JAVA_ARG_STAT_BUFFER(2, stbuf);
+        JAVA_ARG_FILE_INFO_BUFFER(3, fi);
+
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3));
 
-        JFUSE_MERGE_STAT(JAVA_ARG(2), stbuf);
-        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+        JFUSE_MERGE_STAT_BUFFER(stbuf);
+        JFUSE_MERGE_FILE_INFO_BUFFER(fi);
 
         JFUSE_SET_RETVAL();
+
+        JAVA_ARG_CLEANUP(3);
+        JAVA_ARG_CLEANUP(2);
+    }
+    else {
+        JAVA_ARG_STAT(2, stbuf);
+        JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(FGETATTR) {
+            JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3));
+
+            JFUSE_MERGE_STAT(JAVA_ARG(2), stbuf);
+            JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+            JFUSE_SET_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(3);
+        JAVA_ARG_CLEANUP(2);
     }
 
-    JAVA_ARG_CLEANUP(3);
-    JAVA_ARG_CLEANUP(2);
     JAVA_ARG_CLEANUP(1);
 
     JAVA_EXCEPTION_CHECK("jfuse_fgetattr");
@@ -1100,7 +1411,7 @@ int jfuse_lock(const char *path, struct fuse_file_info *fi, int cmd,
     JAVA_ARG_FUSE_FILE_INFO(2, fi);
     JAVA_ARG_FLOCK(4, flk);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_LOCK_NAME, OPS_LOCK_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(LOCK) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), cmd, JAVA_ARG(4));
 
         JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
@@ -1131,7 +1442,7 @@ int jfuse_utimens(const char *path, const struct timespec tv[2]) {
     JAVA_ARG_TIMESPEC(2, &tv[0]);
     JAVA_ARG_TIMESPEC(3, &tv[1]);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_UTIMENS_NAME, OPS_UTIMENS_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(UTIMENS) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3));
         
         JFUSE_SET_RETVAL();
@@ -1158,7 +1469,7 @@ int jfuse_bmap(const char *path, size_t blocksize, uint64_t *idx) {
     JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
     JAVA_ARG_LONGREF(3, idx);
 
-    JFUSE_FS_PROVIDER_MID_OK(OPS_BMAP_NAME, OPS_BMAP_SIGNATURE) {
+    JFUSE_FS_PROVIDER_METHOD_OK(BMAP) {
         JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), blocksize, JAVA_ARG(3));
 
         JFUSE_MERGE_LONGREF(JAVA_ARG(3), idx);
@@ -1175,3 +1486,139 @@ int jfuse_bmap(const char *path, size_t blocksize, uint64_t *idx) {
                 path, blocksize, idx, retval);
     return retval;
 }
+
+#if FUSE_VERSION >= 29
+int jfuse_read_buf(const char *path, struct fuse_bufvec **bufp, size_t size,
+        off_t off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse_read_buf(%p, %p, %zu, %" PRId64 ", %p)",
+            path, bufp, size, off, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    /* A handle with a backing file is answered with a region of it, which
+     * libfuse can splice without the data passing through here. */
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = -ENOMEM;
+        struct fuse_bufvec *bufv =
+                (struct fuse_bufvec*) calloc(1, sizeof(struct fuse_bufvec));
+        if(bufv != NULL) {
+            bufv->count = 1;
+            bufv->buf[0].size = size;
+            bufv->buf[0].flags =
+                    (enum fuse_buf_flags) (FUSE_BUF_IS_FD | FUSE_BUF_FD_SEEK);
+            bufv->buf[0].fd = backingFd;
+            bufv->buf[0].pos = off;
+            *bufp = bufv;
+            res = 0;
+        }
+
+        CSLogTraceLeave("int jfuse_read_buf(%p, %p, %zu, %" PRId64 ", %p): "
+                "%d (passthrough)", path, bufp, size, off, fi, res);
+        return res;
+    }
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_BUFVEC(2);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(READ_BUF) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), (jlong) size,
+                (jlong) off, JAVA_ARG(5));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(5), fi);
+
+        JFUSE_SET_RETVAL();
+
+        /* The file descriptors in the vector are only read by libfuse after
+         * we return, when the reply is sent. */
+        if(retval >= 0)
+            retval = FUSE29Util::mergeFUSEBufVec(env, JAVA_ARG(2), size, bufp);
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse_read_buf");
+
+    CSLogTraceLeave("int jfuse_read_buf(%p, %p, %zu, %" PRId64 ", %p): %d",
+            path, bufp, size, off, fi, retval);
+    return retval;
+}
+
+int jfuse_write_buf(const char *path, struct fuse_bufvec *buf, off_t off,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse_write_buf(%p, %p, %" PRId64 ", %p)", path, buf,
+            off, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_WRITE_BUF(2, buf);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(WRITE_BUF) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), off, JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_FUSE_WRITE_BUF_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse_write_buf");
+
+    CSLogTraceLeave("int jfuse_write_buf(%p, %p, %" PRId64 ", %p): %d",
+            path, buf, off, fi, retval);
+    return retval;
+}
+
+int jfuse_fallocate(const char *path, int mode, off_t off, off_t len,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse_fallocate(%p, %d, %" PRId64 ", %" PRId64 ", "
+            "%p)", path, mode, off, len, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    /* The data of a handle with a backing file lives in that file, so the
+     * allocation has to happen there. */
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::allocate(backingFd, mode, off, len);
+        CSLogTraceLeave("int jfuse_fallocate(%p, %d, %" PRId64 ", %" PRId64
+                ", %p): %d (passthrough)", path, mode, off, len, fi, res);
+        return res;
+    }
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(FALLOCATE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jint) mode, (jlong) off,
+                (jlong) len, JAVA_ARG(5));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(5), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse_fallocate");
+
+    CSLogTraceLeave("int jfuse_fallocate(%p, %d, %" PRId64 ", %" PRId64 ", "
+            "%p): %d", path, mode, off, len, fi, retval);
+    return retval;
+}
+#endif /* FUSE_VERSION >= 29 */
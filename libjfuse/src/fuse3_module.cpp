@@ -0,0 +1,1305 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define LOG_ENABLE_DEBUG 0
+
+#define __STDC_FORMAT_MACROS
+
+#include "fuse3_module.h"
+
+#include "common.h"
+#include "CSLog.h"
+
+#include <string.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <inttypes.h>
+#include <stdlib.h>
+#include <unistd.h>
+
+#include <fuse_lowlevel.h>
+
+#include "JavaSignatures.h"
+#include "JNICache.h"
+
+#define METHOD_SPEC(const_name) \
+    { OPS3_##const_name##_NAME, OPS3_##const_name##_SIGNATURE }
+
+const jFUSEMethodSpec jfuse3_methods[JFUSE3_OP_COUNT] = {
+    METHOD_SPEC(GETATTR),
+    METHOD_SPEC(READLINK),
+    METHOD_SPEC(MKNOD),
+    METHOD_SPEC(MKDIR),
+    METHOD_SPEC(UNLINK),
+    METHOD_SPEC(RMDIR),
+    METHOD_SPEC(SYMLINK),
+    METHOD_SPEC(RENAME),
+    METHOD_SPEC(LINK),
+    METHOD_SPEC(CHMOD),
+    METHOD_SPEC(CHOWN),
+    METHOD_SPEC(TRUNCATE),
+    METHOD_SPEC(OPEN),
+    METHOD_SPEC(READ),
+    METHOD_SPEC(WRITE),
+    METHOD_SPEC(STATFS),
+    METHOD_SPEC(FLUSH),
+    METHOD_SPEC(RELEASE),
+    METHOD_SPEC(FSYNC),
+    METHOD_SPEC(SETXATTR),
+    METHOD_SPEC(GETXATTR),
+    METHOD_SPEC(LISTXATTR),
+    METHOD_SPEC(REMOVEXATTR),
+    METHOD_SPEC(OPENDIR),
+    METHOD_SPEC(READDIR),
+    METHOD_SPEC(RELEASEDIR),
+    METHOD_SPEC(FSYNCDIR),
+    METHOD_SPEC(INIT),
+    METHOD_SPEC(DESTROY),
+    METHOD_SPEC(ACCESS),
+    METHOD_SPEC(CREATE),
+    METHOD_SPEC(LOCK),
+    METHOD_SPEC(UTIMENS),
+    METHOD_SPEC(BMAP),
+    METHOD_SPEC(COPY_FILE_RANGE),
+    METHOD_SPEC(FALLOCATE),
+#if FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8)
+    METHOD_SPEC(LSEEK),
+#endif /* FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8) */
+};
+
+#undef METHOD_SPEC
+
+/*
+ * Native passthrough of read and write to the backing file that open or
+ * create registered for a handle, as in fuse26_module.cpp.
+ *
+ * Where the kernel supports FUSE passthrough the backing file is also
+ * registered with the kernel, and its backing ID is set in the open or
+ * create reply. The kernel then doesn't send read and write requests for the
+ * handle, and the native path only serves the other operations that use the
+ * backing descriptor. libfuse's fuse_passthrough_open() and
+ * fuse_passthrough_close() take a fuse_req_t, which the high-level API doesn't
+ * expose, so the same ioctls are issued on the session's device descriptor.
+ */
+
+#ifdef FUSE_CAP_PASSTHROUGH
+static void openKernelPassthrough(JNIEnv *env, jFUSEContext *context,
+        int backingFd, struct fuse_file_info *fi) {
+    const int deviceFd = context->getDeviceFd();
+    const int backingId =
+            jFUSEPassthroughTable::openBacking(deviceFd, backingFd);
+    if(backingId > 0) {
+        if(context->getPassthroughTable()->setBackingId(fi->fh, backingId)) {
+            CSLogDebug("Registered backing ID %d for handle 0x%" PRIx64 ".",
+                    backingId, fi->fh);
+            fi->backing_id = backingId;
+        }
+        else
+            jFUSEPassthroughTable::closeBacking(deviceFd, backingId);
+    }
+    else if(backingId != -EBADF && context->getKernelPassthrough()) {
+        CSLogWarning("Could not register a backing file with the kernel "
+                "(%s). Serving backing files natively from now on.",
+                strerror(-backingId));
+        context->setKernelPassthrough(env, false);
+    }
+}
+
+static void closeKernelPassthrough(jFUSEContext *context, int32_t backingId) {
+    const int res =
+            jFUSEPassthroughTable::closeBacking(context->getDeviceFd(),
+            backingId);
+    if(res < 0)
+        CSLogError("Could not release backing ID %d: %s", backingId,
+                strerror(-res));
+}
+#endif /* defined(FUSE_CAP_PASSTHROUGH) */
+
+static inline void registerBackingFd(JNIEnv *env, jFUSEContext *context,
+        int backingFd, struct fuse_file_info *fi) {
+    if(backingFd < 0)
+        return;
+
+    context->getPassthroughTable()->addDuplicate(fi->fh, backingFd);
+#ifdef FUSE_CAP_PASSTHROUGH
+    if(context->getKernelPassthrough())
+        openKernelPassthrough(env, context, backingFd, fi);
+#endif /* defined(FUSE_CAP_PASSTHROUGH) */
+}
+
+static inline int getBackingFd(struct fuse_file_info *fi) {
+    if(fi == NULL)
+        return -1;
+
+    return getjFUSEContext()->getPassthroughTable()->get(fi->fh);
+}
+
+#define JFUSE_REGISTER_BACKING_FD(ffi_object, fi) \
+        if(env->ExceptionCheck() == JNI_FALSE && retval == 0) \
+            registerBackingFd(env, context, env->GetIntField(ffi_object, \
+                    JNICache::fuseFileInfo.backing_fd), fi);
+
+int jfuse3_getattr(const char *path, struct stat *stbuf,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_getattr(%p, %p, %p)", path, stbuf, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_STAT(2, stbuf);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(GETATTR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3));
+
+        JFUSE_MERGE_STAT(JAVA_ARG(2), stbuf);
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_getattr");
+
+    CSLogTraceLeave("int jfuse3_getattr(%p, %p, %p): %d", path, stbuf, fi,
+            retval);
+    return retval;
+}
+
+int jfuse3_readlink(const char *path, char *target, size_t target_len) {
+    CSLogTraceEnter("int jfuse3_readlink(%p, %p, %zd)", path, target,
+            target_len);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_BYTEBUFFER(2, target, target_len);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(READLINK) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_readlink");
+
+    CSLogTraceLeave("int jfuse3_readlink(%p, %p, %zd): %d",
+                path, target, target_len, retval);
+    return retval;
+}
+
+int jfuse3_mknod(const char *path, mode_t mode, dev_t dev) {
+    CSLogTraceEnter("int jfuse3_mknod(%p, %d, %" PRId64 ")", path, mode,
+            (int64_t)dev);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(MKNOD) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jshort)mode, (jlong)dev);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_mknod");
+
+    CSLogTraceLeave("int jfuse3_mknod(%p, %d, %" PRId64 "): %d",
+                path, mode, (int64_t)dev, retval);
+    return retval;
+}
+
+int jfuse3_mkdir(const char *path, mode_t mode) {
+    CSLogTraceEnter("int jfuse3_mkdir(%p, %d)", path, mode);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(MKDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jshort)mode);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_mkdir");
+
+    CSLogTraceLeave("int jfuse3_mkdir(%p, %d): %d", path, mode, retval);
+    return retval;
+}
+
+int jfuse3_unlink(const char *path) {
+    CSLogTraceEnter("int jfuse3_unlink(%p)", path);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(UNLINK) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_unlink");
+
+    CSLogTraceLeave("int jfuse3_unlink(%p): %d", path, retval);
+    return retval;
+}
+
+int jfuse3_rmdir(const char *path) {
+    CSLogTraceEnter("int jfuse3_rmdir(%p)", path);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(RMDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_rmdir");
+
+    CSLogTraceLeave("int jfuse3_rmdir(%p): %d", path, retval);
+    return retval;
+}
+
+int jfuse3_symlink(const char *from_path, const char *to_path) {
+    CSLogTraceEnter("int jfuse3_symlink(%p, %p)", from_path, to_path);
+    CSLogTrace("  from_path=\"%s\"", from_path);
+    CSLogTrace("  to_path=\"%s\"", to_path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, from_path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, to_path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(SYMLINK) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_symlink");
+
+    CSLogTraceLeave("int jfuse3_symlink(%p, %p): %d",
+                from_path, to_path, retval);
+    return retval;
+}
+
+int jfuse3_rename(const char *from_path, const char *to_path,
+        unsigned int flags) {
+    CSLogTraceEnter("int jfuse3_rename(%p, %p, %u)", from_path, to_path,
+            flags);
+    CSLogTrace("  from_path=\"%s\"", from_path);
+    CSLogTrace("  to_path=\"%s\"", to_path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, from_path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, to_path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(RENAME) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), (jint)flags);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_rename");
+
+    CSLogTraceLeave("int jfuse3_rename(%p, %p, %u): %d",
+                from_path, to_path, flags, retval);
+    return retval;
+}
+
+int jfuse3_link(const char *from_path, const char *to_path) {
+    CSLogTraceEnter("int jfuse3_link(%p, %p)", from_path, to_path);
+    CSLogTrace("  from_path=\"%s\"", from_path);
+    CSLogTrace("  to_path=\"%s\"", to_path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, from_path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, to_path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(LINK) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_link");
+
+    CSLogTraceLeave("int jfuse3_link(%p, %p): %d",
+                from_path, to_path, retval);
+    return retval;
+}
+
+int jfuse3_chmod(const char *path, mode_t mode, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_chmod(%p, %d, %p)", path, mode, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(CHMOD) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jshort)mode, JAVA_ARG(3));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_chmod");
+
+    CSLogTraceLeave("int jfuse3_chmod(%p, %d, %p): %d", path, mode, fi,
+            retval);
+    return retval;
+}
+
+int jfuse3_chown(const char *path, uid_t uid, gid_t gid,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_chown(%p, %d, %d, %p)", path, uid, gid, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(CHOWN) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jlong)uid, (jlong)gid,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_chown");
+
+    CSLogTraceLeave("int jfuse3_chown(%p, %d, %d, %p): %d", path, uid, gid,
+            fi, retval);
+    return retval;
+}
+
+int jfuse3_truncate(const char *path, off_t size, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_truncate(%p, %" PRId64 ", %p)", path,
+            (int64_t)size, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(TRUNCATE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jlong)size, JAVA_ARG(3));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_truncate");
+
+    CSLogTraceLeave("int jfuse3_truncate(%p, %" PRId64 ", %p): %d", path,
+            (int64_t)size, fi, retval);
+    return retval;
+}
+
+int jfuse3_open(const char *path, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_open(%p, %p)", path, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(OPEN) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+
+        JFUSE_REGISTER_BACKING_FD(JAVA_ARG(2), fi);
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_open");
+
+    CSLogTraceLeave("int jfuse3_open(%p, %p): %d", path, fi, retval);
+    return retval;
+}
+
+int jfuse3_read(const char *path, char *targetbuf, size_t targetbuf_len,
+        off_t file_off, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_read(%p, %p, %zu, %" PRId64 ", %p)",
+            path, targetbuf, targetbuf_len, (int64_t)file_off, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::readAt(backingFd, targetbuf,
+                targetbuf_len, file_off);
+        CSLogTraceLeave("int jfuse3_read(%p, %p, %zu, %" PRId64 ", %p): %d "
+                "(passthrough)", path, targetbuf, targetbuf_len,
+                (int64_t)file_off, fi, res);
+        return res;
+    }
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_BYTEBUFFER(2, targetbuf, targetbuf_len);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(READ) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), (jlong)file_off,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_read");
+
+    CSLogTraceLeave("int jfuse3_read(%p, %p, %zu, %" PRId64 ", %p): %d",
+            path, targetbuf, targetbuf_len, (int64_t)file_off, fi, retval);
+    return retval;
+}
+
+int jfuse3_write(const char *path, const char *buf, size_t len, off_t off,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_write(%p, %p, %zu, %" PRId64 ", %p)", path,
+            buf, len, (int64_t)off, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::writeAt(backingFd, buf, len, off);
+        CSLogTraceLeave("int jfuse3_write(%p, %p, %zu, %" PRId64 ", %p): %d "
+                "(passthrough)", path, buf, len, (int64_t)off, fi, res);
+        return res;
+    }
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_READONLY_BYTEBUFFER(2, buf, len);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(WRITE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), (jlong)off,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_write");
+
+    CSLogTraceLeave("int jfuse3_write(%p, %p, %zu, %" PRId64 ", %p): %d",
+                path, buf, len, (int64_t)off, fi, retval);
+    return retval;
+}
+
+int jfuse3_statfs(const char *path, struct statvfs *stvfsbuf) {
+    CSLogTraceEnter("int jfuse3_statfs(%p, %p)", path, stvfsbuf);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_STATVFS(2, stvfsbuf);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(STATFS) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_STATVFS(JAVA_ARG(2), stvfsbuf);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_statfs");
+
+    CSLogTraceLeave("int jfuse3_statfs(%p, %p): %d",
+                path, stvfsbuf, retval);
+    return retval;
+}
+
+int jfuse3_flush(const char *path, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_flush(%p, %p)", path, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(FLUSH) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_flush");
+
+    CSLogTraceLeave("int jfuse3_flush(%p, %p): %d",
+                path, fi, retval);
+    return retval;
+}
+
+int jfuse3_release(const char *path, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_release(%p, %p)", path, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+    const uint64_t fh = fi->fh;
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(RELEASE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_release");
+
+    /* The file system has seen the release, so the backing file can go
+     * whatever it returned. */
+    const int32_t backingId = context->getPassthroughTable()->release(fh);
+#ifdef FUSE_CAP_PASSTHROUGH
+    if(backingId > 0)
+        closeKernelPassthrough(context, backingId);
+#else
+    (void) backingId;
+#endif /* defined(FUSE_CAP_PASSTHROUGH) */
+
+    CSLogTraceLeave("int jfuse3_release(%p, %p): %d",
+                path, fi, retval);
+    return retval;
+}
+
+int jfuse3_fsync(const char *path, int datasync, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_fsync(%p, %d, %p)", path, datasync, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(FSYNC) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1),
+                (datasync != 0 ? JNI_TRUE : JNI_FALSE), JAVA_ARG(3));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_fsync");
+
+    CSLogTraceLeave("int jfuse3_fsync(%p, %d, %p): %d",
+                path, datasync, fi, retval);
+    return retval;
+}
+
+int jfuse3_setxattr(const char *path, const char *name, const char *value,
+        size_t value_len, int flags) {
+    CSLogTraceEnter("int jfuse3_setxattr(%p, %p, %p, %zu, %d)", path, name,
+            value, value_len, flags);
+    CSLogTrace("  path=\"%s\"", path);
+    CSLogTrace("  name=\"%s\"", name);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
+    JAVA_ARG_READONLY_BYTEBUFFER(3, value, value_len);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(SETXATTR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3),
+                (jint)flags);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_setxattr");
+
+    CSLogTraceLeave("int jfuse3_setxattr(%p, %p, %p, %zu, %d): %d",
+                path, name, value, value_len, flags, retval);
+    return retval;
+}
+
+int jfuse3_getxattr(const char *path, const char *name, char *value,
+        size_t value_len) {
+    CSLogTraceEnter("int jfuse3_getxattr(%p, %p, %p, %zu)", path,
+            name, value, value_len);
+    CSLogTrace("  path=\"%s\"", path);
+    CSLogTrace("  name=\"%s\"", name);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
+    JAVA_ARG_BYTEBUFFER(3, value, value_len);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(GETXATTR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_getxattr");
+
+    CSLogTraceLeave("int jfuse3_getxattr(%p, %p, %p, %zu): %d",
+                path, name, value, value_len, retval);
+    return retval;
+}
+
+int jfuse3_listxattr(const char *path, char *namebuf, size_t namebuf_len) {
+    CSLogTraceEnter("int jfuse3_listxattr(%p, %p, %zu)", path, namebuf,
+            namebuf_len);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_BYTEBUFFER(2, namebuf, namebuf_len);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(LISTXATTR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_listxattr");
+
+    CSLogTraceLeave("int jfuse3_listxattr(%p, %p, %zu): %d",
+                path, namebuf, namebuf_len, retval);
+    return retval;
+}
+
+int jfuse3_removexattr(const char *path, const char *name) {
+    CSLogTraceEnter("int jfuse3_removexattr(%p, %p)", path, name);
+    CSLogTrace("  path=\"%s\"", path);
+    CSLogTrace("  name=\"%s\"", name);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_CSTRING_BYTEBUFFER(2, name);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(REMOVEXATTR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_removexattr");
+
+    CSLogTraceLeave("int jfuse3_removexattr(%p, %p): %d",
+                path, name, retval);
+    return retval;
+}
+
+int jfuse3_opendir(const char *path, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_opendir(%p, %p)", path, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(OPENDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_opendir");
+
+    CSLogTraceLeave("int jfuse3_opendir(%p, %p): %d",
+                path, fi, retval);
+    return retval;
+}
+
+int jfuse3_readdir(const char *path, void *buf, fuse_fill_dir_t filler,
+        off_t offset, struct fuse_file_info *fi,
+        enum fuse_readdir_flags flags) {
+    CSLogTraceEnter("int jfuse3_readdir(%p, %p, %p, %" PRId64 ", %p, %d)",
+            path, buf, filler, (int64_t)offset, fi, (int)flags);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE3_FILL_DIR(2, filler, buf);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(READDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), (jlong)offset,
+                JAVA_ARG(4), (jint)flags);
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_FUSE3_FILL_DIR_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_readdir");
+
+    CSLogTraceLeave("int jfuse3_readdir(%p, %p, %p, %" PRId64 ", %p, %d): %d",
+            path, buf, filler, (int64_t)offset, fi, (int)flags, retval);
+    return retval;
+}
+
+int jfuse3_releasedir(const char *path, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_releasedir(%p, %p)", path, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(RELEASEDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_releasedir");
+
+    CSLogTraceLeave("int jfuse3_releasedir(%p, %p): %d",
+                path, fi, retval);
+    return retval;
+}
+
+int jfuse3_fsyncdir(const char *path, int datasync, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_fsyncdir(%p, %d, %p)", path, datasync, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(FSYNCDIR) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1),
+                (datasync != 0 ? JNI_TRUE : JNI_FALSE), JAVA_ARG(3));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_fsyncdir");
+
+    CSLogTraceLeave("int jfuse3_fsyncdir(%p, %d, %p): %d",
+                path, datasync, fi, retval);
+    return retval;
+}
+
+void* jfuse3_init(struct fuse_conn_info *conn, struct fuse_config *cfg) {
+    CSLogTraceEnter("int jfuse3_init(%p, %p)", conn, cfg);
+
+    JFUSE_OPERATION_INIT();
+    void *retval = context;
+
+#ifdef FUSE_CAP_PASSTHROUGH
+    /* Asked for before the file system's init(), which may remove it. */
+    if(conn->capable & FUSE_CAP_PASSTHROUGH)
+        conn->want |= FUSE_CAP_PASSTHROUGH;
+#endif /* defined(FUSE_CAP_PASSTHROUGH) */
+
+    if(context->getInitEnabled()) {
+        JAVA_ARG_FUSE3_CONN_INFO(1, conn);
+        JAVA_ARG_FUSE_CONFIG(2, cfg);
+
+        JFUSE_FS_PROVIDER_METHOD_OK(INIT) {
+            JFUSE_FS_INIT_CALL(JAVA_ARG(1), JAVA_ARG(2));
+
+            /* The file system may have asked for capabilities or changed
+             * the configuration of the high-level library. */
+            JFUSE_MERGE_FUSE3_CONN_INFO(JAVA_ARG(1), conn);
+            JFUSE_MERGE_FUSE_CONFIG(JAVA_ARG(2), cfg);
+
+            JFUSE_HANDLE_INIT_RETVAL();
+        }
+
+        JAVA_ARG_CLEANUP(2);
+        JAVA_ARG_CLEANUP(1);
+
+        JAVA_EXCEPTION_CHECK("jfuse3_init");
+    }
+
+#ifdef FUSE_CAP_PASSTHROUGH
+    /* The kernel doesn't combine passthrough with the writeback cache. */
+    if(conn->want & FUSE_CAP_WRITEBACK_CACHE)
+        conn->want &= ~FUSE_CAP_PASSTHROUGH;
+
+    context->setDeviceFd(
+            fuse_session_fd(fuse_get_session(fuse_get_context()->fuse)));
+    context->setKernelPassthrough(env,
+            (conn->want & FUSE_CAP_PASSTHROUGH) != 0);
+#endif /* defined(FUSE_CAP_PASSTHROUGH) */
+
+    /* Record what the file system ended up with for
+     * MountHandle.getFUSE3ConnInfo(). */
+    jobject connInfo = FUSE3Util::newFUSE3ConnInfo(env, conn);
+    if(connInfo != NULL) {
+        context->notifyConnInitialized(env, connInfo);
+        env->DeleteLocalRef(connInfo);
+    }
+
+    CSLogTraceLeave("int jfuse3_init(%p, %p): %p", conn, cfg, retval);
+    return retval;
+}
+
+void jfuse3_destroy(void *private_data) {
+    CSLogTraceEnter("int jfuse3_destroy(%p)", private_data);
+
+    JFUSE_OPERATION_INIT();
+
+    if(private_data != fuse_get_context()->private_data)
+        CSLogPrint("jfuse3_destroy: private_data assertion failed. %p != %p",
+                private_data, fuse_get_context()->private_data);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(DESTROY) {
+        JFUSE_FS_DESTROY_CALL(context->getPrivateData());
+    }
+
+    JAVA_EXCEPTION_CHECK("jfuse3_destroy");
+
+    CSLogTraceLeave("int jfuse3_destroy(%p)", private_data);
+}
+
+int jfuse3_access(const char *path, int amode) {
+    CSLogTraceEnter("int jfuse3_access(%p, %d)", path, amode);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(ACCESS) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), amode);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_access");
+
+    CSLogTraceLeave("int jfuse3_access(%p, %d): %d",
+                path, amode, retval);
+    return retval;
+}
+
+int jfuse3_create(const char *path, mode_t crmode, struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_create(%p, %d, %p)", path, crmode, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(3, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(CREATE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jshort)crmode, JAVA_ARG(3));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(3), fi);
+
+        JFUSE_SET_RETVAL();
+
+        JFUSE_REGISTER_BACKING_FD(JAVA_ARG(3), fi);
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_create");
+
+    CSLogTraceLeave("int jfuse3_create(%p, %d, %p): %d",
+                path, crmode, fi, retval);
+    return retval;
+}
+
+int jfuse3_lock(const char *path, struct fuse_file_info *fi, int cmd,
+        struct flock *flk) {
+    CSLogTraceEnter("int jfuse3_lock(%p, %p, %d, %p)", path, fi, cmd, flk);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi);
+    JAVA_ARG_FLOCK(4, flk);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(LOCK) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), cmd, JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi);
+        JFUSE_MERGE_FLOCK(JAVA_ARG(4), flk);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_lock");
+
+    CSLogTraceLeave("int jfuse3_lock(%p, %p, %d, %p): %d",
+                path, fi, cmd, flk, retval);
+    return retval;
+}
+
+int jfuse3_utimens(const char *path, const struct timespec tv[2],
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_utimens(%p, %p, %p)", path, tv, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_TIMESPEC(2, &tv[0]);
+    JAVA_ARG_TIMESPEC(3, &tv[1]);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(UTIMENS) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), JAVA_ARG(2), JAVA_ARG(3),
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_utimens");
+
+    CSLogTraceLeave("int jfuse3_utimens(%p, %p, %p): %d",
+                path, tv, fi, retval);
+    return retval;
+}
+
+int jfuse3_bmap(const char *path, size_t blocksize, uint64_t *idx) {
+    CSLogTraceEnter("int jfuse3_bmap(%p, %zu, %p)", path, blocksize, idx);
+    CSLogTrace("  path=\"%s\"", path);
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_LONGREF(3, idx);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(BMAP) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jlong)blocksize, JAVA_ARG(3));
+
+        JFUSE_MERGE_LONGREF(JAVA_ARG(3), idx);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(3);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_bmap");
+
+    CSLogTraceLeave("int jfuse3_bmap(%p, %zu, %p): %d",
+                path, blocksize, idx, retval);
+    return retval;
+}
+
+ssize_t jfuse3_copy_file_range(const char *path_in,
+        struct fuse_file_info *fi_in, off_t off_in, const char *path_out,
+        struct fuse_file_info *fi_out, off_t off_out, size_t len, int flags) {
+    CSLogTraceEnter("ssize_t jfuse3_copy_file_range(%p, %p, %" PRId64 ", %p, "
+            "%p, %" PRId64 ", %zu, %d)", path_in, fi_in, (int64_t)off_in,
+            path_out, fi_out, (int64_t)off_out, len, flags);
+    CSLogTrace("  path_in=\"%s\"", path_in);
+    CSLogTrace("  path_out=\"%s\"", path_out);
+
+    /* Copy between the backing files without calling into Java when both
+     * files have one. */
+    const int backingFdIn = getBackingFd(fi_in);
+    const int backingFdOut =
+            (backingFdIn >= 0 ? getBackingFd(fi_out) : -1);
+    if(backingFdOut >= 0) {
+        ssize_t res = jFUSEPassthroughTable::copyRange(backingFdIn, off_in,
+                backingFdOut, off_out, len, flags);
+        CSLogTraceLeave("ssize_t jfuse3_copy_file_range(%p, %p, %" PRId64 ", "
+                "%p, %p, %" PRId64 ", %zu, %d): %zd (passthrough)", path_in,
+                fi_in, (int64_t)off_in, path_out, fi_out, (int64_t)off_out,
+                len, flags, res);
+        return res;
+    }
+
+    ssize_t retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path_in);
+    JAVA_ARG_FUSE_FILE_INFO(2, fi_in);
+    JAVA_ARG_CSTRING_BYTEBUFFER(4, path_out);
+    JAVA_ARG_NEW_FUSE_FILE_INFO(5, fi_out);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(COPY_FILE_RANGE) {
+        JFUSE_FS_PROVIDER_CALL_LONG(JAVA_ARG(1), JAVA_ARG(2), (jlong)off_in,
+                JAVA_ARG(4), JAVA_ARG(5), (jlong)off_out, (jlong)len,
+                (jint)flags);
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(2), fi_in);
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(5), fi_out);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(2);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_copy_file_range");
+
+    CSLogTraceLeave("ssize_t jfuse3_copy_file_range(%p, %p, %" PRId64 ", %p, "
+            "%p, %" PRId64 ", %zu, %d): %zd", path_in, fi_in, (int64_t)off_in,
+            path_out, fi_out, (int64_t)off_out, len, flags, retval);
+    return retval;
+}
+
+int jfuse3_fallocate(const char *path, int mode, off_t off, off_t len,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("int jfuse3_fallocate(%p, %d, %" PRId64 ", %" PRId64 ", "
+            "%p)", path, mode, (int64_t)off, (int64_t)len, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    /* The data of a handle with a backing file lives in that file, so the
+     * allocation has to happen there. */
+    const int backingFd = getBackingFd(fi);
+    if(backingFd >= 0) {
+        int res = jFUSEPassthroughTable::allocate(backingFd, mode, off, len);
+        CSLogTraceLeave("int jfuse3_fallocate(%p, %d, %" PRId64 ", %" PRId64
+                ", %p): %d (passthrough)", path, mode, (int64_t)off,
+                (int64_t)len, fi, res);
+        return res;
+    }
+
+    int retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(5, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(FALLOCATE) {
+        JFUSE_FS_PROVIDER_CALL(JAVA_ARG(1), (jint)mode, (jlong)off,
+                (jlong)len, JAVA_ARG(5));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(5), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(5);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_fallocate");
+
+    CSLogTraceLeave("int jfuse3_fallocate(%p, %d, %" PRId64 ", %" PRId64 ", "
+            "%p): %d", path, mode, (int64_t)off, (int64_t)len, fi, retval);
+    return retval;
+}
+
+#if FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8)
+off_t jfuse3_lseek(const char *path, off_t off, int whence,
+        struct fuse_file_info *fi) {
+    CSLogTraceEnter("off_t jfuse3_lseek(%p, %" PRId64 ", %d, %p)", path,
+            (int64_t)off, whence, fi);
+    CSLogTrace("  path=\"%s\"", path);
+
+    off_t retval = -EIO;
+    JFUSE_OPERATION_INIT();
+
+    JAVA_ARG_CSTRING_BYTEBUFFER(1, path);
+    JAVA_ARG_FUSE_FILE_INFO(4, fi);
+
+    JFUSE_FS_PROVIDER_METHOD_OK(LSEEK) {
+        JFUSE_FS_PROVIDER_CALL_LONG(JAVA_ARG(1), (jlong)off, (jint)whence,
+                JAVA_ARG(4));
+
+        JFUSE_MERGE_FUSE_FILE_INFO(JAVA_ARG(4), fi);
+
+        JFUSE_SET_RETVAL();
+    }
+
+    JAVA_ARG_CLEANUP(4);
+    JAVA_ARG_CLEANUP(1);
+
+    JAVA_EXCEPTION_CHECK("jfuse3_lseek");
+
+    CSLogTraceLeave("off_t jfuse3_lseek(%p, %" PRId64 ", %d, %p): %" PRId64,
+            path, (int64_t)off, whence, fi, (int64_t)retval);
+    return retval;
+}
+#endif /* FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8) */
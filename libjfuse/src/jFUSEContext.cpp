@@ -21,17 +21,51 @@
 
 #include "CSLog.h"
 #include "common.h"
+#include "JNICache.h"
+#include "jFUSEThreadState.h"
 
-jFUSEContext::jFUSEContext(JNIEnv* env, jobject fsProvider) {
+jFUSEContext::jFUSEContext(JNIEnv* env, jobject fsProvider,
+        const jFUSEMethodSpec *methods, int methodCount) {
     if(env == NULL)
         throw "env == NULL";
     if(fsProvider == NULL)
         throw "fsProvider == NULL";
-    
-    this->env = env;
-    this->fsProvider = fsProvider;
+    if(methods == NULL && methodCount != 0)
+        throw "methods == NULL";
+
+    if(env->GetJavaVM(&this->jvm) != 0)
+        throw "Could not get JavaVM";
+    /* The file system object is accessed from all FUSE worker threads, so we
+     * need a global ref. */
+    this->fsProvider = env->NewGlobalRef(fsProvider);
+
+    /* Resolve the method IDs of the file system class once, so that we don't
+     * have to look them up for every call. Methods that the class doesn't
+     * implement (such as MacFUSE extensions) are left as NULL. */
+    this->fsProviderMethodCount = methodCount;
+    this->fsProviderMethods = new jmethodID[methodCount];
+
+    jclass cls = env->GetObjectClass(fsProvider);
+    for(int i = 0; i < methodCount; ++i) {
+        jmethodID mid = env->GetMethodID(cls, methods[i].name,
+                methods[i].signature);
+        if(mid == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            CSLogDebug("File system class does not implement \"%s\" with "
+                    "signature %s.", methods[i].name, methods[i].signature);
+            env->ExceptionClear();
+            mid = NULL;
+        }
+        this->fsProviderMethods[i] = mid;
+    }
+    env->DeleteLocalRef(cls);
     this->privateData = NULL;
     this->initEnabled = false;
+    this->reuseArgumentObjects = false;
+    this->reusePathBuffers = false;
+    this->mountHandle = NULL;
+    this->deviceFd = -1;
+    this->kernelPassthrough = false;
+    this->requestRing = NULL;
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if __FreeBSD__ >= 10
     this->xtimesEnabled = false;
@@ -41,42 +75,58 @@ jFUSEContext::jFUSEContext(JNIEnv* env, jobject fsProvider) {
 
 jFUSEContext::~jFUSEContext() {
     setPrivateData(NULL); // Cleans up global ref.
+    setMountHandle(getJNIEnv(), NULL);
+    getJNIEnv()->DeleteGlobalRef(this->fsProvider);
+    delete[] this->fsProviderMethods;
 }
 
 JNIEnv* jFUSEContext::getJNIEnv() {
-    return env;
+    return jFUSEThreadState::get(jvm)->getJNIEnv();
+}
+
+jFUSEThreadState* jFUSEContext::getThreadState() {
+    jFUSEThreadState *state = jFUSEThreadState::get(jvm);
+
+    /* The first request that a thread serves for this mount registers it as
+     * one of the mount's worker threads. */
+    if(state->getOwner() != this) {
+        state->setOwner(this);
+        if(mountHandle != NULL) {
+            JNIEnv *env = state->getJNIEnv();
+            env->CallVoidMethod(mountHandle,
+                    JNICache::mountHandle.workerStarted);
+            if(env->ExceptionCheck() == JNI_TRUE) {
+                CSLogError("Exception while registering worker thread.");
+                env->ExceptionDescribe();
+                env->ExceptionClear();
+            }
+        }
+    }
+
+    return state;
 }
 
 jobject jFUSEContext::getFSProvider() {
     return fsProvider;
 }
 
-jmethodID jFUSEContext::getFSProviderMethod(const char *name, const char *signature) {
-    jmethodID result = NULL;
-    jclass cls = NULL;
-    
-    do {
-        cls = env->GetObjectClass(fsProvider);
-        if(cls == NULL || env->ExceptionCheck() == JNI_TRUE) {
-            CSLogError("Could not get class of fsProvider!");
-            if(env->ExceptionCheck() == JNI_FALSE)
-                throwByName(env, "java/lang/RuntimeException", "Could not get Class of fsProvider");
-            break;
-        }
+jmethodID jFUSEContext::getFSProviderMethodID(int index) {
+    if(index < 0 || index >= fsProviderMethodCount)
+        return NULL;
 
-        result = env->GetMethodID(cls, name, signature);
-    } while(0);
-
-    if(cls != NULL)
-        env->DeleteLocalRef(cls);
+    return fsProviderMethods[index];
+}
 
-    return result;
+void jFUSEContext::clearFSProviderMethodID(int index) {
+    if(index >= 0 && index < fsProviderMethodCount)
+        fsProviderMethods[index] = NULL;
 }
 
 jobject jFUSEContext::getPrivateData() {
     return this->privateData;
 }
 void jFUSEContext::setPrivateData(jobject obj) {
+    JNIEnv *env = getJNIEnv();
     jobject globj = NULL;
     if(obj != NULL)
         globj = env->NewGlobalRef(obj);
@@ -94,6 +144,97 @@ void jFUSEContext::setInitEnabled(bool b) {
     this->initEnabled = b;
 }
 
+bool jFUSEContext::getReuseArgumentObjects() {
+    return this->reuseArgumentObjects;
+}
+
+void jFUSEContext::setReuseArgumentObjects(bool b) {
+    this->reuseArgumentObjects = b;
+}
+
+bool jFUSEContext::getReusePathBuffers() {
+    return this->reusePathBuffers;
+}
+
+void jFUSEContext::setReusePathBuffers(bool b) {
+    this->reusePathBuffers = b;
+}
+
+void jFUSEContext::setMountHandle(JNIEnv *env, jobject handle) {
+    jobject globj = NULL;
+    if(handle != NULL)
+        globj = env->NewGlobalRef(handle);
+    if(this->mountHandle != NULL)
+        env->DeleteGlobalRef(this->mountHandle);
+
+    this->mountHandle = globj;
+}
+
+void jFUSEContext::notifyMountReady(JNIEnv *env) {
+    if(mountHandle == NULL)
+        return;
+
+    env->CallVoidMethod(mountHandle, JNICache::mountHandle.mountReady);
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception while signalling that the mount is ready.");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
+void jFUSEContext::notifyConnInitialized(JNIEnv *env, jobject connInfo) {
+    if(mountHandle == NULL)
+        return;
+
+    env->CallVoidMethod(mountHandle, JNICache::mountHandle.connInitialized,
+            connInfo);
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception while recording the connection parameters.");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
+jFUSERequestRing* jFUSEContext::getRequestRing() {
+    return this->requestRing;
+}
+
+void jFUSEContext::setRequestRing(jFUSERequestRing *ring) {
+    this->requestRing = ring;
+}
+
+jFUSEPassthroughTable* jFUSEContext::getPassthroughTable() {
+    return &this->passthroughTable;
+}
+
+int jFUSEContext::getDeviceFd() {
+    return this->deviceFd;
+}
+
+void jFUSEContext::setDeviceFd(int fd) {
+    this->deviceFd = fd;
+}
+
+bool jFUSEContext::getKernelPassthrough() {
+    return this->kernelPassthrough;
+}
+
+void jFUSEContext::setKernelPassthrough(JNIEnv *env, bool b) {
+    this->kernelPassthrough = b;
+
+    if(mountHandle == NULL)
+        return;
+
+    env->CallVoidMethod(mountHandle,
+            JNICache::mountHandle.kernelPassthroughChanged,
+            b ? JNI_TRUE : JNI_FALSE);
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Exception while recording the kernel passthrough state.");
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if (__FreeBSD__ >= 10)
 bool jFUSEContext::getXtimesEnabled() {
@@ -0,0 +1,325 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "jFUSEPassthroughTable.h"
+
+#include "CSLog.h"
+
+#include <errno.h>
+#include <fcntl.h>
+#include <inttypes.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#if defined(__linux__)
+#include <sys/ioctl.h>
+#include <sys/syscall.h>
+#endif
+
+#if defined(__linux__)
+/* From <linux/fuse.h> (protocol 7.40), for building against older kernel
+ * headers. */
+#ifndef FUSE_DEV_IOC_BACKING_OPEN
+struct fuse_backing_map {
+    int32_t fd;
+    uint32_t flags;
+    uint64_t padding;
+};
+
+#define FUSE_DEV_IOC_MAGIC 229
+#define FUSE_DEV_IOC_BACKING_OPEN \
+    _IOW(FUSE_DEV_IOC_MAGIC, 1, struct fuse_backing_map)
+#define FUSE_DEV_IOC_BACKING_CLOSE _IOW(FUSE_DEV_IOC_MAGIC, 2, uint32_t)
+#endif /* !defined(FUSE_DEV_IOC_BACKING_OPEN) */
+#endif /* defined(__linux__) */
+
+jFUSEPassthroughTable::jFUSEPassthroughTable() {
+    pthread_rwlock_init(&lock, NULL);
+    count = 0;
+    for(int i = 0; i < BUCKET_COUNT; ++i)
+        buckets[i] = NULL;
+}
+
+jFUSEPassthroughTable::~jFUSEPassthroughTable() {
+    for(int i = 0; i < BUCKET_COUNT; ++i) {
+        Entry *e = buckets[i];
+        while(e != NULL) {
+            Entry *next = e->next;
+            /* Backing IDs go away with the connection. */
+            CSLogDebug("Closing backing descriptor %d of unreleased handle "
+                    "0x%llx.", e->fd, (unsigned long long) e->fh);
+            close(e->fd);
+            free(e);
+            e = next;
+        }
+        buckets[i] = NULL;
+    }
+
+    pthread_rwlock_destroy(&lock);
+}
+
+bool jFUSEPassthroughTable::add(uint64_t fh, int fd) {
+    Entry *newEntry = (Entry*) malloc(sizeof(Entry));
+    if(newEntry == NULL)
+        return false;
+
+    newEntry->fh = fh;
+    newEntry->fd = fd;
+    newEntry->backingId = 0;
+
+    bool res = true;
+    const int index = bucketIndex(fh);
+
+    pthread_rwlock_wrlock(&lock);
+    for(Entry *e = buckets[index]; e != NULL; e = e->next) {
+        if(e->fh == fh) {
+            res = false;
+            break;
+        }
+    }
+
+    if(res) {
+        newEntry->next = buckets[index];
+        buckets[index] = newEntry;
+        __sync_fetch_and_add(&count, 1);
+    }
+    pthread_rwlock_unlock(&lock);
+
+    if(!res)
+        free(newEntry);
+
+    return res;
+}
+
+int jFUSEPassthroughTable::get(uint64_t fh) {
+    if(count == 0)
+        return -1;
+
+    int fd = -1;
+    const int index = bucketIndex(fh);
+
+    pthread_rwlock_rdlock(&lock);
+    for(Entry *e = buckets[index]; e != NULL; e = e->next) {
+        if(e->fh == fh) {
+            fd = e->fd;
+            break;
+        }
+    }
+    pthread_rwlock_unlock(&lock);
+
+    return fd;
+}
+
+bool jFUSEPassthroughTable::setBackingId(uint64_t fh, int32_t backingId) {
+    bool res = false;
+    const int index = bucketIndex(fh);
+
+    pthread_rwlock_wrlock(&lock);
+    for(Entry *e = buckets[index]; e != NULL; e = e->next) {
+        if(e->fh == fh) {
+            e->backingId = backingId;
+            res = true;
+            break;
+        }
+    }
+    pthread_rwlock_unlock(&lock);
+
+    return res;
+}
+
+jFUSEPassthroughTable::Entry* jFUSEPassthroughTable::removeEntry(
+        uint64_t fh) {
+    if(count == 0)
+        return NULL;
+
+    Entry *removed = NULL;
+    const int index = bucketIndex(fh);
+
+    pthread_rwlock_wrlock(&lock);
+    for(Entry **link = &buckets[index]; *link != NULL;
+            link = &(*link)->next) {
+        if((*link)->fh == fh) {
+            removed = *link;
+            *link = removed->next;
+            __sync_fetch_and_sub(&count, 1);
+            break;
+        }
+    }
+    pthread_rwlock_unlock(&lock);
+
+    return removed;
+}
+
+int jFUSEPassthroughTable::remove(uint64_t fh) {
+    Entry *removed = removeEntry(fh);
+
+    int fd = -1;
+    if(removed != NULL) {
+        fd = removed->fd;
+        free(removed);
+    }
+
+    return fd;
+}
+
+void jFUSEPassthroughTable::addDuplicate(uint64_t fh, int backingFd) {
+    /* The file system keeps its own descriptor, so take a duplicate that
+     * lives until the handle is released. */
+    int fd = dup(backingFd);
+    if(fd < 0) {
+        CSLogError("Could not duplicate backing descriptor %d: %s",
+                backingFd, strerror(errno));
+        return;
+    }
+    fcntl(fd, F_SETFD, FD_CLOEXEC);
+
+    if(!add(fh, fd)) {
+        CSLogError("Handle 0x%" PRIx64 " already has a backing descriptor. "
+                "Not passing it through.", fh);
+        close(fd);
+    }
+    else
+        CSLogDebug("Registered backing descriptor %d for handle 0x%" PRIx64
+                ".", fd, fh);
+}
+
+int32_t jFUSEPassthroughTable::release(uint64_t fh) {
+    Entry *removed = removeEntry(fh);
+    if(removed == NULL)
+        return 0;
+
+    CSLogDebug("Closing backing descriptor %d of handle 0x%" PRIx64 ".",
+            removed->fd, fh);
+    close(removed->fd);
+
+    const int32_t backingId = removed->backingId;
+    free(removed);
+
+    return backingId;
+}
+
+int jFUSEPassthroughTable::openBacking(int deviceFd, int fd) {
+#if defined(__linux__)
+    struct fuse_backing_map map;
+    memset(&map, 0, sizeof(map));
+    map.fd = fd;
+
+    const int res = ioctl(deviceFd, FUSE_DEV_IOC_BACKING_OPEN, &map);
+    return (res < 0) ? -errno : res;
+#else
+    return -ENOSYS;
+#endif
+}
+
+int jFUSEPassthroughTable::closeBacking(int deviceFd, int32_t backingId) {
+#if defined(__linux__)
+    uint32_t id = (uint32_t) backingId;
+
+    return (ioctl(deviceFd, FUSE_DEV_IOC_BACKING_CLOSE, &id) < 0) ? -errno : 0;
+#else
+    return -ENOSYS;
+#endif
+}
+
+int jFUSEPassthroughTable::readAt(int fd, char *buf, size_t len, off_t off) {
+    size_t total = 0;
+    while(total < len) {
+        ssize_t res = pread(fd, buf + total, len - total, off + total);
+        if(res < 0) {
+            if(errno == EINTR)
+                continue;
+            return total > 0 ? (int) total : -errno;
+        }
+        else if(res == 0)
+            break;
+
+        total += res;
+    }
+
+    return (int) total;
+}
+
+int jFUSEPassthroughTable::writeAt(int fd, const char *buf, size_t len,
+        off_t off) {
+    size_t total = 0;
+    while(total < len) {
+        ssize_t res = pwrite(fd, buf + total, len - total, off + total);
+        if(res < 0) {
+            if(errno == EINTR)
+                continue;
+            return total > 0 ? (int) total : -errno;
+        }
+
+        total += res;
+    }
+
+    return (int) total;
+}
+
+ssize_t jFUSEPassthroughTable::copyRange(int fdIn, off_t offIn, int fdOut,
+        off_t offOut, size_t len, int flags) {
+#if defined(__linux__) && defined(SYS_copy_file_range)
+    /* Called through syscall(2), since the glibc wrapper is fairly recent. */
+    int64_t posIn = offIn;
+    int64_t posOut = offOut;
+    size_t total = 0;
+    while(total < len) {
+        long res = syscall(SYS_copy_file_range, fdIn, &posIn, fdOut, &posOut,
+                len - total, (unsigned int) flags);
+        if(res < 0) {
+            if(errno == EINTR)
+                continue;
+            return total > 0 ? (ssize_t) total : -errno;
+        }
+        else if(res == 0)
+            break;
+
+        total += res;
+    }
+
+    return (ssize_t) total;
+#else
+    (void) fdIn;
+    (void) offIn;
+    (void) fdOut;
+    (void) offOut;
+    (void) len;
+    (void) flags;
+    return -EOPNOTSUPP;
+#endif
+}
+
+int jFUSEPassthroughTable::allocate(int fd, int mode, off_t off, off_t len) {
+#if defined(__linux__)
+    int res;
+    do {
+        res = fallocate(fd, mode, off, len);
+    } while(res < 0 && errno == EINTR);
+
+    return res < 0 ? -errno : 0;
+#else
+    /* Elsewhere only plain allocation is available. */
+    if(mode != 0)
+        return -EOPNOTSUPP;
+
+    return -posix_fallocate(fd, off, len);
+#endif
+}
@@ -0,0 +1,331 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "jFUSERequestRing.h"
+
+#if !defined(__NetBSD__)
+
+#include "CSLog.h"
+
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <sys/time.h>
+
+/* How long close() waits for consumers to complete claimed requests. */
+#define JFUSE_RING_CLOSE_TIMEOUT_SECONDS 10
+/* Upper bound for a blocking poll to sleep without rechecking the ring. */
+#define JFUSE_RING_POLL_WAIT_MILLIS 100
+
+static int32_t getInt(const char *slot, int offset) {
+    int32_t value;
+    memcpy(&value, slot + offset, sizeof(value));
+    return value;
+}
+
+static int64_t getLong(const char *slot, int offset) {
+    int64_t value;
+    memcpy(&value, slot + offset, sizeof(value));
+    return value;
+}
+
+static double getDouble(const char *slot, int offset) {
+    double value;
+    memcpy(&value, slot + offset, sizeof(value));
+    return value;
+}
+
+static void getTimeout(struct timespec *ts, long millis) {
+    struct timeval now;
+    gettimeofday(&now, NULL);
+
+    long nsec = now.tv_usec * 1000L + (millis % 1000) * 1000000L;
+    ts->tv_sec = now.tv_sec + millis / 1000 + nsec / 1000000000L;
+    ts->tv_nsec = nsec % 1000000000L;
+}
+
+/**
+ * Reads the stat block written by RequestRingConsumer into
+ * <code>target</code>.
+ */
+static void getStat(const char *slot, struct stat *target) {
+    const char *p = slot + JFUSE_RING_OFF_STAT;
+
+    memset(target, 0, sizeof(struct stat));
+    target->st_dev = getLong(p, 0 * 8);
+    target->st_ino = getLong(p, 1 * 8);
+    target->st_mode = getLong(p, 2 * 8);
+    target->st_nlink = getLong(p, 3 * 8);
+    target->st_uid = getLong(p, 4 * 8);
+    target->st_gid = getLong(p, 5 * 8);
+    target->st_rdev = getLong(p, 6 * 8);
+    target->st_size = getLong(p, 7 * 8);
+    target->st_blocks = getLong(p, 8 * 8);
+    target->st_blksize = getLong(p, 9 * 8);
+#if defined(__linux__) || defined(__sun__)
+    target->st_atim.tv_sec = getLong(p, 12 * 8);
+    target->st_atim.tv_nsec = getLong(p, 13 * 8);
+    target->st_mtim.tv_sec = getLong(p, 14 * 8);
+    target->st_mtim.tv_nsec = getLong(p, 15 * 8);
+    target->st_ctim.tv_sec = getLong(p, 16 * 8);
+    target->st_ctim.tv_nsec = getLong(p, 17 * 8);
+#else
+    target->st_flags = getLong(p, 10 * 8);
+    target->st_gen = getLong(p, 11 * 8);
+    target->st_atimespec.tv_sec = getLong(p, 12 * 8);
+    target->st_atimespec.tv_nsec = getLong(p, 13 * 8);
+    target->st_mtimespec.tv_sec = getLong(p, 14 * 8);
+    target->st_mtimespec.tv_nsec = getLong(p, 15 * 8);
+    target->st_ctimespec.tv_sec = getLong(p, 16 * 8);
+    target->st_ctimespec.tv_nsec = getLong(p, 17 * 8);
+#endif
+}
+
+jFUSERequestRing::jFUSERequestRing(uint32_t capacity, uint32_t dataCapacity) {
+    this->capacity = capacity;
+    this->mask = capacity - 1;
+    this->slotSize = JFUSE_RING_HEADER_SIZE + dataCapacity;
+    this->dataCapacity = dataCapacity;
+
+    this->slots = (char*) calloc(capacity, slotSize);
+    this->reqs = (fuse_req_t*) calloc(capacity, sizeof(fuse_req_t));
+    this->busy = (volatile uint32_t*) calloc(capacity, sizeof(uint32_t));
+    if(this->reqs == NULL || this->busy == NULL) {
+        free(this->slots);
+        this->slots = NULL;
+    }
+
+    this->published = 0;
+    this->claimed = 0;
+    this->outstanding = 0;
+    this->waiters = 0;
+    this->attached = false;
+    this->closed = false;
+
+    pthread_mutex_init(&mutex, NULL);
+    pthread_cond_init(&publishedCond, NULL);
+    pthread_cond_init(&completedCond, NULL);
+    pthread_rwlock_init(&replyLock, NULL);
+}
+
+jFUSERequestRing::~jFUSERequestRing() {
+    pthread_rwlock_destroy(&replyLock);
+    pthread_cond_destroy(&completedCond);
+    pthread_cond_destroy(&publishedCond);
+    pthread_mutex_destroy(&mutex);
+
+    free((void*) busy);
+    free(reqs);
+    free(slots);
+}
+
+void jFUSERequestRing::attach() {
+    attached = true;
+    __sync_synchronize();
+}
+
+void jFUSERequestRing::close() {
+#define _FNAME_ "jFUSERequestRing::close"
+    pthread_mutex_lock(&mutex);
+    closed = true;
+    __sync_synchronize();
+    pthread_cond_broadcast(&publishedCond);
+
+    struct timespec deadline;
+    getTimeout(&deadline, JFUSE_RING_CLOSE_TIMEOUT_SECONDS * 1000L);
+    while(outstanding != 0) {
+        if(pthread_cond_timedwait(&completedCond, &mutex, &deadline) ==
+                ETIMEDOUT)
+            break;
+    }
+    const uint32_t abandoned = outstanding;
+    pthread_mutex_unlock(&mutex);
+
+    if(abandoned != 0)
+        CSLogError(_FNAME_ ": %u requests were not completed by the "
+                "consumers and will not be replied to.", abandoned);
+
+    pthread_rwlock_wrlock(&replyLock);
+    attached = false;
+    pthread_rwlock_unlock(&replyLock);
+#undef _FNAME_
+}
+
+char* jFUSERequestRing::beginPublish(uint32_t *index) {
+    if(!attached || closed)
+        return NULL;
+
+    const uint32_t i = published & mask;
+    if(busy[i] != 0)
+        return NULL;
+
+    /* Don't touch the slot before we've seen that it is free. */
+    __sync_synchronize();
+    *index = i;
+    return slots + (size_t) i * slotSize;
+}
+
+void jFUSERequestRing::publish(uint32_t index, fuse_req_t req) {
+    reqs[index] = req;
+    busy[index] = 1;
+    __sync_fetch_and_add(&outstanding, 1);
+
+    /* Make the slot contents visible before the new sequence number. Only
+     * this thread writes published, so a plain increment is enough. */
+    __sync_synchronize();
+    published = published + 1;
+    __sync_synchronize();
+
+    if(waiters > 0) {
+        pthread_mutex_lock(&mutex);
+        pthread_cond_broadcast(&publishedCond);
+        pthread_mutex_unlock(&mutex);
+    }
+}
+
+int jFUSERequestRing::poll(jint *indices, int max, bool block) {
+    while(true) {
+        const uint32_t c = claimed;
+        __sync_synchronize();
+        const uint32_t p = published;
+
+        if(c != p) {
+            uint32_t n = p - c;
+            if(n > (uint32_t) max)
+                n = (uint32_t) max;
+
+            if(__sync_bool_compare_and_swap(&claimed, c, c + n)) {
+                /* The slot contents were published before p. */
+                __sync_synchronize();
+                for(uint32_t i = 0; i < n; ++i)
+                    indices[i] = (jint) ((c + i) & mask);
+                return (int) n;
+            }
+
+            continue;
+        }
+
+        if(closed) {
+            __sync_synchronize();
+            if(claimed == published)
+                return -1;
+            continue;
+        }
+
+        if(!block)
+            return 0;
+
+        /* Announce that we are waiting before the final check, so that a
+         * publish after the check sees us and wakes us up. The timed wait is
+         * a safety net. */
+        pthread_mutex_lock(&mutex);
+        __sync_fetch_and_add(&waiters, 1);
+        if(claimed == published && !closed) {
+            struct timespec deadline;
+            getTimeout(&deadline, JFUSE_RING_POLL_WAIT_MILLIS);
+            pthread_cond_timedwait(&publishedCond, &mutex, &deadline);
+        }
+        __sync_fetch_and_sub(&waiters, 1);
+        pthread_mutex_unlock(&mutex);
+    }
+}
+
+void jFUSERequestRing::reply(uint32_t index) {
+#define _FNAME_ "jFUSERequestRing::reply"
+    const char *slot = slots + (size_t) index * slotSize;
+    fuse_req_t req = reqs[index];
+    const int32_t opcode = getInt(slot, JFUSE_RING_OFF_OPCODE);
+    const int32_t result = getInt(slot, JFUSE_RING_OFF_RESULT);
+
+    if(result < 0) {
+        JFUSE_LL_REPLY_ERR(req, result);
+        return;
+    }
+
+    switch(opcode) {
+        case JFUSE_RING_OP_LOOKUP: {
+            struct fuse_entry_param e;
+            memset(&e, 0, sizeof(e));
+            e.ino = getLong(slot, JFUSE_RING_OFF_ENTRY_INO);
+            e.generation = getLong(slot, JFUSE_RING_OFF_ENTRY_GENERATION);
+            e.attr_timeout = getDouble(slot, JFUSE_RING_OFF_ATTR_TIMEOUT);
+            e.entry_timeout = getDouble(slot, JFUSE_RING_OFF_ENTRY_TIMEOUT);
+            getStat(slot, &e.attr);
+            fuse_reply_entry(req, &e);
+            break;
+        }
+        case JFUSE_RING_OP_GETATTR: {
+            struct stat stbuf;
+            getStat(slot, &stbuf);
+            fuse_reply_attr(req, &stbuf,
+                    getDouble(slot, JFUSE_RING_OFF_ATTR_TIMEOUT));
+            break;
+        }
+        case JFUSE_RING_OP_READ: {
+            size_t size = getInt(slot, JFUSE_RING_OFF_SIZE);
+            if((size_t) result < size)
+                size = result;
+            fuse_reply_buf(req, slot + JFUSE_RING_HEADER_SIZE, size);
+            break;
+        }
+        case JFUSE_RING_OP_WRITE:
+            fuse_reply_write(req, result);
+            break;
+        default:
+            CSLogError(_FNAME_ ": Unknown opcode %d in slot %u.", opcode,
+                    index);
+            fuse_reply_err(req, EIO);
+            break;
+    }
+#undef _FNAME_
+}
+
+void jFUSERequestRing::complete(const jint *indices, int count) {
+#define _FNAME_ "jFUSERequestRing::complete"
+    pthread_rwlock_rdlock(&replyLock);
+    const bool replyAllowed = attached;
+
+    for(int i = 0; i < count; ++i) {
+        const uint32_t index = (uint32_t) indices[i];
+        if(index >= capacity || busy[index] == 0) {
+            CSLogError(_FNAME_ ": Slot %u is not in use.", index);
+            continue;
+        }
+
+        if(replyAllowed)
+            reply(index);
+
+        /* Done with the slot, hand it back to the producer. */
+        reqs[index] = NULL;
+        __sync_synchronize();
+        busy[index] = 0;
+        __sync_fetch_and_sub(&outstanding, 1);
+    }
+
+    pthread_rwlock_unlock(&replyLock);
+
+    if(closed) {
+        pthread_mutex_lock(&mutex);
+        pthread_cond_broadcast(&completedCond);
+        pthread_mutex_unlock(&mutex);
+    }
+#undef _FNAME_
+}
+
+#endif /* !defined(__NetBSD__) */
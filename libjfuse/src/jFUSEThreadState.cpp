@@ -0,0 +1,284 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "jFUSEThreadState.h"
+
+#include "CSLog.h"
+#include "JNICache.h"
+
+#include <pthread.h>
+#include <stdlib.h>
+#include <string.h>
+
+static pthread_key_t threadStateKey;
+static pthread_once_t threadStateKeyOnce = PTHREAD_ONCE_INIT;
+
+jFUSEThreadState::jFUSEThreadState(JavaVM *jvm, JNIEnv *env, bool attached) {
+    this->jvm = jvm;
+    this->env = env;
+    this->attached = attached;
+    this->owner = NULL;
+
+    this->stat = NULL;
+    this->fuseFileInfo = NULL;
+    this->statVFS = NULL;
+    this->flock = NULL;
+    for(int i = 0; i < TIMESPEC_SLOTS; ++i)
+        this->timespec[i] = NULL;
+    this->statBuffer = NULL;
+    this->fileInfoBuffer = NULL;
+    for(int i = 0; i < PATH_BUFFER_SLOTS; ++i) {
+        this->pathBuffer[i] = NULL;
+        this->pathBufferData[i] = NULL;
+    }
+}
+
+jFUSEThreadState::~jFUSEThreadState() {
+    clearObjects(true);
+    for(int i = 0; i < PATH_BUFFER_SLOTS; ++i)
+        free(pathBufferData[i]);
+}
+
+bool jFUSEThreadState::clearObjects(bool deleteRefs) {
+    jobject *slots[] = { &stat, &fuseFileInfo, &statVFS, &flock,
+            &timespec[0], &timespec[1], &statBuffer, &fileInfoBuffer,
+            &pathBuffer[0], &pathBuffer[1] };
+    bool hadObjects = false;
+
+    for(unsigned int i = 0; i < sizeof(slots) / sizeof(slots[0]); ++i) {
+        if(*slots[i] != NULL) {
+            if(deleteRefs)
+                env->DeleteGlobalRef(*slots[i]);
+            *slots[i] = NULL;
+            hadObjects = true;
+        }
+    }
+
+    return hadObjects;
+}
+
+void jFUSEThreadState::destructor(void *data) {
+    jFUSEThreadState *state = (jFUSEThreadState*) data;
+
+    if(state->attached) {
+        JavaVM *jvm = state->jvm;
+        delete state;
+
+        CSLogDebug("Detaching FUSE worker thread %p from JVM.",
+                (void*) pthread_self());
+        jvm->DetachCurrentThread();
+    }
+    else {
+        /* The thread belongs to the JVM, which may already have detached it,
+         * so we can't touch any refs at this point. release() should have been
+         * called before getting here. */
+        if(state->clearObjects(false))
+            CSLogError("Thread state of Java thread %p was not released. "
+                    "Leaking argument objects.", (void*) pthread_self());
+        delete state;
+    }
+}
+
+void jFUSEThreadState::keyInit() {
+    int res = pthread_key_create(&threadStateKey, destructor);
+    if(res != 0)
+        CSPanicWithMessage("pthread_key_create failed with error %d.", res);
+}
+
+jFUSEThreadState* jFUSEThreadState::get(JavaVM *jvm) {
+    pthread_once(&threadStateKeyOnce, keyInit);
+
+    jFUSEThreadState *state =
+            (jFUSEThreadState*) pthread_getspecific(threadStateKey);
+    if(state != NULL)
+        return state;
+
+    JNIEnv *env = NULL;
+    bool attached = false;
+
+    jint res = jvm->GetEnv((void**) &env, JNI_VERSION_1_4);
+    if(res == JNI_EDETACHED) {
+        JavaVMAttachArgs args;
+        args.version = JNI_VERSION_1_4;
+        args.name = (char*) "jFUSE worker";
+        args.group = NULL;
+
+        CSLogDebug("Attaching FUSE worker thread %p to JVM.",
+                (void*) pthread_self());
+        res = jvm->AttachCurrentThreadAsDaemon((void**) &env, &args);
+        if(res != JNI_OK)
+            CSPanicWithMessage("Could not attach thread to JVM (error %ld).",
+                    (long) res);
+        attached = true;
+    }
+    else if(res != JNI_OK)
+        CSPanicWithMessage("Could not get JNIEnv for thread (error %ld).",
+                (long) res);
+
+    state = new jFUSEThreadState(jvm, env, attached);
+    pthread_setspecific(threadStateKey, state);
+
+    return state;
+}
+
+void jFUSEThreadState::release() {
+    pthread_once(&threadStateKeyOnce, keyInit);
+
+    jFUSEThreadState *state =
+            (jFUSEThreadState*) pthread_getspecific(threadStateKey);
+    if(state != NULL && !state->attached) {
+        pthread_setspecific(threadStateKey, NULL);
+        delete state;
+    }
+}
+
+jobject jFUSEThreadState::getObject(jobject *slot, jclass clazz,
+        jmethodID init) {
+    if(*slot == NULL) {
+        jobject obj = env->NewObject(clazz, init);
+        if(obj == NULL || env->ExceptionCheck() == JNI_TRUE)
+            return NULL;
+
+        *slot = env->NewGlobalRef(obj);
+        env->DeleteLocalRef(obj);
+        if(*slot == NULL)
+            return NULL;
+    }
+
+    return env->NewLocalRef(*slot);
+}
+
+jobject jFUSEThreadState::getStat() {
+    return getObject(&stat, JNICache::stat.clazz, JNICache::stat.init);
+}
+
+jobject jFUSEThreadState::getFUSEFileInfo() {
+    return getObject(&fuseFileInfo, JNICache::fuseFileInfo.clazz,
+            JNICache::fuseFileInfo.init);
+}
+
+jobject jFUSEThreadState::getStatVFS() {
+    return getObject(&statVFS, JNICache::statVFS.clazz,
+            JNICache::statVFS.init);
+}
+
+jobject jFUSEThreadState::getFlock() {
+    return getObject(&flock, JNICache::flock.clazz, JNICache::flock.init);
+}
+
+jobject jFUSEThreadState::getTimespec(int slot) {
+    return getObject(&timespec[slot % TIMESPEC_SLOTS],
+            JNICache::timespec.clazz, JNICache::timespec.init);
+}
+
+jobject jFUSEThreadState::getBufferObject(jobject *slot, jclass clazz,
+        jmethodID init, void *data, jlong size) {
+    if(*slot == NULL) {
+        jobject byteBuffer = env->NewDirectByteBuffer(data, size);
+        if(byteBuffer == NULL || env->ExceptionCheck() == JNI_TRUE)
+            return NULL;
+
+        jobject obj = env->NewObject(clazz, init, byteBuffer);
+        env->DeleteLocalRef(byteBuffer);
+        if(obj == NULL || env->ExceptionCheck() == JNI_TRUE)
+            return NULL;
+
+        *slot = env->NewGlobalRef(obj);
+        env->DeleteLocalRef(obj);
+        if(*slot == NULL)
+            return NULL;
+    }
+
+    return env->NewLocalRef(*slot);
+}
+
+jobject jFUSEThreadState::getStatBuffer() {
+    return getBufferObject(&statBuffer, JNICache::statBuffer.clazz,
+            JNICache::statBuffer.init, statBufferData,
+            sizeof(statBufferData));
+}
+
+jobject jFUSEThreadState::getFileInfoBuffer() {
+    return getBufferObject(&fileInfoBuffer, JNICache::fileInfoBuffer.clazz,
+            JNICache::fileInfoBuffer.init, fileInfoBufferData,
+            sizeof(fileInfoBufferData));
+}
+
+jobject jFUSEThreadState::getPathBuffer(int slot, const char *path) {
+    const JNICache::BufferIDs &ids = JNICache::buffer;
+    size_t pathLength = strlen(path);
+    if(pathLength > (size_t) PATH_BUFFER_SIZE)
+        return NULL;
+
+    slot %= PATH_BUFFER_SLOTS;
+    if(pathBuffer[slot] == NULL) {
+        char *data = (char*) malloc(PATH_BUFFER_SIZE);
+        if(data == NULL)
+            return NULL;
+
+        jobject buf = env->NewDirectByteBuffer(data, PATH_BUFFER_SIZE);
+        if(buf == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            free(data);
+            return NULL;
+        }
+
+        jobject readOnlyBuf = env->CallObjectMethod(buf,
+                JNICache::byteBuffer.asReadOnlyBuffer);
+        env->DeleteLocalRef(buf);
+        if(readOnlyBuf == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            free(data);
+            return NULL;
+        }
+
+        pathBuffer[slot] = env->NewGlobalRef(readOnlyBuf);
+        env->DeleteLocalRef(readOnlyBuf);
+        if(pathBuffer[slot] == NULL) {
+            free(data);
+            return NULL;
+        }
+        pathBufferData[slot] = data;
+    }
+
+    memcpy(pathBufferData[slot], path, pathLength);
+
+    /* Reset the buffer state, since the file system may have moved the
+     * position or set a mark during the previous call. */
+    jobject res = env->NewLocalRef(pathBuffer[slot]);
+    if(ids.limitField != NULL) {
+        env->SetIntField(res, ids.markField, -1);
+        env->SetIntField(res, ids.positionField, 0);
+        env->SetIntField(res, ids.limitField, (jint) pathLength);
+        return res;
+    }
+
+    jobject tmp = env->CallObjectMethod(res, ids.clear);
+    if(tmp != NULL)
+        env->DeleteLocalRef(tmp);
+    tmp = env->CallObjectMethod(res, ids.limit, (jint) pathLength);
+    if(tmp != NULL)
+        env->DeleteLocalRef(tmp);
+    if(env->ExceptionCheck() == JNI_TRUE) {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+        env->DeleteLocalRef(res);
+        return NULL;
+    }
+
+    return res;
+}
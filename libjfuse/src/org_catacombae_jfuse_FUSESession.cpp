@@ -0,0 +1,204 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "org_catacombae_jfuse_FUSESession.h"
+
+#include "common.h"
+#include "CSLog.h"
+#include "jFUSEThreadState.h"
+
+#include <inttypes.h>
+
+#if !defined(__NetBSD__)
+#include "jFUSESession.h"
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+
+static jFUSESession* getSession(jlong nativeSession) {
+    return (jFUSESession*) (intptr_t) nativeSession;
+}
+
+static char* getBufferAddress(JNIEnv *env, jobject buffer) {
+    char *addr = (char*) env->GetDirectBufferAddress(buffer);
+    if(addr == NULL)
+        throwByName(env, "java/lang/IllegalArgumentException",
+                "The buffer is not a direct buffer.");
+    return addr;
+}
+#endif /* !defined(__NetBSD__) */
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    getBufferSizeNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_FUSESession_getBufferSizeNative
+  (JNIEnv *env, jclass cls, jlong nativeSession) {
+#if defined(__NetBSD__)
+    return 0;
+#else
+    return (jint) fuse_chan_bufsize(getSession(nativeSession)->chan);
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    receiveNative
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_FUSESession_receiveNative
+  (JNIEnv *env, jclass cls, jlong nativeSession, jobject buffer, jint pos,
+        jint len) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSESession_receiveNative"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %" PRId64 ", %p, %d, %d)", env, cls,
+            (int64_t) nativeSession, buffer, pos, len);
+
+    jint res = -1;
+
+#if !defined(__NetBSD__)
+    jFUSESession *s = getSession(nativeSession);
+    char *addr = getBufferAddress(env, buffer);
+
+    /* Same receive logic as fuse_session_loop. The channel layer returns
+     * -EINTR for interrupted or already answered requests and 0 when the file
+     * system has been unmounted. */
+    while(addr != NULL && !fuse_session_exited(s->se)) {
+        struct fuse_chan *ch = s->chan;
+        int recvRes = fuse_chan_recv(&ch, addr + pos, (size_t) len);
+        if(recvRes == -EINTR)
+            continue;
+
+        if(recvRes < 0) {
+            char msg[256];
+            snprintf(msg, sizeof(msg), "fuse_chan_recv failed: %s",
+                    strerror(-recvRes));
+            throwByName(env, "java/io/IOException", msg);
+        }
+        else if(recvRes > 0)
+            res = recvRes;
+
+        break;
+    }
+#endif /* !defined(__NetBSD__) */
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %" PRId64 ", %p, %d, %d): %d", env, cls,
+            (int64_t) nativeSession, buffer, pos, len, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    processNative
+ * Signature: (JLjava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_FUSESession_processNative
+  (JNIEnv *env, jclass cls, jlong nativeSession, jobject buffer, jint pos,
+        jint len) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSESession_processNative"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %" PRId64 ", %p, %d, %d)", env, cls,
+            (int64_t) nativeSession, buffer, pos, len);
+
+#if !defined(__NetBSD__)
+    jFUSESession *s = getSession(nativeSession);
+    char *addr = getBufferAddress(env, buffer);
+
+    /* The callbacks run on this thread, and any exceptions they throw are
+     * handled (and cleared) by them just like on a FUSE worker thread. */
+    if(addr != NULL)
+        fuse_session_process(s->se, addr + pos, (size_t) len, s->chan);
+#endif /* !defined(__NetBSD__) */
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %" PRId64 ", %p, %d, %d)", env, cls,
+            (int64_t) nativeSession, buffer, pos, len);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    isExitedNative
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSESession_isExitedNative
+  (JNIEnv *env, jclass cls, jlong nativeSession) {
+#if defined(__NetBSD__)
+    return JNI_TRUE;
+#else
+    return fuse_session_exited(getSession(nativeSession)->se) ? JNI_TRUE :
+        JNI_FALSE;
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    exitNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_FUSESession_exitNative
+  (JNIEnv *env, jclass cls, jlong nativeSession) {
+#if !defined(__NetBSD__)
+    fuse_session_exit(getSession(nativeSession)->se);
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    closeNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_FUSESession_closeNative
+  (JNIEnv *env, jclass cls, jlong nativeSession) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSESession_closeNative"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %" PRId64 ")", env, cls,
+            (int64_t) nativeSession);
+
+#if !defined(__NetBSD__)
+    jFUSESession *s = getSession(nativeSession);
+
+    /* Same teardown order as mountNativeLowLevel26. */
+    fuse_session_remove_chan(s->chan);
+    CSLogDebug("Destroying fuse session %p...", s->se);
+    fuse_session_destroy(s->se);
+    CSLogDebug("Unmounting \"%s\"... (chan=%p)", s->mountPoint, s->chan);
+    fuse_unmount(s->mountPoint, s->chan);
+
+    delete s->context;
+    free(s->mountPoint);
+    delete s;
+#endif /* !defined(__NetBSD__) */
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %" PRId64 ")", env, cls,
+            (int64_t) nativeSession);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSESession
+ * Method:    releaseThreadStateNative
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_FUSESession_releaseThreadStateNative
+  (JNIEnv *env, jclass cls) {
+    jFUSEThreadState::release();
+}
@@ -25,6 +25,7 @@
 #include <stdlib.h>
 #include <string.h>
 #include <errno.h>
+#include <stdint.h>
 
 #include <jni.h>
 
@@ -207,11 +208,18 @@ static int fuse_parse_cmdline(struct fuse_args *args, char **mountpoint,
 
 #endif
 #include <sys/mount.h>
+#include <pthread.h>
 
 #include "fuse26_module.h"
+#if !defined(__NetBSD__)
+#include "fuse26_lowlevel_module.h"
+#include "jFUSERequestRing.h"
+#include "jFUSESession.h"
+#endif
 #include "macfuse20_module.h"
 #include "CSLog.h"
 #include "JavaSignatures.h"
+#include "JNICache.h"
 
 #if defined(__sun__)
 #define UNMOUNT_FORCE MS_FORCE
@@ -219,6 +227,44 @@ static int fuse_parse_cmdline(struct fuse_args *args, char **mountpoint,
 #define UNMOUNT_FORCE MNT_FORCE
 #endif
 
+#if !defined(__NetBSD__)
+/*
+ * libfuse keeps a single session for its signal handlers, and refuses to
+ * remove them on behalf of any other session. With several file systems
+ * mounted from the same process, the first mount to come up owns the
+ * handlers and releases them when it goes away.
+ */
+static pthread_mutex_t signalHandlerMutex = PTHREAD_MUTEX_INITIALIZER;
+static struct fuse_session *signalHandlerSession = NULL;
+
+static bool acquireSignalHandlers(struct fuse_session *se) {
+    bool res = true;
+
+    pthread_mutex_lock(&signalHandlerMutex);
+    if(signalHandlerSession == NULL) {
+        if(fuse_set_signal_handlers(se) == 0)
+            signalHandlerSession = se;
+        else
+            res = false;
+    }
+    else
+        CSLogDebug("Signal handlers already set up by session %p.",
+                signalHandlerSession);
+    pthread_mutex_unlock(&signalHandlerMutex);
+
+    return res;
+}
+
+static void releaseSignalHandlers(struct fuse_session *se) {
+    pthread_mutex_lock(&signalHandlerMutex);
+    if(signalHandlerSession == se) {
+        fuse_remove_signal_handlers(se);
+        signalHandlerSession = NULL;
+    }
+    pthread_mutex_unlock(&signalHandlerMutex);
+}
+#endif /* !defined(__NetBSD__) */
+
 static bool getCapability(JNIEnv *env, jclass capabilitiesClass,
         jobject capabilities, const char *name, jboolean *out) {
     jfieldID fid = env->GetFieldID(capabilitiesClass, name, "Z");
@@ -232,6 +278,81 @@ static bool getCapability(JNIEnv *env, jclass capabilitiesClass,
     }
 }
 
+/**
+ * Reads a jFUSE specific boolean option from a FUSEOptions object.
+ */
+static bool getBooleanOption(JNIEnv *env, jobject options, const char *name,
+        jboolean *out) {
+    jclass optionsClass = env->GetObjectClass(options);
+    jfieldID fid = env->GetFieldID(optionsClass, name, "Z");
+    env->DeleteLocalRef(optionsClass);
+    if(fid == NULL) {
+        CSLogError("Could not get option field id: %s", name);
+        return false;
+    }
+    else {
+        *out = env->GetBooleanField(options, fid);
+        return true;
+    }
+}
+
+#if !defined(__NetBSD__)
+/**
+ * Returns the native ring of the RequestRing set in <code>options</code>, or
+ * NULL if there is none.
+ */
+static jFUSERequestRing* getRequestRingOption(JNIEnv *env, jobject options) {
+    jFUSERequestRing *res = NULL;
+
+    jclass optionsClass = env->GetObjectClass(options);
+    jfieldID fid = env->GetFieldID(optionsClass, "requestRing",
+            "Lorg/catacombae/jfuse/RequestRing;");
+    env->DeleteLocalRef(optionsClass);
+    if(fid == NULL) {
+        CSLogError("Could not get option field id: requestRing");
+        return NULL;
+    }
+
+    jobject ring = env->GetObjectField(options, fid);
+    if(ring != NULL) {
+        jclass ringClass = env->GetObjectClass(ring);
+        jfieldID ringFid = env->GetFieldID(ringClass, "nativeRing", "J");
+        env->DeleteLocalRef(ringClass);
+        if(ringFid == NULL)
+            CSLogError("Could not get field id: RequestRing.nativeRing");
+        else
+            res = (jFUSERequestRing*) (intptr_t) env->GetLongField(ring,
+                    ringFid);
+        env->DeleteLocalRef(ring);
+    }
+
+    return res;
+}
+#endif /* !defined(__NetBSD__) */
+
+/**
+ * Appends the Java strings in <code>optionStrings</code> to <code>args</code>.
+ */
+static void addOptionStrings(JNIEnv *env, jobjectArray optionStrings,
+        struct fuse_args *args) {
+    jsize optionStringsLength = env->GetArrayLength(optionStrings);
+    CSLogDebug("Reading option strings (length=%ld)...", (long)optionStringsLength);
+    for(int i = 0; i < optionStringsLength; ++i) {
+        jstring cur = (jstring)env->GetObjectArrayElement(optionStrings, i);
+        const char *utfChars = env->GetStringUTFChars(cur, NULL);
+
+        CSLogDebug("  Adding option %d: \"%s\"", i, utfChars);
+        int addArgRetval = fuse_opt_add_arg(args, utfChars);
+        if(addArgRetval != 0)
+            CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly with "
+                    "retval=%d, errno: %d (%s)", addArgRetval, errno,
+                    strerror(errno));
+
+        env->ReleaseStringUTFChars(cur, utfChars);
+        env->DeleteLocalRef(cur);
+    }
+}
+
 static bool fillFUSE26Operations(JNIEnv *env, jobject capabilities,
         struct fuse_operations *ops) {
     CSLogTraceEnter("fillFUSE26Operations(%p, %p, %p)",
@@ -312,6 +433,161 @@ static bool fillFUSE26Operations(JNIEnv *env, jobject capabilities,
     return true;
 }
 
+/**
+ * Registers the operations that the file system implements through
+ * FUSE26BufferOperations, and disables the buffer variants that it doesn't
+ * implement (the method IDs resolve even for the adapter's stubs).
+ * <code>capabilities</code> may be NULL if the file system doesn't implement
+ * FUSE26BufferFileSystem at all.
+ */
+static bool fillFUSE26BufferOperations(JNIEnv *env, jobject capabilities,
+        jFUSEContext *context, struct fuse_operations *ops) {
+#define _FNAME_ "fillFUSE26BufferOperations"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p)", env, capabilities, context,
+            ops);
+
+    jclass capabilitiesClass = NULL;
+    if(capabilities != NULL) {
+        capabilitiesClass = env->GetObjectClass(capabilities);
+        if(capabilitiesClass == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            CSLogError("Could not get FUSE 2.6 buffer capabilities class!");
+            return false;
+        }
+    }
+
+#define AddBufferOperationIfSupported(a, const_name) \
+    do { \
+        jboolean value = JNI_FALSE; \
+        if(capabilitiesClass != NULL && !getCapability(env, \
+                capabilitiesClass, capabilities, #a, &value)) \
+            return false; \
+        if(value == JNI_TRUE) { \
+            ops->a = jfuse_##a; \
+            CSLogDebug("Added buffer capability " #a); \
+        } \
+        else \
+            context->clearFSProviderMethodID(JFUSE_OP_##const_name##_BUFFER); \
+    } while(0)
+
+    AddBufferOperationIfSupported(getattr, GETATTR);
+    AddBufferOperationIfSupported(fgetattr, FGETATTR);
+    AddBufferOperationIfSupported(open, OPEN);
+    AddBufferOperationIfSupported(create, CREATE);
+    AddBufferOperationIfSupported(read, READ);
+    AddBufferOperationIfSupported(write, WRITE);
+    AddBufferOperationIfSupported(flush, FLUSH);
+    AddBufferOperationIfSupported(release, RELEASE);
+    AddBufferOperationIfSupported(fsync, FSYNC);
+    AddBufferOperationIfSupported(ftruncate, FTRUNCATE);
+
+#undef AddBufferOperationIfSupported
+
+    if(capabilitiesClass != NULL)
+        env->DeleteLocalRef(capabilitiesClass);
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p): %d", env, capabilities,
+            context, ops, true);
+    return true;
+#undef _FNAME_
+}
+
+#if FUSE_VERSION >= 29
+static bool fillFUSE29Operations(JNIEnv *env, jobject capabilities,
+        jFUSEContext *context, struct fuse_operations *ops) {
+#define _FNAME_ "fillFUSE29Operations"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p)", env, capabilities, context,
+            ops);
+
+    jclass capabilitiesClass = NULL;
+    if(capabilities != NULL) {
+        capabilitiesClass = env->GetObjectClass(capabilities);
+        if(capabilitiesClass == NULL || env->ExceptionCheck() == JNI_TRUE) {
+            CSLogError("Could not get FUSE 2.9 capabilities class!");
+            return false;
+        }
+    }
+
+#define AddFUSE29OperationIfSupported(a, const_name) \
+    do { \
+        jboolean value = JNI_FALSE; \
+        if(capabilitiesClass != NULL && !getCapability(env, \
+                capabilitiesClass, capabilities, #a, &value)) \
+            return false; \
+        if(value == JNI_TRUE) { \
+            ops->a = jfuse_##a; \
+            CSLogDebug("Added FUSE 2.9 capability " #a); \
+        } \
+        else \
+            context->clearFSProviderMethodID(JFUSE_OP_##const_name); \
+    } while(0)
+
+    AddFUSE29OperationIfSupported(read_buf, READ_BUF);
+    AddFUSE29OperationIfSupported(write_buf, WRITE_BUF);
+    AddFUSE29OperationIfSupported(fallocate, FALLOCATE);
+
+#undef AddFUSE29OperationIfSupported
+
+    if(capabilitiesClass != NULL)
+        env->DeleteLocalRef(capabilitiesClass);
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p): %d", env, capabilities,
+            context, ops, true);
+    return true;
+#undef _FNAME_
+}
+#endif /* FUSE_VERSION >= 29 */
+
+#if !defined(__NetBSD__)
+static bool fillFUSE26LowLevelOperations(JNIEnv *env, jobject capabilities,
+        bool asyncReply, struct fuse_lowlevel_ops *ops) {
+#define _FNAME_ "fillFUSE26LowLevelOperations"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %d, %p)", env, capabilities,
+            asyncReply, ops);
+
+    jclass capabilitiesClass = env->GetObjectClass(capabilities);
+    if(capabilitiesClass == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not get FUSE 2.6 low level capabilities class!");
+        return false;
+    }
+
+    memset(ops, 0, sizeof(struct fuse_lowlevel_ops));
+
+#define AddOperationIfSupported(a) \
+    do { \
+        jboolean value; \
+        if(getCapability(env, capabilitiesClass, capabilities, #a, &value)) { \
+            if(value == JNI_TRUE) { \
+                ops->a = asyncReply ? jfuse_ll_async_##a : jfuse_ll_##a; \
+                CSLogDebug("Added low level capability " #a); \
+            } \
+        } \
+        else \
+            return false; \
+    } while(0)
+
+    AddOperationIfSupported(lookup);
+    AddOperationIfSupported(forget);
+    AddOperationIfSupported(getattr);
+    AddOperationIfSupported(setattr);
+    AddOperationIfSupported(open);
+    AddOperationIfSupported(read);
+    AddOperationIfSupported(write);
+    AddOperationIfSupported(release);
+    AddOperationIfSupported(opendir);
+    AddOperationIfSupported(readdir);
+    AddOperationIfSupported(releasedir);
+
+#undef AddOperationIfSupported
+
+    env->DeleteLocalRef(capabilitiesClass);
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %d, %p): %d", env, capabilities,
+            asyncReply, ops, true);
+    return true;
+#undef _FNAME_
+}
+#endif /* !defined(__NetBSD__) */
+
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if (__FreeBSD__ >= 10)
 static bool fillMacFUSE20Operations(JNIEnv *env, jobject capabilities,
@@ -362,35 +638,83 @@ static bool fillMacFUSE20Operations(JNIEnv *env, jobject capabilities,
 #endif /* __FreeBSD__ >= 10 */
 #endif /* defined(__APPLE__) || defined(__DARWIN__) */
 
-static struct fuse_operations jfuse_operations;
-
 /*
  * Class:     org_catacombae_jfuse_FUSE
  * Method:    mountNative26
- * Signature: (Lorg/catacombae/jfuse/FUSE26FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26Capabilities;Lorg/catacombae/jfuse/MacFUSE20Capabilities;)Z
+ * Signature: (Lorg/catacombae/jfuse/FUSE26FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26Capabilities;Lorg/catacombae/jfuse/MacFUSE20Capabilities;Lorg/catacombae/jfuse/FUSE26BufferCapabilities;Lorg/catacombae/jfuse/FUSE29Capabilities;Lorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
  */
 JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26(
         JNIEnv *env, jclass cls, jobject fileSystem, jstring mountPoint,
         jobjectArray optionStrings, jobject fuseCapabilities,
-        jobject macFuseCapabilities) {
+        jobject macFuseCapabilities, jobject bufferCapabilities,
+        jobject fuse29Capabilities, jobject options, jobject mountHandle) {
 #define _FNAME_ "Java_org_catacombae_jfuse_FUSE_mountNative26"
-    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p)", env, cls,
-            fileSystem, mountPoint, optionStrings, fuseCapabilities,
-            macFuseCapabilities);
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p, %p, %p, %p, %p)",
+            env, cls, fileSystem, mountPoint, optionStrings, fuseCapabilities,
+            macFuseCapabilities, bufferCapabilities, fuse29Capabilities,
+            options, mountHandle);
 
     jboolean res = JNI_FALSE;
 
-    jFUSEContext *context = new jFUSEContext(env, fileSystem);
+    if(!JNICache::init(env)) {
+        CSLogError("Could not initialize JNI cache.");
+        return JNI_FALSE;
+    }
+
+    /* Every mount has its own operations table and context, so any number of
+     * file systems can be served from one process at the same time. The
+     * table lives until fuse_destroy has been called below. */
+    struct fuse_operations jfuse_operations;
+    jFUSEContext *context = new jFUSEContext(env, fileSystem, jfuse26_methods,
+            JFUSE_OP_COUNT);
+    context->setMountHandle(env, mountHandle);
 
     if(!fillFUSE26Operations(env, fuseCapabilities, &jfuse_operations))
         CSPanicWithMessage("Could not fill FUSE 2.6 operations!");
     else
         CSLogDebug("Filled FUSE 2.6 operations.");
 
+    if(!fillFUSE26BufferOperations(env, bufferCapabilities, context,
+            &jfuse_operations))
+        CSPanicWithMessage("Could not fill FUSE 2.6 buffer operations!");
+    else
+        CSLogDebug("Filled FUSE 2.6 buffer operations.");
+
     if(jfuse_operations.init != NULL) {
         context->setInitEnabled(true);
     }
 
+#if FUSE_VERSION >= 29
+    if(!fillFUSE29Operations(env, fuse29Capabilities, context,
+            &jfuse_operations))
+        CSPanicWithMessage("Could not fill FUSE 2.9 operations!");
+    else {
+        CSLogDebug("Filled FUSE 2.9 operations.");
+        if((jfuse_operations.read_buf != NULL ||
+                jfuse_operations.write_buf != NULL) &&
+                jfuse_operations.init == NULL) {
+            CSLogDebug("Adding operation 'init' to fuse_operations for "
+                    "enabling of splice...");
+            jfuse_operations.init = jfuse_init;
+        }
+    }
+#else
+    if(fuse29Capabilities != NULL)
+        CSLogDebug("FUSE 2.9 operations not available in this build.");
+#endif /* FUSE_VERSION >= 29 */
+
+    jboolean reuseArgumentObjects = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reuseArgumentObjects",
+            &reuseArgumentObjects))
+        CSPanicWithMessage("Could not read option reuseArgumentObjects!");
+    context->setReuseArgumentObjects(reuseArgumentObjects == JNI_TRUE);
+
+    jboolean reusePathBuffers = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reusePathBuffers",
+            &reusePathBuffers))
+        CSPanicWithMessage("Could not read option reusePathBuffers!");
+    context->setReusePathBuffers(reusePathBuffers == JNI_TRUE);
+
 #if defined(__APPLE__) || defined(__DARWIN__)
 #if (__FreeBSD__ >= 10)
     if(macFuseCapabilities != NULL) {
@@ -418,6 +742,11 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26(
 #endif /*__FreeBSD__ >= 10 */
 #endif /* defined(__APPLE__) || defined(__DARWIN__) */
 
+    /* 'init' is where the mount handle learns the negotiated connection
+     * parameters. */
+    if(mountHandle != NULL && jfuse_operations.init == NULL)
+        jfuse_operations.init = jfuse_init;
+
     /* Read mountpoint. */
     jboolean isCopy;
     const char *utf8MountPoint = env->GetStringUTFChars(mountPoint, &isCopy);
@@ -427,24 +756,10 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26(
     if(fuse_opt_add_arg(&args, utf8MountPoint) != 0)
         CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly.");
 
-    jsize optionStringsLength = env->GetArrayLength(optionStrings);
-    CSLogDebug("Reading option strings (length=%ld)...", (long)optionStringsLength);
-    for(int i = 0; i < optionStringsLength; ++i) {
-        jstring cur = (jstring)env->GetObjectArrayElement(optionStrings, i);
-        const char *utfChars = env->GetStringUTFChars(cur, NULL);
+    addOptionStrings(env, optionStrings, &args);
 
-        CSLogDebug("  Adding option %d: \"%s\"", i, utfChars);
-        int addArgRetval = fuse_opt_add_arg(&args, utfChars);
-        if(addArgRetval != 0)
-            CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly with "
-                    "retval=%d, errno: %d (%s)", addArgRetval, errno,
-                    strerror(errno));
-
-        env->ReleaseStringUTFChars(cur, utfChars);
-        env->DeleteLocalRef(cur);
-    }
-
-    if(fuse_parse_cmdline(&args, NULL, NULL, NULL) != 0)
+    int multithreaded = 0;
+    if(fuse_parse_cmdline(&args, NULL, &multithreaded, NULL) != 0)
         CSLogError("fuse_parse_cmdline didn't return 0.");
     else {
         /*
@@ -505,21 +820,33 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26(
 	        int sighandler_res = 0;
 #else
                 int sighandler_res =
-		  fuse_set_signal_handlers(fuse_get_session(fh));
+		  acquireSignalHandlers(fuse_get_session(fh)) ? 0 : -1;
 #endif /* defined(__NetBSD__) */
 		if(sighandler_res == 0) {
-                    CSLogDebug("Invoking fuse_loop...");
-                    int fuseLoopRetval = fuse_loop(fh);
+                    context->notifyMountReady(env);
+
+                    int fuseLoopRetval;
+                    if(multithreaded) {
+                        /* Worker threads are attached to the JVM on demand by
+                         * jFUSEContext::getJNIEnv and detached on exit. */
+                        CSLogDebug("Invoking fuse_loop_mt...");
+                        fuseLoopRetval = fuse_loop_mt(fh);
+                    }
+                    else {
+                        CSLogDebug("Invoking fuse_loop...");
+                        fuseLoopRetval = fuse_loop(fh);
+                    }
                     CSLogDebug("  done. result=%d", fuseLoopRetval);
                     if(fuseLoopRetval != 0)
-                        CSLogError("fuse_loop exited with a non-zero value: %d "
-                            "(errno is %d (%s)", fuseLoopRetval, errno,
-                            strerror(errno));
+                        CSLogError("%s exited with a non-zero value: %d "
+                            "(errno is %d (%s)",
+                            multithreaded ? "fuse_loop_mt" : "fuse_loop",
+                            fuseLoopRetval, errno, strerror(errno));
                     else
                         res = JNI_TRUE;
 
 #if !defined(__NetBSD__)
-                    fuse_remove_signal_handlers(fuse_get_session(fh));
+                    releaseSignalHandlers(fuse_get_session(fh));
 #endif
                 }
                 else
@@ -547,9 +874,280 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative26(
         delete context;
     }
 
-    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p): %d", env, cls,
-            fileSystem, mountPoint, optionStrings, fuseCapabilities,
-            macFuseCapabilities, res);
+    /* This thread may have served requests (in single threaded mode), so
+     * release its argument objects while we are still attached. */
+    jFUSEThreadState::release();
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p, %p, %p, %p, %p): "
+            "%d", env, cls, fileSystem, mountPoint, optionStrings,
+            fuseCapabilities, macFuseCapabilities, bufferCapabilities,
+            fuse29Capabilities, options, mountHandle, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    mountNativeLowLevel26
+ * Signature: (Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26LowLevelCapabilities;ZLorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNativeLowLevel26(
+        JNIEnv *env, jclass cls, jobject fileSystem, jstring mountPoint,
+        jobjectArray optionStrings, jobject lowLevelCapabilities,
+        jboolean asyncReply, jobject options, jobject mountHandle) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSE_mountNativeLowLevel26"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p, %p, %p, %d, %p, %p)", env, cls,
+            fileSystem, mountPoint, optionStrings, lowLevelCapabilities,
+            asyncReply, options, mountHandle);
+
+    jboolean res = JNI_FALSE;
+
+#if defined(__NetBSD__)
+    CSLogError("The FUSE low level API is not available on this platform.");
+#else
+    if(!JNICache::init(env)) {
+        CSLogError("Could not initialize JNI cache.");
+        return JNI_FALSE;
+    }
+
+    /* Per-mount operations table, see mountNative26. */
+    struct fuse_lowlevel_ops ops;
+    /* File systems implementing FUSE26AsyncReplyOperations get the same
+     * operations, but with callbacks that leave the reply to Java. */
+    if(!fillFUSE26LowLevelOperations(env, lowLevelCapabilities,
+            asyncReply == JNI_TRUE, &ops))
+        CSPanicWithMessage("Could not fill FUSE 2.6 low level operations!");
+    else
+        CSLogDebug("Filled FUSE 2.6 low level operations.");
+
+    jFUSEContext *context = new jFUSEContext(env, fileSystem,
+            asyncReply == JNI_TRUE ? jfuse26_async_reply_methods :
+            jfuse26_lowlevel_methods, JFUSE_LL_OP_COUNT);
+    context->setMountHandle(env, mountHandle);
+    if(mountHandle != NULL)
+        ops.init = jfuse_ll_init;
+
+    /* With a request ring, the operations that the ring handles are published
+     * to it instead of being passed to Java by upcalls. The ring has a single
+     * producer, so the session is served by one thread. */
+    jFUSERequestRing *ring = NULL;
+    if(asyncReply == JNI_FALSE)
+        ring = getRequestRingOption(env, options);
+    if(ring != NULL) {
+        if(ops.lookup != NULL)
+            ops.lookup = jfuse_ll_ring_lookup;
+        if(ops.getattr != NULL)
+            ops.getattr = jfuse_ll_ring_getattr;
+        if(ops.read != NULL)
+            ops.read = jfuse_ll_ring_read;
+        if(ops.write != NULL)
+            ops.write = jfuse_ll_ring_write;
+        context->setRequestRing(ring);
+        CSLogDebug("Publishing requests to request ring %p.", ring);
+    }
+
+    jboolean reuseArgumentObjects = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reuseArgumentObjects",
+            &reuseArgumentObjects))
+        CSPanicWithMessage("Could not read option reuseArgumentObjects!");
+    context->setReuseArgumentObjects(reuseArgumentObjects == JNI_TRUE);
+
+    /* Read mountpoint. */
+    const char *utf8MountPoint = env->GetStringUTFChars(mountPoint, NULL);
+
+    /* Read options. */
+    struct fuse_args args = FUSE_ARGS_INIT(0, NULL);
+    if(fuse_opt_add_arg(&args, utf8MountPoint) != 0)
+        CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly.");
+
+    addOptionStrings(env, optionStrings, &args);
+
+    int multithreaded = 0;
+    if(fuse_parse_cmdline(&args, NULL, &multithreaded, NULL) != 0)
+        CSLogError("fuse_parse_cmdline didn't return 0.");
+    else {
+        /* See mountNative26 for an outline of the low level mount
+         * procedure. */
+        fuse_chan *chan = NULL;
+        fuse_session *se = NULL;
+
+        CSLogDebug("Invoking fuse_mount...");
+        chan = fuse_mount(utf8MountPoint, &args);
+        CSLogDebug("   done. result=%p", chan);
+        if(chan != NULL) {
+            CSLogDebug("Invoking fuse_lowlevel_new...");
+            se = fuse_lowlevel_new(&args, &ops, sizeof(ops), context);
+            CSLogDebug("   done. result=%p", se);
+            if(se != NULL) {
+                if(acquireSignalHandlers(se)) {
+                    fuse_session_add_chan(se, chan);
+                    if(ring != NULL)
+                        ring->attach();
+                    context->notifyMountReady(env);
+
+                    int loopRetval;
+                    if(multithreaded && ring == NULL) {
+                        CSLogDebug("Invoking fuse_session_loop_mt...");
+                        loopRetval = fuse_session_loop_mt(se);
+                    }
+                    else {
+                        CSLogDebug("Invoking fuse_session_loop...");
+                        loopRetval = fuse_session_loop(se);
+                    }
+                    CSLogDebug("  done. result=%d", loopRetval);
+                    if(loopRetval != 0)
+                        CSLogError("%s exited with a non-zero value: %d "
+                            "(errno is %d (%s)",
+                            multithreaded ? "fuse_session_loop_mt" :
+                            "fuse_session_loop", loopRetval, errno,
+                            strerror(errno));
+                    else
+                        res = JNI_TRUE;
+
+                    /* Requests still held by the consumers must be replied
+                     * to before the session goes away. */
+                    if(ring != NULL)
+                        ring->close();
+
+                    releaseSignalHandlers(se);
+                    fuse_session_remove_chan(chan);
+                }
+                else
+                    CSLogError("Couldn't set signal handlers!");
+
+                CSLogDebug("Destroying fuse session %p...", se);
+                fuse_session_destroy(se);
+            }
+            else
+                CSLogError("fuse_lowlevel_new exited with an error. (errno is "
+                    "%d (%s))", errno, strerror(errno));
+
+            CSLogDebug("Unmounting \"%s\"... (chan=%p)", utf8MountPoint, chan);
+            fuse_unmount(utf8MountPoint, chan);
+        }
+        else
+            CSLogError("fuse_mount exited with an error. (errno is %d (%s))",
+                errno, strerror(errno));
+    }
+
+    fuse_opt_free_args(&args);
+    env->ReleaseStringUTFChars(mountPoint, utf8MountPoint);
+
+    /* Also close the ring if the mount failed, so that the consumers stop.
+     * Closing it a second time has no effect. */
+    if(ring != NULL)
+        ring->close();
+
+    delete context;
+
+    jFUSEThreadState::release();
+#endif /* defined(__NetBSD__) */
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p, %p, %p, %d, %p, %p): %d", env,
+            cls, fileSystem, mountPoint, optionStrings, lowLevelCapabilities,
+            asyncReply, options, mountHandle, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    openSessionNative26
+ * Signature: (Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE26LowLevelCapabilities;ZLorg/catacombae/jfuse/FUSEOptions;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_FUSE_openSessionNative26(
+        JNIEnv *env, jclass cls, jobject fileSystem, jstring mountPoint,
+        jobjectArray optionStrings, jobject lowLevelCapabilities,
+        jboolean asyncReply, jobject options) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSE_openSessionNative26"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p, %p, %p, %d, %p)", env, cls,
+            fileSystem, mountPoint, optionStrings, lowLevelCapabilities,
+            asyncReply, options);
+
+    jlong res = 0;
+
+#if defined(__NetBSD__)
+    CSLogError("The FUSE low level API is not available on this platform.");
+#else
+    if(!JNICache::init(env)) {
+        CSLogError("Could not initialize JNI cache.");
+        return 0;
+    }
+
+    /* Set up exactly like mountNativeLowLevel26, except that the session is
+     * handed to Java instead of being run by a session loop. fuse_lowlevel_new
+     * copies the operations table, so it may live on the stack. */
+    struct fuse_lowlevel_ops ops;
+    if(!fillFUSE26LowLevelOperations(env, lowLevelCapabilities,
+            asyncReply == JNI_TRUE, &ops))
+        CSPanicWithMessage("Could not fill FUSE 2.6 low level operations!");
+
+    jFUSEContext *context = new jFUSEContext(env, fileSystem,
+            asyncReply == JNI_TRUE ? jfuse26_async_reply_methods :
+            jfuse26_lowlevel_methods, JFUSE_LL_OP_COUNT);
+
+    jboolean reuseArgumentObjects = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reuseArgumentObjects",
+            &reuseArgumentObjects))
+        CSPanicWithMessage("Could not read option reuseArgumentObjects!");
+    context->setReuseArgumentObjects(reuseArgumentObjects == JNI_TRUE);
+
+    const char *utf8MountPoint = env->GetStringUTFChars(mountPoint, NULL);
+
+    struct fuse_args args = FUSE_ARGS_INIT(0, NULL);
+    if(fuse_opt_add_arg(&args, utf8MountPoint) != 0)
+        CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly.");
+
+    addOptionStrings(env, optionStrings, &args);
+
+    /* The threading options have no meaning here, since the calling
+     * application decides which threads drive the session. */
+    if(fuse_parse_cmdline(&args, NULL, NULL, NULL) != 0)
+        CSLogError("fuse_parse_cmdline didn't return 0.");
+    else {
+        fuse_chan *chan = NULL;
+        fuse_session *se = NULL;
+
+        CSLogDebug("Invoking fuse_mount...");
+        chan = fuse_mount(utf8MountPoint, &args);
+        CSLogDebug("   done. result=%p", chan);
+        if(chan != NULL) {
+            CSLogDebug("Invoking fuse_lowlevel_new...");
+            se = fuse_lowlevel_new(&args, &ops, sizeof(ops), context);
+            CSLogDebug("   done. result=%p", se);
+            if(se != NULL) {
+                fuse_session_add_chan(se, chan);
+
+                jFUSESession *session = new jFUSESession;
+                session->se = se;
+                session->chan = chan;
+                session->context = context;
+                session->mountPoint = strdup(utf8MountPoint);
+                context = NULL;
+
+                res = (jlong) (intptr_t) session;
+            }
+            else {
+                CSLogError("fuse_lowlevel_new exited with an error. (errno is "
+                    "%d (%s))", errno, strerror(errno));
+                fuse_unmount(utf8MountPoint, chan);
+            }
+        }
+        else
+            CSLogError("fuse_mount exited with an error. (errno is %d (%s))",
+                errno, strerror(errno));
+    }
+
+    fuse_opt_free_args(&args);
+    env->ReleaseStringUTFChars(mountPoint, utf8MountPoint);
+
+    if(context != NULL)
+        delete context;
+#endif /* defined(__NetBSD__) */
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p, %p, %p, %d, %p): %p", env, cls,
+            fileSystem, mountPoint, optionStrings, lowLevelCapabilities,
+            asyncReply, options, (void*) (intptr_t) res);
     return res;
 #undef _FNAME_
 }
@@ -576,27 +1174,13 @@ JNIEXPORT jobject JNICALL Java_org_catacombae_jfuse_FUSE_getContextNative
     CSLogDebug("  pid=%d", ctx->pid);
     CSLogDebug("  private_data=%p", ctx->private_data);
 
-    jclass fcClass = env->FindClass(FUSECONTEXT_CLASS);
-    if(fcClass != NULL && env->ExceptionCheck() == JNI_FALSE) {
-        jmethodID fcInitMid = env->GetMethodID(fcClass, FUSECONTEXT_INIT_NAME,
-                FUSECONTEXT_INIT_SIGNATURE);
-        if(fcInitMid != NULL && env->ExceptionCheck() == JNI_FALSE) {
-            jobject obj = env->NewObject(fcClass, fcInitMid, (jlong)ctx->uid,
-                    (jlong)ctx->gid, (jlong)ctx->pid, jfCtx->getPrivateData());
-            if(obj == NULL || env->ExceptionCheck() == JNI_TRUE)
-                CSLogError("Could not create new FUSEContext instance.");
-
-            //if(obj != NULL)
-            //    env->DeleteLocalRef(obj);
-            
-            res = obj;
-        }
-        else
-            CSLogError("Could not get method ID for %s with signature %s.",
-                    FUSECONTEXT_INIT_NAME, FUSECONTEXT_INIT_SIGNATURE);
-    }
-    else
-        CSLogError("Could not find class %s.", FUSECONTEXT_CLASS);
+    jobject obj = env->NewObject(JNICache::fuseContext.clazz,
+            JNICache::fuseContext.init, (jlong)ctx->uid, (jlong)ctx->gid,
+            (jlong)ctx->pid, jfCtx->getPrivateData());
+    if(obj == NULL || env->ExceptionCheck() == JNI_TRUE)
+        CSLogError("Could not create new FUSEContext instance.");
+
+    res = obj;
 
     CSLogTraceLeave("%s (%p, %p): %p", _FNAME_, env, clazz, res);
     return res;
@@ -0,0 +1,456 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define LOG_ENABLE_TRACE 0
+
+#include "org_catacombae_jfuse_FUSE.h"
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+
+#include <jni.h>
+
+#define FUSE_USE_VERSION 31
+#include <fuse.h>
+#include <fuse_lowlevel.h>
+
+#include <sys/mount.h>
+#include <pthread.h>
+
+#include "fuse3_module.h"
+#include "CSLog.h"
+#include "JavaSignatures.h"
+#include "JNICache.h"
+
+/*
+ * Native entry points of the FUSE class in the libfuse 3 flavour of the
+ * library (libjfuse3). Only the operations that make sense for libfuse 3 are
+ * implemented here; the Java side checks which library it is bound to before
+ * calling any of the FUSE 2.x mount methods.
+ */
+
+#if defined(__sun__)
+#define UNMOUNT_FORCE MS_FORCE
+#else
+#define UNMOUNT_FORCE MNT_FORCE
+#endif
+
+/*
+ * See org_catacombae_jfuse_FUSE_26.cpp. libfuse 3 has the same restriction of
+ * one session owning the signal handlers.
+ */
+static pthread_mutex_t signalHandlerMutex = PTHREAD_MUTEX_INITIALIZER;
+static struct fuse_session *signalHandlerSession = NULL;
+
+static bool acquireSignalHandlers(struct fuse_session *se) {
+    bool res = true;
+
+    pthread_mutex_lock(&signalHandlerMutex);
+    if(signalHandlerSession == NULL) {
+        if(fuse_set_signal_handlers(se) == 0)
+            signalHandlerSession = se;
+        else
+            res = false;
+    }
+    else
+        CSLogDebug("Signal handlers already set up by session %p.",
+                signalHandlerSession);
+    pthread_mutex_unlock(&signalHandlerMutex);
+
+    return res;
+}
+
+static void releaseSignalHandlers(struct fuse_session *se) {
+    pthread_mutex_lock(&signalHandlerMutex);
+    if(signalHandlerSession == se) {
+        fuse_remove_signal_handlers(se);
+        signalHandlerSession = NULL;
+    }
+    pthread_mutex_unlock(&signalHandlerMutex);
+}
+
+static bool getCapability(JNIEnv *env, jclass capabilitiesClass,
+        jobject capabilities, const char *name, jboolean *out) {
+    jfieldID fid = env->GetFieldID(capabilitiesClass, name, "Z");
+    if(fid == NULL) {
+        CSLogError("Could not get capability field id: %s", name);
+        return false;
+    }
+    else {
+        *out = env->GetBooleanField(capabilities, fid);
+        return true;
+    }
+}
+
+/**
+ * Reads a jFUSE specific boolean option from a FUSEOptions object.
+ */
+static bool getBooleanOption(JNIEnv *env, jobject options, const char *name,
+        jboolean *out) {
+    jclass optionsClass = env->GetObjectClass(options);
+    jfieldID fid = env->GetFieldID(optionsClass, name, "Z");
+    env->DeleteLocalRef(optionsClass);
+    if(fid == NULL) {
+        CSLogError("Could not get option field id: %s", name);
+        return false;
+    }
+    else {
+        *out = env->GetBooleanField(options, fid);
+        return true;
+    }
+}
+
+/**
+ * Appends the Java strings in <code>optionStrings</code> to <code>args</code>.
+ */
+static void addOptionStrings(JNIEnv *env, jobjectArray optionStrings,
+        struct fuse_args *args) {
+    jsize optionStringsLength = env->GetArrayLength(optionStrings);
+    CSLogDebug("Reading option strings (length=%ld)...", (long)optionStringsLength);
+    for(int i = 0; i < optionStringsLength; ++i) {
+        jstring cur = (jstring)env->GetObjectArrayElement(optionStrings, i);
+        const char *utfChars = env->GetStringUTFChars(cur, NULL);
+
+        CSLogDebug("  Adding option %d: \"%s\"", i, utfChars);
+        int addArgRetval = fuse_opt_add_arg(args, utfChars);
+        if(addArgRetval != 0)
+            CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly with "
+                    "retval=%d, errno: %d (%s)", addArgRetval, errno,
+                    strerror(errno));
+
+        env->ReleaseStringUTFChars(cur, utfChars);
+        env->DeleteLocalRef(cur);
+    }
+}
+
+static bool fillFUSE3Operations(JNIEnv *env, jobject capabilities,
+        struct fuse_operations *ops) {
+    CSLogTraceEnter("fillFUSE3Operations(%p, %p, %p)",
+            env, capabilities, ops);
+
+    jclass capabilitiesClass = env->GetObjectClass(capabilities);
+    if(capabilitiesClass == NULL || env->ExceptionCheck() == JNI_TRUE) {
+        CSLogError("Could not get FUSE 3 capabilities class!");
+        return false;
+    }
+    else
+        CSLogDebug("Got FUSE 3 capabilities class: %p", capabilitiesClass);
+
+    memset(ops, 0, sizeof(struct fuse_operations));
+
+#define AddOperationIfSupported(a) \
+    do { \
+        jboolean value; \
+        if(getCapability(env, capabilitiesClass, capabilities, #a, &value)) { \
+            if(value == JNI_TRUE) { \
+                ops->a = jfuse3_##a; \
+                CSLogDebug("Added capability " #a); \
+            } \
+        } \
+        else \
+            return false; \
+    } while(0)
+
+    AddOperationIfSupported(getattr);
+    AddOperationIfSupported(readlink);
+    AddOperationIfSupported(mknod);
+    AddOperationIfSupported(mkdir);
+    AddOperationIfSupported(unlink);
+    AddOperationIfSupported(rmdir);
+    AddOperationIfSupported(symlink);
+    AddOperationIfSupported(rename);
+    AddOperationIfSupported(link);
+    AddOperationIfSupported(chmod);
+    AddOperationIfSupported(chown);
+    AddOperationIfSupported(truncate);
+    AddOperationIfSupported(open);
+    AddOperationIfSupported(read);
+    AddOperationIfSupported(write);
+    AddOperationIfSupported(statfs);
+    AddOperationIfSupported(flush);
+    AddOperationIfSupported(release);
+    AddOperationIfSupported(fsync);
+    AddOperationIfSupported(setxattr);
+    AddOperationIfSupported(getxattr);
+    AddOperationIfSupported(listxattr);
+    AddOperationIfSupported(removexattr);
+    AddOperationIfSupported(opendir);
+    AddOperationIfSupported(readdir);
+    AddOperationIfSupported(releasedir);
+    AddOperationIfSupported(fsyncdir);
+    AddOperationIfSupported(init);
+    AddOperationIfSupported(destroy);
+    AddOperationIfSupported(access);
+    AddOperationIfSupported(create);
+    AddOperationIfSupported(lock);
+    AddOperationIfSupported(utimens);
+    AddOperationIfSupported(bmap);
+    AddOperationIfSupported(copy_file_range);
+    AddOperationIfSupported(fallocate);
+#if FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8)
+    AddOperationIfSupported(lseek);
+#endif /* FUSE_VERSION >= FUSE_MAKE_VERSION(3, 8) */
+
+#undef AddOperationIfSupported
+
+    env->DeleteLocalRef(capabilitiesClass);
+
+    CSLogTraceLeave("fillFUSE3Operations(%p, %p, %p): %d",
+            env, capabilities, ops, true);
+
+    return true;
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    mountNative3
+ * Signature: (Lorg/catacombae/jfuse/FUSE3FileSystem;Ljava/lang/String;[Ljava/lang/String;Lorg/catacombae/jfuse/FUSE3Capabilities;Lorg/catacombae/jfuse/FUSEOptions;Lorg/catacombae/jfuse/MountHandle;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_mountNative3(
+        JNIEnv *env, jclass cls, jobject fileSystem, jstring mountPoint,
+        jobjectArray optionStrings, jobject fuseCapabilities, jobject options,
+        jobject mountHandle) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSE_mountNative3"
+    CSLogTraceEnter(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p, %p)", env, cls,
+            fileSystem, mountPoint, optionStrings, fuseCapabilities, options,
+            mountHandle);
+
+    jboolean res = JNI_FALSE;
+
+    if(!JNICache::init(env)) {
+        CSLogError("Could not initialize JNI cache.");
+        return JNI_FALSE;
+    }
+
+    struct fuse_operations jfuse_operations;
+    jFUSEContext *context = new jFUSEContext(env, fileSystem, jfuse3_methods,
+            JFUSE3_OP_COUNT);
+    context->setMountHandle(env, mountHandle);
+
+    if(!fillFUSE3Operations(env, fuseCapabilities, &jfuse_operations))
+        CSPanicWithMessage("Could not fill FUSE 3 operations!");
+    else
+        CSLogDebug("Filled FUSE 3 operations.");
+
+    if(jfuse_operations.init != NULL) {
+        context->setInitEnabled(true);
+    }
+
+    /* 'init' is where the mount handle learns the negotiated connection
+     * parameters. */
+    if(mountHandle != NULL && jfuse_operations.init == NULL)
+        jfuse_operations.init = jfuse3_init;
+
+    jboolean reuseArgumentObjects = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reuseArgumentObjects",
+            &reuseArgumentObjects))
+        CSPanicWithMessage("Could not read option reuseArgumentObjects!");
+    context->setReuseArgumentObjects(reuseArgumentObjects == JNI_TRUE);
+
+    jboolean reusePathBuffers = JNI_FALSE;
+    if(!getBooleanOption(env, options, "reusePathBuffers",
+            &reusePathBuffers))
+        CSPanicWithMessage("Could not read option reusePathBuffers!");
+    context->setReusePathBuffers(reusePathBuffers == JNI_TRUE);
+
+    /* Read mountpoint. */
+    const char *utf8MountPoint = env->GetStringUTFChars(mountPoint, NULL);
+
+    /* Read options. libfuse 3 takes the mount point as an argument of
+     * fuse_mount, so the argument vector only holds a program name and the
+     * options. */
+    struct fuse_args args = FUSE_ARGS_INIT(0, NULL);
+    if(fuse_opt_add_arg(&args, "jfuse") != 0)
+        CSPanicWithMessage("fuse_opt_add_arg failed unexpectedly.");
+
+    addOptionStrings(env, optionStrings, &args);
+
+    struct fuse_cmdline_opts opts;
+    memset(&opts, 0, sizeof(opts));
+    if(fuse_parse_cmdline(&args, &opts) != 0)
+        CSLogError("fuse_parse_cmdline didn't return 0.");
+    else {
+        /*
+         * FUSE 3 mount procedure:
+         *
+         * Init:
+         * - fuse_new:
+         *     (struct fuse_args *args, struct fuse_operations *op,
+         *      size_t op_size, void *private_data)->(struct fuse*)
+         * - fuse_mount:
+         *     (struct fuse *f, const char *mountpoint)->(int)
+         * Running:
+         * - fuse_loop / fuse_loop_mt:
+         *     (struct fuse*[, int clone_fd])->(int)
+         * Cleanup:
+         * - fuse_unmount:
+         *     (struct fuse *f)->(void)
+         * - fuse_destroy:
+         *     (struct fuse *f)->(void)
+         */
+        fuse *fh = NULL;
+        bool mounted = false;
+
+        CSLogDebug("Invoking fuse_new...");
+        fh = fuse_new(&args, &jfuse_operations, sizeof (jfuse_operations),
+                context);
+        CSLogDebug("   done. result=%p", fh);
+        if(fh != NULL) {
+            CSLogDebug("Invoking fuse_mount...");
+            mounted = (fuse_mount(fh, utf8MountPoint) == 0);
+            CSLogDebug("   done. result=%d", mounted);
+        }
+        else
+            CSLogError("fuse_new exited with an error. (errno is %d (%s))",
+                errno, strerror(errno));
+
+        if(mounted) {
+            if(acquireSignalHandlers(fuse_get_session(fh))) {
+                context->notifyMountReady(env);
+
+                int fuseLoopRetval;
+                if(!opts.singlethread) {
+                    /* Worker threads are attached to the JVM on demand by
+                     * jFUSEContext::getJNIEnv and detached on exit. */
+                    CSLogDebug("Invoking fuse_loop_mt...");
+                    fuseLoopRetval = fuse_loop_mt(fh, opts.clone_fd);
+                }
+                else {
+                    CSLogDebug("Invoking fuse_loop...");
+                    fuseLoopRetval = fuse_loop(fh);
+                }
+                CSLogDebug("  done. result=%d", fuseLoopRetval);
+                if(fuseLoopRetval != 0)
+                    CSLogError("%s exited with a non-zero value: %d "
+                        "(errno is %d (%s)",
+                        !opts.singlethread ? "fuse_loop_mt" : "fuse_loop",
+                        fuseLoopRetval, errno, strerror(errno));
+                else
+                    res = JNI_TRUE;
+
+                releaseSignalHandlers(fuse_get_session(fh));
+            }
+            else
+                CSLogError("Couldn't set signal handlers!");
+
+            CSLogDebug("Unmounting \"%s\"...", utf8MountPoint);
+            fuse_unmount(fh);
+        }
+        else if(fh != NULL)
+            CSLogError("fuse_mount exited with an error. (errno is %d (%s))",
+                errno, strerror(errno));
+
+        if(fh != NULL) {
+            CSLogDebug("Destroying fuse filehandle %p...", fh);
+            fuse_destroy(fh);
+        }
+
+        free(opts.mountpoint);
+    }
+
+    fuse_opt_free_args(&args);
+    env->ReleaseStringUTFChars(mountPoint, utf8MountPoint);
+
+    delete context;
+
+    /* This thread may have served requests (in single threaded mode), so
+     * release its argument objects while we are still attached. */
+    jFUSEThreadState::release();
+
+    CSLogTraceLeave(_FNAME_ "(%p, %p, %p, %p, %p, %p, %p, %p): %d", env, cls,
+            fileSystem, mountPoint, optionStrings, fuseCapabilities, options,
+            mountHandle, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    getContextNative
+ * Signature: ()Lorg/catacombae/jfuse/types/fuse26/FUSEContext;
+ */
+JNIEXPORT jobject JNICALL Java_org_catacombae_jfuse_FUSE_getContextNative
+  (JNIEnv *env, jclass clazz) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSE_getContextNative"
+    CSLogTraceEnter("%s (%p, %p)", _FNAME_, env, clazz);
+
+    jobject res = NULL;
+
+    fuse_context *ctx = fuse_get_context();
+    jFUSEContext *jfCtx = (jFUSEContext*)ctx->private_data;
+
+    CSLogDebug("Context fields:");
+    CSLogDebug("  fuse=%p", ctx->fuse);
+    CSLogDebug("  uid=%d", ctx->uid);
+    CSLogDebug("  gid=%d", ctx->gid);
+    CSLogDebug("  pid=%d", ctx->pid);
+    CSLogDebug("  private_data=%p", ctx->private_data);
+
+    jobject obj = env->NewObject(JNICache::fuseContext.clazz,
+            JNICache::fuseContext.init, (jlong)ctx->uid, (jlong)ctx->gid,
+            (jlong)ctx->pid, jfCtx->getPrivateData());
+    if(obj == NULL || env->ExceptionCheck() == JNI_TRUE)
+        CSLogError("Could not create new FUSEContext instance.");
+
+    res = obj;
+
+    CSLogTraceLeave("%s (%p, %p): %p", _FNAME_, env, clazz, res);
+    return res;
+#undef _FNAME_
+}
+
+static int do_unmount(const char* mountpoint, int flags) {
+#if defined(__linux__) || defined(__sun__)
+    return umount2(mountpoint, flags);
+#else
+    return unmount(mountpoint, flags);
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_FUSE
+ * Method:    unmountNative
+ * Signature: (Ljava/lang/String;Z)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_FUSE_unmountNative
+  (JNIEnv *env, jclass clazz, jstring mountPoint, jboolean force) {
+#define _FNAME_ "Java_org_catacombae_jfuse_FUSE_unmountNative"
+    CSLogTraceEnter("%s (%p, %p, %p, %d)", _FNAME_, env, clazz, mountPoint,
+            force);
+
+    jboolean res = JNI_FALSE;
+
+    const char *mountPointChars = env->GetStringUTFChars(mountPoint, NULL);
+
+    if(do_unmount(mountPointChars, (force == JNI_TRUE ? UNMOUNT_FORCE : 0)) == 0)
+        res = JNI_TRUE;
+    else
+        CSLogError("Could not unmount \"%s\". errno=%d (%s)", mountPointChars,
+                errno, strerror(errno));
+
+    env->ReleaseStringUTFChars(mountPoint, mountPointChars);
+
+    CSLogTraceLeave("%s (%p, %p, %p, %d): %d", _FNAME_, env, clazz, mountPoint,
+            force, res);
+    return res;
+#undef _FNAME_
+}
@@ -0,0 +1,140 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "org_catacombae_jfuse_RequestRing.h"
+
+#include "common.h"
+#include "CSLog.h"
+
+#if !defined(__NetBSD__)
+#include "jFUSERequestRing.h"
+
+#include <stdint.h>
+
+#define MAX_BATCH org_catacombae_jfuse_RequestRing_MAX_BATCH
+
+static jFUSERequestRing* getRing(jlong nativeRing) {
+    return (jFUSERequestRing*) (intptr_t) nativeRing;
+}
+#endif /* !defined(__NetBSD__) */
+
+/*
+ * Class:     org_catacombae_jfuse_RequestRing
+ * Method:    createNative
+ * Signature: (II)J
+ */
+JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_RequestRing_createNative
+  (JNIEnv *env, jclass cls, jint capacity, jint dataCapacity) {
+#if defined(__NetBSD__)
+    throwByName(env, "java/lang/UnsupportedOperationException",
+            "The FUSE low level API is not available on this platform.");
+    return 0;
+#else
+    jFUSERequestRing *ring = new jFUSERequestRing((uint32_t) capacity,
+            (uint32_t) dataCapacity);
+    if(!ring->isValid()) {
+        delete ring;
+        throwByName(env, "java/lang/OutOfMemoryError",
+                "Could not allocate request ring.");
+        return 0;
+    }
+
+    return (jlong) (intptr_t) ring;
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_RequestRing
+ * Method:    getSlotsNative
+ * Signature: (J)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_catacombae_jfuse_RequestRing_getSlotsNative
+  (JNIEnv *env, jclass cls, jlong nativeRing) {
+#if defined(__NetBSD__)
+    return NULL;
+#else
+    jFUSERequestRing *ring = getRing(nativeRing);
+    return env->NewDirectByteBuffer(ring->getSlots(),
+            (jlong) ring->getSlotsSize());
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_RequestRing
+ * Method:    pollNative
+ * Signature: (J[IIZ)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_RequestRing_pollNative
+  (JNIEnv *env, jclass cls, jlong nativeRing, jintArray indices, jint max,
+        jboolean block) {
+#if defined(__NetBSD__)
+    return -1;
+#else
+    /* The indices are collected on the stack, since a blocking poll must not
+     * hold on to the Java array. */
+    jint buf[MAX_BATCH];
+    if(max > MAX_BATCH)
+        max = MAX_BATCH;
+
+    int count = getRing(nativeRing)->poll(buf, max, block == JNI_TRUE);
+    if(count > 0)
+        env->SetIntArrayRegion(indices, 0, count, buf);
+
+    return count;
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_RequestRing
+ * Method:    completeNative
+ * Signature: (J[II)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_RequestRing_completeNative
+  (JNIEnv *env, jclass cls, jlong nativeRing, jintArray indices,
+        jint count) {
+#if !defined(__NetBSD__)
+    jFUSERequestRing *ring = getRing(nativeRing);
+    jint buf[MAX_BATCH];
+
+    for(jint done = 0; done < count; ) {
+        jint n = count - done;
+        if(n > MAX_BATCH)
+            n = MAX_BATCH;
+
+        env->GetIntArrayRegion(indices, done, n, buf);
+        if(env->ExceptionCheck() == JNI_TRUE)
+            return;
+
+        ring->complete(buf, n);
+        done += n;
+    }
+#endif
+}
+
+/*
+ * Class:     org_catacombae_jfuse_RequestRing
+ * Method:    destroyNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_RequestRing_destroyNative
+  (JNIEnv *env, jclass cls, jlong nativeRing) {
+#if !defined(__NetBSD__)
+    delete getRing(nativeRing);
+#endif
+}
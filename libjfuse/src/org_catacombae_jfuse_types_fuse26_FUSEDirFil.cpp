@@ -27,43 +27,21 @@
 
 #include <stdlib.h>
 #include <inttypes.h>
+#include <stdint.h>
 #include <fuse.h>
 
-static bool getPointerFromByteArray(JNIEnv *env,
-        jbyteArray contextPointerArray, void **dest) {
-    bool result = false;
-
-    jbyteArray ba = contextPointerArray;
-    jsize baLength = env->GetArrayLength(ba);
-    if(baLength != sizeof(void*) || env->ExceptionCheck() == JNI_TRUE) {
-        CSLogError("baLength: %" PRId32 " != sizeof(void*): %zu",
-                (int32_t) baLength, sizeof(void*));
-        throwByName(env, "java/lang/RuntimeException", "Invalid pointer size.");
-    }
-    else {
-        void *ptr = NULL;
-        env->GetByteArrayRegion(ba, 0, baLength, (jbyte*) (&ptr));
-        if(env->ExceptionCheck() != JNI_TRUE) {
-            *dest = ptr;
-            result = true;
-        }
-    }
-    
-    return result;
-}
-
 /*
  * Class:     org_catacombae_jfuse_types_fuse26_FUSEDirFil
  * Method:    fillNative
- * Signature: ([B[BIJ)I
+ * Signature: (J[BIJ)I
  */
 JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_fillNative
-  (JNIEnv *env, jclass cls, jbyteArray nativeContextPointer, jbyteArray name,
+  (JNIEnv *env, jclass cls, jlong nativeContext, jbyteArray name,
         jint type, jlong ino) {
 #define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_fillNative"
     CSLogTraceEnter("jint " _FNAME_ "(%p, "
             "%p, %p, %p, %" PRId32 ", %" PRId64 ")", env, cls,
-            nativeContextPointer, name, (int32_t)type, (int64_t)ino);
+            (void*) (intptr_t) nativeContext, name, (int32_t)type, (int64_t)ino);
 
 #define CheckForErrors(a, b, ...) \
     if((a) || env->ExceptionCheck() == JNI_TRUE) { \
@@ -78,14 +56,10 @@ JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_fillNat
 
     char *nameBuf = NULL;
     do {
-        // Get the native context pointer from the supplied jbyteArray.
-        FUSEDirFilContext *fill_ctx;
-
-        bool gpres =
-                getPointerFromByteArray(env, nativeContextPointer, (void**)(&fill_ctx));
-        CheckForErrors(gpres == false || fill_ctx == NULL,
-                "getPointerFromByteArray failed! gpres=%d fill_ctx=%p",
-                gpres, fill_ctx);
+        FUSEDirFilContext *fill_ctx =
+                (FUSEDirFilContext*) (intptr_t) nativeContext;
+        CheckForErrors(fill_ctx == NULL, "FUSEDirFil used outside of the "
+                "getdir call that created it.");
 
         // Copy data from the jbyteArray containing the name to a C string.
         jsize nameStrlen = env->GetArrayLength(name);
@@ -124,36 +98,8 @@ JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_fillNat
 
     CSLogTraceLeave("jint " _FNAME_ "(%p, "
             "%p, %p, %p, %" PRId32 ", %" PRId64 "): %" PRId32, env, cls,
-            nativeContextPointer, name, (int32_t)type, (int64_t)ino,
+            (void*) (intptr_t) nativeContext, name, (int32_t)type, (int64_t)ino,
             (int32_t)res);
     return res;
 #undef _FNAME_
 }
-
-/*
- * Class:     org_catacombae_jfuse_types_fuse26_FUSEDirFil
- * Method:    freeNative
- * Signature: ([B)V
- */
-JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_freeNative
-  (JNIEnv *env, jclass cls, jbyteArray nativePointer) {
-#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSEDirFil_freeNative"
-    CSLogTraceEnter("void " _FNAME_ "(%p, "
-            "%p, %p)", env, cls, nativePointer);
-
-    void *ptr = NULL;
-    if(getPointerFromByteArray(env, nativePointer, &ptr)) {
-        if(ptr != NULL && env->ExceptionCheck() != JNI_TRUE)
-            free(ptr);
-    }
-    else {
-        CSLogError("Could not get pointer from byte array.");
-        throwRuntimeException(env, _FNAME_ ": Could not get pointer from "
-                "byte array.");
-    }
-    
-    CSLogTraceLeave("void " _FNAME_ "(%p, "
-            "%p, %p)", env, cls, nativePointer);
-#undef _FNAME_
-}
-
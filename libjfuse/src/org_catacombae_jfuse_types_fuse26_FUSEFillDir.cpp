@@ -29,21 +29,23 @@
 #include "JavaSignatures.h"
 
 #include <stdlib.h>
+#include <string.h>
+#include <stdint.h>
 #include <inttypes.h>
 #include <fuse.h>
 
 /*
  * Class:     org_catacombae_jfuse_types_fuse26_FUSEFillDir
  * Method:    fillNative
- * Signature: ([B[BLorg/catacombae/jfuse/types/system/Stat;J)Z
+ * Signature: (J[BLorg/catacombae/jfuse/types/system/Stat;J)Z
  */
 JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillNative
-  (JNIEnv *env, jclass cls, jbyteArray nativeContextPointer, jbyteArray name,
+  (JNIEnv *env, jclass cls, jlong nativeContext, jbyteArray name,
         jobject statObject, jlong off) {
 #define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillNative"
 
     CSLogTraceEnter("jboolean %s(%p, %p, %p, %p, %p, %" PRId64 ")", _FNAME_,
-            env, cls, nativeContextPointer, name, statObject, (int64_t)off);
+            env, cls, (void*) (intptr_t) nativeContext, name, statObject, (int64_t)off);
 
 #define CheckForErrors(a, b, ...) \
     if((a) || env->ExceptionCheck() == JNI_TRUE) { \
@@ -58,17 +60,10 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fi
     char *nameBuf = NULL;
 
     do {
-        jbyteArray ba = nativeContextPointer;
-
-        jsize baLength = env->GetArrayLength(ba);
-        CheckForErrors(baLength != sizeof(FUSEFillDirContext*),
-                "baLength: %" PRId32 " != sizeof(fuse_fill_dir_t): %zu",
-                (int32_t)baLength, sizeof(fuse_fill_dir_t));
-
-        FUSEFillDirContext *fill_ctx = NULL;
-        env->GetByteArrayRegion(ba, 0, baLength, (jbyte*) (&fill_ctx));
-        CheckForErrors(fill_ctx == NULL, "Could not get FUSEFillDirContext "
-                "pointer.");
+        FUSEFillDirContext *fill_ctx =
+                (FUSEFillDirContext*) (intptr_t) nativeContext;
+        CheckForErrors(fill_ctx == NULL, "FUSEFillDir used outside of the "
+                "readdir call that created it.");
 
         jsize nameStrlen = env->GetArrayLength(name);
         CheckForErrors(nameStrlen < 0, "Could not get array length "
@@ -83,7 +78,7 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fi
         struct stat stbuf;
         struct stat *stp = NULL;
         if(statObject != NULL) {
-            CheckForErrors(FUSE26Util::mergeStat(env, statObject, &stbuf),
+            CheckForErrors(!FUSE26Util::mergeStat(env, statObject, &stbuf),
                     "Could not merge stat object");
             stp = &stbuf;
         }
@@ -118,10 +113,91 @@ JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fi
 #undef CheckForErrors
 
     CSLogTraceLeave("jboolean %s(%p, %p, %p, %p, %p, %" PRId64 "): %d",
-            _FNAME_, env, cls, nativeContextPointer, name, statObject,
+            _FNAME_, env, cls, (void*) (intptr_t) nativeContext, name, statObject,
             (int64_t)off, res);
     return res;
 
 #undef _FNAME_
 }
 
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSEFillDir
+ * Method:    fillBatchNative
+ * Signature: (JLjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillBatchNative
+  (JNIEnv *env, jclass cls, jlong nativeContext, jobject records,
+        jint count) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSEFillDir_fillBatchNative"
+
+    CSLogTraceEnter("jint %s(%p, %p, %p, %p, %" PRId32 ")", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, records, (int32_t)count);
+
+#define CheckForErrors(a, b, ...) \
+    if((a) || env->ExceptionCheck() == JNI_TRUE) { \
+        CSLogError(b, ##__VA_ARGS__); \
+        if(env->ExceptionCheck() == JNI_FALSE) \
+            throwException = true; \
+        break; \
+    }
+
+    jint res = 0;
+    bool throwException = false;
+
+    do {
+        FUSEFillDirContext *fill_ctx =
+                (FUSEFillDirContext*) (intptr_t) nativeContext;
+        CheckForErrors(fill_ctx == NULL, "FUSEFillDir used outside of the "
+                "readdir call that created it.");
+
+        const char *data = (const char*) env->GetDirectBufferAddress(records);
+        jlong capacity = env->GetDirectBufferCapacity(records);
+        CheckForErrors(data == NULL || capacity < 0, "Could not get direct "
+                "buffer address of records.");
+
+        fuse_fill_dir_t filler = fill_ctx->getFiller();
+        void *buf = fill_ctx->getBuf();
+
+        /* All entries are added in this one call, with the names passed
+         * straight from the records and no Java objects involved. */
+        size_t pos = 0;
+        for(jint i = 0; i < count; ++i) {
+            const char *name = NULL;
+            struct stat stbuf;
+            bool hasStat = false;
+            int64_t off = 0;
+
+            memset(&stbuf, 0, sizeof(stbuf));
+            int recordLength = FUSE26BufferUtil::parseFillDirRecord(data + pos,
+                    (size_t) capacity - pos, &name, &stbuf, &hasStat, &off);
+            CheckForErrors(recordLength < 0, "Malformed record %" PRId32
+                    " at offset %zu.", (int32_t)i, pos);
+
+            int fillRes = filler(buf, name, hasStat ? &stbuf : NULL,
+                    (off_t) off);
+            if(fillRes != 0) {
+                CSLogDebug("Filler buffer full after %" PRId32 " entries.",
+                        (int32_t)i);
+                break;
+            }
+
+            pos += recordLength;
+            res = i + 1;
+        }
+    }
+    while(0);
+
+    if(throwException) {
+        throwByName(env, "java/lang/RuntimeException", "Exception in native "
+                "method " _FNAME_ ".");
+    }
+
+#undef CheckForErrors
+
+    CSLogTraceLeave("jint %s(%p, %p, %p, %p, %" PRId32 "): %" PRId32, _FNAME_,
+            env, cls, (void*) (intptr_t) nativeContext, records, (int32_t)count,
+            (int32_t)res);
+    return res;
+
+#undef _FNAME_
+}
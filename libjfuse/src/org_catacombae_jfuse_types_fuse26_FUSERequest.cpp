@@ -0,0 +1,222 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "org_catacombae_jfuse_types_fuse26_FUSERequest.h"
+
+#include "common.h"
+#include "CSLog.h"
+
+#if !defined(__NetBSD__)
+#include "fuse26_lowlevel_module.h"
+#include "FUSE26Util.h"
+
+#include <stdlib.h>
+#include <stdint.h>
+#include <string.h>
+#include <errno.h>
+
+/*
+ * Each of the reply functions below is called at most once per request (the
+ * Java side hands out the request pointer only once), sends exactly one reply
+ * and frees the request state.
+ */
+
+static jFUSERequest* getRequest(jlong nativeRequest) {
+    return (jFUSERequest*) (intptr_t) nativeRequest;
+}
+
+/**
+ * Replies with an error to a request that could not be completed as asked,
+ * and frees its state.
+ */
+static void failRequest(jFUSERequest *r, int err) {
+    if(r->noReply)
+        fuse_reply_none(r->req);
+    else
+        fuse_reply_err(r->req, err);
+    free(r);
+}
+
+static void replyData(jFUSERequest *r, const char *data, jint len) {
+    size_t size = (size_t) len;
+    if(size > r->size)
+        size = r->size;
+
+    fuse_reply_buf(r->req, data, size);
+    free(r);
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyErrNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyErrNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jint retval) {
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    failRequest(r, retval < 0 ? -retval : 0);
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyNoneNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyNoneNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest) {
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    fuse_reply_none(r->req);
+    free(r);
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyEntryNative
+ * Signature: (JLorg/catacombae/jfuse/types/fuse26/FUSEEntryReply;)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyEntryNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jobject reply) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyEntryNative"
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    struct fuse_entry_param e;
+    memset(&e, 0, sizeof(e));
+    if(!mergeEntryReply(env, reply, &e)) {
+        CSLogError(_FNAME_ ": Could not merge FUSEEntryReply.");
+        failRequest(r, EIO);
+        return;
+    }
+
+    fuse_reply_entry(r->req, &e);
+    free(r);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyAttrNative
+ * Signature: (JLorg/catacombae/jfuse/types/fuse26/FUSEAttrReply;)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyAttrNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jobject reply) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyAttrNative"
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    struct stat stbuf;
+    double attrTimeout = 0.0;
+    memset(&stbuf, 0, sizeof(stbuf));
+    if(!mergeAttrReply(env, reply, &stbuf, &attrTimeout)) {
+        CSLogError(_FNAME_ ": Could not merge FUSEAttrReply.");
+        failRequest(r, EIO);
+        return;
+    }
+
+    fuse_reply_attr(r->req, &stbuf, attrTimeout);
+    free(r);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyOpenNative
+ * Signature: (JLorg/catacombae/jfuse/types/fuse26/FUSEFileInfo;)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyOpenNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jobject fi) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyOpenNative"
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    if(fi != NULL && (!FUSE26Util::mergeFUSEFileInfo(env, fi, &r->fi) ||
+            env->ExceptionCheck() == JNI_TRUE)) {
+        CSLogError(_FNAME_ ": Could not merge FUSEFileInfo.");
+        failRequest(r, EIO);
+        return;
+    }
+
+    fuse_reply_open(r->req, &r->fi);
+    free(r);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyBufNative
+ * Signature: (JLjava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyBufNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jobject data, jint off,
+        jint len) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyBufNative"
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    const char *address = (const char*) env->GetDirectBufferAddress(data);
+    if(address == NULL) {
+        CSLogError(_FNAME_ ": Could not get direct buffer address.");
+        failRequest(r, EIO);
+        return;
+    }
+
+    replyData(r, address + off, len);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyBytesNative
+ * Signature: (J[BII)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyBytesNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jbyteArray data, jint off,
+        jint len) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyBytesNative"
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    /* Writing the reply to the FUSE device doesn't block, so it is fine to do
+     * it while holding on to the array. */
+    char *bytes = (char*) env->GetPrimitiveArrayCritical(data, NULL);
+    if(bytes == NULL) {
+        CSLogError(_FNAME_ ": Could not get array elements.");
+        failRequest(r, EIO);
+        return;
+    }
+
+    replyData(r, bytes + off, len);
+
+    env->ReleasePrimitiveArrayCritical(data, bytes, JNI_ABORT);
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse26_FUSERequest
+ * Method:    replyWriteNative
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_org_catacombae_jfuse_types_fuse26_FUSERequest_replyWriteNative
+  (JNIEnv *env, jclass cls, jlong nativeRequest, jlong count) {
+    jFUSERequest *r = getRequest(nativeRequest);
+
+    fuse_reply_write(r->req, (size_t) count);
+    free(r);
+}
+
+#endif /* !defined(__NetBSD__) */
@@ -0,0 +1,203 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "org_catacombae_jfuse_types_fuse29_FUSEWriteBuf.h"
+
+#include "common.h"
+#include "CSLog.h"
+#include "FUSE29Util.h"
+
+#include <errno.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <inttypes.h>
+
+#if FUSE_VERSION >= 29
+
+static struct fuse_bufvec* getSource(JNIEnv *env, jlong nativeContext) {
+    struct fuse_bufvec *src = (struct fuse_bufvec*) (intptr_t) nativeContext;
+    if(src == NULL) {
+        CSLogError("FUSEWriteBuf used outside of the write_buf call that "
+                "created it.");
+        throwByName(env, "java/lang/IllegalStateException", "FUSEWriteBuf "
+                "used outside of the write_buf call that created it.");
+    }
+
+    return src;
+}
+
+/**
+ * Copies from src into a destination vector with a single buffer, and returns
+ * the number of bytes copied or a negated errno value.
+ */
+static jint copyBuffer(struct fuse_bufvec *src, struct fuse_buf *dstBuf) {
+    struct fuse_bufvec dst;
+    memset(&dst, 0, sizeof(dst));
+    dst.count = 1;
+    dst.buf[0] = *dstBuf;
+
+    ssize_t res = fuse_buf_copy(&dst, src, (enum fuse_buf_copy_flags) 0);
+    if(res > INT32_MAX)
+        res = INT32_MAX;
+
+    return (jint) res;
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse29_FUSEWriteBuf
+ * Method:    getSizeNative
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_getSizeNative
+  (JNIEnv *env, jclass cls, jlong nativeContext) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_getSizeNative"
+    CSLogTraceEnter("jlong %s(%p, %p, %p)", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext);
+
+    jlong res = 0;
+    struct fuse_bufvec *src = getSource(env, nativeContext);
+    if(src != NULL)
+        res = (jlong) fuse_buf_size(src);
+
+    CSLogTraceLeave("jlong %s(%p, %p, %p): %" PRId64, _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, (int64_t) res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse29_FUSEWriteBuf
+ * Method:    copyToFileNative
+ * Signature: (JLjava/lang/Object;J)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToFileNative
+  (JNIEnv *env, jclass cls, jlong nativeContext, jobject target, jlong pos) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToFileNative"
+    CSLogTraceEnter("jint %s(%p, %p, %p, %p, %" PRId64 ")", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, target, (int64_t) pos);
+
+    jint res = -EIO;
+    struct fuse_bufvec *src = getSource(env, nativeContext);
+    if(src != NULL) {
+        int fd = JNIUtil::getFileDescriptor(env, target);
+        if(fd < 0)
+            res = -EBADF;
+        else {
+            struct fuse_buf dstBuf;
+            memset(&dstBuf, 0, sizeof(dstBuf));
+            dstBuf.size = fuse_buf_size(src);
+            dstBuf.flags = (enum fuse_buf_flags)
+                    (FUSE_BUF_IS_FD | FUSE_BUF_FD_SEEK);
+            dstBuf.fd = fd;
+            dstBuf.pos = (off_t) pos;
+
+            res = copyBuffer(src, &dstBuf);
+        }
+    }
+
+    CSLogTraceLeave("jint %s(%p, %p, %p, %p, %" PRId64 "): %d", _FNAME_, env,
+            cls, (void*) (intptr_t) nativeContext, target, (int64_t) pos, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse29_FUSEWriteBuf
+ * Method:    copyToBufferNative
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToBufferNative
+  (JNIEnv *env, jclass cls, jlong nativeContext, jobject dest, jint position,
+        jint length) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToBufferNative"
+    CSLogTraceEnter("jint %s(%p, %p, %p, %p, %d, %d)", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, dest, position, length);
+
+    jint res = -EIO;
+    struct fuse_bufvec *src = getSource(env, nativeContext);
+    if(src != NULL) {
+        char *address = (char*) env->GetDirectBufferAddress(dest);
+        if(address == NULL)
+            throwByName(env, "java/lang/IllegalArgumentException",
+                    "dest is not a direct buffer.");
+        else {
+            struct fuse_buf dstBuf;
+            memset(&dstBuf, 0, sizeof(dstBuf));
+            dstBuf.size = (size_t) length;
+            dstBuf.mem = address + position;
+
+            res = copyBuffer(src, &dstBuf);
+        }
+    }
+
+    CSLogTraceLeave("jint %s(%p, %p, %p, %p, %d, %d): %d", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, dest, position, length, res);
+    return res;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse29_FUSEWriteBuf
+ * Method:    copyToArrayNative
+ * Signature: (J[BII)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToArrayNative
+  (JNIEnv *env, jclass cls, jlong nativeContext, jbyteArray dest, jint offset,
+        jint length) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse29_FUSEWriteBuf_copyToArrayNative"
+    CSLogTraceEnter("jint %s(%p, %p, %p, %p, %d, %d)", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, dest, offset, length);
+
+    jint res = -EIO;
+    struct fuse_bufvec *src = getSource(env, nativeContext);
+    if(src != NULL) {
+        /* The data may have to be read from a pipe, which must not be done
+         * while holding on to the array, so it goes through a bounce
+         * buffer. */
+        size_t size = fuse_buf_size(src);
+        if(size > (size_t) length)
+            size = (size_t) length;
+
+        void *tmp = malloc(size > 0 ? size : 1);
+        if(tmp == NULL)
+            res = -ENOMEM;
+        else {
+            struct fuse_buf dstBuf;
+            memset(&dstBuf, 0, sizeof(dstBuf));
+            dstBuf.size = size;
+            dstBuf.mem = tmp;
+
+            res = copyBuffer(src, &dstBuf);
+            if(res > 0)
+                env->SetByteArrayRegion(dest, offset, res, (jbyte*) tmp);
+
+            free(tmp);
+        }
+    }
+
+    CSLogTraceLeave("jint %s(%p, %p, %p, %p, %d, %d): %d", _FNAME_, env, cls,
+            (void*) (intptr_t) nativeContext, dest, offset, length, res);
+    return res;
+#undef _FNAME_
+}
+
+#endif /* FUSE_VERSION >= 29 */
@@ -0,0 +1,121 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#define __STDC_FORMAT_MACROS
+
+#include "org_catacombae_jfuse_types_fuse3_FUSE3FillDir.h"
+
+#include "common.h"
+#include "fuse3_module.h"
+#include "FUSE3FillDirContext.h"
+#include "CSLog.h"
+#include "FUSE3Util.h"
+#include "JavaSignatures.h"
+
+#include <stdlib.h>
+#include <string.h>
+#include <stdint.h>
+#include <inttypes.h>
+#include <fuse.h>
+
+/*
+ * Class:     org_catacombae_jfuse_types_fuse3_FUSE3FillDir
+ * Method:    fillNative
+ * Signature: (J[BLorg/catacombae/jfuse/types/system/Stat;JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_catacombae_jfuse_types_fuse3_FUSE3FillDir_fillNative
+  (JNIEnv *env, jclass cls, jlong nativeContext, jbyteArray name,
+        jobject statObject, jlong off, jint flags) {
+#define _FNAME_ "Java_org_catacombae_jfuse_types_fuse3_FUSE3FillDir_fillNative"
+
+    CSLogTraceEnter("jboolean %s(%p, %p, %p, %p, %p, %" PRId64 ", %" PRId32 ")",
+            _FNAME_, env, cls, (void*) (intptr_t) nativeContext, name,
+            statObject, (int64_t)off, (int32_t)flags);
+
+#define CheckForErrors(a, b, ...) \
+    if((a) || env->ExceptionCheck() == JNI_TRUE) { \
+        CSLogError(b, ##__VA_ARGS__); \
+        if(env->ExceptionCheck() == JNI_FALSE) \
+            throwException = true; \
+        break; \
+    }
+
+    jboolean res = JNI_FALSE;
+    bool throwException = false;
+    char *nameBuf = NULL;
+
+    do {
+        FUSE3FillDirContext *fill_ctx =
+                (FUSE3FillDirContext*) (intptr_t) nativeContext;
+        CheckForErrors(fill_ctx == NULL, "FUSE3FillDir used outside of the "
+                "readdir call that created it.");
+
+        jsize nameStrlen = env->GetArrayLength(name);
+        CheckForErrors(nameStrlen < 0, "Could not get array length "
+                "(nameStrlen=%" PRId32 ")", (int32_t)nameStrlen);
+
+        nameBuf = (char*) calloc(1, sizeof(char)*(nameStrlen + 1));
+        CheckForErrors(nameBuf == NULL, "calloc failed for nameBuf");
+
+        env->GetByteArrayRegion(name, 0, nameStrlen, (signed char*) nameBuf);
+        CheckForErrors(0, "Could not get byte array region for 'name'.");
+
+        struct stat stbuf;
+        struct stat *stp = NULL;
+        if(statObject != NULL) {
+            CheckForErrors(!FUSE3Util::mergeStat(env, statObject, &stbuf),
+                    "Could not merge stat object");
+            stp = &stbuf;
+        }
+
+        fuse_fill_dir_t filler = fill_ctx->getFiller();
+        void *buf = fill_ctx->getBuf();
+        CSLogDebug("invoking filler(%p, \"%s\", %p, %" PRId64 ", %" PRId32 ")",
+                buf, nameBuf, stp, (int64_t) off, (int32_t) flags);
+        int fillRes = filler(buf, nameBuf, stp, (off_t) off,
+                (enum fuse_fill_dir_flags) flags);
+        CSLogDebug("fillRes = %d", fillRes);
+        if(fillRes == 0)
+            res = JNI_FALSE;
+        else if(fillRes == 1)
+            res = JNI_TRUE;
+        else {
+            CSLogError("Unexpected return value from filler: %d", fillRes);
+            throwException = true;
+        }
+    }
+    while(0);
+
+    if(nameBuf != NULL)
+        free(nameBuf);
+
+    if(throwException) {
+        throwByName(env, "java/lang/RuntimeException", "Exception in native "
+                "method " _FNAME_ ".");
+    }
+
+#undef CheckForErrors
+
+    CSLogTraceLeave("jboolean %s(%p, %p, %p, %p, %p, %" PRId64 ", %" PRId32
+            "): %d", _FNAME_, env, cls, (void*) (intptr_t) nativeContext,
+            name, statObject, (int64_t)off, (int32_t)flags, res);
+    return res;
+
+#undef _FNAME_
+}
@@ -97,6 +97,12 @@
 #error No known platform detected!
 #endif
 
+#include <unistd.h>
+
+#if T_LINUX
+#include <linux/falloc.h>
+#endif
+
 #if T_LINUX || T_DARWIN
 #include <sys/xattr.h>
 /*
@@ -228,6 +234,35 @@ JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_types_system_NumericalConstant_
     else_if_constant(XATTR_REPLACE);
 #endif
 
+    // Constants from linux/falloc.h
+
+#if T_LINUX
+    /* Confirmed on: Linux */
+    /* Unavailable on: Darwin, FreeBSD, NetBSD, Solaris */
+    /* The punch hole and zero range flags are missing from old kernel
+     * headers. */
+#ifdef FALLOC_FL_KEEP_SIZE
+    else_if_constant(FALLOC_FL_KEEP_SIZE);
+#endif
+#ifdef FALLOC_FL_PUNCH_HOLE
+    else_if_constant(FALLOC_FL_PUNCH_HOLE);
+#endif
+#ifdef FALLOC_FL_ZERO_RANGE
+    else_if_constant(FALLOC_FL_ZERO_RANGE);
+#endif
+#endif
+
+    // Constants from unistd.h
+
+    /* Confirmed on: FreeBSD, Linux, Solaris */
+    /* Unavailable on: Darwin (before 10.15), NetBSD */
+#ifdef SEEK_DATA
+    else_if_constant(SEEK_DATA);
+#endif
+#ifdef SEEK_HOLE
+    else_if_constant(SEEK_HOLE);
+#endif
+
     //else_if_constant();
 
     else {
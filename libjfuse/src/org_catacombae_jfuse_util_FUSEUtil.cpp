@@ -21,6 +21,9 @@
 
 #include "org_catacombae_jfuse_util_FUSEUtil.h"
 
+#include "JNICache.h"
+#include "JNIUtil.h"
+
 /*
  * Class:     org_catacombae_jfuse_util_FUSEUtil
  * Method:    getProcessUidNative
@@ -51,3 +54,15 @@ JNIEXPORT jlong JNICALL Java_org_catacombae_jfuse_util_FUSEUtil_getProcessPidNat
     return (jlong) getpid();
 }
 
+/*
+ * Class:     org_catacombae_jfuse_util_FUSEUtil
+ * Method:    getFileDescriptorNative
+ * Signature: (Ljava/lang/Object;)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_util_FUSEUtil_getFileDescriptorNative
+  (JNIEnv *env, jclass clazz, jobject fd) {
+    if(!JNICache::init(env))
+        return -1;
+
+    return (jint) JNIUtil::getFileDescriptor(env, fd);
+}
@@ -0,0 +1,348 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "org_catacombae_jfuse_wire_FUSEKernelMount.h"
+
+#include "CSLog.h"
+
+#include <errno.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#if defined(__linux__)
+#include <fcntl.h>
+#include <spawn.h>
+#include <sys/mount.h>
+#include <sys/socket.h>
+#include <sys/stat.h>
+#include <sys/types.h>
+#include <sys/wait.h>
+#include <unistd.h>
+
+extern char **environ;
+
+/** The fusermount programs to try, in order. */
+static const char *const fusermountPrograms[] = {
+    "fusermount3",
+    "fusermount",
+    NULL
+};
+
+/**
+ * Receives the descriptor sent by fusermount over <code>sock</code>.
+ *
+ * @return the received descriptor, or a negated errno value. -EIO means that
+ * fusermount closed the socket without sending a descriptor.
+ */
+static int receiveFd(int sock) {
+    char data;
+    struct iovec iov;
+    iov.iov_base = &data;
+    iov.iov_len = 1;
+
+    char control[CMSG_SPACE(sizeof(int))];
+    memset(control, 0, sizeof(control));
+
+    struct msghdr msg;
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_iov = &iov;
+    msg.msg_iovlen = 1;
+    msg.msg_control = control;
+    msg.msg_controllen = sizeof(control);
+
+    ssize_t res;
+    do {
+        res = recvmsg(sock, &msg, MSG_CMSG_CLOEXEC);
+    } while(res < 0 && errno == EINTR);
+
+    if(res < 0)
+        return -errno;
+    if(res == 0)
+        return -EIO;
+
+    struct cmsghdr *cmsg = CMSG_FIRSTHDR(&msg);
+    if(cmsg == NULL || cmsg->cmsg_level != SOL_SOCKET ||
+            cmsg->cmsg_type != SCM_RIGHTS ||
+            cmsg->cmsg_len != CMSG_LEN(sizeof(int)))
+    {
+        CSLogError("fusermount sent a message without a descriptor.");
+        return -EIO;
+    }
+
+    int fd;
+    memcpy(&fd, CMSG_DATA(cmsg), sizeof(int));
+    return fd;
+}
+
+/**
+ * Runs the first fusermount program found in the PATH with the arguments
+ * <code>argv[1]</code> and onwards. If <code>commFd</code> isn't -1 it is
+ * passed to fusermount in the _FUSE_COMMFD environment variable.
+ *
+ * @return the process ID of fusermount, or a negated errno value.
+ */
+static pid_t spawnFusermount(char **argv, int commFd) {
+    size_t envCount = 0;
+    while(environ[envCount] != NULL)
+        ++envCount;
+
+    char **envp = (char**) malloc((envCount + 2) * sizeof(char*));
+    if(envp == NULL)
+        return -ENOMEM;
+
+    char commFdVar[32];
+    size_t envIndex = 0;
+    for(size_t i = 0; i < envCount; ++i) {
+        if(strncmp(environ[i], "_FUSE_COMMFD=", 13) != 0)
+            envp[envIndex++] = environ[i];
+    }
+    if(commFd != -1) {
+        snprintf(commFdVar, sizeof(commFdVar), "_FUSE_COMMFD=%d", commFd);
+        envp[envIndex++] = commFdVar;
+    }
+    envp[envIndex] = NULL;
+
+    pid_t pid = -ENOENT;
+    for(int i = 0; fusermountPrograms[i] != NULL; ++i) {
+        argv[0] = (char*) fusermountPrograms[i];
+
+        pid_t child;
+        const int res = posix_spawnp(&child, argv[0], NULL, NULL, argv, envp);
+        if(res == 0) {
+            pid = child;
+            break;
+        }
+
+        pid = -res;
+        if(res != ENOENT)
+            break;
+    }
+
+    free(envp);
+    return pid;
+}
+
+/**
+ * Waits for <code>pid</code> to exit.
+ *
+ * @return 0 if it exited with status 0, otherwise a negated errno value.
+ */
+static int waitForExit(pid_t pid) {
+    int status;
+    pid_t res;
+    do {
+        res = waitpid(pid, &status, 0);
+    } while(res < 0 && errno == EINTR);
+
+    if(res < 0)
+        return -errno;
+    if(!WIFEXITED(status) || WEXITSTATUS(status) != 0) {
+        CSLogError("fusermount failed with status %d.", status);
+        return -EIO;
+    }
+
+    return 0;
+}
+#endif /* defined(__linux__) */
+
+/*
+ * Class:     org_catacombae_jfuse_wire_FUSEKernelMount
+ * Method:    mountNative
+ * Signature: (ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;JLjava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_wire_FUSEKernelMount_mountNative
+  (JNIEnv *env, jclass cls, jint deviceFd, jstring source, jstring mountPoint,
+        jstring type, jlong flags, jstring options) {
+#define _FNAME_ "Java_org_catacombae_jfuse_wire_FUSEKernelMount_mountNative"
+    CSLogTraceEnter("jint " _FNAME_ "(%p, %p, %d, %p, %p, %p, %lld, %p)", env,
+            cls, deviceFd, source, mountPoint, type, (long long) flags,
+            options);
+
+    jint retval;
+#if defined(__linux__)
+    const char *sourceChars = env->GetStringUTFChars(source, NULL);
+    const char *mountPointChars = env->GetStringUTFChars(mountPoint, NULL);
+    const char *typeChars = env->GetStringUTFChars(type, NULL);
+    const char *optionsChars = env->GetStringUTFChars(options, NULL);
+
+    do {
+        struct stat st;
+        if(stat(mountPointChars, &st) != 0) {
+            retval = -errno;
+            break;
+        }
+
+        /* The options that the kernel requires, followed by the ones passed
+         * in. */
+        const size_t dataSize = 128 + strlen(optionsChars);
+        char *data = (char*) malloc(dataSize);
+        if(data == NULL) {
+            retval = -ENOMEM;
+            break;
+        }
+
+        snprintf(data, dataSize, "fd=%d,rootmode=%o,user_id=%u,group_id=%u%s%s",
+                (int) deviceFd, (unsigned int) (st.st_mode & S_IFMT),
+                (unsigned int) getuid(), (unsigned int) getgid(),
+                (optionsChars[0] != '\0') ? "," : "", optionsChars);
+        CSLogDebug("Mounting \"%s\" (%s) at \"%s\" with flags 0x%llx and "
+                "options \"%s\".", sourceChars, typeChars, mountPointChars,
+                (unsigned long long) flags, data);
+
+        retval = (mount(sourceChars, mountPointChars, typeChars,
+                (unsigned long) flags, data) != 0) ? -errno : 0;
+        free(data);
+    } while(0);
+
+    env->ReleaseStringUTFChars(options, optionsChars);
+    env->ReleaseStringUTFChars(type, typeChars);
+    env->ReleaseStringUTFChars(mountPoint, mountPointChars);
+    env->ReleaseStringUTFChars(source, sourceChars);
+#else
+    retval = -ENOSYS;
+#endif
+
+    CSLogTraceLeave("jint " _FNAME_ "(%p, %p, %d, %p, %p, %p, %lld, %p): %d",
+            env, cls, deviceFd, source, mountPoint, type, (long long) flags,
+            options, retval);
+    return retval;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_wire_FUSEKernelMount
+ * Method:    unmountNative
+ * Signature: (Ljava/lang/String;Z)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_wire_FUSEKernelMount_unmountNative
+  (JNIEnv *env, jclass cls, jstring mountPoint, jboolean lazy) {
+#define _FNAME_ "Java_org_catacombae_jfuse_wire_FUSEKernelMount_unmountNative"
+    CSLogTraceEnter("jint " _FNAME_ "(%p, %p, %p, %d)", env, cls, mountPoint,
+            lazy);
+
+    jint retval;
+#if defined(__linux__)
+    const char *mountPointChars = env->GetStringUTFChars(mountPoint, NULL);
+
+    retval = (umount2(mountPointChars, lazy ? MNT_DETACH : 0) != 0) ?
+            -errno : 0;
+
+    env->ReleaseStringUTFChars(mountPoint, mountPointChars);
+#else
+    retval = -ENOSYS;
+#endif
+
+    CSLogTraceLeave("jint " _FNAME_ "(%p, %p, %p, %d): %d", env, cls,
+            mountPoint, lazy, retval);
+    return retval;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_wire_FUSEKernelMount
+ * Method:    fusermountNative
+ * Signature: ([Ljava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_wire_FUSEKernelMount_fusermountNative
+  (JNIEnv *env, jclass cls, jobjectArray args, jint targetFd) {
+#define _FNAME_ "Java_org_catacombae_jfuse_wire_FUSEKernelMount_fusermountNative"
+    CSLogTraceEnter("jint " _FNAME_ "(%p, %p, %p, %d)", env, cls, args,
+            targetFd);
+
+    jint retval;
+#if defined(__linux__)
+    const jsize argCount = env->GetArrayLength(args);
+    jstring *argStrings = (jstring*) calloc(argCount, sizeof(jstring));
+    char **argv = (char**) calloc(argCount + 2, sizeof(char*));
+
+    do {
+        if(argStrings == NULL || argv == NULL) {
+            retval = -ENOMEM;
+            break;
+        }
+
+        /* argv[0] is filled in with the name of the program. */
+        for(jsize i = 0; i < argCount; ++i) {
+            argStrings[i] = (jstring) env->GetObjectArrayElement(args, i);
+            argv[i + 1] =
+                    (char*) env->GetStringUTFChars(argStrings[i], NULL);
+        }
+
+        if(targetFd < 0) {
+            const pid_t pid = spawnFusermount(argv, -1);
+            retval = (pid < 0) ? (jint) pid : waitForExit(pid);
+            break;
+        }
+
+        /* fusermount mounts the file system and sends the descriptor of the
+         * new connection back over the socket named by _FUSE_COMMFD. Only
+         * its end of the socket pair is inherited. */
+        int sockets[2];
+        if(socketpair(AF_UNIX, SOCK_STREAM, 0, sockets) != 0) {
+            retval = -errno;
+            break;
+        }
+        fcntl(sockets[0], F_SETFD, FD_CLOEXEC);
+
+        const pid_t pid = spawnFusermount(argv, sockets[1]);
+        close(sockets[1]);
+        if(pid < 0) {
+            close(sockets[0]);
+            retval = (jint) pid;
+            break;
+        }
+
+        const int fd = receiveFd(sockets[0]);
+        close(sockets[0]);
+
+        retval = waitForExit(pid);
+        if(fd < 0) {
+            if(retval == 0)
+                retval = fd;
+            break;
+        }
+
+        /* The caller's descriptor is replaced by the connection, so that
+         * the channel that it belongs to reads from the mounted file
+         * system. */
+        if(retval == 0 && dup2(fd, targetFd) < 0)
+            retval = -errno;
+        close(fd);
+    } while(0);
+
+    if(argStrings != NULL) {
+        for(jsize i = 0; i < argCount; ++i) {
+            if(argStrings[i] == NULL)
+                break;
+            env->ReleaseStringUTFChars(argStrings[i], argv[i + 1]);
+            env->DeleteLocalRef(argStrings[i]);
+        }
+    }
+    free(argv);
+    free(argStrings);
+#else
+    retval = -ENOSYS;
+#endif
+
+    CSLogTraceLeave("jint " _FNAME_ "(%p, %p, %p, %d): %d", env, cls, args,
+            targetFd, retval);
+    return retval;
+#undef _FNAME_
+}
@@ -0,0 +1,62 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+#include "org_catacombae_jfuse_wire_FUSEKernelPassthrough.h"
+
+#include "CSLog.h"
+#include "jFUSEPassthroughTable.h"
+
+/*
+ * Class:     org_catacombae_jfuse_wire_FUSEKernelPassthrough
+ * Method:    openBackingNative
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_wire_FUSEKernelPassthrough_openBackingNative
+  (JNIEnv *env, jclass cls, jint deviceFd, jint fd) {
+#define _FNAME_ "Java_org_catacombae_jfuse_wire_FUSEKernelPassthrough_openBackingNative"
+    CSLogTraceEnter("jint " _FNAME_ "(%p, %p, %d, %d)", env, cls, deviceFd,
+            fd);
+
+    const jint retval = jFUSEPassthroughTable::openBacking(deviceFd, fd);
+
+    CSLogTraceLeave("jint " _FNAME_ "(%p, %p, %d, %d): %d", env, cls,
+            deviceFd, fd, retval);
+    return retval;
+#undef _FNAME_
+}
+
+/*
+ * Class:     org_catacombae_jfuse_wire_FUSEKernelPassthrough
+ * Method:    closeBackingNative
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_org_catacombae_jfuse_wire_FUSEKernelPassthrough_closeBackingNative
+  (JNIEnv *env, jclass cls, jint deviceFd, jint backingId) {
+#define _FNAME_ "Java_org_catacombae_jfuse_wire_FUSEKernelPassthrough_closeBackingNative"
+    CSLogTraceEnter("jint " _FNAME_ "(%p, %p, %d, %d)", env, cls, deviceFd,
+            backingId);
+
+    const jint retval =
+            jFUSEPassthroughTable::closeBacking(deviceFd, backingId);
+
+    CSLogTraceLeave("jint " _FNAME_ "(%p, %p, %d, %d): %d", env, cls,
+            deviceFd, backingId, retval);
+    return retval;
+#undef _FNAME_
+}
@@ -0,0 +1,215 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.catacombae.jfuse.util.Log;
+
+/**
+ * A thread pool executor that sizes itself from the time operations spend
+ * waiting in its queue. Once per adjustment interval, the average wait of
+ * the operations started during the interval is compared to the target
+ * wait: if it is above the target, the pool grows (doubling, up to the
+ * maximum size), and if it is well below the target with nothing queued,
+ * the pool shrinks by one thread (down to the minimum size). An interval
+ * without any operations counts as no wait, so a pool that grew during a
+ * burst shrinks back once the traffic stops.<br>
+ * The adjustments are made by a timer thread shared by all adaptive pools,
+ * until the pool is shut down. The threads are daemon threads, so an idle
+ * pool doesn't keep the JVM alive. Threads above the current pool size exit
+ * after being idle for one second.
+ *
+ * @author Erik Larsson
+ */
+public class AdaptivePoolExecutor extends OperationExecutor {
+    private static final long ADJUST_INTERVAL_MILLIS = 100;
+
+    /** Runs the adjustments of all adaptive pools. */
+    private static final Timer adjustTimer =
+            new Timer("jFUSE adaptive pool adjuster", true);
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetWaitNanos;
+    private final ThreadPoolExecutor pool;
+
+    private final TimerTask adjustTask;
+    private final AtomicLong resizeCount = new AtomicLong();
+
+    /* Interval counters, only accessed in adjustPoolSize(). */
+    private long lastAdjustTime = System.nanoTime();
+    private long lastStartedCount = 0;
+    private long lastTotalWaitNanos = 0;
+
+    /**
+     * Creates a new adaptive pool, initially with <code>minThreads</code>
+     * threads.
+     *
+     * @param name the name of the pool, used for its threads and when
+     * printing statistics.
+     * @param minThreads the minimum number of threads (at least 1).
+     * @param maxThreads the maximum number of threads.
+     * @param targetWaitMillis the average queue wait, in milliseconds, above
+     * which the pool grows.
+     */
+    public AdaptivePoolExecutor(final String name, int minThreads,
+            int maxThreads, long targetWaitMillis) {
+        super(name);
+
+        if(minThreads < 1)
+            throw new IllegalArgumentException("minThreads < 1");
+        if(maxThreads < minThreads)
+            throw new IllegalArgumentException("maxThreads < minThreads");
+        if(targetWaitMillis < 0)
+            throw new IllegalArgumentException("targetWaitMillis < 0");
+
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetWaitNanos = targetWaitMillis * 1000000L;
+
+        /* The queue is unbounded, so the pool never grows beyond the core
+         * pool size by itself. The core pool size is what we adjust. */
+        this.pool = new ThreadPoolExecutor(minThreads, maxThreads, 1,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadNumber =
+                            new AtomicInteger(1);
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "jFUSE " + name + " " +
+                                threadNumber.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        this.adjustTask = new TimerTask() {
+            @Override
+            public void run() {
+                adjustPoolSize();
+            }
+        };
+        adjustTimer.scheduleAtFixedRate(adjustTask, ADJUST_INTERVAL_MILLIS,
+                ADJUST_INTERVAL_MILLIS);
+    }
+
+    @Override
+    protected void dispatch(Runnable operation) {
+        pool.execute(operation);
+    }
+
+    /**
+     * Compares the average wait since the last adjustment to the target and
+     * resizes the pool. Called by the adjustment timer. Synchronized so that
+     * the interval counters are consistent even if it is called from
+     * elsewhere.
+     */
+    private synchronized void adjustPoolSize() {
+        final long now = System.nanoTime();
+        final long last = lastAdjustTime;
+        final long queued = getQueueDepth();
+        final long started = getSubmittedCount() - queued;
+        final long totalWait = getTotalWaitNanos();
+        final long startedDelta = started - lastStartedCount;
+        final long waitDelta = totalWait - lastTotalWaitNanos;
+        lastAdjustTime = now;
+        lastStartedCount = started;
+        lastTotalWaitNanos = totalWait;
+
+        final int size = pool.getCorePoolSize();
+        final boolean idle = startedDelta <= 0 && queued == 0;
+        final long avgWait;
+        if(startedDelta > 0)
+            avgWait = waitDelta / startedDelta;
+        else if(queued > 0) {
+            /* Nothing started during the whole interval. */
+            avgWait = now - last;
+        }
+        else
+            avgWait = 0;
+
+        int newSize = size;
+        if(avgWait > targetWaitNanos && size < maxThreads)
+            newSize = Math.min(size * 2, maxThreads);
+        else if((idle || avgWait < targetWaitNanos / 4) && queued == 0 &&
+                size > minThreads)
+            newSize = size - 1;
+
+        if(newSize != size) {
+            Log.debug("AdaptivePoolExecutor \"" + getName() + "\": " +
+                    "resizing from " + size + " to " + newSize + " threads " +
+                    "(average wait " + avgWait + " ns).");
+            pool.setCorePoolSize(newSize);
+            resizeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the current target size of the pool.
+     */
+    public int getPoolSize() {
+        return pool.getCorePoolSize();
+    }
+
+    /**
+     * @return the number of threads currently running operations.
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * @return the number of times the pool has been resized.
+     */
+    public long getResizeCount() {
+        return resizeCount.get();
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Stops accepting new operations and stops adjusting the pool size.
+     * Operations already queued are still run.
+     */
+    public void shutdown() {
+        adjustTask.cancel();
+        pool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[poolSize=" + getPoolSize() +
+                ", active=" + getActiveCount() +
+                ", resizes=" + getResizeCount() + "]";
+    }
+}
@@ -20,6 +20,7 @@
 package org.catacombae.jfuse;
 
 import java.io.File;
+import java.util.HashSet;
 import org.catacombae.jfuse.types.fuse26.FUSEContext;
 import org.catacombae.jfuse.util.Log;
 
@@ -34,17 +35,26 @@ public class FUSE {
         JNILoader.ensureLoaded();
     }
 
-    private static final Object mountSync = new Object();
+    /**
+     * Absolute paths of the mount points currently served by this JVM. Any
+     * number of file systems may be mounted concurrently, each with its own
+     * native operations table and context, but not two at the same place.
+     */
+    private static final HashSet<String> activeMountPoints =
+            new HashSet<String>();
 
     /**
      * Convenience 'main' method to mount a FUSE file system. The argument
      * array <code>args</code> is assumed to be in the form { "mountpoint",
-     * "-ooption1", "-ooption2", ... }.
+     * "-ooption1", "-ooption2", ... }.<br>
+     * Unless "-s" is among the options, requests are dispatched from several
+     * FUSE worker threads, so <code>fileSystem</code> must be thread safe.
      * @param args          the argument array, i.e. the mountpoint followed by
      *                      zero or more options.
      * @param fileSystem    the file system to mount.
      */
     public static void main(String[] args, FUSE26FileSystem fileSystem) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
         Log.info("FUSE.main(...)");
         if(args.length < 1)
             throw new IllegalArgumentException("You need to specify the " +
@@ -60,37 +70,554 @@ public class FUSE {
         mountPoint = new File(mountPoint).getAbsolutePath();
         Log.debug("    \"" + mountPoint + "\"");
 
-        synchronized(mountSync) {
+        final String key = claimMountPoint(mountPoint);
+        try {
             Log.info("Calling mountNative26 with args:");
             for(int i = 0; i < adjustedArgs.length; ++i)
                 Log.info("  adjustedArgs[" + i + "] = \"" +
                         adjustedArgs[i] + "\"");
             Log.info("  ...");
-            boolean res = mount26(fileSystem, mountPoint, adjustedArgs);
+            boolean res = mount26(fileSystem, mountPoint, adjustedArgs,
+                    new FUSEOptions(), null);
             Log.info("  mountNative26 returned " + res + ".");
+        } finally {
+            releaseMountPoint(key);
         }
     }
 
+    /**
+     * Mounts <code>fileSystem</code> at <code>mountPoint</code> and serves it
+     * until it is unmounted. Several file systems may be mounted concurrently
+     * from different threads, as long as their mount points differ.<br>
+     * The file system is served by a pool of FUSE worker threads and its
+     * operations may be invoked concurrently, unless
+     * {@link FUSEOptions#setSingleThreaded(java.lang.Boolean)} is set.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @throws IllegalArgumentException if an operation executor is set in
+     * <code>options</code>.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
     public static void mount(FUSE26FileSystem fileSystem, String mountPoint,
             FUSEOptions options) {
-        // Never allow more than one mount at the same time.
-        synchronized(mountSync) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        checkNoOperationExecutor(options);
+        final String key = claimMountPoint(mountPoint);
+        try {
             Log.info("Calling mountNative26");
             boolean res = mount26(fileSystem, mountPoint,
-                    options.generateOptionStrings());
+                    options.generateOptionStrings(), options, null);
             Log.info("  mountNative26 returned " + res + ".");
+        } finally {
+            releaseMountPoint(key);
+        }
+    }
+
+    /**
+     * Mounts <code>fileSystem</code> at <code>mountPoint</code> from a new
+     * mount thread and returns immediately. The returned handle can be used
+     * to wait for the file system to come up, to unmount it and to wait for
+     * the mount thread to finish.<br>
+     * Just like with
+     * {@link #mount(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)},
+     * the operations may be invoked concurrently unless the options select
+     * single threaded mode.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return a handle to the mount.
+     * @throws IllegalArgumentException if an operation executor is set in
+     * <code>options</code>.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
+    public static MountHandle mountAsync(final FUSE26FileSystem fileSystem,
+            String mountPoint, final FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        checkNoOperationExecutor(options);
+        final String key = claimMountPoint(mountPoint);
+        final MountHandle handle = new MountHandle(key);
+
+        startMountThread(handle, new MountTask() {
+            public boolean mount() {
+                Log.info("Calling mountNative26");
+                boolean res = mount26(fileSystem, key,
+                        options.generateOptionStrings(), options, handle);
+                Log.info("  mountNative26 returned " + res + ".");
+                return res;
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Low level API version of
+     * {@link #mountAsync(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return a handle to the mount.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
+    public static MountHandle mountLowLevelAsync(
+            final FUSE26LowLevelFileSystem fileSystem, String mountPoint,
+            final FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        final String key = claimMountPoint(mountPoint);
+        final MountHandle handle = new MountHandle(key);
+
+        startMountThread(handle, new MountTask() {
+            public boolean mount() {
+                return mountLowLevel26(fileSystem, key, options, handle);
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Asynchronous reply version of
+     * {@link #mountLowLevelAsync(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return a handle to the mount.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
+    public static MountHandle mountLowLevelAsync(
+            final FUSE26AsyncReplyFileSystem fileSystem, String mountPoint,
+            final FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        final String key = claimMountPoint(mountPoint);
+        final MountHandle handle = new MountHandle(key);
+
+        startMountThread(handle, new MountTask() {
+            public boolean mount() {
+                return mountLowLevel26(fileSystem,
+                        fileSystem.getLowLevelCapabilities(), true, key,
+                        options, handle);
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Mounts a file system implementing the libfuse 3 API at
+     * <code>mountPoint</code> and serves it until it is unmounted. Just like
+     * {@link #mount(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)},
+     * several file systems may be mounted concurrently.<br>
+     * libfuse 3 moved several options from the mount options to
+     * {@link org.catacombae.jfuse.types.fuse3.FUSEConfig}, and rejects the
+     * options it no longer knows about.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @throws IllegalArgumentException if an operation executor is set in
+     * <code>options</code>.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 2.
+     * @see JNILoader#FUSE_VERSION_PROPERTY
+     */
+    public static void mount3(FUSE3FileSystem fileSystem, String mountPoint,
+            FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE3);
+        checkNoOperationExecutor(options);
+        final String key = claimMountPoint(mountPoint);
+        try {
+            mount3(fileSystem, key, options, null);
+        } finally {
+            releaseMountPoint(key);
+        }
+    }
+
+    /**
+     * libfuse 3 version of
+     * {@link #mountAsync(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return a handle to the mount.
+     * @throws IllegalArgumentException if an operation executor is set in
+     * <code>options</code>.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 2.
+     */
+    public static MountHandle mount3Async(final FUSE3FileSystem fileSystem,
+            String mountPoint, final FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE3);
+        checkNoOperationExecutor(options);
+        final String key = claimMountPoint(mountPoint);
+        final MountHandle handle = new MountHandle(key);
+
+        startMountThread(handle, new MountTask() {
+            public boolean mount() {
+                return mount3(fileSystem, key, options, handle);
+            }
+        });
+
+        return handle;
+    }
+
+    private static interface MountTask {
+        /** Mounts and serves the file system, returning the result. */
+        public boolean mount();
+    }
+
+    private static void startMountThread(final MountHandle handle,
+            final MountTask mountTask) {
+        final String key = handle.getMountPoint();
+        Thread mountThread = new Thread("jFUSE mount " + key) {
+            @Override
+            public void run() {
+                boolean res = false;
+                Throwable failure = null;
+                try {
+                    res = mountTask.mount();
+                } catch(Throwable t) {
+                    Log.error("Mount thread for \"" + key + "\" failed: " + t);
+                    failure = t;
+                } finally {
+                    releaseMountPoint(key);
+                    handle.terminated(res, failure);
+                }
+            }
+        };
+
+        handle.started(mountThread);
+        try {
+            mountThread.start();
+        } catch(RuntimeException e) {
+            releaseMountPoint(key);
+            handle.terminated(false, e);
+            throw e;
+        } catch(Error e) {
+            releaseMountPoint(key);
+            handle.terminated(false, e);
+            throw e;
         }
     }
 
     private static boolean mount26(FUSE26FileSystem fileSystem,
-            final String mountPoint, String[] optionStrings) {
+            final String mountPoint, String[] optionStrings,
+            FUSEOptions options, MountHandle mountHandle) {
         FUSE26Capabilities fuseCapabilities = fileSystem.getFUSECapabilities();
         MacFUSE20Capabilities macFuseCapabilities;
         if(fileSystem instanceof MacFUSE20FileSystem)
             macFuseCapabilities = ((MacFUSE20FileSystem)fileSystem).getMacFUSECapabilities();
         else
             macFuseCapabilities = null;
+        FUSE26BufferCapabilities bufferCapabilities;
+        if(fileSystem instanceof FUSE26BufferFileSystem)
+            bufferCapabilities = ((FUSE26BufferFileSystem)fileSystem).getBufferCapabilities();
+        else
+            bufferCapabilities = null;
+        FUSE29Capabilities fuse29Capabilities;
+        if(fileSystem instanceof FUSE29FileSystem)
+            fuse29Capabilities = ((FUSE29FileSystem)fileSystem).getFUSE29Capabilities();
+        else
+            fuse29Capabilities = null;
 
+        Thread shutdownHook = addUnmountHook(mountPoint);
+
+        final ForeignBackend foreign = JNILoader.getForeignBackend();
+        boolean res;
+        if(foreign != null && foreign.canMount(fileSystem, fuseCapabilities)) {
+            res = foreign.mount26(fileSystem, fuseCapabilities, mountPoint,
+                    optionStrings, options, mountHandle);
+        }
+        else {
+            res = mountNative26(fileSystem, mountPoint, optionStrings,
+                    fuseCapabilities, macFuseCapabilities, bufferCapabilities,
+                    fuse29Capabilities, options, mountHandle);
+        }
+
+        removeUnmountHook(shutdownHook);
+
+        return res;
+    }
+
+    private static boolean mount3(FUSE3FileSystem fileSystem,
+            String mountPoint, FUSEOptions options, MountHandle mountHandle) {
+        FUSE3Capabilities capabilities = fileSystem.getFUSE3Capabilities();
+
+        Log.info("Calling mountNative3");
+        Thread shutdownHook = addUnmountHook(mountPoint);
+
+        boolean res = mountNative3(fileSystem, mountPoint,
+                options.generateOptionStrings(), capabilities, options,
+                mountHandle);
+
+        removeUnmountHook(shutdownHook);
+        Log.info("  mountNative3 returned " + res + ".");
+
+        return res;
+    }
+
+    /**
+     * Mounts a file system implementing the inode based low level API. Just
+     * like {@link #mount(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)},
+     * this method returns when the file system has been unmounted.<br>
+     * If an executor is set with
+     * {@link FUSEOptions#setOperationExecutor(org.catacombae.jfuse.OperationExecutor)},
+     * the operations run on that executor instead of on the FUSE worker
+     * threads.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
+    public static void mountLowLevel(FUSE26LowLevelFileSystem fileSystem,
+            String mountPoint, FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        final String key = claimMountPoint(mountPoint);
+        try {
+            mountLowLevel26(fileSystem, mountPoint, options, null);
+        } finally {
+            releaseMountPoint(key);
+        }
+    }
+
+    /**
+     * Mounts a low level file system that replies to requests through
+     * {@link org.catacombae.jfuse.types.fuse26.FUSERequest} objects, possibly
+     * after the operation has returned. Just like
+     * {@link #mountLowLevel(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)},
+     * this method returns when the file system has been unmounted.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     */
+    public static void mountLowLevel(FUSE26AsyncReplyFileSystem fileSystem,
+            String mountPoint, FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        final String key = claimMountPoint(mountPoint);
+        try {
+            mountLowLevel26(fileSystem, fileSystem.getLowLevelCapabilities(),
+                    true, mountPoint, options, null);
+        } finally {
+            releaseMountPoint(key);
+        }
+    }
+
+    private static boolean mountLowLevel26(
+            FUSE26LowLevelFileSystem fileSystem, String mountPoint,
+            FUSEOptions options, MountHandle mountHandle) {
+        final OperationExecutor executor = options.getOperationExecutor();
+        if(executor == null) {
+            return mountLowLevel26(fileSystem,
+                    fileSystem.getLowLevelCapabilities(), false, mountPoint,
+                    options, mountHandle);
+        }
+        else if(options.getRequestRing() != null) {
+            throw new IllegalArgumentException("A request ring can not be " +
+                    "combined with an operation executor.");
+        }
+
+        /* Hand the operations off to the executor and reply asynchronously
+         * when they finish. */
+        Log.info("Dispatching operations to executor \"" +
+                executor.getName() + "\".");
+        return mountLowLevel26(
+                new OperationDispatchFileSystem(fileSystem, executor),
+                fileSystem.getLowLevelCapabilities(), true, mountPoint,
+                options, mountHandle);
+    }
+
+    /**
+     * @param fileSystem a FUSE26LowLevelFileSystem, or a
+     * FUSE26AsyncReplyFileSystem if <code>asyncReply</code> is true.
+     */
+    private static boolean mountLowLevel26(Object fileSystem,
+            FUSE26LowLevelCapabilities capabilities, boolean asyncReply,
+            String mountPoint, FUSEOptions options, MountHandle mountHandle) {
+        final RequestRing ring = options.getRequestRing();
+        if(ring != null) {
+            if(asyncReply)
+                throw new IllegalArgumentException("A request ring can only " +
+                        "be used with a FUSE26LowLevelFileSystem.");
+            ring.attach();
+        }
+
+        Log.info("Calling mountNativeLowLevel26");
+        Thread shutdownHook = addUnmountHook(mountPoint);
+
+        boolean res;
+        try {
+            res = mountNativeLowLevel26(fileSystem, mountPoint,
+                    options.generateOptionStrings(), capabilities, asyncReply,
+                    options, mountHandle);
+        } finally {
+            if(ring != null)
+                ring.detach();
+        }
+
+        removeUnmountHook(shutdownHook);
+        Log.info("  mountNativeLowLevel26 returned " + res + ".");
+
+        return res;
+    }
+
+    /**
+     * Mounts a low level file system without serving it. The returned session
+     * is driven by threads of the application, which receive requests from the
+     * kernel and process them, see {@link FUSESession}. Operations are
+     * handed to the executor set with
+     * {@link FUSEOptions#setOperationExecutor(org.catacombae.jfuse.OperationExecutor)},
+     * if any, just as when mounting with
+     * {@link #mountLowLevel(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+     * The threading options of <code>options</code> are ignored.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return the new session.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     * @throws RuntimeException if the file system could not be mounted.
+     */
+    public static FUSESession openSession(FUSE26LowLevelFileSystem fileSystem,
+            String mountPoint, FUSEOptions options) {
+        final OperationExecutor executor = options.getOperationExecutor();
+        if(executor == null) {
+            return openSession26(fileSystem,
+                    fileSystem.getLowLevelCapabilities(), false, mountPoint,
+                    options);
+        }
+
+        return openSession26(
+                new OperationDispatchFileSystem(fileSystem, executor),
+                fileSystem.getLowLevelCapabilities(), true, mountPoint,
+                options);
+    }
+
+    /**
+     * Asynchronous reply version of
+     * {@link #openSession(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+     *
+     * @param fileSystem the file system to mount.
+     * @param mountPoint the directory to mount the file system at.
+     * @param options the mount options.
+     * @return the new session.
+     * @throws IllegalStateException if another file system is already mounted
+     * at <code>mountPoint</code> by this JVM, or if the native library binds
+     * to libfuse 3.
+     * @throws RuntimeException if the file system could not be mounted.
+     */
+    public static FUSESession openSession(
+            FUSE26AsyncReplyFileSystem fileSystem, String mountPoint,
+            FUSEOptions options) {
+        return openSession26(fileSystem, fileSystem.getLowLevelCapabilities(),
+                true, mountPoint, options);
+    }
+
+    private static FUSESession openSession26(Object fileSystem,
+            FUSE26LowLevelCapabilities capabilities, boolean asyncReply,
+            String mountPoint, FUSEOptions options) {
+        checkFUSEVersion(JNILoader.FUSEVersion.FUSE2);
+        if(options.getRequestRing() != null)
+            throw new IllegalArgumentException("A request ring can not be " +
+                    "used with a session.");
+
+        final String key = claimMountPoint(mountPoint);
+        boolean success = false;
+        try {
+            Thread shutdownHook = addUnmountHook(key);
+
+            Log.info("Calling openSessionNative26");
+            long nativeSession = openSessionNative26(fileSystem, key,
+                    options.generateOptionStrings(), capabilities, asyncReply,
+                    options);
+            Log.info("  openSessionNative26 returned " + nativeSession + ".");
+            if(nativeSession == 0) {
+                removeUnmountHook(shutdownHook);
+                throw new RuntimeException("Could not mount file system at " +
+                        "\"" + key + "\".");
+            }
+
+            FUSESession session =
+                    new FUSESession(nativeSession, key, shutdownHook);
+            success = true;
+            return session;
+        } finally {
+            if(!success)
+                releaseMountPoint(key);
+        }
+    }
+
+    /**
+     * Checks that the loaded native library binds to the libfuse version that
+     * an API needs.
+     *
+     * @throws IllegalStateException if it binds to another version.
+     */
+    private static void checkFUSEVersion(JNILoader.FUSEVersion required) {
+        final JNILoader.FUSEVersion loaded = JNILoader.getFUSEVersion();
+        if(loaded != required) {
+            throw new IllegalStateException("This API requires libfuse " +
+                    required.getName() + ", but the jFUSE native library " +
+                    "in use binds to " + (loaded != null ? "libfuse " +
+                    loaded.getName() : "no libfuse version") + ". See " +
+                    "JNILoader.FUSE_VERSION_PROPERTY.");
+        }
+    }
+
+    /**
+     * Rejects an operation executor for a file system that replies by
+     * returning from its operations. libfuse sends the reply when the
+     * operation returns, so the worker thread would have to wait for the
+     * executor and nothing would run concurrently that doesn't already.
+     */
+    private static void checkNoOperationExecutor(FUSEOptions options) {
+        if(options.getOperationExecutor() != null) {
+            throw new IllegalArgumentException("An operation executor can " +
+                    "only be used with a FUSE26LowLevelFileSystem.");
+        }
+    }
+
+    private static String claimMountPoint(String mountPoint) {
+        final String key = new File(mountPoint).getAbsolutePath();
+        synchronized(activeMountPoints) {
+            if(!activeMountPoints.add(key))
+                throw new IllegalStateException("A file system is already " +
+                        "mounted at \"" + key + "\".");
+        }
+
+        return key;
+    }
+
+    static void releaseMountPoint(String key) {
+        synchronized(activeMountPoints) {
+            activeMountPoints.remove(key);
+        }
+    }
+
+    private static Thread addUnmountHook(final String mountPoint) {
         Thread shutdownHook = new Thread() {
             @Override
             public void run() {
@@ -106,26 +633,42 @@ public class FUSE {
         };
 
         Runtime.getRuntime().addShutdownHook(shutdownHook);
+        return shutdownHook;
+    }
 
-        boolean res = mountNative26(fileSystem, mountPoint, optionStrings,
-                fuseCapabilities, macFuseCapabilities);
-
+    static void removeUnmountHook(Thread shutdownHook) {
         try {
             if(!Runtime.getRuntime().removeShutdownHook(shutdownHook))
-                Log.error("FUSE.mount26: Could not remove shutdown hook!");
+                Log.error("FUSE: Could not remove shutdown hook!");
         } catch(IllegalStateException e) {
             // No worries. This happens when the user presses "Ctrl-C".
             Log.debug("Shutdown hook was not removed since we are in the " +
                     "process of shutting down the JVM.");
         }
-
-        return res;
     }
 
     private static native boolean mountNative26(FUSE26FileSystem fileSystem,
             String mountPoint, String[] optionStrings,
             FUSE26Capabilities fuseCapabilities,
-            MacFUSE20Capabilities macFuseCapabilities);
+            MacFUSE20Capabilities macFuseCapabilities,
+            FUSE26BufferCapabilities bufferCapabilities,
+            FUSE29Capabilities fuse29Capabilities, FUSEOptions options,
+            MountHandle mountHandle);
+
+    private static native boolean mountNativeLowLevel26(Object fileSystem,
+            String mountPoint, String[] optionStrings,
+            FUSE26LowLevelCapabilities capabilities, boolean asyncReply,
+            FUSEOptions options, MountHandle mountHandle);
+
+    private static native long openSessionNative26(Object fileSystem,
+            String mountPoint, String[] optionStrings,
+            FUSE26LowLevelCapabilities capabilities, boolean asyncReply,
+            FUSEOptions options);
+
+    private static native boolean mountNative3(FUSE3FileSystem fileSystem,
+            String mountPoint, String[] optionStrings,
+            FUSE3Capabilities capabilities, FUSEOptions options,
+            MountHandle mountHandle);
 
     /**
      * Get the current context
@@ -136,12 +679,19 @@ public class FUSE {
      * @return the context
      */
     public static FUSEContext getContext() {
+        final ForeignBackend foreign = JNILoader.getForeignBackend();
+        if(foreign != null) {
+            final FUSEContext context = foreign.getContext();
+            if(context != null)
+                return context;
+        }
+
         return getContextNative();
     }
 
     private static native FUSEContext getContextNative();
 
-    private static boolean unmount(String mountPoint, boolean force) {
+    static boolean unmount(String mountPoint, boolean force) {
         return unmountNative(mountPoint, force);
     }
 
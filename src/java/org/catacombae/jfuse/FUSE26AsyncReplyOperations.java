@@ -0,0 +1,177 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse26.FUSERequest;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Variant of {@link FUSE26LowLevelOperations} where the reply is decoupled
+ * from the call. Each method gets the pending {@link FUSERequest} and returns
+ * without a result. The file system replies through the request when the
+ * result is known, which may be after the method has returned and from any
+ * thread. A few FUSE worker threads can thus keep a large number of requests
+ * to a slow backend in flight.<br>
+ * Every request must be replied to exactly once (forget with
+ * {@link FUSERequest#replyNone()}). If a method throws an exception before
+ * replying, the request is replied to with EIO.<br>
+ * The arguments other than the request (names, data buffers, Stat and
+ * FUSEFileInfo objects) are only valid for the duration of the call, so
+ * anything that is needed later must be copied.
+ *
+ * @author Erik Larsson
+ */
+public interface FUSE26AsyncReplyOperations {
+    /**
+     * Look up a directory entry by name and get its attributes.<br>
+     * Valid replies: {@link FUSERequest#replyEntry(org.catacombae.jfuse.types.fuse26.FUSEEntryReply)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param parent <b>(fuse_ino_t)</b> inode number of the parent directory
+     * @param name <b>(const char*)</b> the name to look up
+     */
+    public void lookup(FUSERequest req, long parent, ByteBuffer name);
+
+    /**
+     * Forget about an inode. See
+     * {@link FUSE26LowLevelOperations#forget(long, long)}.<br>
+     * Valid replies: {@link FUSERequest#replyNone()}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param nlookup <b>(unsigned long)</b> the number of lookups to forget
+     */
+    public void forget(FUSERequest req, long ino, long nlookup);
+
+    /**
+     * Get file attributes.<br>
+     * Valid replies: {@link FUSERequest#replyAttr(org.catacombae.jfuse.types.fuse26.FUSEAttrReply)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     */
+    public void getattr(FUSERequest req, long ino);
+
+    /**
+     * Set file attributes. See
+     * {@link FUSE26LowLevelOperations#setattr(long, org.catacombae.jfuse.types.system.Stat, int, org.catacombae.jfuse.types.fuse26.FUSEFileInfo, org.catacombae.jfuse.types.fuse26.FUSEAttrReply)}.<br>
+     * Valid replies: {@link FUSERequest#replyAttr(org.catacombae.jfuse.types.fuse26.FUSEAttrReply)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param attr <b>(struct stat*)</b> the attributes
+     * @param toSet <b>(int)</b> bit mask of attributes which should be set
+     * @param fi <b>(struct fuse_file_info*)</b> file information, or null
+     */
+    public void setattr(FUSERequest req, long ino, Stat attr, int toSet,
+            FUSEFileInfo fi);
+
+    /**
+     * Open a file.<br>
+     * Valid replies: {@link FUSERequest#replyOpen(org.catacombae.jfuse.types.fuse26.FUSEFileInfo)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void open(FUSERequest req, long ino, FUSEFileInfo fi);
+
+    /**
+     * Read data.<br>
+     * Valid replies: {@link FUSERequest#replyBuf(java.nio.ByteBuffer)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param size <b>(size_t)</b> the number of bytes to read
+     * @param off <b>(off_t)</b> offset to read from
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void read(FUSERequest req, long ino, int size, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Write data.<br>
+     * Valid replies: {@link FUSERequest#replyWrite(long)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param src <b>(const char*)</b> the data to write
+     * @param off <b>(off_t)</b> offset to write to
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void write(FUSERequest req, long ino, ByteBuffer src, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Release an open file.<br>
+     * Valid replies: {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void release(FUSERequest req, long ino, FUSEFileInfo fi);
+
+    /**
+     * Open a directory.<br>
+     * Valid replies: {@link FUSERequest#replyOpen(org.catacombae.jfuse.types.fuse26.FUSEFileInfo)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void opendir(FUSERequest req, long ino, FUSEFileInfo fi);
+
+    /**
+     * Read directory. The reply is built in a
+     * {@link org.catacombae.jfuse.types.fuse26.FUSEDirReply} over a buffer of
+     * at most <code>size</code> bytes.<br>
+     * Valid replies: {@link FUSERequest#replyDir(org.catacombae.jfuse.types.fuse26.FUSEDirReply)},
+     * {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param size <b>(size_t)</b> the maximum size of the reply
+     * @param off <b>(off_t)</b> offset to continue reading the directory
+     * stream from
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void readdir(FUSERequest req, long ino, int size, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Release an open directory.<br>
+     * Valid replies: {@link FUSERequest#replyErr(int)}.
+     *
+     * @param req the request.
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     */
+    public void releasedir(FUSERequest req, long ino, FUSEFileInfo fi);
+}
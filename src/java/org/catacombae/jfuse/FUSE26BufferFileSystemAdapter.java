@@ -0,0 +1,113 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FileInfoBuffer;
+import org.catacombae.jfuse.types.system.StatBuffer;
+
+/**
+ * Adapter for file systems that implement some of the operations in
+ * {@link FUSE26BufferOperations}. Just like with {@link FUSEFileSystemAdapter},
+ * only the methods that are overridden are registered with FUSE.
+ *
+ * @author erik
+ */
+public abstract class FUSE26BufferFileSystemAdapter
+        extends FUSEFileSystemAdapter implements FUSE26BufferFileSystem {
+
+    public FUSE26BufferCapabilities getBufferCapabilities() {
+        FUSE26BufferCapabilities c = new FUSE26BufferCapabilities();
+
+        // Find out our capabilities through reflection.
+        Class<FUSE26BufferOperations> baseClass = FUSE26BufferOperations.class;
+        Class<?> subClass = this.getClass();
+
+        while(!subClass.equals(FUSE26BufferFileSystemAdapter.class)) {
+            for(Method m : baseClass.getDeclaredMethods()) {
+                try {
+                    Field f = c.getClass().getField(m.getName());
+
+                    try {
+                        try {
+                            subClass.getDeclaredMethod(m.getName(), m.getParameterTypes());
+                            f.setBoolean(c, true);
+                        } catch(NoSuchMethodException e) {
+                            //f.setBoolean(c, false);
+                        }
+                    } catch(IllegalAccessException iae) {
+                        throw new RuntimeException(iae);
+                    }
+                } catch(NoSuchFieldException e) {
+                    throw new RuntimeException("No field \"" + m.getName() +
+                            "\" in FUSE26BufferCapabilities.", e);
+                }
+            }
+
+            subClass = subClass.getSuperclass();
+        }
+
+        return c;
+    }
+
+    public int getattr(ByteBuffer path, StatBuffer stat) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int fgetattr(ByteBuffer path, StatBuffer stat, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int open(ByteBuffer path, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int create(ByteBuffer path, short mode, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int read(ByteBuffer path, ByteBuffer dest, long off,
+            FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int write(ByteBuffer path, ByteBuffer src, long off,
+            FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int flush(ByteBuffer path, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int release(ByteBuffer path, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int fsync(ByteBuffer path, boolean datasync, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int ftruncate(ByteBuffer path, long length, FileInfoBuffer fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+}
@@ -0,0 +1,162 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FileInfoBuffer;
+import org.catacombae.jfuse.types.system.StatBuffer;
+
+/**
+ * Buffer based variants of the most frequently called {@link FUSE26Operations}.
+ * Instead of {@link org.catacombae.jfuse.types.system.Stat} and
+ * {@link org.catacombae.jfuse.types.fuse26.FUSEFileInfo} objects, which are
+ * marshalled field by field through JNI, these methods get off-heap views
+ * ({@link StatBuffer}, {@link FileInfoBuffer}) that the native side converts
+ * to and from the C structures directly.<br>
+ * A file system that implements this interface in addition to
+ * {@link FUSE26Operations} will have the buffer variant of an operation called
+ * instead of the regular one whenever it implements it.<br>
+ * The buffer views are owned by the calling thread and reused between calls,
+ * so they must not be retained after a method has returned.
+ *
+ * @see FUSE26Operations
+ * @author Erik Larsson
+ */
+public interface FUSE26BufferOperations {
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#getattr(java.nio.ByteBuffer, org.catacombae.jfuse.types.system.Stat)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param stat <b>(struct stat*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int getattr(ByteBuffer path, StatBuffer stat);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#fgetattr(java.nio.ByteBuffer, org.catacombae.jfuse.types.system.Stat, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param stat <b>(struct stat*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fgetattr(ByteBuffer path, StatBuffer stat, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#open(java.nio.ByteBuffer, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int open(ByteBuffer path, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#create(java.nio.ByteBuffer, short, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param mode <b>(mode_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int create(ByteBuffer path, short mode, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#read(java.nio.ByteBuffer, java.nio.ByteBuffer, long, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param dest <b>(char*)</b>
+     * @param off <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the number of bytes read, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public int read(ByteBuffer path, ByteBuffer dest, long off,
+            FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#write(java.nio.ByteBuffer, java.nio.ByteBuffer, long, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param src <b>(const char*)</b>
+     * @param off <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the number of bytes written, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public int write(ByteBuffer path, ByteBuffer src, long off,
+            FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#flush(java.nio.ByteBuffer, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int flush(ByteBuffer path, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#release(java.nio.ByteBuffer, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int release(ByteBuffer path, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#fsync(java.nio.ByteBuffer, boolean, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param datasync <b>(int)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fsync(ByteBuffer path, boolean datasync, FileInfoBuffer fi);
+
+    /**
+     * Buffer variant of
+     * {@link FUSE26Operations#ftruncate(java.nio.ByteBuffer, long, org.catacombae.jfuse.types.fuse26.FUSEFileInfo)}.
+     *
+     * @param path <b>(const char*)</b>
+     * @param length <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int ftruncate(ByteBuffer path, long length, FileInfoBuffer fi);
+}
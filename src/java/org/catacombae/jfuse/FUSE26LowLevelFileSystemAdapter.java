@@ -0,0 +1,120 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEAttrReply;
+import org.catacombae.jfuse.types.fuse26.FUSEDirReply;
+import org.catacombae.jfuse.types.fuse26.FUSEEntryReply;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Adapter for low level file systems. Only the methods that are overridden are
+ * registered with FUSE, and FUSE supplies default replies for the others.
+ *
+ * @author Erik Larsson
+ */
+public abstract class FUSE26LowLevelFileSystemAdapter
+        implements FUSE26LowLevelFileSystem {
+
+    public FUSE26LowLevelCapabilities getLowLevelCapabilities() {
+        FUSE26LowLevelCapabilities c = new FUSE26LowLevelCapabilities();
+
+        // Find out our capabilities through reflection.
+        Class<FUSE26LowLevelOperations> baseClass =
+                FUSE26LowLevelOperations.class;
+        Class<?> subClass = this.getClass();
+
+        while(!subClass.equals(FUSE26LowLevelFileSystemAdapter.class)) {
+            for(Method m : baseClass.getDeclaredMethods()) {
+                try {
+                    Field f = c.getClass().getField(m.getName());
+
+                    try {
+                        try {
+                            subClass.getDeclaredMethod(m.getName(), m.getParameterTypes());
+                            f.setBoolean(c, true);
+                        } catch(NoSuchMethodException e) {
+                            //f.setBoolean(c, false);
+                        }
+                    } catch(IllegalAccessException iae) {
+                        throw new RuntimeException(iae);
+                    }
+                } catch(NoSuchFieldException e) {
+                    throw new RuntimeException("No field \"" + m.getName() +
+                            "\" in FUSE26LowLevelCapabilities.", e);
+                }
+            }
+
+            subClass = subClass.getSuperclass();
+        }
+
+        return c;
+    }
+
+    public int lookup(long parent, ByteBuffer name, FUSEEntryReply reply) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public void forget(long ino, long nlookup) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int getattr(long ino, FUSEAttrReply reply) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int setattr(long ino, Stat attr, int toSet, FUSEFileInfo fi,
+            FUSEAttrReply reply) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int open(long ino, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int read(long ino, ByteBuffer dest, long off, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int write(long ino, ByteBuffer src, long off, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int release(long ino, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int opendir(long ino, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int readdir(long ino, FUSEDirReply reply, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int releasedir(long ino, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+}
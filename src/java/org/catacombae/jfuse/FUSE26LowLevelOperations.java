@@ -0,0 +1,206 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEAttrReply;
+import org.catacombae.jfuse.types.fuse26.FUSEDirReply;
+import org.catacombae.jfuse.types.fuse26.FUSEEntryReply;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * The inode based FUSE 2.6 low level API (<code>fuse_lowlevel_ops</code>).
+ * Unlike {@link FUSE26Operations}, files are identified by node IDs instead of
+ * paths, so the FUSE library doesn't have to maintain a path tree and the file
+ * system doesn't have to resolve paths for every request.<br>
+ * The node ID {@link #FUSE_ROOT_ID} refers to the root of the file system. All
+ * other node IDs are chosen by the file system when replying to
+ * {@link #lookup(long, java.nio.ByteBuffer, org.catacombae.jfuse.types.fuse26.FUSEEntryReply)}
+ * and stay valid until {@link #forget(long, long)} has dropped all lookups of
+ * the node.<br>
+ * The methods returning <code>int</code> return a negated value from
+ * {@link FUSEErrorValues} on failure, in which case the error is sent as the
+ * reply. Otherwise the reply is built from the reply object passed to the
+ * method (or the return value, for read and write).<br>
+ * Just like for {@link FUSE26Operations}, argument and reply objects are only
+ * valid for the duration of a call. {@link FUSE#getContext()} is not available
+ * to low level file systems.
+ *
+ * @author Erik Larsson
+ */
+public interface FUSE26LowLevelOperations {
+    /** The node ID of the root directory. */
+    public static final long FUSE_ROOT_ID = 1;
+
+    /* Flags for the toSet argument of setattr. */
+    public static final int FUSE_SET_ATTR_MODE = (1 << 0);
+    public static final int FUSE_SET_ATTR_UID = (1 << 1);
+    public static final int FUSE_SET_ATTR_GID = (1 << 2);
+    public static final int FUSE_SET_ATTR_SIZE = (1 << 3);
+    public static final int FUSE_SET_ATTR_ATIME = (1 << 4);
+    public static final int FUSE_SET_ATTR_MTIME = (1 << 5);
+    public static final int FUSE_SET_ATTR_ATIME_NOW = (1 << 7);
+    public static final int FUSE_SET_ATTR_MTIME_NOW = (1 << 8);
+
+    /**
+     * Look up a directory entry by name and get its attributes.
+     *
+     * @param parent <b>(fuse_ino_t)</b> inode number of the parent directory
+     * @param name <b>(const char*)</b> the name to look up
+     * @param reply <b>(struct fuse_entry_param*)</b> the entry to reply with
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int lookup(long parent, ByteBuffer name, FUSEEntryReply reply);
+
+    /**
+     * Forget about an inode. The nlookup parameter indicates the number of
+     * lookups previously performed on this inode. If the file system
+     * implements inode lifetimes, it is recommended that inodes acquire a
+     * single reference on each lookup, and lose nlookup references on each
+     * forget.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param nlookup <b>(unsigned long)</b> the number of lookups to forget
+     */
+    public void forget(long ino, long nlookup);
+
+    /**
+     * Get file attributes.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param reply the attributes to reply with
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int getattr(long ino, FUSEAttrReply reply);
+
+    /**
+     * Set file attributes. In the 'attr' argument only members indicated by
+     * the 'toSet' bitmask ({@link #FUSE_SET_ATTR_MODE}, ...) contain valid
+     * values. Other members contain undefined values.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param attr <b>(struct stat*)</b> the attributes
+     * @param toSet <b>(int)</b> bit mask of attributes which should be set
+     * @param fi <b>(struct fuse_file_info*)</b> file information, or null if
+     * the attributes aren't set through an open file
+     * @param reply the resulting attributes to reply with
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int setattr(long ino, Stat attr, int toSet, FUSEFileInfo fi,
+            FUSEAttrReply reply);
+
+    /**
+     * Open a file. Open flags (with the exception of O_CREAT, O_EXCL, O_NOCTTY
+     * and O_TRUNC) are available in fi.flags. The file system may store an
+     * arbitrary file handle in fi.fh, and use this in other file operations
+     * (read, write, release).
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int open(long ino, FUSEFileInfo fi);
+
+    /**
+     * Read data. Read should send exactly the number of bytes requested
+     * (<code>dest.remaining()</code>) except on EOF or error, otherwise the
+     * rest of the data will be substituted with zeroes.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param dest <b>(char*)</b> the buffer to read into
+     * @param off <b>(off_t)</b> offset to read from
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return the number of bytes read, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public int read(long ino, ByteBuffer dest, long off, FUSEFileInfo fi);
+
+    /**
+     * Write data. Write should return exactly the number of bytes requested
+     * except on error.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param src <b>(const char*)</b> the data to write
+     * @param off <b>(off_t)</b> offset to write to
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return the number of bytes written, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public int write(long ino, ByteBuffer src, long off, FUSEFileInfo fi);
+
+    /**
+     * Release an open file. Called when there are no more references to an
+     * open file: all file descriptors are closed and all memory mappings are
+     * unmapped. For every open call there will be exactly one release call.
+     * An error return is not passed on to the close() system call.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int release(long ino, FUSEFileInfo fi);
+
+    /**
+     * Open a directory. The file system may store an arbitrary file handle in
+     * fi.fh, and use this in other directory operations (readdir,
+     * releasedir).
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int opendir(long ino, FUSEFileInfo fi);
+
+    /**
+     * Read directory. Entries are added to <code>reply</code> until it is
+     * full or the end of the stream is reached. Returning successfully without
+     * adding any entries signals the end of the stream. The offset passed to
+     * {@link FUSEDirReply#add(byte[], org.catacombae.jfuse.types.system.Stat, long)}
+     * is the <code>off</code> of the following readdir call.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param reply <b>(char*, size_t)</b> the directory entries to reply with
+     * @param off <b>(off_t)</b> offset to continue reading the directory
+     * stream from
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int readdir(long ino, FUSEDirReply reply, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Release an open directory. For every opendir call there will be exactly
+     * one releasedir call.
+     *
+     * @param ino <b>(fuse_ino_t)</b> the inode number
+     * @param fi <b>(struct fuse_file_info*)</b> file information
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int releasedir(long ino, FUSEFileInfo fi);
+}
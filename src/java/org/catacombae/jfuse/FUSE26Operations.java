@@ -39,7 +39,23 @@ import java.nio.ByteBuffer;
 
 /**
  * All methods that return an <code>int</code> must return a negated int value from
- * {@link FUSEErrorValues} when an error condition occurs.
+ * {@link FUSEErrorValues} when an error condition occurs.<br>
+ * Unless the file system is mounted single threaded (see
+ * {@link FUSEOptions#setSingleThreaded(java.lang.Boolean)}), the methods may be
+ * invoked concurrently from several FUSE worker threads.<br>
+ * The argument objects passed to the methods (such as {@link Stat},
+ * {@link FUSEFileInfo}, {@link Timespec}, {@link StatVFS}, {@link Flock} and
+ * the path buffers) are only valid for the duration of the call. Implementations
+ * must not keep references to them after returning, since they may be reused
+ * for later calls (see
+ * {@link FUSEOptions#setReuseArgumentObjects(boolean)}).<br>
+ * The path is the part of the path buffer between its position and its limit.
+ * The capacity of a path buffer may be larger than the path. When path
+ * buffers are reused (see {@link FUSEOptions#setReusePathBuffers(boolean)}),
+ * every call on a worker thread gets the same buffer instance for a path
+ * argument, and the next call overwrites its contents, position and limit.
+ * This also applies to duplicates and slices of the buffer. A file system
+ * that needs a path after returning must copy its bytes during the call.
  * 
  * @author Erik Larsson
  */
@@ -592,6 +608,9 @@ public interface FUSE26Operations extends SystemConstants {
      *
      * Introduced in version 2.3
      * </pre>
+     * Large directories should be filled through a
+     * {@link org.catacombae.jfuse.types.fuse26.FUSEFillDirBatch}, which passes
+     * many entries to the filler in a single native call.
      *
      * @param path <b>(const char*)</b>
      * @param filler <b>(fuse_fill_dir_t)</b>
@@ -0,0 +1,91 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse29.FUSEBufVec;
+import org.catacombae.jfuse.types.fuse29.FUSEWriteBuf;
+
+/**
+ * Adapter for file systems that implement some of the operations in
+ * {@link FUSE29Operations}. Just like with {@link FUSEFileSystemAdapter}, only
+ * the methods that are overridden are registered with FUSE.
+ *
+ * @author erik
+ */
+public abstract class FUSE29FileSystemAdapter extends FUSEFileSystemAdapter
+        implements FUSE29FileSystem {
+
+    public FUSE29Capabilities getFUSE29Capabilities() {
+        FUSE29Capabilities c = new FUSE29Capabilities();
+
+        // Find out our capabilities through reflection.
+        Class<FUSE29Operations> baseClass = FUSE29Operations.class;
+        Class<?> subClass = this.getClass();
+
+        while(!subClass.equals(FUSE29FileSystemAdapter.class)) {
+            for(Method m : baseClass.getDeclaredMethods()) {
+                try {
+                    Field f = c.getClass().getField(m.getName());
+
+                    try {
+                        try {
+                            subClass.getDeclaredMethod(m.getName(), m.getParameterTypes());
+                            f.setBoolean(c, true);
+                        } catch(NoSuchMethodException e) {
+                            //f.setBoolean(c, false);
+                        }
+                    } catch(IllegalAccessException iae) {
+                        throw new RuntimeException(iae);
+                    }
+                } catch(NoSuchFieldException e) {
+                    throw new RuntimeException("No field \"" + m.getName() +
+                            "\" in FUSE29Capabilities.", e);
+                }
+            }
+
+            subClass = subClass.getSuperclass();
+        }
+
+        return c;
+    }
+
+    public int read_buf(ByteBuffer path, FUSEBufVec bufv, long size, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int write_buf(ByteBuffer path, FUSEWriteBuf buf, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public int fallocate(ByteBuffer path, int mode, long off, long len,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public long lseek(ByteBuffer path, long off, int whence, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse29.FUSEBufVec;
+import org.catacombae.jfuse.types.fuse29.FUSEWriteBuf;
+
+/**
+ * FUSE 2.9 extensions to FUSE operations. These operations will only be called
+ * if jFUSE has been built against FUSE 2.9 or later.<br>
+ * The buffer vector variants of read and write let the file system hand
+ * libfuse a file descriptor region instead of the data itself, which libfuse
+ * can then splice(2) between the backing file and the FUSE device without the
+ * data passing through the JVM. When either method is implemented, splicing is
+ * requested from the kernel in the 'init' operation (it can still be turned off
+ * with the mount options "no_splice_write" and "no_splice_read").
+ *
+ * @see FUSE26Operations
+ * @author Erik Larsson
+ */
+public interface FUSE29Operations {
+    /**
+     * Store data from an open file in a buffer vector.<br>
+     * Similar to the read() method, but instead of copying the data into a
+     * supplied buffer, the file system adds the regions to be returned to
+     * <code>bufv</code>, either as file descriptor regions (which are spliced
+     * if possible) or as data in memory. Data beyond <code>size</code> bytes is
+     * ignored. A vector with no buffers means end of file.<br>
+     * File descriptors added to the vector are used after this method has
+     * returned, so they must stay open at least until the next call for the
+     * same file.<br>
+     * Preferred over read() when implemented.
+     *
+     * @param path <b>(const char*)</b>
+     * @param bufv <b>(struct fuse_bufvec**)</b>
+     * @param size <b>(size_t)</b>
+     * @param off <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int read_buf(ByteBuffer path, FUSEBufVec bufv, long size, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Write contents of buffer to an open file.<br>
+     * Similar to the write() method, but the data is passed in a
+     * {@link FUSEWriteBuf}, which can be copied straight to a file descriptor
+     * (using splice(2) if the data is in a pipe) or into a Java buffer. The
+     * <code>buf</code> object is only valid until this method returns.<br>
+     * Preferred over write() when implemented.
+     *
+     * @param path <b>(const char*)</b>
+     * @param buf <b>(struct fuse_bufvec*)</b>
+     * @param off <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the number of bytes written, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public int write_buf(ByteBuffer path, FUSEWriteBuf buf, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * Allocates space for an open file, as fallocate(2) does.<br>
+     * <code>mode</code> is 0 or a combination of
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_KEEP_SIZE},
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_PUNCH_HOLE}
+     * and
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_ZERO_RANGE}.
+     * With mode 0 the range is allocated and the file is extended if the range
+     * ends after end of file. A punched hole reads back as zeros and frees the
+     * storage of the range, which is how sparse files such as disk images are
+     * trimmed. Modes that the file system doesn't support should be answered
+     * with EOPNOTSUPP.
+     *
+     * @param path <b>(const char*)</b>
+     * @param mode <b>(int)</b>
+     * @param off <b>(off_t)</b>
+     * @param len <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fallocate(ByteBuffer path, int mode, long off, long len,
+            FUSEFileInfo fi);
+
+    /**
+     * Finds the next data or hole in an open file, as lseek(2) does with
+     * <code>whence</code> set to
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#SEEK_DATA} or
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#SEEK_HOLE}.
+     * The end of file counts as a hole. Offsets at or after end of file are
+     * answered with ENXIO.<br>
+     * libfuse 2.x has no lseek operation, so this method is only called by
+     * {@link org.catacombae.jfuse.wire.FUSEKernelSession}. Without it the
+     * kernel treats the whole file as data.
+     *
+     * @param path <b>(const char*)</b>
+     * @param off <b>(off_t)</b>
+     * @param whence <b>(int)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the resulting offset, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public long lseek(ByteBuffer path, long off, int whence, FUSEFileInfo fi);
+}
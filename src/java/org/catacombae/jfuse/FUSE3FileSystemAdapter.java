@@ -0,0 +1,271 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo;
+import org.catacombae.jfuse.types.fuse3.FUSE3FillDir;
+import org.catacombae.jfuse.types.fuse3.FUSEConfig;
+import org.catacombae.jfuse.types.system.Flock;
+import org.catacombae.jfuse.types.system.LongRef;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatVFS;
+import org.catacombae.jfuse.types.system.Timespec;
+
+/**
+ * Adapter for file systems that implement some of the operations in
+ * {@link FUSE3Operations}. Just like with {@link FUSEFileSystemAdapter}, only
+ * the methods that are overridden are registered with FUSE.
+ *
+ * @author erik
+ */
+public abstract class FUSE3FileSystemAdapter implements FUSE3FileSystem {
+
+    //@Override
+    public int getattr(ByteBuffer path, Stat stat, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int readlink(ByteBuffer path, ByteBuffer buffer) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int mknod(ByteBuffer path, short fileMode, long deviceNumber) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int mkdir(ByteBuffer path, short createMode) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int unlink(ByteBuffer path) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int rmdir(ByteBuffer path) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int symlink(ByteBuffer sourcePath, ByteBuffer destPath) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int rename(ByteBuffer oldPath, ByteBuffer newPath, int flags) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int link(ByteBuffer sourcePath, ByteBuffer destPath) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int chmod(ByteBuffer path, short newMode, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int chown(ByteBuffer path, long userId, long groupId,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int truncate(ByteBuffer path, long newSize, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int open(ByteBuffer path, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int read(ByteBuffer path, ByteBuffer dest, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int write(ByteBuffer path, ByteBuffer src, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int statfs(ByteBuffer path, StatVFS stat) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int flush(ByteBuffer path, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int release(ByteBuffer path, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int fsync(ByteBuffer path, boolean datasync, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int setxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value,
+            int flags) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int getxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int listxattr(ByteBuffer path, ByteBuffer namebuf) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int removexattr(ByteBuffer path, ByteBuffer name) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int opendir(ByteBuffer path, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int readdir(ByteBuffer path, FUSE3FillDir filler, long offset,
+            FUSEFileInfo fi, int flags) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int releasedir(ByteBuffer path, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int fsyncdir(ByteBuffer path, boolean datasync, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public Object init(FUSE3ConnInfo conn, FUSEConfig cfg) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public void destroy(Object o) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int access(ByteBuffer path, int mode) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int create(ByteBuffer path, short mode, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int lock(ByteBuffer path, FUSEFileInfo fi, int cmd, Flock flock) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int utimens(ByteBuffer path, Timespec accessTime,
+            Timespec modificationTime, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int bmap(ByteBuffer path, long blocksize, LongRef idx) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public long copy_file_range(ByteBuffer pathIn, FUSEFileInfo fiIn,
+            long offsetIn, ByteBuffer pathOut, FUSEFileInfo fiOut,
+            long offsetOut, long size, int flags) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int fallocate(ByteBuffer path, int mode, long off, long len,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public long lseek(ByteBuffer path, long off, int whence, FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    public final FUSE3Capabilities getFUSE3Capabilities() {
+        FUSE3Capabilities c = new FUSE3Capabilities();
+
+        // Find out our capabilities through reflection.
+        Class<FUSE3Operations> baseClass = FUSE3Operations.class;
+        Class<?> subClass = this.getClass();
+
+        while(!subClass.equals(FUSE3FileSystemAdapter.class)) {
+            for(Method m : baseClass.getDeclaredMethods()) {
+                try {
+                    Field f = c.getClass().getField(m.getName());
+
+                    try {
+                        try {
+                            subClass.getDeclaredMethod(m.getName(), m.getParameterTypes());
+                            f.setBoolean(c, true);
+                        } catch(NoSuchMethodException e) {
+                            //f.setBoolean(c, false);
+                        }
+                    } catch(IllegalAccessException iae) {
+                        throw new RuntimeException(iae);
+                    }
+                } catch(NoSuchFieldException e) {
+                    throw new RuntimeException("No field \"" + m.getName() +
+                            "\" in FUSE3Capabilities.", e);
+                }
+            }
+
+            subClass = subClass.getSuperclass();
+        }
+
+        return c;
+    }
+}
@@ -0,0 +1,672 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo;
+import org.catacombae.jfuse.types.fuse3.FUSE3FillDir;
+import org.catacombae.jfuse.types.fuse3.FUSEConfig;
+import org.catacombae.jfuse.types.system.Flock;
+import org.catacombae.jfuse.types.system.LongRef;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatVFS;
+import org.catacombae.jfuse.types.system.SystemConstants;
+import org.catacombae.jfuse.types.system.Timespec;
+
+/**
+ * The operations of the libfuse 3 high level API. A file system implementing
+ * this interface is mounted with
+ * {@link FUSE#mount3(org.catacombae.jfuse.FUSE3FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}
+ * and requires the <code>jfuse3</code> native library, see
+ * {@link JNILoader#FUSE_VERSION_PROPERTY}.<br>
+ * The rules of {@link FUSE26Operations} for return values, concurrency and
+ * argument objects apply here as well. Compared to the FUSE 2.6 API, the
+ * deprecated getdir, utime, ftruncate and fgetattr operations are gone, and
+ * the operations that may act on an open file get its
+ * <code>FUSEFileInfo</code> instead, which is <code>null</code> when the
+ * operation is not called through an open file.
+ *
+ * @author Erik Larsson
+ */
+public interface FUSE3Operations extends SystemConstants {
+    /**
+     * <pre>
+     * Get file attributes.
+     *
+     * Similar to stat().  The 'st_dev' and 'st_blksize' fields are
+     * ignored. The 'st_ino' field is ignored except if the 'use_ino'
+     * mount option is given.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param stat <b>(struct stat*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b> may be <code>null</code>.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int getattr(ByteBuffer path, Stat stat, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Read the target of a symbolic link.
+     *
+     * The buffer should be filled with a null terminated string.  The
+     * buffer size argument includes the space for the terminating
+     * null character.  If the linkname is too long to fit in the
+     * buffer, it should be truncated.  The return value should be 0
+     * for success.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param buffer <b>(char*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int readlink(ByteBuffer path, ByteBuffer buffer);
+
+    /**
+     * <pre>
+     * Create a file node.
+     *
+     * This is called for creation of all non-directory, non-symlink
+     * nodes.  If the filesystem defines a create() method, then for
+     * regular files that will be called instead.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fileMode <b>(mode_t)</b>
+     * @param deviceNumber <b>(dev_t)</b>
+     * @return 0 if successful, an inverted error value from FUSEErrorValues otherwise.
+     */
+    public int mknod(ByteBuffer path, short fileMode, long deviceNumber);
+
+    /**
+     * <pre>
+     * Create a directory.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param createMode <b>(mode_t)</b>
+     * @return 0 if successful, an inverted error value from FUSEErrorValues otherwise.
+     */
+    public int mkdir(ByteBuffer path, short createMode);
+
+    /**
+     * <pre>
+     * Remove a file.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @return 0 if successful, an inverted error value from FUSEErrorValues otherwise.
+     */
+    public int unlink(ByteBuffer path);
+
+    /**
+     * <pre>
+     * Remove a directory.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @return 0 if successful, an inverted error value from FUSEErrorValues otherwise.
+     */
+    public int rmdir(ByteBuffer path);
+
+    /**
+     * <pre>
+     * Create a symbolic link.
+     * </pre>
+     *
+     * @param sourcePath <b>(const char*)</b>
+     * @param destPath <b>(const char*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int symlink(ByteBuffer sourcePath, ByteBuffer destPath);
+
+    /**
+     * <pre>
+     * Rename a file.
+     *
+     * If RENAME_NOREPLACE is specified, the filesystem must not
+     * overwrite *newname* if it exists and return an error
+     * instead. If `RENAME_EXCHANGE` is specified, the filesystem
+     * must atomically exchange the two files, i.e. both must
+     * exist and neither may be deleted.
+     * </pre>
+     *
+     * @param oldPath <b>(const char*)</b>
+     * @param newPath <b>(const char*)</b>
+     * @param flags <b>(unsigned int)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int rename(ByteBuffer oldPath, ByteBuffer newPath, int flags);
+
+    /**
+     * <pre>
+     * Create a hard link to a file.
+     * </pre>
+     *
+     * @param sourcePath <b>(const char*)</b>
+     * @param destPath <b>(const char*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int link(ByteBuffer sourcePath, ByteBuffer destPath);
+
+    /**
+     * <pre>
+     * Change the permission bits of a file.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param newMode <b>(mode_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b> may be <code>null</code>.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int chmod(ByteBuffer path, short newMode, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Change the owner and group of a file.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param userId <b>(uid_t)</b>
+     * @param groupId <b>(gid_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b> may be <code>null</code>.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int chown(ByteBuffer path, long userId, long groupId,
+            FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Change the size of a file.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param newSize <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b> may be <code>null</code>.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int truncate(ByteBuffer path, long newSize, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Open a file.
+     *
+     * Open flags are available in fi->flags. Creation (O_CREAT, O_EXCL,
+     * O_NOCTTY) flags will be filtered out. Open should check if the
+     * operation is permitted for the given flags. Optionally open may
+     * also return an arbitrary filehandle in the fuse_file_info
+     * structure, which will be passed to all file operations.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int open(ByteBuffer path, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Read data from an open file.
+     *
+     * Read should return exactly the number of bytes requested except
+     * on EOF or error, otherwise the rest of the data will be
+     * substituted with zeroes.  An exception to this is when the
+     * 'direct_io' mount option is specified, in which case the return
+     * value of the read system call will reflect the return value of
+     * this operation.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param dest <b>(char*)</b> the destination buffer.
+     * @param off <b>(off_t)</b> offset in file to start reading.
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the number of bytes read, or a negated value from
+     * {@link FUSEErrorValues} if an error occurred.
+     */
+    public int read(ByteBuffer path, ByteBuffer dest, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Write data to an open file.
+     *
+     * Write should return exactly the number of bytes requested
+     * except on error.  An exception to this is when the 'direct_io'
+     * mount option is specified (see read operation).
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param src <b>(const char*)</b> the data to write.
+     * @param off <b>(off_t)</b> offset in file where data should be written.
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the number of bytes written, or a negated value from
+     * {@link FUSEErrorValues} if an error occurred.
+     */
+    public int write(ByteBuffer path, ByteBuffer src, long off,
+            FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Get file system statistics.
+     *
+     * The 'f_favail', 'f_fsid' and 'f_flag' fields are ignored.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param stat <b>(struct statvfs*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int statfs(ByteBuffer path, StatVFS stat);
+
+    /**
+     * <pre>
+     * Possibly flush cached data.
+     *
+     * BIG NOTE: This is not equivalent to fsync().  It's not a
+     * request to sync dirty data.
+     *
+     * Flush is called on each close() of a file descriptor, as opposed
+     * to release which is called on the close of the last file
+     * descriptor for a file.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int flush(ByteBuffer path, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Release an open file.
+     *
+     * Release is called when there are no more references to an open
+     * file: all file descriptors are closed and all memory mappings
+     * are unmapped.
+     *
+     * For every open() call there will be exactly one release() call
+     * with the same flags and file handle.  The return value of
+     * release is ignored.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return ignored.
+     */
+    public int release(ByteBuffer path, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Synchronize file contents.
+     *
+     * If the datasync parameter is non-zero, then only the user data
+     * should be flushed, not the meta data.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param datasync <b>(int)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fsync(ByteBuffer path, boolean datasync, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Set extended attributes.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param name <b>(const char*)</b>
+     * @param value <b>(const char*)</b>
+     * @param flags <b>(int)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int setxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value,
+            int flags);
+
+    /**
+     * <pre>
+     * Get extended attributes.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param name <b>(const char*)</b>
+     * @param value <b>(char*)</b> <code>null</code> or empty if the caller
+     * only wants the size of the attribute.
+     * @return the size of the attribute if successful or an inverted error
+     * value from FUSEErrorValues otherwise.
+     */
+    public int getxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value);
+
+    /**
+     * <pre>
+     * List extended attributes.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param namebuf <b>(char*)</b> <code>null</code> or empty if the
+     * caller only wants the size of the list.
+     * @return the size of the list if successful or an inverted error value
+     * from FUSEErrorValues otherwise.
+     */
+    public int listxattr(ByteBuffer path, ByteBuffer namebuf);
+
+    /**
+     * <pre>
+     * Remove extended attributes.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param name <b>(const char*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int removexattr(ByteBuffer path, ByteBuffer name);
+
+    /**
+     * <pre>
+     * Open directory.
+     *
+     * Unless the 'default_permissions' mount option is given,
+     * this method should check if opendir is permitted for this
+     * directory. Optionally opendir may also return an arbitrary
+     * filehandle in the fuse_file_info structure, which will be
+     * passed to readdir, releasedir and fsyncdir.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int opendir(ByteBuffer path, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Read directory.
+     *
+     * The filesystem may choose between two modes of operation:
+     *
+     * 1) The readdir implementation ignores the offset parameter, and
+     * passes zero to the filler function's offset.  The filler
+     * function will not return '1' (unless an error happens), so the
+     * whole directory is read in a single readdir operation.
+     *
+     * 2) The readdir implementation keeps track of the offsets of the
+     * directory entries.  It uses the offset parameter and always
+     * passes non-zero offset to the filler function.  When the buffer
+     * is full (or an error happens) the filler function will return
+     * '1'.
+     *
+     * When FUSE_READDIR_PLUS is set in flags, the filesystem may pass
+     * complete attributes to the filler along with FUSE_FILL_DIR_PLUS.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param filler <b>(fuse_fill_dir_t)</b>
+     * @param offset <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @param flags <b>(enum fuse_readdir_flags)</b> zero or
+     * {@link FUSE3FillDir#FUSE_READDIR_PLUS}.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int readdir(ByteBuffer path, FUSE3FillDir filler, long offset,
+            FUSEFileInfo fi, int flags);
+
+    /**
+     * <pre>
+     * Release directory.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int releasedir(ByteBuffer path, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Synchronize directory contents.
+     *
+     * If the datasync parameter is non-zero, then only the user data
+     * should be flushed, not the meta data.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param datasync <b>(int)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fsyncdir(ByteBuffer path, boolean datasync, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Initialize filesystem.
+     *
+     * The return value will passed in the `private_data` field of
+     * `struct fuse_context` to all file operations, and as a
+     * parameter to the destroy() method.
+     * </pre>
+     * Changes made to <code>conn</code> and <code>cfg</code> are passed back
+     * to libfuse when this method returns.
+     *
+     * @param conn <b>(struct fuse_conn_info*)</b>
+     * @param cfg <b>(struct fuse_config*)</b>
+     * @return the private data of the file system.
+     */
+    public Object init(FUSE3ConnInfo conn, FUSEConfig cfg);
+
+    /**
+     * <pre>
+     * Clean up filesystem.
+     *
+     * Called on filesystem exit.
+     * </pre>
+     *
+     * @param o <b>(void*)</b> the object returned by init().
+     */
+    public void destroy(Object o);
+
+    /**
+     * <pre>
+     * Check file access permissions.
+     *
+     * This will be called for the access() system call.  If the
+     * 'default_permissions' mount option is given, this method is not
+     * called.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param mode <b>(int)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int access(ByteBuffer path, int mode);
+
+    /**
+     * <pre>
+     * Create and open a file.
+     *
+     * If the file does not exist, first create it with the specified
+     * mode, and then open it.
+     *
+     * If this method is not implemented or under Linux kernel
+     * versions earlier than 2.6.15, the mknod() and open() methods
+     * will be called instead.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param mode <b>(mode_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int create(ByteBuffer path, short mode, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Perform POSIX file locking operation.
+     *
+     * The cmd argument will be either F_GETLK, F_SETLK or F_SETLKW.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @param cmd <b>(int)</b>
+     * @param flock <b>(struct flock*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int lock(ByteBuffer path, FUSEFileInfo fi, int cmd, Flock flock);
+
+    /**
+     * <pre>
+     * Change the access and modification times of a file with
+     * nanosecond resolution.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param accessTime <b>(const struct timespec)</b>
+     * @param modificationTime <b>(const struct timespec)</b>
+     * @param fi <b>(struct fuse_file_info*)</b> may be <code>null</code>.
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int utimens(ByteBuffer path, Timespec accessTime,
+            Timespec modificationTime, FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Map block index within file to block index within device.
+     *
+     * Note: This makes sense only for block device backed filesystems
+     * mounted with the 'blkdev' option.
+     * </pre>
+     *
+     * @param path <b>(const char*)</b>
+     * @param blocksize <b>(size_t)</b>
+     * @param idx <b>(uint64_t*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int bmap(ByteBuffer path, long blocksize, LongRef idx);
+
+    /**
+     * <pre>
+     * Copy a range of data from one file to another.
+     *
+     * Performs an optimized copy between two file descriptors without the
+     * additional cost of transferring data through the FUSE kernel module
+     * to user space (glibc) and then back into the FUSE filesystem again.
+     *
+     * In case this method is not implemented, applications are expected to
+     * fall back to a regular file copy. (Some glibc versions did this
+     * emulation automatically, but the emulation has been removed from all
+     * glibc release branches.)
+     * </pre>
+     * A file system can implement this as a metadata operation (sharing
+     * blocks between the files, or asking a remote backend to copy), or
+     * through {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * between its backing files. If both files have backing files registered
+     * through {@link FUSEFileInfo#backing_fd}, jFUSE copies between them
+     * natively and this method is not called.
+     *
+     * @param pathIn <b>(const char*)</b>
+     * @param fiIn <b>(struct fuse_file_info*)</b>
+     * @param offsetIn <b>(off_t)</b>
+     * @param pathOut <b>(const char*)</b>
+     * @param fiOut <b>(struct fuse_file_info*)</b>
+     * @param offsetOut <b>(off_t)</b>
+     * @param size <b>(size_t)</b>
+     * @param flags <b>(int)</b>
+     * @return the number of bytes copied, which may be less than
+     * <code>size</code>, or an inverted error value from FUSEErrorValues.
+     */
+    public long copy_file_range(ByteBuffer pathIn, FUSEFileInfo fiIn,
+            long offsetIn, ByteBuffer pathOut, FUSEFileInfo fiOut,
+            long offsetOut, long size, int flags);
+
+    /**
+     * <pre>
+     * Allocates space for an open file
+     *
+     * This function ensures that required space is allocated for specified
+     * file.  If this function returns success then any subsequent write
+     * request to specified range is guaranteed not to fail because of lack
+     * of space on the file system media.
+     * </pre>
+     * <code>mode</code> may also request
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_PUNCH_HOLE}
+     * or
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_ZERO_RANGE},
+     * optionally with
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#FALLOC_FL_KEEP_SIZE}.
+     * Modes that the file system doesn't support should be answered with
+     * EOPNOTSUPP. If the file has a backing file registered through
+     * {@link FUSEFileInfo#backing_fd}, jFUSE allocates in the backing file and
+     * this method is not called.
+     *
+     * @param path <b>(const char*)</b>
+     * @param mode <b>(int)</b>
+     * @param off <b>(off_t)</b>
+     * @param len <b>(off_t)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return 0 if successful or an inverted error value from FUSEErrorValues
+     * otherwise.
+     */
+    public int fallocate(ByteBuffer path, int mode, long off, long len,
+            FUSEFileInfo fi);
+
+    /**
+     * <pre>
+     * Find next data or hole after the specified offset
+     * </pre>
+     * <code>whence</code> is
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#SEEK_DATA} or
+     * {@link org.catacombae.jfuse.types.system.NumericalConstant#SEEK_HOLE};
+     * the kernel handles the other values itself. Only called if jFUSE has
+     * been built against FUSE 3.8 or later.
+     *
+     * @param path <b>(const char*)</b>
+     * @param off <b>(off_t)</b>
+     * @param whence <b>(int)</b>
+     * @param fi <b>(struct fuse_file_info*)</b>
+     * @return the resulting offset, or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public long lseek(ByteBuffer path, long off, int whence, FUSEFileInfo fi);
+}
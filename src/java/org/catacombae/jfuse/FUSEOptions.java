@@ -23,13 +23,64 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 /**
+ * The options that a file system is mounted with. Options are normally set
+ * through the typed setters, which check their values, or through
+ * {@link #applyProfile(org.catacombae.jfuse.FUSEOptions.Profile)}. Options
+ * without a setter can be passed with
+ * {@link #addOption(java.lang.String, java.lang.String)}.<br>
+ * Not every option is understood by every API, and mounting fails on options
+ * that the API doesn't know, so each setter notes where its option applies.
+ * The values that the kernel actually accepted can be read back from the
+ * {@link MountHandle} once the file system has been initialized.
  *
  * @author erik
  */
 public class FUSEOptions {
 
+    /**
+     * Sets of mount options tuned for common workloads, applied with
+     * {@link FUSEOptions#applyProfile(org.catacombae.jfuse.FUSEOptions.Profile)}.
+     */
+    public static enum Profile {
+        /**
+         * Many small files, where lookups and getattr dominate (source trees,
+         * mail directories, package caches). Names, attributes and missing
+         * names are cached for a minute, so the file system must be the only
+         * one changing its contents. For the high level API.
+         */
+        METADATA_HEAVY,
+
+        /**
+         * Large files read and written sequentially (media, backups, logs).
+         * Writes are sent in 128 KiB requests instead of single pages, reads
+         * are asynchronous and the kernel may read ahead up to 1 MiB. For
+         * libfuse 2. libfuse 3 file systems negotiate these limits in init().
+         */
+        STREAMING,
+
+        /**
+         * Data that doesn't change while mounted (datasets, archives, images
+         * of read-only media). The file system is mounted read-only, file
+         * contents stay in the page cache between opens, and names and
+         * attributes are cached for an hour. For the high level API.
+         */
+        READ_ONLY_DATASET
+    }
+
     private final LinkedList<Option> optionList = new LinkedList<Option>();
 
+    /* jFUSE specific options. These are not passed to the FUSE library, but
+     * read by the native part of jFUSE when mounting. */
+    private boolean reuseArgumentObjects = false;
+    private boolean reusePathBuffers = false;
+
+    /* Read by FUSE when mounting a low level file system. */
+    private OperationExecutor operationExecutor = null;
+
+    /* Read by the native part of jFUSE when mounting a low level file
+     * system. */
+    private RequestRing requestRing = null;
+
     public void addOption(String name, String value) {
         if(name.contains(",") || value.contains(","))
             throw new IllegalArgumentException("The character ',' is reserved" +
@@ -104,6 +155,15 @@ public class FUSEOptions {
             removeOption(foregroundOption);
     }
 
+    /**
+     * Selects whether the file system should be served by a single thread or
+     * by a pool of FUSE worker threads (the default). In multithreaded mode,
+     * the operations of the file system may be invoked concurrently from
+     * several threads, so the file system implementation must be thread safe.
+     *
+     * @param b <code>true</code> to process one request at a time,
+     * <code>false</code> to dispatch requests from multiple threads.
+     */
     public void setSingleThreaded(Boolean b) {
         final String singleThreadedOption = "-s";
         if(b)
@@ -116,13 +176,309 @@ public class FUSEOptions {
         addOption("fsname", fsname);
     }
 
+    /**
+     * Applies the options of <code>profile</code>. Options that the profile
+     * doesn't touch keep their values, and the profile's options can be
+     * changed afterwards with the other setters.
+     *
+     * @param profile the profile to apply.
+     */
+    public void applyProfile(Profile profile) {
+        switch(profile) {
+            case METADATA_HEAVY:
+                setEntryTimeout(60);
+                setAttrTimeout(60);
+                setNegativeTimeout(60);
+                break;
+            case STREAMING:
+                setBigWrites(true);
+                setMaxWrite(128 * 1024);
+                setMaxRead(128 * 1024);
+                setMaxReadahead(1024 * 1024);
+                setAsyncRead(true);
+                break;
+            case READ_ONLY_DATASET:
+                setReadOnly(true);
+                setKernelCache(true);
+                setEntryTimeout(3600);
+                setAttrTimeout(3600);
+                setNegativeTimeout(3600);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown profile: " +
+                        profile);
+        }
+    }
+
+    /**
+     * Mounts the file system read-only (mount option <code>ro</code>).
+     * Understood by all APIs.
+     *
+     * @param b <code>true</code> to mount read-only.
+     */
+    public void setReadOnly(boolean b) {
+        setFlag("ro", b);
+    }
+
+    /**
+     * Lets the kernel send writes larger than a page in one request (mount
+     * option <code>big_writes</code>). Without it, libfuse 2 mounts get one
+     * write request per 4 KiB page no matter what
+     * {@link #setMaxWrite(int)} says.<br>
+     * libfuse 2 only. libfuse 3 always allows big writes.
+     *
+     * @param b <code>true</code> to allow big writes.
+     */
+    public void setBigWrites(boolean b) {
+        setFlag("big_writes", b);
+    }
+
+    /**
+     * Sets the largest write request, in bytes, that the kernel may send
+     * (mount option <code>max_write</code>). The kernel and libfuse cap it to
+     * what they support, see {@link MountHandle#getConnInfo()}.<br>
+     * libfuse 2 only. libfuse 3 file systems set
+     * {@link org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo#max_write} in
+     * init().
+     *
+     * @param bytes the largest write request, at least 4096.
+     */
+    public void setMaxWrite(int bytes) {
+        if(bytes < 4096)
+            throw new IllegalArgumentException("max_write must be at least " +
+                    "4096, got " + bytes + ".");
+        addOption("max_write", Integer.toString(bytes));
+    }
+
+    /**
+     * Sets the largest read request, in bytes, that the kernel may send
+     * (mount option <code>max_read</code>). Understood by all APIs.
+     *
+     * @param bytes the largest read request.
+     */
+    public void setMaxRead(int bytes) {
+        if(bytes <= 0)
+            throw new IllegalArgumentException("max_read must be positive, " +
+                    "got " + bytes + ".");
+        addOption("max_read", Integer.toString(bytes));
+    }
+
+    /**
+     * Sets how many bytes the kernel may read ahead of sequential reads
+     * (mount option <code>max_readahead</code>). The kernel caps it to its
+     * own readahead limit.<br>
+     * libfuse 2 only. libfuse 3 file systems set
+     * {@link org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo#max_readahead} in
+     * init().
+     *
+     * @param bytes the readahead limit, 0 to disable readahead.
+     */
+    public void setMaxReadahead(int bytes) {
+        if(bytes < 0)
+            throw new IllegalArgumentException("max_readahead must not be " +
+                    "negative, got " + bytes + ".");
+        addOption("max_readahead", Integer.toString(bytes));
+    }
+
+    /**
+     * Keeps file contents in the page cache when files are opened (mount
+     * option <code>kernel_cache</code>). Only safe if the data never changes
+     * other than through this mount. Clears
+     * {@link #setAutoCache(boolean) auto_cache}. High level API only.
+     *
+     * @param b <code>true</code> to keep cached data on open.
+     */
+    public void setKernelCache(boolean b) {
+        if(b)
+            removeOption("auto_cache");
+        setFlag("kernel_cache", b);
+    }
+
+    /**
+     * Keeps file contents in the page cache when files are opened, unless
+     * the modification time or size has changed since they were cached
+     * (mount option <code>auto_cache</code>). Clears
+     * {@link #setKernelCache(boolean) kernel_cache}. High level API only.
+     *
+     * @param b <code>true</code> to keep unchanged cached data on open.
+     */
+    public void setAutoCache(boolean b) {
+        if(b)
+            removeOption("kernel_cache");
+        setFlag("auto_cache", b);
+    }
+
+    /**
+     * Sets the time for which the kernel caches attributes (mount option
+     * <code>attr_timeout</code>, 1 second by default). High level API only;
+     * low level file systems pass timeouts in their replies.
+     *
+     * @param seconds the timeout in seconds.
+     */
+    public void setAttrTimeout(double seconds) {
+        addOption("attr_timeout", timeoutString("attr_timeout", seconds));
+    }
+
+    /**
+     * Sets the time for which the kernel caches names (mount option
+     * <code>entry_timeout</code>, 1 second by default). High level API only.
+     *
+     * @param seconds the timeout in seconds.
+     */
+    public void setEntryTimeout(double seconds) {
+        addOption("entry_timeout", timeoutString("entry_timeout", seconds));
+    }
+
+    /**
+     * Sets the time for which the kernel caches that a name doesn't exist
+     * (mount option <code>negative_timeout</code>, 0 by default, i.e. failed
+     * lookups aren't cached). High level API only.
+     *
+     * @param seconds the timeout in seconds.
+     */
+    public void setNegativeTimeout(double seconds) {
+        addOption("negative_timeout",
+                timeoutString("negative_timeout", seconds));
+    }
+
+    /**
+     * Selects whether the kernel may issue several read requests for a file
+     * at once (mount option <code>async_read</code>, the default) or must
+     * wait for each read to finish (<code>sync_read</code>).<br>
+     * libfuse 2 only. libfuse 3 file systems request
+     * {@link org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo#FUSE_CAP_ASYNC_READ}
+     * in init().
+     *
+     * @param b <code>true</code> for asynchronous reads.
+     */
+    public void setAsyncRead(boolean b) {
+        removeOption(b ? "sync_read" : "async_read");
+        addOption(b ? "async_read" : "sync_read");
+    }
+
+    private void setFlag(String name, boolean b) {
+        if(b)
+            addOption(name);
+        else
+            removeOption(name);
+    }
+
+    private static String timeoutString(String name, double seconds) {
+        if(Double.isNaN(seconds) || Double.isInfinite(seconds) ||
+                seconds < 0) {
+            throw new IllegalArgumentException(name + " must be a finite, " +
+                    "non-negative number of seconds, got " + seconds + ".");
+        }
+
+        return Double.toString(seconds);
+    }
+
+    /**
+     * Enables or disables reuse of argument objects. When enabled, each FUSE
+     * worker thread keeps one instance each of {@link org.catacombae.jfuse.types.system.Stat},
+     * {@link org.catacombae.jfuse.types.fuse26.FUSEFileInfo},
+     * {@link org.catacombae.jfuse.types.system.Timespec},
+     * {@link org.catacombae.jfuse.types.system.StatVFS} and
+     * {@link org.catacombae.jfuse.types.system.Flock}, which is refilled for
+     * every call instead of allocating a new object. This removes most of the
+     * per-request allocations, but requires that the file system never keeps
+     * a reference to an argument object after the call has returned (see
+     * {@link FUSE26Operations}). Path arguments are controlled separately by
+     * {@link #setReusePathBuffers(boolean)}.<br>
+     * Reuse is disabled by default.
+     *
+     * @param b <code>true</code> to reuse argument objects,
+     * <code>false</code> to allocate new ones for each call.
+     */
+    public void setReuseArgumentObjects(boolean b) {
+        this.reuseArgumentObjects = b;
+    }
+
+    public boolean getReuseArgumentObjects() {
+        return reuseArgumentObjects;
+    }
+
+    /**
+     * Enables or disables reuse of path buffers in the high level API. When
+     * enabled, each FUSE worker thread keeps a read-only direct buffer for
+     * each of the (at most two) path arguments of an operation. The path is
+     * copied into it for every call, instead of being wrapped in two new
+     * buffer objects. Every call on the thread therefore gets the same buffer
+     * instance, whose contents, position and limit change with the next call
+     * (see {@link FUSE26Operations}). Paths longer than 4096 bytes are passed
+     * in new buffers.<br>
+     * Reuse is disabled by default.
+     *
+     * @param b <code>true</code> to reuse path buffers, <code>false</code>
+     * to pass each path in a new buffer.
+     */
+    public void setReusePathBuffers(boolean b) {
+        this.reusePathBuffers = b;
+    }
+
+    public boolean getReusePathBuffers() {
+        return reusePathBuffers;
+    }
+
+    /**
+     * Sets the executor that runs the operations of a low level file system
+     * (see {@link OperationExecutor}). When an executor is set, the FUSE
+     * worker threads hand each decoded request to the executor and go on to
+     * the next request, and the reply is sent when the operation finishes.
+     * This requires that the file system is thread safe, even in single
+     * threaded mode.<br>
+     * By default no executor is set, and operations run inline on the FUSE
+     * worker thread that received the request.<br>
+     * Only {@link FUSE26LowLevelFileSystem} mounts use the executor, and the
+     * high level mount methods of {@link FUSE} reject options that set one.
+     * High level file systems run inline, since the FUSE library replies to
+     * the kernel when the operation returns and the worker thread would only
+     * wait for the executor.
+     *
+     * @param executor the executor, or <code>null</code> to run operations
+     * inline.
+     */
+    public void setOperationExecutor(OperationExecutor executor) {
+        this.operationExecutor = executor;
+    }
+
+    public OperationExecutor getOperationExecutor() {
+        return operationExecutor;
+    }
+
+    /**
+     * Sets a ring that lookup, getattr, read and write requests of a low level
+     * file system are published to, instead of being passed to the file
+     * system by a JNI upcall each (see {@link RequestRing}). The application
+     * runs the consumers of the ring on threads of its choice. The file
+     * system is served by a single FUSE worker thread when a ring is set, and
+     * a ring can't be combined with an operation executor.<br>
+     * By default no ring is set.
+     *
+     * @param ring the ring, or <code>null</code> to pass all requests by
+     * upcalls.
+     */
+    public void setRequestRing(RequestRing ring) {
+        this.requestRing = ring;
+    }
+
+    public RequestRing getRequestRing() {
+        return requestRing;
+    }
+
     public String[] generateOptionStrings() {
         String[] result = new String[optionList.size()];
 
         int i = 0;
         for(Iterator<Option> it = optionList.iterator(); it.hasNext();) {
             Option o = it.next();
-            result[i++] = "-o" + o.name + (o.value != null ? "=" + o.value : "");
+            if(o.name.startsWith("-")) {
+                /* Command line switches such as "-s" and "-f" are passed as
+                 * they are, and not as mount options. */
+                result[i++] = o.name;
+            }
+            else
+                result[i++] = "-o" + o.name + (o.value != null ? "=" + o.value : "");
         }
 
         return result;
@@ -0,0 +1,223 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A mounted low level file system whose requests are received and processed
+ * by threads of the application, instead of by worker threads created by the
+ * FUSE library. Any number of threads (platform threads, virtual threads or
+ * the threads of a pool) may drive the session concurrently, typically each
+ * in a loop like:
+ * <pre>
+ * ByteBuffer buf = session.allocateBuffer();
+ * while(true) {
+ *     buf.clear();
+ *     if(session.receive(buf) &lt; 0)
+ *         break;
+ *     session.process(buf);
+ * }
+ * FUSESession.releaseThreadState();
+ * </pre>
+ * The operations of the file system are called from within
+ * {@link #process(java.nio.ByteBuffer)}, on the calling thread.<br>
+ * When all threads have stopped, the session must be closed, which unmounts
+ * the file system if it is still mounted.
+ *
+ * @author Erik Larsson
+ * @see FUSE#openSession(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)
+ */
+public class FUSESession {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    private final String mountPoint;
+    private final Thread shutdownHook;
+    private final int bufferSize;
+
+    /** Address of the native session state, or 0 once closed. */
+    private volatile long nativeSession;
+
+    FUSESession(long nativeSession, String mountPoint, Thread shutdownHook) {
+        this.nativeSession = nativeSession;
+        this.mountPoint = mountPoint;
+        this.shutdownHook = shutdownHook;
+        this.bufferSize = getBufferSizeNative(nativeSession);
+    }
+
+    private long getSession() {
+        final long s = nativeSession;
+        if(s == 0)
+            throw new IllegalStateException("The session has been closed.");
+        return s;
+    }
+
+    public String getMountPoint() {
+        return mountPoint;
+    }
+
+    /**
+     * Returns the size that a buffer passed to
+     * {@link #receive(java.nio.ByteBuffer)} must have room for, which is the
+     * size of the largest request that the kernel may send.
+     *
+     * @return the required buffer size.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Allocates a direct buffer of {@link #getBufferSize()} bytes, suitable for
+     * {@link #receive(java.nio.ByteBuffer)}. A buffer may be reused for any
+     * number of requests, but only by one thread at a time.
+     *
+     * @return a new receive buffer.
+     */
+    public ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Reads one request from the kernel into <code>buf</code>, blocking until
+     * a request is available. The request is stored at the position of the
+     * buffer, and the limit of the buffer is set to the end of the request,
+     * so the buffer can be passed on to
+     * {@link #process(java.nio.ByteBuffer)} as it is.
+     *
+     * @param buf a direct buffer with at least {@link #getBufferSize()} bytes
+     * remaining.
+     * @return the length of the request, or -1 if the session has exited or
+     * the file system has been unmounted.
+     * @throws IOException if reading from the FUSE device failed.
+     */
+    public int receive(ByteBuffer buf) throws IOException {
+        if(!buf.isDirect())
+            throw new IllegalArgumentException("The buffer is not direct.");
+        if(buf.remaining() < bufferSize)
+            throw new IllegalArgumentException("The buffer has only " +
+                    buf.remaining() + " bytes remaining (" + bufferSize +
+                    " needed).");
+
+        final int pos = buf.position();
+        final int len = receiveNative(getSession(), buf, pos, buf.remaining());
+        if(len > 0)
+            buf.limit(pos + len);
+
+        return len;
+    }
+
+    /**
+     * Dispatches the request between the position and the limit of
+     * <code>buf</code> to the file system. The operation is called on the
+     * calling thread, and in the case of a synchronous low level file system
+     * it has been replied to when this method returns. The buffer must not be
+     * modified until then.
+     *
+     * @param buf a direct buffer holding a request, as returned by
+     * {@link #receive(java.nio.ByteBuffer)}.
+     */
+    public void process(ByteBuffer buf) {
+        if(!buf.isDirect())
+            throw new IllegalArgumentException("The buffer is not direct.");
+
+        processNative(getSession(), buf, buf.position(), buf.remaining());
+    }
+
+    /**
+     * Returns whether the session has exited, after which
+     * {@link #receive(java.nio.ByteBuffer)} returns -1.
+     *
+     * @return whether the session has exited.
+     */
+    public boolean isExited() {
+        return isExitedNative(getSession());
+    }
+
+    /**
+     * Marks the session as exited. Threads blocked in
+     * {@link #receive(java.nio.ByteBuffer)} are not woken up until the next
+     * request arrives, so to stop all threads promptly use
+     * {@link #unmount(boolean)} instead.
+     */
+    public void exit() {
+        exitNative(getSession());
+    }
+
+    /**
+     * Unmounts the file system, which makes all threads blocked in
+     * {@link #receive(java.nio.ByteBuffer)} return -1.
+     *
+     * @param force whether to force the unmount even if the file system is
+     * busy.
+     * @return whether the file system could be unmounted.
+     */
+    public boolean unmount(boolean force) {
+        return FUSE.unmount(mountPoint, force);
+    }
+
+    /**
+     * Destroys the session and unmounts the file system if it is still
+     * mounted. No thread may be using the session when it is closed. Closing
+     * a closed session has no effect.
+     */
+    public void close() {
+        final long s;
+        synchronized(this) {
+            s = nativeSession;
+            nativeSession = 0;
+        }
+
+        if(s != 0) {
+            closeNative(s);
+            FUSE.removeUnmountHook(shutdownHook);
+            FUSE.releaseMountPoint(mountPoint);
+        }
+    }
+
+    /**
+     * Releases the native state (reused argument objects and the like) that
+     * jFUSE keeps for the calling thread. A thread that has called
+     * {@link #process(java.nio.ByteBuffer)} should call this before it
+     * terminates, or the state is leaked.
+     */
+    public static void releaseThreadState() {
+        releaseThreadStateNative();
+    }
+
+    private static native int getBufferSizeNative(long nativeSession);
+
+    private static native int receiveNative(long nativeSession, ByteBuffer buf,
+            int pos, int len) throws IOException;
+
+    private static native void processNative(long nativeSession,
+            ByteBuffer buf, int pos, int len);
+
+    private static native boolean isExitedNative(long nativeSession);
+
+    private static native void exitNative(long nativeSession);
+
+    private static native void closeNative(long nativeSession);
+
+    private static native void releaseThreadStateNative();
+}
@@ -0,0 +1,60 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import org.catacombae.jfuse.types.fuse26.FUSEContext;
+
+/**
+ * A binding to libfuse 2.x that doesn't go through the JNI library, selected
+ * by {@link JNILoader#getBackend()}. The only implementation is
+ * <code>FFMBackend</code>, which binds libfuse through the Foreign Function
+ * &amp; Memory API. It is built from <code>src/java22</code> by the
+ * <code>build-ffm</code> target and loaded reflectively, so that the rest of
+ * jFUSE still builds and runs on older Java versions.
+ *
+ * @author Erik Larsson
+ */
+interface ForeignBackend {
+    /**
+     * Returns whether this backend can serve <code>fileSystem</code>, which
+     * implements the operations in <code>capabilities</code>. If it can't,
+     * the file system is mounted through the JNI library.
+     */
+    public boolean canMount(FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities);
+
+    /**
+     * Mounts and serves <code>fileSystem</code> until it is unmounted, like
+     * <code>FUSE.mountNative26</code>.
+     *
+     * @return true if the main loop exited normally, false otherwise.
+     */
+    public boolean mount26(FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities, String mountPoint,
+            String[] optionStrings, FUSEOptions options,
+            MountHandle mountHandle);
+
+    /**
+     * Returns the context of the operation that the calling thread is
+     * serving, or <code>null</code> if it isn't serving an operation for a
+     * file system mounted through this backend.
+     */
+    public FUSEContext getContext();
+}
@@ -27,10 +27,107 @@ import org.catacombae.jfuse.util.Log;
  * @author Erik Larsson
  */
 public class JNILoader {
-    private static final String LIBRARY_BASE_NAME = "jfuse";
+    /**
+     * System property selecting the libfuse major version that jFUSE binds
+     * to. Recognized values are "2" (the default), "3" and
+     * "auto", which prefers libfuse 3 and falls back to libfuse 2 if the
+     * <code>jfuse3</code> library can't be loaded.<br>
+     * The two versions are served by different native libraries, of which
+     * only one can be loaded into a JVM, so all file systems mounted by a JVM
+     * use the same version.
+     */
+    public static final String FUSE_VERSION_PROPERTY =
+            "org.catacombae.jfuse.fuseVersion";
+
+    /**
+     * System property selecting how libfuse 2.x mounts call into libfuse.
+     * Recognized values are "jni", "ffm" and "auto" (the default), which uses
+     * the Foreign Function &amp; Memory backend when the running JVM has
+     * <code>java.lang.foreign.Linker</code> and the backend was built into
+     * the jar (see the <code>build-ffm</code> target), and the JNI library
+     * otherwise.<br>
+     * The JNI library is loaded in either case. File systems that the FFM
+     * backend can't serve, such as MacFUSE and buffer file systems, are
+     * mounted through it.
+     */
+    public static final String BACKEND_PROPERTY =
+            "org.catacombae.jfuse.backend";
+
+    private static final String FFM_BACKEND_CLASS =
+            "org.catacombae.jfuse.FFMBackend";
 
     private static final Object loadSync = new Object();
     private static boolean loaded = false;
+    private static FUSEVersion fuseVersion = null;
+    private static boolean backendSelected = false;
+    private static volatile ForeignBackend foreignBackend = null;
+
+    /**
+     * The libfuse major versions that jFUSE can bind to.
+     */
+    public static enum FUSEVersion {
+        /**
+         * libfuse 2.x, through the <code>jfuse</code> library. Mounted with
+         * the {@link FUSE26Operations} family of interfaces.
+         */
+        FUSE2("2", "jfuse"),
+
+        /**
+         * libfuse 3.x, through the <code>jfuse3</code> library. Mounted with
+         * {@link FUSE3Operations}.
+         */
+        FUSE3("3", "jfuse3");
+
+        private final String name;
+        private final String libraryBaseName;
+
+        private FUSEVersion(String name, String libraryBaseName) {
+            this.name = name;
+            this.libraryBaseName = libraryBaseName;
+        }
+
+        /**
+         * Returns the name of this version, as used in the
+         * {@link JNILoader#FUSE_VERSION_PROPERTY} system property.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the base name of the native library for this version.
+         */
+        public String getLibraryBaseName() {
+            return libraryBaseName;
+        }
+    }
+
+    /**
+     * The ways in which libfuse 2.x mounts can call into libfuse.
+     */
+    public static enum Backend {
+        /** Through the <code>jfuse</code> JNI library. */
+        JNI("jni"),
+
+        /**
+         * Through the Foreign Function &amp; Memory API (Java 22 and later).
+         */
+        FFM("ffm");
+
+        private final String name;
+
+        private Backend(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of this backend, as used in the
+         * {@link JNILoader#BACKEND_PROPERTY} system property.
+         */
+        public String getName() {
+            return name;
+        }
+    }
 
     private JNILoader() { throw new RuntimeException(); }
 
@@ -114,15 +211,15 @@ public class JNILoader {
      * Does not check if the system is supported, and just tries to load the approprate library
      * from the architecture string specified in this system's ArchitectureIdentifier.
      */
-    private static void loadLibrary() {
+    private static void loadLibrary(final String baseName) {
         try {
-            Log.debug("Trying to load native library \"" + LIBRARY_BASE_NAME + "\"...");
-            System.loadLibrary(LIBRARY_BASE_NAME);
+            Log.debug("Trying to load native library \"" + baseName + "\"...");
+            System.loadLibrary(baseName);
             testLibrary();
-            Log.debug("Native library \"" + LIBRARY_BASE_NAME + "\" successfully loaded.");
+            Log.debug("Native library \"" + baseName + "\" successfully loaded.");
             return;
         } catch(UnsatisfiedLinkError e) {
-            Log.debug("No specifically compiled \"" + LIBRARY_BASE_NAME + "\" library available. " +
+            Log.debug("No specifically compiled \"" + baseName + "\" library available. " +
                     "Trying to look up a precompiled alternative...");
         }
 
@@ -143,7 +240,7 @@ public class JNILoader {
                     "(operating system) unknown!");
         }
         else {
-            final String libName = LIBRARY_BASE_NAME + "-" + getSystemSpecifier();
+            final String libName = baseName + "-" + getSystemSpecifier();
             try {
                 Log.debug("Trying to load native library \"" + libName + "\"...");
                 System.loadLibrary(libName);
@@ -158,13 +255,145 @@ public class JNILoader {
         }
     }
 
+    /**
+     * Loads the native library of the libfuse version asked for in the
+     * {@link #FUSE_VERSION_PROPERTY} system property.
+     *
+     * @return the version that was loaded.
+     */
+    private static FUSEVersion loadFUSEVersion() {
+        final String requested = System.getProperty(FUSE_VERSION_PROPERTY,
+                FUSEVersion.FUSE2.getName());
+
+        if(requested.equals(FUSEVersion.FUSE3.getName())) {
+            loadLibrary(FUSEVersion.FUSE3.getLibraryBaseName());
+            return FUSEVersion.FUSE3;
+        }
+        else if(requested.equalsIgnoreCase("auto")) {
+            try {
+                loadLibrary(FUSEVersion.FUSE3.getLibraryBaseName());
+                return FUSEVersion.FUSE3;
+            } catch(UnsatisfiedLinkError e) {
+                Log.info("Could not load the libfuse 3 binding (" + e +
+                        "). Falling back to libfuse 2.");
+            }
+        }
+        else if(!requested.equals(FUSEVersion.FUSE2.getName())) {
+            Log.error("Unrecognized value for " + FUSE_VERSION_PROPERTY +
+                    ": \"" + requested + "\". Using libfuse 2.");
+        }
+
+        loadLibrary(FUSEVersion.FUSE2.getLibraryBaseName());
+        return FUSEVersion.FUSE2;
+    }
+
+    /**
+     * Returns the libfuse major version that the loaded native library binds
+     * to, loading the library first if necessary.
+     *
+     * @return the libfuse version.
+     */
+    public static FUSEVersion getFUSEVersion() {
+        synchronized(loadSync) {
+            ensureLoaded();
+            return fuseVersion;
+        }
+    }
+
+    /**
+     * Returns the backend that libfuse 2.x mounts use, selecting it first if
+     * necessary. Mounts of file systems that the FFM backend can't serve go
+     * through the JNI library even when this returns {@link Backend#FFM}.
+     *
+     * @return the backend.
+     */
+    public static Backend getBackend() {
+        return getForeignBackend() != null ? Backend.FFM : Backend.JNI;
+    }
+
+    /**
+     * Returns the FFM backend, or <code>null</code> if mounts go through the
+     * JNI library.
+     */
+    static ForeignBackend getForeignBackend() {
+        if(foreignBackend != null)
+            return foreignBackend;
+
+        synchronized(loadSync) {
+            ensureLoaded();
+            if(!backendSelected) {
+                foreignBackend = loadForeignBackend();
+                backendSelected = true;
+                Log.info("Using the " + getBackendName() + " backend for " +
+                        "libfuse 2 mounts.");
+            }
+
+            return foreignBackend;
+        }
+    }
+
+    private static String getBackendName() {
+        return (foreignBackend != null ? Backend.FFM : Backend.JNI).getName();
+    }
+
+    /**
+     * Loads the backend asked for in the {@link #BACKEND_PROPERTY} system
+     * property, if it isn't the JNI library.
+     */
+    private static ForeignBackend loadForeignBackend() {
+        final String requested = System.getProperty(BACKEND_PROPERTY, "auto");
+
+        if(requested.equals(Backend.JNI.getName()))
+            return null;
+        else if(!requested.equals(Backend.FFM.getName()) &&
+                !requested.equalsIgnoreCase("auto"))
+        {
+            Log.error("Unrecognized value for " + BACKEND_PROPERTY + ": \"" +
+                    requested + "\". Using the JNI library.");
+            return null;
+        }
+
+        final boolean explicit = requested.equals(Backend.FFM.getName());
+        if(fuseVersion != FUSEVersion.FUSE2) {
+            if(explicit) {
+                Log.error("The FFM backend only binds to libfuse 2. Using " +
+                        "the JNI library.");
+            }
+            return null;
+        }
+
+        try {
+            Class.forName("java.lang.foreign.Linker");
+        } catch(ClassNotFoundException e) {
+            if(explicit) {
+                Log.error("The FFM backend needs Java 22 or later. Using the " +
+                        "JNI library.");
+            }
+            return null;
+        }
+
+        try {
+            return (ForeignBackend) Class.forName(FFM_BACKEND_CLASS)
+                    .getConstructor().newInstance();
+        } catch(Throwable t) {
+            final String message = "Could not load the FFM backend (" + t +
+                    "). Using the JNI library.";
+            if(explicit)
+                Log.error(message);
+            else
+                Log.info(message);
+            return null;
+        }
+    }
+
     public static void ensureLoaded() {
         synchronized(loadSync) {
             if(!loaded) {
-                Log.info("Loading library 'jfuse'...");
-                loadLibrary();
+                Log.info("Loading the jFUSE native library...");
+                fuseVersion = loadFUSEVersion();
                 loaded = true;
-                Log.info("   done.");
+                Log.info("   done. Bound to libfuse " + fuseVersion.getName() +
+                        ".");
             }
         }
     }
@@ -0,0 +1,294 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.catacombae.jfuse.types.fuse26.FUSEConnInfo;
+import org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo;
+
+/**
+ * Handle to a file system mounted with
+ * {@link FUSE#mountAsync(org.catacombae.jfuse.FUSE26FileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}
+ * or
+ * {@link FUSE#mountLowLevelAsync(org.catacombae.jfuse.FUSE26LowLevelFileSystem, java.lang.String, org.catacombae.jfuse.FUSEOptions)}.
+ * The file system is served by a mount thread owned by the handle, and (when
+ * mounted multithreaded) by worker threads created by the FUSE library.
+ *
+ * @author Erik Larsson
+ */
+public class MountHandle {
+    private final String mountPoint;
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+    private final Set<Thread> workerThreads = new HashSet<Thread>();
+
+    private volatile Thread mountThread = null;
+    private volatile boolean ready = false;
+    private volatile boolean result = false;
+    private volatile Throwable failure = null;
+    private volatile boolean kernelPassthrough = false;
+    private volatile FUSEConnInfo connInfo = null;
+    private volatile FUSE3ConnInfo fuse3ConnInfo = null;
+
+    MountHandle(String mountPoint) {
+        this.mountPoint = mountPoint;
+    }
+
+    /**
+     * Returns the absolute path of the mount point.
+     *
+     * @return the absolute path of the mount point.
+     */
+    public String getMountPoint() {
+        return mountPoint;
+    }
+
+    /**
+     * Returns the thread that mounted the file system and runs the FUSE main
+     * loop.
+     *
+     * @return the mount thread.
+     */
+    public Thread getMountThread() {
+        return mountThread;
+    }
+
+    /**
+     * Waits until the file system is mounted and about to serve requests, or
+     * until the mount attempt has failed.
+     *
+     * @return <code>true</code> if the file system was mounted,
+     * <code>false</code> if mounting failed.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public boolean awaitReady() throws InterruptedException {
+        readyLatch.await();
+        return ready;
+    }
+
+    /**
+     * Like {@link #awaitReady()}, but gives up after the specified time.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of <code>timeout</code>.
+     * @return <code>true</code> if the file system was mounted,
+     * <code>false</code> if mounting failed or the time ran out.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return readyLatch.await(timeout, unit) && ready;
+    }
+
+    /**
+     * Returns whether the file system has been mounted (and not yet
+     * unmounted).
+     *
+     * @return whether the file system is currently mounted.
+     */
+    public boolean isMounted() {
+        return ready && terminationLatch.getCount() > 0;
+    }
+
+    /**
+     * Unmounts the file system. Unmounting makes the FUSE main loop return,
+     * after which the mount thread cleans up and terminates. Use
+     * {@link #awaitTermination()} to wait for that to happen.
+     *
+     * @param force whether to force the unmount even if the file system is
+     * busy.
+     * @return <code>true</code> if the file system was unmounted.
+     */
+    public boolean unmount(boolean force) {
+        return FUSE.unmount(mountPoint, force);
+    }
+
+    /**
+     * Waits until the mount thread has terminated, i.e. until the file system
+     * has been unmounted and all native resources have been released (or the
+     * mount attempt has failed).
+     *
+     * @return <code>true</code> if the file system was mounted and the FUSE
+     * main loop exited normally, <code>false</code> otherwise.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public boolean awaitTermination() throws InterruptedException {
+        terminationLatch.await();
+        return result;
+    }
+
+    /**
+     * Like {@link #awaitTermination()}, but gives up after the specified time.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of <code>timeout</code>.
+     * @return <code>true</code> if the mount thread has terminated,
+     * <code>false</code> if the time ran out.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    /**
+     * Returns the exception that terminated the mount thread, if any.
+     *
+     * @return the exception that terminated the mount thread, or
+     * <code>null</code>.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns whether the kernel accepted FUSE passthrough for this mount.
+     * When it did, files opened with a
+     * {@link org.catacombae.jfuse.types.fuse26.FUSEFileInfo#backing_fd} are
+     * read and written by the kernel directly from the backing file.
+     * Otherwise jFUSE serves them natively from the backing file, which still
+     * takes a round trip through the FUSE device for every request but none
+     * into Java.<br>
+     * Kernel passthrough needs libfuse 3.16 or later and Linux 6.9 or later,
+     * so this is always <code>false</code> for file systems mounted through
+     * libfuse 2. The FUSE 3 binding asks for it in INIT unless the file
+     * system removes {@link org.catacombae.jfuse.types.fuse3.FUSE3ConnInfo#FUSE_CAP_PASSTHROUGH}
+     * from <code>want</code> in init() or enables the writeback cache, which
+     * the kernel doesn't combine with passthrough. It is turned off again if
+     * registering a backing file fails for another reason than a bad
+     * descriptor, usually because the process lacks CAP_SYS_ADMIN.
+     *
+     * @return whether backing files are handed to the kernel.
+     */
+    public boolean isKernelPassthroughEnabled() {
+        return kernelPassthrough;
+    }
+
+    /**
+     * Returns the connection parameters of a file system mounted through
+     * libfuse 2, as they stood when the kernel's INIT request had been
+     * handled: the protocol version of the kernel, and the limits and
+     * async_read flag after the mount options (see
+     * {@link FUSEOptions#setMaxWrite(int)} and friends) and the file
+     * system's init() have been applied. This is how to check what a mount
+     * option actually resulted in, since the kernel and libfuse quietly cap
+     * values they don't support. libfuse 2 may still lower max_write to the
+     * size of its request buffer when replying.<br>
+     * The returned object is a snapshot. Changing it has no effect.
+     *
+     * @return the connection parameters, or <code>null</code> if the kernel
+     * hasn't initialized the connection yet or the file system was mounted
+     * through libfuse 3 (see {@link #getFUSE3ConnInfo()}).
+     */
+    public FUSEConnInfo getConnInfo() {
+        return connInfo;
+    }
+
+    /**
+     * Like {@link #getConnInfo()}, for file systems mounted through libfuse 3.
+     * libfuse 3 limits <code>want</code> to the capabilities in
+     * <code>capable</code> when replying to the kernel.
+     *
+     * @return the connection parameters, or <code>null</code> if the kernel
+     * hasn't initialized the connection yet or the file system was mounted
+     * through libfuse 2.
+     */
+    public FUSE3ConnInfo getFUSE3ConnInfo() {
+        return fuse3ConnInfo;
+    }
+
+    /**
+     * Returns the threads that have served requests for this file system and
+     * are still alive. In single threaded mode this is just the mount thread.
+     *
+     * @return a snapshot of the live worker threads.
+     */
+    public Set<Thread> getWorkerThreads() {
+        synchronized(workerThreads) {
+            for(Iterator<Thread> it = workerThreads.iterator(); it.hasNext(); ) {
+                if(!it.next().isAlive())
+                    it.remove();
+            }
+
+            return Collections.unmodifiableSet(
+                    new HashSet<Thread>(workerThreads));
+        }
+    }
+
+    void started(Thread mountThread) {
+        this.mountThread = mountThread;
+    }
+
+    void terminated(boolean result, Throwable failure) {
+        this.result = result;
+        this.failure = failure;
+        synchronized(workerThreads) {
+            workerThreads.clear();
+        }
+
+        /* Release anyone waiting for a mount that never came up. */
+        readyLatch.countDown();
+        terminationLatch.countDown();
+    }
+
+    /**
+     * Called from native code or the FFM backend once the file system is
+     * mounted.
+     */
+    void mountReady() {
+        ready = true;
+        readyLatch.countDown();
+    }
+
+    /**
+     * Called from native code or the FFM backend when the kernel has
+     * initialized the connection, with a {@link FUSEConnInfo} or a
+     * {@link FUSE3ConnInfo}.
+     */
+    void connInitialized(Object info) {
+        if(info instanceof FUSE3ConnInfo)
+            fuse3ConnInfo = (FUSE3ConnInfo) info;
+        else
+            connInfo = (FUSEConnInfo) info;
+    }
+
+    /**
+     * Called from native code when kernel passthrough has been negotiated or
+     * turned off.
+     */
+    private void kernelPassthroughChanged(boolean enabled) {
+        kernelPassthrough = enabled;
+    }
+
+    /**
+     * Called from native code or the FFM backend on the first request that a
+     * thread serves for this file system.
+     */
+    void workerStarted() {
+        synchronized(workerThreads) {
+            workerThreads.add(Thread.currentThread());
+        }
+    }
+}
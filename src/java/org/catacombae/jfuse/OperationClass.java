@@ -0,0 +1,46 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+/**
+ * The classes that the operations of a file system are divided into when they
+ * are handed to an {@link OperationExecutor}. Executors such as
+ * {@link PartitionedOperationExecutor} run each class separately, so that a
+ * burst of large reads and writes doesn't hold up metadata operations.
+ *
+ * @author Erik Larsson
+ */
+public enum OperationClass {
+    /**
+     * Operations on names and attributes (lookup, forget, getattr, setattr,
+     * open, opendir, readdir, releasedir). These are usually fast and are
+     * what interactive use of the file system waits for.
+     */
+    METADATA,
+
+    /** Operations transferring file data (read, write). */
+    DATA,
+
+    /**
+     * Operations that may have to wait for data to reach stable storage
+     * (release, and flush and fsync where supported).
+     */
+    FSYNC;
+}
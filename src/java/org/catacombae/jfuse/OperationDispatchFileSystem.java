@@ -0,0 +1,278 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.catacombae.jfuse.types.fuse26.FUSEAttrReply;
+import org.catacombae.jfuse.types.fuse26.FUSEDirReply;
+import org.catacombae.jfuse.types.fuse26.FUSEEntryReply;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse26.FUSERequest;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.util.Log;
+
+/**
+ * Serves a {@link FUSE26LowLevelFileSystem} through the asynchronous reply
+ * API by running each operation on an {@link OperationExecutor}. The
+ * arguments that are only valid during the native callback are copied before
+ * the request is handed off, and the request is replied to with the result
+ * of the operation when it has finished.
+ *
+ * @author Erik Larsson
+ */
+class OperationDispatchFileSystem implements FUSE26AsyncReplyFileSystem {
+    private final FUSE26LowLevelFileSystem fs;
+    private final OperationExecutor executor;
+
+    /** The most read buffers kept for reuse. */
+    private static final int MAX_POOLED_READ_BUFFERS = 32;
+
+    /**
+     * Direct buffers that reads are served into. A buffer is taken for each
+     * read and put back when the read has been replied to, since the reply
+     * copies the data before it returns. Buffers are shared by all threads,
+     * so executors that start a new thread per operation reuse them too.
+     * Reads are bounded by max_read, and so are the buffers.
+     */
+    private final ArrayBlockingQueue<ByteBuffer> readBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(MAX_POOLED_READ_BUFFERS);
+
+    public OperationDispatchFileSystem(FUSE26LowLevelFileSystem fs,
+            OperationExecutor executor) {
+        this.fs = fs;
+        this.executor = executor;
+    }
+
+    public FUSE26LowLevelCapabilities getLowLevelCapabilities() {
+        return fs.getLowLevelCapabilities();
+    }
+
+    public void lookup(final FUSERequest req, final long parent,
+            ByteBuffer name) {
+        final ByteBuffer nameCopy = copyBuffer(name).asReadOnlyBuffer();
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                FUSEEntryReply reply = new FUSEEntryReply();
+                int res = fs.lookup(parent, nameCopy, reply);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyEntry(reply);
+            }
+        });
+    }
+
+    public void forget(final FUSERequest req, final long ino,
+            final long nlookup) {
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                try {
+                    fs.forget(ino, nlookup);
+                } finally {
+                    req.replyNone();
+                }
+            }
+        });
+    }
+
+    public void getattr(final FUSERequest req, final long ino) {
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                FUSEAttrReply reply = new FUSEAttrReply();
+                int res = fs.getattr(ino, reply);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyAttr(reply);
+            }
+        });
+    }
+
+    public void setattr(final FUSERequest req, final long ino, Stat attr,
+            final int toSet, FUSEFileInfo fi) {
+        final Stat attrCopy = new Stat();
+        attrCopy.setToStat(attr);
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                FUSEAttrReply reply = new FUSEAttrReply();
+                int res = fs.setattr(ino, attrCopy, toSet, fiCopy, reply);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyAttr(reply);
+            }
+        });
+    }
+
+    public void open(final FUSERequest req, final long ino, FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                int res = fs.open(ino, fiCopy);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyOpen(fiCopy);
+            }
+        });
+    }
+
+    public void read(final FUSERequest req, final long ino, final int size,
+            final long off, FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.DATA, new Runnable() {
+            public void run() {
+                ByteBuffer dest = takeReadBuffer(size);
+                try {
+                    int res = fs.read(ino, dest, off, fiCopy);
+                    if(res < 0)
+                        req.replyErr(res);
+                    else {
+                        dest.clear();
+                        dest.limit(res < size ? res : size);
+                        req.replyBuf(dest);
+                    }
+                } finally {
+                    readBuffers.offer(dest);
+                }
+            }
+        });
+    }
+
+    public void write(final FUSERequest req, final long ino, ByteBuffer src,
+            final long off, FUSEFileInfo fi) {
+        final ByteBuffer srcCopy = copyBuffer(src).asReadOnlyBuffer();
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.DATA, new Runnable() {
+            public void run() {
+                int res = fs.write(ino, srcCopy, off, fiCopy);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyWrite(res);
+            }
+        });
+    }
+
+    public void release(final FUSERequest req, final long ino,
+            FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.FSYNC, new Runnable() {
+            public void run() {
+                req.replyErr(fs.release(ino, fiCopy));
+            }
+        });
+    }
+
+    public void opendir(final FUSERequest req, final long ino,
+            FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                int res = fs.opendir(ino, fiCopy);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyOpen(fiCopy);
+            }
+        });
+    }
+
+    public void readdir(final FUSERequest req, final long ino, final int size,
+            final long off, FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                FUSEDirReply reply =
+                        new FUSEDirReply(ByteBuffer.allocate(size));
+                int res = fs.readdir(ino, reply, off, fiCopy);
+                if(res < 0)
+                    req.replyErr(res);
+                else
+                    req.replyDir(reply);
+            }
+        });
+    }
+
+    public void releasedir(final FUSERequest req, final long ino,
+            FUSEFileInfo fi) {
+        final FUSEFileInfo fiCopy = copyFileInfo(fi);
+        dispatch(req, OperationClass.METADATA, new Runnable() {
+            public void run() {
+                req.replyErr(fs.releasedir(ino, fiCopy));
+            }
+        });
+    }
+
+    /**
+     * Hands <code>operation</code> to the executor. If the operation throws
+     * an exception before replying, the request is replied to with EIO, just
+     * like when an operation throws on a FUSE worker thread.
+     */
+    private void dispatch(final FUSERequest req,
+            OperationClass operationClass, final Runnable operation) {
+        executor.execute(operationClass, new Runnable() {
+            public void run() {
+                try {
+                    operation.run();
+                } catch(Throwable t) {
+                    Log.error("Operation dispatched to " +
+                            executor.getName() + " threw exception: " + t);
+                    if(req.isPending())
+                        req.replyErr(-FUSEErrorValues.EIO);
+                }
+            }
+        });
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty,
+     * cleared and limited to <code>size</code> bytes. A pooled buffer that
+     * is too small is dropped. The buffer is put back with
+     * <code>readBuffers.offer</code>, which drops it if the pool is full.
+     */
+    private ByteBuffer takeReadBuffer(int size) {
+        ByteBuffer b = readBuffers.poll();
+        if(b == null || b.capacity() < size)
+            b = ByteBuffer.allocateDirect(size);
+
+        b.clear();
+        b.limit(size);
+        return b;
+    }
+
+    private static ByteBuffer copyBuffer(ByteBuffer b) {
+        ByteBuffer copy = ByteBuffer.allocate(b.remaining());
+        copy.put(b.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    private static FUSEFileInfo copyFileInfo(FUSEFileInfo fi) {
+        if(fi == null)
+            return null;
+
+        FUSEFileInfo copy = new FUSEFileInfo();
+        copy.setToFUSEFileInfo(fi);
+        return copy;
+    }
+}
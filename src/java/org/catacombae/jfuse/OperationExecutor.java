@@ -0,0 +1,317 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the operations of a low level file system on behalf of the FUSE worker
+ * threads. When an executor is set with
+ * {@link FUSEOptions#setOperationExecutor(org.catacombae.jfuse.OperationExecutor)},
+ * the native worker only decodes each request and hands it to the executor,
+ * and the reply is sent when the operation has finished on whatever thread
+ * the executor picked. The worker is then free to read the next request, so
+ * the number of requests in flight is no longer bounded by the number of
+ * FUSE worker threads.<br>
+ * Every executor keeps counters of how many operations are queued (handed
+ * off but not yet started) and how long they waited before they started.
+ *
+ * @author Erik Larsson
+ */
+public abstract class OperationExecutor {
+    private static final Method startVirtualThreadMethod =
+            lookupStartVirtualThread();
+
+    private final String name;
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    protected OperationExecutor(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs every operation directly on the FUSE worker thread that received
+     * the request. This is how operations are run when no executor is set,
+     * except that the counters are maintained.
+     *
+     * @return a new inline executor.
+     */
+    public static OperationExecutor newInlineExecutor() {
+        return new OperationExecutor("inline") {
+            @Override
+            protected void dispatch(Runnable operation) {
+                operation.run();
+            }
+        };
+    }
+
+    /**
+     * Runs every operation on a new virtual thread. Virtual threads are cheap
+     * enough to create one per request, and an operation that blocks on I/O
+     * only parks its virtual thread instead of a FUSE worker thread.
+     *
+     * @return a new virtual thread executor.
+     * @throws UnsupportedOperationException if the running JVM doesn't have
+     * virtual threads (Java 21 or later is required).
+     * @see #isVirtualThreadSupported()
+     */
+    public static OperationExecutor newVirtualThreadExecutor() {
+        if(startVirtualThreadMethod == null)
+            throw new UnsupportedOperationException("Virtual threads are " +
+                    "not supported by this JVM.");
+
+        return new OperationExecutor("virtual thread") {
+            @Override
+            protected void dispatch(Runnable operation) {
+                startVirtualThread(operation);
+            }
+        };
+    }
+
+    /**
+     * Runs the operations on <code>executor</code>, for instance a thread
+     * pool.
+     *
+     * @param name the name of the executor, used when printing statistics.
+     * @param executor the executor to hand the operations to.
+     * @return a new executor backed by <code>executor</code>.
+     */
+    public static OperationExecutor newExecutor(String name,
+            final Executor executor) {
+        if(executor == null)
+            throw new IllegalArgumentException("executor == null");
+
+        return new OperationExecutor(name) {
+            @Override
+            protected void dispatch(Runnable operation) {
+                executor.execute(operation);
+            }
+        };
+    }
+
+    /**
+     * Checks whether the running JVM has virtual threads, i.e. whether
+     * {@link #newVirtualThreadExecutor()} can be used.
+     *
+     * @return <code>true</code> if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return startVirtualThreadMethod != null;
+    }
+
+    /**
+     * Hands <code>operation</code> to the executor implementation. An
+     * exception thrown here before the operation has started means that it
+     * was rejected.
+     *
+     * @param operation the operation to run.
+     */
+    protected abstract void dispatch(Runnable operation);
+
+    /**
+     * Hands <code>operation</code>, belonging to
+     * <code>operationClass</code>, to the executor implementation. The
+     * default implementation ignores the class and calls
+     * {@link #dispatch(java.lang.Runnable)}.
+     *
+     * @param operationClass the class of the operation.
+     * @param operation the operation to run.
+     */
+    protected void dispatch(OperationClass operationClass,
+            Runnable operation) {
+        dispatch(operation);
+    }
+
+    /**
+     * Runs <code>operation</code> through this executor, updating the
+     * counters. The operation is treated as a metadata operation.
+     *
+     * @param operation the operation to run.
+     */
+    public final void execute(Runnable operation) {
+        execute(OperationClass.METADATA, operation);
+    }
+
+    /**
+     * Runs <code>operation</code>, belonging to <code>operationClass</code>,
+     * through this executor, updating the counters.
+     *
+     * @param operationClass the class of the operation.
+     * @param operation the operation to run.
+     */
+    public final void execute(OperationClass operationClass,
+            Runnable operation) {
+        final long submitTime = System.nanoTime();
+
+        submittedCount.incrementAndGet();
+        updateMax(maxQueueDepth, queueDepth.incrementAndGet());
+
+        QueuedOperation queued = new QueuedOperation(operation, submitTime);
+        try {
+            dispatch(operationClass, queued);
+        } catch(RuntimeException e) {
+            if(!queued.started) {
+                /* Rejected, so it was never queued. */
+                queueDepth.decrementAndGet();
+                submittedCount.decrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of operations that have been handed to the
+     * executor but haven't started yet.
+     */
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the highest queue depth seen so far.
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of operations handed to the executor.
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return the number of operations that have finished.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return the total time, in nanoseconds, that the started operations
+     * have spent waiting in the queue.
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    /**
+     * @return the longest time, in nanoseconds, that an operation has spent
+     * waiting in the queue.
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * @return the average time, in nanoseconds, that the started operations
+     * have spent waiting in the queue.
+     */
+    public long getAverageWaitNanos() {
+        final long started = submittedCount.get() - queueDepth.get();
+        return started > 0 ? totalWaitNanos.get() / started : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationExecutor[" + name +
+                ": queueDepth=" + getQueueDepth() +
+                ", maxQueueDepth=" + getMaxQueueDepth() +
+                ", submitted=" + getSubmittedCount() +
+                ", completed=" + getCompletedCount() +
+                ", avgWaitNanos=" + getAverageWaitNanos() +
+                ", maxWaitNanos=" + getMaxWaitNanos() + "]";
+    }
+
+    private class QueuedOperation implements Runnable {
+        private final Runnable operation;
+        private final long submitTime;
+        volatile boolean started = false;
+
+        public QueuedOperation(Runnable operation, long submitTime) {
+            this.operation = operation;
+            this.submitTime = submitTime;
+        }
+
+        public void run() {
+            final long waitNanos = System.nanoTime() - submitTime;
+            started = true;
+            queueDepth.decrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            updateMax(maxWaitNanos, waitNanos);
+
+            try {
+                operation.run();
+            } finally {
+                completedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long cur;
+        while(value > (cur = max.get())) {
+            if(max.compareAndSet(cur, value))
+                break;
+        }
+    }
+
+    private static Method lookupStartVirtualThread() {
+        /* Thread.startVirtualThread(Runnable) exists from Java 21. It's
+         * looked up by reflection since we are compiled for older releases. */
+        try {
+            return Thread.class.getMethod("startVirtualThread",
+                    Runnable.class);
+        } catch(NoSuchMethodException e) {
+            return null;
+        } catch(SecurityException e) {
+            return null;
+        }
+    }
+
+    private static void startVirtualThread(Runnable operation) {
+        try {
+            startVirtualThreadMethod.invoke(null, operation);
+        } catch(IllegalAccessException e) {
+            throw new RuntimeException("Could not start virtual thread.", e);
+        } catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if(cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException("Could not start virtual thread.",
+                    cause);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+/**
+ * Runs each {@link OperationClass} on its own executor, so that operations of
+ * one class can't starve the others. The counters of this executor cover all
+ * operations, while the counters of the executor of each class can be read
+ * through {@link #getExecutor(org.catacombae.jfuse.OperationClass)}.
+ *
+ * @author Erik Larsson
+ */
+public class PartitionedOperationExecutor extends OperationExecutor {
+    private final OperationExecutor metadataExecutor;
+    private final OperationExecutor dataExecutor;
+    private final OperationExecutor fsyncExecutor;
+
+    public PartitionedOperationExecutor(OperationExecutor metadataExecutor,
+            OperationExecutor dataExecutor, OperationExecutor fsyncExecutor) {
+        super("partitioned");
+
+        if(metadataExecutor == null)
+            throw new IllegalArgumentException("metadataExecutor == null");
+        if(dataExecutor == null)
+            throw new IllegalArgumentException("dataExecutor == null");
+        if(fsyncExecutor == null)
+            throw new IllegalArgumentException("fsyncExecutor == null");
+
+        this.metadataExecutor = metadataExecutor;
+        this.dataExecutor = dataExecutor;
+        this.fsyncExecutor = fsyncExecutor;
+    }
+
+    /**
+     * Creates a partitioned executor with an {@link AdaptivePoolExecutor} for
+     * each operation class.
+     *
+     * @param minMetadataThreads the minimum size of the metadata pool.
+     * @param maxMetadataThreads the maximum size of the metadata pool.
+     * @param minDataThreads the minimum size of the data pool.
+     * @param maxDataThreads the maximum size of the data pool.
+     * @param minFsyncThreads the minimum size of the fsync pool.
+     * @param maxFsyncThreads the maximum size of the fsync pool.
+     * @param targetWaitMillis the average queue wait, in milliseconds, above
+     * which a pool grows.
+     * @return a new partitioned executor.
+     */
+    public static PartitionedOperationExecutor newAdaptiveExecutor(
+            int minMetadataThreads, int maxMetadataThreads,
+            int minDataThreads, int maxDataThreads,
+            int minFsyncThreads, int maxFsyncThreads,
+            long targetWaitMillis) {
+        return new PartitionedOperationExecutor(
+                new AdaptivePoolExecutor("metadata", minMetadataThreads,
+                        maxMetadataThreads, targetWaitMillis),
+                new AdaptivePoolExecutor("data", minDataThreads,
+                        maxDataThreads, targetWaitMillis),
+                new AdaptivePoolExecutor("fsync", minFsyncThreads,
+                        maxFsyncThreads, targetWaitMillis));
+    }
+
+    /**
+     * Returns the executor that runs operations of class
+     * <code>operationClass</code>.
+     *
+     * @param operationClass the operation class.
+     * @return the executor for <code>operationClass</code>.
+     */
+    public OperationExecutor getExecutor(OperationClass operationClass) {
+        switch(operationClass) {
+            case DATA:
+                return dataExecutor;
+            case FSYNC:
+                return fsyncExecutor;
+            case METADATA:
+            default:
+                return metadataExecutor;
+        }
+    }
+
+    @Override
+    protected void dispatch(OperationClass operationClass,
+            Runnable operation) {
+        getExecutor(operationClass).execute(operationClass, operation);
+    }
+
+    @Override
+    protected void dispatch(Runnable operation) {
+        dispatch(OperationClass.METADATA, operation);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[metadata=" + metadataExecutor +
+                ", data=" + dataExecutor + ", fsync=" + fsyncExecutor + "]";
+    }
+}
@@ -0,0 +1,212 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A ring of request slots in native memory, shared between the FUSE worker
+ * thread of a mount and Java consumer threads. When a ring is set with
+ * {@link FUSEOptions#setRequestRing(org.catacombae.jfuse.RequestRing)}, the
+ * worker thread publishes decoded lookup, getattr, read and write requests
+ * into the ring instead of calling into Java for each of them. Consumer
+ * threads (see {@link RequestRingConsumer}) claim published requests in
+ * batches, run them against the file system and complete them in batches, so
+ * the per-request JNI upcall and the argument objects are replaced by one
+ * downcall per batch.<br>
+ * Requests that don't fit in the ring (all slots are in flight, or the name or
+ * data is larger than a slot) and all other operations are passed to the file
+ * system by the worker thread as usual, so the file system must be thread
+ * safe. A mount with a ring is always served by a single FUSE worker thread,
+ * which is the only producer.<br>
+ * A ring can be used for one mount only. The consumers must keep running
+ * until {@link RequestRingConsumer#run()} returns after the file system has
+ * been unmounted, and the ring should then be closed to free its memory.
+ *
+ * @author Erik Larsson
+ */
+public class RequestRing {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /** The maximum number of requests claimed or completed per downcall. */
+    public static final int MAX_BATCH = 256;
+
+    /* Slot layout, shared with jFUSERequestRing.h. */
+    static final int OP_LOOKUP = 1;
+    static final int OP_GETATTR = 2;
+    static final int OP_READ = 3;
+    static final int OP_WRITE = 4;
+
+    static final int OFF_OPCODE = 0;
+    static final int OFF_DATA_LENGTH = 4;
+    static final int OFF_INO = 8;
+    static final int OFF_OFFSET = 16;
+    static final int OFF_FH = 24;
+    static final int OFF_SIZE = 32;
+    static final int OFF_FLAGS = 36;
+    static final int OFF_RESULT = 40;
+    static final int OFF_ENTRY_INO = 64;
+    static final int OFF_ENTRY_GENERATION = 72;
+    static final int OFF_ATTR_TIMEOUT = 80;
+    static final int OFF_ENTRY_TIMEOUT = 88;
+    static final int OFF_STAT = 96;
+    static final int HEADER_SIZE = 256;
+
+    private final int capacity;
+    private final int dataCapacity;
+    private final ByteBuffer slots;
+
+    /** Address of the native ring, or 0 once closed. Read by native code. */
+    private volatile long nativeRing;
+    private boolean used = false;
+    private boolean attached = false;
+
+    /**
+     * Creates a new ring.
+     *
+     * @param capacity the number of slots, which is the maximum number of
+     * requests in flight through the ring. Must be a power of two between 2
+     * and 65536.
+     * @param dataCapacity the number of data bytes in each slot, which limits
+     * the size of the names, reads and writes passed through the ring. Must be
+     * a multiple of 8 and at least 256, so that any file name fits.
+     */
+    public RequestRing(int capacity, int dataCapacity) {
+        if(capacity < 2 || capacity > 65536 ||
+                (capacity & (capacity - 1)) != 0)
+            throw new IllegalArgumentException("capacity must be a power of " +
+                    "two between 2 and 65536.");
+        if(dataCapacity < 256 || (dataCapacity % 8) != 0)
+            throw new IllegalArgumentException("dataCapacity must be a " +
+                    "multiple of 8 and at least 256.");
+
+        this.capacity = capacity;
+        this.dataCapacity = dataCapacity;
+        this.nativeRing = createNative(capacity, dataCapacity);
+        this.slots = getSlotsNative(nativeRing).order(ByteOrder.nativeOrder());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getDataCapacity() {
+        return dataCapacity;
+    }
+
+    int getSlotSize() {
+        return HEADER_SIZE + dataCapacity;
+    }
+
+    /**
+     * Returns a new view of the slot memory in native byte order, for use by
+     * one consumer thread.
+     */
+    ByteBuffer getSlots() {
+        return slots.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a consumer that runs the requests of this ring against
+     * <code>fileSystem</code>. Any number of consumers may serve the same
+     * ring, each on its own thread.
+     *
+     * @param fileSystem the file system that is mounted with this ring.
+     * @param maxBatch the maximum number of requests to claim at a time (at
+     * most {@link #MAX_BATCH}).
+     * @param busyPoll <code>true</code> to spin while the ring is empty, for
+     * the lowest latency at the cost of keeping a CPU busy, or
+     * <code>false</code> to sleep until requests are published.
+     * @return a new consumer.
+     */
+    public RequestRingConsumer newConsumer(FUSE26LowLevelFileSystem fileSystem,
+            int maxBatch, boolean busyPoll) {
+        return new RequestRingConsumer(this, fileSystem, maxBatch, busyPoll);
+    }
+
+    private long getRing() {
+        if(nativeRing == 0)
+            throw new IllegalStateException("The ring has been closed.");
+        return nativeRing;
+    }
+
+    /** Called by FUSE before the ring is handed to the native mount. */
+    synchronized void attach() {
+        getRing();
+        if(used)
+            throw new IllegalStateException("The ring has already been used " +
+                    "for a mount.");
+        used = true;
+        attached = true;
+    }
+
+    /** Called by FUSE when the native mount has returned. */
+    synchronized void detach() {
+        attached = false;
+    }
+
+    /**
+     * Claims published requests, storing their slot indices in
+     * <code>indices</code>.
+     *
+     * @return the number of requests claimed, or -1 if the mount has ended
+     * and all requests have been claimed.
+     */
+    int poll(int[] indices, int max, boolean block) {
+        return pollNative(getRing(), indices, max, block);
+    }
+
+    /**
+     * Sends the replies written into the first <code>count</code> slots in
+     * <code>indices</code>, and frees the slots.
+     */
+    void complete(int[] indices, int count) {
+        completeNative(getRing(), indices, count);
+    }
+
+    /**
+     * Frees the native memory of the ring. The ring must not be in use by a
+     * mount, and all consumers must have stopped.
+     */
+    public synchronized void close() {
+        if(attached)
+            throw new IllegalStateException("The ring is in use by a mount.");
+
+        if(nativeRing != 0) {
+            destroyNative(nativeRing);
+            nativeRing = 0;
+        }
+    }
+
+    private static native long createNative(int capacity, int dataCapacity);
+
+    private static native ByteBuffer getSlotsNative(long nativeRing);
+
+    private static native int pollNative(long nativeRing, int[] indices,
+            int max, boolean block);
+
+    private static native void completeNative(long nativeRing, int[] indices,
+            int count);
+
+    private static native void destroyNative(long nativeRing);
+}
@@ -0,0 +1,238 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.types.fuse26.FUSEAttrReply;
+import org.catacombae.jfuse.types.fuse26.FUSEEntryReply;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.util.Log;
+
+/**
+ * Runs the requests published to a {@link RequestRing} against a low level
+ * file system. Each consumer is meant to be run by one thread, and keeps one
+ * instance of each argument object, which it refills for every request. The
+ * file system must therefore not keep references to the argument objects or
+ * buffers after a call has returned (as with
+ * {@link FUSEOptions#setReuseArgumentObjects(boolean)}).<br>
+ * The only FUSEFileInfo fields that are passed through the ring are
+ * <code>fh</code> and <code>flags</code>.
+ *
+ * @author Erik Larsson
+ */
+public class RequestRingConsumer implements Runnable {
+    private static final FUSEFileInfo EMPTY_FILE_INFO = new FUSEFileInfo();
+
+    private final RequestRing ring;
+    private final FUSE26LowLevelFileSystem fs;
+    private final int maxBatch;
+    private final boolean busyPoll;
+    private final int slotSize;
+
+    private final ByteBuffer slots;
+    private final ByteBuffer[] dataViews;
+    private final ByteBuffer[] readOnlyDataViews;
+    private final int[] batch;
+
+    private final FUSEEntryReply entryReply = new FUSEEntryReply();
+    private final FUSEAttrReply attrReply = new FUSEAttrReply();
+    private final FUSEFileInfo fileInfo = new FUSEFileInfo();
+
+    private volatile long processedCount = 0;
+    private volatile long batchCount = 0;
+
+    RequestRingConsumer(RequestRing ring, FUSE26LowLevelFileSystem fs,
+            int maxBatch, boolean busyPoll) {
+        if(fs == null)
+            throw new IllegalArgumentException("fs == null");
+        if(maxBatch < 1 || maxBatch > RequestRing.MAX_BATCH)
+            throw new IllegalArgumentException("maxBatch must be between 1 " +
+                    "and " + RequestRing.MAX_BATCH + ".");
+
+        this.ring = ring;
+        this.fs = fs;
+        this.maxBatch = maxBatch;
+        this.busyPoll = busyPoll;
+        this.slotSize = ring.getSlotSize();
+        this.slots = ring.getSlots();
+        this.batch = new int[maxBatch];
+
+        /* One view of the data area of each slot, created up front so that
+         * no buffers are allocated per request. */
+        final int capacity = ring.getCapacity();
+        this.dataViews = new ByteBuffer[capacity];
+        this.readOnlyDataViews = new ByteBuffer[capacity];
+        for(int i = 0; i < capacity; ++i) {
+            ByteBuffer view = ring.getSlots();
+            int dataStart = i * slotSize + RequestRing.HEADER_SIZE;
+            view.limit(dataStart + ring.getDataCapacity());
+            view.position(dataStart);
+            dataViews[i] = view.slice();
+            readOnlyDataViews[i] = dataViews[i].asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Processes requests until the file system has been unmounted and all
+     * requests have been processed.
+     */
+    public void run() {
+        while(true) {
+            final int count = ring.poll(batch, maxBatch, !busyPoll);
+            if(count < 0)
+                break;
+            else if(count == 0)
+                continue;
+
+            for(int i = 0; i < count; ++i)
+                process(batch[i]);
+
+            ring.complete(batch, count);
+            processedCount += count;
+            ++batchCount;
+        }
+    }
+
+    /**
+     * @return the number of requests that this consumer has completed.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * @return the number of batches that this consumer has completed. The
+     * average batch size is the processed count divided by this number.
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    private void process(int index) {
+        final int base = index * slotSize;
+        final int opcode = slots.getInt(base + RequestRing.OFF_OPCODE);
+        final long ino = slots.getLong(base + RequestRing.OFF_INO);
+
+        int res;
+        try {
+            switch(opcode) {
+                case RequestRing.OP_LOOKUP: {
+                    ByteBuffer name = readOnlyDataViews[index];
+                    name.clear();
+                    name.limit(slots.getInt(base +
+                            RequestRing.OFF_DATA_LENGTH));
+
+                    resetEntryReply();
+                    res = fs.lookup(ino, name, entryReply);
+                    if(res >= 0) {
+                        slots.putLong(base + RequestRing.OFF_ENTRY_INO,
+                                entryReply.ino);
+                        slots.putLong(base + RequestRing.OFF_ENTRY_GENERATION,
+                                entryReply.generation);
+                        slots.putDouble(base + RequestRing.OFF_ATTR_TIMEOUT,
+                                entryReply.attr_timeout);
+                        slots.putDouble(base + RequestRing.OFF_ENTRY_TIMEOUT,
+                                entryReply.entry_timeout);
+                        putStat(base, entryReply.attr);
+                    }
+                    break;
+                }
+                case RequestRing.OP_GETATTR:
+                    attrReply.attr.zero();
+                    attrReply.attr_timeout = 0;
+                    res = fs.getattr(ino, attrReply);
+                    if(res >= 0) {
+                        slots.putDouble(base + RequestRing.OFF_ATTR_TIMEOUT,
+                                attrReply.attr_timeout);
+                        putStat(base, attrReply.attr);
+                    }
+                    break;
+                case RequestRing.OP_READ: {
+                    ByteBuffer dest = dataViews[index];
+                    dest.clear();
+                    dest.limit(slots.getInt(base + RequestRing.OFF_SIZE));
+                    res = fs.read(ino, dest,
+                            slots.getLong(base + RequestRing.OFF_OFFSET),
+                            fillFileInfo(base));
+                    break;
+                }
+                case RequestRing.OP_WRITE: {
+                    ByteBuffer src = readOnlyDataViews[index];
+                    src.clear();
+                    src.limit(slots.getInt(base +
+                            RequestRing.OFF_DATA_LENGTH));
+                    res = fs.write(ino, src,
+                            slots.getLong(base + RequestRing.OFF_OFFSET),
+                            fillFileInfo(base));
+                    break;
+                }
+                default:
+                    Log.error("RequestRingConsumer: Unknown opcode " + opcode +
+                            " in slot " + index + ".");
+                    res = -FUSEErrorValues.ENOSYS;
+                    break;
+            }
+        } catch(Throwable t) {
+            Log.error("RequestRingConsumer: Operation " + opcode + " threw " +
+                    "exception: " + t);
+            res = -FUSEErrorValues.EIO;
+        }
+
+        slots.putInt(base + RequestRing.OFF_RESULT, res);
+    }
+
+    private void resetEntryReply() {
+        entryReply.ino = 0;
+        entryReply.generation = 0;
+        entryReply.attr.zero();
+        entryReply.attr_timeout = 0;
+        entryReply.entry_timeout = 0;
+    }
+
+    private FUSEFileInfo fillFileInfo(int base) {
+        fileInfo.setToFUSEFileInfo(EMPTY_FILE_INFO);
+        fileInfo.fh = slots.getLong(base + RequestRing.OFF_FH);
+        fileInfo.flags = slots.getInt(base + RequestRing.OFF_FLAGS);
+        return fileInfo;
+    }
+
+    private void putStat(int base, Stat st) {
+        final int p = base + RequestRing.OFF_STAT;
+        slots.putLong(p + 0 * 8, st.st_dev);
+        slots.putLong(p + 1 * 8, st.st_ino);
+        slots.putLong(p + 2 * 8, st.st_mode);
+        slots.putLong(p + 3 * 8, st.st_nlink);
+        slots.putLong(p + 4 * 8, st.st_uid);
+        slots.putLong(p + 5 * 8, st.st_gid);
+        slots.putLong(p + 6 * 8, st.st_rdev);
+        slots.putLong(p + 7 * 8, st.st_size);
+        slots.putLong(p + 8 * 8, st.st_blocks);
+        slots.putLong(p + 9 * 8, st.st_blocksize);
+        slots.putLong(p + 10 * 8, st.st_flags);
+        slots.putLong(p + 11 * 8, st.st_gen);
+        slots.putLong(p + 12 * 8, st.st_atimespec.sec);
+        slots.putLong(p + 13 * 8, st.st_atimespec.nsec);
+        slots.putLong(p + 14 * 8, st.st_mtimespec.sec);
+        slots.putLong(p + 15 * 8, st.st_mtimespec.nsec);
+        slots.putLong(p + 16 * 8, st.st_ctimespec.sec);
+        slots.putLong(p + 17 * 8, st.st_ctimespec.nsec);
+    }
+}
@@ -0,0 +1,629 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.catacombae.jfuse.FUSE;
+import org.catacombae.jfuse.FUSEFileSystemAdapter;
+import org.catacombae.jfuse.FUSEOptions;
+import org.catacombae.jfuse.MountHandle;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDir;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.wire.FUSEKernelChannel;
+import org.catacombae.jfuse.wire.FUSEKernelConstants;
+import org.catacombae.jfuse.wire.FUSEKernelSession;
+
+/**
+ * Exercises the pure Java implementation of the FUSE kernel protocol
+ * ({@link FUSEKernelSession}) against a stand-in for the kernel connected
+ * through a pair of pipes, and measures its per-request cost.<br>
+ * The stand-in first sends INIT, LOOKUP, GETATTR, OPEN, READ, OPENDIR,
+ * READDIR and READDIRPLUS requests and checks the replies. It then times GETATTR and 4 KiB
+ * READ requests, written in batches of the given size so that the session
+ * receives several requests per read.
+ * <p>
+ * If a mountpoint is given, the same file system is then mounted there with
+ * {@link FUSEKernelSession#mount(org.catacombae.jfuse.FUSE26FileSystem, File,
+ * String)}, which needs no libfuse, and afterwards through libfuse and JNI.
+ * Each time its root directory is listed and <code>stat</code> and 4 KiB
+ * <code>read</code> calls on it are timed. The JNI listing also checks that
+ * the entry added with
+ * {@link FUSEFillDir#fillPlus(byte[], Stat, double, double, long)} reaches
+ * libfuse through the JNI filler. The mounted times include the kernel round
+ * trip, which the pipe measurement does not.
+ *
+ * Usage: KernelProtocolBenchmark [iterations] [batch] [mountpoint]
+ *
+ * @author Erik Larsson
+ */
+public class KernelProtocolBenchmark implements FUSEKernelConstants {
+    private static final String FILE_NAME = "file";
+    private static final int FILE_SIZE = 1024 * 1024;
+    private static final int READ_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+        int batch = (args.length > 1 ? Integer.parseInt(args[1]) : 16);
+        String mountPoint =
+                (args.length > 2 ? new File(args[2]).getAbsolutePath() : null);
+
+        long[] pipe = runPipe(iterations, batch);
+        System.out.println();
+        printResult("getattr (pipe)", iterations, pipe[0]);
+        printResult("read (pipe)", iterations, pipe[1]);
+
+        if(mountPoint != null) {
+            long[] kernel = runKernel(mountPoint, iterations);
+            printResult("stat (kernel session, mounted)", iterations,
+                    kernel[0]);
+            printResult("read (kernel session, mounted)", iterations,
+                    kernel[1]);
+
+            long[] jni = runJNI(mountPoint, iterations);
+            printResult("stat (JNI, mounted)", iterations, jni[0]);
+            printResult("read (JNI, mounted)", iterations, jni[1]);
+        }
+    }
+
+    private static void printResult(String op, int iterations, long nanos) {
+        System.out.println(op + ": " +
+                String.format("%.0f", (double) nanos / iterations) +
+                " ns/request");
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition)
+            throw new RuntimeException("Check failed: " + message);
+    }
+
+    /**
+     * Serves a new BenchmarkFS through a FUSEKernelSession over pipes, checks
+     * its replies to a few requests and times <code>iterations</code> getattr
+     * and read requests.
+     *
+     * @return the total time in nanoseconds for getattr (index 0) and read
+     * (index 1).
+     */
+    private static long[] runPipe(int iterations, int batch) throws Exception {
+        final Pipe requests = Pipe.open();
+        final Pipe replies = Pipe.open();
+        final int maxWrite = FUSEKernelSession.DEFAULT_MAX_WRITE;
+        final FUSEKernelChannel channel = new FUSEKernelChannel(
+                requests.source(), replies.sink(),
+                maxWrite + FUSE_BUFFER_HEADER_SIZE);
+        final FUSEKernelSession session =
+                new FUSEKernelSession(new BenchmarkFS(), channel, maxWrite);
+        session.setReaddirPlusAllowed(true);
+
+        Thread sessionThread = new Thread("KernelProtocolBenchmark session") {
+            @Override
+            public void run() {
+                try {
+                    session.loop();
+                } catch(IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        sessionThread.start();
+
+        KernelStandIn kernel = new KernelStandIn(requests.sink(),
+                replies.source());
+
+        /* INIT */
+        kernel.begin(FUSE_INIT, 0);
+        kernel.putInt(FUSE_KERNEL_VERSION);
+        kernel.putInt(FUSE_KERNEL_MINOR_VERSION);
+        kernel.putInt(128 * 1024);
+        kernel.putInt(FUSE_ASYNC_READ | FUSE_BIG_WRITES |
+                FUSE_DO_READDIRPLUS);
+        kernel.putZeroes(48);
+        kernel.end();
+        kernel.flush();
+        ByteBuffer reply = kernel.receive();
+        check(kernel.error == 0, "INIT error " + kernel.error);
+        check(reply.getInt(0) == FUSE_KERNEL_VERSION &&
+                reply.getInt(4) == FUSE_KERNEL_MINOR_VERSION,
+                "INIT version " + reply.getInt(0) + "." + reply.getInt(4));
+        check(reply.getInt(20) == maxWrite, "INIT max_write " +
+                reply.getInt(20));
+        check((reply.getInt(12) & FUSE_DO_READDIRPLUS) != 0,
+                "INIT flags " + Integer.toHexString(reply.getInt(12)));
+
+        /* LOOKUP */
+        kernel.begin(FUSE_LOOKUP, FUSE_ROOT_ID);
+        kernel.putString(FILE_NAME);
+        kernel.end();
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "LOOKUP error " + kernel.error);
+        final long fileNode = reply.getLong(0);
+        check(fileNode != FUSE_ROOT_ID && fileNode != 0,
+                "LOOKUP node ID " + fileNode);
+        check(reply.getLong(40 + 8) == FILE_SIZE, "LOOKUP size " +
+                reply.getLong(40 + 8));
+
+        kernel.begin(FUSE_LOOKUP, FUSE_ROOT_ID);
+        kernel.putString("nonexistent");
+        kernel.end();
+        kernel.flush();
+        kernel.receive();
+        check(kernel.error == -BenchmarkFS.ENOENT, "negative LOOKUP error " +
+                kernel.error);
+
+        /* GETATTR */
+        kernel.begin(FUSE_GETATTR, fileNode);
+        kernel.putZeroes(16);
+        kernel.end();
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "GETATTR error " + kernel.error);
+        check(reply.getLong(16) == fileNode, "GETATTR ino " +
+                reply.getLong(16));
+
+        /* OPEN */
+        kernel.begin(FUSE_OPEN, fileNode);
+        kernel.putZeroes(8);
+        kernel.end();
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "OPEN error " + kernel.error);
+        final long fh = reply.getLong(0);
+        check(fh == BenchmarkFS.FILE_HANDLE, "OPEN fh " + fh);
+
+        /* READ at the end of the file. */
+        putRead(kernel, fileNode, fh, FILE_SIZE - 100);
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "READ error " + kernel.error);
+        check(reply.remaining() == 100, "READ length " + reply.remaining());
+        check(reply.get(0) == (byte) (FILE_SIZE - 100), "READ data");
+
+        /* OPENDIR, READDIR, RELEASEDIR */
+        kernel.begin(FUSE_OPENDIR, FUSE_ROOT_ID);
+        kernel.putZeroes(8);
+        kernel.end();
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "OPENDIR error " + kernel.error);
+        final long dh = reply.getLong(0);
+
+        int entries = 0;
+        long offset = 0;
+        while(true) {
+            kernel.begin(FUSE_READDIR, FUSE_ROOT_ID);
+            kernel.putLong(dh);
+            kernel.putLong(offset);
+            kernel.putInt(80);
+            kernel.putZeroes(20);
+            kernel.end();
+            kernel.flush();
+            reply = kernel.receive();
+            check(kernel.error == 0, "READDIR error " + kernel.error);
+            if(!reply.hasRemaining())
+                break;
+            while(reply.hasRemaining()) {
+                int start = reply.position();
+                reply.getLong();
+                offset = reply.getLong();
+                int nameLength = reply.getInt();
+                reply.position(start +
+                        ((FUSE_DIRENT_HEADER_SIZE + nameLength + 7) & ~7));
+                ++entries;
+            }
+        }
+        check(entries == 3, "READDIR returned " + entries + " entries");
+
+        /* READDIRPLUS returns the file with its node and attributes. */
+        kernel.begin(FUSE_READDIRPLUS, FUSE_ROOT_ID);
+        kernel.putLong(dh);
+        kernel.putLong(0);
+        kernel.putInt(4096);
+        kernel.putZeroes(20);
+        kernel.end();
+        kernel.flush();
+        reply = kernel.receive();
+        check(kernel.error == 0, "READDIRPLUS error " + kernel.error);
+        entries = 0;
+        boolean fileFound = false;
+        while(reply.hasRemaining()) {
+            int start = reply.position();
+            final long nodeId = reply.getLong(start);
+            final long size = reply.getLong(start + 40 + 8);
+            int nameLength = reply.getInt(start + FUSE_ENTRY_OUT_SIZE + 16);
+            if(nameLength == FILE_NAME.length()) {
+                check(nodeId == fileNode, "READDIRPLUS node ID " + nodeId);
+                check(size == FILE_SIZE, "READDIRPLUS size " + size);
+                fileFound = true;
+            }
+            else
+                check(nodeId == 0, "READDIRPLUS node ID " + nodeId);
+            reply.position(start +
+                    ((FUSE_DIRENTPLUS_HEADER_SIZE + nameLength + 7) & ~7));
+            ++entries;
+        }
+        check(entries == 3 && fileFound, "READDIRPLUS returned " + entries +
+                " entries");
+
+        kernel.begin(FUSE_RELEASEDIR, FUSE_ROOT_ID);
+        kernel.putLong(dh);
+        kernel.putZeroes(16);
+        kernel.end();
+        kernel.flush();
+        kernel.receive();
+        check(kernel.error == 0, "RELEASEDIR error " + kernel.error);
+
+        System.out.println("Pipe stand-in: all checks passed. " +
+                iterations + " iterations, batches of " + batch + ":");
+
+        /* Warm up. */
+        timeGetattr(kernel, fileNode, iterations / 10, batch);
+        timeRead(kernel, fileNode, fh, iterations / 10, batch);
+
+        long getattrNanos = timeGetattr(kernel, fileNode, iterations, batch);
+        System.out.println("  getattr: " + getattrNanos / iterations +
+                " ns/request");
+        long readNanos = timeRead(kernel, fileNode, fh, iterations, batch);
+        System.out.println("  read:    " + readNanos / iterations +
+                " ns/request");
+
+        /* DESTROY ends the session loop. */
+        kernel.begin(FUSE_DESTROY, 0);
+        kernel.end();
+        kernel.flush();
+        kernel.receive();
+        sessionThread.join();
+        channel.close();
+        System.out.println("  " + session.getRequestCount() + " requests " +
+                "processed.");
+
+        return new long[] { getattrNanos, readNanos };
+    }
+
+    private static void putRead(KernelStandIn kernel, long node, long fh,
+            long offset) {
+        kernel.begin(FUSE_READ, node);
+        kernel.putLong(fh);
+        kernel.putLong(offset);
+        kernel.putInt(READ_SIZE);
+        kernel.putZeroes(20);
+        kernel.end();
+    }
+
+    private static long timeGetattr(KernelStandIn kernel, long node,
+            int iterations, int batch) throws IOException {
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i += batch) {
+            int n = Math.min(batch, iterations - i);
+            for(int j = 0; j < n; ++j) {
+                kernel.begin(FUSE_GETATTR, node);
+                kernel.putZeroes(16);
+                kernel.end();
+            }
+            kernel.flush();
+            for(int j = 0; j < n; ++j) {
+                kernel.receive();
+                check(kernel.error == 0, "GETATTR error " + kernel.error);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeRead(KernelStandIn kernel, long node, long fh,
+            int iterations, int batch) throws IOException {
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i += batch) {
+            int n = Math.min(batch, iterations - i);
+            for(int j = 0; j < n; ++j)
+                putRead(kernel, node, fh, ((long) (i + j) * READ_SIZE) %
+                        FILE_SIZE);
+            kernel.flush();
+            for(int j = 0; j < n; ++j) {
+                ByteBuffer reply = kernel.receive();
+                check(kernel.error == 0 && reply.remaining() == READ_SIZE,
+                        "READ error " + kernel.error);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Mounts a new BenchmarkFS through libfuse and times
+     * <code>iterations</code> stat and read calls on it.
+     *
+     * @return the total time in nanoseconds for stat (index 0) and read
+     * (index 1).
+     */
+    private static long[] runJNI(String mountPoint, int iterations)
+            throws Exception {
+        final FUSEOptions options = new FUSEOptions();
+        options.addOption("attr_timeout", "0");
+        options.addOption("entry_timeout", "0");
+        options.addOption("negative_timeout", "0");
+        options.setSingleThreaded(true);
+
+        MountHandle handle =
+                FUSE.mountAsync(new BenchmarkFS(), mountPoint, options);
+        if(!handle.awaitReady(10, TimeUnit.SECONDS))
+            throw new RuntimeException("File system did not come up at \"" +
+                    mountPoint + "\".", handle.getFailure());
+
+        System.out.println("JNI at \"" + mountPoint + "\", " + iterations +
+                " iterations:");
+
+        /* The file is added with fillPlus, which libfuse 2 gets as a fill
+         * with attributes. A failing filler makes the listing fail. */
+        long[] result = timeMounted("JNI", mountPoint, iterations);
+
+        if(!handle.unmount(false))
+            throw new RuntimeException("Could not unmount \"" + mountPoint +
+                    "\".");
+        handle.awaitTermination();
+
+        return result;
+    }
+
+    /**
+     * Mounts a new BenchmarkFS with {@link FUSEKernelSession#mount(
+     * org.catacombae.jfuse.FUSE26FileSystem, File, String)}, lists its root
+     * directory and times <code>iterations</code> stat and read calls.
+     *
+     * @return the total time in nanoseconds for stat (index 0) and read
+     * (index 1).
+     */
+    private static long[] runKernel(String mountPoint, int iterations)
+            throws Exception {
+        final FUSEKernelSession session = FUSEKernelSession.mount(
+                new BenchmarkFS(), new File(mountPoint), null);
+        session.setEntryTimeout(0);
+        session.setAttrTimeout(0);
+
+        final IOException[] failure = new IOException[1];
+        Thread sessionThread = new Thread("KernelProtocolBenchmark mount") {
+            @Override
+            public void run() {
+                try {
+                    session.loop();
+                } catch(IOException e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        sessionThread.start();
+
+        System.out.println("Kernel session at \"" + mountPoint + "\", " +
+                iterations + " iterations:");
+
+        long[] result = timeMounted("kernel session", mountPoint, iterations);
+
+        session.unmount();
+        sessionThread.join();
+        if(failure[0] != null)
+            throw failure[0];
+
+        return result;
+    }
+
+    private static long[] timeMounted(String label, String mountPoint,
+            int iterations) throws IOException {
+        String[] names = new File(mountPoint).list();
+        check(names != null && Arrays.asList(names).contains(FILE_NAME),
+                "readdir (" + label + ") returned " +
+                (names == null ? "an error" : Arrays.toString(names)));
+
+        File file = new File(mountPoint, FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte[] buf = new byte[READ_SIZE];
+
+        /* Warm up. */
+        for(int i = 0; i < iterations / 10; ++i) {
+            file.exists();
+            raf.seek(0);
+            raf.readFully(buf);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i)
+            file.exists();
+        long statNanos = System.nanoTime() - start;
+        System.out.println("  stat: " + statNanos / iterations + " ns/call");
+
+        start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i) {
+            raf.seek(((long) i * READ_SIZE) % FILE_SIZE);
+            raf.readFully(buf);
+        }
+        long readNanos = System.nanoTime() - start;
+        System.out.println("  read: " + readNanos / iterations + " ns/call");
+
+        raf.close();
+
+        return new long[] { statNanos, readNanos };
+    }
+
+    /**
+     * Encodes requests the way the kernel does and decodes the replies.
+     */
+    private static class KernelStandIn {
+        private final Pipe.SinkChannel requests;
+        private final Pipe.SourceChannel replies;
+        private final ByteBuffer out;
+        private final ByteBuffer in;
+        private final ByteBuffer header;
+        private long unique = 0;
+        private int requestStart;
+
+        /** The error field of the last reply received. */
+        int error;
+
+        KernelStandIn(Pipe.SinkChannel requests, Pipe.SourceChannel replies) {
+            this.requests = requests;
+            this.replies = replies;
+            this.out = ByteBuffer.allocateDirect(1024 * 1024);
+            this.out.order(ByteOrder.nativeOrder());
+            this.in = ByteBuffer.allocateDirect(1024 * 1024);
+            this.in.order(ByteOrder.nativeOrder());
+            this.header = ByteBuffer.allocateDirect(FUSE_OUT_HEADER_SIZE);
+            this.header.order(ByteOrder.nativeOrder());
+        }
+
+        void begin(int opcode, long nodeId) {
+            requestStart = out.position();
+            out.putInt(0);
+            out.putInt(opcode);
+            out.putLong(++unique);
+            out.putLong(nodeId);
+            out.putInt(0); /* uid */
+            out.putInt(0); /* gid */
+            out.putInt(0); /* pid */
+            out.putInt(0);
+        }
+
+        void putInt(int i) {
+            out.putInt(i);
+        }
+
+        void putLong(long l) {
+            out.putLong(l);
+        }
+
+        void putZeroes(int count) {
+            for(int i = 0; i < count; ++i)
+                out.put((byte) 0);
+        }
+
+        void putString(String s) {
+            out.put(s.getBytes());
+            out.put((byte) 0);
+        }
+
+        void end() {
+            out.putInt(requestStart, out.position() - requestStart);
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            while(out.hasRemaining())
+                requests.write(out);
+            out.clear();
+        }
+
+        private void readFully(ByteBuffer b) throws IOException {
+            while(b.hasRemaining()) {
+                if(replies.read(b) < 0)
+                    throw new IOException("Unexpected end of stream.");
+            }
+        }
+
+        /**
+         * Reads the next reply, sets {@link #error} and returns the reply
+         * arguments, in native byte order.
+         */
+        ByteBuffer receive() throws IOException {
+            header.clear();
+            readFully(header);
+            final int len = header.getInt(0);
+            error = header.getInt(4);
+
+            in.clear();
+            in.limit(len - FUSE_OUT_HEADER_SIZE);
+            readFully(in);
+            in.flip();
+            return in;
+        }
+    }
+
+    /**
+     * Minimal file system with a root directory containing one file, whose
+     * bytes are the low bytes of their offsets.
+     */
+    private static class BenchmarkFS extends FUSEFileSystemAdapter {
+        static final long FILE_HANDLE = 42;
+
+        private static boolean isRoot(ByteBuffer path) {
+            return path.remaining() == 1;
+        }
+
+        private static boolean isFile(ByteBuffer path) {
+            return path.remaining() == FILE_NAME.length() + 1 &&
+                    path.get(path.position() + 1) == FILE_NAME.charAt(0);
+        }
+
+        @Override
+        public int getattr(ByteBuffer path, Stat stbuf) {
+            if(isRoot(path)) {
+                stbuf.st_mode = Stat.S_IFDIR | 0755;
+                stbuf.st_nlink = 2;
+            }
+            else if(isFile(path)) {
+                stbuf.st_mode = Stat.S_IFREG | 0444;
+                stbuf.st_nlink = 1;
+                stbuf.st_size = FILE_SIZE;
+            }
+            else
+                return -ENOENT;
+
+            return 0;
+        }
+
+        @Override
+        public int open(ByteBuffer path, FUSEFileInfo fi) {
+            if(!isFile(path))
+                return -ENOENT;
+
+            fi.fh = FILE_HANDLE;
+            fi.direct_io = true;
+            return 0;
+        }
+
+        @Override
+        public int read(ByteBuffer path, ByteBuffer dest, long off,
+                FUSEFileInfo fi) {
+            int len = (int) Math.min(dest.remaining(),
+                    Math.max(0, FILE_SIZE - off));
+            for(int i = 0; i < len; ++i)
+                dest.put((byte) (off + i));
+            return len;
+        }
+
+        @Override
+        public int readdir(ByteBuffer path, FUSEFillDir filler, long offset,
+                FUSEFileInfo fi) {
+            if(!isRoot(path))
+                return -ENOTDIR;
+
+            filler.fill(".".getBytes(), null, 0);
+            filler.fill("..".getBytes(), null, 0);
+
+            final Stat stat = new Stat();
+            getattr(ByteBuffer.wrap(("/" + FILE_NAME).getBytes()), stat);
+            filler.fillPlus(FILE_NAME.getBytes(), stat, 1.0, 1.0, 0);
+            return 0;
+        }
+    }
+}
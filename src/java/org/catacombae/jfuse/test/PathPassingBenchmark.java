@@ -0,0 +1,205 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.FUSE;
+import org.catacombae.jfuse.FUSEFileSystemAdapter;
+import org.catacombae.jfuse.FUSEOptions;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Measures the per-call cost of <code>getattr</code> and <code>access</code>
+ * when paths are passed in new buffers, in reused path buffers (see
+ * {@link FUSEOptions#setReusePathBuffers(boolean)}), and in reused path
+ * buffers together with reused argument objects (see
+ * {@link FUSEOptions#setReuseArgumentObjects(boolean)}). The difference
+ * between the first two modes is the saving of path buffer reuse alone.<br>
+ * The file system is mounted at the mountpoint given as the first argument,
+ * single threaded, once for each mode, with attribute and entry caching
+ * disabled so that every <code>stat</code> and <code>access</code> call
+ * reaches the file system.
+ * The times include the kernel round trip, which is the same in both modes, so
+ * the difference between the modes is the saving per call.
+ *
+ * Usage: PathPassingBenchmark &lt;mountpoint&gt; [iterations]
+ *
+ * @author Erik Larsson
+ */
+public class PathPassingBenchmark {
+    private static final String FILE_NAME = "file";
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("usage: PathPassingBenchmark <mountpoint> " +
+                    "[iterations]");
+            System.exit(1);
+        }
+
+        String mountPoint = new File(args[0]).getAbsolutePath();
+        int iterations = (args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+
+        long[] allocating = run(mountPoint, false, false, iterations);
+        long[] paths = run(mountPoint, true, false, iterations);
+        long[] all = run(mountPoint, true, true, iterations);
+
+        System.out.println();
+        printResult("getattr", "path buffers", iterations, allocating[0],
+                paths[0]);
+        printResult("getattr", "path buffers and objects", iterations,
+                allocating[0], all[0]);
+        printResult("access", "path buffers", iterations, allocating[1],
+                paths[1]);
+    }
+
+    private static void printResult(String op, String mode, int iterations,
+            long allocatingNanos, long reusingNanos) {
+        double allocatingPerCall = (double) allocatingNanos / iterations;
+        double reusingPerCall = (double) reusingNanos / iterations;
+        System.out.println(op + ": " +
+                String.format("%.0f", allocatingPerCall) + " ns/call " +
+                "(allocating), " +
+                String.format("%.0f", reusingPerCall) + " ns/call (reusing " +
+                mode + "), saving " + String.format("%.0f",
+                allocatingPerCall - reusingPerCall) + " ns/call");
+    }
+
+    /**
+     * Mounts a new BenchmarkFS and times <code>iterations</code> stat and
+     * access calls.
+     *
+     * @return the total time in nanoseconds for stat (index 0) and access
+     * (index 1).
+     */
+    private static long[] run(final String mountPoint, boolean reusePaths,
+            boolean reuseObjects, int iterations) throws Exception {
+        final BenchmarkFS fs = new BenchmarkFS();
+        final FUSEOptions options = new FUSEOptions();
+        options.addOption("attr_timeout", "0");
+        options.addOption("entry_timeout", "0");
+        options.addOption("negative_timeout", "0");
+        options.setSingleThreaded(true);
+        options.setReusePathBuffers(reusePaths);
+        options.setReuseArgumentObjects(reuseObjects);
+
+        Thread mountThread = new Thread("PathPassingBenchmark mount") {
+            @Override
+            public void run() {
+                FUSE.mount(fs, mountPoint, options);
+            }
+        };
+        mountThread.start();
+
+        File file = new File(mountPoint, FILE_NAME);
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!file.exists()) {
+            if(System.currentTimeMillis() > deadline)
+                throw new RuntimeException("File system did not come up at \"" +
+                        mountPoint + "\".");
+            Thread.sleep(50);
+        }
+
+        System.out.println("Path buffer reuse " +
+                (reusePaths ? "enabled" : "disabled") + ", argument object " +
+                "reuse " + (reuseObjects ? "enabled" : "disabled") + ", " +
+                iterations + " iterations:");
+
+        /* Warm up. */
+        for(int i = 0; i < iterations / 10; ++i) {
+            file.exists();
+            file.canRead();
+        }
+
+        long getattrCallsBefore = fs.getattrCalls;
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i)
+            file.exists();
+        long getattrNanos = System.nanoTime() - start;
+        System.out.println("  stat:   " + getattrNanos / iterations +
+                " ns/call (" + (fs.getattrCalls - getattrCallsBefore) +
+                " getattr calls)");
+
+        long accessCallsBefore = fs.accessCalls;
+        start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i)
+            file.canRead();
+        long accessNanos = System.nanoTime() - start;
+        System.out.println("  access: " + accessNanos / iterations +
+                " ns/call (" + (fs.accessCalls - accessCallsBefore) +
+                " access calls)");
+
+        unmount(mountPoint);
+        mountThread.join();
+
+        return new long[] { getattrNanos, accessNanos };
+    }
+
+    private static void unmount(String mountPoint) throws IOException,
+            InterruptedException {
+        String[] command;
+        if(System.getProperty("os.name").toLowerCase().startsWith("linux"))
+            command = new String[] { "fusermount", "-u", mountPoint };
+        else
+            command = new String[] { "umount", mountPoint };
+
+        int res = Runtime.getRuntime().exec(command).waitFor();
+        if(res != 0)
+            throw new RuntimeException("Could not unmount \"" + mountPoint +
+                    "\" (exit code " + res + ").");
+    }
+
+    /**
+     * Minimal file system with a root directory containing one file. It only
+     * counts calls, so that the measured time is dominated by the binding.
+     */
+    private static class BenchmarkFS extends FUSEFileSystemAdapter {
+        /* Mounted single threaded, so only one thread updates these. */
+        volatile long getattrCalls = 0;
+        volatile long accessCalls = 0;
+
+        @Override
+        public int getattr(ByteBuffer path, Stat stbuf) {
+            ++getattrCalls;
+
+            /* Compare the raw bytes, to keep the work done in Java small. */
+            int length = path.remaining();
+            if(length == 1) {
+                stbuf.st_mode = Stat.S_IFDIR | 0755;
+                stbuf.st_nlink = 2;
+            }
+            else if(length == FILE_NAME.length() + 1) {
+                stbuf.st_mode = Stat.S_IFREG | 0444;
+                stbuf.st_nlink = 1;
+            }
+            else
+                return -ENOENT;
+
+            return 0;
+        }
+
+        @Override
+        public int access(ByteBuffer path, int mode) {
+            ++accessCalls;
+            return 0;
+        }
+    }
+}
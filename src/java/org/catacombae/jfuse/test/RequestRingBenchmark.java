@@ -0,0 +1,241 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.catacombae.jfuse.FUSE;
+import org.catacombae.jfuse.FUSE26LowLevelFileSystemAdapter;
+import org.catacombae.jfuse.FUSEErrorValues;
+import org.catacombae.jfuse.FUSEOptions;
+import org.catacombae.jfuse.MountHandle;
+import org.catacombae.jfuse.RequestRing;
+import org.catacombae.jfuse.RequestRingConsumer;
+import org.catacombae.jfuse.types.fuse26.FUSEAttrReply;
+import org.catacombae.jfuse.types.fuse26.FUSEEntryReply;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Compares the per-call cost of small requests passed to a low level file
+ * system by JNI upcalls with the cost of the same requests passed through a
+ * {@link RequestRing}.<br>
+ * The file system is mounted at the mountpoint given as the first argument,
+ * once for each mode. Its replies have zero attribute and entry timeouts and
+ * its files are opened with direct I/O, so that every <code>stat</code> and
+ * every 4 KiB <code>read</code> reaches the file system. The ring is served
+ * by the given number of consumer threads, sleeping or busy polling.
+ * The times include the kernel round trip, which is the same in both modes, so
+ * the difference between the modes is the saving per call.
+ *
+ * Usage: RequestRingBenchmark &lt;mountpoint&gt; [iterations] [consumers]
+ * [busypoll]
+ *
+ * @author Erik Larsson
+ */
+public class RequestRingBenchmark {
+    private static final String FILE_NAME = "file";
+    private static final long FILE_INO = 2;
+    private static final int FILE_SIZE = 1024 * 1024;
+    private static final int READ_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("usage: RequestRingBenchmark <mountpoint> " +
+                    "[iterations] [consumers] [busypoll]");
+            System.exit(1);
+        }
+
+        String mountPoint = new File(args[0]).getAbsolutePath();
+        int iterations = (args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+        int consumers = (args.length > 2 ? Integer.parseInt(args[2]) : 1);
+        boolean busyPoll =
+                (args.length > 3 ? Boolean.parseBoolean(args[3]) : false);
+
+        long[] upcall = run(mountPoint, iterations, 0, false);
+        long[] ring = run(mountPoint, iterations, consumers, busyPoll);
+
+        System.out.println();
+        printResult("stat", iterations, upcall[0], ring[0]);
+        printResult("read", iterations, upcall[1], ring[1]);
+    }
+
+    private static void printResult(String op, int iterations,
+            long upcallNanos, long ringNanos) {
+        double upcallPerCall = (double) upcallNanos / iterations;
+        double ringPerCall = (double) ringNanos / iterations;
+        System.out.println(op + ": " +
+                String.format("%.0f", upcallPerCall) + " ns/call (upcall), " +
+                String.format("%.0f", ringPerCall) + " ns/call (ring), " +
+                "saving " + String.format("%.0f", upcallPerCall - ringPerCall) +
+                " ns/call");
+    }
+
+    /**
+     * Mounts a new BenchmarkFS and times <code>iterations</code> stat and
+     * read calls. With <code>consumers</code> == 0, requests are passed by
+     * upcalls, and otherwise through a ring with that many consumers.
+     *
+     * @return the total time in nanoseconds for stat (index 0) and read
+     * (index 1).
+     */
+    private static long[] run(String mountPoint, int iterations,
+            int consumers, boolean busyPoll) throws Exception {
+        final BenchmarkFS fs = new BenchmarkFS();
+        /* The timeout options are high level only, and the low level
+         * session rejects them. BenchmarkFS disables caching in its
+         * replies instead. */
+        final FUSEOptions options = new FUSEOptions();
+        options.setSingleThreaded(true);
+
+        RequestRing ring = null;
+        Thread[] consumerThreads = new Thread[consumers];
+        RequestRingConsumer[] ringConsumers =
+                new RequestRingConsumer[consumers];
+        if(consumers > 0) {
+            ring = new RequestRing(64, READ_SIZE);
+            options.setRequestRing(ring);
+            for(int i = 0; i < consumers; ++i) {
+                ringConsumers[i] = ring.newConsumer(fs, 16, busyPoll);
+                consumerThreads[i] = new Thread(ringConsumers[i],
+                        "RequestRingBenchmark consumer " + i);
+                consumerThreads[i].start();
+            }
+        }
+
+        MountHandle handle = FUSE.mountLowLevelAsync(fs, mountPoint, options);
+        if(!handle.awaitReady(10, TimeUnit.SECONDS))
+            throw new RuntimeException("File system did not come up at \"" +
+                    mountPoint + "\".", handle.getFailure());
+
+        System.out.println((consumers > 0 ? "Ring with " + consumers +
+                (busyPoll ? " busy polling" : " sleeping") + " consumers" :
+                "Upcalls") + ", " + iterations + " iterations:");
+
+        File file = new File(mountPoint, FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte[] buf = new byte[READ_SIZE];
+
+        /* Warm up. */
+        for(int i = 0; i < iterations / 10; ++i) {
+            file.exists();
+            raf.seek(0);
+            raf.read(buf);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i)
+            file.exists();
+        long statNanos = System.nanoTime() - start;
+        System.out.println("  stat: " + statNanos / iterations + " ns/call");
+
+        start = System.nanoTime();
+        for(int i = 0; i < iterations; ++i) {
+            raf.seek(((long) i * READ_SIZE) % FILE_SIZE);
+            raf.readFully(buf);
+        }
+        long readNanos = System.nanoTime() - start;
+        System.out.println("  read: " + readNanos / iterations + " ns/call");
+
+        raf.close();
+
+        if(!handle.unmount(false))
+            throw new RuntimeException("Could not unmount \"" + mountPoint +
+                    "\".");
+        handle.awaitTermination();
+
+        long processed = 0;
+        long batches = 0;
+        for(int i = 0; i < consumers; ++i) {
+            consumerThreads[i].join();
+            processed += ringConsumers[i].getProcessedCount();
+            batches += ringConsumers[i].getBatchCount();
+        }
+        if(ring != null) {
+            ring.close();
+            System.out.println("  " + processed + " requests through the " +
+                    "ring in " + batches + " batches.");
+        }
+
+        return new long[] { statNanos, readNanos };
+    }
+
+    /**
+     * Minimal file system with a root directory containing one file of
+     * zeroes. It does as little as possible, so that the measured time is
+     * dominated by the binding.
+     */
+    private static class BenchmarkFS extends FUSE26LowLevelFileSystemAdapter {
+        private static final byte[] FILE_NAME_BYTES = FILE_NAME.getBytes();
+
+        private static void fillAttr(long ino, Stat st) {
+            if(ino == FUSE_ROOT_ID) {
+                st.st_mode = Stat.S_IFDIR | 0755;
+                st.st_nlink = 2;
+            }
+            else {
+                st.st_mode = Stat.S_IFREG | 0444;
+                st.st_nlink = 1;
+                st.st_size = FILE_SIZE;
+            }
+            st.st_ino = ino;
+        }
+
+        @Override
+        public int lookup(long parent, ByteBuffer name, FUSEEntryReply reply) {
+            if(parent != FUSE_ROOT_ID ||
+                    name.remaining() != FILE_NAME_BYTES.length)
+                return -FUSEErrorValues.ENOENT;
+
+            reply.ino = FILE_INO;
+            reply.entry_timeout = 0;
+            reply.attr_timeout = 0;
+            fillAttr(FILE_INO, reply.attr);
+            return 0;
+        }
+
+        @Override
+        public int getattr(long ino, FUSEAttrReply reply) {
+            if(ino != FUSE_ROOT_ID && ino != FILE_INO)
+                return -FUSEErrorValues.ENOENT;
+
+            reply.attr_timeout = 0;
+            fillAttr(ino, reply.attr);
+            return 0;
+        }
+
+        @Override
+        public int open(long ino, FUSEFileInfo fi) {
+            fi.direct_io = true;
+            return 0;
+        }
+
+        @Override
+        public int read(long ino, ByteBuffer dest, long off, FUSEFileInfo fi) {
+            int len = (int) Math.min(dest.remaining(),
+                    Math.max(0, FILE_SIZE - off));
+            /* The data is all zeroes, so just skip over it. */
+            dest.position(dest.position() + len);
+            return len;
+        }
+    }
+}
@@ -21,18 +21,25 @@ package org.catacombae.jfuse.test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
 import org.catacombae.jfuse.FUSE;
+import org.catacombae.jfuse.FUSE29Capabilities;
+import org.catacombae.jfuse.FUSE29FileSystem;
 import org.catacombae.jfuse.types.fuse26.FUSEConnInfo;
 import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
 import org.catacombae.jfuse.MacFUSEFileSystemAdapter;
 import org.catacombae.jfuse.types.fuse26.FUSEFillDir;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDirBatch;
+import org.catacombae.jfuse.types.fuse29.FUSEBufVec;
+import org.catacombae.jfuse.types.fuse29.FUSEWriteBuf;
 import org.catacombae.jfuse.types.macfuse20.Setattr_x;
 import org.catacombae.jfuse.util.FUSEUtil;
+import org.catacombae.jfuse.types.system.NumericalConstant;
 import org.catacombae.jfuse.types.system.Stat;
 import org.catacombae.jfuse.types.system.StatVFS;
 import org.catacombae.jfuse.types.system.Timespec;
@@ -48,10 +55,24 @@ import org.catacombae.jfuse.util.PlatformUtil;
  *
  * @author Erik Larsson
  */
-public class TestFS extends MacFUSEFileSystemAdapter {
+public class TestFS extends MacFUSEFileSystemAdapter
+        implements FUSE29FileSystem {
 
     private static final String CLASS_NAME = "TestFS";
 
+    /* fallocate(2) modes and lseek(2) whence values. Modes missing on the
+     * host are 0 and whence values -1, so that they never match. */
+    private static final int FALLOC_FL_KEEP_SIZE =
+            constantValue(NumericalConstant.FALLOC_FL_KEEP_SIZE, 0);
+    private static final int FALLOC_FL_PUNCH_HOLE =
+            constantValue(NumericalConstant.FALLOC_FL_PUNCH_HOLE, 0);
+    private static final int FALLOC_FL_ZERO_RANGE =
+            constantValue(NumericalConstant.FALLOC_FL_ZERO_RANGE, 0);
+    private static final int SEEK_DATA =
+            constantValue(NumericalConstant.SEEK_DATA, -1);
+    private static final int SEEK_HOLE =
+            constantValue(NumericalConstant.SEEK_HOLE, -1);
+
     /** No-op Iterable used in some internal operations. */
     private static final Iterable<String> nullStringIterable =
             new Iterable<String>() {
@@ -80,6 +101,11 @@ public class TestFS extends MacFUSEFileSystemAdapter {
     private final int blockSize = 65535;
     private final byte[] zeroBlock;
 
+    private static int constantValue(NumericalConstant c, int defaultValue) {
+        final Integer value = c.getValue();
+        return value != null ? value : defaultValue;
+    }
+
     private void setCreateTimes(Inode node, long createTime) {
         node.accessTime.setToMillis(createTime);
         node.modificationTime.setToMillis(createTime);
@@ -297,9 +323,11 @@ public class TestFS extends MacFUSEFileSystemAdapter {
 
                 if(numBlocks > 0) {
                     byte[] lastBlock = this.blocks.get(numBlocks - 1);
-                    if(lastBlock != null) {
+                    int activeBytesInBlock = (int)(this.length % blockSize);
+                    // A length that is a multiple of the block size leaves
+                    // the whole last block in use.
+                    if(lastBlock != null && activeBytesInBlock != 0) {
                         // Zero out the truncated part of the last block.
-                        int activeBytesInBlock = (int)(this.length % blockSize);
                         System.arraycopy(zeroBlock, activeBytesInBlock,
                                 lastBlock, activeBytesInBlock,
                                 blockSize - activeBytesInBlock);
@@ -308,6 +336,67 @@ public class TestFS extends MacFUSEFileSystemAdapter {
             }
         }
 
+        /**
+         * Zeroes <code>len</code> bytes at <code>position</code> without
+         * changing the length. Blocks that end up containing only zeros are
+         * dropped, making them holes.
+         */
+        public void punchHole(long position, long len) {
+            final long end = Math.min(position + len, this.length);
+
+            long curOffset = position;
+            while(curOffset < end) {
+                int currentBlockIndex = (int) (curOffset / blockSize);
+                int offsetInBlock =
+                        (int) (curOffset - ((long) currentBlockIndex * blockSize));
+                int bytesToZero = (int) Math.min(end - curOffset,
+                        blockSize - offsetInBlock);
+
+                byte[] currentBlock = this.blocks.get(currentBlockIndex);
+                if(currentBlock != null) {
+                    // Bytes after the end of file are always zero.
+                    if(offsetInBlock == 0 && (bytesToZero == blockSize ||
+                            curOffset + bytesToZero == this.length))
+                        this.blocks.set(currentBlockIndex, null);
+                    else
+                        System.arraycopy(zeroBlock, offsetInBlock,
+                                currentBlock, offsetInBlock, bytesToZero);
+                }
+
+                curOffset += bytesToZero;
+            }
+        }
+
+        /**
+         * Extends the stream with a hole if it ends before
+         * <code>position</code> + <code>len</code>.
+         */
+        public void allocate(long position, long len) {
+            if(this.length < position + len)
+                truncate(position + len);
+        }
+
+        /**
+         * Returns the first offset at or after <code>position</code> that is
+         * in a data block (if <code>data</code> is true) or in a hole, or -1
+         * if there is none. The end of the stream counts as a hole.
+         */
+        public long seek(long position, boolean data) {
+            if(position < 0 || position >= this.length)
+                return -1;
+
+            for(int i = (int) (position / blockSize); i < this.blocks.size();
+                    ++i) {
+                final long blockStart = (long) i * blockSize;
+                if(blockStart >= this.length)
+                    break;
+                else if((this.blocks.get(i) != null) == data)
+                    return Math.max(position, blockStart);
+            }
+
+            return data ? -1 : this.length;
+        }
+
         public long getLength() {
             return length;
         }
@@ -315,6 +404,14 @@ public class TestFS extends MacFUSEFileSystemAdapter {
 
     private Hashtable<String, Inode> fileTable = new Hashtable<String, Inode>();
 
+    private final ThreadLocal<FUSEFillDirBatch> fillDirBatch =
+            new ThreadLocal<FUSEFillDirBatch>() {
+        @Override
+        protected FUSEFillDirBatch initialValue() {
+            return new FUSEFillDirBatch();
+        }
+    };
+
     public TestFS() {
         zeroBlock = new byte[blockSize];
         for(int i = 0; i < zeroBlock.length; ++i)
@@ -786,10 +883,17 @@ public class TestFS extends MacFUSEFileSystemAdapter {
             if(e != null && e instanceof Directory) {
                 Directory dir = (Directory) e;
 
-                filler.fill(FUSEUtil.encodeUTF8("."), null, 0);
-                filler.fill(FUSEUtil.encodeUTF8(".."), null, 0);
-                for(String childName : dir.children.keySet())
-                    filler.fill(FUSEUtil.encodeUTF8(childName), null, 0);
+                FUSEFillDirBatch batch = fillDirBatch.get();
+                batch.add(FUSEUtil.encodeUTF8("."), null, 0);
+                batch.add(FUSEUtil.encodeUTF8(".."), null, 0);
+                for(String childName : dir.children.keySet()) {
+                    byte[] name = FUSEUtil.encodeUTF8(childName);
+                    if(!batch.add(name, null, 0)) {
+                        batch.flush(filler);
+                        batch.add(name, null, 0);
+                    }
+                }
+                batch.flush(filler);
             }
             else
                 res = -ENOENT;
@@ -1163,6 +1267,116 @@ public class TestFS extends MacFUSEFileSystemAdapter {
         return res;
     }
 
+    public FUSE29Capabilities getFUSE29Capabilities() {
+        FUSE29Capabilities c = new FUSE29Capabilities();
+        c.fallocate = true;
+        c.lseek = true;
+        return c;
+    }
+
+    //@Override
+    public int read_buf(ByteBuffer path, FUSEBufVec bufv, long size, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int write_buf(ByteBuffer path, FUSEWriteBuf buf, long off,
+            FUSEFileInfo fi) {
+        throw new UnsupportedOperationException("Not supposed to call this method.");
+    }
+
+    //@Override
+    public int fallocate(ByteBuffer path, int mode, long off, long len,
+            FUSEFileInfo fi) {
+        final String METHOD_NAME = "fallocate";
+        Log.traceEnter(CLASS_NAME + "." + METHOD_NAME, path, mode, off, len,
+                fi);
+
+        final int supportedModes =
+                FALLOC_FL_KEEP_SIZE | FALLOC_FL_PUNCH_HOLE | FALLOC_FL_ZERO_RANGE;
+        final boolean keepSize = (mode & FALLOC_FL_KEEP_SIZE) != 0;
+        final boolean punchHole = (mode & FALLOC_FL_PUNCH_HOLE) != 0;
+        final boolean zeroRange = (mode & FALLOC_FL_ZERO_RANGE) != 0;
+
+        final int res;
+        String pathString = FUSEUtil.decodeUTF8(path);
+        Log.trace("  pathString = \"" + pathString + "\"");
+        if(pathString == null) { // Invalid UTF-8 sequence.
+            Log.warning("Recieved byte sequence that could not be decoded.");
+            res = -ENOENT;
+        }
+        else if((mode & ~supportedModes) != 0 || (punchHole && !keepSize) ||
+                (punchHole && zeroRange))
+            res = -EOPNOTSUPP;
+        else if(off < 0 || len <= 0)
+            res = -EINVAL;
+        else if(off + len > Integer.MAX_VALUE) {
+            Log.warning("Range out of bounds: " + off + " + " + len);
+            res = -EFBIG;
+        }
+        else {
+            Inode e = lookupInode(pathString);
+            if(e == null)
+                res = -ENOENT;
+            else if(!(e instanceof File))
+                res = -EACCES; // ?
+            else {
+                File f = (File) e;
+                final long oldLength = f.data.getLength();
+
+                if(punchHole || zeroRange)
+                    f.data.punchHole(off, len);
+                if(!keepSize)
+                    f.data.allocate(off, len);
+
+                if(punchHole || zeroRange ||
+                        f.data.getLength() != oldLength) {
+                    // Update modification time.
+                    f.modificationTime.setToMillis(System.currentTimeMillis());
+                }
+
+                res = 0;
+            }
+        }
+
+        Log.traceLeave(CLASS_NAME + "." + METHOD_NAME, res, path, mode, off,
+                len, fi);
+        return res;
+    }
+
+    //@Override
+    public long lseek(ByteBuffer path, long off, int whence, FUSEFileInfo fi) {
+        final String METHOD_NAME = "lseek";
+        Log.traceEnter(CLASS_NAME + "." + METHOD_NAME, path, off, whence, fi);
+
+        final long res;
+        String pathString = FUSEUtil.decodeUTF8(path);
+        Log.trace("  pathString = \"" + pathString + "\"");
+        if(pathString == null) { // Invalid UTF-8 sequence.
+            Log.warning("Recieved byte sequence that could not be decoded.");
+            res = -ENOENT;
+        }
+        else if(whence != SEEK_DATA && whence != SEEK_HOLE)
+            res = -EINVAL;
+        else {
+            Inode e = lookupInode(pathString);
+            if(e == null)
+                res = -ENOENT;
+            else if(!(e instanceof File))
+                res = -EACCES; // ?
+            else {
+                final long pos =
+                        ((File) e).data.seek(off, whence == SEEK_DATA);
+                res = (pos < 0 ? -ENXIO : pos);
+            }
+        }
+
+        Log.traceLeave(CLASS_NAME + "." + METHOD_NAME, res, path, off, whence,
+                fi);
+        return res;
+    }
+
     @Override
     public int statfs(ByteBuffer path,
 		       StatVFS st) {
@@ -1645,6 +1859,16 @@ public class TestFS extends MacFUSEFileSystemAdapter {
         for(String s : args)
             Log.info("  \"" + s + "\" ");
         Log.info(")");
-        FUSE.main(args, new TestFS());
+
+        /* TestFS is not thread safe, so it is always served by a single
+         * thread. */
+        String[] fuseArgs = args;
+        if(!Arrays.asList(args).contains("-s")) {
+            fuseArgs = new String[args.length + 1];
+            System.arraycopy(args, 0, fuseArgs, 0, args.length);
+            fuseArgs[args.length] = "-s";
+        }
+
+        FUSE.main(fuseArgs, new TestFS());
     }
 }
@@ -31,20 +31,23 @@ public class FUSEDirFil {
         JNILoader.ensureLoaded();
     }
 
-    public final byte[] nativeContextPointer;
-
-    public FUSEDirFil(byte[] nativeContextPointer) {
-        if(nativeContextPointer == null)
-            throw new IllegalArgumentException("null nativeContextPointer not allowed.");
+    /**
+     * Address of the native filler context. The context lives in the stack
+     * frame of the native getdir callback, which sets this field to 0 before
+     * it returns.
+     */
+    private long nativeContext;
 
-        this.nativeContextPointer = new byte[nativeContextPointer.length];
-        System.arraycopy(nativeContextPointer, 0, this.nativeContextPointer, 0,
-                this.nativeContextPointer.length);
-    }
+    /**
+     * Only to be called from native code.
+     *
+     * @param nativeContext address of the native filler context.
+     */
+    public FUSEDirFil(long nativeContext) {
+        if(nativeContext == 0)
+            throw new IllegalArgumentException("null nativeContext not allowed.");
 
-    @Override
-    public void finalize() throws Throwable {
-        freeNative(nativeContextPointer);
+        this.nativeContext = nativeContext;
     }
 
     /**
@@ -58,24 +61,23 @@ public class FUSEDirFil {
      *              data type. (Set this to 0 if you're lazy.)
      * @return      1 if the buffer is full (?), 0 otherwise (?). (I'm unsure
      *              about this... it's undocumented in fuse.h.)
+     * @throws IllegalStateException if the getdir() call that supplied this
+     *              object has already returned.
      */
     public int fill(byte[] name,
 		     int type,
 		     long ino) {
-        return fillNative(nativeContextPointer, name, type, ino);
-    }
+        final long ctx = nativeContext;
+        if(ctx == 0) {
+            throw new IllegalStateException("FUSEDirFil used after the " +
+                    "getdir() call that created it has returned.");
+        }
 
-    public static native int fillNative(byte[] nativeContextPointer,
-            byte[] name, int type, long ino);
+        return fillNative(ctx, name, type, ino);
+    }
 
-    /**
-     * Frees a native pointer value, stored in the byte array
-     * <code>nativeContextPointer</code>.<br>
-     * TODO: Move this to a general utility class.
-     *
-     * @param nativeContextPointer a byte array containing the pointer value.
-     */
-    public static native void freeNative(byte[] nativeContextPointer);
+    private static native int fillNative(long nativeContext, byte[] name,
+            int type, long ino);
 }
 
 // /* Used by deprecated getdir() method */
@@ -0,0 +1,119 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse26;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.catacombae.jfuse.types.system.FileModeFlags;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Reply buffer for a low level readdir. Directory entries are encoded directly
+ * into the native reply buffer in the same format that
+ * <code>fuse_add_direntry</code> produces, so adding an entry doesn't involve
+ * any calls into native code.<br>
+ * The buffer passed by the native readdir is only valid for the duration of
+ * the call. File systems replying asynchronously through
+ * {@link FUSERequest#replyDir(FUSEDirReply)} create their own, using a buffer
+ * of the requested size.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEDirReply {
+    /* struct fuse_dirent: u64 ino, u64 off, u32 namelen, u32 type, name. */
+    private static final int DIRENT_HEADER_SIZE = 24;
+
+    private final ByteBuffer buffer;
+
+    /** The number of bytes used. Read by the native code after the call. */
+    private int length = 0;
+
+    public FUSEDirReply(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.buffer.order(ByteOrder.nativeOrder());
+        this.buffer.clear();
+    }
+
+    /**
+     * Adds a directory entry. Only the <code>st_ino</code> and the file type
+     * bits of <code>st_mode</code> are used from <code>stat</code>, just like
+     * with <code>fuse_add_direntry</code>.
+     *
+     * @param name the file name of the directory entry.
+     * @param stat file attributes, can be null.
+     * @param off offset of the next entry.
+     * @return false if the entry didn't fit in the buffer (in which case
+     * nothing was added), true otherwise.
+     */
+    public boolean add(byte[] name, Stat stat, long off) {
+        long ino = 0;
+        int type = 0;
+        if(stat != null) {
+            ino = stat.st_ino;
+            type = (int) ((stat.st_mode & FileModeFlags.S_IFMT) >>> 12);
+        }
+
+        return add(name, ino, type, off);
+    }
+
+    /**
+     * Adds a directory entry.
+     *
+     * @param name the file name of the directory entry.
+     * @param ino the inode number of the entry.
+     * @param type the file type of the entry, i.e. <code>(st_mode &amp;
+     * S_IFMT) &gt;&gt; 12</code>.
+     * @param off offset of the next entry.
+     * @return false if the entry didn't fit in the buffer (in which case
+     * nothing was added), true otherwise.
+     */
+    public boolean add(byte[] name, long ino, int type, long off) {
+        final int entrySize = (DIRENT_HEADER_SIZE + name.length + 7) & ~7;
+        if(entrySize > buffer.remaining())
+            return false;
+
+        buffer.putLong(ino);
+        buffer.putLong(off);
+        buffer.putInt(name.length);
+        buffer.putInt(type);
+        buffer.put(name);
+        for(int i = DIRENT_HEADER_SIZE + name.length; i < entrySize; ++i)
+            buffer.put((byte) 0);
+
+        length = buffer.position();
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes of the reply buffer that have been used.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns a view of the used part of the reply buffer.
+     */
+    ByteBuffer getData() {
+        ByteBuffer data = buffer.duplicate();
+        data.flip();
+        return data;
+    }
+}
@@ -0,0 +1,54 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse26;
+
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * Reply to a low level lookup, corresponding to
+ * <code>struct fuse_entry_param</code>. The file system fills in the fields
+ * before returning successfully.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEEntryReply {
+    /**
+     * Unique inode number.<br>
+     * In lookup, zero means negative entry (from version 2.5). Returning ENOENT
+     * also means negative entry, but by setting zero ino the kernel may cache
+     * negative entries for entry_timeout seconds.
+     */
+    public long ino;
+
+    /**
+     * Generation number for this entry. The ino/generation pair should be
+     * unique for the filesystem's lifetime.
+     */
+    public long generation;
+
+    /** Inode attributes. */
+    public final Stat attr = new Stat();
+
+    /** Validity timeout (in seconds) for the attributes. */
+    public double attr_timeout;
+
+    /** Validity timeout (in seconds) for the name. */
+    public double entry_timeout;
+}
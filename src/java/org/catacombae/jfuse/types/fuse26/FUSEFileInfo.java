@@ -22,8 +22,11 @@
  */
 package org.catacombae.jfuse.types.fuse26;
 
+import java.io.FileDescriptor;
+import java.nio.channels.FileChannel;
 import org.catacombae.jfuse.types.system.FileStatusFlags;
 import org.catacombae.jfuse.types.system.NumericalConstant;
+import org.catacombae.jfuse.util.FUSEUtil;
 
 /**
  *
@@ -76,6 +79,56 @@ public class FUSEFileInfo implements FileStatusFlags {
     /** Lock owner id. Available in locking operations and flush */
     public long lock_owner;
 
+    /**
+     * Backing file descriptor. May be filled in by filesystem in open() and
+     * create() with a descriptor of a local file holding the data of the
+     * opened file. jFUSE then serves read() and write() for the handle
+     * natively with pread/pwrite on a duplicate of the descriptor, without
+     * calling the filesystem, until release(). The descriptor itself is not
+     * retained and may be closed after open() returns.<br>
+     * When the kernel supports FUSE passthrough, the backing file is handed
+     * to the kernel instead and read and write requests for the handle are
+     * not sent at all. Sessions that can do neither (a
+     * {@link org.catacombae.jfuse.wire.FUSEKernelSession} without kernel
+     * passthrough) call the filesystem as usual.<br>
+     * <code>fh</code> must be unique among the open files that have a backing
+     * file. -1 if not set. jFUSE extension, not part of struct fuse_file_info.
+     */
+    public int backing_fd = -1;
+
+    /**
+     * Copies all fields of <code>fi</code> into this object.
+     *
+     * @param fi the object to copy from.
+     */
+    public void setToFUSEFileInfo(FUSEFileInfo fi) {
+        this.flags = fi.flags;
+        this.fh_old = fi.fh_old;
+        this.writepage = fi.writepage;
+        this.direct_io = fi.direct_io;
+        this.keep_cache = fi.keep_cache;
+        this.flush = fi.flush;
+        this.fh = fi.fh;
+        this.lock_owner = fi.lock_owner;
+        this.backing_fd = fi.backing_fd;
+    }
+
+    /**
+     * Convenience method that sets {@link #backing_fd} to the descriptor
+     * behind <code>fd</code>.
+     */
+    public void setBackingFile(FileDescriptor fd) {
+        this.backing_fd = FUSEUtil.getFileDescriptor(fd);
+    }
+
+    /**
+     * Convenience method that sets {@link #backing_fd} to the descriptor
+     * behind <code>channel</code>.
+     */
+    public void setBackingFile(FileChannel channel) {
+        this.backing_fd = FUSEUtil.getFileDescriptor(channel);
+    }
+
     /** Convenience method that checks if O_RDONLY is set. */
     public boolean getFlagReadOnly() {
         return (flags & O_WRONLY) == 0;
@@ -23,29 +23,55 @@
 
 package org.catacombae.jfuse.types.fuse26;
 
+import java.nio.ByteBuffer;
 import org.catacombae.jfuse.JNILoader;
 import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.util.Log;
 
 public class FUSEFillDir {
     static {
         JNILoader.ensureLoaded();
     }
 
-    private final byte[] nativeContextPointer;
+    /**
+     * Address of the native filler context. The context lives in the stack
+     * frame of the native readdir callback, which sets this field to 0 before
+     * it returns.
+     */
+    private long nativeContext;
+
+    /** Set when fillPlus has reported that the native filler ignores it. */
+    private static volatile boolean fillPlusDegradationReported = false;
+
+    /**
+     * Only to be called from native code.
+     *
+     * @param nativeContext address of the native filler context.
+     */
+    public FUSEFillDir(long nativeContext) {
+        if(nativeContext == 0)
+            throw new IllegalArgumentException("null nativeContext not allowed.");
 
-    public FUSEFillDir(byte[] nativeContextPointer) {
-        if(nativeContextPointer == null)
-            throw new IllegalArgumentException("null nativeContextPointer not allowed.");
+        this.nativeContext = nativeContext;
+    }
 
-        this.nativeContextPointer = new byte[nativeContextPointer.length];
-        System.arraycopy(nativeContextPointer, 0, this.nativeContextPointer, 0,
-                this.nativeContextPointer.length);
+    /**
+     * For subclasses that collect the entries in Java rather than passing them
+     * to a native filler function. Such subclasses must override both
+     * <code>fill</code> methods.
+     */
+    protected FUSEFillDir() {
+        this.nativeContext = 0;
     }
 
+    private long getNativeContext() {
+        final long ctx = nativeContext;
+        if(ctx == 0) {
+            throw new IllegalStateException("FUSEFillDir used after the " +
+                    "readdir() call that created it has returned.");
+        }
 
-    @Override
-    public void finalize() throws Throwable {
-        FUSEDirFil.freeNative(nativeContextPointer);
+        return ctx;
     }
 
     //* @param voidp_buf the buffer passed to the readdir() operation
@@ -56,13 +82,80 @@ public class FUSEFillDir {
      * @param stat <b>(const struct stat*)</b> file attributes, can be NULL
      * @param off <b>(off_t)</b> offset of the next entry or zero
      * @return true if buffer is full, false otherwise
+     * @throws IllegalStateException if the readdir() call that supplied this
+     * object has already returned.
      */
     public boolean fill(byte[] name, Stat stat, long off) {
-        return fillNative(nativeContextPointer, name, stat, off);
+        return fillNative(getNativeContext(), name, stat, off);
+    }
+
+    /**
+     * Adds an entry together with its complete attributes, which the kernel
+     * may cache as if the entry had been looked up (readdirplus). This saves
+     * the lookup and getattr requests that listings like <code>ls -l</code>
+     * otherwise cause for every entry.<br>
+     * Only {@link org.catacombae.jfuse.wire.FUSEKernelSession} passes the
+     * attributes and the per-entry timeouts on to the kernel.<br>
+     * <b>On libfuse 2.x mounts, readdirplus is not available:</b> the filler
+     * of the high level API adds the entry as
+     * {@link #fill(byte[], org.catacombae.jfuse.types.system.Stat, long)}
+     * does, the kernel doesn't cache the attributes, and
+     * <code>entryTimeout</code> and <code>attrTimeout</code> are ignored. The
+     * first such call is logged.
+     *
+     * @param name the file name of the directory entry
+     * @param stat complete attributes of the entry, as getattr() would return
+     * them
+     * @param entryTimeout the time in seconds for which the kernel may cache
+     * the name
+     * @param attrTimeout the time in seconds for which the kernel may cache
+     * the attributes
+     * @param off offset of the next entry or zero
+     * @return true if buffer is full, false otherwise
+     * @throws IllegalStateException if the readdir() call that supplied this
+     * object has already returned.
+     */
+    public boolean fillPlus(byte[] name, Stat stat, double entryTimeout,
+            double attrTimeout, long off) {
+        if(stat == null)
+            throw new IllegalArgumentException("stat == null");
+        if(entryTimeout < 0 || attrTimeout < 0)
+            throw new IllegalArgumentException("Negative timeout.");
+
+        if(nativeContext != 0 && !fillPlusDegradationReported) {
+            fillPlusDegradationReported = true;
+            Log.notice("fillPlus: libfuse 2 has no readdirplus. Entries are " +
+                    "added without attributes for the kernel to cache, and " +
+                    "their timeouts are ignored.");
+        }
+
+        return fill(name, stat, off);
     }
 
-    private static native boolean fillNative(byte[] nativeContextPointer,
+    /**
+     * Adds <code>count</code> entries encoded in the record format of
+     * {@link FUSEFillDirBatch}, starting at position 0 of <code>records</code>,
+     * in a single native call. Filling stops at the first entry that doesn't
+     * fit in the buffer of the readdir() operation.
+     *
+     * @param records a direct buffer containing the encoded entries.
+     * @param count the number of entries in <code>records</code>.
+     * @return the number of entries that were added.
+     * @throws IllegalStateException if the readdir() call that supplied this
+     * object has already returned.
+     * @see FUSEFillDirBatch
+     */
+    public int fill(ByteBuffer records, int count) {
+        if(!records.isDirect())
+            throw new IllegalArgumentException("records is not direct");
+        return fillBatchNative(getNativeContext(), records, count);
+    }
+
+    private static native boolean fillNative(long nativeContext,
             byte[] name, Stat stat, long off);
+
+    private static native int fillBatchNative(long nativeContext,
+            ByteBuffer records, int count);
 }
 
 // /** Function to add an entry in a readdir() operation
@@ -0,0 +1,175 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse26;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatBuffer;
+
+/**
+ * Collects directory entries for a readdir() operation in a direct buffer, so
+ * that they can be passed to the filler function in one native call through
+ * {@link #flush(org.catacombae.jfuse.types.fuse26.FUSEFillDir)} instead of
+ * one call per entry.<br>
+ * A batch is not thread safe, but it may be reused for any number of readdir
+ * calls (typically one batch per thread).
+ * <p>
+ * The entries are stored as consecutive little-endian records:
+ * <pre>
+ * offset  size  field
+ *      0     4  record length (including padding)
+ *      4     4  name length (excluding the terminating NUL)
+ *      8     8  offset of the next entry
+ *     16     4  flags ({@link #FLAG_HAS_STAT})
+ *     20     4  reserved
+ *     24   144  attributes in {@link StatBuffer} layout, if FLAG_HAS_STAT is set
+ *      -     -  NUL terminated name, padded with zeroes to a multiple of 8
+ * </pre>
+ *
+ * @author Erik Larsson
+ */
+public class FUSEFillDirBatch {
+    public static final int OFFSET_RECORD_LENGTH = 0;
+    public static final int OFFSET_NAME_LENGTH = 4;
+    public static final int OFFSET_OFF = 8;
+    public static final int OFFSET_FLAGS = 16;
+    public static final int HEADER_SIZE = 24;
+
+    /** Set in the flags of records that include attributes. */
+    public static final int FLAG_HAS_STAT = 1;
+
+    /** The default capacity of a batch in bytes. */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private int count = 0;
+
+    /**
+     * Creates a new batch with a capacity of {@link #DEFAULT_CAPACITY} bytes.
+     */
+    public FUSEFillDirBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new batch with a capacity of <code>capacity</code> bytes.
+     */
+    public FUSEFillDirBatch(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Adds an entry to the batch.
+     *
+     * @param name the file name of the directory entry.
+     * @param stat file attributes, can be null.
+     * @param off offset of the next entry or zero.
+     * @return true if the entry was added, false if the batch is full and has
+     * to be flushed first.
+     * @throws IllegalArgumentException if the entry is too large to ever fit
+     * in the batch.
+     */
+    public boolean add(byte[] name, Stat stat, long off) {
+        final int statSize = (stat != null ? StatBuffer.SIZE : 0);
+        final int recordLength =
+                (HEADER_SIZE + statSize + name.length + 1 + 7) & ~7;
+
+        if(recordLength > buffer.remaining()) {
+            if(count == 0)
+                throw new IllegalArgumentException("Entry of " + recordLength +
+                        " bytes doesn't fit in a batch of " +
+                        buffer.capacity() + " bytes.");
+            return false;
+        }
+
+        final int base = buffer.position();
+        buffer.putInt(recordLength);
+        buffer.putInt(name.length);
+        buffer.putLong(off);
+        buffer.putInt(stat != null ? FLAG_HAS_STAT : 0);
+        buffer.putInt(0);
+        if(stat != null)
+            putStat(base + HEADER_SIZE, stat);
+        buffer.position(base + HEADER_SIZE + statSize);
+        buffer.put(name);
+        for(int i = HEADER_SIZE + statSize + name.length; i < recordLength; ++i)
+            buffer.put((byte) 0);
+
+        ++count;
+        return true;
+    }
+
+    /**
+     * Passes all entries in the batch to <code>filler</code> and clears the
+     * batch.
+     *
+     * @return the number of entries that were accepted by the filler. If this
+     * is less than the number of entries in the batch, the filler's buffer
+     * became full and the remaining entries were discarded.
+     */
+    public int flush(FUSEFillDir filler) {
+        final int accepted;
+        if(count == 0)
+            accepted = 0;
+        else
+            accepted = filler.fill(buffer, count);
+
+        clear();
+        return accepted;
+    }
+
+    /**
+     * Returns the number of entries in the batch.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Removes all entries from the batch.
+     */
+    public void clear() {
+        buffer.clear();
+        count = 0;
+    }
+
+    private void putStat(int base, Stat st) {
+        buffer.putLong(base + StatBuffer.OFFSET_DEV, st.st_dev);
+        buffer.putLong(base + StatBuffer.OFFSET_INO, st.st_ino);
+        buffer.putLong(base + StatBuffer.OFFSET_MODE, st.st_mode);
+        buffer.putLong(base + StatBuffer.OFFSET_NLINK, st.st_nlink);
+        buffer.putLong(base + StatBuffer.OFFSET_UID, st.st_uid);
+        buffer.putLong(base + StatBuffer.OFFSET_GID, st.st_gid);
+        buffer.putLong(base + StatBuffer.OFFSET_RDEV, st.st_rdev);
+        buffer.putLong(base + StatBuffer.OFFSET_SIZE, st.st_size);
+        buffer.putLong(base + StatBuffer.OFFSET_BLOCKS, st.st_blocks);
+        buffer.putLong(base + StatBuffer.OFFSET_BLOCKSIZE, st.st_blocksize);
+        buffer.putLong(base + StatBuffer.OFFSET_ATIME_SEC, st.st_atimespec.sec);
+        buffer.putLong(base + StatBuffer.OFFSET_ATIME_NSEC, st.st_atimespec.nsec);
+        buffer.putLong(base + StatBuffer.OFFSET_MTIME_SEC, st.st_mtimespec.sec);
+        buffer.putLong(base + StatBuffer.OFFSET_MTIME_NSEC, st.st_mtimespec.nsec);
+        buffer.putLong(base + StatBuffer.OFFSET_CTIME_SEC, st.st_ctimespec.sec);
+        buffer.putLong(base + StatBuffer.OFFSET_CTIME_NSEC, st.st_ctimespec.nsec);
+        buffer.putLong(base + StatBuffer.OFFSET_FLAGS, st.st_flags);
+        buffer.putLong(base + StatBuffer.OFFSET_GEN, st.st_gen);
+    }
+}
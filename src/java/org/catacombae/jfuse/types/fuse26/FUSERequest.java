@@ -0,0 +1,212 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse26;
+
+import java.nio.ByteBuffer;
+import org.catacombae.jfuse.JNILoader;
+
+/**
+ * A pending low level request, passed to the methods of
+ * {@link org.catacombae.jfuse.FUSE26AsyncReplyOperations}. The file system
+ * replies to the request by calling exactly one of the <code>reply*</code>
+ * methods, either before returning from the operation or later from any
+ * thread. Until then the kernel keeps waiting for the reply, so a request that
+ * is never replied to hangs the calling process (and leaks a small native
+ * allocation).<br>
+ * Replying a second time throws an {@link IllegalStateException}.
+ *
+ * @author Erik Larsson
+ */
+public class FUSERequest {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /**
+     * Address of the native request state, or 0 once the request has been
+     * replied to.
+     */
+    private long nativeRequest;
+
+    /**
+     * Only to be called from native code.
+     *
+     * @param nativeRequest address of the native request state.
+     */
+    public FUSERequest(long nativeRequest) {
+        if(nativeRequest == 0)
+            throw new IllegalArgumentException("null nativeRequest not allowed.");
+
+        this.nativeRequest = nativeRequest;
+    }
+
+    /**
+     * Returns whether the request is still waiting for a reply.
+     *
+     * @return whether the request is still waiting for a reply.
+     */
+    public synchronized boolean isPending() {
+        return nativeRequest != 0;
+    }
+
+    private synchronized long take() {
+        final long req = nativeRequest;
+        if(req == 0)
+            throw new IllegalStateException("Request has already been replied to.");
+
+        nativeRequest = 0;
+        return req;
+    }
+
+    /**
+     * Called from native code when the operation threw an exception or isn't
+     * implemented, to make sure that the kernel gets a reply.
+     */
+    private void failIfPending(int retval) {
+        final long req;
+        synchronized(this) {
+            req = nativeRequest;
+            nativeRequest = 0;
+        }
+
+        if(req != 0)
+            replyErrNative(req, retval);
+    }
+
+    /**
+     * Replies with an error code, or with success for operations that have
+     * no other reply data (release, releasedir).
+     *
+     * @param retval 0 for success or an inverted error value from
+     * FUSEErrorValues.
+     */
+    public void replyErr(int retval) {
+        replyErrNative(take(), retval);
+    }
+
+    /**
+     * Replies to a forget request, which the kernel doesn't wait for.
+     */
+    public void replyNone() {
+        replyNoneNative(take());
+    }
+
+    /**
+     * Replies to a lookup request.
+     *
+     * @param reply the entry.
+     */
+    public void replyEntry(FUSEEntryReply reply) {
+        if(reply == null)
+            throw new IllegalArgumentException("reply == null");
+        replyEntryNative(take(), reply);
+    }
+
+    /**
+     * Replies to a getattr or setattr request.
+     *
+     * @param reply the attributes.
+     */
+    public void replyAttr(FUSEAttrReply reply) {
+        if(reply == null)
+            throw new IllegalArgumentException("reply == null");
+        replyAttrNative(take(), reply);
+    }
+
+    /**
+     * Replies to an open or opendir request. The fields of <code>fi</code>
+     * that the file system may change (fh, direct_io, keep_cache, ...) are
+     * sent to the kernel. Since the FUSEFileInfo passed to the operation is
+     * only valid during the call, a file system replying later should pass a
+     * copy.
+     *
+     * @param fi the file information, or null to reply with the file
+     * information as it was passed to the operation.
+     */
+    public void replyOpen(FUSEFileInfo fi) {
+        replyOpenNative(take(), fi);
+    }
+
+    /**
+     * Replies to a read request with the data between the position and the
+     * limit of <code>data</code>. Anything beyond the size of the request is
+     * ignored.
+     *
+     * @param data the data to reply with.
+     */
+    public void replyBuf(ByteBuffer data) {
+        if(data == null)
+            throw new IllegalArgumentException("data == null");
+
+        if(data.isDirect())
+            replyBufNative(take(), data, data.position(), data.remaining());
+        else if(data.hasArray()) {
+            replyBytesNative(take(), data.array(),
+                    data.arrayOffset() + data.position(), data.remaining());
+        }
+        else {
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            replyBytesNative(take(), copy, 0, copy.length);
+        }
+    }
+
+    /**
+     * Replies to a readdir request with the entries added to
+     * <code>reply</code>.
+     *
+     * @param reply the directory entries.
+     */
+    public void replyDir(FUSEDirReply reply) {
+        if(reply == null)
+            throw new IllegalArgumentException("reply == null");
+        replyBuf(reply.getData());
+    }
+
+    /**
+     * Replies to a write request.
+     *
+     * @param count the number of bytes written.
+     */
+    public void replyWrite(long count) {
+        if(count < 0)
+            throw new IllegalArgumentException("count < 0");
+        replyWriteNative(take(), count);
+    }
+
+    private static native void replyErrNative(long req, int retval);
+
+    private static native void replyNoneNative(long req);
+
+    private static native void replyEntryNative(long req,
+            FUSEEntryReply reply);
+
+    private static native void replyAttrNative(long req, FUSEAttrReply reply);
+
+    private static native void replyOpenNative(long req, FUSEFileInfo fi);
+
+    private static native void replyBufNative(long req, ByteBuffer data,
+            int off, int len);
+
+    private static native void replyBytesNative(long req, byte[] data,
+            int off, int len);
+
+    private static native void replyWriteNative(long req, long count);
+}
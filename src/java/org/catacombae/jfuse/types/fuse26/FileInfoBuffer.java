@@ -0,0 +1,205 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse26;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.catacombae.jfuse.util.FUSEUtil;
+
+/**
+ * Off-heap view of a <code>struct fuse_file_info</code>, the buffer based
+ * counterpart to {@link FUSEFileInfo}. The data is kept in a direct ByteBuffer
+ * with a fixed little-endian layout:
+ * <pre>
+ *  0  int32  flags
+ *  4  int32  writepage
+ *  8  int64  fh
+ * 16  int64  fh_old
+ * 24  int64  lock_owner
+ * 32  int8   direct_io
+ * 33  int8   keep_cache
+ * 34  int8   flush
+ * 35  int8   nonseekable
+ * 36  int32  backing_fd
+ * </pre>
+ *
+ * @author Erik Larsson
+ */
+public class FileInfoBuffer {
+    public static final int OFFSET_FLAGS = 0;
+    public static final int OFFSET_WRITEPAGE = 4;
+    public static final int OFFSET_FH = 8;
+    public static final int OFFSET_FH_OLD = 16;
+    public static final int OFFSET_LOCK_OWNER = 24;
+    public static final int OFFSET_DIRECT_IO = 32;
+    public static final int OFFSET_KEEP_CACHE = 33;
+    public static final int OFFSET_FLUSH = 34;
+    public static final int OFFSET_NONSEEKABLE = 35;
+    public static final int OFFSET_BACKING_FD = 36;
+
+    /** The size of the file info data in bytes. */
+    public static final int SIZE = 40;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new FileInfoBuffer backed by a newly allocated direct buffer.
+     */
+    public FileInfoBuffer() {
+        this(ByteBuffer.allocateDirect(SIZE));
+    }
+
+    /**
+     * Creates a new FileInfoBuffer backed by <code>buffer</code>, starting at
+     * position 0 of the buffer. The byte order of <code>buffer</code> is set
+     * to little-endian.
+     *
+     * @param buffer a direct buffer with a capacity of at least
+     * {@link #SIZE} bytes.
+     */
+    public FileInfoBuffer(ByteBuffer buffer) {
+        if(!buffer.isDirect())
+            throw new IllegalArgumentException("buffer is not direct");
+        else if(buffer.capacity() < SIZE)
+            throw new IllegalArgumentException("buffer too small (" +
+                    buffer.capacity() + " < " + SIZE + ")");
+
+        this.buffer = buffer;
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the buffer backing this FileInfoBuffer.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /** Open flags. Available in open() and release() */
+    public int getFlags() { return buffer.getInt(OFFSET_FLAGS); }
+    public void setFlags(int flags) { buffer.putInt(OFFSET_FLAGS, flags); }
+
+    /**
+     * In case of a write operation indicates if this was caused by a
+     * writepage
+     */
+    public int getWritepage() { return buffer.getInt(OFFSET_WRITEPAGE); }
+    public void setWritepage(int writepage) {
+        buffer.putInt(OFFSET_WRITEPAGE, writepage);
+    }
+
+    /**
+     * File handle. May be filled in by filesystem in open().
+     * Available in all other file operations
+     */
+    public long getFh() { return buffer.getLong(OFFSET_FH); }
+    public void setFh(long fh) { buffer.putLong(OFFSET_FH, fh); }
+
+    /** Old file handle, don't use */
+    public long getFhOld() { return buffer.getLong(OFFSET_FH_OLD); }
+    public void setFhOld(long fhOld) { buffer.putLong(OFFSET_FH_OLD, fhOld); }
+
+    /** Lock owner id. Available in locking operations and flush */
+    public long getLockOwner() { return buffer.getLong(OFFSET_LOCK_OWNER); }
+    public void setLockOwner(long lockOwner) {
+        buffer.putLong(OFFSET_LOCK_OWNER, lockOwner);
+    }
+
+    /** Can be filled in by open, to use direct I/O on this file. */
+    public boolean getDirectIO() { return getBoolean(OFFSET_DIRECT_IO); }
+    public void setDirectIO(boolean b) { putBoolean(OFFSET_DIRECT_IO, b); }
+
+    /**
+     * Can be filled in by open, to indicate, that cached file data
+     * need not be invalidated.
+     */
+    public boolean getKeepCache() { return getBoolean(OFFSET_KEEP_CACHE); }
+    public void setKeepCache(boolean b) { putBoolean(OFFSET_KEEP_CACHE, b); }
+
+    /** Indicates a flush operation. */
+    public boolean getFlush() { return getBoolean(OFFSET_FLUSH); }
+    public void setFlush(boolean b) { putBoolean(OFFSET_FLUSH, b); }
+
+    /**
+     * Can be filled in by open, to indicate that the file is not seekable.
+     * Ignored by FUSE versions older than 2.8.
+     */
+    public boolean getNonseekable() { return getBoolean(OFFSET_NONSEEKABLE); }
+    public void setNonseekable(boolean b) { putBoolean(OFFSET_NONSEEKABLE, b); }
+
+    /**
+     * Backing file descriptor. See {@link FUSEFileInfo#backing_fd}.
+     */
+    public int getBackingFd() { return buffer.getInt(OFFSET_BACKING_FD); }
+    public void setBackingFd(int fd) { buffer.putInt(OFFSET_BACKING_FD, fd); }
+
+    /** Sets the backing file descriptor to the one behind <code>fd</code>. */
+    public void setBackingFile(FileDescriptor fd) {
+        setBackingFd(FUSEUtil.getFileDescriptor(fd));
+    }
+
+    /**
+     * Sets the backing file descriptor to the one behind
+     * <code>channel</code>.
+     */
+    public void setBackingFile(FileChannel channel) {
+        setBackingFd(FUSEUtil.getFileDescriptor(channel));
+    }
+
+    /**
+     * Copies all fields from a {@link FUSEFileInfo} object into this buffer.
+     */
+    public void copyFrom(FUSEFileInfo fi) {
+        setFlags(fi.flags);
+        setWritepage(fi.writepage);
+        setFh(fi.fh);
+        setFhOld(fi.fh_old);
+        setLockOwner(fi.lock_owner);
+        setDirectIO(fi.direct_io);
+        setKeepCache(fi.keep_cache);
+        setFlush(fi.flush);
+        setBackingFd(fi.backing_fd);
+    }
+
+    /**
+     * Copies all fields from this buffer into a {@link FUSEFileInfo} object.
+     */
+    public void copyTo(FUSEFileInfo fi) {
+        fi.flags = getFlags();
+        fi.writepage = getWritepage();
+        fi.fh = getFh();
+        fi.fh_old = getFhOld();
+        fi.lock_owner = getLockOwner();
+        fi.direct_io = getDirectIO();
+        fi.keep_cache = getKeepCache();
+        fi.flush = getFlush();
+        fi.backing_fd = getBackingFd();
+    }
+
+    private boolean getBoolean(int offset) {
+        return buffer.get(offset) != 0;
+    }
+
+    private void putBoolean(int offset, boolean b) {
+        buffer.put(offset, (byte) (b ? 1 : 0));
+    }
+}
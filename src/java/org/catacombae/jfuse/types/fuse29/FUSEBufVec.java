@@ -0,0 +1,166 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse29;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The buffer vector that a read_buf() operation adds its data to. Each buffer
+ * is either a region of an open file, which libfuse may splice(2) directly to
+ * the FUSE device, or data in memory, which is copied once when the operation
+ * returns.<br>
+ * A single file region is the only case that is spliced without copying, so
+ * file systems that can should answer a read with exactly one region.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEBufVec {
+    private static final int INITIAL_CAPACITY = 4;
+
+    /*
+     * Read by native code. A source is a FileDescriptor, a FileChannel, a
+     * direct ByteBuffer or a byte[], with the region given by the matching
+     * elements of positions and sizes.
+     */
+    private int count = 0;
+    private Object[] sources = new Object[INITIAL_CAPACITY];
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Adds <code>size</code> bytes at offset <code>pos</code> of the file open
+     * at <code>fd</code>. The descriptor must stay valid until the data has
+     * been sent, which happens after read_buf() returns.
+     *
+     * @param fd the file descriptor to read from.
+     * @param pos the offset in the file to read from.
+     * @param size the number of bytes to read.
+     */
+    public void addFileDescriptor(FileDescriptor fd, long pos, long size) {
+        if(fd == null)
+            throw new IllegalArgumentException("fd is null");
+        add(fd, pos, size);
+    }
+
+    /**
+     * Adds <code>size</code> bytes at offset <code>pos</code> of the file
+     * behind <code>channel</code>. The channel must be one obtained from a
+     * file stream or RandomAccessFile, and must stay open until the data has
+     * been sent, which happens after read_buf() returns.
+     *
+     * @param channel the file channel to read from.
+     * @param pos the offset in the file to read from.
+     * @param size the number of bytes to read.
+     */
+    public void addFileChannel(FileChannel channel, long pos, long size) {
+        if(channel == null)
+            throw new IllegalArgumentException("channel is null");
+        add(channel, pos, size);
+    }
+
+    /**
+     * Adds the remaining bytes of <code>data</code>. The buffer's position is
+     * not changed. Heap buffers without an accessible array are copied
+     * immediately, other buffers when read_buf() returns.
+     *
+     * @param data the data to add.
+     */
+    public void addData(ByteBuffer data) {
+        if(data == null)
+            throw new IllegalArgumentException("data is null");
+
+        if(data.isDirect())
+            add(data, data.position(), data.remaining());
+        else if(data.hasArray())
+            add(data.array(), data.arrayOffset() + data.position(),
+                    data.remaining());
+        else {
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            add(copy, 0, copy.length);
+        }
+    }
+
+    /**
+     * Adds <code>length</code> bytes of <code>data</code> starting at
+     * <code>offset</code>. The array is copied when read_buf() returns.
+     *
+     * @param data the array holding the data.
+     * @param offset offset of the data in the array.
+     * @param length the number of bytes to add.
+     */
+    public void addData(byte[] data, int offset, int length) {
+        if(data == null)
+            throw new IllegalArgumentException("data is null");
+        if(offset < 0 || length < 0 || offset > data.length - length)
+            throw new IllegalArgumentException("Invalid region (offset=" +
+                    offset + ", length=" + length + ") for array of length " +
+                    data.length + ".");
+        add(data, offset, length);
+    }
+
+    /** Returns the number of buffers in the vector. */
+    public int getBufferCount() {
+        return count;
+    }
+
+    /** Returns the total number of bytes in the vector. */
+    public long getSize() {
+        long size = 0;
+        for(int i = 0; i < count; ++i)
+            size += sizes[i];
+        return size;
+    }
+
+    /** Removes all buffers from the vector. */
+    public void clear() {
+        for(int i = 0; i < count; ++i)
+            sources[i] = null;
+        count = 0;
+    }
+
+    private void add(Object source, long pos, long size) {
+        if(pos < 0)
+            throw new IllegalArgumentException("Negative position: " + pos);
+        if(size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+
+        if(count == sources.length) {
+            int capacity = count * 2;
+
+            Object[] newSources = new Object[capacity];
+            long[] newPositions = new long[capacity];
+            long[] newSizes = new long[capacity];
+            System.arraycopy(sources, 0, newSources, 0, count);
+            System.arraycopy(positions, 0, newPositions, 0, count);
+            System.arraycopy(sizes, 0, newSizes, 0, count);
+            sources = newSources;
+            positions = newPositions;
+            sizes = newSizes;
+        }
+
+        sources[count] = source;
+        positions[count] = pos;
+        sizes[count] = size;
+        ++count;
+    }
+}
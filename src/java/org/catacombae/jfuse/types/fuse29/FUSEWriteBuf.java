@@ -0,0 +1,161 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse29;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.catacombae.jfuse.JNILoader;
+
+/**
+ * The data of a write_buf() operation. The data may be in memory or still in
+ * the pipe that libfuse spliced the request into, so it is not exposed
+ * directly. Instead it is copied to its destination with one of the
+ * <code>copyTo</code> methods, which splice(2) it when both ends allow it.<br>
+ * The data can only be copied once: each copy continues where the previous
+ * one stopped. The object is only valid during the write_buf() call that
+ * supplied it.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEWriteBuf {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /**
+     * Address of the native struct fuse_bufvec. It belongs to the native
+     * write_buf callback, which sets this field to 0 before it returns.
+     */
+    private long nativeContext;
+
+    /**
+     * Only to be called from native code.
+     *
+     * @param nativeContext address of the native buffer vector.
+     */
+    public FUSEWriteBuf(long nativeContext) {
+        if(nativeContext == 0)
+            throw new IllegalArgumentException("null nativeContext not allowed.");
+
+        this.nativeContext = nativeContext;
+    }
+
+    private long getNativeContext() {
+        final long ctx = nativeContext;
+        if(ctx == 0) {
+            throw new IllegalStateException("FUSEWriteBuf used after the " +
+                    "write_buf() call that created it has returned.");
+        }
+
+        return ctx;
+    }
+
+    /**
+     * Returns the total number of bytes in the buffer.
+     *
+     * @throws IllegalStateException if the write_buf() call that supplied this
+     * object has already returned.
+     */
+    public long getSize() {
+        return getSizeNative(getNativeContext());
+    }
+
+    /**
+     * Copies the data to offset <code>pos</code> of the file open at
+     * <code>fd</code>.
+     *
+     * @param fd the file descriptor to write to.
+     * @param pos the offset in the file to write to.
+     * @return the number of bytes copied, or an inverted error value from
+     * FUSEErrorValues.
+     * @throws IllegalStateException if the write_buf() call that supplied this
+     * object has already returned.
+     */
+    public int copyTo(FileDescriptor fd, long pos) {
+        if(fd == null)
+            throw new IllegalArgumentException("fd is null");
+        if(pos < 0)
+            throw new IllegalArgumentException("Negative position: " + pos);
+        return copyToFileNative(getNativeContext(), fd, pos);
+    }
+
+    /**
+     * Copies the data to offset <code>pos</code> of the file behind
+     * <code>channel</code>, which must be one obtained from a file stream or
+     * RandomAccessFile.
+     *
+     * @param channel the file channel to write to.
+     * @param pos the offset in the file to write to.
+     * @return the number of bytes copied, or an inverted error value from
+     * FUSEErrorValues.
+     * @throws IllegalStateException if the write_buf() call that supplied this
+     * object has already returned.
+     */
+    public int copyTo(FileChannel channel, long pos) {
+        if(channel == null)
+            throw new IllegalArgumentException("channel is null");
+        if(pos < 0)
+            throw new IllegalArgumentException("Negative position: " + pos);
+        return copyToFileNative(getNativeContext(), channel, pos);
+    }
+
+    /**
+     * Copies as much of the data as fits into the remaining space of
+     * <code>dest</code>, and advances its position by the number of bytes
+     * copied.
+     *
+     * @param dest the buffer to copy to.
+     * @return the number of bytes copied, or an inverted error value from
+     * FUSEErrorValues.
+     * @throws IllegalStateException if the write_buf() call that supplied this
+     * object has already returned.
+     */
+    public int copyTo(ByteBuffer dest) {
+        if(dest == null)
+            throw new IllegalArgumentException("dest is null");
+        if(dest.isReadOnly())
+            throw new IllegalArgumentException("dest is read-only");
+
+        final long ctx = getNativeContext();
+        final int res;
+        if(dest.isDirect())
+            res = copyToBufferNative(ctx, dest, dest.position(),
+                    dest.remaining());
+        else
+            res = copyToArrayNative(ctx, dest.array(),
+                    dest.arrayOffset() + dest.position(), dest.remaining());
+
+        if(res > 0)
+            dest.position(dest.position() + res);
+        return res;
+    }
+
+    private static native long getSizeNative(long nativeContext);
+
+    private static native int copyToFileNative(long nativeContext,
+            Object target, long pos);
+
+    private static native int copyToBufferNative(long nativeContext,
+            ByteBuffer dest, int position, int length);
+
+    private static native int copyToArrayNative(long nativeContext,
+            byte[] dest, int offset, int length);
+}
@@ -0,0 +1,139 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse3;
+
+/**
+ * Connection information, passed to the init() method of
+ * {@link org.catacombae.jfuse.FUSE3Operations}. Corresponds to the libfuse 3
+ * <code>struct fuse_conn_info</code>.<br>
+ * The file system may change <code>want</code> and the limits in init() to
+ * negotiate them with the kernel. Only capabilities present in
+ * <code>capable</code> may be set in <code>want</code>.
+ *
+ * @author erik
+ */
+public class FUSE3ConnInfo {
+    /** Filesystem supports asynchronous read requests. */
+    public static final int FUSE_CAP_ASYNC_READ = (1 << 0);
+    /** Filesystem supports "remote" locking. */
+    public static final int FUSE_CAP_POSIX_LOCKS = (1 << 1);
+    /** Filesystem handles the O_TRUNC open flag itself. */
+    public static final int FUSE_CAP_ATOMIC_O_TRUNC = (1 << 3);
+    /** Filesystem handles lookups of "." and "..". */
+    public static final int FUSE_CAP_EXPORT_SUPPORT = (1 << 4);
+    /** Don't apply the umask to the file mode in create operations. */
+    public static final int FUSE_CAP_DONT_MASK = (1 << 6);
+    /** Use splice when writing to the fuse device. */
+    public static final int FUSE_CAP_SPLICE_WRITE = (1 << 7);
+    /** Move pages instead of copying them when splicing. */
+    public static final int FUSE_CAP_SPLICE_MOVE = (1 << 8);
+    /** Use splice when reading from the fuse device. */
+    public static final int FUSE_CAP_SPLICE_READ = (1 << 9);
+    /** Filesystem supports BSD style file locking. */
+    public static final int FUSE_CAP_FLOCK_LOCKS = (1 << 10);
+    /** Filesystem supports ioctl on directories. */
+    public static final int FUSE_CAP_IOCTL_DIR = (1 << 11);
+    /** Invalidate cached data automatically when the mtime changes. */
+    public static final int FUSE_CAP_AUTO_INVAL_DATA = (1 << 12);
+    /** The kernel uses readdirplus. */
+    public static final int FUSE_CAP_READDIRPLUS = (1 << 13);
+    /** The kernel decides adaptively between readdir and readdirplus. */
+    public static final int FUSE_CAP_READDIRPLUS_AUTO = (1 << 14);
+    /** Filesystem supports asynchronous direct I/O submission. */
+    public static final int FUSE_CAP_ASYNC_DIO = (1 << 15);
+    /** The kernel may cache writes (writeback caching). */
+    public static final int FUSE_CAP_WRITEBACK_CACHE = (1 << 16);
+    /** Filesystem supports zero-message opens. */
+    public static final int FUSE_CAP_NO_OPEN_SUPPORT = (1 << 17);
+    /** Filesystem allows parallel directory operations. */
+    public static final int FUSE_CAP_PARALLEL_DIROPS = (1 << 18);
+    /** Filesystem supports POSIX ACLs. */
+    public static final int FUSE_CAP_POSIX_ACL = (1 << 19);
+    /** Filesystem handles killing of suid/sgid bits on write. */
+    public static final int FUSE_CAP_HANDLE_KILLPRIV = (1 << 20);
+    /** The kernel caches symlink targets. */
+    public static final int FUSE_CAP_CACHE_SYMLINKS = (1 << 23);
+    /** Filesystem supports zero-message opendirs. */
+    public static final int FUSE_CAP_NO_OPENDIR_SUPPORT = (1 << 24);
+    /** Filesystem may invalidate cached data explicitly. */
+    public static final int FUSE_CAP_EXPLICIT_INVAL_DATA = (1 << 25);
+    /**
+     * The kernel serves files opened with a backing file by itself (libfuse
+     * 3.16 and Linux 6.9 or later). Wanted by default where capable.
+     */
+    public static final int FUSE_CAP_PASSTHROUGH = (1 << 29);
+
+    /** Major version of the protocol (read-only). */
+    public long proto_major;
+
+    /** Minor version of the protocol (read-only). */
+    public long proto_minor;
+
+    /** Maximum size of the write buffer. */
+    public long max_write;
+
+    /** Maximum size of read requests. */
+    public long max_read;
+
+    /** Maximum readahead. */
+    public long max_readahead;
+
+    /** Capability flags that the kernel supports (read-only). */
+    public int capable;
+
+    /** Capability flags that the filesystem wants to enable. */
+    public int want;
+
+    /** Maximum number of pending "background" requests. */
+    public long max_background;
+
+    /** Kernel congestion threshold parameter. */
+    public long congestion_threshold;
+
+    /**
+     * Granularity of timestamps in nanoseconds, when the filesystem
+     * supports less than nanosecond resolution. Zero or one means
+     * nanosecond resolution.
+     */
+    public long time_gran;
+
+    /**
+     * Convenience method that checks if the kernel supports all the
+     * capabilities in <code>mask</code>.
+     */
+    public boolean isCapable(int mask) {
+        return (capable & mask) == mask;
+    }
+
+    /**
+     * Convenience method that adds the capabilities in <code>mask</code> to
+     * <code>want</code>, if the kernel supports them.
+     *
+     * @return true if the capabilities were added, false if the kernel
+     * doesn't support all of them.
+     */
+    public boolean requestCapabilities(int mask) {
+        if(!isCapable(mask))
+            return false;
+
+        want |= mask;
+        return true;
+    }
+}
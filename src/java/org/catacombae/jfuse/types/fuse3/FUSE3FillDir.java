@@ -0,0 +1,104 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse3;
+
+import org.catacombae.jfuse.JNILoader;
+import org.catacombae.jfuse.types.system.Stat;
+
+/**
+ * The filler passed to the readdir() method of
+ * {@link org.catacombae.jfuse.FUSE3Operations}. Corresponds to the libfuse 3
+ * <code>fuse_fill_dir_t</code>, which takes a flags argument in addition to
+ * the arguments of its FUSE 2.x counterpart.
+ */
+public class FUSE3FillDir {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /**
+     * Flag passed to readdir() when the kernel asks for the attributes of
+     * the entries along with their names (readdirplus). The file system may
+     * then fill in complete attributes and pass {@link #FUSE_FILL_DIR_PLUS}
+     * to {@link #fill(byte[], org.catacombae.jfuse.types.system.Stat, long, int)}.
+     */
+    public static final int FUSE_READDIR_PLUS = (1 << 0);
+
+    /**
+     * Flag passed to fill() to tell that the attributes in <code>stat</code>
+     * are complete, so that the kernel can cache them without a separate
+     * getattr().<br>
+     * The libfuse 3 high level API has no per-entry timeouts. The kernel
+     * caches such entries for
+     * {@link org.catacombae.jfuse.types.fuse3.FUSEConfig#entry_timeout} and
+     * their attributes for
+     * {@link org.catacombae.jfuse.types.fuse3.FUSEConfig#attr_timeout}, as
+     * set in init().
+     */
+    public static final int FUSE_FILL_DIR_PLUS = (1 << 1);
+
+    /**
+     * Address of the native filler context. The context lives in the stack
+     * frame of the native readdir callback, which sets this field to 0 before
+     * it returns.
+     */
+    private long nativeContext;
+
+    /**
+     * Only to be called from native code.
+     *
+     * @param nativeContext address of the native filler context.
+     */
+    public FUSE3FillDir(long nativeContext) {
+        if(nativeContext == 0)
+            throw new IllegalArgumentException("null nativeContext not allowed.");
+
+        this.nativeContext = nativeContext;
+    }
+
+    private long getNativeContext() {
+        final long ctx = nativeContext;
+        if(ctx == 0) {
+            throw new IllegalStateException("FUSE3FillDir used after the " +
+                    "readdir() call that created it has returned.");
+        }
+
+        return ctx;
+    }
+
+    /**
+     * Function to add an entry in a readdir() operation
+     *
+     * @param name <b>(const char*)</b> the file name of the directory entry
+     * @param stat <b>(const struct stat*)</b> file attributes, can be NULL
+     * @param off <b>(off_t)</b> offset of the next entry or zero
+     * @param flags <b>(enum fuse_fill_dir_flags)</b> zero or
+     * {@link #FUSE_FILL_DIR_PLUS}
+     * @return true if buffer is full, false otherwise
+     * @throws IllegalStateException if the readdir() call that supplied this
+     * object has already returned.
+     */
+    public boolean fill(byte[] name, Stat stat, long off, int flags) {
+        return fillNative(getNativeContext(), name, stat, off, flags);
+    }
+
+    private static native boolean fillNative(long nativeContext,
+            byte[] name, Stat stat, long off, int flags);
+}
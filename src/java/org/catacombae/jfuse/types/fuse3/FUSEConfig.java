@@ -0,0 +1,103 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.fuse3;
+
+/**
+ * Configuration of the high level API, passed to the init() method of
+ * {@link org.catacombae.jfuse.FUSE3Operations}. Corresponds to the libfuse 3
+ * <code>struct fuse_config</code>, which replaced several of the FUSE 2.x
+ * mount options. The fields are initialized from the mount options and may be
+ * changed in init().
+ *
+ * @author erik
+ */
+public class FUSEConfig {
+    /** If set, st_gid of all files is overridden with <code>gid</code>. */
+    public boolean set_gid;
+    public long gid;
+
+    /** If set, st_uid of all files is overridden with <code>uid</code>. */
+    public boolean set_uid;
+    public long uid;
+
+    /**
+     * If set, the permission bits of st_mode are overridden with
+     * <code>0777 &amp; ~umask</code>.
+     */
+    public boolean set_mode;
+    public int umask;
+
+    /** Timeout in seconds for which name lookups are cached. */
+    public double entry_timeout;
+
+    /**
+     * Timeout in seconds for which a negative lookup is cached. Zero means
+     * that negative lookups are not cached.
+     */
+    public double negative_timeout;
+
+    /** Timeout in seconds for which file and directory attributes are cached. */
+    public double attr_timeout;
+
+    /** Allow requests to be interrupted. */
+    public boolean intr;
+
+    /** Signal used to interrupt requests when <code>intr</code> is set. */
+    public int intr_signal;
+
+    /**
+     * Number of seconds inodes are remembered after their lookup count has
+     * dropped to zero. -1 means forever.
+     */
+    public int remember;
+
+    /** Remove files immediately on unlink, instead of hiding them. */
+    public boolean hard_remove;
+
+    /** Honor the st_ino field in getattr() and readdir(). */
+    public boolean use_ino;
+
+    /** Look up the inode number of readdir() entries that have none. */
+    public boolean readdir_ino;
+
+    /** Bypass the page cache for all files. */
+    public boolean direct_io;
+
+    /** Don't flush the page cache of files on open. */
+    public boolean kernel_cache;
+
+    /** Flush the page cache on open only if the mtime or size changed. */
+    public boolean auto_cache;
+
+    /** If set, <code>ac_attr_timeout</code> is used instead of attr_timeout. */
+    public boolean ac_attr_timeout_set;
+
+    /**
+     * Timeout in seconds for which file attributes are cached for the
+     * purpose of checking if auto_cache should flush the file data on open.
+     */
+    public double ac_attr_timeout;
+
+    /**
+     * Operations on open files and directories may be called with a null
+     * path, if the file system does not need it.
+     */
+    public boolean nullpath_ok;
+}
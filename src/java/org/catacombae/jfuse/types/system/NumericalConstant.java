@@ -169,6 +169,45 @@ public enum NumericalConstant {
 
     /* End: Constants from sys/xattr.h */
 
+
+    /* Begin: Constants from linux/falloc.h */
+
+    /**
+     * linux/falloc.h: <b>(Linux)</b> fallocate(2) mode flag: don't change the
+     * file size.
+     */
+    FALLOC_FL_KEEP_SIZE,
+
+    /**
+     * linux/falloc.h: <b>(Linux)</b> fallocate(2) mode flag: deallocate the
+     * range. Must be combined with FALLOC_FL_KEEP_SIZE.
+     */
+    FALLOC_FL_PUNCH_HOLE,
+
+    /**
+     * linux/falloc.h: <b>(Linux)</b> fallocate(2) mode flag: zero the range.
+     */
+    FALLOC_FL_ZERO_RANGE,
+
+    /* End: Constants from linux/falloc.h */
+
+
+    /* Begin: Constants from unistd.h */
+
+    /**
+     * unistd.h: <b>(Linux, Solaris, FreeBSD)</b> lseek(2) whence: seek to the
+     * next data at or after the offset.
+     */
+    SEEK_DATA,
+
+    /**
+     * unistd.h: <b>(Linux, Solaris, FreeBSD)</b> lseek(2) whence: seek to the
+     * next hole at or after the offset.
+     */
+    SEEK_HOLE,
+
+    /* End: Constants from unistd.h */
+
     ;
 
     private final Integer value;
@@ -57,6 +57,29 @@ public class Stat implements FileModeFlags {
     /** File generation number. Type: u_long (4 bytes) */
     public long st_gen = 0;
 
+    /**
+     * Copies all fields of <code>s</code> into this object.
+     *
+     * @param s the object to copy from.
+     */
+    public void setToStat(Stat s) {
+        st_dev = s.st_dev;
+        st_ino = s.st_ino;
+        st_mode = s.st_mode;
+        st_nlink = s.st_nlink;
+        st_uid = s.st_uid;
+        st_gid = s.st_gid;
+        st_rdev = s.st_rdev;
+        st_atimespec.setToTimespec(s.st_atimespec);
+        st_mtimespec.setToTimespec(s.st_mtimespec);
+        st_ctimespec.setToTimespec(s.st_ctimespec);
+        st_size = s.st_size;
+        st_blocks = s.st_blocks;
+        st_blocksize = s.st_blocksize;
+        st_flags = s.st_flags;
+        st_gen = s.st_gen;
+    }
+
     /**
      * Zeroes all instance fields in the object.
      */
@@ -0,0 +1,270 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.types.system;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Off-heap view of a <code>struct stat</code>. Instead of having its fields
+ * read one at a time through JNI like {@link Stat}, a StatBuffer keeps the
+ * stat data in a direct ByteBuffer with a fixed little-endian layout, which
+ * the native side converts to and from <code>struct stat</code> in one go.
+ * <br/>
+ * All fields are stored as signed 64-bit integers at the offsets given by the
+ * <code>OFFSET_*</code> constants. The timestamps are stored as a pair of
+ * seconds and nanoseconds.
+ *
+ * @author Erik Larsson
+ */
+public class StatBuffer implements FileModeFlags {
+    public static final int OFFSET_DEV = 0;
+    public static final int OFFSET_INO = 8;
+    public static final int OFFSET_MODE = 16;
+    public static final int OFFSET_NLINK = 24;
+    public static final int OFFSET_UID = 32;
+    public static final int OFFSET_GID = 40;
+    public static final int OFFSET_RDEV = 48;
+    public static final int OFFSET_SIZE = 56;
+    public static final int OFFSET_BLOCKS = 64;
+    public static final int OFFSET_BLOCKSIZE = 72;
+    public static final int OFFSET_ATIME_SEC = 80;
+    public static final int OFFSET_ATIME_NSEC = 88;
+    public static final int OFFSET_MTIME_SEC = 96;
+    public static final int OFFSET_MTIME_NSEC = 104;
+    public static final int OFFSET_CTIME_SEC = 112;
+    public static final int OFFSET_CTIME_NSEC = 120;
+    public static final int OFFSET_FLAGS = 128;
+    public static final int OFFSET_GEN = 136;
+
+    /** The size of the stat data in bytes. */
+    public static final int SIZE = 144;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new StatBuffer backed by a newly allocated direct buffer.
+     */
+    public StatBuffer() {
+        this(ByteBuffer.allocateDirect(SIZE));
+    }
+
+    /**
+     * Creates a new StatBuffer backed by <code>buffer</code>, starting at
+     * position 0 of the buffer. The byte order of <code>buffer</code> is set
+     * to little-endian.
+     *
+     * @param buffer a direct buffer with a capacity of at least
+     * {@link #SIZE} bytes.
+     */
+    public StatBuffer(ByteBuffer buffer) {
+        if(!buffer.isDirect())
+            throw new IllegalArgumentException("buffer is not direct");
+        else if(buffer.capacity() < SIZE)
+            throw new IllegalArgumentException("buffer too small (" +
+                    buffer.capacity() + " < " + SIZE + ")");
+
+        this.buffer = buffer;
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the buffer backing this StatBuffer.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Zeroes all fields.
+     */
+    public void zero() {
+        for(int i = 0; i < SIZE; i += 8)
+            buffer.putLong(i, 0);
+    }
+
+    /** Device inode resides on. Type: dev_t */
+    public long getDev() { return buffer.getLong(OFFSET_DEV); }
+    public void setDev(long dev) { buffer.putLong(OFFSET_DEV, dev); }
+
+    /** Inode's number. Type: ino_t */
+    public long getIno() { return buffer.getLong(OFFSET_INO); }
+    public void setIno(long ino) { buffer.putLong(OFFSET_INO, ino); }
+
+    /** Inode protection mode. Type: mode_t */
+    public long getMode() { return buffer.getLong(OFFSET_MODE); }
+    public void setMode(long mode) { buffer.putLong(OFFSET_MODE, mode); }
+
+    /** Number of hard links to the file. Type: nlink_t */
+    public long getNlink() { return buffer.getLong(OFFSET_NLINK); }
+    public void setNlink(long nlink) { buffer.putLong(OFFSET_NLINK, nlink); }
+
+    /** User-id of owner. Type: uid_t */
+    public long getUid() { return buffer.getLong(OFFSET_UID); }
+    public void setUid(long uid) { buffer.putLong(OFFSET_UID, uid); }
+
+    /** Group-id of owner. Type: gid_t */
+    public long getGid() { return buffer.getLong(OFFSET_GID); }
+    public void setGid(long gid) { buffer.putLong(OFFSET_GID, gid); }
+
+    /** Device type, for special file inode. Type: dev_t */
+    public long getRdev() { return buffer.getLong(OFFSET_RDEV); }
+    public void setRdev(long rdev) { buffer.putLong(OFFSET_RDEV, rdev); }
+
+    /** File size, in bytes. Type: off_t */
+    public long getSize() { return buffer.getLong(OFFSET_SIZE); }
+    public void setSize(long size) { buffer.putLong(OFFSET_SIZE, size); }
+
+    /** Blocks allocated for file. Type: blkcnt_t */
+    public long getBlocks() { return buffer.getLong(OFFSET_BLOCKS); }
+    public void setBlocks(long blocks) { buffer.putLong(OFFSET_BLOCKS, blocks); }
+
+    /** Optimal file sys I/O ops blocksize. Type: blksize_t */
+    public long getBlocksize() { return buffer.getLong(OFFSET_BLOCKSIZE); }
+    public void setBlocksize(long blocksize) {
+        buffer.putLong(OFFSET_BLOCKSIZE, blocksize);
+    }
+
+    /** Time of last access (seconds part). */
+    public long getAtimeSec() { return buffer.getLong(OFFSET_ATIME_SEC); }
+    /** Time of last access (nanoseconds part). */
+    public long getAtimeNsec() { return buffer.getLong(OFFSET_ATIME_NSEC); }
+    /** Sets the time of last access. */
+    public void setAtime(long sec, long nsec) {
+        buffer.putLong(OFFSET_ATIME_SEC, sec);
+        buffer.putLong(OFFSET_ATIME_NSEC, nsec);
+    }
+
+    /** Time of last data modification (seconds part). */
+    public long getMtimeSec() { return buffer.getLong(OFFSET_MTIME_SEC); }
+    /** Time of last data modification (nanoseconds part). */
+    public long getMtimeNsec() { return buffer.getLong(OFFSET_MTIME_NSEC); }
+    /** Sets the time of last data modification. */
+    public void setMtime(long sec, long nsec) {
+        buffer.putLong(OFFSET_MTIME_SEC, sec);
+        buffer.putLong(OFFSET_MTIME_NSEC, nsec);
+    }
+
+    /** Time of last file status change (seconds part). */
+    public long getCtimeSec() { return buffer.getLong(OFFSET_CTIME_SEC); }
+    /** Time of last file status change (nanoseconds part). */
+    public long getCtimeNsec() { return buffer.getLong(OFFSET_CTIME_NSEC); }
+    /** Sets the time of last file status change. */
+    public void setCtime(long sec, long nsec) {
+        buffer.putLong(OFFSET_CTIME_SEC, sec);
+        buffer.putLong(OFFSET_CTIME_NSEC, nsec);
+    }
+
+    /** User defined flags for file. Ignored on systems without st_flags. */
+    public long getFlags() { return buffer.getLong(OFFSET_FLAGS); }
+    public void setFlags(long flags) { buffer.putLong(OFFSET_FLAGS, flags); }
+
+    /** File generation number. Ignored on systems without st_gen. */
+    public long getGen() { return buffer.getLong(OFFSET_GEN); }
+    public void setGen(long gen) { buffer.putLong(OFFSET_GEN, gen); }
+
+    /**
+     * Copies all fields from a {@link Stat} object into this buffer.
+     */
+    public void copyFrom(Stat st) {
+        setDev(st.st_dev);
+        setIno(st.st_ino);
+        setMode(st.st_mode);
+        setNlink(st.st_nlink);
+        setUid(st.st_uid);
+        setGid(st.st_gid);
+        setRdev(st.st_rdev);
+        setSize(st.st_size);
+        setBlocks(st.st_blocks);
+        setBlocksize(st.st_blocksize);
+        setAtime(st.st_atimespec.sec, st.st_atimespec.nsec);
+        setMtime(st.st_mtimespec.sec, st.st_mtimespec.nsec);
+        setCtime(st.st_ctimespec.sec, st.st_ctimespec.nsec);
+        setFlags(st.st_flags);
+        setGen(st.st_gen);
+    }
+
+    /**
+     * Copies all fields from this buffer into a {@link Stat} object.
+     */
+    public void copyTo(Stat st) {
+        st.st_dev = getDev();
+        st.st_ino = getIno();
+        st.st_mode = getMode();
+        st.st_nlink = getNlink();
+        st.st_uid = getUid();
+        st.st_gid = getGid();
+        st.st_rdev = getRdev();
+        st.st_size = getSize();
+        st.st_blocks = getBlocks();
+        st.st_blocksize = getBlocksize();
+        st.st_atimespec.sec = (int)getAtimeSec();
+        st.st_atimespec.nsec = (int)getAtimeNsec();
+        st.st_mtimespec.sec = (int)getMtimeSec();
+        st.st_mtimespec.nsec = (int)getMtimeNsec();
+        st.st_ctimespec.sec = (int)getCtimeSec();
+        st.st_ctimespec.nsec = (int)getCtimeNsec();
+        st.st_flags = getFlags();
+        st.st_gen = getGen();
+    }
+
+    public void printFields(String prefix, PrintStream ps) {
+        ps.println(prefix + "dev = " + getDev());
+        ps.println(prefix + "ino = " + getIno());
+        ps.println(prefix + "mode = 0x" + Long.toHexString(getMode()));
+        ps.println(prefix + "nlink = " + getNlink());
+        ps.println(prefix + "uid = " + getUid());
+        ps.println(prefix + "gid = " + getGid());
+        ps.println(prefix + "rdev = " + getRdev());
+        ps.println(prefix + "size = " + getSize());
+        ps.println(prefix + "blocks = " + getBlocks());
+        ps.println(prefix + "blocksize = " + getBlocksize());
+        ps.println(prefix + "atime = " + getAtimeSec() + "." + getAtimeNsec());
+        ps.println(prefix + "mtime = " + getMtimeSec() + "." + getMtimeNsec());
+        ps.println(prefix + "ctime = " + getCtimeSec() + "." + getCtimeNsec());
+        ps.println(prefix + "flags = " + getFlags());
+        ps.println(prefix + "gen = " + getGen());
+    }
+
+    /**
+     * Returns whether or not this stat buffer represents a directory.
+     * Convenience method equivalent to <code>(mode & S_IFMT) == S_IFDIR</code>.
+     */
+    public boolean isDir() {
+        return Stat.isDir((int)getMode());
+    }
+
+    /**
+     * Returns whether or not this stat buffer represents a regular file.
+     * Convenience method equivalent to <code>(mode & S_IFMT) == S_IFREG</code>.
+     */
+    public boolean isReg() {
+        return Stat.isReg((int)getMode());
+    }
+
+    /**
+     * Returns whether or not this stat buffer represents a symbolic link.
+     * Convenience method equivalent to <code>(mode & S_IFMT) == S_IFLNK</code>.
+     */
+    public boolean isLnk() {
+        return Stat.isLnk((int)getMode());
+    }
+}
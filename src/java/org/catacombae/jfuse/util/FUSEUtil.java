@@ -19,8 +19,10 @@
 
 package org.catacombae.jfuse.util;
 
+import java.io.FileDescriptor;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 //import java.nio.charset.CharsetDecoder;
@@ -136,9 +138,38 @@ public class FUSEUtil {
         return getProcessPidNative();
     }
 
+    /**
+     * Returns the number of the operating system file descriptor behind
+     * <code>fd</code>.
+     *
+     * @param fd the file descriptor.
+     * @return the descriptor number, or -1 if <code>fd</code> is not valid.
+     */
+    public static int getFileDescriptor(FileDescriptor fd) {
+        if(fd == null)
+            throw new IllegalArgumentException("fd is null");
+        return getFileDescriptorNative(fd);
+    }
+
+    /**
+     * Returns the number of the operating system file descriptor behind
+     * <code>channel</code>, which must be one obtained from a file stream or
+     * RandomAccessFile.
+     *
+     * @param channel the file channel.
+     * @return the descriptor number, or -1 if the channel is closed or isn't
+     * backed by a file descriptor.
+     */
+    public static int getFileDescriptor(FileChannel channel) {
+        if(channel == null)
+            throw new IllegalArgumentException("channel is null");
+        return getFileDescriptorNative(channel);
+    }
+
     private static native long getProcessUidNative();
     private static native long getProcessGidNative();
     private static native long getProcessPidNative();
+    private static native int getFileDescriptorNative(Object fd);
 
     private FUSEUtil() {}
 }
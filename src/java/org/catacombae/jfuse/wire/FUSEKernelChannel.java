@@ -0,0 +1,215 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import org.catacombae.jfuse.util.FUSEUtil;
+
+/**
+ * The transport between a {@link FUSEKernelSession} and the kernel: reads
+ * requests from one channel and writes replies to another.<br>
+ * Normally both are the same file channel on a <code>/dev/fuse</code>
+ * descriptor, where every read returns exactly one request and every reply
+ * must be written with a single (gathering) write. Any other pair of channels,
+ * such as the ends of a {@link java.nio.channels.Pipe}, can stand in for the
+ * kernel. Those are byte streams, so requests are framed by the length in
+ * their header, and one read may return several requests, which are then
+ * handed out one by one without reading again.
+ * <p>
+ * A channel is not thread safe. The buffer returned by {@link #receive()} is
+ * only valid until the next call to <code>receive</code>.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelChannel {
+    private final ReadableByteChannel in;
+    private final GatheringByteChannel out;
+    private final int requestSize;
+
+    /**
+     * Data read from <code>in</code>. The requests not yet handed out are
+     * between the position and the limit.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a channel reading requests from <code>in</code> and writing
+     * replies to <code>out</code>.
+     *
+     * @param in the channel that requests are read from.
+     * @param out the channel that replies are written to.
+     * @param requestSize the size of the largest request that can be
+     * received, including the header. At least
+     * {@link FUSEKernelConstants#FUSE_MIN_READ_BUFFER}.
+     */
+    public FUSEKernelChannel(ReadableByteChannel in, GatheringByteChannel out,
+            int requestSize) {
+        if(in == null)
+            throw new IllegalArgumentException("in == null");
+        if(out == null)
+            throw new IllegalArgumentException("out == null");
+        if(requestSize < FUSEKernelConstants.FUSE_MIN_READ_BUFFER)
+            throw new IllegalArgumentException("requestSize must be at " +
+                    "least " + FUSEKernelConstants.FUSE_MIN_READ_BUFFER);
+
+        this.in = in;
+        this.out = out;
+        this.requestSize = requestSize;
+
+        /* Twice the request size, so that a read of a whole request always
+         * fits behind a partially received one. */
+        this.buffer = ByteBuffer.allocateDirect(2 * requestSize);
+        this.buffer.order(ByteOrder.nativeOrder());
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Opens a channel on a FUSE device node, normally <code>/dev/fuse</code>.
+     * Opening the device creates a new, unmounted connection. It becomes
+     * useful once a file system has been mounted with the descriptor.
+     * {@link FUSEKernelMount} opens the device and mounts it in one step.
+     *
+     * @param device the device node to open.
+     * @param requestSize the size of the largest request that can be
+     * received, including the header.
+     * @throws IOException if the device could not be opened.
+     */
+    public static FUSEKernelChannel openDevice(File device, int requestSize)
+            throws IOException {
+        final FileChannel fc = new RandomAccessFile(device, "rw").getChannel();
+        return new FUSEKernelChannel(fc, fc, requestSize);
+    }
+
+    /**
+     * Returns the size of the largest request that can be received.
+     */
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Returns the next request, reading from the input channel only when no
+     * complete request is left from an earlier read.
+     *
+     * @return a buffer in native byte order holding exactly one request,
+     * starting with its <code>fuse_in_header</code>, or <code>null</code> if
+     * the input channel has reached end of stream.
+     * @throws IOException if reading fails or a malformed request was
+     * received.
+     */
+    public ByteBuffer receive() throws IOException {
+        while(true) {
+            final int available = buffer.remaining();
+            if(available >= FUSEKernelConstants.FUSE_IN_HEADER_SIZE) {
+                final int start = buffer.position();
+                final int len = buffer.getInt(start);
+                if(len < FUSEKernelConstants.FUSE_IN_HEADER_SIZE ||
+                        len > requestSize) {
+                    throw new IOException("Malformed request: length " + len +
+                            " is outside [" +
+                            FUSEKernelConstants.FUSE_IN_HEADER_SIZE + ", " +
+                            requestSize + "].");
+                }
+
+                if(available >= len) {
+                    final int end = start + len;
+                    final int limit = buffer.limit();
+
+                    buffer.limit(end);
+                    final ByteBuffer request = buffer.slice();
+                    request.order(ByteOrder.nativeOrder());
+                    buffer.limit(limit);
+                    buffer.position(end);
+
+                    return request;
+                }
+            }
+
+            /* Move the partial request to the front, leaving room for a whole
+             * request behind it. */
+            buffer.compact();
+            final int res = in.read(buffer);
+            buffer.flip();
+            if(res < 0) {
+                if(buffer.hasRemaining()) {
+                    throw new IOException("End of stream inside a request (" +
+                            buffer.remaining() + " bytes left).");
+                }
+
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes a reply consisting of <code>length</code> buffers starting at
+     * <code>srcs[offset]</code>, from their positions to their limits. On a
+     * FUSE device the reply is passed to the kernel in one write.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void send(ByteBuffer[] srcs, int offset, int length)
+            throws IOException {
+        final int end = offset + length;
+        int i = offset;
+        while(true) {
+            /* Skip the buffers that have been written completely. */
+            while(i < end && !srcs[i].hasRemaining())
+                ++i;
+            if(i == end)
+                break;
+
+            out.write(srcs, i, end - i);
+        }
+    }
+
+    /**
+     * Returns the descriptor of the FUSE device that requests are read from,
+     * or -1 if the input channel is not a file channel. Registering backing
+     * files for passthrough needs this descriptor.
+     */
+    public int getDeviceFileDescriptor() {
+        if(!(in instanceof FileChannel) || !in.isOpen())
+            return -1;
+
+        return FUSEUtil.getFileDescriptor((FileChannel) in);
+    }
+
+    /**
+     * Closes the input and output channels.
+     *
+     * @throws IOException if closing fails.
+     */
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            if(out != in)
+                out.close();
+        }
+    }
+}
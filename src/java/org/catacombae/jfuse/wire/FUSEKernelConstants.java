@@ -0,0 +1,167 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+/**
+ * Constants of the FUSE kernel protocol, as defined in the Linux header
+ * &lt;linux/fuse.h&gt;. Structure sizes are those of protocol version 7.23 and
+ * later unless noted otherwise.
+ *
+ * @author Erik Larsson
+ */
+public interface FUSEKernelConstants {
+    /** The major version of the kernel protocol spoken by jFUSE. */
+    public static final int FUSE_KERNEL_VERSION = 7;
+
+    /** The highest minor version of the kernel protocol spoken by jFUSE. */
+    public static final int FUSE_KERNEL_MINOR_VERSION = 40;
+
+    /** The lowest minor version of the kernel protocol spoken by jFUSE. */
+    public static final int FUSE_KERNEL_MINOR_VERSION_MIN = 12;
+
+    /** The node ID of the root directory. */
+    public static final long FUSE_ROOT_ID = 1;
+
+    /** The inode number reported for directory entries without one. */
+    public static final long FUSE_UNKNOWN_INO = 0xFFFFFFFFL;
+
+    /* Opcodes (enum fuse_opcode). */
+    public static final int FUSE_LOOKUP = 1;
+    public static final int FUSE_FORGET = 2;
+    public static final int FUSE_GETATTR = 3;
+    public static final int FUSE_SETATTR = 4;
+    public static final int FUSE_READLINK = 5;
+    public static final int FUSE_SYMLINK = 6;
+    public static final int FUSE_MKNOD = 8;
+    public static final int FUSE_MKDIR = 9;
+    public static final int FUSE_UNLINK = 10;
+    public static final int FUSE_RMDIR = 11;
+    public static final int FUSE_RENAME = 12;
+    public static final int FUSE_LINK = 13;
+    public static final int FUSE_OPEN = 14;
+    public static final int FUSE_READ = 15;
+    public static final int FUSE_WRITE = 16;
+    public static final int FUSE_STATFS = 17;
+    public static final int FUSE_RELEASE = 18;
+    public static final int FUSE_FSYNC = 20;
+    public static final int FUSE_SETXATTR = 21;
+    public static final int FUSE_GETXATTR = 22;
+    public static final int FUSE_LISTXATTR = 23;
+    public static final int FUSE_REMOVEXATTR = 24;
+    public static final int FUSE_FLUSH = 25;
+    public static final int FUSE_INIT = 26;
+    public static final int FUSE_OPENDIR = 27;
+    public static final int FUSE_READDIR = 28;
+    public static final int FUSE_RELEASEDIR = 29;
+    public static final int FUSE_FSYNCDIR = 30;
+    public static final int FUSE_GETLK = 31;
+    public static final int FUSE_SETLK = 32;
+    public static final int FUSE_SETLKW = 33;
+    public static final int FUSE_ACCESS = 34;
+    public static final int FUSE_CREATE = 35;
+    public static final int FUSE_INTERRUPT = 36;
+    public static final int FUSE_BMAP = 37;
+    public static final int FUSE_DESTROY = 38;
+    public static final int FUSE_IOCTL = 39;
+    public static final int FUSE_POLL = 40;
+    public static final int FUSE_NOTIFY_REPLY = 41;
+    public static final int FUSE_BATCH_FORGET = 42;
+    public static final int FUSE_FALLOCATE = 43;
+    public static final int FUSE_READDIRPLUS = 44;
+    public static final int FUSE_RENAME2 = 45;
+    public static final int FUSE_LSEEK = 46;
+    public static final int FUSE_COPY_FILE_RANGE = 47;
+
+    /* INIT flags. */
+    public static final int FUSE_ASYNC_READ = (1 << 0);
+    public static final int FUSE_POSIX_LOCKS = (1 << 1);
+    public static final int FUSE_ATOMIC_O_TRUNC = (1 << 3);
+    public static final int FUSE_BIG_WRITES = (1 << 5);
+    /** The kernel may send READDIRPLUS (protocol 7.21). */
+    public static final int FUSE_DO_READDIRPLUS = (1 << 13);
+    /** The kernel chooses between READDIR and READDIRPLUS (protocol 7.21). */
+    public static final int FUSE_READDIRPLUS_AUTO = (1 << 14);
+    public static final int FUSE_MAX_PAGES = (1 << 22);
+    /** fuse_init_in and fuse_init_out carry flags2 (protocol 7.36). */
+    public static final int FUSE_INIT_EXT = (1 << 30);
+
+    /* INIT flags in flags2, i.e. shifted 32 bits to the right. */
+    /** Backing files for passthrough I/O (protocol 7.40). */
+    public static final int FUSE_PASSTHROUGH_FLAGS2 = (1 << (37 - 32));
+
+    /* Valid fields in fuse_setattr_in. */
+    public static final int FATTR_MODE = (1 << 0);
+    public static final int FATTR_UID = (1 << 1);
+    public static final int FATTR_GID = (1 << 2);
+    public static final int FATTR_SIZE = (1 << 3);
+    public static final int FATTR_ATIME = (1 << 4);
+    public static final int FATTR_MTIME = (1 << 5);
+    public static final int FATTR_FH = (1 << 6);
+    public static final int FATTR_ATIME_NOW = (1 << 7);
+    public static final int FATTR_MTIME_NOW = (1 << 8);
+    public static final int FATTR_LOCKOWNER = (1 << 9);
+
+    /* Flags in fuse_open_out. */
+    public static final int FOPEN_DIRECT_IO = (1 << 0);
+    public static final int FOPEN_KEEP_CACHE = (1 << 1);
+    public static final int FOPEN_PASSTHROUGH = (1 << 7);
+
+    /* Other request flags. */
+    public static final int FUSE_RELEASE_FLUSH = (1 << 0);
+    public static final int FUSE_GETATTR_FH = (1 << 0);
+    public static final int FUSE_FSYNC_FDATASYNC = (1 << 0);
+    public static final int FUSE_READ_LOCKOWNER = (1 << 1);
+
+    /* Structure sizes. */
+    public static final int FUSE_IN_HEADER_SIZE = 40;
+    public static final int FUSE_OUT_HEADER_SIZE = 16;
+    public static final int FUSE_ATTR_SIZE = 88;
+    public static final int FUSE_ENTRY_OUT_SIZE = 40 + FUSE_ATTR_SIZE;
+    public static final int FUSE_ATTR_OUT_SIZE = 16 + FUSE_ATTR_SIZE;
+    public static final int FUSE_OPEN_OUT_SIZE = 16;
+    public static final int FUSE_WRITE_OUT_SIZE = 8;
+    public static final int FUSE_STATFS_OUT_SIZE = 80;
+    public static final int FUSE_GETXATTR_OUT_SIZE = 8;
+    public static final int FUSE_LSEEK_OUT_SIZE = 8;
+    public static final int FUSE_INIT_OUT_SIZE = 64;
+    /** Size of fuse_init_out for protocol versions before 7.23. */
+    public static final int FUSE_COMPAT_22_INIT_OUT_SIZE = 24;
+    public static final int FUSE_DIRENT_HEADER_SIZE = 24;
+    public static final int FUSE_DIRENTPLUS_HEADER_SIZE =
+            FUSE_ENTRY_OUT_SIZE + FUSE_DIRENT_HEADER_SIZE;
+    public static final int FUSE_WRITE_IN_SIZE = 40;
+    public static final int FUSE_MKNOD_IN_SIZE = 16;
+    public static final int FUSE_CREATE_IN_SIZE = 16;
+    public static final int FUSE_SETXATTR_IN_SIZE = 8;
+    /**
+     * The stacking depth announced when enabling passthrough. 1 allows backing
+     * files on any file system except another stacked one.
+     */
+    public static final int FUSE_PASSTHROUGH_STACK_DEPTH = 1;
+
+    /**
+     * Room reserved for the request header and arguments in addition to the
+     * data of the largest write (FUSE_BUFFER_HEADER_SIZE in libfuse).
+     */
+    public static final int FUSE_BUFFER_HEADER_SIZE = 0x1000;
+
+    /** The smallest read buffer accepted by the kernel. */
+    public static final int FUSE_MIN_READ_BUFFER = 8192;
+}
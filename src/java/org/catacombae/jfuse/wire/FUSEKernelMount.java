@@ -0,0 +1,283 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import org.catacombae.jfuse.FUSEErrorValues;
+import org.catacombae.jfuse.JNILoader;
+import org.catacombae.jfuse.util.FUSEUtil;
+
+/**
+ * Mounts a file system on a FUSE device, the way libfuse does, so that a
+ * {@link FUSEKernelSession} can serve it (Linux only).<br>
+ * A privileged process mounts with mount(2), passing the descriptor of a newly
+ * opened <code>/dev/fuse</code> in the <code>fd=</code> option together with
+ * the <code>rootmode=</code>, <code>user_id=</code> and
+ * <code>group_id=</code> options that the kernel requires. If mount(2) is not
+ * permitted, the setuid <code>fusermount3</code> (or
+ * <code>fusermount</code>) program mounts instead and sends the descriptor of
+ * the new connection back over a socket named by the
+ * <code>_FUSE_COMMFD</code> environment variable.
+ * <p>
+ * Mount options are given as a comma separated list. The supported options
+ * are <code>ro</code>, <code>rw</code>, <code>nosuid</code>,
+ * <code>suid</code>, <code>nodev</code>, <code>dev</code>,
+ * <code>noexec</code>, <code>exec</code>, <code>sync</code>,
+ * <code>async</code>, <code>dirsync</code>, <code>noatime</code>,
+ * <code>atime</code>, <code>nodiratime</code>, <code>diratime</code>,
+ * <code>default_permissions</code>, <code>allow_other</code>,
+ * <code>max_read=N</code>, <code>fsname=NAME</code> (the source shown in
+ * the mount table, by default {@link #DEFAULT_FS_NAME}) and
+ * <code>subtype=TYPE</code> (which makes the file system type
+ * <code>fuse.TYPE</code>).
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelMount {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /** The FUSE device node. */
+    public static final File DEFAULT_DEVICE = new File("/dev/fuse");
+
+    /** The source shown in the mount table when no fsname is given. */
+    public static final String DEFAULT_FS_NAME = "jfuse";
+
+    private static final long MS_RDONLY = 1;
+    private static final long MS_NOSUID = 2;
+    private static final long MS_NODEV = 4;
+    private static final long MS_NOEXEC = 8;
+    private static final long MS_SYNCHRONOUS = 16;
+    private static final long MS_DIRSYNC = 128;
+    private static final long MS_NOATIME = 1024;
+    private static final long MS_NODIRATIME = 2048;
+
+    private static final String[] FLAG_OPTIONS = {
+        "ro", "nosuid", "nodev", "noexec", "sync", "dirsync", "noatime",
+        "nodiratime",
+    };
+    private static final String[] CLEAR_FLAG_OPTIONS = {
+        "rw", "suid", "dev", "exec", "async", null, "atime", "diratime",
+    };
+    private static final long[] FLAGS = {
+        MS_RDONLY, MS_NOSUID, MS_NODEV, MS_NOEXEC, MS_SYNCHRONOUS, MS_DIRSYNC,
+        MS_NOATIME, MS_NODIRATIME,
+    };
+
+    private final File mountPoint;
+    private final FUSEKernelChannel channel;
+    private final boolean mountedByFusermount;
+    private boolean mounted = true;
+
+    private FUSEKernelMount(File mountPoint, FUSEKernelChannel channel,
+            boolean mountedByFusermount) {
+        this.mountPoint = mountPoint;
+        this.channel = channel;
+        this.mountedByFusermount = mountedByFusermount;
+    }
+
+    /**
+     * Opens {@link #DEFAULT_DEVICE} and mounts its connection at
+     * <code>mountPoint</code>. The kernel sends INIT as the first request on
+     * the returned mount's channel, and accesses to the mountpoint block
+     * until it has been answered.
+     *
+     * @param mountPoint the directory (or file) to mount on.
+     * @param options the mount options as a comma separated list, or
+     * <code>null</code> for none.
+     * @param requestSize the request size of the channel, see
+     * {@link FUSEKernelChannel#openDevice(File, int)}.
+     * @return the mount.
+     * @throws IllegalArgumentException if an option is not supported.
+     * @throws IOException if the device could not be opened or the file
+     * system could not be mounted.
+     */
+    public static FUSEKernelMount mount(File mountPoint, String options,
+            int requestSize) throws IOException {
+        if(mountPoint == null)
+            throw new IllegalArgumentException("mountPoint == null");
+
+        String fsName = DEFAULT_FS_NAME;
+        String type = "fuse";
+        long flags = 0;
+        final StringBuilder kernelOptions = new StringBuilder();
+        final StringBuilder fusermountOptions = new StringBuilder();
+
+        if(options != null && options.length() != 0) {
+            for(String option : options.split(",")) {
+                if(option.length() == 0)
+                    continue;
+
+                if(option.startsWith("fsname=")) {
+                    fsName = option.substring("fsname=".length());
+                    continue;
+                }
+                else if(option.startsWith("subtype=")) {
+                    type = "fuse." + option.substring("subtype=".length());
+                }
+                else if(option.equals("default_permissions") ||
+                        option.equals("allow_other") ||
+                        option.startsWith("max_read="))
+                {
+                    append(kernelOptions, option);
+                }
+                else {
+                    final int flagIndex = indexOf(FLAG_OPTIONS, option);
+                    final int clearIndex = indexOf(CLEAR_FLAG_OPTIONS, option);
+                    if(flagIndex >= 0)
+                        flags |= FLAGS[flagIndex];
+                    else if(clearIndex >= 0)
+                        flags &= ~FLAGS[clearIndex];
+                    else {
+                        throw new IllegalArgumentException("Unsupported " +
+                                "mount option: \"" + option + "\"");
+                    }
+                }
+
+                append(fusermountOptions, option);
+            }
+        }
+
+        append(fusermountOptions, "fsname=" + fsName);
+
+        final String mountPointPath = mountPoint.getAbsolutePath();
+        final FileChannel fc =
+                new RandomAccessFile(DEFAULT_DEVICE, "rw").getChannel();
+        boolean success = false;
+        try {
+            final int deviceFd = FUSEUtil.getFileDescriptor(fc);
+            boolean mountedByFusermount = false;
+
+            int res = mountNative(deviceFd, fsName, mountPointPath, type, flags,
+                    kernelOptions.toString());
+            if(res == -FUSEErrorValues.EPERM) {
+                /* Unprivileged. fusermount replaces the device descriptor
+                 * with the one that it has mounted. */
+                res = fusermountNative(new String[] {
+                    "-o", fusermountOptions.toString(), "--", mountPointPath
+                }, deviceFd);
+                mountedByFusermount = true;
+            }
+
+            if(res < 0) {
+                throw new IOException("Could not mount at \"" +
+                        mountPointPath + "\" (errno " + -res + ").");
+            }
+
+            final FUSEKernelMount mount = new FUSEKernelMount(mountPoint,
+                    new FUSEKernelChannel(fc, fc, requestSize),
+                    mountedByFusermount);
+            success = true;
+            return mount;
+        } finally {
+            if(!success)
+                fc.close();
+        }
+    }
+
+    private static void append(StringBuilder sb, String option) {
+        if(sb.length() != 0)
+            sb.append(',');
+        sb.append(option);
+    }
+
+    private static int indexOf(String[] array, String s) {
+        for(int i = 0; i < array.length; ++i) {
+            if(s.equals(array[i]))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the channel to the mounted connection.
+     */
+    public FUSEKernelChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the mountpoint.
+     */
+    public File getMountPoint() {
+        return mountPoint;
+    }
+
+    /**
+     * Returns whether the file system was mounted by fusermount rather than
+     * with mount(2).
+     */
+    public boolean isMountedByFusermount() {
+        return mountedByFusermount;
+    }
+
+    /**
+     * Returns whether {@link #unmount()} has not yet been called.
+     */
+    public synchronized boolean isMounted() {
+        return mounted;
+    }
+
+    /**
+     * Detaches the file system from its mountpoint (lazily, like
+     * <code>umount -l</code>), in the same way that it was mounted, and
+     * closes the channel. Once the last reference to the file system is
+     * gone the kernel ends the connection, and a pending read on the channel
+     * fails.<br>
+     * Calling this method again has no effect.
+     *
+     * @throws IOException if the file system could not be unmounted.
+     */
+    public synchronized void unmount() throws IOException {
+        if(!mounted)
+            return;
+
+        final String mountPointPath = mountPoint.getAbsolutePath();
+        final int res;
+        if(mountedByFusermount) {
+            res = fusermountNative(new String[] {
+                "-u", "-z", "--", mountPointPath
+            }, -1);
+        }
+        else
+            res = unmountNative(mountPointPath, true);
+
+        /* EINVAL: no longer mounted, for instance after an umount from the
+         * outside. */
+        if(res < 0 && res != -FUSEErrorValues.EINVAL) {
+            throw new IOException("Could not unmount \"" + mountPointPath +
+                    "\" (errno " + -res + ").");
+        }
+
+        mounted = false;
+        channel.close();
+    }
+
+    private static native int mountNative(int deviceFd, String source,
+            String mountPoint, String type, long flags, String options);
+    private static native int unmountNative(String mountPoint, boolean lazy);
+    private static native int fusermountNative(String[] args, int targetFd);
+}
@@ -0,0 +1,85 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import org.catacombae.jfuse.JNILoader;
+
+/**
+ * Registers backing files with the kernel for FUSE passthrough (Linux 6.9 and
+ * later, protocol 7.40). A backing file registered on a FUSE device gets a
+ * backing ID, which an OPEN or CREATE reply can name together with
+ * {@link FUSEKernelConstants#FOPEN_PASSTHROUGH}. The kernel then serves reads,
+ * writes and mmap of the opened file from the backing file, without sending
+ * any requests for them.<br>
+ * The open file keeps its own reference to the backing file, so the backing
+ * ID can be closed as soon as the reply has been sent.
+ * <p>
+ * Registering a backing file requires CAP_SYS_ADMIN in the initial user
+ * namespace.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelPassthrough {
+    static {
+        JNILoader.ensureLoaded();
+    }
+
+    /**
+     * Registers the file open as <code>fd</code> as a backing file on the
+     * FUSE device open as <code>deviceFd</code>.
+     *
+     * @param deviceFd the descriptor of the FUSE device.
+     * @param fd the descriptor of the backing file.
+     * @return a positive backing ID, or a negated errno value if the
+     * registration failed.
+     */
+    public static int openBacking(int deviceFd, int fd) {
+        if(deviceFd < 0)
+            throw new IllegalArgumentException("Invalid deviceFd: " +
+                    deviceFd);
+        if(fd < 0)
+            throw new IllegalArgumentException("Invalid fd: " + fd);
+
+        return openBackingNative(deviceFd, fd);
+    }
+
+    /**
+     * Releases a backing ID obtained from {@link #openBacking(int, int)}.
+     *
+     * @param deviceFd the descriptor of the FUSE device.
+     * @param backingId the backing ID to release.
+     * @return 0 on success, or a negated errno value.
+     */
+    public static int closeBacking(int deviceFd, int backingId) {
+        if(deviceFd < 0)
+            throw new IllegalArgumentException("Invalid deviceFd: " +
+                    deviceFd);
+        if(backingId <= 0)
+            throw new IllegalArgumentException("Invalid backingId: " +
+                    backingId);
+
+        return closeBackingNative(deviceFd, backingId);
+    }
+
+    private static native int openBackingNative(int deviceFd, int fd);
+    private static native int closeBackingNative(int deviceFd, int backingId);
+
+    private FUSEKernelPassthrough() {}
+}
@@ -0,0 +1,276 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatVFS;
+
+/**
+ * Encodes replies to kernel requests and sends them through a
+ * {@link FUSEKernelChannel}. The <code>fuse_out_header</code> and the fixed
+ * size reply structures are encoded into reused buffers, and bulk data (read
+ * and readdir results) is sent from the caller's buffer with a gathering
+ * write, without copying it.<br>
+ * A reply object is not thread safe. Every request except FORGET,
+ * BATCH_FORGET and INTERRUPT must be answered with exactly one reply.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelReply implements FUSEKernelConstants {
+    /** Large enough for the largest fixed size reply (CREATE). */
+    private static final int ARGS_CAPACITY = 256;
+
+    private final FUSEKernelChannel channel;
+    private final ByteBuffer header;
+    private final ByteBuffer args;
+    private final ByteBuffer[] iov = new ByteBuffer[3];
+
+    public FUSEKernelReply(FUSEKernelChannel channel) {
+        this.channel = channel;
+        this.header = ByteBuffer.allocateDirect(FUSE_OUT_HEADER_SIZE);
+        this.header.order(ByteOrder.nativeOrder());
+        this.args = ByteBuffer.allocateDirect(ARGS_CAPACITY);
+        this.args.order(ByteOrder.nativeOrder());
+        this.iov[0] = header;
+    }
+
+    private void putHeader(long unique, int error, int payloadLength) {
+        header.clear();
+        header.putInt(FUSE_OUT_HEADER_SIZE + payloadLength);
+        header.putInt(error);
+        header.putLong(unique);
+        header.flip();
+    }
+
+    private ByteBuffer beginArgs(int size) {
+        args.clear();
+        for(int i = 0; i < size; i += 8)
+            args.putLong(i, 0);
+        args.limit(size);
+        return args;
+    }
+
+    private void sendArgs(long unique) throws IOException {
+        putHeader(unique, 0, args.remaining());
+        iov[1] = args;
+        channel.send(iov, 0, 2);
+    }
+
+    private static void putTimeout(ByteBuffer b, int secOff, int nsecOff,
+            double timeout) {
+        final long sec = (long) timeout;
+        b.putLong(secOff, sec);
+        b.putInt(nsecOff, (int) ((timeout - sec) * 1000000000.0));
+    }
+
+    /**
+     * Encodes <code>st</code> as a <code>struct fuse_attr</code> at offset
+     * <code>off</code> in <code>b</code>, with <code>ino</code> as its inode
+     * number.
+     */
+    public static void putAttr(ByteBuffer b, int off, long ino, Stat st) {
+        b.putLong(off + 0, ino);
+        b.putLong(off + 8, st.st_size);
+        b.putLong(off + 16, st.st_blocks);
+        b.putLong(off + 24, st.st_atimespec.sec);
+        b.putLong(off + 32, st.st_mtimespec.sec);
+        b.putLong(off + 40, st.st_ctimespec.sec);
+        b.putInt(off + 48, st.st_atimespec.nsec);
+        b.putInt(off + 52, st.st_mtimespec.nsec);
+        b.putInt(off + 56, st.st_ctimespec.nsec);
+        b.putInt(off + 60, (int) st.st_mode);
+        b.putInt(off + 64, (int) st.st_nlink);
+        b.putInt(off + 68, (int) st.st_uid);
+        b.putInt(off + 72, (int) st.st_gid);
+        b.putInt(off + 76, (int) st.st_rdev);
+        b.putInt(off + 80, (int) st.st_blocksize);
+        b.putInt(off + 84, 0);
+    }
+
+    /**
+     * Encodes a <code>struct fuse_entry_out</code> at offset <code>off</code>
+     * in <code>b</code>.
+     */
+    public static void putEntryOut(ByteBuffer b, int off, long nodeId,
+            long generation, Stat st, double entryTimeout,
+            double attrTimeout) {
+        b.putLong(off + 0, nodeId);
+        b.putLong(off + 8, generation);
+        putTimeout(b, off + 16, off + 32, entryTimeout);
+        putTimeout(b, off + 24, off + 36, attrTimeout);
+        putAttr(b, off + 40, nodeId, st);
+    }
+
+    private static void putOpenOut(ByteBuffer b, int off, long fh,
+            int openFlags, int backingId) {
+        b.putLong(off + 0, fh);
+        b.putInt(off + 8, openFlags);
+        b.putInt(off + 12, backingId);
+    }
+
+    /**
+     * Replies with <code>error</code> (0 or a negated errno value) and no
+     * arguments.
+     */
+    public void replyError(long unique, int error) throws IOException {
+        putHeader(unique, error, 0);
+        channel.send(iov, 0, 1);
+    }
+
+    /**
+     * Replies to LOOKUP, MKNOD, MKDIR, SYMLINK and LINK with a
+     * <code>fuse_entry_out</code>.
+     */
+    public void replyEntry(long unique, long nodeId, long generation,
+            Stat st, double entryTimeout, double attrTimeout)
+            throws IOException {
+        putEntryOut(beginArgs(FUSE_ENTRY_OUT_SIZE), 0, nodeId, generation, st,
+                entryTimeout, attrTimeout);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to CREATE with a <code>fuse_entry_out</code> followed by a
+     * <code>fuse_open_out</code>. <code>backingId</code> is only looked at by
+     * the kernel when <code>openFlags</code> contains
+     * {@link FUSEKernelConstants#FOPEN_PASSTHROUGH}.
+     */
+    public void replyCreate(long unique, long nodeId, long generation,
+            Stat st, double entryTimeout, double attrTimeout, long fh,
+            int openFlags, int backingId) throws IOException {
+        final ByteBuffer b =
+                beginArgs(FUSE_ENTRY_OUT_SIZE + FUSE_OPEN_OUT_SIZE);
+        putEntryOut(b, 0, nodeId, generation, st, entryTimeout, attrTimeout);
+        putOpenOut(b, FUSE_ENTRY_OUT_SIZE, fh, openFlags, backingId);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to GETATTR and SETATTR with a <code>fuse_attr_out</code>.
+     */
+    public void replyAttr(long unique, long ino, Stat st, double attrTimeout)
+            throws IOException {
+        final ByteBuffer b = beginArgs(FUSE_ATTR_OUT_SIZE);
+        putTimeout(b, 0, 8, attrTimeout);
+        putAttr(b, 16, ino, st);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to OPEN and OPENDIR with a <code>fuse_open_out</code>.
+     * <code>backingId</code> is only looked at by the kernel when
+     * <code>openFlags</code> contains
+     * {@link FUSEKernelConstants#FOPEN_PASSTHROUGH}.
+     */
+    public void replyOpen(long unique, long fh, int openFlags, int backingId)
+            throws IOException {
+        putOpenOut(beginArgs(FUSE_OPEN_OUT_SIZE), 0, fh, openFlags,
+                backingId);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to WRITE with a <code>fuse_write_out</code>.
+     */
+    public void replyWrite(long unique, int count) throws IOException {
+        beginArgs(FUSE_WRITE_OUT_SIZE).putInt(0, count);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to LSEEK with a <code>fuse_lseek_out</code>.
+     */
+    public void replyLseek(long unique, long offset) throws IOException {
+        beginArgs(FUSE_LSEEK_OUT_SIZE).putLong(0, offset);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to GETXATTR and LISTXATTR size queries with a
+     * <code>fuse_getxattr_out</code>.
+     */
+    public void replyXattrSize(long unique, int size) throws IOException {
+        beginArgs(FUSE_GETXATTR_OUT_SIZE).putInt(0, size);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to STATFS with a <code>fuse_statfs_out</code>.
+     */
+    public void replyStatfs(long unique, StatVFS st) throws IOException {
+        final ByteBuffer b = beginArgs(FUSE_STATFS_OUT_SIZE);
+        b.putLong(0, st.f_blocks);
+        b.putLong(8, st.f_bfree);
+        b.putLong(16, st.f_bavail);
+        b.putLong(24, st.f_files);
+        b.putLong(32, st.f_ffree);
+        b.putInt(40, (int) st.f_bsize);
+        b.putInt(44, (int) st.f_namemax);
+        b.putInt(48, (int) st.f_frsize);
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies to INIT with a <code>fuse_init_out</code> of the size
+     * appropriate for protocol minor version <code>minor</code>.
+     * <code>flags2</code> and <code>maxStackDepth</code> are only looked at
+     * by the kernel when <code>flags</code> contains
+     * {@link FUSEKernelConstants#FUSE_INIT_EXT}.
+     */
+    public void replyInit(long unique, int major, int minor, int maxReadahead,
+            int flags, int maxBackground, int congestionThreshold,
+            int maxWrite, int maxPages, int flags2, int maxStackDepth)
+            throws IOException {
+        final ByteBuffer b = beginArgs(minor < 23 ?
+                FUSE_COMPAT_22_INIT_OUT_SIZE : FUSE_INIT_OUT_SIZE);
+        b.putInt(0, major);
+        b.putInt(4, minor);
+        b.putInt(8, maxReadahead);
+        b.putInt(12, flags);
+        b.putShort(16, (short) maxBackground);
+        b.putShort(18, (short) congestionThreshold);
+        b.putInt(20, maxWrite);
+        if(minor >= 23) {
+            b.putInt(24, 1); /* time_gran */
+            b.putShort(28, (short) maxPages);
+            b.putInt(32, flags2);
+            b.putInt(36, maxStackDepth);
+        }
+        sendArgs(unique);
+    }
+
+    /**
+     * Replies with the bytes between the position and the limit of
+     * <code>data</code>, which are not copied. Used for READ, READDIR,
+     * READLINK, GETXATTR and LISTXATTR.
+     */
+    public void replyData(long unique, ByteBuffer data) throws IOException {
+        putHeader(unique, 0, data.remaining());
+        iov[1] = data;
+        try {
+            channel.send(iov, 0, 2);
+        } finally {
+            iov[1] = null;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoded view of one request from the kernel: the fields of its
+ * <code>fuse_in_header</code> and accessors for the opcode specific arguments
+ * that follow it. The arguments are read directly from the request buffer,
+ * without copying.<br>
+ * A request object is reused for any number of requests through
+ * {@link #set(java.nio.ByteBuffer)}.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelRequest {
+    private static final int OFFSET_LEN = 0;
+    private static final int OFFSET_OPCODE = 4;
+    private static final int OFFSET_UNIQUE = 8;
+    private static final int OFFSET_NODEID = 16;
+    private static final int OFFSET_UID = 24;
+    private static final int OFFSET_GID = 28;
+    private static final int OFFSET_PID = 32;
+
+    private ByteBuffer buffer = null;
+    private int length;
+    private int opcode;
+    private long unique;
+    private long nodeId;
+    private int uid;
+    private int gid;
+    private int pid;
+
+    /**
+     * Decodes the header of <code>request</code>, which must hold exactly one
+     * request in native byte order, starting at position 0 (as returned by
+     * {@link FUSEKernelChannel#receive()}).
+     *
+     * @throws IllegalArgumentException if the length of
+     * <code>request</code> doesn't match the length in its header.
+     */
+    public void set(ByteBuffer request) {
+        final int len = request.getInt(OFFSET_LEN);
+        if(len != request.limit()) {
+            throw new IllegalArgumentException("Length in header (" + len +
+                    ") doesn't match the request buffer (" + request.limit() +
+                    ").");
+        }
+
+        this.buffer = request;
+        this.length = len;
+        this.opcode = request.getInt(OFFSET_OPCODE);
+        this.unique = request.getLong(OFFSET_UNIQUE);
+        this.nodeId = request.getLong(OFFSET_NODEID);
+        this.uid = request.getInt(OFFSET_UID);
+        this.gid = request.getInt(OFFSET_GID);
+        this.pid = request.getInt(OFFSET_PID);
+    }
+
+    /** Returns the total length of the request, including the header. */
+    public int getLength() {
+        return length;
+    }
+
+    /** Returns the opcode of the request (one of the FUSE_* opcodes). */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /** Returns the unique ID that the reply must carry. */
+    public long getUnique() {
+        return unique;
+    }
+
+    /** Returns the node ID that the request applies to. */
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /** Returns the user ID of the calling process. */
+    public long getUid() {
+        return uid & 0xFFFFFFFFL;
+    }
+
+    /** Returns the group ID of the calling process. */
+    public long getGid() {
+        return gid & 0xFFFFFFFFL;
+    }
+
+    /** Returns the thread ID of the calling process. */
+    public long getPid() {
+        return pid & 0xFFFFFFFFL;
+    }
+
+    /** Returns the length of the arguments following the header. */
+    public int getArgsLength() {
+        return length - FUSEKernelConstants.FUSE_IN_HEADER_SIZE;
+    }
+
+    private int argsIndex(int off, int size) {
+        if(off < 0 || off + size > getArgsLength()) {
+            throw new IllegalArgumentException("Argument at " + off + " (" +
+                    size + " bytes) is outside the arguments of opcode " +
+                    opcode + " (" + getArgsLength() + " bytes).");
+        }
+
+        return FUSEKernelConstants.FUSE_IN_HEADER_SIZE + off;
+    }
+
+    /**
+     * Returns the 32-bit argument at offset <code>off</code> in the
+     * arguments.
+     */
+    public int getInt(int off) {
+        return buffer.getInt(argsIndex(off, 4));
+    }
+
+    /**
+     * Returns the 32-bit unsigned argument at offset <code>off</code> in the
+     * arguments.
+     */
+    public long getUnsignedInt(int off) {
+        return getInt(off) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the 64-bit argument at offset <code>off</code> in the
+     * arguments.
+     */
+    public long getLong(int off) {
+        return buffer.getLong(argsIndex(off, 8));
+    }
+
+    /**
+     * Returns a read-only view of <code>len</code> bytes of the arguments,
+     * starting at offset <code>off</code>.
+     */
+    public ByteBuffer getBytes(int off, int len) {
+        final int start = argsIndex(off, len);
+        final ByteBuffer dup = buffer.duplicate();
+        dup.limit(start + len);
+        dup.position(start);
+        return dup.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length of the NUL terminated string starting at offset
+     * <code>off</code> in the arguments, excluding the NUL.
+     *
+     * @throws IllegalArgumentException if the string isn't terminated within
+     * the request.
+     */
+    public int getStringLength(int off) {
+        final int start = argsIndex(off, 0);
+        for(int i = start; i < length; ++i) {
+            if(buffer.get(i) == 0)
+                return i - start;
+        }
+
+        throw new IllegalArgumentException("Unterminated string at " + off +
+                " in the arguments of opcode " + opcode + ".");
+    }
+
+    /**
+     * Returns a read-only view of the NUL terminated string starting at
+     * offset <code>off</code> in the arguments, excluding the NUL.
+     */
+    public ByteBuffer getString(int off) {
+        return getBytes(off, getStringLength(off));
+    }
+
+    /**
+     * Copies the NUL terminated string starting at offset <code>off</code> in
+     * the arguments, excluding the NUL, to a new array.
+     */
+    public byte[] getStringBytes(int off) {
+        final byte[] res = new byte[getStringLength(off)];
+        final ByteBuffer dup = buffer.duplicate();
+        dup.position(argsIndex(off, res.length));
+        dup.get(res);
+        return res;
+    }
+}
@@ -0,0 +1,1654 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse.wire;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.catacombae.jfuse.FUSE26Capabilities;
+import org.catacombae.jfuse.FUSE26FileSystem;
+import org.catacombae.jfuse.FUSE29Capabilities;
+import org.catacombae.jfuse.FUSE29FileSystem;
+import org.catacombae.jfuse.FUSEErrorValues;
+import org.catacombae.jfuse.types.fuse26.FUSEConnInfo;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDir;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDirBatch;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatBuffer;
+import org.catacombae.jfuse.types.system.StatVFS;
+import org.catacombae.jfuse.types.system.Timespec;
+import org.catacombae.jfuse.util.Log;
+
+/**
+ * Serves a {@link FUSE26FileSystem} by speaking the FUSE kernel protocol
+ * directly over a {@link FUSEKernelChannel}, without libfuse and without any
+ * JNI calls on the request path.<br>
+ * Like the high level API of libfuse, the session translates the node IDs
+ * used by the kernel into paths, keeping a table of the nodes that the kernel
+ * has looked up, and buffers the directory listings of file systems that fill
+ * directories without offsets.
+ * <p>
+ * Requests are processed one at a time by the thread calling {@link #loop()}
+ * (or {@link #process(java.nio.ByteBuffer)}), so the file system is called as
+ * if it was mounted single threaded. The argument objects passed to the file
+ * system are reused between requests. {@link org.catacombae.jfuse.FUSE#getContext()}
+ * is not available to file systems served this way.
+ * <p>
+ * If the file system also implements {@link FUSE29FileSystem}, its fallocate
+ * and lseek operations serve the FALLOCATE and LSEEK requests.
+ *
+ * @author Erik Larsson
+ */
+public class FUSEKernelSession implements FUSEKernelConstants {
+    /** The default maximum size of write requests. */
+    public static final int DEFAULT_MAX_WRITE = 128 * 1024;
+
+    /** The default cache timeout for names and attributes, in seconds. */
+    public static final double DEFAULT_TIMEOUT = 1.0;
+
+    private static final int PAGE_SIZE = 4096;
+    private static final int PATH_MAX = 4096;
+    private static final int S_IFMT = 0170000;
+
+    /** tv_nsec value telling utimens() to leave a time unchanged. */
+    private static final int UTIME_OMIT = (1 << 30) - 2;
+
+    private final FUSE26FileSystem fs;
+    private final FUSE26Capabilities caps;
+    private final FUSE29FileSystem fs29;
+    private final FUSE29Capabilities caps29;
+    private final FUSEKernelChannel channel;
+    private final FUSEKernelRequest req = new FUSEKernelRequest();
+    private final FUSEKernelReply reply;
+    private final int maxWrite;
+
+    private double entryTimeout = DEFAULT_TIMEOUT;
+    private double attrTimeout = DEFAULT_TIMEOUT;
+
+    private volatile boolean exited = false;
+    private boolean initialized = false;
+    private int protoMinor = 0;
+    private boolean passthroughAllowed = true;
+    private boolean passthroughEnabled = false;
+    private boolean readdirPlusAllowed = false;
+    private boolean readdirPlusEnabled = false;
+    private int deviceFd = -1;
+    private Object privateData = null;
+    private long requestCount = 0;
+    private FUSEKernelMount mount = null;
+
+    private final HashMap<Long, Node> nodesById = new HashMap<Long, Node>();
+    private final HashMap<NameKey, Node> nodesByName =
+            new HashMap<NameKey, Node>();
+    private long nextNodeId = FUSE_ROOT_ID + 1;
+
+    private final HashMap<Long, DirHandle> dirHandles =
+            new HashMap<Long, DirHandle>();
+    private long nextDirHandle = 1;
+
+    /* Argument objects, reused for every request. */
+    private final Stat stat = new Stat();
+    private final StatVFS statvfs = new StatVFS();
+    private final FUSEFileInfo fi = new FUSEFileInfo();
+    private final Timespec accessTime = new Timespec();
+    private final Timespec modificationTime = new Timespec();
+    private final DirFiller dirFiller = new DirFiller();
+    private final ByteBuffer[] pathBuffers = new ByteBuffer[2];
+    private final ByteBuffer[] pathViews = new ByteBuffer[2];
+    private ByteBuffer dataBuffer;
+
+    /**
+     * Creates a session serving <code>fs</code> over <code>channel</code>,
+     * accepting writes of up to {@link #DEFAULT_MAX_WRITE} bytes.
+     */
+    public FUSEKernelSession(FUSE26FileSystem fs, FUSEKernelChannel channel) {
+        this(fs, channel, DEFAULT_MAX_WRITE);
+    }
+
+    /**
+     * Creates a session serving <code>fs</code> over <code>channel</code>.
+     *
+     * @param fs the file system to serve.
+     * @param channel the channel to the kernel.
+     * @param maxWrite the largest write request to accept. The request size
+     * of <code>channel</code> must be at least <code>maxWrite</code> +
+     * {@link FUSEKernelConstants#FUSE_BUFFER_HEADER_SIZE}.
+     */
+    public FUSEKernelSession(FUSE26FileSystem fs, FUSEKernelChannel channel,
+            int maxWrite) {
+        if(fs == null)
+            throw new IllegalArgumentException("fs == null");
+        if(channel == null)
+            throw new IllegalArgumentException("channel == null");
+        if(maxWrite < PAGE_SIZE)
+            throw new IllegalArgumentException("maxWrite must be at least " +
+                    PAGE_SIZE);
+        if(channel.getRequestSize() < maxWrite + FUSE_BUFFER_HEADER_SIZE) {
+            throw new IllegalArgumentException("The request size of the " +
+                    "channel (" + channel.getRequestSize() + ") is too small " +
+                    "for maxWrite " + maxWrite + ".");
+        }
+
+        this.fs = fs;
+        this.caps = fs.getFUSECapabilities();
+        if(fs instanceof FUSE29FileSystem) {
+            this.fs29 = (FUSE29FileSystem) fs;
+            this.caps29 = fs29.getFUSE29Capabilities();
+        }
+        else {
+            this.fs29 = null;
+            this.caps29 = new FUSE29Capabilities();
+        }
+        this.channel = channel;
+        this.reply = new FUSEKernelReply(channel);
+        this.maxWrite = maxWrite;
+        this.dataBuffer = ByteBuffer.allocateDirect(maxWrite);
+
+        final Node root = new Node(FUSE_ROOT_ID, null, new byte[0]);
+        root.lookupCount = 1;
+        nodesById.put(root.id, root);
+    }
+
+    /**
+     * Mounts <code>fs</code> at <code>mountPoint</code> through
+     * {@link FUSEKernelMount} and returns a session serving it, accepting
+     * writes of up to {@link #DEFAULT_MAX_WRITE} bytes. The file system is
+     * served once {@link #loop()} is called, and is unmounted by
+     * {@link #unmount()}.
+     *
+     * @param fs the file system to serve.
+     * @param mountPoint the directory to mount on.
+     * @param options the mount options as a comma separated list (see
+     * {@link FUSEKernelMount}), or <code>null</code> for none.
+     * @return the session.
+     * @throws IOException if the file system could not be mounted.
+     */
+    public static FUSEKernelSession mount(FUSE26FileSystem fs,
+            File mountPoint, String options) throws IOException {
+        if(fs == null)
+            throw new IllegalArgumentException("fs == null");
+
+        final FUSEKernelMount mount = FUSEKernelMount.mount(mountPoint,
+                options, DEFAULT_MAX_WRITE + FUSE_BUFFER_HEADER_SIZE);
+        final FUSEKernelSession session =
+                new FUSEKernelSession(fs, mount.getChannel());
+        session.mount = mount;
+
+        return session;
+    }
+
+    /**
+     * Makes the session exit and unmounts its file system. {@link #loop()},
+     * if running, returns normally. Calling this method again has no effect.
+     *
+     * @throws IllegalStateException if the session was not created by
+     * {@link #mount(FUSE26FileSystem, File, String)}.
+     * @throws IOException if the file system could not be unmounted.
+     */
+    public void unmount() throws IOException {
+        if(mount == null) {
+            throw new IllegalStateException("The session was not created " +
+                    "by mount.");
+        }
+
+        exited = true;
+        mount.unmount();
+    }
+
+    /**
+     * Sets the time, in seconds, for which the kernel may cache names.
+     */
+    public void setEntryTimeout(double entryTimeout) {
+        if(entryTimeout < 0)
+            throw new IllegalArgumentException("Negative entryTimeout.");
+        this.entryTimeout = entryTimeout;
+    }
+
+    /**
+     * Sets the time, in seconds, for which the kernel may cache attributes.
+     */
+    public void setAttrTimeout(double attrTimeout) {
+        if(attrTimeout < 0)
+            throw new IllegalArgumentException("Negative attrTimeout.");
+        this.attrTimeout = attrTimeout;
+    }
+
+    /**
+     * Sets whether the session asks the kernel for FUSE passthrough in INIT.
+     * Allowed by default. Must be called before INIT is received.
+     *
+     * @see #isPassthroughEnabled()
+     */
+    public void setPassthroughAllowed(boolean passthroughAllowed) {
+        this.passthroughAllowed = passthroughAllowed;
+    }
+
+    /**
+     * Returns whether kernel passthrough is in use. When it is, the backing
+     * file that the file system names in
+     * {@link FUSEFileInfo#backing_fd} when opening or creating a file is
+     * registered with the kernel, which then serves reads and writes of that
+     * file from the backing file without sending requests.<br>
+     * Passthrough is enabled in INIT if the kernel offers it (protocol 7.40
+     * and later), the channel is a FUSE device and it hasn't been disallowed.
+     * It is disabled again if registering a backing file fails for a reason
+     * other than a bad descriptor, typically because the process lacks
+     * CAP_SYS_ADMIN. Without passthrough, files are served through the file
+     * system's read and write operations whether or not they have a backing
+     * file.
+     *
+     * @return whether backing files are handed to the kernel.
+     */
+    public boolean isPassthroughEnabled() {
+        return passthroughEnabled;
+    }
+
+    /**
+     * Sets whether the session asks the kernel for READDIRPLUS requests in
+     * INIT. Disallowed by default, since only file systems that add entries
+     * with {@link FUSEFillDir#fillPlus(byte[], Stat, double, double, long)}
+     * benefit from them, and the larger directory entries would only cost
+     * others extra round trips. Must be called before INIT is received.
+     *
+     * @see #isReaddirPlusEnabled()
+     */
+    public void setReaddirPlusAllowed(boolean readdirPlusAllowed) {
+        this.readdirPlusAllowed = readdirPlusAllowed;
+    }
+
+    /**
+     * Returns whether the kernel may send READDIRPLUS requests. Entries added
+     * with {@link FUSEFillDir#fillPlus(byte[], Stat, double, double, long)}
+     * are then returned to the kernel with their attributes and count as
+     * looked up, so listing a directory populates the kernel's name and
+     * attribute caches without a LOOKUP per entry. Entries added with
+     * <code>fill</code> are returned without attributes, as in READDIR.<br>
+     * READDIRPLUS is enabled in INIT if it has been allowed, the kernel offers
+     * it and the file system implements readdir. If the kernel also offers
+     * adaptive readdirplus, it is accepted, and the kernel then sends
+     * READDIRPLUS only for listings that are followed by lookups.
+     *
+     * @return whether READDIRPLUS has been negotiated.
+     */
+    public boolean isReaddirPlusEnabled() {
+        return readdirPlusEnabled;
+    }
+
+    /**
+     * Returns the negotiated minor version of the kernel protocol, or 0 if
+     * the INIT request hasn't been received yet.
+     */
+    public int getProtocolMinorVersion() {
+        return protoMinor;
+    }
+
+    /**
+     * Returns the number of requests processed so far.
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of nodes that the kernel currently holds references
+     * to, including the root.
+     */
+    public int getNodeCount() {
+        return nodesById.size();
+    }
+
+    /**
+     * Returns whether the session has exited, either because the kernel sent
+     * DESTROY or because {@link #exit()} was called.
+     */
+    public boolean isExited() {
+        return exited;
+    }
+
+    /**
+     * Makes {@link #loop()} return after the request that it is currently
+     * processing.
+     */
+    public void exit() {
+        exited = true;
+    }
+
+    /**
+     * Receives and processes requests until the session exits or the channel
+     * reaches end of stream.
+     *
+     * @throws IOException if receiving a request or sending a reply fails,
+     * which includes the file system being unmounted by other means than
+     * {@link #unmount()}.
+     */
+    public void loop() throws IOException {
+        while(!exited) {
+            final ByteBuffer request;
+            try {
+                request = channel.receive();
+            } catch(IOException e) {
+                /* unmount() ends the connection under a pending read. */
+                if(exited)
+                    break;
+                throw e;
+            }
+
+            if(request == null)
+                break;
+
+            process(request);
+        }
+    }
+
+    /**
+     * Processes one request, as returned by
+     * {@link FUSEKernelChannel#receive()}, and sends its reply.
+     *
+     * @throws IOException if sending the reply fails.
+     */
+    public void process(ByteBuffer request) throws IOException {
+        req.set(request);
+        ++requestCount;
+
+        final int opcode = req.getOpcode();
+        final long unique = req.getUnique();
+
+        if(!initialized && opcode != FUSE_INIT) {
+            Log.error("FUSEKernelSession: Request " + opcode + " received " +
+                    "before INIT.");
+            reply.replyError(unique, -FUSEErrorValues.EIO);
+            return;
+        }
+
+        int res;
+        try {
+            res = dispatch(opcode, unique);
+        } catch(RuntimeException e) {
+            Log.error("FUSEKernelSession: Operation " + opcode + " threw " +
+                    "exception: " + e);
+            res = -FUSEErrorValues.EIO;
+        }
+
+        /* Operations that have replied (or don't reply) return 1. */
+        if(res <= 0)
+            reply.replyError(unique, res);
+    }
+
+    /**
+     * Processes the current request.
+     *
+     * @return 1 if the request has been replied to or takes no reply,
+     * otherwise 0 or a negated error value to reply with.
+     */
+    private int dispatch(int opcode, long unique) throws IOException {
+        switch(opcode) {
+            case FUSE_INIT:
+                return init(unique);
+            case FUSE_DESTROY:
+                return destroy();
+            case FUSE_LOOKUP:
+                return lookup(unique);
+            case FUSE_FORGET:
+                forget(req.getNodeId(), req.getLong(0));
+                return 1;
+            case FUSE_BATCH_FORGET:
+                return batchForget();
+            case FUSE_GETATTR:
+                return getattr(unique);
+            case FUSE_SETATTR:
+                return setattr(unique);
+            case FUSE_READLINK:
+                return readlink(unique);
+            case FUSE_SYMLINK:
+                return symlink(unique);
+            case FUSE_MKNOD:
+                return mknod(unique);
+            case FUSE_MKDIR:
+                return mkdir(unique);
+            case FUSE_UNLINK:
+                return remove(false);
+            case FUSE_RMDIR:
+                return remove(true);
+            case FUSE_RENAME:
+                return rename(req.getLong(0), 8);
+            case FUSE_RENAME2:
+                if(req.getInt(8) != 0)
+                    return -FUSEErrorValues.EINVAL;
+                return rename(req.getLong(0), 16);
+            case FUSE_LINK:
+                return link(unique);
+            case FUSE_OPEN:
+                return open(unique);
+            case FUSE_READ:
+                return read(unique);
+            case FUSE_WRITE:
+                return write(unique);
+            case FUSE_STATFS:
+                return statfs(unique);
+            case FUSE_RELEASE:
+                return release();
+            case FUSE_FSYNC:
+                return fsync();
+            case FUSE_FLUSH:
+                return flush();
+            case FUSE_FALLOCATE:
+                return fallocate();
+            case FUSE_LSEEK:
+                return lseek(unique);
+            case FUSE_SETXATTR:
+                return setxattr();
+            case FUSE_GETXATTR:
+                return getxattr(unique);
+            case FUSE_LISTXATTR:
+                return listxattr(unique);
+            case FUSE_REMOVEXATTR:
+                return removexattr();
+            case FUSE_OPENDIR:
+                return opendir(unique);
+            case FUSE_READDIR:
+                return readdir(unique, false);
+            case FUSE_READDIRPLUS:
+                if(!readdirPlusEnabled)
+                    return -FUSEErrorValues.ENOSYS;
+                return readdir(unique, true);
+            case FUSE_RELEASEDIR:
+                return releasedir();
+            case FUSE_FSYNCDIR:
+                return fsyncdir();
+            case FUSE_ACCESS:
+                return access();
+            case FUSE_CREATE:
+                return create(unique);
+            case FUSE_INTERRUPT:
+                /* Requests are processed one at a time, so the interrupted
+                 * request has already been answered. */
+                return 1;
+            default:
+                return -FUSEErrorValues.ENOSYS;
+        }
+    }
+
+    private int init(long unique) throws IOException {
+        final int major = req.getInt(0);
+        final int minor = req.getInt(4);
+        final int maxReadahead = req.getInt(8);
+        final int flags = req.getInt(12);
+
+        if(major > FUSE_KERNEL_VERSION) {
+            /* The kernel will send a new INIT with our major version. */
+            reply.replyInit(unique, FUSE_KERNEL_VERSION,
+                    FUSE_KERNEL_MINOR_VERSION, 0, 0, 0, 0, 0, 0, 0, 0);
+            return 1;
+        }
+        else if(major < FUSE_KERNEL_VERSION ||
+                minor < FUSE_KERNEL_MINOR_VERSION_MIN) {
+            Log.error("FUSEKernelSession: Unsupported kernel protocol " +
+                    "version " + major + "." + minor + ".");
+            exited = true;
+            return -FUSEErrorValues.EPROTO;
+        }
+
+        protoMinor = Math.min(minor, FUSE_KERNEL_MINOR_VERSION);
+        final int flags2 = (flags & FUSE_INIT_EXT) != 0 ? req.getInt(16) : 0;
+
+        final FUSEConnInfo conn = new FUSEConnInfo();
+        conn.proto_major = FUSE_KERNEL_VERSION;
+        conn.proto_minor = protoMinor;
+        conn.async_read = (flags & FUSE_ASYNC_READ) != 0;
+        conn.max_write = maxWrite;
+        conn.max_readahead = maxReadahead & 0xFFFFFFFFL;
+
+        if(caps.init)
+            privateData = fs.init(conn);
+
+        final int negotiatedMaxWrite =
+                (int) Math.max(PAGE_SIZE, Math.min(conn.max_write, maxWrite));
+        int outFlags = flags & (FUSE_BIG_WRITES | FUSE_MAX_PAGES);
+        if(conn.async_read)
+            outFlags |= (flags & FUSE_ASYNC_READ);
+        if(readdirPlusAllowed && caps.readdir &&
+                (flags & FUSE_DO_READDIRPLUS) != 0) {
+            readdirPlusEnabled = true;
+            outFlags |= (flags &
+                    (FUSE_DO_READDIRPLUS | FUSE_READDIRPLUS_AUTO));
+        }
+
+        int outFlags2 = 0;
+        if(passthroughAllowed && (flags2 & FUSE_PASSTHROUGH_FLAGS2) != 0) {
+            deviceFd = channel.getDeviceFileDescriptor();
+            if(deviceFd >= 0) {
+                passthroughEnabled = true;
+                outFlags2 |= FUSE_PASSTHROUGH_FLAGS2;
+            }
+        }
+        if(outFlags2 != 0)
+            outFlags |= FUSE_INIT_EXT;
+
+        reply.replyInit(unique, FUSE_KERNEL_VERSION, protoMinor,
+                (int) Math.min(conn.max_readahead, maxReadahead & 0xFFFFFFFFL),
+                outFlags, 0, 0, negotiatedMaxWrite,
+                (negotiatedMaxWrite + PAGE_SIZE - 1) / PAGE_SIZE, outFlags2,
+                passthroughEnabled ? FUSE_PASSTHROUGH_STACK_DEPTH : 0);
+        initialized = true;
+        return 1;
+    }
+
+    private int destroy() {
+        if(caps.destroy)
+            fs.destroy(privateData);
+        exited = true;
+        return 0;
+    }
+
+    private int lookup(long unique) throws IOException {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer path = childPath(0, parent, req.getString(0));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        return replyEntry(unique, parent, req.getStringBytes(0), path);
+    }
+
+    /**
+     * Replies to a request creating or looking up the entry
+     * <code>name</code> in <code>parent</code> with the attributes of the
+     * file at <code>path</code>, and adds a reference to its node.
+     */
+    private int replyEntry(long unique, Node parent, byte[] name,
+            ByteBuffer path) throws IOException {
+        if(!caps.getattr)
+            return -FUSEErrorValues.ENOSYS;
+
+        stat.zero();
+        final int res = fs.getattr(path, stat);
+        if(res != 0)
+            return res;
+
+        final Node node = lookupNode(parent, name);
+        ++node.lookupCount;
+        reply.replyEntry(unique, node.id, 0, stat, entryTimeout, attrTimeout);
+        return 1;
+    }
+
+    private void forget(long nodeId, long count) {
+        final Node node = nodesById.get(nodeId);
+        if(node == null || nodeId == FUSE_ROOT_ID)
+            return;
+
+        node.lookupCount -= count;
+        if(node.lookupCount <= 0) {
+            nodesById.remove(nodeId);
+            if(node.parent != null)
+                nodesByName.remove(new NameKey(node.parent.id, node.name));
+        }
+    }
+
+    private int batchForget() {
+        final int count = req.getInt(0);
+        for(int i = 0; i < count; ++i)
+            forget(req.getLong(8 + i * 16), req.getLong(8 + i * 16 + 8));
+        return 1;
+    }
+
+    private int getattr(long unique) throws IOException {
+        final long ino = req.getNodeId();
+        final ByteBuffer path = path(0, nodesById.get(ino));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        final int getattrFlags = req.getInt(0);
+
+        stat.zero();
+        final int res;
+        if((getattrFlags & FUSE_GETATTR_FH) != 0 && caps.fgetattr)
+            res = fs.fgetattr(path, stat, fileInfo(0, req.getLong(8)));
+        else if(caps.getattr)
+            res = fs.getattr(path, stat);
+        else
+            res = -FUSEErrorValues.ENOSYS;
+        if(res != 0)
+            return res;
+
+        reply.replyAttr(unique, ino, stat, attrTimeout);
+        return 1;
+    }
+
+    private int setattr(long unique) throws IOException {
+        final long ino = req.getNodeId();
+        final ByteBuffer path = path(0, nodesById.get(ino));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        final int valid = req.getInt(0);
+        final long fh = req.getLong(8);
+        int res = 0;
+
+        if((valid & FATTR_MODE) != 0) {
+            res = caps.chmod ?
+                fs.chmod(path, (short) req.getInt(68)) :
+                -FUSEErrorValues.ENOSYS;
+        }
+
+        if(res == 0 && (valid & (FATTR_UID | FATTR_GID)) != 0) {
+            final long uid = ((valid & FATTR_UID) != 0 ?
+                req.getUnsignedInt(76) : 0xFFFFFFFFL);
+            final long gid = ((valid & FATTR_GID) != 0 ?
+                req.getUnsignedInt(80) : 0xFFFFFFFFL);
+            res = caps.chown ?
+                fs.chown(path, uid, gid) : -FUSEErrorValues.ENOSYS;
+        }
+
+        if(res == 0 && (valid & FATTR_SIZE) != 0) {
+            final long size = req.getLong(16);
+            if((valid & FATTR_FH) != 0 && caps.ftruncate)
+                res = fs.ftruncate(path, size, fileInfo(0, fh));
+            else if(caps.truncate)
+                res = fs.truncate(path, size);
+            else
+                res = -FUSEErrorValues.ENOSYS;
+        }
+
+        if(res == 0 && (valid & (FATTR_ATIME | FATTR_MTIME)) != 0) {
+            setTime(accessTime, valid, FATTR_ATIME, FATTR_ATIME_NOW,
+                    req.getLong(32), req.getInt(56));
+            setTime(modificationTime, valid, FATTR_MTIME, FATTR_MTIME_NOW,
+                    req.getLong(40), req.getInt(60));
+            res = caps.utimens ?
+                fs.utimens(path, accessTime, modificationTime) :
+                -FUSEErrorValues.ENOSYS;
+        }
+
+        if(res != 0)
+            return res;
+
+        stat.zero();
+        if((valid & FATTR_FH) != 0 && caps.fgetattr)
+            res = fs.fgetattr(path, stat, fileInfo(0, fh));
+        else if(caps.getattr)
+            res = fs.getattr(path, stat);
+        else
+            res = -FUSEErrorValues.ENOSYS;
+        if(res != 0)
+            return res;
+
+        reply.replyAttr(unique, ino, stat, attrTimeout);
+        return 1;
+    }
+
+    private static void setTime(Timespec ts, int valid, int setFlag,
+            int nowFlag, long sec, int nsec) {
+        if((valid & setFlag) == 0) {
+            ts.sec = 0;
+            ts.nsec = UTIME_OMIT;
+        }
+        else if((valid & nowFlag) != 0) {
+            final long now = System.currentTimeMillis();
+            ts.sec = (int) (now / 1000);
+            ts.nsec = (int) (now % 1000) * 1000000;
+        }
+        else {
+            ts.sec = (int) sec;
+            ts.nsec = nsec;
+        }
+    }
+
+    private int readlink(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.readlink)
+            return -FUSEErrorValues.ENOSYS;
+
+        final ByteBuffer target = dataBuffer(PATH_MAX + 1);
+        final int res = fs.readlink(path, target);
+        if(res != 0)
+            return res;
+
+        int len = 0;
+        while(len < PATH_MAX && target.get(len) != 0)
+            ++len;
+        target.limit(len);
+        target.position(0);
+
+        reply.replyData(unique, target);
+        return 1;
+    }
+
+    private int symlink(long unique) throws IOException {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer name = req.getString(0);
+        final ByteBuffer path = childPath(0, parent, name);
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.symlink)
+            return -FUSEErrorValues.ENOSYS;
+
+        final ByteBuffer linkName = req.getString(name.remaining() + 1);
+        final int res = fs.symlink(linkName, path);
+        if(res != 0)
+            return res;
+
+        return replyEntry(unique, parent, req.getStringBytes(0), path);
+    }
+
+    private int mknod(long unique) throws IOException {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer path =
+                childPath(0, parent, req.getString(FUSE_MKNOD_IN_SIZE));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.mknod)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int res = fs.mknod(path, (short) req.getInt(0),
+                req.getUnsignedInt(4));
+        if(res != 0)
+            return res;
+
+        return replyEntry(unique, parent,
+                req.getStringBytes(FUSE_MKNOD_IN_SIZE), path);
+    }
+
+    private int mkdir(long unique) throws IOException {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer path = childPath(0, parent, req.getString(8));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.mkdir)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int res = fs.mkdir(path, (short) req.getInt(0));
+        if(res != 0)
+            return res;
+
+        return replyEntry(unique, parent, req.getStringBytes(8), path);
+    }
+
+    private int remove(boolean directory) {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer path = childPath(0, parent, req.getString(0));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        final int res;
+        if(directory)
+            res = caps.rmdir ? fs.rmdir(path) : -FUSEErrorValues.ENOSYS;
+        else
+            res = caps.unlink ? fs.unlink(path) : -FUSEErrorValues.ENOSYS;
+
+        if(res == 0)
+            detachNode(parent, req.getStringBytes(0));
+        return res;
+    }
+
+    private int rename(long newDirId, int namesOff) {
+        final Node oldParent = nodesById.get(req.getNodeId());
+        final Node newParent = nodesById.get(newDirId);
+        final ByteBuffer oldName = req.getString(namesOff);
+        final int newNameOff = namesOff + oldName.remaining() + 1;
+        final ByteBuffer oldPath = childPath(0, oldParent, oldName);
+        final ByteBuffer newPath =
+                childPath(1, newParent, req.getString(newNameOff));
+        if(oldPath == null || newPath == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.rename)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int res = fs.rename(oldPath, newPath);
+        if(res == 0) {
+            final byte[] newName = req.getStringBytes(newNameOff);
+            final Node moved = nodesByName.remove(
+                    new NameKey(oldParent.id, req.getStringBytes(namesOff)));
+
+            detachNode(newParent, newName);
+            if(moved != null) {
+                moved.parent = newParent;
+                moved.name = newName;
+                nodesByName.put(new NameKey(newParent.id, newName), moved);
+            }
+        }
+
+        return res;
+    }
+
+    private int link(long unique) throws IOException {
+        final ByteBuffer oldPath = path(0, nodesById.get(req.getLong(0)));
+        final Node newParent = nodesById.get(req.getNodeId());
+        final ByteBuffer newPath = childPath(1, newParent, req.getString(8));
+        if(oldPath == null || newPath == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.link)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int res = fs.link(oldPath, newPath);
+        if(res != 0)
+            return res;
+
+        return replyEntry(unique, newParent, req.getStringBytes(8), newPath);
+    }
+
+    private int open(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        final FUSEFileInfo info = fileInfo(req.getInt(0), 0);
+        if(caps.open) {
+            final int res = fs.open(path, info);
+            if(res != 0)
+                return res;
+        }
+
+        final int backingId = openBacking(info);
+        reply.replyOpen(unique, info.fh, openFlags(info, backingId),
+                backingId);
+        closeBacking(backingId);
+        return 1;
+    }
+
+    private int read(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.read)
+            return -FUSEErrorValues.ENOSYS;
+
+        final long fh = req.getLong(0);
+        final long offset = req.getLong(8);
+        final int size = req.getInt(16);
+        final FUSEFileInfo info = fileInfo(req.getInt(32), fh);
+        if((req.getInt(20) & FUSE_READ_LOCKOWNER) != 0)
+            info.lock_owner = req.getLong(24);
+
+        final ByteBuffer dest = dataBuffer(size);
+        final int res = fs.read(path, dest, offset, info);
+        if(res < 0)
+            return res;
+
+        dest.limit(Math.min(res, size));
+        dest.position(0);
+        reply.replyData(unique, dest);
+        return 1;
+    }
+
+    private int write(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.write)
+            return -FUSEErrorValues.ENOSYS;
+
+        final long fh = req.getLong(0);
+        final long offset = req.getLong(8);
+        final int size = req.getInt(16);
+        final FUSEFileInfo info = fileInfo(req.getInt(32), fh);
+        info.writepage = req.getInt(20) & 1;
+        info.lock_owner = req.getLong(24);
+
+        final int res = fs.write(path, req.getBytes(FUSE_WRITE_IN_SIZE, size),
+                offset, info);
+        if(res < 0)
+            return res;
+
+        reply.replyWrite(unique, res);
+        return 1;
+    }
+
+    private int statfs(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        statvfs.zero();
+        if(caps.statfs) {
+            final int res = fs.statfs(path, statvfs);
+            if(res != 0)
+                return res;
+        }
+        else {
+            statvfs.f_namemax = 255;
+            statvfs.f_bsize = 512;
+        }
+
+        reply.replyStatfs(unique, statvfs);
+        return 1;
+    }
+
+    private int release() {
+        /* Released files may have been removed, so a missing path is passed
+         * on as null rather than failing the release. */
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        final FUSEFileInfo info = fileInfo(req.getInt(8), req.getLong(0));
+        info.flush = (req.getInt(12) & FUSE_RELEASE_FLUSH) != 0;
+        info.lock_owner = req.getLong(16);
+
+        if(caps.release)
+            fs.release(path, info);
+        return 0;
+    }
+
+    private int fsync() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.fsync)
+            return -FUSEErrorValues.ENOSYS;
+
+        return fs.fsync(path, (req.getInt(8) & FUSE_FSYNC_FDATASYNC) != 0,
+                fileInfo(0, req.getLong(0)));
+    }
+
+    private int flush() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.flush)
+            return -FUSEErrorValues.ENOSYS;
+
+        final FUSEFileInfo info = fileInfo(0, req.getLong(0));
+        info.lock_owner = req.getLong(16);
+        return fs.flush(path, info);
+    }
+
+    private int fallocate() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps29.fallocate)
+            return -FUSEErrorValues.ENOSYS;
+
+        return fs29.fallocate(path, req.getInt(24), req.getLong(8),
+                req.getLong(16), fileInfo(0, req.getLong(0)));
+    }
+
+    private int lseek(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        /* On ENOSYS the kernel stops sending LSEEK and treats the whole file
+         * as data. */
+        if(!caps29.lseek)
+            return -FUSEErrorValues.ENOSYS;
+
+        final long res = fs29.lseek(path, req.getLong(8), req.getInt(16),
+                fileInfo(0, req.getLong(0)));
+        if(res < 0)
+            return (int) res;
+
+        reply.replyLseek(unique, res);
+        return 1;
+    }
+
+    private int setxattr() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.setxattr && !caps.setxattr_BSD)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int size = req.getInt(0);
+        final ByteBuffer name = req.getString(FUSE_SETXATTR_IN_SIZE);
+        final ByteBuffer value = req.getBytes(
+                FUSE_SETXATTR_IN_SIZE + name.remaining() + 1, size);
+        return fs.setxattr(path, name, value, req.getInt(4), 0);
+    }
+
+    private int getxattr(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.getxattr && !caps.getxattr_BSD)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int size = req.getInt(0);
+        final ByteBuffer value = (size != 0 ? dataBuffer(size) : null);
+        final int res = fs.getxattr(path, req.getString(8), value, 0);
+        return replyXattr(unique, size, value, res);
+    }
+
+    private int listxattr(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.listxattr)
+            return -FUSEErrorValues.ENOSYS;
+
+        final int size = req.getInt(0);
+        final ByteBuffer names = (size != 0 ? dataBuffer(size) : null);
+        final int res = fs.listxattr(path, names);
+        return replyXattr(unique, size, names, res);
+    }
+
+    /**
+     * Replies to GETXATTR or LISTXATTR with the size of the result when the
+     * kernel asked for the size only, and with the result otherwise.
+     */
+    private int replyXattr(long unique, int size, ByteBuffer buffer,
+            int res) throws IOException {
+        if(res < 0)
+            return res;
+
+        if(buffer == null)
+            reply.replyXattrSize(unique, res);
+        else if(res > size)
+            return -FUSEErrorValues.ERANGE;
+        else {
+            buffer.limit(res);
+            buffer.position(0);
+            reply.replyData(unique, buffer);
+        }
+
+        return 1;
+    }
+
+    private int removexattr() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.removexattr)
+            return -FUSEErrorValues.ENOSYS;
+
+        return fs.removexattr(path, req.getString(0));
+    }
+
+    private int opendir(long unique) throws IOException {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+
+        final FUSEFileInfo info = fileInfo(req.getInt(0), 0);
+        if(caps.opendir) {
+            final int res = fs.opendir(path, info);
+            if(res != 0)
+                return res;
+        }
+
+        final long handle = nextDirHandle++;
+        dirHandles.put(handle, new DirHandle(info.fh));
+        reply.replyOpen(unique, handle, openFlags(info, 0), 0);
+        return 1;
+    }
+
+    private int readdir(long unique, boolean plus) throws IOException {
+        final DirHandle dh = dirHandles.get(req.getLong(0));
+        if(dh == null)
+            return -FUSEErrorValues.EBADF;
+
+        final Node dir = nodesById.get(req.getNodeId());
+        final long offset = req.getLong(8);
+        final ByteBuffer dest = dataBuffer(req.getInt(16));
+
+        if(offset == 0 || !dh.filled) {
+            final ByteBuffer path = path(0, dir);
+            if(path == null)
+                return -FUSEErrorValues.ENOENT;
+            if(!caps.readdir)
+                return -FUSEErrorValues.ENOSYS;
+
+            dh.entries.clear();
+            dh.filled = false;
+            dirFiller.begin(dh, dest, plus ? dir : null);
+            final int res;
+            try {
+                res = fs.readdir(path, dirFiller, offset,
+                        fileInfo(0, dh.fh));
+            } finally {
+                dirFiller.end();
+            }
+            if(res != 0)
+                return res;
+
+            /* Entries filled without offsets are buffered and served from
+             * the handle, like libfuse does. */
+            dh.filled = !dirFiller.streamed;
+        }
+
+        if(dh.filled) {
+            for(long i = offset; i < dh.entries.size(); ++i) {
+                final DirEntry e = dh.entries.get((int) i);
+                final boolean added;
+                if(plus) {
+                    added = putDirentPlus(dest, dir, e.name, e.type, i + 1,
+                            e.stat, e.entryTimeout, e.attrTimeout);
+                }
+                else
+                    added = putDirent(dest, e.name, e.type, i + 1);
+                if(!added)
+                    break;
+            }
+        }
+
+        dest.flip();
+        reply.replyData(unique, dest);
+        return 1;
+    }
+
+    private int releasedir() {
+        final DirHandle dh = dirHandles.remove(req.getLong(0));
+        if(dh == null)
+            return -FUSEErrorValues.EBADF;
+
+        if(caps.releasedir) {
+            fs.releasedir(path(0, nodesById.get(req.getNodeId())),
+                    fileInfo(req.getInt(8), dh.fh));
+        }
+        return 0;
+    }
+
+    private int fsyncdir() {
+        final DirHandle dh = dirHandles.get(req.getLong(0));
+        if(dh == null)
+            return -FUSEErrorValues.EBADF;
+
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.fsyncdir)
+            return -FUSEErrorValues.ENOSYS;
+
+        return fs.fsyncdir(path, (req.getInt(8) & FUSE_FSYNC_FDATASYNC) != 0,
+                fileInfo(0, dh.fh));
+    }
+
+    private int access() {
+        final ByteBuffer path = path(0, nodesById.get(req.getNodeId()));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.access)
+            return -FUSEErrorValues.ENOSYS;
+
+        return fs.access(path, req.getInt(0));
+    }
+
+    private int create(long unique) throws IOException {
+        final Node parent = nodesById.get(req.getNodeId());
+        final ByteBuffer path =
+                childPath(0, parent, req.getString(FUSE_CREATE_IN_SIZE));
+        if(path == null)
+            return -FUSEErrorValues.ENOENT;
+        if(!caps.create)
+            return -FUSEErrorValues.ENOSYS;
+
+        final FUSEFileInfo info = fileInfo(req.getInt(0), 0);
+        int res = fs.create(path, (short) req.getInt(4), info);
+        if(res != 0)
+            return res;
+
+        stat.zero();
+        if(caps.fgetattr)
+            res = fs.fgetattr(path, stat, info);
+        else if(caps.getattr)
+            res = fs.getattr(path, stat);
+        else
+            res = -FUSEErrorValues.ENOSYS;
+
+        if(res != 0) {
+            if(caps.release)
+                fs.release(path, info);
+            return res;
+        }
+
+        final Node node =
+                lookupNode(parent, req.getStringBytes(FUSE_CREATE_IN_SIZE));
+        ++node.lookupCount;
+        final int backingId = openBacking(info);
+        reply.replyCreate(unique, node.id, 0, stat, entryTimeout, attrTimeout,
+                info.fh, openFlags(info, backingId), backingId);
+        closeBacking(backingId);
+        return 1;
+    }
+
+    private FUSEFileInfo fileInfo(int flags, long fh) {
+        fi.flags = flags;
+        fi.fh_old = 0;
+        fi.writepage = 0;
+        fi.direct_io = false;
+        fi.keep_cache = false;
+        fi.flush = false;
+        fi.fh = fh;
+        fi.lock_owner = 0;
+        fi.backing_fd = -1;
+        return fi;
+    }
+
+    private static int openFlags(FUSEFileInfo info, int backingId) {
+        return (info.direct_io ? FOPEN_DIRECT_IO : 0) |
+                (info.keep_cache ? FOPEN_KEEP_CACHE : 0) |
+                (backingId > 0 ? FOPEN_PASSTHROUGH : 0);
+    }
+
+    /**
+     * Registers the backing file named in <code>info</code>, if any, with the
+     * kernel.
+     *
+     * @return the backing ID, or 0 if the file is to be served through the
+     * file system.
+     */
+    private int openBacking(FUSEFileInfo info) {
+        if(!passthroughEnabled || info.backing_fd < 0)
+            return 0;
+
+        final int res =
+                FUSEKernelPassthrough.openBacking(deviceFd, info.backing_fd);
+        if(res > 0)
+            return res;
+
+        if(res == -FUSEErrorValues.EBADF) {
+            Log.warning("FUSEKernelSession: Invalid backing descriptor " +
+                    info.backing_fd + ". Serving the file through the file " +
+                    "system.");
+        }
+        else {
+            /* Any other failure will repeat for every file. */
+            Log.error("FUSEKernelSession: Registering a backing file " +
+                    "failed (" + res + "). Disabling passthrough.");
+            passthroughEnabled = false;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Releases a backing ID once the reply naming it has been sent. The opened
+     * file holds its own reference to the backing file.
+     */
+    private void closeBacking(int backingId) {
+        if(backingId <= 0)
+            return;
+
+        final int res = FUSEKernelPassthrough.closeBacking(deviceFd, backingId);
+        if(res != 0) {
+            Log.warning("FUSEKernelSession: Releasing backing ID " +
+                    backingId + " failed (" + res + ").");
+        }
+    }
+
+    /**
+     * Returns the shared data buffer, cleared and limited to
+     * <code>size</code> bytes, growing it if needed.
+     */
+    private ByteBuffer dataBuffer(int size) {
+        if(size < 0)
+            throw new IllegalArgumentException("Negative size " + size + ".");
+
+        if(dataBuffer.capacity() < size)
+            dataBuffer = ByteBuffer.allocateDirect(size);
+
+        dataBuffer.clear();
+        dataBuffer.limit(size);
+        return dataBuffer;
+    }
+
+    /**
+     * Returns the path of <code>node</code> in path buffer
+     * <code>slot</code>, or <code>null</code> if the node is unknown or no
+     * longer linked into the tree.
+     */
+    private ByteBuffer path(int slot, Node node) {
+        return childPath(slot, node, null);
+    }
+
+    /**
+     * Returns the path of the entry <code>name</code> in the directory
+     * <code>parent</code> (or of <code>parent</code> itself if
+     * <code>name</code> is null) in path buffer <code>slot</code>, or
+     * <code>null</code> if <code>parent</code> is unknown or no longer linked
+     * into the tree.
+     */
+    private ByteBuffer childPath(int slot, Node parent, ByteBuffer name) {
+        if(parent == null)
+            return null;
+
+        int len = (name != null ? 1 + name.remaining() : 0);
+        for(Node n = parent; n.id != FUSE_ROOT_ID; n = n.parent) {
+            if(n.parent == null)
+                return null;
+            len += 1 + n.name.length;
+        }
+        if(len == 0)
+            len = 1;
+
+        ByteBuffer buf = pathBuffers[slot];
+        if(buf == null || buf.capacity() < len) {
+            buf = ByteBuffer.allocateDirect(Math.max(len, 256));
+            pathBuffers[slot] = buf;
+            pathViews[slot] = buf.asReadOnlyBuffer();
+        }
+
+        int pos = len;
+        if(name != null) {
+            final int nameLength = name.remaining();
+            pos -= nameLength;
+            for(int i = 0; i < nameLength; ++i)
+                buf.put(pos + i, name.get(name.position() + i));
+            buf.put(--pos, (byte) '/');
+        }
+        for(Node n = parent; n.id != FUSE_ROOT_ID; n = n.parent) {
+            pos -= n.name.length;
+            for(int i = 0; i < n.name.length; ++i)
+                buf.put(pos + i, n.name[i]);
+            buf.put(--pos, (byte) '/');
+        }
+        if(pos == 1)
+            buf.put(0, (byte) '/');
+
+        final ByteBuffer view = pathViews[slot];
+        view.limit(len);
+        view.position(0);
+        return view;
+    }
+
+    private Node lookupNode(Node parent, byte[] name) {
+        final NameKey key = new NameKey(parent.id, name);
+        Node node = nodesByName.get(key);
+        if(node == null) {
+            node = new Node(nextNodeId++, parent, name);
+            nodesById.put(node.id, node);
+            nodesByName.put(key, node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Unlinks the node for the entry <code>name</code> in
+     * <code>parent</code> from the tree. The node stays known until the
+     * kernel forgets it, but no longer has a path.
+     */
+    private void detachNode(Node parent, byte[] name) {
+        final Node node = nodesByName.remove(new NameKey(parent.id, name));
+        if(node != null) {
+            node.parent = null;
+            if(node.lookupCount <= 0)
+                nodesById.remove(node.id);
+        }
+    }
+
+    /**
+     * Encodes a <code>struct fuse_dirent</code> at the position of
+     * <code>dest</code>.
+     *
+     * @return false if the entry doesn't fit in <code>dest</code>.
+     */
+    private static boolean putDirent(ByteBuffer dest, byte[] name, int type,
+            long off) {
+        final int size = (FUSE_DIRENT_HEADER_SIZE + name.length + 7) & ~7;
+        if(dest.remaining() < size)
+            return false;
+
+        putDirentBody(dest.order(ByteOrder.nativeOrder()), FUSE_UNKNOWN_INO,
+                name, type, off, size);
+        return true;
+    }
+
+    /**
+     * Encodes a <code>struct fuse_direntplus</code> at the position of
+     * <code>dest</code>. If <code>st</code> isn't null, the entry is looked
+     * up in <code>parent</code> and returned with its node ID and attributes,
+     * which the kernel counts as a lookup. Otherwise, and for "." and "..",
+     * the entry is returned without a node, like in a READDIR reply.
+     *
+     * @return false if the entry doesn't fit in <code>dest</code>.
+     */
+    private boolean putDirentPlus(ByteBuffer dest, Node parent, byte[] name,
+            int type, long off, Stat st, double entryTimeout,
+            double attrTimeout) {
+        final int size = (FUSE_DIRENTPLUS_HEADER_SIZE + name.length + 7) & ~7;
+        if(dest.remaining() < size)
+            return false;
+
+        final ByteBuffer b = dest.order(ByteOrder.nativeOrder());
+        final int pos = b.position();
+        long ino = FUSE_UNKNOWN_INO;
+        if(st != null && parent != null && !isDotOrDotDot(name)) {
+            final Node node = lookupNode(parent, name);
+            ++node.lookupCount;
+            ino = node.id;
+            FUSEKernelReply.putEntryOut(b, pos, node.id, 0, st, entryTimeout,
+                    attrTimeout);
+        }
+        else {
+            for(int i = 0; i < FUSE_ENTRY_OUT_SIZE; i += 8)
+                b.putLong(pos + i, 0);
+        }
+
+        b.position(pos + FUSE_ENTRY_OUT_SIZE);
+        putDirentBody(b, ino, name, type, off,
+                size - FUSE_ENTRY_OUT_SIZE);
+        return true;
+    }
+
+    private static void putDirentBody(ByteBuffer b, long ino, byte[] name,
+            int type, long off, int size) {
+        b.putLong(ino);
+        b.putLong(off);
+        b.putInt(name.length);
+        b.putInt(type);
+        b.put(name);
+        for(int i = FUSE_DIRENT_HEADER_SIZE + name.length; i < size; ++i)
+            b.put((byte) 0);
+    }
+
+    private static boolean isDotOrDotDot(byte[] name) {
+        return (name.length == 1 && name[0] == '.') ||
+                (name.length == 2 && name[0] == '.' && name[1] == '.');
+    }
+
+    private static int direntType(long mode) {
+        return (int) ((mode & S_IFMT) >> 12);
+    }
+
+    private static class Node {
+        final long id;
+        Node parent;
+        byte[] name;
+        long lookupCount = 0;
+
+        Node(long id, Node parent, byte[] name) {
+            this.id = id;
+            this.parent = parent;
+            this.name = name;
+        }
+    }
+
+    private static class NameKey {
+        private final long parentId;
+        private final byte[] name;
+        private final int hash;
+
+        NameKey(long parentId, byte[] name) {
+            this.parentId = parentId;
+            this.name = name;
+            this.hash = 31 * (int) (parentId ^ (parentId >>> 32)) +
+                    Arrays.hashCode(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof NameKey))
+                return false;
+
+            final NameKey k = (NameKey) o;
+            return parentId == k.parentId && Arrays.equals(name, k.name);
+        }
+    }
+
+    private static class DirEntry {
+        final byte[] name;
+        final int type;
+
+        /* Set for entries added with fillPlus. */
+        final Stat stat;
+        final double entryTimeout;
+        final double attrTimeout;
+
+        DirEntry(byte[] name, int type, Stat stat, double entryTimeout,
+                double attrTimeout) {
+            this.name = name;
+            this.type = type;
+            this.stat = stat;
+            this.entryTimeout = entryTimeout;
+            this.attrTimeout = attrTimeout;
+        }
+    }
+
+    private static class DirHandle {
+        final long fh;
+        final ArrayList<DirEntry> entries = new ArrayList<DirEntry>();
+
+        /** Whether entries holds the complete listing of the directory. */
+        boolean filled = false;
+
+        DirHandle(long fh) {
+            this.fh = fh;
+        }
+    }
+
+    /**
+     * Filler passed to readdir(). Entries without an offset are added to the
+     * directory handle, and entries with an offset are encoded directly into
+     * the reply. When serving READDIRPLUS, entries added with fillPlus are
+     * encoded with their attributes.
+     */
+    private class DirFiller extends FUSEFillDir {
+        private DirHandle handle;
+        private ByteBuffer dest;
+        private Node plusParent;
+        boolean streamed;
+
+        /**
+         * @param plusParent the directory being listed when serving
+         * READDIRPLUS, otherwise null.
+         */
+        void begin(DirHandle handle, ByteBuffer dest, Node plusParent) {
+            this.handle = handle;
+            this.dest = dest;
+            this.plusParent = plusParent;
+            this.streamed = false;
+        }
+
+        void end() {
+            this.handle = null;
+            this.dest = null;
+            this.plusParent = null;
+        }
+
+        private void checkActive() {
+            if(handle == null) {
+                throw new IllegalStateException("FUSEFillDir used after the " +
+                        "readdir() call that created it has returned.");
+            }
+        }
+
+        private boolean add(byte[] name, int type, long off) {
+            if(off == 0) {
+                handle.entries.add(new DirEntry(name, type, null, 0, 0));
+                return false;
+            }
+
+            streamed = true;
+            if(plusParent != null) {
+                return !putDirentPlus(dest, plusParent, name, type, off, null,
+                        0, 0);
+            }
+            return !putDirent(dest, name, type, off);
+        }
+
+        @Override
+        public boolean fill(byte[] name, Stat stat, long off) {
+            checkActive();
+            return add(name, stat != null ? direntType(stat.st_mode) : 0, off);
+        }
+
+        @Override
+        public boolean fillPlus(byte[] name, Stat stat, double entryTimeout,
+                double attrTimeout, long off) {
+            checkActive();
+            if(stat == null)
+                throw new IllegalArgumentException("stat == null");
+            if(entryTimeout < 0 || attrTimeout < 0)
+                throw new IllegalArgumentException("Negative timeout.");
+
+            final int type = direntType(stat.st_mode);
+            if(off == 0) {
+                final Stat copy = new Stat();
+                copy.setToStat(stat);
+                handle.entries.add(new DirEntry(name, type, copy,
+                        entryTimeout, attrTimeout));
+                return false;
+            }
+
+            streamed = true;
+            if(plusParent != null) {
+                return !putDirentPlus(dest, plusParent, name, type, off, stat,
+                        entryTimeout, attrTimeout);
+            }
+            return !putDirent(dest, name, type, off);
+        }
+
+        @Override
+        public int fill(ByteBuffer records, int count) {
+            checkActive();
+
+            final ByteBuffer b = records.duplicate();
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            int base = 0;
+            for(int i = 0; i < count; ++i) {
+                final int recordLength = b.getInt(base +
+                        FUSEFillDirBatch.OFFSET_RECORD_LENGTH);
+                final int nameLength = b.getInt(base +
+                        FUSEFillDirBatch.OFFSET_NAME_LENGTH);
+                final long off = b.getLong(base +
+                        FUSEFillDirBatch.OFFSET_OFF);
+                final boolean hasStat = (b.getInt(base +
+                        FUSEFillDirBatch.OFFSET_FLAGS) &
+                        FUSEFillDirBatch.FLAG_HAS_STAT) != 0;
+
+                int nameOff = base + FUSEFillDirBatch.HEADER_SIZE;
+                int type = 0;
+                if(hasStat) {
+                    type = direntType(b.getLong(nameOff +
+                            StatBuffer.OFFSET_MODE));
+                    nameOff += StatBuffer.SIZE;
+                }
+
+                final byte[] name = new byte[nameLength];
+                b.position(nameOff);
+                b.get(name);
+
+                if(add(name, type, off))
+                    return i;
+                base += recordLength;
+            }
+
+            return count;
+        }
+    }
+}
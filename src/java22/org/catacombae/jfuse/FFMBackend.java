@@ -0,0 +1,490 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import org.catacombae.jfuse.types.fuse26.FUSEContext;
+import org.catacombae.jfuse.util.Log;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Binds libfuse 2.x through the Foreign Function &amp; Memory API instead of
+ * the JNI library. The mount procedure is the one of
+ * <code>FUSE.mountNative26</code>, made of downcalls into libfuse, and every
+ * <code>fuse_operations</code> entry is an upcall stub into an
+ * {@link FFMMount}. Paths and data buffers are passed to the file system as
+ * views of the native memory, and structures are accessed through the
+ * layouts in {@link FFMStructs}, so nothing is copied field by field through
+ * JNI and the JIT sees the whole path from the upcall to the file system.
+ * <p>
+ * The JNI library is still loaded, since the platform constants (errno
+ * values, mode bits and so on) come from it. It has to be linked against the
+ * same libfuse as the one that is looked up here ({@link #LIBRARY_NAME}).
+ * <p>
+ * The Foreign Function &amp; Memory API is final in Java 22, and this class is
+ * built from <code>src/java22</code> by the <code>build-ffm</code> target.
+ * It needs native access, which is granted with
+ * <code>--enable-native-access=ALL-UNNAMED</code> (otherwise Java prints a
+ * warning).
+ *
+ * @author Erik Larsson
+ */
+final class FFMBackend implements ForeignBackend {
+    /** The libfuse 2.x library that is bound. */
+    static final String LIBRARY_NAME = "libfuse.so.2";
+
+    /** <code>F_DUPFD_CLOEXEC</code> (Linux). */
+    private static final int F_DUPFD_CLOEXEC = 1030;
+
+    /*
+     * Like the JNI library, only the first file system that is mounted owns
+     * the signal handlers and releases them when it goes away.
+     */
+    private static final Object signalHandlerLock = new Object();
+    private static MemorySegment signalHandlerSession = null;
+
+    private final Linker linker = Linker.nativeLinker();
+
+    private final MethodHandle fuseOptAddArg;
+    private final MethodHandle fuseOptFreeArgs;
+    private final MethodHandle fuseParseCmdline;
+    private final MethodHandle fuseMount;
+    private final MethodHandle fuseNew;
+    private final MethodHandle fuseGetSession;
+    private final MethodHandle fuseSetSignalHandlers;
+    private final MethodHandle fuseRemoveSignalHandlers;
+    private final MethodHandle fuseLoop;
+    private final MethodHandle fuseLoopMt;
+    private final MethodHandle fuseUnmount;
+    private final MethodHandle fuseDestroy;
+    private final MethodHandle fuseGetContext;
+
+    private final MethodHandle strlen;
+    private final MethodHandle pread;
+    private final MethodHandle pwrite;
+    private final MethodHandle fcntl;
+    private final MethodHandle close;
+
+    /** Calls a <code>fuse_fill_dir_t</code> function pointer. */
+    private final MethodHandle fillDir;
+
+    /** Where a downcall that captures <code>errno</code> stores it. */
+    private final long errnoOffset = Linker.Option.captureStateLayout()
+            .byteOffset(PathElement.groupElement("errno"));
+    private final ThreadLocal<MemorySegment> callState =
+            new ThreadLocal<MemorySegment>() {
+        @Override
+        protected MemorySegment initialValue() {
+            return Arena.ofAuto().allocate(
+                    Linker.Option.captureStateLayout());
+        }
+    };
+
+    /**
+     * The mounts being served, by the address of their user data, which is
+     * what <code>fuse_get_context()->private_data</code> points to.
+     */
+    private final ConcurrentHashMap<Long, FFMMount> mounts =
+            new ConcurrentHashMap<Long, FFMMount>();
+
+    private final Constructor<FUSEContext> contextConstructor;
+
+    /**
+     * Looks up libfuse and the functions that the backend calls.
+     *
+     * @throws UnsupportedOperationException if the layouts in
+     * {@link FFMStructs} don't match this platform.
+     * @throws IllegalArgumentException if {@link #LIBRARY_NAME} can't be
+     * loaded.
+     * @throws java.util.NoSuchElementException if a function is missing.
+     */
+    public FFMBackend() throws ReflectiveOperationException {
+        if(!FFMStructs.isSupportedPlatform()) {
+            throw new UnsupportedOperationException("The FFM backend " +
+                    "doesn't support " + System.getProperty("os.name") +
+                    " on " + System.getProperty("os.arch") + ".");
+        }
+
+        final SymbolLookup libfuse =
+                SymbolLookup.libraryLookup(LIBRARY_NAME, Arena.global());
+        final SymbolLookup libc = linker.defaultLookup();
+
+        fuseOptAddArg = downcall(libfuse, "fuse_opt_add_arg",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        fuseOptFreeArgs = downcall(libfuse, "fuse_opt_free_args",
+                FunctionDescriptor.ofVoid(ADDRESS));
+        fuseParseCmdline = downcall(libfuse, "fuse_parse_cmdline",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS,
+                ADDRESS));
+        fuseMount = downcall(libfuse, "fuse_mount",
+                FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+        fuseNew = downcall(libfuse, "fuse_new",
+                FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS,
+                JAVA_LONG, ADDRESS));
+        fuseGetSession = downcall(libfuse, "fuse_get_session",
+                FunctionDescriptor.of(ADDRESS, ADDRESS));
+        fuseSetSignalHandlers = downcall(libfuse, "fuse_set_signal_handlers",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        fuseRemoveSignalHandlers = downcall(libfuse,
+                "fuse_remove_signal_handlers",
+                FunctionDescriptor.ofVoid(ADDRESS));
+        fuseLoop = downcall(libfuse, "fuse_loop",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        fuseLoopMt = downcall(libfuse, "fuse_loop_mt",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        fuseUnmount = downcall(libfuse, "fuse_unmount",
+                FunctionDescriptor.ofVoid(ADDRESS, ADDRESS));
+        fuseDestroy = downcall(libfuse, "fuse_destroy",
+                FunctionDescriptor.ofVoid(ADDRESS));
+        fuseGetContext = downcall(libfuse, "fuse_get_context",
+                FunctionDescriptor.of(ADDRESS));
+
+        strlen = downcall(libc, "strlen",
+                FunctionDescriptor.of(JAVA_LONG, ADDRESS),
+                Linker.Option.critical(false));
+        pread = downcall(libc, "pread",
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG,
+                JAVA_LONG),
+                Linker.Option.captureCallState("errno"));
+        pwrite = downcall(libc, "pwrite",
+                FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG,
+                JAVA_LONG),
+                Linker.Option.captureCallState("errno"));
+        fcntl = downcall(libc, "fcntl",
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT),
+                Linker.Option.firstVariadicArg(2),
+                Linker.Option.captureCallState("errno"));
+        close = downcall(libc, "close",
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+        fillDir = linker.downcallHandle(FunctionDescriptor.of(JAVA_INT,
+                ADDRESS, ADDRESS, ADDRESS, JAVA_LONG));
+
+        contextConstructor = FUSEContext.class.getDeclaredConstructor(
+                long.class, long.class, long.class, Object.class);
+        contextConstructor.setAccessible(true);
+    }
+
+    private MethodHandle downcall(SymbolLookup lookup, String name,
+            FunctionDescriptor descriptor, Linker.Option... options) {
+        return linker.downcallHandle(lookup.find(name).orElseThrow(),
+                descriptor, options);
+    }
+
+    Linker getLinker() {
+        return linker;
+    }
+
+    /**
+     * Mounts with the FFM backend unless <code>fileSystem</code> implements
+     * something that only the JNI library serves: the MacFUSE, buffer and
+     * FUSE 2.9 interfaces, and the deprecated <code>getdir</code> and
+     * <code>utime</code> operations.
+     */
+    //@Override
+    public boolean canMount(FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities) {
+        return !(fileSystem instanceof MacFUSE20FileSystem) &&
+                !(fileSystem instanceof FUSE26BufferFileSystem) &&
+                !(fileSystem instanceof FUSE29FileSystem) &&
+                !capabilities.getdir && !capabilities.utime;
+    }
+
+    //@Override
+    public boolean mount26(FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities, String mountPoint,
+            String[] optionStrings, FUSEOptions options,
+            MountHandle mountHandle) {
+        try {
+            return mount(fileSystem, capabilities, mountPoint, optionStrings,
+                    options, mountHandle);
+        } catch(RuntimeException | Error e) {
+            throw e;
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private boolean mount(FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities, String mountPoint,
+            String[] optionStrings, FUSEOptions options,
+            MountHandle mountHandle) throws Throwable {
+        boolean res = false;
+
+        /* The operations table, the upcall stubs and the user data live until
+         * fuse_destroy has been called below. */
+        final Arena arena = Arena.ofShared();
+        try {
+            final FFMMount mount = new FFMMount(this, fileSystem,
+                    capabilities, options, mountHandle, arena);
+
+            /* FUSE_ARGS_INIT(0, NULL) */
+            final MemorySegment args = arena.allocate(FFMStructs.FUSE_ARGS);
+            final MemorySegment mountPointChars =
+                    arena.allocateFrom(mountPoint);
+            addArg(args, mountPointChars);
+            for(String optionString : optionStrings) {
+                Log.debug("  Adding option: \"" + optionString + "\"");
+                addArg(args, arena.allocateFrom(optionString));
+            }
+
+            final MemorySegment multithreaded = arena.allocate(JAVA_INT);
+            if((int) fuseParseCmdline.invokeExact(args, MemorySegment.NULL,
+                    multithreaded, MemorySegment.NULL) != 0)
+            {
+                Log.error("fuse_parse_cmdline didn't return 0.");
+                fuseOptFreeArgs.invokeExact(args);
+                return false;
+            }
+
+            MemorySegment chan = MemorySegment.NULL;
+            MemorySegment fh = MemorySegment.NULL;
+
+            Log.debug("Invoking fuse_mount...");
+            chan = (MemorySegment) fuseMount.invokeExact(mountPointChars,
+                    args);
+            if(chan.address() != 0) {
+                Log.debug("Invoking fuse_new...");
+                fh = (MemorySegment) fuseNew.invokeExact(chan, args,
+                        mount.getOperations(),
+                        FFMStructs.FUSE_OPERATIONS.byteSize(),
+                        mount.getUserData());
+                if(fh.address() != 0) {
+                    final MemorySegment session =
+                            (MemorySegment) fuseGetSession.invokeExact(fh);
+                    mounts.put(mount.getUserData().address(), mount);
+                    if(acquireSignalHandlers(session)) {
+                        mount.notifyMountReady();
+
+                        final boolean mt =
+                                multithreaded.get(JAVA_INT, 0) != 0;
+                        final int fuseLoopRetval;
+                        if(mt) {
+                            Log.debug("Invoking fuse_loop_mt...");
+                            fuseLoopRetval = (int) fuseLoopMt.invokeExact(fh);
+                        }
+                        else {
+                            Log.debug("Invoking fuse_loop...");
+                            fuseLoopRetval = (int) fuseLoop.invokeExact(fh);
+                        }
+                        Log.debug("  done. result=" + fuseLoopRetval);
+                        if(fuseLoopRetval != 0) {
+                            Log.error((mt ? "fuse_loop_mt" : "fuse_loop") +
+                                    " exited with a non-zero value: " +
+                                    fuseLoopRetval);
+                        }
+                        else
+                            res = true;
+
+                        releaseSignalHandlers(session);
+                    }
+                    else
+                        Log.error("Couldn't set signal handlers!");
+                }
+                else
+                    Log.error("fuse_new exited with an error.");
+            }
+            else
+                Log.error("fuse_mount exited with an error.");
+
+            fuseOptFreeArgs.invokeExact(args);
+
+            if(chan.address() != 0) {
+                Log.debug("Unmounting \"" + mountPoint + "\"...");
+                fuseUnmount.invokeExact(mountPointChars, chan);
+            }
+            if(fh.address() != 0) {
+                Log.debug("Destroying fuse filehandle...");
+                fuseDestroy.invokeExact(fh);
+            }
+
+            mounts.remove(mount.getUserData().address());
+            mount.releaseBackingFiles();
+        } finally {
+            arena.close();
+        }
+
+        return res;
+    }
+
+    private void addArg(MemorySegment args, MemorySegment arg)
+            throws Throwable {
+        if((int) fuseOptAddArg.invokeExact(args, arg) != 0)
+            throw new RuntimeException("fuse_opt_add_arg failed unexpectedly.");
+    }
+
+    private boolean acquireSignalHandlers(MemorySegment session)
+            throws Throwable {
+        synchronized(signalHandlerLock) {
+            if(signalHandlerSession == null) {
+                if((int) fuseSetSignalHandlers.invokeExact(session) != 0)
+                    return false;
+                signalHandlerSession = session;
+            }
+            else
+                Log.debug("Signal handlers already set up by another session.");
+        }
+
+        return true;
+    }
+
+    private void releaseSignalHandlers(MemorySegment session)
+            throws Throwable {
+        synchronized(signalHandlerLock) {
+            if(signalHandlerSession != null &&
+                    session.address() == signalHandlerSession.address()) {
+                fuseRemoveSignalHandlers.invokeExact(session);
+                signalHandlerSession = null;
+            }
+        }
+    }
+
+    //@Override
+    public FUSEContext getContext() {
+        try {
+            MemorySegment ctx = (MemorySegment) fuseGetContext.invokeExact();
+            if(ctx.address() == 0)
+                return null;
+            ctx = ctx.reinterpret(FFMStructs.FUSE_CONTEXT.byteSize());
+
+            final FFMMount mount = mounts.get(ctx.get(ADDRESS,
+                    FFMStructs.CONTEXT_PRIVATE_DATA).address());
+            if(mount == null)
+                return null;
+
+            return contextConstructor.newInstance(
+                    ctx.get(JAVA_INT, FFMStructs.CONTEXT_UID) & 0xFFFFFFFFL,
+                    ctx.get(JAVA_INT, FFMStructs.CONTEXT_GID) & 0xFFFFFFFFL,
+                    (long) ctx.get(JAVA_INT, FFMStructs.CONTEXT_PID),
+                    mount.getPrivateData());
+        } catch(RuntimeException | Error e) {
+            throw e;
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the NUL terminated string at
+     * <code>cstr</code>, excluding the terminator, or <code>null</code> if
+     * <code>cstr</code> is NULL.
+     */
+    ByteBuffer stringView(MemorySegment cstr) throws Throwable {
+        if(cstr.address() == 0)
+            return null;
+
+        final long length = (long) strlen.invokeExact(cstr);
+        return cstr.reinterpret(length).asByteBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Calls the filler function <code>filler</code> of a readdir operation.
+     *
+     * @return true if the buffer is full.
+     */
+    boolean fillDir(MemorySegment filler, MemorySegment buf,
+            MemorySegment name, MemorySegment stat, long off)
+            throws Throwable {
+        return (int) fillDir.invokeExact(filler, buf, name, stat, off) != 0;
+    }
+
+    /**
+     * Duplicates <code>fd</code> with the close-on-exec flag set.
+     *
+     * @return the new descriptor, or a negated errno value.
+     */
+    int duplicate(int fd) throws Throwable {
+        final MemorySegment state = callState.get();
+        final int res = (int) fcntl.invokeExact(state, fd, F_DUPFD_CLOEXEC, 0);
+        return res < 0 ? -state.get(JAVA_INT, errnoOffset) : res;
+    }
+
+    void closeDescriptor(int fd) throws Throwable {
+        final int res = (int) close.invokeExact(fd);
+        if(res != 0)
+            Log.error("Could not close backing descriptor " + fd + ".");
+    }
+
+    /**
+     * Reads up to <code>buf.byteSize()</code> bytes at <code>off</code> from
+     * <code>fd</code>, like <code>jFUSEPassthroughTable::readAt</code>.
+     *
+     * @return the number of bytes read, or a negated errno value.
+     */
+    int readAt(int fd, MemorySegment buf, long off) throws Throwable {
+        final MemorySegment state = callState.get();
+        final long len = buf.byteSize();
+        long total = 0;
+        while(total < len) {
+            final long res = (long) pread.invokeExact(state, fd,
+                    buf.asSlice(total), len - total, off + total);
+            if(res < 0) {
+                final int errno = state.get(JAVA_INT, errnoOffset);
+                if(errno == FUSEErrorValues.EINTR)
+                    continue;
+                return total > 0 ? (int) total : -errno;
+            }
+            else if(res == 0)
+                break;
+
+            total += res;
+        }
+
+        return (int) total;
+    }
+
+    /**
+     * Writes <code>buf</code> at <code>off</code> to <code>fd</code>, like
+     * <code>jFUSEPassthroughTable::writeAt</code>.
+     *
+     * @return the number of bytes written, or a negated errno value.
+     */
+    int writeAt(int fd, MemorySegment buf, long off) throws Throwable {
+        final MemorySegment state = callState.get();
+        final long len = buf.byteSize();
+        long total = 0;
+        while(total < len) {
+            final long res = (long) pwrite.invokeExact(state, fd,
+                    buf.asSlice(total), len - total, off + total);
+            if(res < 0) {
+                final int errno = state.get(JAVA_INT, errnoOffset);
+                if(errno == FUSEErrorValues.EINTR)
+                    continue;
+                return total > 0 ? (int) total : -errno;
+            }
+
+            total += res;
+        }
+
+        return (int) total;
+    }
+}
@@ -0,0 +1,169 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDir;
+import org.catacombae.jfuse.types.fuse26.FUSEFillDirBatch;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatBuffer;
+import org.catacombae.jfuse.util.Log;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/**
+ * The {@link FUSEFillDir} of a readdir operation served by {@link FFMMount},
+ * which calls the filler function that libfuse passed to the operation.
+ *
+ * @author Erik Larsson
+ */
+final class FFMFillDir extends FUSEFillDir {
+    /** Set when fillPlus has reported that the filler ignores it. */
+    private static volatile boolean fillPlusDegradationReported = false;
+
+    private final FFMBackend backend;
+    private final MemorySegment filler;
+    private final MemorySegment buf;
+    private final Arena arena;
+    private final MemorySegment stat;
+    private final Stat batchStat = new Stat();
+    private MemorySegment name = MemorySegment.NULL;
+    private boolean valid = true;
+
+    /**
+     * @param arena the arena of the readdir operation, in which the entries
+     * are passed to the filler.
+     */
+    FFMFillDir(FFMBackend backend, MemorySegment filler, MemorySegment buf,
+            Arena arena) {
+        this.backend = backend;
+        this.filler = filler;
+        this.buf = buf;
+        this.arena = arena;
+        this.stat = arena.allocate(FFMStructs.STAT);
+    }
+
+    /**
+     * Called when the readdir operation returns. Any later use throws
+     * IllegalStateException.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    private void checkValid() {
+        if(!valid) {
+            throw new IllegalStateException("FUSEFillDir used after the " +
+                    "readdir() call that created it has returned.");
+        }
+    }
+
+    private boolean fill(MemorySegment nameSegment, Stat st, long off) {
+        MemorySegment statSegment = MemorySegment.NULL;
+        if(st != null) {
+            stat.fill((byte) 0);
+            FFMStructs.mergeStat(st, stat);
+            statSegment = stat;
+        }
+
+        try {
+            return backend.fillDir(filler, buf, nameSegment, statSegment, off);
+        } catch(RuntimeException e) {
+            throw e;
+        } catch(Error e) {
+            throw e;
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    @Override
+    public boolean fill(byte[] name, Stat stat, long off) {
+        checkValid();
+
+        if(this.name.byteSize() < name.length + 1)
+            this.name = arena.allocate(Math.max(name.length + 1, 256));
+        MemorySegment.copy(name, 0, this.name, JAVA_BYTE, 0, name.length);
+        this.name.set(JAVA_BYTE, name.length, (byte) 0);
+
+        return fill(this.name, stat, off);
+    }
+
+    @Override
+    public boolean fillPlus(byte[] name, Stat stat, double entryTimeout,
+            double attrTimeout, long off) {
+        if(stat == null)
+            throw new IllegalArgumentException("stat == null");
+        if(entryTimeout < 0 || attrTimeout < 0)
+            throw new IllegalArgumentException("Negative timeout.");
+
+        if(!fillPlusDegradationReported) {
+            fillPlusDegradationReported = true;
+            Log.notice("fillPlus: libfuse 2 has no readdirplus. Entries are " +
+                    "added without attributes for the kernel to cache, and " +
+                    "their timeouts are ignored.");
+        }
+
+        return fill(name, stat, off);
+    }
+
+    /**
+     * Passes the names to the filler straight from <code>records</code>,
+     * whose padding already terminates them.
+     */
+    @Override
+    public int fill(ByteBuffer records, int count) {
+        checkValid();
+        if(!records.isDirect())
+            throw new IllegalArgumentException("records is not direct");
+
+        final ByteBuffer view =
+                records.duplicate().clear().order(ByteOrder.LITTLE_ENDIAN);
+        final MemorySegment segment = MemorySegment.ofBuffer(view);
+
+        int base = 0;
+        for(int i = 0; i < count; ++i) {
+            final int recordLength =
+                    view.getInt(base + FUSEFillDirBatch.OFFSET_RECORD_LENGTH);
+            final long off = view.getLong(base + FUSEFillDirBatch.OFFSET_OFF);
+            final boolean hasStat =
+                    (view.getInt(base + FUSEFillDirBatch.OFFSET_FLAGS) &
+                    FUSEFillDirBatch.FLAG_HAS_STAT) != 0;
+
+            int nameOffset = base + FUSEFillDirBatch.HEADER_SIZE;
+            if(hasStat) {
+                new StatBuffer(segment.asSlice(nameOffset, StatBuffer.SIZE)
+                        .asByteBuffer()).copyTo(batchStat);
+                nameOffset += StatBuffer.SIZE;
+            }
+
+            if(fill(segment.asSlice(nameOffset),
+                    hasStat ? batchStat : null, off))
+                return i;
+
+            base += recordLength;
+        }
+
+        return count;
+    }
+}
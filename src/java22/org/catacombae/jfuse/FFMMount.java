@@ -0,0 +1,787 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.catacombae.jfuse.types.fuse26.FUSEConnInfo;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Flock;
+import org.catacombae.jfuse.types.system.LongRef;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatVFS;
+import org.catacombae.jfuse.types.system.Timespec;
+import org.catacombae.jfuse.util.Log;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * A file system mounted through the {@link FFMBackend}. Each operation that
+ * the file system implements gets an upcall stub in the
+ * <code>fuse_operations</code> table of the mount, bound to the method of
+ * this class with the same name, which does what the function of the same
+ * name in fuse26_module.cpp does for the JNI library.<br>
+ * Paths are passed as read-only views of the strings that libfuse passes,
+ * and the data of read, write, readlink and the xattr operations as views of
+ * its buffers, so {@link FUSEOptions#setReusePathBuffers(boolean)} has no
+ * effect here. {@link FUSEOptions#setReuseArgumentObjects(boolean)} is
+ * honoured as with the JNI library.
+ *
+ * @author Erik Larsson
+ */
+final class FFMMount {
+    private static final FunctionDescriptor PATH =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS);
+    private static final FunctionDescriptor PATH_PTR =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS);
+    private static final FunctionDescriptor PATH_INT =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT);
+    private static final FunctionDescriptor PATH_LONG =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG);
+    private static final FunctionDescriptor PATH_PTR_LONG =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_LONG);
+    private static final FunctionDescriptor PATH_INT_PTR =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS);
+    private static final FunctionDescriptor PATH_LONG_PTR =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, ADDRESS);
+    private static final FunctionDescriptor PATH_PTR_PTR =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS);
+    private static final FunctionDescriptor IO =
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_LONG,
+            JAVA_LONG, ADDRESS);
+
+    /**
+     * The operations that can be installed, by their name in
+     * <code>fuse_operations</code>, which is also the name of the
+     * {@link FUSE26Capabilities} field and of the method of this class.
+     * <code>getdir</code> and <code>utime</code> are left to the JNI library
+     * (see {@link FFMBackend#canMount}).
+     */
+    private static final Object[][] OPERATIONS = {
+        { "getattr", PATH_PTR },
+        { "readlink", PATH_PTR_LONG },
+        { "mknod", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                JAVA_LONG) },
+        { "mkdir", PATH_INT },
+        { "unlink", PATH },
+        { "rmdir", PATH },
+        { "symlink", PATH_PTR },
+        { "rename", PATH_PTR },
+        { "link", PATH_PTR },
+        { "chmod", PATH_INT },
+        { "chown", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT,
+                JAVA_INT) },
+        { "truncate", PATH_LONG },
+        { "open", PATH_PTR },
+        { "read", IO },
+        { "write", IO },
+        { "statfs", PATH_PTR },
+        { "flush", PATH_PTR },
+        { "release", PATH_PTR },
+        { "fsync", PATH_INT_PTR },
+        { "setxattr", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                ADDRESS, JAVA_LONG, JAVA_INT) },
+        { "getxattr", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                ADDRESS, JAVA_LONG) },
+        { "listxattr", PATH_PTR_LONG },
+        { "removexattr", PATH_PTR },
+        { "opendir", PATH_PTR },
+        { "readdir", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS,
+                ADDRESS, JAVA_LONG, ADDRESS) },
+        { "releasedir", PATH_PTR },
+        { "fsyncdir", PATH_INT_PTR },
+        { "init", FunctionDescriptor.of(ADDRESS, ADDRESS) },
+        { "destroy", FunctionDescriptor.ofVoid(ADDRESS) },
+        { "access", PATH_INT },
+        { "create", PATH_INT_PTR },
+        { "ftruncate", PATH_LONG_PTR },
+        { "fgetattr", PATH_PTR_PTR },
+        { "lock", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT,
+                ADDRESS) },
+        { "utimens", PATH_PTR },
+        { "bmap", PATH_LONG_PTR },
+    };
+
+    private static final long STAT_SIZE = FFMStructs.STAT.byteSize();
+    private static final long STATVFS_SIZE = FFMStructs.STATVFS.byteSize();
+    private static final long FILE_INFO_SIZE =
+            FFMStructs.FUSE_FILE_INFO.byteSize();
+    private static final long TIMESPEC_SIZE = FFMStructs.TIMESPEC.byteSize();
+
+    private final FFMBackend backend;
+    private final FUSE26FileSystem fileSystem;
+    private final FUSE26Capabilities capabilities;
+    private final MountHandle mountHandle;
+    private final boolean reuseArgumentObjects;
+    private final MemorySegment operations;
+    private final MemorySegment userData;
+
+    private volatile Object privateData = null;
+
+    /** Duplicates of the backing files registered by open and create. */
+    private final Map<Long, Integer> backingFiles =
+            new ConcurrentHashMap<Long, Integer>();
+
+    private final ThreadLocal<Boolean> workerRegistered =
+            new ThreadLocal<Boolean>();
+    private final ThreadLocal<Arguments> threadArguments =
+            new ThreadLocal<Arguments>() {
+        @Override
+        protected Arguments initialValue() {
+            return new Arguments();
+        }
+    };
+
+    /**
+     * Creates the operations table of a mount, allocated in
+     * <code>arena</code> together with its upcall stubs.
+     */
+    FFMMount(FFMBackend backend, FUSE26FileSystem fileSystem,
+            FUSE26Capabilities capabilities, FUSEOptions options,
+            MountHandle mountHandle, Arena arena)
+            throws ReflectiveOperationException {
+        this.backend = backend;
+        this.fileSystem = fileSystem;
+        this.capabilities = capabilities;
+        this.mountHandle = mountHandle;
+        this.reuseArgumentObjects = options.getReuseArgumentObjects();
+        this.operations = arena.allocate(FFMStructs.FUSE_OPERATIONS);
+        /* Only the address matters. It identifies the mount in
+         * fuse_get_context()->private_data. */
+        this.userData = arena.allocate(1);
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for(Object[] operation : OPERATIONS) {
+            final String name = (String) operation[0];
+            final FunctionDescriptor descriptor =
+                    (FunctionDescriptor) operation[1];
+
+            /* 'init' is where the mount handle learns the negotiated
+             * connection parameters, so it's always installed. */
+            if(!name.equals("init") && !FUSE26Capabilities.class
+                    .getField(name).getBoolean(capabilities))
+                continue;
+
+            final MethodHandle target = lookup.findVirtual(FFMMount.class,
+                    name, descriptor.toMethodType()).bindTo(this);
+            operations.set(ADDRESS, FFMStructs.operationOffset(name),
+                    backend.getLinker().upcallStub(target, descriptor, arena));
+            Log.debug("Added capability " + name);
+        }
+    }
+
+    MemorySegment getOperations() {
+        return operations;
+    }
+
+    MemorySegment getUserData() {
+        return userData;
+    }
+
+    Object getPrivateData() {
+        return privateData;
+    }
+
+    void notifyMountReady() {
+        if(mountHandle != null)
+            mountHandle.mountReady();
+    }
+
+    /**
+     * Closes the backing files of handles that were never released.
+     */
+    void releaseBackingFiles() throws Throwable {
+        for(Integer fd : backingFiles.values())
+            backend.closeDescriptor(fd);
+        backingFiles.clear();
+    }
+
+    /**
+     * Registers the calling thread with the mount handle the first time that
+     * it serves an operation.
+     */
+    private void enter() {
+        if(mountHandle != null && workerRegistered.get() == null) {
+            workerRegistered.set(Boolean.TRUE);
+            mountHandle.workerStarted();
+        }
+    }
+
+    /**
+     * Reports an exception thrown while serving <code>operation</code>. An
+     * exception must not leave an upcall, since that would end the JVM.
+     */
+    private static int failed(String operation, Throwable t) {
+        Log.error("Exception occurred when executing " + operation + ": " +
+                t);
+        t.printStackTrace();
+        return -FUSEErrorValues.EIO;
+    }
+
+    private ByteBuffer path(MemorySegment cstr) throws Throwable {
+        return backend.stringView(cstr);
+    }
+
+    private static ByteBuffer buffer(MemorySegment buf, long size) {
+        return buf.reinterpret(size).asByteBuffer();
+    }
+
+    private Stat newStat(MemorySegment st) {
+        final Stat stat =
+                reuseArgumentObjects ? threadArguments.get().stat : new Stat();
+        FFMStructs.fillStat(st, stat);
+        return stat;
+    }
+
+    private FUSEFileInfo newFileInfo(MemorySegment fi) {
+        if(fi.address() == 0)
+            return null;
+
+        final FUSEFileInfo fileInfo = reuseArgumentObjects ?
+            threadArguments.get().fileInfo : new FUSEFileInfo();
+        FFMStructs.fillFileInfo(fi, fileInfo);
+        return fileInfo;
+    }
+
+    private static void mergeFileInfo(FUSEFileInfo fileInfo,
+            MemorySegment fi) {
+        if(fileInfo != null)
+            FFMStructs.mergeFileInfo(fileInfo, fi);
+    }
+
+    private void registerBackingFile(FUSEFileInfo fileInfo) throws Throwable {
+        if(fileInfo.backing_fd < 0)
+            return;
+
+        /* The file system keeps its own descriptor, so take a duplicate that
+         * lives until the handle is released. */
+        final int fd = backend.duplicate(fileInfo.backing_fd);
+        if(fd < 0) {
+            Log.error("Could not duplicate backing descriptor " +
+                    fileInfo.backing_fd + " (errno " + -fd + ").");
+        }
+        else if(backingFiles.putIfAbsent(fileInfo.fh, fd) != null) {
+            Log.error("Handle 0x" + Long.toHexString(fileInfo.fh) +
+                    " already has a backing descriptor. Not passing it " +
+                    "through.");
+            backend.closeDescriptor(fd);
+        }
+    }
+
+    private Integer getBackingFile(MemorySegment fi) {
+        if(backingFiles.isEmpty() || fi.address() == 0)
+            return null;
+
+        return backingFiles.get(FFMStructs.getFileHandle(fi));
+    }
+
+    int getattr(MemorySegment path, MemorySegment stbuf) {
+        try {
+            enter();
+            final MemorySegment st = stbuf.reinterpret(STAT_SIZE);
+            final Stat stat = newStat(st);
+            final int retval = fileSystem.getattr(path(path), stat);
+            FFMStructs.mergeStat(stat, st);
+            return retval;
+        } catch(Throwable t) {
+            return failed("getattr", t);
+        }
+    }
+
+    int readlink(MemorySegment path, MemorySegment buf, long size) {
+        try {
+            enter();
+            return fileSystem.readlink(path(path), buffer(buf, size));
+        } catch(Throwable t) {
+            return failed("readlink", t);
+        }
+    }
+
+    int mknod(MemorySegment path, int mode, long dev) {
+        try {
+            enter();
+            return fileSystem.mknod(path(path), (short) mode, dev);
+        } catch(Throwable t) {
+            return failed("mknod", t);
+        }
+    }
+
+    int mkdir(MemorySegment path, int mode) {
+        try {
+            enter();
+            return fileSystem.mkdir(path(path), (short) mode);
+        } catch(Throwable t) {
+            return failed("mkdir", t);
+        }
+    }
+
+    int unlink(MemorySegment path) {
+        try {
+            enter();
+            return fileSystem.unlink(path(path));
+        } catch(Throwable t) {
+            return failed("unlink", t);
+        }
+    }
+
+    int rmdir(MemorySegment path) {
+        try {
+            enter();
+            return fileSystem.rmdir(path(path));
+        } catch(Throwable t) {
+            return failed("rmdir", t);
+        }
+    }
+
+    int symlink(MemorySegment from, MemorySegment to) {
+        try {
+            enter();
+            return fileSystem.symlink(path(from), path(to));
+        } catch(Throwable t) {
+            return failed("symlink", t);
+        }
+    }
+
+    int rename(MemorySegment from, MemorySegment to) {
+        try {
+            enter();
+            return fileSystem.rename(path(from), path(to));
+        } catch(Throwable t) {
+            return failed("rename", t);
+        }
+    }
+
+    int link(MemorySegment from, MemorySegment to) {
+        try {
+            enter();
+            return fileSystem.link(path(from), path(to));
+        } catch(Throwable t) {
+            return failed("link", t);
+        }
+    }
+
+    int chmod(MemorySegment path, int mode) {
+        try {
+            enter();
+            return fileSystem.chmod(path(path), (short) mode);
+        } catch(Throwable t) {
+            return failed("chmod", t);
+        }
+    }
+
+    int chown(MemorySegment path, int uid, int gid) {
+        try {
+            enter();
+            return fileSystem.chown(path(path), uid & 0xFFFFFFFFL,
+                    gid & 0xFFFFFFFFL);
+        } catch(Throwable t) {
+            return failed("chown", t);
+        }
+    }
+
+    int truncate(MemorySegment path, long size) {
+        try {
+            enter();
+            return fileSystem.truncate(path(path), size);
+        } catch(Throwable t) {
+            return failed("truncate", t);
+        }
+    }
+
+    int open(MemorySegment path, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.open(path(path), fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            if(retval == 0)
+                registerBackingFile(fileInfo);
+            return retval;
+        } catch(Throwable t) {
+            return failed("open", t);
+        }
+    }
+
+    int read(MemorySegment path, MemorySegment buf, long size, long offset,
+            MemorySegment fi) {
+        try {
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            buf = buf.reinterpret(size);
+
+            final Integer backingFd = getBackingFile(fi);
+            if(backingFd != null)
+                return backend.readAt(backingFd, buf, offset);
+
+            enter();
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.read(path(path), buf.asByteBuffer(),
+                    offset, fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("read", t);
+        }
+    }
+
+    int write(MemorySegment path, MemorySegment buf, long size, long offset,
+            MemorySegment fi) {
+        try {
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            buf = buf.reinterpret(size);
+
+            final Integer backingFd = getBackingFile(fi);
+            if(backingFd != null)
+                return backend.writeAt(backingFd, buf, offset);
+
+            enter();
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.write(path(path),
+                    buf.asByteBuffer().asReadOnlyBuffer(), offset, fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("write", t);
+        }
+    }
+
+    int statfs(MemorySegment path, MemorySegment stbuf) {
+        try {
+            enter();
+            final MemorySegment st = stbuf.reinterpret(STATVFS_SIZE);
+            final StatVFS stat = reuseArgumentObjects ?
+                threadArguments.get().statVFS : new StatVFS();
+            FFMStructs.fillStatVFS(st, stat);
+            final int retval = fileSystem.statfs(path(path), stat);
+            FFMStructs.mergeStatVFS(stat, st);
+            return retval;
+        } catch(Throwable t) {
+            return failed("statfs", t);
+        }
+    }
+
+    int flush(MemorySegment path, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.flush(path(path), fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("flush", t);
+        }
+    }
+
+    int release(MemorySegment path, MemorySegment fi) {
+        int retval;
+        fi = fi.reinterpret(FILE_INFO_SIZE);
+        final long fh = FFMStructs.getFileHandle(fi);
+        try {
+            enter();
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            retval = fileSystem.release(path(path), fileInfo);
+            mergeFileInfo(fileInfo, fi);
+        } catch(Throwable t) {
+            retval = failed("release", t);
+        }
+
+        /* The file system has seen the release, so the backing file can go
+         * whatever it returned. */
+        final Integer backingFd = backingFiles.remove(fh);
+        if(backingFd != null) {
+            try {
+                backend.closeDescriptor(backingFd);
+            } catch(Throwable t) {
+                failed("release", t);
+            }
+        }
+
+        return retval;
+    }
+
+    int fsync(MemorySegment path, int datasync, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.fsync(path(path), datasync != 0,
+                    fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("fsync", t);
+        }
+    }
+
+    int setxattr(MemorySegment path, MemorySegment name, MemorySegment value,
+            long size, int flags) {
+        try {
+            enter();
+            return fileSystem.setxattr(path(path), path(name),
+                    buffer(value, size).asReadOnlyBuffer(), flags, 0);
+        } catch(Throwable t) {
+            return failed("setxattr", t);
+        }
+    }
+
+    int getxattr(MemorySegment path, MemorySegment name, MemorySegment value,
+            long size) {
+        try {
+            enter();
+            return fileSystem.getxattr(path(path), path(name),
+                    buffer(value, size), 0);
+        } catch(Throwable t) {
+            return failed("getxattr", t);
+        }
+    }
+
+    int listxattr(MemorySegment path, MemorySegment list, long size) {
+        try {
+            enter();
+            return fileSystem.listxattr(path(path), buffer(list, size));
+        } catch(Throwable t) {
+            return failed("listxattr", t);
+        }
+    }
+
+    int removexattr(MemorySegment path, MemorySegment name) {
+        try {
+            enter();
+            return fileSystem.removexattr(path(path), path(name));
+        } catch(Throwable t) {
+            return failed("removexattr", t);
+        }
+    }
+
+    int opendir(MemorySegment path, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.opendir(path(path), fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("opendir", t);
+        }
+    }
+
+    int readdir(MemorySegment path, MemorySegment buf, MemorySegment filler,
+            long offset, MemorySegment fi) {
+        /* Scratch memory for the entries passed to the filler, released
+         * when the operation returns. */
+        final Arena arena = Arena.ofConfined();
+        final FFMFillDir fillDir = new FFMFillDir(backend, filler, buf, arena);
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.readdir(path(path), fillDir, offset,
+                    fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("readdir", t);
+        } finally {
+            fillDir.invalidate();
+            arena.close();
+        }
+    }
+
+    int releasedir(MemorySegment path, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.releasedir(path(path), fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("releasedir", t);
+        }
+    }
+
+    int fsyncdir(MemorySegment path, int datasync, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.fsyncdir(path(path), datasync != 0,
+                    fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("fsyncdir", t);
+        }
+    }
+
+    MemorySegment init(MemorySegment conn) {
+        try {
+            enter();
+            conn = conn.reinterpret(FFMStructs.FUSE_CONN_INFO.byteSize());
+            if(capabilities.init) {
+                final FUSEConnInfo connInfo = new FUSEConnInfo();
+                FFMStructs.fillConnInfo(conn, connInfo);
+                privateData = fileSystem.init(connInfo);
+            }
+
+            /* Record what the file system ended up with for
+             * MountHandle.getConnInfo(). */
+            if(mountHandle != null) {
+                final FUSEConnInfo connInfo = new FUSEConnInfo();
+                FFMStructs.fillConnInfo(conn, connInfo);
+                mountHandle.connInitialized(connInfo);
+            }
+        } catch(Throwable t) {
+            failed("init", t);
+        }
+
+        return userData;
+    }
+
+    void destroy(MemorySegment userData) {
+        try {
+            enter();
+            fileSystem.destroy(privateData);
+        } catch(Throwable t) {
+            failed("destroy", t);
+        }
+    }
+
+    int access(MemorySegment path, int mode) {
+        try {
+            enter();
+            return fileSystem.access(path(path), mode);
+        } catch(Throwable t) {
+            return failed("access", t);
+        }
+    }
+
+    int create(MemorySegment path, int mode, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.create(path(path), (short) mode,
+                    fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            if(retval == 0)
+                registerBackingFile(fileInfo);
+            return retval;
+        } catch(Throwable t) {
+            return failed("create", t);
+        }
+    }
+
+    int ftruncate(MemorySegment path, long size, MemorySegment fi) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.ftruncate(path(path), size,
+                    fileInfo);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("ftruncate", t);
+        }
+    }
+
+    int fgetattr(MemorySegment path, MemorySegment stbuf, MemorySegment fi) {
+        try {
+            enter();
+            final MemorySegment st = stbuf.reinterpret(STAT_SIZE);
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            final Stat stat = newStat(st);
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final int retval = fileSystem.fgetattr(path(path), stat,
+                    fileInfo);
+            FFMStructs.mergeStat(stat, st);
+            mergeFileInfo(fileInfo, fi);
+            return retval;
+        } catch(Throwable t) {
+            return failed("fgetattr", t);
+        }
+    }
+
+    int lock(MemorySegment path, MemorySegment fi, int cmd,
+            MemorySegment lock) {
+        try {
+            enter();
+            fi = fi.reinterpret(FILE_INFO_SIZE);
+            lock = lock.reinterpret(FFMStructs.FLOCK.byteSize());
+            final FUSEFileInfo fileInfo = newFileInfo(fi);
+            final Flock flock = new Flock();
+            FFMStructs.fillFlock(lock, flock);
+            final int retval = fileSystem.lock(path(path), fileInfo, cmd,
+                    flock);
+            mergeFileInfo(fileInfo, fi);
+            FFMStructs.mergeFlock(flock, lock);
+            return retval;
+        } catch(Throwable t) {
+            return failed("lock", t);
+        }
+    }
+
+    int utimens(MemorySegment path, MemorySegment tv) {
+        try {
+            enter();
+            tv = tv.reinterpret(2 * TIMESPEC_SIZE);
+            final Timespec accessTime = new Timespec();
+            final Timespec modificationTime = new Timespec();
+            FFMStructs.fillTimespec(tv, 0, accessTime);
+            FFMStructs.fillTimespec(tv, TIMESPEC_SIZE, modificationTime);
+            return fileSystem.utimens(path(path), accessTime,
+                    modificationTime);
+        } catch(Throwable t) {
+            return failed("utimens", t);
+        }
+    }
+
+    int bmap(MemorySegment path, long blocksize, MemorySegment idx) {
+        try {
+            enter();
+            idx = idx.reinterpret(JAVA_LONG.byteSize());
+            final LongRef ref = new LongRef();
+            ref.ref = idx.get(JAVA_LONG, 0);
+            final int retval = fileSystem.bmap(path(path), blocksize, ref);
+            idx.set(JAVA_LONG, 0, ref.ref);
+            return retval;
+        } catch(Throwable t) {
+            return failed("bmap", t);
+        }
+    }
+
+    /** Argument objects reused by the operations of one thread. */
+    private static class Arguments {
+        final Stat stat = new Stat();
+        final FUSEFileInfo fileInfo = new FUSEFileInfo();
+        final StatVFS statVFS = new StatVFS();
+    }
+}
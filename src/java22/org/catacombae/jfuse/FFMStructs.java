@@ -0,0 +1,476 @@
+/*-
+ * jFUSE - FUSE bindings for Java
+ * Copyright (C) 2008-2009  Erik Larsson <erik82@kth.se>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.jfuse;
+
+import java.lang.foreign.GroupLayout;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import org.catacombae.jfuse.types.fuse26.FUSEConnInfo;
+import org.catacombae.jfuse.types.fuse26.FUSEFileInfo;
+import org.catacombae.jfuse.types.system.Flock;
+import org.catacombae.jfuse.types.system.Stat;
+import org.catacombae.jfuse.types.system.StatVFS;
+import org.catacombae.jfuse.types.system.Timespec;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Memory layouts of the C structures that the {@link FFMBackend} exchanges
+ * with libfuse 2.x, and the conversions between them and their Java
+ * counterparts. The conversions do what FUSE26Util and SystemUtil do in the
+ * JNI library: the Java object is filled from the structure before an
+ * operation is called, and the structure is updated from the object after
+ * it has returned.<br>
+ * The layouts are those of glibc on 64-bit Linux (x86_64 and aarch64), which
+ * are the only platforms that the backend supports. See
+ * {@link #isSupportedPlatform()}.
+ *
+ * @author Erik Larsson
+ */
+final class FFMStructs {
+    private static final String ARCH = System.getProperty("os.arch");
+    private static final boolean X86_64 =
+            "amd64".equals(ARCH) || "x86_64".equals(ARCH);
+    private static final boolean AARCH64 = "aarch64".equals(ARCH);
+
+    /** <code>struct timespec</code> */
+    static final StructLayout TIMESPEC = MemoryLayout.structLayout(
+            JAVA_LONG.withName("tv_sec"),
+            JAVA_LONG.withName("tv_nsec"));
+
+    /** <code>struct stat</code> */
+    static final StructLayout STAT = AARCH64 ?
+        MemoryLayout.structLayout(
+            JAVA_LONG.withName("st_dev"),
+            JAVA_LONG.withName("st_ino"),
+            JAVA_INT.withName("st_mode"),
+            JAVA_INT.withName("st_nlink"),
+            JAVA_INT.withName("st_uid"),
+            JAVA_INT.withName("st_gid"),
+            JAVA_LONG.withName("st_rdev"),
+            MemoryLayout.paddingLayout(8),
+            JAVA_LONG.withName("st_size"),
+            JAVA_INT.withName("st_blksize"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("st_blocks"),
+            TIMESPEC.withName("st_atim"),
+            TIMESPEC.withName("st_mtim"),
+            TIMESPEC.withName("st_ctim"),
+            MemoryLayout.sequenceLayout(2, JAVA_INT).withName("__unused")) :
+        MemoryLayout.structLayout(
+            JAVA_LONG.withName("st_dev"),
+            JAVA_LONG.withName("st_ino"),
+            JAVA_LONG.withName("st_nlink"),
+            JAVA_INT.withName("st_mode"),
+            JAVA_INT.withName("st_uid"),
+            JAVA_INT.withName("st_gid"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("st_rdev"),
+            JAVA_LONG.withName("st_size"),
+            JAVA_LONG.withName("st_blksize"),
+            JAVA_LONG.withName("st_blocks"),
+            TIMESPEC.withName("st_atim"),
+            TIMESPEC.withName("st_mtim"),
+            TIMESPEC.withName("st_ctim"),
+            MemoryLayout.sequenceLayout(3, JAVA_LONG)
+                    .withName("__glibc_reserved"));
+
+    /** <code>struct statvfs</code> */
+    static final StructLayout STATVFS = MemoryLayout.structLayout(
+            JAVA_LONG.withName("f_bsize"),
+            JAVA_LONG.withName("f_frsize"),
+            JAVA_LONG.withName("f_blocks"),
+            JAVA_LONG.withName("f_bfree"),
+            JAVA_LONG.withName("f_bavail"),
+            JAVA_LONG.withName("f_files"),
+            JAVA_LONG.withName("f_ffree"),
+            JAVA_LONG.withName("f_favail"),
+            JAVA_LONG.withName("f_fsid"),
+            JAVA_LONG.withName("f_flag"),
+            JAVA_LONG.withName("f_namemax"),
+            MemoryLayout.sequenceLayout(6, JAVA_INT).withName("__f_spare"));
+
+    /**
+     * <code>struct fuse_file_info</code> of libfuse 2.x. The bit fields
+     * <code>direct_io</code>, <code>keep_cache</code>, <code>flush</code>,
+     * <code>nonseekable</code> and <code>flock_release</code> share one
+     * <code>unsigned int</code>, starting at the least significant bit.
+     */
+    static final StructLayout FUSE_FILE_INFO = MemoryLayout.structLayout(
+            JAVA_INT.withName("flags"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("fh_old"),
+            JAVA_INT.withName("writepage"),
+            JAVA_INT.withName("bits"),
+            JAVA_LONG.withName("fh"),
+            JAVA_LONG.withName("lock_owner"));
+
+    private static final int FILE_INFO_DIRECT_IO = 1 << 0;
+    private static final int FILE_INFO_KEEP_CACHE = 1 << 1;
+    private static final int FILE_INFO_FLUSH = 1 << 2;
+
+    /** The leading fields of <code>struct fuse_conn_info</code>. */
+    static final StructLayout FUSE_CONN_INFO = MemoryLayout.structLayout(
+            JAVA_INT.withName("proto_major"),
+            JAVA_INT.withName("proto_minor"),
+            JAVA_INT.withName("async_read"),
+            JAVA_INT.withName("max_write"),
+            JAVA_INT.withName("max_readahead"));
+
+    /** <code>struct fuse_context</code> */
+    static final StructLayout FUSE_CONTEXT = MemoryLayout.structLayout(
+            ADDRESS.withName("fuse"),
+            JAVA_INT.withName("uid"),
+            JAVA_INT.withName("gid"),
+            JAVA_INT.withName("pid"),
+            MemoryLayout.paddingLayout(4),
+            ADDRESS.withName("private_data"),
+            JAVA_INT.withName("umask"),
+            MemoryLayout.paddingLayout(4));
+
+    /** <code>struct fuse_args</code> */
+    static final StructLayout FUSE_ARGS = MemoryLayout.structLayout(
+            JAVA_INT.withName("argc"),
+            MemoryLayout.paddingLayout(4),
+            ADDRESS.withName("argv"),
+            JAVA_INT.withName("allocated"),
+            MemoryLayout.paddingLayout(4));
+
+    /** <code>struct flock</code> */
+    static final StructLayout FLOCK = MemoryLayout.structLayout(
+            JAVA_SHORT.withName("l_type"),
+            JAVA_SHORT.withName("l_whence"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("l_start"),
+            JAVA_LONG.withName("l_len"),
+            JAVA_INT.withName("l_pid"),
+            MemoryLayout.paddingLayout(4));
+
+    /**
+     * <code>struct fuse_operations</code> up to <code>bmap</code>, which is
+     * the table of libfuse 2.6. libfuse accepts a table of this size from
+     * later 2.x versions as well, and leaves the operations that come after
+     * <code>bmap</code> unset. Each member is named after the operation.
+     */
+    static final StructLayout FUSE_OPERATIONS = MemoryLayout.structLayout(
+            ADDRESS.withName("getattr"),
+            ADDRESS.withName("readlink"),
+            ADDRESS.withName("getdir"),
+            ADDRESS.withName("mknod"),
+            ADDRESS.withName("mkdir"),
+            ADDRESS.withName("unlink"),
+            ADDRESS.withName("rmdir"),
+            ADDRESS.withName("symlink"),
+            ADDRESS.withName("rename"),
+            ADDRESS.withName("link"),
+            ADDRESS.withName("chmod"),
+            ADDRESS.withName("chown"),
+            ADDRESS.withName("truncate"),
+            ADDRESS.withName("utime"),
+            ADDRESS.withName("open"),
+            ADDRESS.withName("read"),
+            ADDRESS.withName("write"),
+            ADDRESS.withName("statfs"),
+            ADDRESS.withName("flush"),
+            ADDRESS.withName("release"),
+            ADDRESS.withName("fsync"),
+            ADDRESS.withName("setxattr"),
+            ADDRESS.withName("getxattr"),
+            ADDRESS.withName("listxattr"),
+            ADDRESS.withName("removexattr"),
+            ADDRESS.withName("opendir"),
+            ADDRESS.withName("readdir"),
+            ADDRESS.withName("releasedir"),
+            ADDRESS.withName("fsyncdir"),
+            ADDRESS.withName("init"),
+            ADDRESS.withName("destroy"),
+            ADDRESS.withName("access"),
+            ADDRESS.withName("create"),
+            ADDRESS.withName("ftruncate"),
+            ADDRESS.withName("fgetattr"),
+            ADDRESS.withName("lock"),
+            ADDRESS.withName("utimens"),
+            ADDRESS.withName("bmap"));
+
+    private static final Member ST_DEV = new Member(STAT, "st_dev");
+    private static final Member ST_INO = new Member(STAT, "st_ino");
+    private static final Member ST_MODE = new Member(STAT, "st_mode");
+    private static final Member ST_NLINK = new Member(STAT, "st_nlink");
+    private static final Member ST_UID = new Member(STAT, "st_uid");
+    private static final Member ST_GID = new Member(STAT, "st_gid");
+    private static final Member ST_RDEV = new Member(STAT, "st_rdev");
+    private static final Member ST_SIZE = new Member(STAT, "st_size");
+    private static final Member ST_BLKSIZE = new Member(STAT, "st_blksize");
+    private static final Member ST_BLOCKS = new Member(STAT, "st_blocks");
+    private static final long ST_ATIM = STAT.byteOffset(
+            PathElement.groupElement("st_atim"));
+    private static final long ST_MTIM = STAT.byteOffset(
+            PathElement.groupElement("st_mtim"));
+    private static final long ST_CTIM = STAT.byteOffset(
+            PathElement.groupElement("st_ctim"));
+    private static final long TV_SEC = TIMESPEC.byteOffset(
+            PathElement.groupElement("tv_sec"));
+    private static final long TV_NSEC = TIMESPEC.byteOffset(
+            PathElement.groupElement("tv_nsec"));
+
+    private static final Member F_BSIZE = new Member(STATVFS, "f_bsize");
+    private static final Member F_FRSIZE = new Member(STATVFS, "f_frsize");
+    private static final Member F_BLOCKS = new Member(STATVFS, "f_blocks");
+    private static final Member F_BFREE = new Member(STATVFS, "f_bfree");
+    private static final Member F_BAVAIL = new Member(STATVFS, "f_bavail");
+    private static final Member F_FILES = new Member(STATVFS, "f_files");
+    private static final Member F_FFREE = new Member(STATVFS, "f_ffree");
+    private static final Member F_FAVAIL = new Member(STATVFS, "f_favail");
+    private static final Member F_FSID = new Member(STATVFS, "f_fsid");
+    private static final Member F_FLAG = new Member(STATVFS, "f_flag");
+    private static final Member F_NAMEMAX = new Member(STATVFS, "f_namemax");
+
+    private static final Member FI_FLAGS =
+            new Member(FUSE_FILE_INFO, "flags");
+    private static final Member FI_FH_OLD =
+            new Member(FUSE_FILE_INFO, "fh_old");
+    private static final Member FI_WRITEPAGE =
+            new Member(FUSE_FILE_INFO, "writepage");
+    private static final Member FI_BITS = new Member(FUSE_FILE_INFO, "bits");
+    private static final Member FI_FH = new Member(FUSE_FILE_INFO, "fh");
+    private static final Member FI_LOCK_OWNER =
+            new Member(FUSE_FILE_INFO, "lock_owner");
+
+    private static final Member CONN_PROTO_MAJOR =
+            new Member(FUSE_CONN_INFO, "proto_major");
+    private static final Member CONN_PROTO_MINOR =
+            new Member(FUSE_CONN_INFO, "proto_minor");
+    private static final Member CONN_ASYNC_READ =
+            new Member(FUSE_CONN_INFO, "async_read");
+    private static final Member CONN_MAX_WRITE =
+            new Member(FUSE_CONN_INFO, "max_write");
+    private static final Member CONN_MAX_READAHEAD =
+            new Member(FUSE_CONN_INFO, "max_readahead");
+
+    private static final Member L_START = new Member(FLOCK, "l_start");
+    private static final Member L_LEN = new Member(FLOCK, "l_len");
+    private static final Member L_PID = new Member(FLOCK, "l_pid");
+    private static final long L_TYPE =
+            FLOCK.byteOffset(PathElement.groupElement("l_type"));
+    private static final long L_WHENCE =
+            FLOCK.byteOffset(PathElement.groupElement("l_whence"));
+
+    static final long CONTEXT_UID =
+            FUSE_CONTEXT.byteOffset(PathElement.groupElement("uid"));
+    static final long CONTEXT_GID =
+            FUSE_CONTEXT.byteOffset(PathElement.groupElement("gid"));
+    static final long CONTEXT_PID =
+            FUSE_CONTEXT.byteOffset(PathElement.groupElement("pid"));
+    static final long CONTEXT_PRIVATE_DATA =
+            FUSE_CONTEXT.byteOffset(PathElement.groupElement("private_data"));
+
+    private FFMStructs() {}
+
+    /**
+     * Returns whether the layouts above match the C structures of this
+     * platform.
+     */
+    static boolean isSupportedPlatform() {
+        final String osName = System.getProperty("os.name");
+        return osName != null && osName.toLowerCase().startsWith("linux") &&
+                (X86_64 || AARCH64);
+    }
+
+    /**
+     * Returns the offset of the <code>fuse_operations</code> member for the
+     * operation <code>name</code>.
+     */
+    static long operationOffset(String name) {
+        return FUSE_OPERATIONS.byteOffset(PathElement.groupElement(name));
+    }
+
+    static void fillStat(MemorySegment st, Stat target) {
+        target.st_dev = ST_DEV.get(st);
+        target.st_ino = ST_INO.get(st);
+        target.st_mode = ST_MODE.get(st);
+        target.st_nlink = ST_NLINK.get(st);
+        target.st_uid = ST_UID.get(st);
+        target.st_gid = ST_GID.get(st);
+        target.st_rdev = ST_RDEV.get(st);
+        fillTimespec(st, ST_ATIM, target.st_atimespec);
+        fillTimespec(st, ST_MTIM, target.st_mtimespec);
+        fillTimespec(st, ST_CTIM, target.st_ctimespec);
+        target.st_size = ST_SIZE.get(st);
+        target.st_blocks = ST_BLOCKS.get(st);
+        target.st_blocksize = ST_BLKSIZE.get(st);
+        /* Linux has neither st_flags nor st_gen. */
+        target.st_flags = 0;
+        target.st_gen = 0;
+    }
+
+    static void mergeStat(Stat source, MemorySegment st) {
+        ST_DEV.set(st, source.st_dev);
+        ST_INO.set(st, source.st_ino);
+        ST_MODE.set(st, source.st_mode);
+        ST_NLINK.set(st, source.st_nlink);
+        ST_UID.set(st, source.st_uid);
+        ST_GID.set(st, source.st_gid);
+        ST_RDEV.set(st, source.st_rdev);
+        mergeTimespec(source.st_atimespec, st, ST_ATIM);
+        mergeTimespec(source.st_mtimespec, st, ST_MTIM);
+        mergeTimespec(source.st_ctimespec, st, ST_CTIM);
+        ST_SIZE.set(st, source.st_size);
+        ST_BLOCKS.set(st, source.st_blocks);
+        ST_BLKSIZE.set(st, source.st_blocksize);
+    }
+
+    static void fillTimespec(MemorySegment segment, long offset,
+            Timespec target) {
+        target.sec = (int) segment.get(JAVA_LONG, offset + TV_SEC);
+        target.nsec = (int) segment.get(JAVA_LONG, offset + TV_NSEC);
+    }
+
+    static void mergeTimespec(Timespec source, MemorySegment segment,
+            long offset) {
+        segment.set(JAVA_LONG, offset + TV_SEC, source.sec);
+        segment.set(JAVA_LONG, offset + TV_NSEC, source.nsec);
+    }
+
+    static void fillStatVFS(MemorySegment st, StatVFS target) {
+        target.f_bsize = F_BSIZE.get(st);
+        target.f_frsize = F_FRSIZE.get(st);
+        target.f_blocks = F_BLOCKS.get(st);
+        target.f_bfree = F_BFREE.get(st);
+        target.f_bavail = F_BAVAIL.get(st);
+        target.f_files = F_FILES.get(st);
+        target.f_ffree = F_FFREE.get(st);
+        target.f_favail = F_FAVAIL.get(st);
+        target.f_fsid = F_FSID.get(st);
+        target.f_flag = F_FLAG.get(st);
+        target.f_namemax = F_NAMEMAX.get(st);
+    }
+
+    static void mergeStatVFS(StatVFS source, MemorySegment st) {
+        F_BSIZE.set(st, source.f_bsize);
+        F_FRSIZE.set(st, source.f_frsize);
+        F_BLOCKS.set(st, source.f_blocks);
+        F_BFREE.set(st, source.f_bfree);
+        F_BAVAIL.set(st, source.f_bavail);
+        F_FILES.set(st, source.f_files);
+        F_FFREE.set(st, source.f_ffree);
+        F_FAVAIL.set(st, source.f_favail);
+        F_FSID.set(st, source.f_fsid);
+        F_FLAG.set(st, source.f_flag);
+        F_NAMEMAX.set(st, source.f_namemax);
+    }
+
+    static void fillFileInfo(MemorySegment fi, FUSEFileInfo target) {
+        final int bits = (int) FI_BITS.get(fi);
+
+        target.flags = (int) FI_FLAGS.get(fi);
+        target.fh_old = FI_FH_OLD.get(fi);
+        target.writepage = (int) FI_WRITEPAGE.get(fi);
+        target.direct_io = (bits & FILE_INFO_DIRECT_IO) != 0;
+        target.keep_cache = (bits & FILE_INFO_KEEP_CACHE) != 0;
+        target.flush = (bits & FILE_INFO_FLUSH) != 0;
+        target.fh = FI_FH.get(fi);
+        target.lock_owner = FI_LOCK_OWNER.get(fi);
+        target.backing_fd = -1;
+    }
+
+    static void mergeFileInfo(FUSEFileInfo source, MemorySegment fi) {
+        /* Bit fields that FUSEFileInfo doesn't have are left as they are. */
+        int bits = (int) FI_BITS.get(fi);
+        bits &= ~(FILE_INFO_DIRECT_IO | FILE_INFO_KEEP_CACHE | FILE_INFO_FLUSH);
+        if(source.direct_io)
+            bits |= FILE_INFO_DIRECT_IO;
+        if(source.keep_cache)
+            bits |= FILE_INFO_KEEP_CACHE;
+        if(source.flush)
+            bits |= FILE_INFO_FLUSH;
+
+        FI_FLAGS.set(fi, source.flags);
+        FI_FH_OLD.set(fi, source.fh_old);
+        FI_WRITEPAGE.set(fi, source.writepage);
+        FI_BITS.set(fi, bits);
+        FI_FH.set(fi, source.fh);
+        FI_LOCK_OWNER.set(fi, source.lock_owner);
+    }
+
+    static long getFileHandle(MemorySegment fi) {
+        return FI_FH.get(fi);
+    }
+
+    static void fillConnInfo(MemorySegment conn, FUSEConnInfo target) {
+        target.proto_major = CONN_PROTO_MAJOR.get(conn);
+        target.proto_minor = CONN_PROTO_MINOR.get(conn);
+        target.async_read = CONN_ASYNC_READ.get(conn) != 0;
+        target.max_write = CONN_MAX_WRITE.get(conn);
+        target.max_readahead = CONN_MAX_READAHEAD.get(conn);
+    }
+
+    static void fillFlock(MemorySegment flk, Flock target) {
+        target.l_start = L_START.get(flk);
+        target.l_len = L_LEN.get(flk);
+        target.l_pid = (int) L_PID.get(flk);
+        target.l_type = flk.get(JAVA_SHORT, L_TYPE);
+        target.l_whence = flk.get(JAVA_SHORT, L_WHENCE);
+    }
+
+    static void mergeFlock(Flock source, MemorySegment flk) {
+        L_START.set(flk, source.l_start);
+        L_LEN.set(flk, source.l_len);
+        L_PID.set(flk, source.l_pid);
+        flk.set(JAVA_SHORT, L_TYPE, source.l_type);
+        flk.set(JAVA_SHORT, L_WHENCE, source.l_whence);
+    }
+
+    /**
+     * An integer member of a structure, at the offset and with the width
+     * that it has in its layout. 32-bit members are unsigned in all of the
+     * structures above, except for <code>l_pid</code> and the
+     * <code>fuse_file_info</code> fields, which are narrowed back to
+     * <code>int</code> by their callers.
+     */
+    private static final class Member {
+        private final long offset;
+        private final boolean wide;
+
+        Member(GroupLayout layout, String name) {
+            final PathElement element = PathElement.groupElement(name);
+            this.offset = layout.byteOffset(element);
+            this.wide = layout.select(element).byteSize() == 8;
+        }
+
+        long get(MemorySegment segment) {
+            if(wide)
+                return segment.get(JAVA_LONG, offset);
+            else
+                return segment.get(JAVA_INT, offset) & 0xFFFFFFFFL;
+        }
+
+        void set(MemorySegment segment, long value) {
+            if(wide)
+                segment.set(JAVA_LONG, offset, value);
+            else
+                segment.set(JAVA_INT, offset, (int) value);
+        }
+    }
+}